@@ -25,6 +25,7 @@ package org.modeshape.extractor.tika;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.Writer;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Map;
@@ -38,6 +39,7 @@ import org.apache.tika.parser.DefaultParser;
 import org.apache.tika.parser.ParseContext;
 import org.apache.tika.parser.Parser;
 import org.apache.tika.sax.BodyContentHandler;
+import org.apache.tika.sax.WriteOutContentHandler;
 import org.modeshape.common.collection.Collections;
 import org.modeshape.common.logging.Logger;
 import org.modeshape.common.util.StringUtil;
@@ -140,24 +142,35 @@ public class TikaTextExtractor extends TextExtractor {
             @Override
             public Object execute( InputStream stream ) throws Exception {
                 Metadata metadata = prepareMetadata(binary, context);
+                // Stream the text of the body to the output as it is parsed, rather than accumulating all of it ...
+                OutputWriter writer = new OutputWriter(output);
                 try {
                     LOGGER.debug("Using TikaTextExtractor to extract text");
                     //TODO author=Horia Chiorean date=1/30/13 description=//TIKA 1.2 TXTParser seems to have a bug, always adding 1 ignorable whitespace to the actual chars to be parsed
                     //https://issues.apache.org/jira/browse/TIKA-1069
-                    ContentHandler textHandler = writeLimit == null ? new BodyContentHandler() : new BodyContentHandler(writeLimit + 1);
+                    ContentHandler writeOutHandler = writeLimit == null ? new WriteOutContentHandler(writer) : new WriteOutContentHandler(
+                                                                                                                                        writer,
+                                                                                                                                        writeLimit + 1);
+                    ContentHandler textHandler = new BodyContentHandler(writeOutHandler);
                     // Parse the input stream ...
                     parser.parse(stream, textHandler, metadata, new ParseContext());
-
-                    // Record all of the text in the body ...
-                    String text = textHandler.toString().trim();
-                    output.recordText(text);
-                    LOGGER.debug("TikaTextExtractor found text: " + text);
                 } catch (SAXException sae) {
-                    LOGGER.warn(TikaI18n.parseExceptionWhileExtractingText, sae.getMessage());
+                    if (writer.failure == null) {
+                        LOGGER.warn(TikaI18n.parseExceptionWhileExtractingText, sae.getMessage());
+                    }
                 } catch (NoClassDefFoundError ncdfe) {
                     LOGGER.warn(TikaI18n.warnNoClassDefFound, ncdfe.getMessage());
                 } catch (Throwable e) {
-                    LOGGER.error(e, TikaI18n.errorWhileExtractingTextFrom, e.getMessage());
+                    if (writer.failure == null) {
+                        LOGGER.error(e, TikaI18n.errorWhileExtractingTextFrom, e.getMessage());
+                    }
+                } finally {
+                    // Record the rest of the text in the body ...
+                    writer.close();
+                }
+                if (writer.failure != null) {
+                    // The output did not accept the text (e.g., because the extraction took too long) ...
+                    throw writer.failure;
                 }
                 return null;
             }
@@ -329,4 +342,64 @@ public class TikaTextExtractor extends TextExtractor {
     public void setWriteLimit( Integer writeLimit ) {
         this.writeLimit = writeLimit;
     }
+
+    /**
+     * A {@link Writer} that passes the text written by Tika to the {@link TextExtractor.Output output} in chunks, so that the text
+     * of large documents is never accumulated in memory. Each chunk ends at whitespace, since the output separates the chunks it
+     * is given.
+     */
+    protected static final class OutputWriter extends Writer {
+        private static final int CHUNK_SIZE = 1 << 13;
+
+        private final TextExtractor.Output output;
+        private final StringBuilder buffer = new StringBuilder();
+        protected RuntimeException failure;
+
+        protected OutputWriter( TextExtractor.Output output ) {
+            this.output = output;
+        }
+
+        @Override
+        public void write( char[] cbuf,
+                           int off,
+                           int len ) throws IOException {
+            if (failure != null) {
+                throw new IOException(failure);
+            }
+            buffer.append(cbuf, off, len);
+            if (buffer.length() >= CHUNK_SIZE) {
+                record(false);
+            }
+        }
+
+        @Override
+        public void flush() {
+            // Tika flushes at the end of each document, but the text is only recorded in chunks or when closed
+        }
+
+        @Override
+        public void close() {
+            if (failure == null) record(true);
+            buffer.setLength(0);
+        }
+
+        private void record( boolean all ) {
+            int end = buffer.length();
+            if (!all) {
+                // Keep buffering until there is whitespace at which the text can be split ...
+                while (end > 0 && !Character.isWhitespace(buffer.charAt(end - 1))) {
+                    --end;
+                }
+                if (end == 0) return;
+            }
+            String text = buffer.substring(0, end).trim();
+            buffer.delete(0, end);
+            if (text.length() == 0) return;
+            try {
+                output.recordText(text);
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+        }
+    }
 }
@@ -0,0 +1,72 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ * See the AUTHORS.txt file in the distribution for a full listing of 
+ * individual contributors.
+ *
+ * ModeShape is free software. Unless otherwise indicated, all code in ModeShape
+ * is licensed to you under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ * 
+ * ModeShape is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.modeshape.benchmark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The main class of the self-contained benchmarks JAR, which runs the JMH benchmarks and records the results in a JSON file so
+ * that the results of different builds can be compared. For example, the following runs all of the query benchmarks with only
+ * the smallest repository:
+ * 
+ * <pre>
+ *   java -jar target/benchmarks.jar QueryBenchmark -p nodeCount=1000
+ * </pre>
+ * <p>
+ * All of the standard JMH options are supported (use "-h" to list them). Unless these options are specified, the results are
+ * written in JSON format to "{@value #DEFAULT_RESULTS_FILE}", and each benchmark is run in a single fork with
+ * {@value #DEFAULT_WARMUP_ITERATIONS} warmup iterations and {@value #DEFAULT_MEASUREMENT_ITERATIONS} measurement iterations.
+ * </p>
+ */
+public final class BenchmarkRunner {
+
+    public static final String DEFAULT_RESULTS_FILE = "modeshape-benchmarks.json";
+    public static final int DEFAULT_FORKS = 1;
+    public static final int DEFAULT_WARMUP_ITERATIONS = 5;
+    public static final int DEFAULT_MEASUREMENT_ITERATIONS = 10;
+
+    public static void main( String[] args ) throws Exception {
+        List<String> arguments = new ArrayList<String>(Arrays.asList(args));
+        // Add the defaults for any of the options that were not specified (JMH does not allow specifying them twice) ...
+        addDefault(arguments, "-rf", "json");
+        addDefault(arguments, "-rff", DEFAULT_RESULTS_FILE);
+        addDefault(arguments, "-f", Integer.toString(DEFAULT_FORKS));
+        addDefault(arguments, "-wi", Integer.toString(DEFAULT_WARMUP_ITERATIONS));
+        addDefault(arguments, "-i", Integer.toString(DEFAULT_MEASUREMENT_ITERATIONS));
+        org.openjdk.jmh.Main.main(arguments.toArray(new String[arguments.size()]));
+    }
+
+    private static void addDefault( List<String> arguments,
+                                    String option,
+                                    String value ) {
+        if (arguments.contains(option)) return;
+        arguments.add(0, value);
+        arguments.add(0, option);
+    }
+
+    private BenchmarkRunner() {
+    }
+}
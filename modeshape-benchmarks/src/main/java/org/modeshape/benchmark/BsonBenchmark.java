@@ -0,0 +1,115 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ * See the AUTHORS.txt file in the distribution for a full listing of 
+ * individual contributors.
+ *
+ * ModeShape is free software. Unless otherwise indicated, all code in ModeShape
+ * is licensed to you under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ * 
+ * ModeShape is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.modeshape.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+import org.infinispan.schematic.Schematic;
+import org.infinispan.schematic.document.Document;
+import org.infinispan.schematic.document.EditableArray;
+import org.infinispan.schematic.document.EditableDocument;
+import org.infinispan.schematic.internal.document.BsonReader;
+import org.infinispan.schematic.internal.document.BsonWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmarks of the BSON serialization used to store documents, using documents shaped like those of nodes with a varying number
+ * of properties.
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+public class BsonBenchmark {
+
+    /**
+     * The number of properties in the document.
+     */
+    @Param( {"10", "100"} )
+    public int propertyCount;
+
+    private final BsonWriter writer = new BsonWriter();
+    private final BsonReader reader = new BsonReader();
+    private Document document;
+    private byte[] bytes;
+
+    @Setup
+    public void createDocument() throws Exception {
+        document = createNodeDocument(propertyCount);
+        bytes = writer.write(document);
+    }
+
+    @Benchmark
+    public byte[] write() throws Exception {
+        return writer.write(document);
+    }
+
+    @Benchmark
+    public Document read() throws Exception {
+        return reader.read(new ByteArrayInputStream(bytes));
+    }
+
+    /**
+     * Create a document that has the same structure as the document of a node with the supplied number of properties and a few
+     * child references.
+     * 
+     * @param propertyCount the number of properties
+     * @return the document; never null
+     */
+    static Document createNodeDocument( int propertyCount ) {
+        EditableDocument doc = Schematic.newDocument();
+        doc.setString("key", "8e4d6d31a4b6a7f0c6b1a3f3c2b2d1e0-0000-0000-0000-000000000001");
+        doc.setString("parent", "8e4d6d31a4b6a7f0c6b1a3f3c2b2d1e0-0000-0000-0000-000000000000");
+        EditableDocument properties = doc.setDocument("properties").setDocument("http://www.modeshape.org/1.0");
+        for (int i = 0; i != propertyCount; ++i) {
+            switch (i % 4) {
+                case 0:
+                    properties.setString("string" + i, "The quick brown fox jumped over the lazy dog " + i);
+                    break;
+                case 1:
+                    properties.setNumber("long" + i, (long)i * 1000L);
+                    break;
+                case 2:
+                    properties.setBoolean("boolean" + i, i % 3 == 0);
+                    break;
+                default:
+                    EditableArray values = properties.setArray("multi" + i);
+                    values.addString("first");
+                    values.addString("second");
+                    values.addString("third");
+            }
+        }
+        EditableArray children = doc.setArray("children");
+        for (int i = 0; i != 10; ++i) {
+            children.addDocument(Schematic.newDocument("key", "child-" + i, "name", "child" + i));
+        }
+        return doc;
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ * See the AUTHORS.txt file in the distribution for a full listing of 
+ * individual contributors.
+ *
+ * ModeShape is free software. Unless otherwise indicated, all code in ModeShape
+ * is licensed to you under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ * 
+ * ModeShape is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.modeshape.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.modeshape.jcr.ExecutionContext;
+import org.modeshape.jcr.cache.ChildReference;
+import org.modeshape.jcr.cache.ChildReferences;
+import org.modeshape.jcr.cache.NodeKey;
+import org.modeshape.jcr.cache.document.ImmutableChildReferences;
+import org.modeshape.jcr.value.Name;
+import org.modeshape.jcr.value.NameFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmarks of the lookups of child references by name, by same-name-sibling index and by key within large lists of children,
+ * using children that all have distinct names or that are all same-name siblings.
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+public class ChildReferencesBenchmark {
+
+    private static final String NAMESPACE_URI = "http://www.modeshape.org/benchmark/1.0";
+    private static final int NUMBER_OF_LOOKUPS = 1024;
+
+    /**
+     * The number of children.
+     */
+    @Param( {"1000", "10000", "100000"} )
+    public int childCount;
+
+    /**
+     * Whether all of the children have the same name.
+     */
+    @Param( {"false", "true"} )
+    public boolean sameNameSiblings;
+
+    private ChildReferences references;
+    private final ChildReference[] lookups = new ChildReference[NUMBER_OF_LOOKUPS];
+    private int next;
+
+    @Setup
+    public void createReferences() {
+        NameFactory names = new ExecutionContext().getValueFactories().getNameFactory();
+        String sourceKey = NodeKey.keyForSourceName("benchmark");
+        String workspaceKey = NodeKey.keyForWorkspaceName("default");
+        Name sameName = names.create(NAMESPACE_URI, "child");
+        List<ChildReference> children = new ArrayList<ChildReference>(childCount);
+        for (int i = 0; i != childCount; ++i) {
+            NodeKey key = new NodeKey(sourceKey, workspaceKey, UUID.randomUUID().toString());
+            if (sameNameSiblings) {
+                children.add(new ChildReference(key, sameName, i + 1));
+            } else {
+                children.add(new ChildReference(key, names.create(NAMESPACE_URI, "child" + i), 1));
+            }
+        }
+        references = ImmutableChildReferences.create(children);
+
+        // Choose the children that will be looked up, so that the lookups are spread throughout the list ...
+        Random random = new Random(childCount);
+        for (int i = 0; i != NUMBER_OF_LOOKUPS; ++i) {
+            lookups[i] = children.get(random.nextInt(childCount));
+        }
+    }
+
+    private ChildReference nextLookup() {
+        next = (next + 1) & (NUMBER_OF_LOOKUPS - 1);
+        return lookups[next];
+    }
+
+    @Benchmark
+    public ChildReference getChildByName() {
+        ChildReference child = nextLookup();
+        return references.getChild(child.getName(), child.getSnsIndex());
+    }
+
+    @Benchmark
+    public ChildReference getChildByKey() {
+        return references.getChild(nextLookup().getKey());
+    }
+
+    @Benchmark
+    public boolean hasChild() {
+        return references.hasChild(nextLookup().getKey());
+    }
+
+    @Benchmark
+    public int getChildCountForName() {
+        return references.getChildCount(nextLookup().getName());
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ * See the AUTHORS.txt file in the distribution for a full listing of 
+ * individual contributors.
+ *
+ * ModeShape is free software. Unless otherwise indicated, all code in ModeShape
+ * is licensed to you under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ * 
+ * ModeShape is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.modeshape.benchmark;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.infinispan.schematic.Schematic;
+import org.infinispan.schematic.document.Document;
+import org.infinispan.schematic.document.EditableDocument;
+import org.modeshape.jcr.ExecutionContext;
+import org.modeshape.jcr.cache.document.DocumentTranslator;
+import org.modeshape.jcr.value.DateTime;
+import org.modeshape.jcr.value.Name;
+import org.modeshape.jcr.value.NameFactory;
+import org.modeshape.jcr.value.Property;
+import org.modeshape.jcr.value.PropertyFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmarks of the {@link DocumentTranslator} methods that encode node properties into documents and decode them again, using
+ * nodes with a varying number of properties of the common property types.
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+public class DocumentTranslatorBenchmark {
+
+    private static final String NAMESPACE_URI = "http://www.modeshape.org/benchmark/1.0";
+    private static final long LARGE_STRING_SIZE = 1024L * 1024L;
+
+    /**
+     * The number of properties on the node.
+     */
+    @Param( {"10", "100"} )
+    public int propertyCount;
+
+    private DocumentTranslator translator;
+    private List<Property> properties;
+    private Document document;
+
+    @Setup
+    public void createProperties() {
+        ExecutionContext context = new ExecutionContext();
+        // None of the values are large enough to be stored in the binary store, so no document store is needed ...
+        translator = new DocumentTranslator(context, null, LARGE_STRING_SIZE);
+        NameFactory names = context.getValueFactories().getNameFactory();
+        PropertyFactory factory = context.getPropertyFactory();
+        properties = new ArrayList<Property>(propertyCount);
+        for (int i = 0; i != propertyCount; ++i) {
+            switch (i % 5) {
+                case 0:
+                    properties.add(factory.create(names.create(NAMESPACE_URI, "string" + i), "The quick brown fox " + i));
+                    break;
+                case 1:
+                    properties.add(factory.create(names.create(NAMESPACE_URI, "long" + i), (long)i));
+                    break;
+                case 2:
+                    properties.add(factory.create(names.create(NAMESPACE_URI, "boolean" + i), i % 3 == 0));
+                    break;
+                case 3:
+                    DateTime date = context.getValueFactories().getDateFactory().create();
+                    properties.add(factory.create(names.create(NAMESPACE_URI, "date" + i), date));
+                    break;
+                default:
+                    properties.add(factory.create(names.create(NAMESPACE_URI, "multi" + i), new Object[] {"first", "second",
+                        "third"}));
+            }
+        }
+        document = encode();
+    }
+
+    @Benchmark
+    public EditableDocument encode() {
+        EditableDocument doc = Schematic.newDocument();
+        for (Property property : properties) {
+            translator.setProperty(doc, property, null);
+        }
+        return doc;
+    }
+
+    @Benchmark
+    public Map<Name, Property> decode() {
+        Map<Name, Property> result = new HashMap<Name, Property>();
+        translator.getProperties(document, result);
+        return result;
+    }
+}
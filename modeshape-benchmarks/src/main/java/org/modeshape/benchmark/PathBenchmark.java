@@ -0,0 +1,91 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ * See the AUTHORS.txt file in the distribution for a full listing of 
+ * individual contributors.
+ *
+ * ModeShape is free software. Unless otherwise indicated, all code in ModeShape
+ * is licensed to you under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ * 
+ * ModeShape is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.modeshape.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import org.modeshape.jcr.ExecutionContext;
+import org.modeshape.jcr.value.Path;
+import org.modeshape.jcr.value.PathFactory;
+import org.modeshape.jcr.value.ValueFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmarks of parsing, formatting and resolving paths of varying depths, independently of any repository content. See
+ * {@link SessionBenchmark} for the resolution of paths to nodes.
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+public class PathBenchmark {
+
+    /**
+     * The number of segments in the path.
+     */
+    @Param( {"3", "10", "30"} )
+    public int depth;
+
+    private PathFactory paths;
+    private ValueFactory<String> strings;
+    private String absolutePathString;
+    private Path absolutePath;
+    private Path relativePath;
+
+    @Setup
+    public void createPaths() {
+        ExecutionContext context = new ExecutionContext();
+        paths = context.getValueFactories().getPathFactory();
+        strings = context.getValueFactories().getStringFactory();
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i != depth; ++i) {
+            sb.append("/jcr:segment").append(i);
+            // Use a same-name-sibling index on every other segment ...
+            if (i % 2 == 1) sb.append('[').append(i).append(']');
+        }
+        absolutePathString = sb.toString();
+        absolutePath = paths.create(absolutePathString);
+        relativePath = paths.create("../../child/./grandchild");
+    }
+
+    @Benchmark
+    public Path parse() {
+        return paths.create(absolutePathString);
+    }
+
+    @Benchmark
+    public String format() {
+        return strings.create(absolutePath);
+    }
+
+    @Benchmark
+    public Path resolveRelativePath() {
+        return absolutePath.resolve(relativePath).getNormalizedPath();
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ * See the AUTHORS.txt file in the distribution for a full listing of 
+ * individual contributors.
+ *
+ * ModeShape is free software. Unless otherwise indicated, all code in ModeShape
+ * is licensed to you under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ * 
+ * ModeShape is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.modeshape.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import javax.jcr.Session;
+import javax.jcr.query.Query;
+import javax.jcr.query.QueryManager;
+import javax.jcr.query.RowIterator;
+import org.modeshape.jcr.ExecutionContext;
+import org.modeshape.jcr.query.model.QueryCommand;
+import org.modeshape.jcr.query.model.TypeSystem;
+import org.modeshape.jcr.query.parse.JcrSql2QueryParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks of the parsing, planning and execution of JCR-SQL2 queries. Parsing is measured independently of any repository,
+ * while planning and execution use a repository that contains a varying number of nodes (see {@link RepositoryState}).
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+public class QueryBenchmark {
+
+    /**
+     * The queries that are benchmarked, each of which uses the content created by {@link RepositoryState}.
+     */
+    public static enum Queries {
+        CRITERIA("SELECT [jcr:title] FROM [mix:title] WHERE [jcr:title] = 'Title of node 42'"),
+        ORDERED_RANGE("SELECT n.[jcr:title], n.[index] FROM [nt:unstructured] AS n WHERE ISCHILDNODE(n, '/content') "
+                      + "AND n.[index] >= 100 AND n.[index] < 200 ORDER BY n.[index] DESC"),
+        JOIN("SELECT c.[jcr:title] FROM [nt:unstructured] AS p JOIN [mix:title] AS c ON ISCHILDNODE(c, p) "
+             + "WHERE p.[jcr:path] = '/content' AND c.[even] = true AND c.[index] < 500"),
+        LIMIT("SELECT [jcr:title] FROM [mix:title] ORDER BY [jcr:title] LIMIT 10");
+
+        private final String statement;
+
+        private Queries( String statement ) {
+            this.statement = statement;
+        }
+
+        public String statement() {
+            return statement;
+        }
+    }
+
+    /**
+     * The per-thread state with the query to be parsed, which does not need a repository.
+     */
+    @State( Scope.Thread )
+    public static class ParserState {
+        @Param( {"CRITERIA", "ORDERED_RANGE", "JOIN", "LIMIT"} )
+        public Queries parsedQuery;
+
+        final JcrSql2QueryParser parser = new JcrSql2QueryParser();
+        TypeSystem typeSystem;
+
+        @Setup
+        public void createTypeSystem() {
+            typeSystem = new ExecutionContext().getValueFactories().getTypeSystem();
+        }
+    }
+
+    /**
+     * The per-thread session used to plan and execute the query.
+     */
+    @State( Scope.Thread )
+    public static class QueryState {
+        @Param( {"CRITERIA", "ORDERED_RANGE", "JOIN", "LIMIT"} )
+        public Queries query;
+
+        Session session;
+        QueryManager queryManager;
+
+        @Setup( Level.Trial )
+        public void login( RepositoryState repository ) throws Exception {
+            session = repository.login();
+            queryManager = session.getWorkspace().getQueryManager();
+        }
+
+        @TearDown( Level.Trial )
+        public void logout() {
+            session.logout();
+        }
+
+        Query createQuery() throws Exception {
+            return queryManager.createQuery(query.statement(), Query.JCR_SQL2);
+        }
+    }
+
+    @Benchmark
+    public QueryCommand parse( ParserState state ) {
+        return state.parser.parseQuery(state.parsedQuery.statement(), state.typeSystem);
+    }
+
+    @Benchmark
+    public String plan( QueryState state ) throws Exception {
+        return ((org.modeshape.jcr.api.query.Query)state.createQuery()).explain().getPlan();
+    }
+
+    @Benchmark
+    public long execute( QueryState state,
+                         Blackhole blackhole ) throws Exception {
+        RowIterator rows = state.createQuery().execute().getRows();
+        long count = 0L;
+        while (rows.hasNext()) {
+            blackhole.consume(rows.nextRow().getValues());
+            ++count;
+        }
+        return count;
+    }
+}
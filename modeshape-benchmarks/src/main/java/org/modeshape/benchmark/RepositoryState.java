@@ -0,0 +1,112 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ * See the AUTHORS.txt file in the distribution for a full listing of 
+ * individual contributors.
+ *
+ * ModeShape is free software. Unless otherwise indicated, all code in ModeShape
+ * is licensed to you under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ * 
+ * ModeShape is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.modeshape.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import javax.jcr.Node;
+import javax.jcr.Session;
+import org.modeshape.jcr.ModeShapeEngine;
+import org.modeshape.jcr.RepositoryConfiguration;
+import org.modeshape.jcr.api.JcrTools;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * The JMH state that starts an in-memory repository and populates it with a configurable number of nodes, which are shared by all
+ * of the benchmark threads. The content consists of a single "/content" node with {@link #nodeCount} children named "node0",
+ * "node1", etc., where each child has a few properties, is of type "nt:unstructured", and (except for every tenth child) has the
+ * "mix:title" mixin.
+ */
+@State( Scope.Benchmark )
+public class RepositoryState {
+
+    public static final String CONTENT_PATH = "/content";
+    public static final String CHILD_NAME_PREFIX = "node";
+
+    private static final String REPOSITORY_NAME = "benchmark-repository";
+    private static final String CONFIGURATION = "{ \"name\" : \"" + REPOSITORY_NAME + "\" }";
+    private static final int SAVE_BATCH_SIZE = 1000;
+
+    /**
+     * The number of nodes in the repository.
+     */
+    @Param( {"1000", "10000", "100000"} )
+    public int nodeCount;
+
+    private ModeShapeEngine engine;
+    private javax.jcr.Repository repository;
+
+    @Setup
+    public void startRepository() throws Exception {
+        engine = new ModeShapeEngine();
+        engine.start();
+        RepositoryConfiguration config = RepositoryConfiguration.read(CONFIGURATION);
+        engine.deploy(config);
+        repository = engine.startRepository(REPOSITORY_NAME).get();
+
+        Session session = login();
+        try {
+            Node content = new JcrTools().findOrCreateNode(session, CONTENT_PATH);
+            for (int i = 0; i != nodeCount; ++i) {
+                Node child = content.addNode(CHILD_NAME_PREFIX + i, "nt:unstructured");
+                if (i % 10 != 0) child.addMixin("mix:title");
+                child.setProperty("jcr:title", "Title of node " + i);
+                child.setProperty("index", i);
+                child.setProperty("even", i % 2 == 0);
+                if ((i + 1) % SAVE_BATCH_SIZE == 0) session.save();
+            }
+            session.save();
+        } finally {
+            session.logout();
+        }
+    }
+
+    @TearDown
+    public void stopRepository() throws Exception {
+        engine.shutdown().get(30, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Create a new session in the default workspace of the repository.
+     * 
+     * @return the session; never null
+     * @throws Exception if there is a problem logging in
+     */
+    public Session login() throws Exception {
+        return repository.login();
+    }
+
+    /**
+     * Get the path of the child of the "/content" node with the supplied index.
+     * 
+     * @param index the index of the child; must be less than {@link #nodeCount}
+     * @return the path; never null
+     */
+    public String pathOfChild( int index ) {
+        return CONTENT_PATH + "/" + CHILD_NAME_PREFIX + index;
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ * See the AUTHORS.txt file in the distribution for a full listing of 
+ * individual contributors.
+ *
+ * ModeShape is free software. Unless otherwise indicated, all code in ModeShape
+ * is licensed to you under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ * 
+ * ModeShape is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.modeshape.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import javax.jcr.Node;
+import javax.jcr.Session;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Benchmarks of the session operations that add and save nodes and that resolve paths to nodes, using a repository that contains
+ * a varying number of nodes (see {@link RepositoryState}).
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+public class SessionBenchmark {
+
+    private static final int BATCH_SIZE = 100;
+
+    /**
+     * The per-thread session, along with a scratch node (recreated for each iteration) under which new nodes are added.
+     */
+    @State( Scope.Thread )
+    public static class SessionState {
+        Session session;
+        Node content;
+        Node scratch;
+        int nodeCount;
+        int counter;
+        final Random random = new Random(1L);
+
+        @Setup( Level.Iteration )
+        public void login( RepositoryState repository ) throws Exception {
+            session = repository.login();
+            content = session.getNode(RepositoryState.CONTENT_PATH);
+            nodeCount = repository.nodeCount;
+            scratch = session.getRootNode().addNode("scratch-" + Thread.currentThread().getId(), "nt:unstructured");
+            session.save();
+        }
+
+        @TearDown( Level.Iteration )
+        public void logout() throws Exception {
+            try {
+                scratch.remove();
+                session.save();
+            } finally {
+                session.logout();
+            }
+        }
+
+        String nextChildName() {
+            return RepositoryState.CHILD_NAME_PREFIX + random.nextInt(nodeCount);
+        }
+    }
+
+    @Benchmark
+    public Node addNodeAndSave( SessionState state ) throws Exception {
+        Node node = state.scratch.addNode("node" + (state.counter++), "nt:unstructured");
+        node.setProperty("index", state.counter);
+        state.session.save();
+        return node;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation( BATCH_SIZE )
+    public Node addNodesAndSaveBatch( SessionState state ) throws Exception {
+        Node node = null;
+        for (int i = 0; i != BATCH_SIZE; ++i) {
+            node = state.scratch.addNode("node" + (state.counter++), "nt:unstructured");
+            node.setProperty("index", state.counter);
+        }
+        state.session.save();
+        return node;
+    }
+
+    @Benchmark
+    public Node getNodeByPath( SessionState state ) throws Exception {
+        return state.session.getNode(RepositoryState.CONTENT_PATH + "/" + state.nextChildName());
+    }
+
+    @Benchmark
+    public Node getChildNode( SessionState state ) throws Exception {
+        return state.content.getNode(state.nextChildName());
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ * See the AUTHORS.txt file in the distribution for a full listing of 
+ * individual contributors.
+ *
+ * ModeShape is free software. Unless otherwise indicated, all code in ModeShape
+ * is licensed to you under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ * 
+ * ModeShape is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.modeshape.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+import org.modeshape.common.collection.SimpleProblems;
+import org.modeshape.common.text.TokenStream;
+import org.modeshape.common.util.IoUtil;
+import org.modeshape.jcr.CndImporter;
+import org.modeshape.jcr.ExecutionContext;
+import org.modeshape.jcr.query.model.QueryCommand;
+import org.modeshape.jcr.query.model.TypeSystem;
+import org.modeshape.jcr.query.parse.JcrSql2QueryParser;
+import org.modeshape.sequencer.ddl.DdlParsers;
+import org.modeshape.sequencer.ddl.node.AstNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmarks of the {@link TokenStream}-based parsers: JCR-SQL2 queries, CND files and DDL scripts, plus the tokenization and
+ * scanning of the tokens on their own. The content is generated so that its size is a benchmark parameter, except for the CND
+ * files, which are the built-in node type definitions.
+ * <p>
+ * The memory allocated by each operation is more telling than its time, so these benchmarks are best run with the GC profiler:
+ * </p>
+ * 
+ * <pre>
+ *   java -jar target/benchmarks.jar TokenStreamBenchmark -prof gc
+ * </pre>
+ * <p>
+ * and then comparing the "gc.alloc.rate.norm" (bytes per operation) of different builds.
+ * </p>
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+public class TokenStreamBenchmark {
+
+    private static final String[] BUILT_IN_CND_FILES = {"/org/modeshape/jcr/jsr_283_builtins.cnd",
+        "/org/modeshape/jcr/modeshape_builtins.cnd"};
+
+    /**
+     * The number of criteria in the query, and the number of tables in the DDL script.
+     */
+    @Param( {"10", "1000"} )
+    public int size;
+
+    private ExecutionContext context;
+    private TypeSystem typeSystem;
+    private final JcrSql2QueryParser queryParser = new JcrSql2QueryParser();
+    private String query;
+    private String ddl;
+    private String[] cnds;
+
+    @Setup
+    public void createContent() throws IOException {
+        context = new ExecutionContext();
+        typeSystem = context.getValueFactories().getTypeSystem();
+
+        StringBuilder sb = new StringBuilder("SELECT n.[jcr:title], n.[index] FROM [nt:unstructured] AS n WHERE ");
+        for (int i = 0; i != size; ++i) {
+            if (i != 0) sb.append(" OR ");
+            sb.append("(n.[index] = ").append(i).append(" AND n.[jcr:title] LIKE 'Title of node ").append(i).append("%')");
+        }
+        query = sb.append(" ORDER BY n.[index]").toString();
+
+        sb = new StringBuilder("-- Generated schema\n");
+        for (int i = 0; i != size; ++i) {
+            sb.append("CREATE TABLE table_").append(i).append(" (\n");
+            sb.append("    id INTEGER NOT NULL,\n");
+            sb.append("    name VARCHAR(255) DEFAULT 'unknown',\n");
+            sb.append("    price DECIMAL(10, 2),\n");
+            sb.append("    PRIMARY KEY (id)\n");
+            sb.append(");\n");
+            sb.append("ALTER TABLE table_").append(i).append(" ADD COLUMN description VARCHAR(1024);\n");
+        }
+        ddl = sb.toString();
+
+        cnds = new String[BUILT_IN_CND_FILES.length];
+        for (int i = 0; i != cnds.length; ++i) {
+            InputStream stream = getClass().getResourceAsStream(BUILT_IN_CND_FILES[i]);
+            cnds[i] = IoUtil.read(stream);
+        }
+    }
+
+    @Benchmark
+    public int tokenizeAndScan() {
+        TokenStream tokens = new TokenStream(query, TokenStream.basicTokenizer(false), false).start();
+        int matches = 0;
+        while (tokens.hasNext()) {
+            if (tokens.matches("OR")) ++matches;
+            tokens.consume();
+        }
+        return matches;
+    }
+
+    @Benchmark
+    public QueryCommand parseQuery() {
+        return queryParser.parseQuery(query, typeSystem);
+    }
+
+    @Benchmark
+    public CndImporter importCnd() {
+        CndImporter importer = new CndImporter(context, true);
+        SimpleProblems problems = new SimpleProblems();
+        for (int i = 0; i != cnds.length; ++i) {
+            importer.importFrom(cnds[i], problems, BUILT_IN_CND_FILES[i]);
+        }
+        return importer;
+    }
+
+    @Benchmark
+    public AstNode parseDdl() {
+        return new DdlParsers().parse(ddl, null);
+    }
+}
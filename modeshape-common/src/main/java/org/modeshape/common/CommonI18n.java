@@ -98,6 +98,7 @@ public final class CommonI18n {
     public static I18n unexpectedTokenType;
     public static I18n startMethodMustBeCalledBeforeNext;
     public static I18n startMethodMustBeCalledBeforeConsumingOrMatching;
+    public static I18n startMethodMustBeCalledBeforeSharingTokens;
     public static I18n noMatchingDoubleQuoteFound;
     public static I18n noMatchingSingleQuoteFound;
     public static I18n expectingValidIntegerAtLineAndColumn;
@@ -23,11 +23,12 @@
  */
 package org.modeshape.common.text;
 
-import java.util.ArrayList;
+import java.util.AbstractList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
-import java.util.ListIterator;
 import java.util.NoSuchElementException;
+import java.util.RandomAccess;
 import org.modeshape.common.annotation.Immutable;
 import org.modeshape.common.annotation.NotThreadSafe;
 import org.modeshape.common.CommonI18n;
@@ -378,28 +379,31 @@ public class TokenStream {
      */
     public static final int ANY_TYPE = Integer.MIN_VALUE;
 
+    /**
+     * The number of tokens for which space is initially allocated; the space grows geometrically as more tokens are added.
+     */
+    private static final int INITIAL_TOKEN_CAPACITY = 16;
+
     protected final String inputString;
     protected final String inputUppercased;
     private final char[] inputContent;
     private final boolean caseSensitive;
     private final Tokenizer tokenizer;
-    private List<Token> tokens;
+    private final PackedTokens sharedTokens;
+    private PackedTokens tokens;
     /**
-     * This class navigates the Token objects using this iterator. However, because it very often needs to access the
-     * "current token" in the "consume(...)" and "canConsume(...)" and "matches(...)" methods, the class caches a "current token"
-     * and makes this iterator point to the 2nd token.
+     * This class navigates the tokens by their index in the {@link PackedTokens packed tokens}, and only creates {@link Token}
+     * objects when they are explicitly requested. The index is -1 until the stream is {@link #start() started}, and is equal to
+     * the number of tokens once all of the tokens have been consumed.
      * 
      * <pre>
      *     T1     T2    T3    T4    T5
-     *         &circ;   &circ;  &circ;
-     *         |   |  |
-     *         |   |  +- The position of the tokenIterator, where tokenIterator.hasNext() will return T3
-     *         |   +---- The token referenced by currentToken
-     *         +-------- The logical position of the TokenStream object, where the &quot;consume()&quot; would return T2
+     *            &circ;
+     *            |
+     *            +---- The current token, where the &quot;consume()&quot; would return T2 and currentIndex is 1
      * </pre>
      */
-    private ListIterator<Token> tokenIterator;
-    private Token currentToken;
+    private int currentIndex = -1;
     private boolean completed;
 
     public TokenStream( String content,
@@ -412,6 +416,29 @@ public class TokenStream {
         this.caseSensitive = caseSensitive;
         this.inputUppercased = caseSensitive ? inputString : content.toUpperCase();
         this.tokenizer = tokenizer;
+        this.sharedTokens = null;
+    }
+
+    /**
+     * Create a stream over the same content as the supplied stream, reusing the tokens it has already produced rather than
+     * tokenizing the content again. When this stream is {@link #start() started}, the shared tokens are passed to
+     * {@link #initializeTokens(List)}, so subclasses can still re-type them. Since tokens are {@link Immutable immutable}, any
+     * number of streams (each used by a single thread) can share the tokens of one stream.
+     * 
+     * @param tokenized the stream whose content and tokens are to be shared; may not be null
+     * @throws IllegalStateException if the supplied stream has not yet been {@link #start() started}
+     */
+    protected TokenStream( TokenStream tokenized ) {
+        CheckArg.isNotNull(tokenized, "tokenized");
+        if (tokenized.tokens == null) {
+            throw new IllegalStateException(CommonI18n.startMethodMustBeCalledBeforeSharingTokens.text());
+        }
+        this.inputString = tokenized.inputString;
+        this.inputContent = tokenized.inputContent;
+        this.caseSensitive = tokenized.caseSensitive;
+        this.inputUppercased = tokenized.inputUppercased;
+        this.tokenizer = tokenized.tokenizer;
+        this.sharedTokens = tokenized.tokens;
     }
 
     /**
@@ -423,21 +450,39 @@ public class TokenStream {
     public TokenStream start() throws ParsingException {
         // Create the tokens ...
         if (tokens == null) {
-            TokenFactory tokenFactory = caseSensitive ? new CaseSensitiveTokenFactory() : new CaseInsensitiveTokenFactory();
-            CharacterStream characterStream = new CharacterArrayStream(inputContent);
-            tokenizer.tokenize(characterStream, tokenFactory);
-            this.tokens = initializeTokens(tokenFactory.getTokens());
+            if (sharedTokens != null) {
+                // The content was already tokenized by another stream ...
+                this.tokens = pack(initializeTokens(sharedTokens));
+            } else {
+                TokenFactory tokenFactory = caseSensitive ? new CaseSensitiveTokenFactory() : new CaseInsensitiveTokenFactory();
+                CharacterStream characterStream = new CharacterArrayStream(inputContent);
+                tokenizer.tokenize(characterStream, tokenFactory);
+                this.tokens = pack(initializeTokens(tokenFactory.getTokens()));
+            }
         }
 
-        // Create the iterator ...
-        tokenIterator = this.tokens.listIterator();
-        moveToNextToken();
+        // Move to the first token ...
+        currentIndex = 0;
+        completed = this.tokens.isEmpty();
         return this;
     }
 
+    private PackedTokens pack( List<Token> tokens ) {
+        if (tokens instanceof PackedTokens) {
+            return (PackedTokens)tokens;
+        }
+        // The subclass replaced the tokens, so pack the replacements ...
+        PackedTokens packed = new PackedTokens(tokens.size());
+        for (Token token : tokens) {
+            packed.add(token.startIndex(), token.endIndex(), token.type(), token.position());
+        }
+        return packed;
+    }
+
     /**
      * Method to allow subclasses to preprocess the set of tokens and return the correct tokens to use. The default behavior is to
-     * simply return the supplied tokens.
+     * simply return the supplied tokens. The supplied list is not modifiable and creates each {@link Token} object only as it is
+     * requested, so subclasses that do not change any tokens should return the supplied list.
      * 
      * @param tokens
      * @return list of tokens.
@@ -450,11 +495,9 @@ public class TokenStream {
      * Method to allow tokens to be re-used from the start without re-tokenizing content.
      */
     public void rewind() {
-        // recreate the iterator ...
-        tokenIterator = this.tokens.listIterator();
-        completed = false;
-        currentToken = null;
-        moveToNextToken();
+        // move back to the first token ...
+        currentIndex = 0;
+        completed = this.tokens.isEmpty();
     }
 
     /**
@@ -476,7 +519,7 @@ public class TokenStream {
      * @throws NoSuchElementException if there is no previous token
      */
     public Position nextPosition() {
-        return currentToken().position();
+        return tokens.position(currentIndex());
     }
 
     /**
@@ -489,13 +532,13 @@ public class TokenStream {
     public int consumeInteger() throws ParsingException, IllegalStateException {
         if (completed) throwNoMoreContent();
         // Get the value from the current token ...
-        String value = currentToken().value();
+        String value = tokens.value(currentIndex());
         try {
             int result = Integer.parseInt(value);
             moveToNextToken();
             return result;
         } catch (NumberFormatException e) {
-            Position position = currentToken().position();
+            Position position = tokens.position(currentIndex());
             String msg = CommonI18n.expectingValidIntegerAtLineAndColumn.text(value, position.getLine(), position.getColumn());
             throw new ParsingException(position, msg);
         }
@@ -511,13 +554,13 @@ public class TokenStream {
     public long consumeLong() throws ParsingException, IllegalStateException {
         if (completed) throwNoMoreContent();
         // Get the value from the current token ...
-        String value = currentToken().value();
+        String value = tokens.value(currentIndex());
         try {
             long result = Long.parseLong(value);
             moveToNextToken();
             return result;
         } catch (NumberFormatException e) {
-            Position position = currentToken().position();
+            Position position = tokens.position(currentIndex());
             String msg = CommonI18n.expectingValidLongAtLineAndColumn.text(value, position.getLine(), position.getColumn());
             throw new ParsingException(position, msg);
         }
@@ -533,13 +576,13 @@ public class TokenStream {
     public boolean consumeBoolean() throws ParsingException, IllegalStateException {
         if (completed) throwNoMoreContent();
         // Get the value from the current token ...
-        String value = currentToken().value();
+        String value = tokens.value(currentIndex());
         try {
             boolean result = Boolean.parseBoolean(value);
             moveToNextToken();
             return result;
         } catch (NumberFormatException e) {
-            Position position = currentToken().position();
+            Position position = tokens.position(currentIndex());
             String msg = CommonI18n.expectingValidBooleanAtLineAndColumn.text(value, position.getLine(), position.getColumn());
             throw new ParsingException(position, msg);
         }
@@ -555,14 +598,14 @@ public class TokenStream {
     public String consume() throws ParsingException, IllegalStateException {
         if (completed) throwNoMoreContent();
         // Get the value from the current token ...
-        String result = currentToken().value();
+        String result = tokens.value(currentIndex());
         moveToNextToken();
         return result;
     }
 
     protected void throwNoMoreContent() throws ParsingException {
         String msg = CommonI18n.noMoreContent.text();
-        Position pos = tokens.isEmpty() ? new Position(-1, 1, 0) : tokens.get(tokens.size() - 1).position();
+        Position pos = tokens.isEmpty() ? new Position(-1, 1, 0) : tokens.position(tokens.size() - 1);
         throw new ParsingException(pos, msg);
     }
 
@@ -580,12 +623,12 @@ public class TokenStream {
     public void consume( String expected ) throws ParsingException, IllegalStateException {
         if (completed) {
             String msg = CommonI18n.noMoreContentButWasExpectingToken.text(expected);
-            throw new ParsingException(tokens.get(tokens.size() - 1).position(), msg);
+            throw new ParsingException(tokens.position(tokens.size() - 1), msg);
         }
         // Get the value from the current token ...
-        if (expected != ANY_VALUE && !currentToken().matches(expected)) {
-            String found = currentToken().value();
-            Position pos = currentToken().position();
+        if (expected != ANY_VALUE && !tokens.matches(currentIndex(), expected)) {
+            String found = tokens.value(currentIndex);
+            Position pos = tokens.position(currentIndex);
             String fragment = generateFragment();
             String msg = CommonI18n.unexpectedToken.text(expected, found, pos.getLine(), pos.getColumn(), fragment);
             throw new ParsingException(pos, msg);
@@ -604,12 +647,12 @@ public class TokenStream {
     public void consume( char expected ) throws ParsingException, IllegalStateException {
         if (completed) {
             String msg = CommonI18n.noMoreContentButWasExpectingCharacter.text(expected);
-            throw new ParsingException(tokens.get(tokens.size() - 1).position(), msg);
+            throw new ParsingException(tokens.position(tokens.size() - 1), msg);
         }
         // Get the value from the current token ...
-        if (!currentToken().matches(expected)) {
-            String found = currentToken().value();
-            Position pos = currentToken().position();
+        if (!tokens.matches(currentIndex(), expected)) {
+            String found = tokens.value(currentIndex);
+            Position pos = tokens.position(currentIndex);
             String fragment = generateFragment();
             String msg = CommonI18n.unexpectedCharacter.text(expected, found, pos.getLine(), pos.getColumn(), fragment);
             throw new ParsingException(pos, msg);
@@ -631,12 +674,12 @@ public class TokenStream {
     public void consume( int expectedType ) throws ParsingException, IllegalStateException {
         if (completed) {
             String msg = CommonI18n.noMoreContentButWasExpectingTokenType.text(expectedType);
-            throw new ParsingException(tokens.get(tokens.size() - 1).position(), msg);
+            throw new ParsingException(tokens.position(tokens.size() - 1), msg);
         }
         // Get the value from the current token ...
-        if (expectedType != ANY_TYPE && currentToken().type() != expectedType) {
-            String found = currentToken().value();
-            Position pos = currentToken().position();
+        if (expectedType != ANY_TYPE && tokens.type(currentIndex()) != expectedType) {
+            String found = tokens.value(currentIndex);
+            Position pos = tokens.position(currentIndex);
             String fragment = generateFragment();
             String msg = CommonI18n.unexpectedTokenType.text(expectedType, found, pos.getLine(), pos.getColumn(), fragment);
             throw new ParsingException(pos, msg);
@@ -781,19 +824,14 @@ public class TokenStream {
     public boolean canConsume( String currentExpected,
                                String... expectedForNextTokens ) throws IllegalStateException {
         if (completed) return false;
-        ListIterator<Token> iter = tokens.listIterator(tokenIterator.previousIndex());
-        if (!iter.hasNext()) return false;
-        Token token = iter.next();
-        if (currentExpected != ANY_VALUE && !token.matches(currentExpected)) return false;
+        int index = currentIndex();
+        if (currentExpected != ANY_VALUE && !tokens.matches(index, currentExpected)) return false;
         for (String nextExpected : expectedForNextTokens) {
-            if (!iter.hasNext()) return false;
-            token = iter.next();
+            if (++index == tokens.size()) return false;
             if (nextExpected == ANY_VALUE) continue;
-            if (!token.matches(nextExpected)) return false;
+            if (!tokens.matches(index, nextExpected)) return false;
         }
-        this.tokenIterator = iter;
-        this.currentToken = tokenIterator.hasNext() ? tokenIterator.next() : null;
-        this.completed = this.currentToken == null;
+        moveToToken(index + 1);
         return true;
     }
 
@@ -827,17 +865,13 @@ public class TokenStream {
      */
     public boolean canConsume( String[] nextTokens ) throws IllegalStateException {
         if (completed) return false;
-        ListIterator<Token> iter = tokens.listIterator(tokenIterator.previousIndex());
-        Token token = null;
+        int index = currentIndex();
         for (String nextExpected : nextTokens) {
-            if (!iter.hasNext()) return false;
-            token = iter.next();
-            if (nextExpected == ANY_VALUE) continue;
-            if (!token.matches(nextExpected)) return false;
+            if (index == tokens.size()) return false;
+            if (nextExpected != ANY_VALUE && !tokens.matches(index, nextExpected)) return false;
+            ++index;
         }
-        this.tokenIterator = iter;
-        this.currentToken = tokenIterator.hasNext() ? tokenIterator.next() : null;
-        this.completed = this.currentToken == null;
+        moveToToken(index);
         return true;
     }
 
@@ -871,17 +905,13 @@ public class TokenStream {
      */
     public boolean canConsume( Iterable<String> nextTokens ) throws IllegalStateException {
         if (completed) return false;
-        ListIterator<Token> iter = tokens.listIterator(tokenIterator.previousIndex());
-        Token token = null;
+        int index = currentIndex();
         for (String nextExpected : nextTokens) {
-            if (!iter.hasNext()) return false;
-            token = iter.next();
-            if (nextExpected == ANY_VALUE) continue;
-            if (!token.matches(nextExpected)) return false;
+            if (index == tokens.size()) return false;
+            if (nextExpected != ANY_VALUE && !tokens.matches(index, nextExpected)) return false;
+            ++index;
         }
-        this.tokenIterator = iter;
-        this.currentToken = tokenIterator.hasNext() ? tokenIterator.next() : null;
-        this.completed = this.currentToken == null;
+        moveToToken(index);
         return true;
     }
 
@@ -977,7 +1007,7 @@ public class TokenStream {
      * @throws IllegalStateException if this method was called before the stream was {@link #start() started}
      */
     public boolean matches( String expected ) throws IllegalStateException {
-        return !completed && (expected == ANY_VALUE || currentToken().matches(expected));
+        return !completed && (expected == ANY_VALUE || tokens.matches(currentIndex(), expected));
     }
 
     /**
@@ -988,7 +1018,7 @@ public class TokenStream {
      * @throws IllegalStateException if this method was called before the stream was {@link #start() started}
      */
     public boolean matches( char expected ) throws IllegalStateException {
-        return !completed && currentToken().matches(expected);
+        return !completed && tokens.matches(currentIndex(), expected);
     }
 
     /**
@@ -999,7 +1029,7 @@ public class TokenStream {
      * @throws IllegalStateException if this method was called before the stream was {@link #start() started}
      */
     public boolean matches( int expectedType ) throws IllegalStateException {
-        return !completed && currentToken().matches(expectedType);
+        return !completed && tokens.matchesType(currentIndex(), expectedType);
     }
 
     /**
@@ -1016,15 +1046,12 @@ public class TokenStream {
     public boolean matches( String currentExpected,
                             String... expectedForNextTokens ) throws IllegalStateException {
         if (completed) return false;
-        ListIterator<Token> iter = tokens.listIterator(tokenIterator.previousIndex());
-        if (!iter.hasNext()) return false;
-        Token token = iter.next();
-        if (currentExpected != ANY_VALUE && !token.matches(currentExpected)) return false;
+        int index = currentIndex();
+        if (currentExpected != ANY_VALUE && !tokens.matches(index, currentExpected)) return false;
         for (String nextExpected : expectedForNextTokens) {
-            if (!iter.hasNext()) return false;
-            token = iter.next();
+            if (++index == tokens.size()) return false;
             if (nextExpected == ANY_VALUE) continue;
-            if (!token.matches(nextExpected)) return false;
+            if (!tokens.matches(index, nextExpected)) return false;
         }
         return true;
     }
@@ -1041,13 +1068,11 @@ public class TokenStream {
      */
     public boolean matches( String[] nextTokens ) throws IllegalStateException {
         if (completed) return false;
-        ListIterator<Token> iter = tokens.listIterator(tokenIterator.previousIndex());
-        Token token = null;
+        int index = currentIndex();
         for (String nextExpected : nextTokens) {
-            if (!iter.hasNext()) return false;
-            token = iter.next();
-            if (nextExpected == ANY_VALUE) continue;
-            if (!token.matches(nextExpected)) return false;
+            if (index == tokens.size()) return false;
+            if (nextExpected != ANY_VALUE && !tokens.matches(index, nextExpected)) return false;
+            ++index;
         }
         return true;
     }
@@ -1064,13 +1089,11 @@ public class TokenStream {
      */
     public boolean matches( Iterable<String> nextTokens ) throws IllegalStateException {
         if (completed) return false;
-        ListIterator<Token> iter = tokens.listIterator(tokenIterator.previousIndex());
-        Token token = null;
+        int index = currentIndex();
         for (String nextExpected : nextTokens) {
-            if (!iter.hasNext()) return false;
-            token = iter.next();
-            if (nextExpected == ANY_VALUE) continue;
-            if (!token.matches(nextExpected)) return false;
+            if (index == tokens.size()) return false;
+            if (nextExpected != ANY_VALUE && !tokens.matches(index, nextExpected)) return false;
+            ++index;
         }
         return true;
     }
@@ -1089,15 +1112,12 @@ public class TokenStream {
     public boolean matches( int currentExpectedType,
                             int... expectedTypeForNextTokens ) throws IllegalStateException {
         if (completed) return false;
-        ListIterator<Token> iter = tokens.listIterator(tokenIterator.previousIndex());
-        if (!iter.hasNext()) return false;
-        Token token = iter.next();
-        if (currentExpectedType != ANY_TYPE && currentToken().type() != currentExpectedType) return false;
+        int index = currentIndex();
+        if (currentExpectedType != ANY_TYPE && tokens.type(index) != currentExpectedType) return false;
         for (int nextExpectedType : expectedTypeForNextTokens) {
-            if (!iter.hasNext()) return false;
-            token = iter.next();
+            if (++index == tokens.size()) return false;
             if (nextExpectedType == ANY_TYPE) continue;
-            if (token.type() != nextExpectedType) return false;
+            if (tokens.type(index) != nextExpectedType) return false;
         }
         return true;
     }
@@ -1114,13 +1134,11 @@ public class TokenStream {
      */
     public boolean matches( int[] typesForNextTokens ) throws IllegalStateException {
         if (completed) return false;
-        ListIterator<Token> iter = tokens.listIterator(tokenIterator.previousIndex());
-        Token token = null;
+        int index = currentIndex();
         for (int nextExpectedType : typesForNextTokens) {
-            if (!iter.hasNext()) return false;
-            token = iter.next();
-            if (nextExpectedType == ANY_TYPE) continue;
-            if (!token.matches(nextExpectedType)) return false;
+            if (index == tokens.size()) return false;
+            if (!tokens.matchesType(index, nextExpectedType)) return false;
+            ++index;
         }
         return true;
     }
@@ -1136,10 +1154,10 @@ public class TokenStream {
     public boolean matchesAnyOf( String firstOption,
                                  String... additionalOptions ) throws IllegalStateException {
         if (completed) return false;
-        Token current = currentToken();
-        if (current.matches(firstOption)) return true;
+        int index = currentIndex();
+        if (tokens.matches(index, firstOption)) return true;
         for (String nextOption : additionalOptions) {
-            if (current.matches(nextOption)) return true;
+            if (tokens.matches(index, nextOption)) return true;
         }
         return false;
     }
@@ -1153,9 +1171,9 @@ public class TokenStream {
      */
     public boolean matchesAnyOf( String[] options ) throws IllegalStateException {
         if (completed) return false;
-        Token current = currentToken();
+        int index = currentIndex();
         for (String option : options) {
-            if (current.matches(option)) return true;
+            if (tokens.matches(index, option)) return true;
         }
         return false;
     }
@@ -1169,9 +1187,9 @@ public class TokenStream {
      */
     public boolean matchesAnyOf( Iterable<String> options ) throws IllegalStateException {
         if (completed) return false;
-        Token current = currentToken();
+        int index = currentIndex();
         for (String option : options) {
-            if (current.matches(option)) return true;
+            if (tokens.matches(index, option)) return true;
         }
         return false;
     }
@@ -1187,7 +1205,7 @@ public class TokenStream {
     public boolean matchesAnyOf( int firstTypeOption,
                                  int... additionalTypeOptions ) throws IllegalStateException {
         if (completed) return false;
-        int currentType = currentToken().type();
+        int currentType = tokens.type(currentIndex());
         if (currentType == firstTypeOption) return true;
         for (int nextTypeOption : additionalTypeOptions) {
             if (currentType == nextTypeOption) return true;
@@ -1204,7 +1222,7 @@ public class TokenStream {
      */
     public boolean matchesAnyOf( int[] typeOptions ) throws IllegalStateException {
         if (completed) return false;
-        int currentType = currentToken().type();
+        int currentType = tokens.type(currentIndex());
         for (int nextTypeOption : typeOptions) {
             if (currentType == nextTypeOption) return true;
         }
@@ -1218,7 +1236,7 @@ public class TokenStream {
      * @throws IllegalStateException if this method was called before the stream was {@link #start() started}
      */
     public boolean hasNext() {
-        if (tokenIterator == null) {
+        if (currentIndex < 0) {
             throw new IllegalStateException(CommonI18n.startMethodMustBeCalledBeforeNext.text());
         }
         return !completed;
@@ -1231,32 +1249,32 @@ public class TokenStream {
      */
     @Override
     public String toString() {
-        ListIterator<Token> iter = tokens.listIterator(tokenIterator.previousIndex());
+        // Once completed, show the last token ...
+        int index = completed ? tokens.size() - 1 : currentIndex;
         StringBuilder sb = new StringBuilder();
-        if (iter.hasNext()) {
-            sb.append(iter.next());
+        if (index >= 0 && index < tokens.size()) {
+            sb.append(tokens.value(index));
             int count = 1;
-            while (iter.hasNext()) {
+            while (++index < tokens.size()) {
                 if (count > 20) {
                     sb.append(" ...");
                     break;
                 }
                 sb.append("  ");
                 ++count;
-                sb.append(iter.next());
+                sb.append(tokens.value(index));
             }
         }
         return sb.toString();
     }
 
     private void moveToNextToken() {
-        // And move the currentToken to the next token ...
-        if (!tokenIterator.hasNext()) {
-            completed = true;
-            currentToken = null;
-        } else {
-            currentToken = tokenIterator.next();
-        }
+        moveToToken(currentIndex + 1);
+    }
+
+    private void moveToToken( int index ) {
+        currentIndex = index;
+        completed = index >= tokens.size();
     }
 
     /**
@@ -1267,14 +1285,24 @@ public class TokenStream {
      * @throws NoSuchElementException if there are no more tokens
      */
     final Token currentToken() throws IllegalStateException, NoSuchElementException {
-        if (currentToken == null) {
-            if (completed) {
-                throw new NoSuchElementException(CommonI18n.noMoreContent.text());
-            }
+        return tokens.get(currentIndex());
+    }
+
+    /**
+     * Get the index of the current token.
+     * 
+     * @return the index of the current token
+     * @throws IllegalStateException if this method was called before the stream was {@link #start() started}
+     * @throws NoSuchElementException if there are no more tokens
+     */
+    private int currentIndex() throws IllegalStateException, NoSuchElementException {
+        if (completed) {
+            throw new NoSuchElementException(CommonI18n.noMoreContent.text());
+        }
+        if (currentIndex < 0) {
             throw new IllegalStateException(CommonI18n.startMethodMustBeCalledBeforeConsumingOrMatching.text());
         }
-        assert currentToken != null;
-        return currentToken;
+        return currentIndex;
     }
 
     /**
@@ -1309,25 +1337,25 @@ public class TokenStream {
      * @throws NoSuchElementException if there is no previous token
      */
     final Token previousToken() throws IllegalStateException, NoSuchElementException {
-        if (currentToken == null) {
-            if (completed) {
-                if (tokens.isEmpty()) {
-                    throw new NoSuchElementException(CommonI18n.noMoreContent.text());
-                }
-                return tokens.get(tokens.size() - 1);
-            }
+        if (currentIndex < 0) {
             throw new IllegalStateException(CommonI18n.startMethodMustBeCalledBeforeConsumingOrMatching.text());
         }
-        if (tokenIterator.previousIndex() == 0) {
+        if (completed) {
+            if (tokens.isEmpty()) {
+                throw new NoSuchElementException(CommonI18n.noMoreContent.text());
+            }
+            return tokens.get(tokens.size() - 1);
+        }
+        if (currentIndex == 0) {
             throw new NoSuchElementException(CommonI18n.noMoreContent.text());
         }
-        return tokens.get(tokenIterator.previousIndex() - 1);
+        return tokens.get(currentIndex - 1);
     }
 
     String generateFragment() {
         // Find the current position ...
-        assert currentToken != null;
-        int startIndex = currentToken.startIndex();
+        assert !completed && currentIndex >= 0;
+        int startIndex = tokens.startIndex(currentIndex);
         return generateFragment(inputString, startIndex, 20, " ===>> ");
     }
 
@@ -1721,7 +1749,7 @@ public class TokenStream {
          */
         @Override
         public final boolean matches( String expected ) {
-            return matchString().substring(startIndex, endIndex).equals(expected);
+            return expected.length() == length() && matchString().regionMatches(startIndex, expected, 0, length());
         }
 
         /**
@@ -1731,7 +1759,7 @@ public class TokenStream {
          */
         @Override
         public final boolean matches( int expectedType ) {
-            return expectedType == ANY_TYPE || (currentToken().type() & expectedType) == expectedType;
+            return expectedType == ANY_TYPE || (type & expectedType) == expectedType;
         }
 
         /**
@@ -1800,8 +1828,252 @@ public class TokenStream {
         }
     }
 
+    /**
+     * A compact, array-backed list of the tokens in the content. Rather than one {@link Token} object (plus its {@link Position})
+     * per token, the offsets, types and positions of all tokens are stored in parallel primitive arrays, and the tokens are matched
+     * directly against the content. {@link Token} objects and token values are only created when they are requested.
+     * <p>
+     * The list cannot be modified once it has been populated, so it can be shared by several streams over the same content.
+     * </p>
+     */
+    protected final class PackedTokens extends AbstractList<Token> implements RandomAccess {
+        private int size;
+        private int[] starts;
+        private int[] ends;
+        private int[] types;
+        private int[] positionIndexes;
+        private int[] lines;
+        private int[] columns;
+
+        protected PackedTokens( int initialCapacity ) {
+            int capacity = Math.max(initialCapacity, INITIAL_TOKEN_CAPACITY);
+            this.starts = new int[capacity];
+            this.ends = new int[capacity];
+            this.types = new int[capacity];
+            this.positionIndexes = new int[capacity];
+            this.lines = new int[capacity];
+            this.columns = new int[capacity];
+        }
+
+        protected void add( int startIndex,
+                            int endIndex,
+                            int type,
+                            Position position ) {
+            if (size == starts.length) {
+                int capacity = size * 2;
+                starts = Arrays.copyOf(starts, capacity);
+                ends = Arrays.copyOf(ends, capacity);
+                types = Arrays.copyOf(types, capacity);
+                positionIndexes = Arrays.copyOf(positionIndexes, capacity);
+                lines = Arrays.copyOf(lines, capacity);
+                columns = Arrays.copyOf(columns, capacity);
+            }
+            starts[size] = startIndex;
+            ends[size] = endIndex;
+            types[size] = type;
+            positionIndexes[size] = position.getIndexInContent();
+            lines[size] = position.getLine();
+            columns[size] = position.getColumn();
+            ++size;
+        }
+
+        /**
+         * {@inheritDoc}
+         * 
+         * @see java.util.AbstractCollection#size()
+         */
+        @Override
+        public int size() {
+            return size;
+        }
+
+        /**
+         * {@inheritDoc}
+         * <p>
+         * Each call creates a new {@link Token} object that refers to the token at the supplied index.
+         * </p>
+         * 
+         * @see java.util.AbstractList#get(int)
+         */
+        @Override
+        public Token get( int index ) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            }
+            return new PackedToken(this, index);
+        }
+
+        final int type( int index ) {
+            return types[index];
+        }
+
+        final int startIndex( int index ) {
+            return starts[index];
+        }
+
+        final int endIndex( int index ) {
+            return ends[index];
+        }
+
+        final String value( int index ) {
+            return inputString.substring(starts[index], ends[index]);
+        }
+
+        final Position position( int index ) {
+            return new Position(positionIndexes[index], lines[index], columns[index]);
+        }
+
+        final boolean matches( int index,
+                               String expected ) {
+            // Compare in place rather than creating the token's value; the upper-cased content is the same as the content
+            // when this stream is case-sensitive ...
+            int length = ends[index] - starts[index];
+            return expected.length() == length && inputUppercased.regionMatches(starts[index], expected, 0, length);
+        }
+
+        final boolean matches( int index,
+                               char expected ) {
+            return ends[index] - starts[index] == 1 && inputUppercased.charAt(starts[index]) == expected;
+        }
+
+        final boolean matchesType( int index,
+                                   int expectedType ) {
+            return expectedType == ANY_TYPE || (types[index] & expectedType) == expectedType;
+        }
+    }
+
+    /**
+     * An immutable {@link Token} that refers to one of the {@link PackedTokens packed tokens}.
+     */
+    @Immutable
+    protected final class PackedToken implements Token {
+        private final PackedTokens tokens;
+        private final int index;
+
+        protected PackedToken( PackedTokens tokens,
+                               int index ) {
+            this.tokens = tokens;
+            this.index = index;
+        }
+
+        /**
+         * {@inheritDoc}
+         * 
+         * @see org.modeshape.common.text.TokenStream.Token#withType(int)
+         */
+        @Override
+        public Token withType( int typeMask ) {
+            int type = tokens.type(index) | typeMask;
+            if (caseSensitive) {
+                return new CaseSensitiveToken(startIndex(), endIndex(), type, position());
+            }
+            return new CaseInsensitiveToken(startIndex(), endIndex(), type, position());
+        }
+
+        /**
+         * {@inheritDoc}
+         * 
+         * @see org.modeshape.common.text.TokenStream.Token#type()
+         */
+        @Override
+        public int type() {
+            return tokens.type(index);
+        }
+
+        /**
+         * {@inheritDoc}
+         * 
+         * @see org.modeshape.common.text.TokenStream.Token#startIndex()
+         */
+        @Override
+        public int startIndex() {
+            return tokens.startIndex(index);
+        }
+
+        /**
+         * {@inheritDoc}
+         * 
+         * @see org.modeshape.common.text.TokenStream.Token#endIndex()
+         */
+        @Override
+        public int endIndex() {
+            return tokens.endIndex(index);
+        }
+
+        /**
+         * {@inheritDoc}
+         * 
+         * @see org.modeshape.common.text.TokenStream.Token#length()
+         */
+        @Override
+        public int length() {
+            return tokens.endIndex(index) - tokens.startIndex(index);
+        }
+
+        /**
+         * {@inheritDoc}
+         * 
+         * @see org.modeshape.common.text.TokenStream.Token#matches(char)
+         */
+        @Override
+        public boolean matches( char expected ) {
+            return tokens.matches(index, expected);
+        }
+
+        /**
+         * {@inheritDoc}
+         * 
+         * @see org.modeshape.common.text.TokenStream.Token#matches(java.lang.String)
+         */
+        @Override
+        public boolean matches( String expected ) {
+            return tokens.matches(index, expected);
+        }
+
+        /**
+         * {@inheritDoc}
+         * 
+         * @see org.modeshape.common.text.TokenStream.Token#matches(int)
+         */
+        @Override
+        public boolean matches( int expectedType ) {
+            return tokens.matchesType(index, expectedType);
+        }
+
+        /**
+         * {@inheritDoc}
+         * 
+         * @see org.modeshape.common.text.TokenStream.Token#value()
+         */
+        @Override
+        public String value() {
+            return tokens.value(index);
+        }
+
+        /**
+         * {@inheritDoc}
+         * 
+         * @see org.modeshape.common.text.TokenStream.Token#position()
+         */
+        @Override
+        public Position position() {
+            return tokens.position(index);
+        }
+
+        /**
+         * {@inheritDoc}
+         * 
+         * @see java.lang.Object#toString()
+         */
+        @Override
+        public String toString() {
+            return value();
+        }
+    }
+
     protected abstract class TokenFactory implements Tokens {
-        protected final List<Token> tokens = new ArrayList<Token>();
+        // Start small rather than sizing from the input, since the arrays double in size as they fill ...
+        protected final PackedTokens tokens = new PackedTokens(INITIAL_TOKEN_CAPACITY);
 
         /**
          * {@inheritDoc}
@@ -1845,7 +2117,7 @@ public class TokenStream {
                               int startIndex,
                               int endIndex,
                               int type ) {
-            tokens.add(new CaseSensitiveToken(startIndex, endIndex, type, position));
+            tokens.add(startIndex, endIndex, type, position);
         }
     }
 
@@ -1860,7 +2132,7 @@ public class TokenStream {
                               int startIndex,
                               int endIndex,
                               int type ) {
-            tokens.add(new CaseInsensitiveToken(startIndex, endIndex, type, position));
+            tokens.add(startIndex, endIndex, type, position);
         }
     }
 
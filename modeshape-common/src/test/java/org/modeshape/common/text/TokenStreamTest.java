@@ -25,8 +25,11 @@ package org.modeshape.common.text;
 
 import static org.hamcrest.core.Is.is;
 import static org.junit.Assert.assertThat;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import org.modeshape.common.text.TokenStream.BasicTokenizer;
+import org.modeshape.common.text.TokenStream.Token;
 import org.modeshape.common.text.TokenStream.Tokenizer;
 import org.junit.Before;
 import org.junit.Test;
@@ -457,4 +460,40 @@ public class TokenStreamTest {
     	assertThat(tokens.nextPosition().getColumn(), is(7));
 
     }
+
+    @Test
+    public void shouldUseTokensReplacedByInitializeTokens() {
+        final int keyword = 64;
+        tokens = new TokenStream(content, tokenizer, false) {
+            @Override
+            protected List<Token> initializeTokens( List<Token> tokens ) {
+                // Re-type the first token, and drop the last token ...
+                List<Token> result = new ArrayList<Token>(tokens.subList(0, tokens.size() - 1));
+                result.set(0, result.get(0).withType(keyword));
+                return result;
+            }
+        };
+        tokens.start();
+
+        assertThat(tokens.matches(keyword), is(true));
+        assertThat(tokens.matches(WORD), is(true));
+        tokens.consume("SELECT");
+        assertThat(tokens.matches(keyword), is(false));
+        assertThat(tokens.canConsume("ALL", "COLUMNS", "FROM", "THIS"), is(true));
+        assertThat(tokens.hasNext(), is(false));
+    }
+
+    @Test
+    public void shouldMatchAndConsumeTokensAfterRewinding() {
+        makeCaseInsensitive();
+        tokens.consume("SELECT", "ALL", "COLUMNS", "FROM", "THIS", "TABLE");
+        assertThat(tokens.hasNext(), is(false));
+        assertThat(tokens.previousPosition().getIndexInContent(), is(29));
+
+        tokens.rewind();
+        assertThat(tokens.hasNext(), is(true));
+        assertThat(tokens.matches("SELECT", "ALL", TokenStream.ANY_VALUE), is(true));
+        assertThat(tokens.consume(), is("Select"));
+        assertThat(tokens.currentToken().value(), is("all"));
+    }
 }
@@ -0,0 +1,112 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ * See the AUTHORS.txt file in the distribution for a full listing of 
+ * individual contributors.
+ *
+ * ModeShape is free software. Unless otherwise indicated, all code in ModeShape
+ * is licensed to you under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ * 
+ * ModeShape is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.modeshape.jcr.api;
+
+import java.util.Map;
+import javax.jcr.RepositoryException;
+import javax.jcr.Value;
+
+/**
+ * A <code>BulkLoader</code> object is used to load very large numbers of new nodes into a repository, without the overhead of
+ * creating those nodes through a {@link javax.jcr.Session}. The nodes are written directly into the repository's storage in large
+ * batches, and the content is indexed in a single pass when the load is {@link #finish() finished}. Because of this, the nodes
+ * are not validated against the node type definitions of their parents, and no auto-created properties or child nodes are
+ * created; it is the responsibility of the caller to supply valid content.
+ * <p>
+ * Each batch is written atomically together with a checkpoint that records how many nodes have been loaded. If a load fails,
+ * a new bulk loader can be {@link RepositoryManager#createBulkLoader(String, String, int, boolean) created} with the same load
+ * identifier and fed the same sequence of nodes: the nodes that were already loaded are skipped (and are given the same
+ * identifiers as before), and loading resumes after the last checkpoint.
+ * </p>
+ * <p>
+ * A <code>BulkLoader</code> object can be acquired from the {@link RepositoryManager} and is not thread-safe.
+ * </p>
+ * 
+ * @since 3.7
+ */
+public interface BulkLoader {
+
+    /**
+     * Get the identifier of this load, which can be used to resume the load should it fail.
+     * 
+     * @return the load identifier; never null
+     */
+    String getLoadId();
+
+    /**
+     * Get the number of nodes that were successfully loaded by prior attempts of the load with the same identifier. The first
+     * nodes added with {@link #addNode(String, String, String, Map)} are skipped until this number of nodes have been added.
+     * 
+     * @return the number of nodes already loaded prior to this loader being created; never negative
+     */
+    long getCheckpointedNodeCount();
+
+    /**
+     * Get the total number of nodes added to this loader, including any nodes that were skipped because they were loaded by prior
+     * attempts.
+     * 
+     * @return the number of nodes added; never negative
+     */
+    long getNodeCount();
+
+    /**
+     * Add a new node to the load. The node is written to the repository as part of the next batch. The referrers of the nodes
+     * referenced by any REFERENCE or WEAKREFERENCE properties are updated when the batch is written.
+     * 
+     * @param parentIdentifier the identifier of the parent node, which must be either the node at which the load is rooted, an
+     *        existing node below it, or a node previously added to this loader; or null if the parent is the node at which the
+     *        load is rooted
+     * @param name the name of the new node; may not be null
+     * @param primaryType the name of the new node's primary type; may not be null
+     * @param properties the properties for the new node, where each value is either a {@link Value} or an array of {@link Value}
+     *        objects and where the mixin types can be specified with the "jcr:mixinTypes" property; may be null or empty
+     * @return the identifier of the new node; never null
+     * @throws javax.jcr.ItemNotFoundException if the parent node, or a node referenced by a REFERENCE property, does not exist
+     * @throws javax.jcr.nodetype.ConstraintViolationException if the parent node is not the node at which the load is rooted or
+     *         below it
+     * @throws javax.jcr.AccessDeniedException if the session may not add nodes below the parent node
+     * @throws RepositoryException if the node could not be added or if the batch could not be written
+     */
+    String addNode( String parentIdentifier,
+                    String name,
+                    String primaryType,
+                    Map<String, ?> properties ) throws RepositoryException;
+
+    /**
+     * Write all nodes added since the last batch and record a new checkpoint. This is called automatically whenever a batch is
+     * full, but it may be called at any time.
+     * 
+     * @throws RepositoryException if the batch could not be written
+     */
+    void checkpoint() throws RepositoryException;
+
+    /**
+     * Write all remaining nodes, index the loaded content, and remove the checkpoint for this load. This loader may not be used
+     * after this method is called.
+     * 
+     * @return the problems that occurred while finishing the load; never null
+     * @throws RepositoryException if the remaining nodes could not be written
+     */
+    Problems finish() throws RepositoryException;
+}
@@ -86,6 +86,28 @@ public interface RepositoryManager {
      */
     Problems backupRepository( File backupDirectory ) throws RepositoryException;
 
+    /**
+     * Begin a backup operation of the entire repository, writing to the specified directory only the content that was changed
+     * since the backup in the previous backup directory. The resulting backup can be restored only while the previous backup (and
+     * any backup upon which it is in turn based) still exists at its current location.
+     * <p>
+     * The changes are tracked only while the repository is running, so a full backup is written whenever the changes since the
+     * previous backup are not known (e.g., when the repository was restarted after that backup, or when that backup was not the
+     * most recent backup of this repository).
+     * </p>
+     * 
+     * @param backupDirectory the directory on the local file system into which all backup files will be written; this directory
+     *        need not exist, but the process must have write privilege for this directory
+     * @param previousBackupDirectory the directory containing the most recent backup of this repository, or null if a full backup
+     *        should be written
+     * @return the problems that occurred during the backup operation
+     * @throws AccessDeniedException if the current session does not have sufficient privileges to perform the backup
+     * @throws RepositoryException if the backup cannot be run
+     * @since 3.7
+     */
+    Problems backupRepository( File backupDirectory,
+                               File previousBackupDirectory ) throws RepositoryException;
+
     /**
      * Begin a restore operation of the entire repository, reading the backup files in the specified directory on the local file
      * system. Upon completion of the restore operation, the repository will be restarted automatically.
@@ -107,4 +129,29 @@ public interface RepositoryManager {
      */
     Problems restoreRepository( File backupDirectory ) throws RepositoryException;
 
+    /**
+     * Create a {@link BulkLoader} that can load very large numbers of new nodes below the node at the supplied path, writing the
+     * nodes directly to the repository's storage in batches rather than through a session. If a previous load with the same
+     * identifier did not finish, the new loader will resume that load after its last checkpoint.
+     * <p>
+     * Observation events are only generated for the loaded nodes if requested; either way, the loaded content is indexed in a
+     * single pass when the load is {@link BulkLoader#finish() finished}.
+     * </p>
+     * 
+     * @param parentAbsPath the absolute path of the existing node below which the content is to be loaded; may not be null
+     * @param loadId the identifier of the load, used to resume a failed load; may not be null
+     * @param batchSize the maximum number of nodes that are written in each batch; must be positive
+     * @param generateEvents true if observation events should be generated for the loaded nodes, or false otherwise
+     * @return the bulk loader; never null
+     * @throws AccessDeniedException if the current session does not have sufficient privileges to add nodes and properties below
+     *         the parent
+     * @throws javax.jcr.PathNotFoundException if there is no node at the supplied path
+     * @throws RepositoryException if the loader cannot be created
+     * @since 3.7
+     */
+    BulkLoader createBulkLoader( String parentAbsPath,
+                                 String loadId,
+                                 int batchSize,
+                                 boolean generateEvents ) throws RepositoryException;
+
 }
@@ -29,7 +29,13 @@ public enum DurationMetric {
      * instances are strings containing the sequencer name and the input and output paths.
      */
     SEQUENCER_EXECUTION_TIME("sequencer-execution-time", "Sequencing duration",
-                             "The metric measuring how long sequencers take to run and save the changes.");
+                             "The metric measuring how long sequencers take to run and save the changes."),
+    /**
+     * The metric that captures how long sequencing work waits in the queue before a sequencer starts on it. Note that the
+     * payload of the {@link DurationActivity} instances are strings containing the sequencer name and the input path.
+     */
+    SEQUENCER_QUEUE_TIME("sequencer-queue-time", "Sequencing wait time",
+                         "The metric measuring how long sequencing work waits before the sequencer starts on it.");
 
     private static final Map<String, DurationMetric> BY_LITERAL;
     private static final Map<String, DurationMetric> BY_NAME;
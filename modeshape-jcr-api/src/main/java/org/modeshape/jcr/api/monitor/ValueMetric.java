@@ -84,7 +84,52 @@ public enum ValueMetric {
     /**
      * The metric that records the number of nodes that were sequenced.
      */
-    SEQUENCED_COUNT("sequenced-count", false, "Sequenced nodes", "The number of nodes that were sequenced during the window.");
+    SEQUENCED_COUNT("sequenced-count", false, "Sequenced nodes", "The number of nodes that were sequenced during the window."),
+    /**
+     * The metric that records the number of change sets that are in the queues of the repository's internal change bus and that
+     * are awaiting delivery to the bus' listeners.
+     */
+    CHANGE_BUS_QUEUE_SIZE("change-bus-queue-size", true, "Change bus queue size",
+                          "The number of change sets at the end of the window that have yet to be delivered to internal listeners"),
+    /**
+     * The metric that records the number of change sets that were dropped because the queue of a listener of the repository's
+     * internal change bus was full.
+     */
+    CHANGE_BUS_DROPPED_COUNT("change-bus-dropped-count", false, "Dropped change sets",
+                             "The number of change sets that were not delivered to internal listeners during the window because their queues were full"),
+    /**
+     * The metric that records the number of requested nodes that were found in the bounded workspace node caches.
+     */
+    NODE_CACHE_HITS("node-cache-hits", false, "Node cache hits",
+                    "The number of requested nodes that were found in the workspace node caches during the window"),
+    /**
+     * The metric that records the number of requested nodes that were not found in the bounded workspace node caches and had to
+     * be read from the store.
+     */
+    NODE_CACHE_MISSES("node-cache-misses", false, "Node cache misses",
+                      "The number of requested nodes that had to be read from the store during the window"),
+    /**
+     * The metric that records the number of nodes that were evicted from the bounded workspace node caches.
+     */
+    NODE_CACHE_EVICTIONS("node-cache-evictions", false, "Node cache evictions",
+                         "The number of nodes that were evicted from the workspace node caches during the window"),
+    /**
+     * The metric that records the number of nodes whose index entries were rebuilt while re-indexing the repository content.
+     */
+    REINDEXED_NODE_COUNT("reindexed-node-count", false, "Re-indexed nodes",
+                         "The number of nodes that were re-indexed during the window"),
+    /**
+     * The metric that records the number of queued index operations that have not yet been applied to the indexes, when the
+     * repository applies changes to the indexes asynchronously.
+     */
+    INDEXING_QUEUE_SIZE("indexing-queue-size", true, "Indexing queue size",
+                        "The number of queued index operations at the end of the window that have yet to be applied to the indexes"),
+    /**
+     * The metric that records the age in milliseconds of the oldest queued index operation that has not yet been applied to the
+     * indexes, when the repository applies changes to the indexes asynchronously.
+     */
+    INDEXING_LAG("indexing-lag", true, "Indexing lag",
+                 "The age in milliseconds of the oldest queued index operation at the end of the window that has yet to be applied to the indexes");
 
     private static final Map<String, ValueMetric> BY_LITERAL;
     private static final Map<String, ValueMetric> BY_NAME;
@@ -38,6 +38,23 @@ public interface Query extends javax.jcr.query.Query {
      */
     public static final String FULL_TEXT_SEARCH = "search";
 
+    /**
+     * The index consistency with which a query sees all of the changes saved before it was executed, including those saved by
+     * the same session. When the repository applies changes to the indexes asynchronously, such a query waits (for a limited
+     * time) until those changes have been indexed.
+     * 
+     * @see #setIndexConsistency(String)
+     */
+    public static final String WAIT_FOR_OWN_WRITES = "wait-for-own-writes";
+
+    /**
+     * The index consistency with which a query uses the indexes as they are, and may not see the most recently saved changes
+     * when the repository applies changes to the indexes asynchronously.
+     * 
+     * @see #setIndexConsistency(String)
+     */
+    public static final String BEST_EFFORT = "best-effort";
+
     /**
      * Signal that the query, if currently {@link Query#execute() executing}, should be cancelled and stopped (with an exception).
      * This method does not block until the query is actually stopped.
@@ -54,6 +71,16 @@ public interface Query extends javax.jcr.query.Query {
      */
     public String getAbstractQueryModelRepresentation();
 
+    /**
+     * Set the consistency with the indexes that this query requires, overriding the repository's default. This only has an
+     * effect when the repository applies changes to the indexes asynchronously.
+     * 
+     * @param consistency either {@link #WAIT_FOR_OWN_WRITES} or {@link #BEST_EFFORT}, or null if the repository's default
+     *        should be used
+     * @throws IllegalArgumentException if the consistency is not one of the supported values
+     */
+    public void setIndexConsistency( String consistency );
+
     /**
      * Generates a plan for the this query and returns a <code>{@link QueryResult}</code> object that contains no results (nodes
      * or rows) but does have a query plan.
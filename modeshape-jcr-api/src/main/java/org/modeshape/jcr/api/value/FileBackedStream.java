@@ -0,0 +1,53 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ * See the AUTHORS.txt file in the distribution for a full listing of 
+ * individual contributors. 
+ *
+ * ModeShape is free software. Unless otherwise indicated, all code in ModeShape
+ * is licensed to you under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * ModeShape is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.modeshape.jcr.api.value;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * An interface implemented by the {@link javax.jcr.Binary#getStream() streams} of binary values whose content is stored in a
+ * local file. It allows a range of the content to be transferred directly from the file to a channel, without first being copied
+ * through an intermediate buffer.
+ * 
+ * @see java.nio.channels.FileChannel#transferTo(long, long, WritableByteChannel)
+ * @since 3.7
+ */
+public interface FileBackedStream {
+
+    /**
+     * Transfer a range of the binary content to the supplied channel. This does not change the position of the stream, and
+     * neither closes the stream nor the channel.
+     * 
+     * @param position the position in the content of the first byte to transfer; must not be negative
+     * @param count the maximum number of bytes to transfer; must not be negative
+     * @param target the channel to which the bytes are written; may not be null
+     * @return the number of bytes that were transferred, which is less than {@code count} only if the end of the content was
+     *         reached
+     * @throws IOException if there is a problem reading the content or writing to the channel
+     */
+    long transferTo( long position,
+                     long count,
+                     WritableByteChannel target ) throws IOException;
+}
@@ -0,0 +1,191 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ * See the AUTHORS.txt file in the distribution for a full listing of 
+ * individual contributors.
+ *
+ * ModeShape is free software. Unless otherwise indicated, all code in ModeShape
+ * is licensed to you under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ * 
+ * ModeShape is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.modeshape.jcr;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import org.modeshape.common.annotation.GuardedBy;
+import org.modeshape.common.annotation.Immutable;
+import org.modeshape.common.annotation.ThreadSafe;
+import org.modeshape.jcr.bus.BatchingChangeSetListener;
+import org.modeshape.jcr.cache.NodeKey;
+import org.modeshape.jcr.cache.change.ChangeSet;
+import org.modeshape.jcr.cache.change.ChangeSetListener;
+
+/**
+ * A {@link ChangeSetListener} that records the keys of all nodes changed in the repository since the most recent backup, so that
+ * the next backup can be written incrementally and contain only the documents that changed since that backup.
+ * <p>
+ * Nothing is recorded until the first backup {@link #startTracking(String) starts tracking}, and the record is abandoned (forcing
+ * the next backup to be a full backup) if more than the maximum number of keys are changed between two backups. The record is
+ * kept only in memory, so the first backup after the repository is started is always a full backup. Likewise, the record is
+ * abandoned if the change bus reports that change sets were dropped before they could be delivered to this listener.
+ * </p>
+ * 
+ * @see BackupService
+ */
+@ThreadSafe
+public class BackupChangeTracker implements BatchingChangeSetListener {
+
+    /**
+     * By default, at most 1 million changed node keys (or roughly 100 MB) are recorded between backups.
+     */
+    public static final int DEFAULT_MAXIMUM_NUMBER_OF_KEYS = 1000000;
+
+    private final int maximumNumberOfKeys;
+    private final Lock lock = new ReentrantLock();
+    @GuardedBy( "lock" )
+    private String backupId;
+    @GuardedBy( "lock" )
+    private Set<NodeKey> changedKeys = new HashSet<NodeKey>();
+    @GuardedBy( "lock" )
+    private boolean overflowed;
+
+    protected BackupChangeTracker( int maximumNumberOfKeys ) {
+        this.maximumNumberOfKeys = maximumNumberOfKeys;
+    }
+
+    @Override
+    public void notify( ChangeSet changeSet ) {
+        if (changeSet == null) return;
+        Set<NodeKey> keys = changeSet.changedNodes();
+        if (keys.isEmpty()) return;
+        lock.lock();
+        try {
+            record(keys);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void notify( List<ChangeSet> changeSets,
+                        long droppedCount ) {
+        lock.lock();
+        try {
+            if (droppedCount > 0L) {
+                // Some changes were never delivered, so the next backup will have to be a full backup ...
+                overflow();
+                return;
+            }
+            for (ChangeSet changeSet : changeSets) {
+                record(changeSet.changedNodes());
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @GuardedBy( "lock" )
+    private void record( Set<NodeKey> keys ) {
+        if (backupId == null || overflowed) return;
+        changedKeys.addAll(keys);
+        if (changedKeys.size() > maximumNumberOfKeys) {
+            // Too many changes to track, so the next backup will have to be a full backup ...
+            overflow();
+        }
+    }
+
+    @GuardedBy( "lock" )
+    private void overflow() {
+        if (backupId == null) return;
+        overflowed = true;
+        changedKeys = new HashSet<NodeKey>();
+    }
+
+    /**
+     * Get a snapshot of the keys of the nodes changed since the most recent backup started tracking. Because the listeners are
+     * notified asynchronously, this includes the changes that were saved before that backup started but were delivered only
+     * afterward.
+     * 
+     * @return the keys of the changed nodes; never null but possibly empty
+     */
+    public Set<NodeKey> getChangedKeysSinceLastBackup() {
+        lock.lock();
+        try {
+            return new HashSet<NodeKey>(changedKeys);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Start recording the changes made since the backup with the supplied identifier, and return the changes that were recorded
+     * since the previous backup.
+     * 
+     * @param newBackupId the identifier of the backup that is starting; may not be null
+     * @return the changes recorded since the previous backup; never null
+     */
+    public Changes startTracking( String newBackupId ) {
+        assert newBackupId != null;
+        lock.lock();
+        try {
+            Changes changes = new Changes(backupId, overflowed ? null : changedKeys);
+            backupId = newBackupId;
+            changedKeys = new HashSet<NodeKey>();
+            overflowed = false;
+            return changes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The keys of the nodes that were changed since a particular backup.
+     */
+    @Immutable
+    public static final class Changes {
+        private final String backupId;
+        private final Set<NodeKey> changedKeys;
+
+        protected Changes( String backupId,
+                           Set<NodeKey> changedKeys ) {
+            this.backupId = backupId;
+            this.changedKeys = changedKeys != null ? Collections.unmodifiableSet(changedKeys) : null;
+        }
+
+        /**
+         * Determine whether these changes are a complete record of all changes made since the backup with the supplied identifier.
+         * 
+         * @param previousBackupId the identifier of the previous backup; may be null
+         * @return true if these are all of the changes made since that backup, or false otherwise
+         */
+        public boolean isCompleteSince( String previousBackupId ) {
+            return backupId != null && changedKeys != null && backupId.equals(previousBackupId);
+        }
+
+        /**
+         * Get the keys of the nodes that were changed, which includes the keys of nodes that were removed.
+         * 
+         * @return the keys of the changed nodes; never null if the changes are complete
+         */
+        public Set<NodeKey> getChangedKeys() {
+            return changedKeys;
+        }
+    }
+}
@@ -44,6 +44,8 @@ import org.modeshape.jcr.InfinispanUtil.Sequence;
 import org.modeshape.jcr.JcrRepository.RunningState;
 import org.modeshape.jcr.cache.NodeKey;
 import org.modeshape.jcr.cache.RepositoryCache;
+import org.modeshape.jcr.cache.document.ChildReferencesIndex;
+import org.modeshape.jcr.cache.document.DocumentConstants;
 import org.modeshape.jcr.cache.document.LocalDocumentStore;
 import org.modeshape.jcr.value.BinaryKey;
 import org.modeshape.jcr.value.BinaryValue;
@@ -56,16 +58,36 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
 import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * A service used to generate backups from content and restore repository content from backups.
@@ -78,9 +100,21 @@ public class BackupService {
     protected static final String BINARY_AREA_DIR_NAME = "binaries";
     protected static final String DOCUMENTS_FILENAME_PREFIX = "documents";
     protected static final String SUMMARY_FILE_NAME = "summary_of_changes.json";
+    protected static final String BACKUP_SUMMARY_FILE_NAME = "backup_summary.json";
     protected static final String BINARY_EXTENSION = ".bin";
     protected static final int NUM_CHARS_IN_FILENAME_SUFFIX = 6;
 
+    /**
+     * The pattern that matches the names of the files containing backed up documents, where the first group is the filename prefix
+     * shared by all files written by the same thread.
+     */
+    protected static final Pattern DOCUMENTS_FILENAME_PATTERN = Pattern.compile("(" + DOCUMENTS_FILENAME_PREFIX + "(?:-\\d+)?)_\\d{"
+                                                                                + NUM_CHARS_IN_FILENAME_SUFFIX + "}"
+                                                                                + Pattern.quote(BackupDocumentWriter.DOCUMENTS_EXTENSION)
+                                                                                + "(?:"
+                                                                                + Pattern.quote(BackupDocumentWriter.GZIP_EXTENSION)
+                                                                                + ")?");
+
     /**
      * By default, 100K nodes will be exported to a single backup file. So, if each node requied about 200 bytes (compressed), the
      * resulting files will be about 19 MB in size.
@@ -88,14 +122,29 @@ public class BackupService {
     public static final long DEFAULT_NUMBER_OF_DOCUMENTS_IN_BACKUP_FILES = 100000L;
     public static final boolean DEFAULT_COMPRESS = true;
 
+    /**
+     * By default, documents are read, compressed and written (or read and restored) by one thread per available processor.
+     */
+    public static final int DEFAULT_NUMBER_OF_THREADS = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * The maximum number of items waiting in the queue for each thread that writes or restores backup content.
+     */
+    protected static final int QUEUE_CAPACITY_PER_THREAD = 1000;
+
     protected static class FieldName {
         public static final String UNUSED_BINARY_KEYS = "unusedBinaryKeys";
+        public static final String BACKUP_ID = "backupId";
+        public static final String BASE_BACKUP = "baseBackup";
+        public static final String REMOVED_DOCUMENT_KEYS = "removedDocumentKeys";
+        public static final String CHILD_BLOCK_KEYS = "childBlockKeys";
     }
 
     private final RunningState runningState;
     private final LocalDocumentStore documentStore;
     private final BinaryStore binaryStore;
     private final RepositoryCache repositoryCache;
+    private final BackupChangeTracker changeTracker;
 
     protected BackupService( RunningState runningState ) {
         this.runningState = runningState;
@@ -103,12 +152,16 @@ public class BackupService {
         documentStore = this.runningState.documentStore().localStore();
         binaryStore = this.runningState.binaryStore();
         repositoryCache = this.runningState.repositoryCache();
+        // Record the changes made between backups, so that backups can be incremental ...
+        changeTracker = new BackupChangeTracker(BackupChangeTracker.DEFAULT_MAXIMUM_NUMBER_OF_KEYS);
+        repositoryCache.register(changeTracker);
     }
 
     /**
      * Shut down this service and immediately terminate all currently-running backup operations.
      */
     protected void shutdown() {
+        repositoryCache.unregister(changeTracker);
     }
 
     /**
@@ -120,7 +173,23 @@ public class BackupService {
      * @throws RepositoryException if the backup operation cannot be run
      */
     public org.modeshape.jcr.api.Problems backupRepository( File backupDirectory ) throws RepositoryException {
-        return backupRepository(backupDirectory, DEFAULT_NUMBER_OF_DOCUMENTS_IN_BACKUP_FILES, DEFAULT_COMPRESS);
+        return backupRepository(backupDirectory, null);
+    }
+
+    /**
+     * Start asynchronously backing up the repository, writing only the documents that were changed since the previous backup when
+     * possible.
+     * 
+     * @param backupDirectory the directory on the file system into which the backup should be placed; this directory should
+     *        typically not exist
+     * @param previousBackupDirectory the directory containing the previous backup, or null if a full backup should be written
+     * @return the problems that occurred during the backup process
+     * @throws RepositoryException if the backup operation cannot be run
+     */
+    public org.modeshape.jcr.api.Problems backupRepository( File backupDirectory,
+                                                            File previousBackupDirectory ) throws RepositoryException {
+        return backupRepository(backupDirectory, previousBackupDirectory, DEFAULT_NUMBER_OF_DOCUMENTS_IN_BACKUP_FILES,
+                                DEFAULT_COMPRESS, DEFAULT_NUMBER_OF_THREADS);
     }
 
     /**
@@ -136,8 +205,29 @@ public class BackupService {
     public org.modeshape.jcr.api.Problems backupRepository( File backupDirectory,
                                                             long documentsPerFile,
                                                             boolean compress ) throws RepositoryException {
+        return backupRepository(backupDirectory, null, documentsPerFile, compress, DEFAULT_NUMBER_OF_THREADS);
+    }
+
+    /**
+     * Start asynchronously backing up the repository.
+     * 
+     * @param backupDirectory the directory on the file system into which the backup should be placed; this directory should
+     *        typically not exist
+     * @param previousBackupDirectory the directory containing the previous backup, or null if a full backup should be written
+     * @param documentsPerFile the maximum number of documents to place within a single backup file; must be positive
+     * @param compress true if the backup files should be compressed, or false otherwise
+     * @param numberOfThreads the number of threads that read, compress and write documents; must be positive
+     * @return the problems that occurred during the backup process
+     * @throws RepositoryException if the backup operation cannot be run
+     */
+    public org.modeshape.jcr.api.Problems backupRepository( File backupDirectory,
+                                                            File previousBackupDirectory,
+                                                            long documentsPerFile,
+                                                            boolean compress,
+                                                            int numberOfThreads ) throws RepositoryException {
         // Create the activity ...
-        final BackupActivity backupActivity = createBackupActivity(backupDirectory, documentsPerFile, compress);
+        final BackupActivity backupActivity = createBackupActivity(backupDirectory, previousBackupDirectory, documentsPerFile,
+                                                                   compress, numberOfThreads);
 
         // Run the backup and return the problems ...
         return new JcrProblems(backupActivity.execute());
@@ -189,7 +279,29 @@ public class BackupService {
     public BackupActivity createBackupActivity( File backupDirectory,
                                                 long documentsPerFile,
                                                 boolean compress ) {
-        return new BackupActivity(backupDirectory, documentStore, binaryStore, repositoryCache, documentsPerFile, compress);
+        return createBackupActivity(backupDirectory, null, documentsPerFile, compress, DEFAULT_NUMBER_OF_THREADS);
+    }
+
+    /**
+     * Create a new {@link BackupActivity activity} instance that can back up the content of the repository as it exists at the
+     * time the activity is executed. If a previous backup is supplied and all of the changes made since that backup are known,
+     * the backup will contain only the documents changed since that backup.
+     * 
+     * @param backupDirectory the directory on the file system into which the backup should be placed; this directory should
+     *        typically not exist
+     * @param previousBackupDirectory the directory containing the previous backup, or null if a full backup should be written
+     * @param documentsPerFile the maximum number of documents to place within a single backup file; must be positive
+     * @param compress true if the backup files should be compressed, or false otherwise
+     * @param numberOfThreads the number of threads that read, compress and write documents; must be positive
+     * @return the backup activity; never null
+     */
+    public BackupActivity createBackupActivity( File backupDirectory,
+                                                File previousBackupDirectory,
+                                                long documentsPerFile,
+                                                boolean compress,
+                                                int numberOfThreads ) {
+        return new BackupActivity(backupDirectory, documentStore, binaryStore, repositoryCache, documentsPerFile, compress,
+                                  previousBackupDirectory, changeTracker, numberOfThreads);
     }
 
     /**
@@ -200,7 +312,174 @@ public class BackupService {
      * @return the restore activity; never null
      */
     public RestoreActivity createRestoreActivity( File backupDirectory ) {
-        return new RestoreActivity(backupDirectory, documentStore, binaryStore, repositoryCache);
+        return new RestoreActivity(backupDirectory, documentStore, binaryStore, repositoryCache, DEFAULT_NUMBER_OF_THREADS);
+    }
+
+    /**
+     * A unit of work that is processed by a fixed number of threads, each of which takes batches of items from a bounded queue.
+     * Each thread records its problems in its own container, and these are all merged when the work is {@link #finish(Problems)
+     * finished}.
+     * 
+     * @param <T> the type of item
+     */
+    protected static abstract class ParallelWork<T> {
+        private static final int DEFAULT_BATCH_SIZE = 100;
+
+        private final String repositoryName;
+        private final String location;
+        private final int numberOfThreads;
+        private final int batchSize;
+        private final BlockingQueue<List<T>> queue;
+        private final SimpleProblems[] workerProblems;
+        private final List<Future<Void>> results;
+        private ExecutorService executor;
+        private List<T> batch;
+
+        protected ParallelWork( String repositoryName,
+                                String location,
+                                int numberOfThreads ) {
+            this(repositoryName, location, numberOfThreads, DEFAULT_BATCH_SIZE);
+        }
+
+        /**
+         * Create the work.
+         * 
+         * @param repositoryName the name of the repository
+         * @param location the location of the backup
+         * @param numberOfThreads the number of threads that process the items; must be positive
+         * @param batchSize the number of items handed to a thread at once; must be positive, and should be 1 when each item is
+         *        itself a large amount of work
+         */
+        protected ParallelWork( String repositoryName,
+                                String location,
+                                int numberOfThreads,
+                                int batchSize ) {
+            CheckArg.isPositive(numberOfThreads, "numberOfThreads");
+            CheckArg.isPositive(batchSize, "batchSize");
+            this.repositoryName = repositoryName;
+            this.location = location;
+            this.numberOfThreads = numberOfThreads;
+            this.batchSize = batchSize;
+            this.batch = new ArrayList<T>(batchSize);
+            this.queue = new ArrayBlockingQueue<List<T>>(QUEUE_CAPACITY_PER_THREAD * numberOfThreads);
+            this.workerProblems = new SimpleProblems[numberOfThreads];
+            for (int i = 0; i != numberOfThreads; ++i) {
+                workerProblems[i] = new SimpleProblems();
+            }
+            this.results = new ArrayList<Future<Void>>(numberOfThreads);
+        }
+
+        /**
+         * Get the problems container used by the worker with the supplied index.
+         * 
+         * @param worker the index of the worker
+         * @return the worker's problems; never null
+         */
+        protected final Problems problems( int worker ) {
+            return workerProblems[worker];
+        }
+
+        /**
+         * Start the threads that process the items.
+         */
+        public void start() {
+            executor = Executors.newFixedThreadPool(numberOfThreads, new NamedThreadFactory("modeshape-backup"));
+            for (int i = 0; i != numberOfThreads; ++i) {
+                final int worker = i;
+                results.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        Problems problems = workerProblems[worker];
+                        try {
+                            while (true) {
+                                List<T> items = queue.take();
+                                // An empty batch signals that there are no more items ...
+                                if (items.isEmpty()) break;
+                                for (T item : items) {
+                                    try {
+                                        process(worker, item, problems);
+                                    } catch (RuntimeException e) {
+                                        // Record the problem but keep draining the queue so that the producer never blocks ...
+                                        problems.addError(e, JcrI18n.unexpectedProblemDuringBackup, repositoryName, location,
+                                                          e.getMessage());
+                                    }
+                                }
+                            }
+                        } finally {
+                            completed(worker, problems);
+                        }
+                        return null;
+                    }
+                }));
+            }
+        }
+
+        /**
+         * Add an item to be processed. This method blocks if the threads are already too far behind.
+         * 
+         * @param item the item; may not be null
+         * @throws InterruptedException if the thread is interrupted while waiting to add the item
+         */
+        public void add( T item ) throws InterruptedException {
+            batch.add(item);
+            if (batch.size() >= batchSize) {
+                queue.put(batch);
+                batch = new ArrayList<T>(batchSize);
+            }
+        }
+
+        /**
+         * Signal that there are no more items, wait for all of the items to be processed, and record in the supplied container all
+         * of the problems encountered by the workers.
+         * 
+         * @param problems the container into which the problems should be placed; may not be null
+         * @throws InterruptedException if the thread is interrupted while waiting for the items to be processed
+         */
+        public void finish( Problems problems ) throws InterruptedException {
+            try {
+                if (!batch.isEmpty()) queue.put(batch);
+                batch = new ArrayList<T>(batchSize);
+                for (int i = 0; i != numberOfThreads; ++i) {
+                    queue.put(Collections.<T>emptyList());
+                }
+                for (Future<Void> result : results) {
+                    try {
+                        result.get();
+                    } catch (ExecutionException e) {
+                        Throwable cause = e.getCause();
+                        problems.addError(cause, JcrI18n.unexpectedProblemDuringBackup, repositoryName, location,
+                                          cause.getMessage());
+                    }
+                }
+            } finally {
+                executor.shutdownNow();
+                for (SimpleProblems workerProblem : workerProblems) {
+                    problems.addAll(workerProblem);
+                }
+            }
+        }
+
+        /**
+         * Process the supplied item.
+         * 
+         * @param worker the index of the worker thread that is processing the item
+         * @param item the item; never null
+         * @param problems the worker's problems container; never null
+         */
+        protected abstract void process( int worker,
+                                         T item,
+                                         Problems problems );
+
+        /**
+         * Called by each worker thread after it has processed all of its items. By default this method does nothing.
+         * 
+         * @param worker the index of the worker thread
+         * @param problems the worker's problems container; never null
+         */
+        protected void completed( int worker,
+                                  Problems problems ) {
+            // do nothing by default
+        }
     }
 
     /**
@@ -215,12 +494,15 @@ public class BackupService {
         protected final org.modeshape.jcr.cache.document.LocalDocumentStore documentStore;
         protected final BinaryStore binaryStore;
         protected final SimpleProblems problems;
+        protected final int numberOfThreads;
         private final String backupLocation;
 
         protected Activity( File backupDirectory,
                             org.modeshape.jcr.cache.document.LocalDocumentStore documentStore,
                             BinaryStore binaryStore,
-                            RepositoryCache repositoryCache ) {
+                            RepositoryCache repositoryCache,
+                            int numberOfThreads ) {
+            CheckArg.isPositive(numberOfThreads, "numberOfThreads");
             this.backupDirectory = backupDirectory;
             this.changeDirectory = new File(this.backupDirectory, CHANGED_AREA_DIR_NAME);
             this.binaryDirectory = new File(this.backupDirectory, BINARY_AREA_DIR_NAME);
@@ -228,6 +510,7 @@ public class BackupService {
             this.documentStore = documentStore;
             this.binaryStore = binaryStore;
             this.repositoryCache = repositoryCache;
+            this.numberOfThreads = numberOfThreads;
             this.problems = new SimpleProblems();
         }
 
@@ -245,6 +528,70 @@ public class BackupService {
         protected final String backupLocation() {
             return backupLocation;
         }
+
+        /**
+         * Get the file in which the binary value with the supplied SHA-1 is stored within the given backup.
+         * 
+         * @param backup the backup directory; may not be null
+         * @param sha1 the SHA-1 of the binary value; may not be null
+         * @return the file; never null
+         */
+        protected final File binaryFileFor( File backup,
+                                            String sha1 ) {
+            // There are directories for the first three segments from the binary key, where each segment is two characters ...
+            File first = new File(new File(backup, BINARY_AREA_DIR_NAME), sha1.substring(0, 2));
+            File second = new File(first, sha1.substring(2, 4));
+            File third = new File(second, sha1.substring(4, 6));
+            return new File(third, sha1 + BINARY_EXTENSION);
+        }
+
+        /**
+         * Read the summary of the backup in the supplied directory.
+         * 
+         * @param backup the backup directory; may not be null
+         * @return the summary, or null if the backup has no summary (e.g., it was written by an earlier version)
+         */
+        protected final Document readBackupSummary( File backup ) {
+            File file = new File(backup, BACKUP_SUMMARY_FILE_NAME);
+            if (!file.exists()) return null;
+            try {
+                InputStream stream = new FileInputStream(file);
+                try {
+                    return Json.read(stream);
+                } finally {
+                    stream.close();
+                }
+            } catch (IOException e) {
+                problems.addError(JcrI18n.problemsReadingBackupSummary, file.getAbsolutePath(), e.getMessage());
+                return null;
+            }
+        }
+
+        /**
+         * Get the chain of backups that ends with the supplied backup, where each backup other than the first contains only the
+         * changes made since the backup before it.
+         * 
+         * @param backup the most recent backup in the chain; may not be null
+         * @return the backup directories, starting with the full backup; never null or empty
+         */
+        protected final List<File> backupChain( File backup ) {
+            LinkedList<File> chain = new LinkedList<File>();
+            Set<File> visited = new HashSet<File>();
+            File current = backup.getAbsoluteFile();
+            while (current != null && visited.add(current)) {
+                chain.addFirst(current);
+                Document summary = readBackupSummary(current);
+                String base = summary != null ? summary.getString(FieldName.BASE_BACKUP) : null;
+                if (base == null) break;
+                File baseBackup = new File(base).getAbsoluteFile();
+                if (!baseBackup.isDirectory()) {
+                    problems.addError(JcrI18n.baseBackupNotFound, current.getAbsolutePath(), base);
+                    break;
+                }
+                current = baseBackup;
+            }
+            return chain;
+        }
     }
 
     /**
@@ -258,7 +605,8 @@ public class BackupService {
         protected final BlockingQueue<NodeKey> changedDocumentQueue;
         private final long documentsPerFile;
         private final boolean compress;
-        private BackupDocumentWriter contentWriter;
+        private final File previousBackupDirectory;
+        private final BackupChangeTracker changeTracker;
         private BackupDocumentWriter changesWriter;
 
         protected BackupActivity( File backupDirectory,
@@ -267,10 +615,25 @@ public class BackupService {
                                   RepositoryCache repositoryCache,
                                   long documentsPerFile,
                                   boolean compress ) {
-            super(backupDirectory, documentStore, binaryStore, repositoryCache);
+            this(backupDirectory, documentStore, binaryStore, repositoryCache, documentsPerFile, compress, null, null,
+                 DEFAULT_NUMBER_OF_THREADS);
+        }
+
+        protected BackupActivity( File backupDirectory,
+                                  org.modeshape.jcr.cache.document.LocalDocumentStore documentStore,
+                                  BinaryStore binaryStore,
+                                  RepositoryCache repositoryCache,
+                                  long documentsPerFile,
+                                  boolean compress,
+                                  File previousBackupDirectory,
+                                  BackupChangeTracker changeTracker,
+                                  int numberOfThreads ) {
+            super(backupDirectory, documentStore, binaryStore, repositoryCache, numberOfThreads);
             CheckArg.isPositive(documentsPerFile, "documentsPerFile");
             this.documentsPerFile = documentsPerFile;
             this.compress = compress;
+            this.previousBackupDirectory = previousBackupDirectory;
+            this.changeTracker = changeTracker;
             this.changedDocumentQueue = new LinkedBlockingQueue<NodeKey>();
             ThreadFactory threadFactory = new NamedThreadFactory("modeshape-backup");
             this.changedDocumentWorker = Executors.newSingleThreadExecutor(threadFactory);
@@ -303,27 +666,28 @@ public class BackupService {
             return true;
         }
 
-        protected void writeToContentArea( SchematicEntry document ) {
-            contentWriter.write(document.asDocument());
+        protected void writeToContentArea( BinaryKey key,
+                                           InputStream binaryContent ) {
+            writeToContentArea(key, binaryContent, problems);
         }
 
         protected void writeToContentArea( BinaryKey key,
-                                           InputStream binaryContent ) {
-            String sha1 = key.toString();
-            // Create directories for the first three segments from the binary key, where each segment is two characters ...
-            File first = new File(binaryDirectory, sha1.substring(0, 2));
-            File second = new File(first, sha1.substring(2, 4));
-            File third = new File(second, sha1.substring(4, 6));
-            third.mkdirs();
-            File file = new File(third, sha1 + BINARY_EXTENSION);
+                                           InputStream binaryContent,
+                                           Problems problems ) {
+            File file = binaryFileFor(backupDirectory, key.toString());
+            file.getParentFile().mkdirs();
 
             try {
-                FileOutputStream outputStream = new FileOutputStream(file);
                 try {
-                    IoUtil.write(binaryContent, outputStream);
-                    outputStream.flush();
+                    FileOutputStream outputStream = new FileOutputStream(file);
+                    try {
+                        IoUtil.write(binaryContent, outputStream);
+                        outputStream.flush();
+                    } finally {
+                        outputStream.close();
+                    }
                 } finally {
-                    outputStream.close();
+                    binaryContent.close();
                 }
             } catch (Throwable t) {
                 problems.addError(JcrI18n.problemsWritingDocumentToBackup, file.getAbsolutePath(), t.getMessage());
@@ -348,18 +712,78 @@ public class BackupService {
                 for (BinaryKey key : unusedBinaries) {
                     if (key != null) keys.add(key.toString());
                 }
-                OutputStream outputStream = new FileOutputStream(file);
-                try {
-                    Json.write(doc, outputStream);
-                    outputStream.flush();
-                } finally {
-                    outputStream.close();
+                writeJson(doc, file);
+            } catch (Throwable t) {
+                problems.addError(JcrI18n.problemsWritingDocumentToBackup, file.getAbsolutePath(), t.getMessage());
+            }
+        }
+
+        /**
+         * Write the summary of this backup, which identifies the backup (if it was successful), the backup it is based upon (if
+         * any), the keys of the documents that were removed since that backup, and the keys of the documents holding the blocks of
+         * child references (and the index of those blocks) for each node written to this backup.
+         * 
+         * @param backupId the identifier of this backup; may not be null
+         * @param baseBackup the backup upon which this backup is based, or null if this is a full backup
+         * @param removedKeys the keys of the documents removed since the base backup; may not be null
+         * @param childBlockKeys the keys of the child block documents keyed by the key of the node that owns them; may not be null
+         */
+        protected void writeBackupSummary( String backupId,
+                                           File baseBackup,
+                                           Iterable<String> removedKeys,
+                                           Map<String, List<String>> childBlockKeys ) {
+            File file = new File(backupDirectory, BACKUP_SUMMARY_FILE_NAME);
+            try {
+                EditableDocument doc = Schematic.newDocument();
+                // Only a successful backup can be the base for the next incremental backup ...
+                if (!problems.hasErrors()) doc.setString(FieldName.BACKUP_ID, backupId);
+                if (baseBackup != null) doc.setString(FieldName.BASE_BACKUP, baseBackup.getAbsolutePath());
+                EditableArray keys = doc.setArray(FieldName.REMOVED_DOCUMENT_KEYS);
+                for (String key : removedKeys) {
+                    keys.add(key);
                 }
+                EditableDocument blocks = doc.setDocument(FieldName.CHILD_BLOCK_KEYS);
+                for (Map.Entry<String, List<String>> entry : childBlockKeys.entrySet()) {
+                    blocks.setArray(entry.getKey(), Schematic.newArray(entry.getValue()));
+                }
+                writeJson(doc, file);
             } catch (Throwable t) {
                 problems.addError(JcrI18n.problemsWritingDocumentToBackup, file.getAbsolutePath(), t.getMessage());
             }
         }
 
+        private void writeJson( Document doc,
+                                File file ) throws IOException {
+            OutputStream outputStream = new FileOutputStream(file);
+            try {
+                Json.write(doc, outputStream);
+                outputStream.flush();
+            } finally {
+                outputStream.close();
+            }
+        }
+
+        /**
+         * Determine the keys of the nodes that were changed since the previous backup, if that backup was supplied and all of the
+         * changes since that backup are known. In all cases, changes will be tracked from this point forward.
+         * 
+         * @param backupId the identifier of this backup; may not be null
+         * @return the keys of the nodes changed since the previous backup, or null if a full backup is required
+         */
+        protected Set<NodeKey> changedKeysSincePreviousBackup( String backupId ) {
+            if (changeTracker == null) return null;
+            BackupChangeTracker.Changes changes = changeTracker.startTracking(backupId);
+            if (previousBackupDirectory == null) return null;
+            if (!previousBackupDirectory.getAbsoluteFile().equals(backupDirectory.getAbsoluteFile())) {
+                Document summary = readBackupSummary(previousBackupDirectory);
+                String previousBackupId = summary != null ? summary.getString(FieldName.BACKUP_ID) : null;
+                if (changes.isCompleteSince(previousBackupId)) return changes.getChangedKeys();
+            }
+            LOGGER.info(JcrI18n.incrementalBackupNotPossible, repositoryName(), backupLocation(),
+                        previousBackupDirectory.getAbsolutePath());
+            return null;
+        }
+
         @Override
         public Problems execute() {
             // initialize the area on disk where we'll be writing ...
@@ -367,10 +791,18 @@ public class BackupService {
 
             LOGGER.debug("Starting backup of '{0}' repository into {1}", repositoryName(), backupLocation());
 
-            this.contentWriter = new BackupDocumentWriter(backupDirectory, DOCUMENTS_FILENAME_PREFIX, documentsPerFile, compress,
-                                                          problems);
+            String backupId = UUID.randomUUID().toString();
+            Set<NodeKey> changedKeys = changedKeysSincePreviousBackup(backupId);
+            boolean incremental = changedKeys != null;
+
             this.changesWriter = new BackupDocumentWriter(changeDirectory, DOCUMENTS_FILENAME_PREFIX, documentsPerFile, compress,
                                                           problems);
+            Queue<String> removedKeys = new ConcurrentLinkedQueue<String>();
+            Map<String, List<String>> childBlockKeys = new ConcurrentHashMap<String, List<String>>();
+            Map<String, List<String>> previousChildBlockKeys = Collections.emptyMap();
+            if (incremental) previousChildBlockKeys = childBlockKeys(backupChain(previousBackupDirectory));
+            Map<String, Object> referencedBinaries = new ConcurrentHashMap<String, Object>();
+            long numDocuments = 0L;
             long numBinaryValues = 0L;
 
             try {
@@ -389,7 +821,7 @@ public class BackupService {
                                 if (key != null) {
                                     // Write out the document to the changed area ...
                                     SchematicEntry entry = documentStore.get(key.toString());
-                                    writeToChangedArea(entry);
+                                    if (entry != null) writeToChangedArea(entry);
                                 }
                             }
                         } catch (InterruptedException e) {
@@ -403,7 +835,7 @@ public class BackupService {
                             if (key != null) {
                                 // Write out the document to the changed area ...
                                 SchematicEntry entry = documentStore.get(key.toString());
-                                writeToChangedArea(entry);
+                                if (entry != null) writeToChangedArea(entry);
                             }
                         }
                         changesLatch.countDown();
@@ -418,25 +850,42 @@ public class BackupService {
 
                 try {
                     // PHASE 1:
-                    // Perform the backup of the repository cache content ...
-                    int counter = 0;
-                    Sequence<String> sequence = InfinispanUtil.getAllKeys(documentStore.localCache());
-                    while (true) {
-                        String key = sequence.next();
-                        if (key == null) break;
-                        SchematicEntry entry = documentStore.get(key);
-                        if (entry != null) {
-                            writeToContentArea(entry);
-                            ++counter;
+                    // Perform the backup of the repository cache content, using multiple threads to read, compress and
+                    // write the documents. When incremental, only the documents changed since the previous backup are written.
+                    DocumentWriters writers = new DocumentWriters(incremental, removedKeys, childBlockKeys,
+                                                                  previousChildBlockKeys, referencedBinaries);
+                    writers.start();
+                    try {
+                        if (incremental) {
+                            for (NodeKey key : changedKeys) {
+                                writers.add(key.toString());
+                            }
+                        } else {
+                            Sequence<String> sequence = InfinispanUtil.getAllKeys(documentStore.localCache());
+                            while (true) {
+                                String key = sequence.next();
+                                if (key == null) break;
+                                writers.add(key);
+                            }
                         }
+
+                        // PHASE 2:
+                        // Write out the repository metadata document (which may have not changed) ...
+                        NodeKey metadataKey = repositoryCache.getRepositoryMetadataDocumentKey();
+                        writers.add(metadataKey.toString());
+                    } finally {
+                        writers.finish(problems);
                     }
-                    LOGGER.debug("Wrote {0} documents to {1}", counter, backupDirectory.getAbsolutePath());
+                    numDocuments = writers.getDocumentCount();
+                    LOGGER.debug("Wrote {0} documents to {1}", numDocuments, backupDirectory.getAbsolutePath());
 
-                    // PHASE 2:
-                    // Write out the repository metadata document (which may have not changed) ...
-                    NodeKey metadataKey = repositoryCache.getRepositoryMetadataDocumentKey();
-                    SchematicEntry entry = documentStore.get(metadataKey.toString());
-                    writeToContentArea(entry);
+                    if (incremental) {
+                        // Changes saved just before this backup started may have been delivered to the tracker only after it
+                        // started, so also write these to the changes area ...
+                        changedDocumentQueue.addAll(changeTracker.getChangedKeysSinceLastBackup());
+                    }
+                } catch (InterruptedException e) {
+                    throw e;
                 } catch (Exception e) {
                     I18n msg = JcrI18n.problemObtainingDocumentsToBackup;
                     this.problems.addError(msg, repositoryName(), backupLocation(), e.getMessage());
@@ -453,35 +902,35 @@ public class BackupService {
                 }
 
                 // PHASE 3:
-                // Perform the backup of the binary store ...
+                // Perform the backup of the binary store. When incremental, only those binary values referenced by the
+                // changed documents and not already in one of the earlier backups are written ...
+                BinaryWriters binaryWriters = new BinaryWriters();
+                binaryWriters.start();
                 try {
-                    int counter = 0;
-                    for (BinaryKey binaryKey : binaryStore.getAllBinaryKeys()) {
-                        try {
-                            writeToContentArea(binaryKey, binaryStore.getInputStream(binaryKey));
-                            ++counter;
-                        } catch (BinaryStoreException e) {
-                            problems.addError(JcrI18n.problemsWritingBinaryToBackup, binaryKey, backupLocation(), e.getMessage());
+                    if (incremental) {
+                        List<File> earlierBackups = backupChain(previousBackupDirectory);
+                        for (String sha1 : referencedBinaries.keySet()) {
+                            if (!isInAnyBackup(sha1, earlierBackups)) binaryWriters.add(new BinaryKey(sha1));
+                        }
+                    } else {
+                        for (BinaryKey binaryKey : binaryStore.getAllBinaryKeys()) {
+                            binaryWriters.add(binaryKey);
                         }
                     }
-                    LOGGER.debug("Wrote {0} binary values to {1}", counter, binaryDirectory.getAbsolutePath());
+
+                    // PHASE 4:
+                    // Write all of the binary files that were added during the changes made while we worked ...
+                    for (BinaryKey binaryKey : observer.getUsedBinaryKeys()) {
+                        binaryWriters.add(binaryKey);
+                    }
                 } catch (BinaryStoreException e) {
                     I18n msg = JcrI18n.problemsGettingBinaryKeysFromBinaryStore;
                     problems.addError(msg, repositoryName(), backupLocation(), e.getMessage());
+                } finally {
+                    binaryWriters.finish(problems);
                 }
-
-                // PHASE 4:
-                // Write all of the binary files that were added during the changes made while we worked ...
-                int counter = 0;
-                for (BinaryKey binaryKey : observer.getUsedBinaryKeys()) {
-                    try {
-                        writeToContentArea(binaryKey, binaryStore.getInputStream(binaryKey));
-                        ++counter;
-                    } catch (BinaryStoreException e) {
-                        problems.addError(JcrI18n.problemsWritingBinaryToBackup, binaryKey, backupLocation(), e.getMessage());
-                    }
-                }
-                LOGGER.debug("Wrote {0} recent binary values to {1}", counter, binaryDirectory.getAbsolutePath());
+                numBinaryValues = binaryWriters.getBinaryCount();
+                LOGGER.debug("Wrote {0} binary values to {1}", numBinaryValues, binaryDirectory.getAbsolutePath());
 
                 // PHASE 5:
                 // And now write all binary keys for the binaries that were recorded as unused by the observer ...
@@ -490,10 +939,11 @@ public class BackupService {
                 // Wait for the changes to be written
                 changesLatch.await(30, TimeUnit.SECONDS);
 
-                LOGGER.debug("Completed backup of '{0}' repository into {1} (contains {2} nodes and {3} binary values)",
+                LOGGER.debug("Completed {0} backup of '{1}' repository into {2} (contains {3} nodes and {4} binary values)",
+                             incremental ? "incremental" : "full",
                              repositoryName(),
                              backupLocation(),
-                             contentWriter.getDocumentCount() + changesWriter.getDocumentCount(),
+                             numDocuments + changesWriter.getDocumentCount(),
                              numBinaryValues);
 
             } catch (InterruptedException e) {
@@ -503,26 +953,239 @@ public class BackupService {
             } catch (CancellationException e) {
                 this.problems.addError(JcrI18n.backupOperationWasCancelled, repositoryName(), backupLocation(), e.getMessage());
             } finally {
-                // PHASE 5:
-                // Close all open writers ...
+                // PHASE 6:
+                // Close all open writers and record the summary of the backup ...
                 try {
-                    contentWriter.close();
+                    changesWriter.close();
                 } finally {
-                    contentWriter = null;
-                    try {
-                        changesWriter.close();
-                    } finally {
-                        changesWriter = null;
-                    }
+                    changesWriter = null;
+                    writeBackupSummary(backupId, incremental ? previousBackupDirectory : null, removedKeys, childBlockKeys);
                 }
             }
 
             return problems;
         }
+
+        /**
+         * Determine the keys of the child block documents owned by each node as of the last backup in the supplied chain.
+         * 
+         * @param chain the chain of backups, starting with the full backup; may not be null
+         * @return the keys of the child block documents keyed by the key of the node that owns them; never null
+         */
+        protected final Map<String, List<String>> childBlockKeys( List<File> chain ) {
+            Map<String, List<String>> result = new HashMap<String, List<String>>();
+            for (File backup : chain) {
+                Document summary = readBackupSummary(backup);
+                if (summary == null) continue;
+                Document blocks = summary.getDocument(FieldName.CHILD_BLOCK_KEYS);
+                if (blocks != null) {
+                    for (Document.Field field : blocks.fields()) {
+                        List<?> blockKeys = blocks.getArray(field.getName());
+                        if (blockKeys == null) continue;
+                        List<String> keys = new ArrayList<String>(blockKeys.size());
+                        for (Object key : blockKeys) {
+                            keys.add(key.toString());
+                        }
+                        result.put(field.getName(), keys);
+                    }
+                }
+                List<?> removed = summary.getArray(FieldName.REMOVED_DOCUMENT_KEYS);
+                if (removed != null) {
+                    for (Object key : removed) {
+                        result.remove(key);
+                    }
+                }
+            }
+            return result;
+        }
+
+        protected final boolean isInAnyBackup( String sha1,
+                                               List<File> backups ) {
+            for (File backup : backups) {
+                if (binaryFileFor(backup, sha1).exists()) return true;
+            }
+            return false;
+        }
+
+        /**
+         * The parallel work that writes documents to the content area, where each thread writes to its own set of files. The keys of
+         * the documents for the blocks of child references (and the index of those blocks) owned by each node are recorded. When
+         * the backup is incremental, those documents and the reference counts of the binary values used by each document are also
+         * written, and the keys of documents that no longer exist (including the child block documents no longer used by a node) are
+         * recorded.
+         */
+        protected class DocumentWriters extends ParallelWork<String> {
+            private final boolean incremental;
+            private final Queue<String> removedKeys;
+            private final Map<String, List<String>> childBlockKeys;
+            private final Map<String, List<String>> previousChildBlockKeys;
+            private final Map<String, Object> referencedBinaries;
+            private final BackupDocumentWriter[] writers;
+
+            protected DocumentWriters( boolean incremental,
+                                       Queue<String> removedKeys,
+                                       Map<String, List<String>> childBlockKeys,
+                                       Map<String, List<String>> previousChildBlockKeys,
+                                       Map<String, Object> referencedBinaries ) {
+                super(repositoryName(), backupLocation(), BackupActivity.this.numberOfThreads);
+                this.incremental = incremental;
+                this.removedKeys = removedKeys;
+                this.childBlockKeys = childBlockKeys;
+                this.previousChildBlockKeys = previousChildBlockKeys;
+                this.referencedBinaries = referencedBinaries;
+                int threads = BackupActivity.this.numberOfThreads;
+                this.writers = new BackupDocumentWriter[threads];
+                for (int i = 0; i != threads; ++i) {
+                    // Use the original filename prefix when there is only one thread ...
+                    String prefix = threads == 1 ? DOCUMENTS_FILENAME_PREFIX : DOCUMENTS_FILENAME_PREFIX + "-" + (i + 1);
+                    writers[i] = new BackupDocumentWriter(backupDirectory, prefix, documentsPerFile, compress, problems(i));
+                }
+            }
+
+            @Override
+            protected void process( int worker,
+                                    String key,
+                                    Problems problems ) {
+                SchematicEntry entry = documentStore.get(key);
+                if (entry == null) {
+                    // The document was removed since the previous backup, and so were the blocks of its children ...
+                    if (incremental) {
+                        removedKeys.add(key);
+                        List<String> previousBlockKeys = previousChildBlockKeys.get(key);
+                        if (previousBlockKeys != null) removedKeys.addAll(previousBlockKeys);
+                    }
+                    return;
+                }
+                BackupDocumentWriter writer = writers[worker];
+                writer.write(entry.asDocument());
+
+                // Find (and when incremental, write out) the blocks of child references, which are stored in separate documents.
+                // Only node documents have a key; the blocks themselves are written separately in a full backup ...
+                Document content = entry.getContentAsDocument();
+                if (content.containsField(DocumentConstants.KEY)) {
+                    Set<String> blockKeys = new LinkedHashSet<String>();
+                    String blockKey = nextBlockKey(content);
+                    while (blockKey != null && !blockKeys.contains(blockKey)) {
+                        SchematicEntry block = documentStore.get(blockKey);
+                        if (block == null) break;
+                        blockKeys.add(blockKey);
+                        if (incremental) writer.write(block.asDocument());
+                        blockKey = nextBlockKey(block.getContentAsDocument());
+                    }
+
+                    // And the index of those blocks ...
+                    for (String bucketKey : ChildReferencesIndex.bucketKeys(key, content)) {
+                        SchematicEntry bucket = incremental ? documentStore.get(bucketKey) : null;
+                        if (bucket != null) writer.write(bucket.asDocument());
+                        blockKeys.add(bucketKey);
+                    }
+                    recordChildBlockKeys(key, blockKeys);
+                }
+                if (!incremental) return;
+
+                // Write out the reference counts for the binary values used in this document ...
+                Set<String> sha1s = new HashSet<String>();
+                collectBinaryReferences(content, sha1s);
+                for (String sha1 : sha1s) {
+                    if (referencedBinaries.put(sha1, sha1) != null) continue;
+                    SchematicEntry refCount = documentStore.get(sha1 + "-ref");
+                    if (refCount != null) writer.write(refCount.asDocument());
+                }
+            }
+
+            /**
+             * Record the keys of the child block documents now owned by the node with the supplied key, and when incremental,
+             * record as removed the keys of the child block documents that the node owned as of the previous backup but no longer
+             * does.
+             * 
+             * @param key the key of the node document; may not be null
+             * @param blockKeys the keys of the child block documents now owned by the node; may not be null
+             */
+            private void recordChildBlockKeys( String key,
+                                               Set<String> blockKeys ) {
+                List<String> previousBlockKeys = incremental ? previousChildBlockKeys.get(key) : null;
+                if (previousBlockKeys != null) {
+                    for (String previousBlockKey : previousBlockKeys) {
+                        if (!blockKeys.contains(previousBlockKey)) removedKeys.add(previousBlockKey);
+                    }
+                }
+                // Record an empty list when the node no longer has blocks, so that it replaces the earlier list ...
+                if (!blockKeys.isEmpty() || previousBlockKeys != null) {
+                    childBlockKeys.put(key, new ArrayList<String>(blockKeys));
+                }
+            }
+
+            @Override
+            protected void completed( int worker,
+                                      Problems problems ) {
+                writers[worker].close();
+            }
+
+            private String nextBlockKey( Document content ) {
+                Document childrenInfo = content.getDocument(DocumentConstants.CHILDREN_INFO);
+                return childrenInfo != null ? childrenInfo.getString(DocumentConstants.NEXT_BLOCK) : null;
+            }
+
+            private void collectBinaryReferences( Document document,
+                                                  Set<String> sha1s ) {
+                String sha1 = document.getString(DocumentConstants.SHA1_FIELD);
+                if (sha1 != null) {
+                    sha1s.add(sha1);
+                    return;
+                }
+                for (Document.Field field : document.fields()) {
+                    collectBinaryReferences(field.getValue(), sha1s);
+                }
+            }
+
+            private void collectBinaryReferences( Object value,
+                                                  Set<String> sha1s ) {
+                if (value instanceof Document) {
+                    // Arrays are also documents ...
+                    collectBinaryReferences((Document)value, sha1s);
+                }
+            }
+
+            public long getDocumentCount() {
+                long count = 0L;
+                for (BackupDocumentWriter writer : writers) {
+                    count += writer.getDocumentCount();
+                }
+                return count;
+            }
+        }
+
+        /**
+         * The parallel work that copies binary values from the binary store into the binary area of the backup.
+         */
+        protected class BinaryWriters extends ParallelWork<BinaryKey> {
+            private final AtomicLong count = new AtomicLong();
+
+            protected BinaryWriters() {
+                super(repositoryName(), backupLocation(), BackupActivity.this.numberOfThreads);
+            }
+
+            @Override
+            protected void process( int worker,
+                                    BinaryKey binaryKey,
+                                    Problems problems ) {
+                try {
+                    writeToContentArea(binaryKey, binaryStore.getInputStream(binaryKey), problems);
+                    count.incrementAndGet();
+                } catch (BinaryStoreException e) {
+                    problems.addError(JcrI18n.problemsWritingBinaryToBackup, binaryKey, backupLocation(), e.getMessage());
+                }
+            }
+
+            public long getBinaryCount() {
+                return count.get();
+            }
+        }
     }
 
     /**
-     * The {@link Activity} subclass that performs content restore operations.
+     * The {@link Activity} subclass that performs content restore operations. When the backup contains only the changes made
+     * since an earlier backup, that earlier backup (and any upon which it is based) is restored first.
      */
     @NotThreadSafe
     public static final class RestoreActivity extends Activity {
@@ -531,17 +1194,33 @@ public class BackupService {
                                    org.modeshape.jcr.cache.document.LocalDocumentStore documentStore,
                                    BinaryStore binaryStore,
                                    RepositoryCache repositoryCache ) {
-            super(backupDirectory, documentStore, binaryStore, repositoryCache);
+            this(backupDirectory, documentStore, binaryStore, repositoryCache, DEFAULT_NUMBER_OF_THREADS);
+        }
+
+        protected RestoreActivity( File backupDirectory,
+                                   org.modeshape.jcr.cache.document.LocalDocumentStore documentStore,
+                                   BinaryStore binaryStore,
+                                   RepositoryCache repositoryCache,
+                                   int numberOfThreads ) {
+            super(backupDirectory, documentStore, binaryStore, repositoryCache, numberOfThreads);
         }
 
         @Override
         public Problems execute() {
+            List<File> chain = backupChain(backupDirectory);
+            if (problems.hasErrors()) return problems;
+
             removeExistingBinaryFiles();
-            restoreBinaryFiles();
+            for (File backup : chain) {
+                restoreBinaryFiles(new File(backup, BINARY_AREA_DIR_NAME));
+            }
 
             removeExistingDocuments();
-            restoreDocuments(backupDirectory); // first pass of documents
-            restoreDocuments(changeDirectory); // documents changed while backup was being made
+            for (File backup : chain) {
+                restoreDocuments(backup); // first pass of documents
+                restoreDocuments(new File(backup, CHANGED_AREA_DIR_NAME)); // documents changed while backup was being made
+                removeDocuments(backup); // documents removed since the previous backup
+            }
             return problems;
         }
 
@@ -591,18 +1270,48 @@ public class BackupService {
         }
 
         public void restoreBinaryFiles() {
-            for (File segment1Dir : binaryDirectory.listFiles()) {
-                for (File segment2Dir : segment1Dir.listFiles()) {
-                    for (File segment3Dir : segment2Dir.listFiles()) {
-                        for (File binaryFile : segment3Dir.listFiles()) {
-                            restoreBinaryFile(binaryFile);
+            restoreBinaryFiles(binaryDirectory);
+        }
+
+        protected void restoreBinaryFiles( File binaryArea ) {
+            File[] segment1Dirs = binaryArea.listFiles();
+            if (segment1Dirs == null) return;
+            ParallelWork<File> work = new ParallelWork<File>(repositoryName(), backupLocation(), numberOfThreads) {
+                @Override
+                protected void process( int worker,
+                                        File binaryFile,
+                                        Problems problems ) {
+                    restoreBinaryFile(binaryFile, problems);
+                }
+            };
+            work.start();
+            try {
+                try {
+                    for (File segment1Dir : segment1Dirs) {
+                        for (File segment2Dir : segment1Dir.listFiles()) {
+                            for (File segment3Dir : segment2Dir.listFiles()) {
+                                for (File binaryFile : segment3Dir.listFiles()) {
+                                    work.add(binaryFile);
+                                }
+                            }
                         }
                     }
+                } finally {
+                    work.finish(problems);
                 }
+            } catch (InterruptedException e) {
+                Thread.interrupted();
+                I18n msg = JcrI18n.interruptedWhilePerformingBackup;
+                this.problems.addError(msg, repositoryName(), backupLocation(), e.getMessage());
             }
         }
 
         public void restoreBinaryFile( File binaryFile ) {
+            restoreBinaryFile(binaryFile, problems);
+        }
+
+        protected void restoreBinaryFile( File binaryFile,
+                                          Problems problems ) {
             if (!binaryFile.exists()) return;
             if (!binaryFile.canRead()) {
                 I18n msg = JcrI18n.problemsReadingBinaryFromBackup;
@@ -639,19 +1348,79 @@ public class BackupService {
             return new BinaryKey(sha1);
         }
 
-        protected void restoreDocuments( File directory ) {
-            BackupDocumentReader reader = new BackupDocumentReader(directory, DOCUMENTS_FILENAME_PREFIX, problems);
+        /**
+         * Restore the documents in the supplied directory, using a separate thread for each set of files written by a separate
+         * thread during the backup.
+         * 
+         * @param directory the directory containing the document files; may not be null
+         */
+        protected void restoreDocuments( final File directory ) {
+            Set<String> prefixes = new TreeSet<String>();
+            File[] files = directory.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    Matcher matcher = DOCUMENTS_FILENAME_PATTERN.matcher(file.getName());
+                    if (matcher.matches()) prefixes.add(matcher.group(1));
+                }
+            }
             LOGGER.debug("Restoring documents from {0}", directory.getAbsolutePath());
+            // Each prefix names all of the files written by one thread, so hand each to a thread on its own ...
+            ParallelWork<String> work = new ParallelWork<String>(repositoryName(), backupLocation(),
+                                                                 Math.max(1, Math.min(prefixes.size(), numberOfThreads)), 1) {
+                @Override
+                protected void process( int worker,
+                                        String prefix,
+                                        Problems problems ) {
+                    restoreDocuments(directory, prefix, problems);
+                }
+            };
+            work.start();
+            try {
+                try {
+                    for (String prefix : prefixes) {
+                        work.add(prefix);
+                    }
+                } finally {
+                    work.finish(problems);
+                }
+            } catch (InterruptedException e) {
+                Thread.interrupted();
+                I18n msg = JcrI18n.interruptedWhilePerformingBackup;
+                this.problems.addError(msg, repositoryName(), backupLocation(), e.getMessage());
+            }
+        }
+
+        protected void restoreDocuments( File directory,
+                                         String filenamePrefix,
+                                         Problems problems ) {
+            BackupDocumentReader reader = new BackupDocumentReader(directory, filenamePrefix, problems);
             int count = 0;
-            while (true) {
-                Document doc = reader.read();
-                if (doc == null) break;
-                documentStore.put(doc);
+            try {
+                while (true) {
+                    Document doc = reader.read();
+                    if (doc == null) break;
+                    documentStore.put(doc);
+                    ++count;
+                }
+            } finally {
+                reader.close();
+            }
+            LOGGER.debug("Restored {0} documents from the {1} files in {2}", count, filenamePrefix, directory.getAbsolutePath());
+        }
 
-                ++count;
-                LOGGER.debug("restoring {0} doc {1}", (count + 1), doc);
+        /**
+         * Remove the documents that the supplied backup records as having been removed since the backup upon which it is based.
+         * 
+         * @param backup the backup directory; may not be null
+         */
+        protected void removeDocuments( File backup ) {
+            Document summary = readBackupSummary(backup);
+            if (summary == null) return;
+            List<?> keys = summary.getArray(FieldName.REMOVED_DOCUMENT_KEYS);
+            if (keys == null) return;
+            for (Object key : keys) {
+                if (key != null) documentStore.remove(key.toString());
             }
-            LOGGER.debug("Restored {0} documents from {1}", count, directory.getAbsolutePath());
         }
     }
 }
@@ -0,0 +1,292 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ * See the AUTHORS.txt file in the distribution for a full listing of 
+ * individual contributors.
+ *
+ * ModeShape is free software. Unless otherwise indicated, all code in ModeShape
+ * is licensed to you under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ * 
+ * ModeShape is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.modeshape.jcr;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.jcr.ItemExistsException;
+import javax.jcr.ItemNotFoundException;
+import javax.jcr.RepositoryException;
+import javax.jcr.Value;
+import javax.jcr.ValueFormatException;
+import javax.jcr.nodetype.ConstraintViolationException;
+import javax.jcr.nodetype.NoSuchNodeTypeException;
+import org.modeshape.common.collection.SimpleProblems;
+import org.modeshape.jcr.RepositoryNodeTypeManager.NodeTypes;
+import org.modeshape.jcr.api.BulkLoader;
+import org.modeshape.jcr.api.Problems;
+import org.modeshape.jcr.cache.DocumentAlreadyExistsException;
+import org.modeshape.jcr.cache.NodeKey;
+import org.modeshape.jcr.cache.NodeNotFoundException;
+import org.modeshape.jcr.cache.document.BulkNodeLoader;
+import org.modeshape.jcr.value.Name;
+import org.modeshape.jcr.value.NameFactory;
+import org.modeshape.jcr.value.Path;
+import org.modeshape.jcr.value.Property;
+import org.modeshape.jcr.value.PropertyFactory;
+
+/**
+ * The {@link BulkLoader} implementation, which converts the supplied JCR names and values and delegates to a
+ * {@link BulkNodeLoader} that writes the nodes directly to the workspace's document store. Because every loaded node is placed
+ * below the node at which the load is rooted, the content below that node is all that is reindexed (in a single pass) when the
+ * load is finished.
+ */
+final class JcrBulkLoader implements BulkLoader {
+
+    /**
+     * The maximum number of existing parents whose permissions are remembered; the set is cleared when it reaches this size.
+     */
+    private static final int MAXIMUM_CHECKED_PARENTS = 10000;
+
+    private final JcrSession session;
+    private final Path parentPath;
+    private final NodeKey rootKey;
+    private final BulkNodeLoader loader;
+    private final Set<NodeKey> checkedParents = new HashSet<NodeKey>();
+
+    JcrBulkLoader( JcrSession session,
+                   AbstractJcrNode parent,
+                   String loadId,
+                   int batchSize,
+                   boolean generateEvents ) throws RepositoryException {
+        this.session = session;
+        this.parentPath = parent.path();
+        this.rootKey = session.cache().getRootKey();
+        JcrRepository.RunningState runningState = session.repository().runningState();
+        this.loader = new BulkNodeLoader(runningState.repositoryCache().getWorkspaceCache(session.workspaceName()),
+                                         runningState.transactions(), session.context(), parent.key(), loadId, batchSize,
+                                         generateEvents);
+    }
+
+    @Override
+    public String getLoadId() {
+        return loader.getLoadId();
+    }
+
+    @Override
+    public long getCheckpointedNodeCount() {
+        return loader.getCheckpointedNodeCount();
+    }
+
+    @Override
+    public long getNodeCount() {
+        return loader.getNodeCount();
+    }
+
+    @Override
+    public String addNode( String parentIdentifier,
+                           String name,
+                           String primaryType,
+                           Map<String, ?> properties ) throws RepositoryException {
+        session.checkLive();
+        NameFactory names = session.nameFactory();
+        PropertyFactory propertyFactory = session.propertyFactory();
+        NodeTypes nodeTypes = session.nodeTypes();
+
+        Name primaryTypeName = names.create(primaryType);
+        if (!nodeTypes.hasNodeType(primaryTypeName)) {
+            throw new NoSuchNodeTypeException(JcrI18n.noSuchNodeType.text(primaryType));
+        }
+        if (nodeTypes.isMixin(primaryTypeName)) {
+            throw new ConstraintViolationException(JcrI18n.cannotUseMixinTypeAsPrimaryType.text(primaryType));
+        }
+
+        int numProperties = properties != null ? properties.size() + 1 : 1;
+        Map<Name, Property> newProperties = new HashMap<Name, Property>(numProperties * 4 / 3 + 1);
+        newProperties.put(JcrLexicon.PRIMARY_TYPE, propertyFactory.create(JcrLexicon.PRIMARY_TYPE, primaryTypeName));
+        boolean referenceable = false;
+        Collection<Name> mixinNames = Collections.emptyList();
+        if (properties != null) {
+            // The mixins are needed to find the definitions of the other properties ...
+            Map.Entry<String, ?> mixinEntry = null;
+            for (Map.Entry<String, ?> entry : properties.entrySet()) {
+                if (JcrLexicon.MIXIN_TYPES.equals(names.create(entry.getKey()))) mixinEntry = entry;
+            }
+            if (mixinEntry != null) {
+                Object[] values = valuesFor(mixinEntry.getKey(), mixinEntry.getValue());
+                List<Name> mixins = new ArrayList<Name>(values.length);
+                for (Object value : values) {
+                    Name mixinName = names.create(value);
+                    if (!nodeTypes.isMixin(mixinName)) {
+                        throw new ConstraintViolationException(JcrI18n.suppliedNodeTypeIsNotMixinType.text(value));
+                    }
+                    if (JcrMixLexicon.REFERENCEABLE.equals(mixinName)) referenceable = true;
+                    mixins.add(mixinName);
+                }
+                mixinNames = mixins;
+                // The mixin types are always stored in a multi-valued property ...
+                newProperties.put(JcrLexicon.MIXIN_TYPES, propertyFactory.create(JcrLexicon.MIXIN_TYPES, mixins));
+            }
+            for (Map.Entry<String, ?> entry : properties.entrySet()) {
+                Name propertyName = names.create(entry.getKey());
+                if (JcrLexicon.PRIMARY_TYPE.equals(propertyName) || JcrLexicon.MIXIN_TYPES.equals(propertyName)) continue;
+                Object[] values = valuesFor(entry.getKey(), entry.getValue());
+                Property property = null;
+                if (isMultiple(primaryTypeName, mixinNames, propertyName, entry.getValue())) {
+                    property = propertyFactory.create(propertyName, values);
+                } else {
+                    property = propertyFactory.create(propertyName, values[0]);
+                }
+                newProperties.put(propertyName, property);
+            }
+        }
+
+        if (referenceable) {
+            String identifier = loader.nextNodeKey().getIdentifier();
+            newProperties.put(JcrLexicon.UUID, propertyFactory.create(JcrLexicon.UUID, identifier));
+        }
+
+        NodeKey parentKey = parentIdentifier != null ? JcrSession.createNodeKeyFromIdentifier(parentIdentifier, rootKey) : null;
+        if (parentKey != null) {
+            checkCanAddNodeTo(parentKey);
+        }
+        try {
+            return loader.addNode(parentKey, names.create(name), newProperties).getIdentifier();
+        } catch (NodeNotFoundException e) {
+            throw new ItemNotFoundException(JcrI18n.itemNotFoundWithUuid.text(e.getNodeKey().getIdentifier(),
+                                                                               session.workspaceName()), e);
+        } catch (DocumentAlreadyExistsException e) {
+            throw new ItemExistsException(e.getMessage(), e);
+        } catch (IllegalArgumentException e) {
+            throw new ConstraintViolationException(e.getMessage(), e);
+        } catch (RuntimeException e) {
+            throw new RepositoryException(e);
+        }
+    }
+
+    /**
+     * Check that the session may add nodes below the existing parent with the supplied key. The permissions were already checked
+     * for the node at which the load is rooted, but nodes below it may have more restrictive access control lists. Nodes added by
+     * this load that have not yet been written have no access control lists of their own.
+     * 
+     * @param parentKey the key of the parent; may not be null
+     * @throws ItemNotFoundException if the parent does not exist
+     * @throws RepositoryException if the session may not add nodes below the parent
+     */
+    private void checkCanAddNodeTo( NodeKey parentKey ) throws RepositoryException {
+        if (loader.isUnwritten(parentKey) || checkedParents.contains(parentKey)) return;
+        AbstractJcrNode parent = session.node(parentKey, null);
+        session.checkPermission(parent.path(), ModeShapePermissions.ADD_NODE, ModeShapePermissions.SET_PROPERTY);
+        if (checkedParents.size() >= MAXIMUM_CHECKED_PARENTS) checkedParents.clear();
+        checkedParents.add(parentKey);
+    }
+
+    @Override
+    public void checkpoint() throws RepositoryException {
+        session.checkLive();
+        try {
+            loader.checkpoint();
+        } catch (DocumentAlreadyExistsException e) {
+            throw new ItemExistsException(e.getMessage(), e);
+        } catch (RuntimeException e) {
+            throw new RepositoryException(e);
+        }
+    }
+
+    @Override
+    public Problems finish() throws RepositoryException {
+        session.checkLive();
+        try {
+            loader.finish();
+        } catch (DocumentAlreadyExistsException e) {
+            throw new ItemExistsException(e.getMessage(), e);
+        } catch (RuntimeException e) {
+            throw new RepositoryException(e);
+        }
+
+        // Now index all of the loaded content in one pass ...
+        SimpleProblems problems = new SimpleProblems();
+        try {
+            session.repository().runningState().queryManager().reindexContent(session.workspace(), parentPath, Integer.MAX_VALUE);
+        } catch (RuntimeException e) {
+            problems.addError(e, JcrI18n.problemIndexingBulkLoadedContent, getLoadId(), parentPath, session.workspaceName(),
+                              e.getMessage());
+        }
+        return new JcrProblems(problems);
+    }
+
+    /**
+     * Determine whether the property should be multi-valued, based upon the definition that allows it on a node with the given
+     * types. Only when no definition is found does the supplied value (either a {@link Value} or a {@link Value} array) decide.
+     * 
+     * @param primaryTypeName the name of the node's primary type; may not be null
+     * @param mixinTypeNames the names of the node's mixin types; may not be null
+     * @param propertyName the name of the property; may not be null
+     * @param value the value or values supplied for the property
+     * @return true if the property is multi-valued, or false if it is single-valued
+     */
+    private boolean isMultiple( Name primaryTypeName,
+                                Collection<Name> mixinTypeNames,
+                                Name propertyName,
+                                Object value ) {
+        NodeTypes nodeTypes = session.nodeTypes();
+        Value single = null;
+        if (value instanceof Value[]) {
+            Value[] values = (Value[])value;
+            JcrPropertyDefinition definition = nodeTypes.findPropertyDefinition(session, primaryTypeName, mixinTypeNames,
+                                                                                propertyName, values, false, false);
+            if (definition != null) return true;
+            // A single value supplied in an array may still be for a single-valued property ...
+            if (values.length != 1) return true;
+            single = values[0];
+        } else {
+            single = (Value)value;
+        }
+        JcrPropertyDefinition definition = nodeTypes.findPropertyDefinition(session, primaryTypeName, mixinTypeNames,
+                                                                            propertyName, single, true, false, false);
+        // Without a definition (e.g., on a node type that is not enforced), the supplied value decides ...
+        return definition != null ? definition.isMultiple() : value instanceof Value[];
+    }
+
+    private Object[] valuesFor( String propertyName,
+                                Object value ) throws ValueFormatException {
+        if (value instanceof Value[]) {
+            Value[] values = (Value[])value;
+            Object[] result = new Object[values.length];
+            for (int i = 0; i != values.length; ++i) {
+                result[i] = valueFor(propertyName, values[i]);
+            }
+            return result;
+        }
+        return new Object[] {valueFor(propertyName, value)};
+    }
+
+    private Object valueFor( String propertyName,
+                             Object value ) throws ValueFormatException {
+        if (value != null && !(value instanceof Value)) {
+            throw new ValueFormatException(JcrI18n.invalidPropertyType.text(value.getClass().getName()));
+        }
+        Object result = value != null ? ((JcrValue)value).value() : null;
+        if (result == null) {
+            throw new ValueFormatException(JcrI18n.valueMayNotContainNull.text(propertyName));
+        }
+        return result;
+    }
+}
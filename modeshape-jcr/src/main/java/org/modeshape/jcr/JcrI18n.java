@@ -99,10 +99,19 @@ public final class JcrI18n {
     public static I18n problemObtainingDocumentsToBackup;
     public static I18n backupOperationWasCancelled;
     public static I18n problemsClosingBackupFiles;
+    public static I18n problemsReadingBackupSummary;
+    public static I18n baseBackupNotFound;
+    public static I18n incrementalBackupNotPossible;
+    public static I18n unexpectedProblemDuringBackup;
+    public static I18n problemIndexingBulkLoadedContent;
+    public static I18n bulkLoadParentIsNotWithinLoad;
     public static I18n invalidJcrUrl;
     public static I18n unableToInitializeAuthenticationProvider;
     public static I18n errorInAuthenticationProvider;
     public static I18n unableToInitializeSequencer;
+    public static I18n unableToPersistSequencingWork;
+    public static I18n resumingSequencingWork;
+    public static I18n sequencingWorkNotCompletedBeforeShutdown;
     public static I18n unableToInitializeTextExtractor;
     public static I18n unableToInitializeConnector;
     public static I18n requiredFieldNotSetInConnector;
@@ -453,6 +462,8 @@ public final class JcrI18n {
     // Lucene query engine ...
     public static I18n errorRetrievingExtractedTextFile;
     public static I18n errorExtractingTextFromBinary;
+    public static I18n textExtractionTimeout;
+    public static I18n textExtractionTimedOut;
     public static I18n errorAddingBinaryTextToIndex;
     public static I18n missingQueryVariableValue;
     public static I18n errorClosingLuceneReaderForIndex;
@@ -492,6 +503,13 @@ public final class JcrI18n {
     public static I18n reindexMissingNoIndexesExist;
     public static I18n noReindex;
     public static I18n reindexAll;
+    public static I18n resumingReindex;
+    public static I18n errorReindexingContent;
+    public static I18n reindexIncomplete;
+    public static I18n invalidIndexConsistency;
+    public static I18n errorApplyingQueuedIndexOperations;
+    public static I18n errorRecordingQueuedIndexOperations;
+    public static I18n timeoutWaitingForQueuedIndexOperations;
     public static I18n noIndexesExist;
 
     public static I18n errorCreatingDatabaseTable;
@@ -517,6 +535,8 @@ public final class JcrI18n {
     public static I18n upgrade3_6_0Running;
     public static I18n upgrade3_6_0CannotUpdateNodeTypes;
     public static I18n upgrade3_6_0CannotUpdateLocks;
+    public static I18n upgrade3_7_0Running;
+    public static I18n reindexingRequiredButNeverRebuilt;
 
     static {
         try {
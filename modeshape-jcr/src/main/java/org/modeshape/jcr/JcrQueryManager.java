@@ -62,6 +62,7 @@ import org.modeshape.jcr.query.model.Visitors;
 import org.modeshape.jcr.query.parse.QueryParser;
 import org.modeshape.jcr.query.parse.QueryParsers;
 import org.modeshape.jcr.query.plan.PlanHints;
+import org.modeshape.jcr.query.plan.QueryPlanCache;
 import org.modeshape.jcr.query.validate.Schemata;
 import org.modeshape.jcr.value.Name;
 import org.modeshape.jcr.value.NamespaceRegistry;
@@ -125,11 +126,19 @@ class JcrQueryManager implements QueryManager {
             throw new InvalidQueryException(JcrI18n.invalidQueryLanguage.text(language, languages));
         }
         try {
-            // Parsing must be done now ...
-            QueryCommand command = parser.parseQuery(expression, typeSystem);
+            // Parsing must be done now, unless the same expression was already parsed by a session that uses the same namespaces ...
+            QueryPlanCache planCache = null;
+            if (QueryPlanCache.canBeUsedWithin(session.context())) {
+                planCache = session.repository().runningState().queryManager().planCache();
+            }
+            QueryCommand command = planCache != null ? planCache.getCommand(parser.getLanguage(), expression) : null;
             if (command == null) {
-                // The query is not well-formed and cannot be parsed ...
-                throw new InvalidQueryException(JcrI18n.queryCannotBeParsedUsingLanguage.text(language, expression));
+                command = parser.parseQuery(expression, typeSystem);
+                if (command == null) {
+                    // The query is not well-formed and cannot be parsed ...
+                    throw new InvalidQueryException(JcrI18n.queryCannotBeParsedUsingLanguage.text(language, expression));
+                }
+                if (planCache != null) planCache.putCommand(parser.getLanguage(), expression, command);
             }
             // Set up the hints ...
             PlanHints hints = new PlanHints();
@@ -108,8 +108,10 @@ import org.modeshape.jcr.api.monitor.ValueMetric;
 import org.modeshape.jcr.api.query.Query;
 import org.modeshape.jcr.api.value.DateTime;
 import org.modeshape.jcr.bus.ChangeBus;
+import org.modeshape.jcr.bus.ChangeBusMonitor;
 import org.modeshape.jcr.bus.ClusteredRepositoryChangeBus;
 import org.modeshape.jcr.bus.RepositoryChangeBus;
+import org.modeshape.jcr.bus.RingBufferChangeBus;
 import org.modeshape.jcr.cache.NodeCache;
 import org.modeshape.jcr.cache.NodeKey;
 import org.modeshape.jcr.cache.RepositoryCache;
@@ -119,7 +121,9 @@ import org.modeshape.jcr.cache.SessionEnvironment.Monitor;
 import org.modeshape.jcr.cache.SessionEnvironment.MonitorFactory;
 import org.modeshape.jcr.cache.WorkspaceNotFoundException;
 import org.modeshape.jcr.cache.document.DocumentStore;
+import org.modeshape.jcr.cache.document.GroupCommitter;
 import org.modeshape.jcr.cache.document.LocalDocumentStore;
+import org.modeshape.jcr.cache.document.NodeCacheMonitor;
 import org.modeshape.jcr.cache.document.TransactionalWorkspaceCaches;
 import org.modeshape.jcr.federation.FederatedDocumentStore;
 import org.modeshape.jcr.mimetype.MimeTypeDetector;
@@ -949,6 +953,7 @@ public class JcrRepository implements org.modeshape.jcr.api.Repository {
         private final Sequencers sequencers;
         private final QueryParsers queryParsers;
         private final RepositoryQueryManager repositoryQueryManager;
+        private final RepositoryIndexingQueue indexingQueue;
         private final ExecutorService indexingExecutor;
         private final TextExtractors extractors;
         private final ChangeBus changeBus;
@@ -1093,6 +1098,7 @@ public class JcrRepository implements org.modeshape.jcr.api.Repository {
                     // Create the event bus
                     this.changeDispatchingQueue = this.context().getCachedTreadPool("modeshape-event-dispatcher");
                     this.changeBus = createBus(config.getClustering(),
+                                               config.getEventBus(),
                                                this.changeDispatchingQueue,
                                                systemWorkspaceName(),
                                                context.getProcessId());
@@ -1102,10 +1108,32 @@ public class JcrRepository implements org.modeshape.jcr.api.Repository {
                     QuerySystem query = config.getQuery();
                     boolean indexingClustered = query.queriesEnabled() && query.indexingClustered();
 
-                    final SessionEnvironment sessionEnv = new RepositorySessionEnvironment(this.transactions, indexingClustered);
+                    RepositoryConfiguration.GroupCommit groupCommit = config.getGroupCommit();
+                    GroupCommitter groupCommitter = groupCommit.isEnabled() ? new GroupCommitter(this.transactions,
+                                                                                                 groupCommit.getWindowInMillis(),
+                                                                                                 groupCommit.getMaximumGroupSize()) : null;
+                    final SessionEnvironment sessionEnv = new RepositorySessionEnvironment(this.transactions, indexingClustered,
+                                                                                           groupCommitter);
                     CacheContainer workspaceCacheContainer = this.config.getWorkspaceContentCacheContainer();
+                    NodeCacheMonitor nodeCacheMonitor = new NodeCacheMonitor() {
+                        @Override
+                        public void hit() {
+                            statistics().increment(ValueMetric.NODE_CACHE_HITS);
+                        }
+
+                        @Override
+                        public void miss() {
+                            statistics().increment(ValueMetric.NODE_CACHE_MISSES);
+                        }
+
+                        @Override
+                        public void evicted( int count ) {
+                            statistics().increment(ValueMetric.NODE_CACHE_EVICTIONS, count);
+                        }
+                    };
                     this.cache = new RepositoryCache(context, documentStore, config, systemContentInitializer, sessionEnv,
-                                                     changeBus, workspaceCacheContainer, Upgrades.STANDARD_UPGRADES);
+                                                     changeBus, workspaceCacheContainer, nodeCacheMonitor,
+                                                     Upgrades.STANDARD_UPGRADES);
 
                     // Set up the node type manager ...
                     this.nodeTypes = new RepositoryNodeTypeManager(this, true, true);
@@ -1184,12 +1212,19 @@ public class JcrRepository implements org.modeshape.jcr.api.Repository {
                     Properties backendProps = query.getIndexingBackendProperties();
                     Properties indexingProps = query.getIndexingProperties();
                     Properties indexStorageProps = query.getIndexStorageProperties();
-                    this.repositoryQueryManager = new RepositoryQueryManager(this, indexingExecutor, backendProps, indexingProps,
-                                                                             indexStorageProps);
                     this.indexRebuildOptions = query.getIndexRebuildOptions();
+                    this.repositoryQueryManager = new RepositoryQueryManager(this, indexingExecutor, backendProps, indexingProps,
+                                                                             indexStorageProps, indexRebuildOptions);
+                    if (other != null && other.indexingQueue != null) {
+                        // Anything the old queue does not apply remains in its journal and is picked up by the new queue ...
+                        other.indexingQueue.shutdown();
+                    }
+                    RepositoryConfiguration.IndexingQueue queueConfig = query.getIndexingQueue();
+                    this.indexingQueue = queueConfig.isEnabled() ? new RepositoryIndexingQueue(this, queueConfig) : null;
                 } else {
                     this.repositoryQueryManager = new RepositoryDisabledQueryManager(this, config.getQuery());
                     this.indexRebuildOptions = null;
+                    this.indexingQueue = null;
                     logger.debug("Queries have been DISABLED for the '{0}' repository. Nothing will be indexed, and all queries will return empty results.",
                                  repositoryName());
                 }
@@ -1330,6 +1365,9 @@ public class JcrRepository implements org.modeshape.jcr.api.Repository {
                         }
                         case NEVER: {
                             logger.debug(JcrI18n.noReindex.text(getName()));
+                            if (this.repositoryQueryManager.reindexingIncomplete()) {
+                                logger.warn(JcrI18n.reindexingRequiredButNeverRebuilt, getName());
+                            }
                             break;
                         }
                         case FAIL_IF_MISSING: {
@@ -1338,11 +1376,17 @@ public class JcrRepository implements org.modeshape.jcr.api.Repository {
                             }
                             logger.debug("Index rebuild mode is '{0}' and there are some indexes present. Nothing will be reindexed.",
                                          FAIL_IF_MISSING.name());
+                            if (this.repositoryQueryManager.reindexingIncomplete()) {
+                                logger.warn(JcrI18n.reindexingRequiredButNeverRebuilt, getName());
+                            }
                             break;
                         }
                     }
                 }
 
+                // Resume any sequencing work that was pending when the repository was last shut down ...
+                this.sequencers.resumePendingWork();
+
                 // Register the background processes.
                 // Do this last since we want the repository running before these are started ...
                 GarbageCollection gcConfig = config.getGarbageCollection();
@@ -1419,6 +1463,15 @@ public class JcrRepository implements org.modeshape.jcr.api.Repository {
             return repositoryQueryManager;
         }
 
+        /**
+         * Get the queue of index operations that are applied asynchronously.
+         * 
+         * @return the queue, or null if the index operations are applied as part of each save
+         */
+        final RepositoryIndexingQueue indexingQueue() {
+            return indexingQueue;
+        }
+
         protected final DocumentStore documentStore() {
             return documentStore;
         }
@@ -1445,6 +1498,10 @@ public class JcrRepository implements org.modeshape.jcr.api.Repository {
             return mgr;
         }
 
+        protected final Transactions transactions() {
+            return transactions;
+        }
+
         protected final RepositoryNodeTypeManager nodeTypeManager() {
             return nodeTypes;
         }
@@ -1604,6 +1661,11 @@ public class JcrRepository implements org.modeshape.jcr.api.Repository {
                 repositoryQueryManager.stopReindexing();
             }
 
+            // apply what we can of the queued index operations; the rest remain in the queue's journal
+            if (indexingQueue != null) {
+                indexingQueue.shutdown();
+            }
+
             // shutdown the connectors
             this.connectors.shutdown();
 
@@ -1836,10 +1898,29 @@ public class JcrRepository implements org.modeshape.jcr.api.Repository {
         }
 
         protected ChangeBus createBus( RepositoryConfiguration.Clustering clusteringConfiguration,
+                                       RepositoryConfiguration.EventBus eventBusConfiguration,
                                        ExecutorService executor,
                                        String systemWorkspaceName,
                                        String processId ) {
-            RepositoryChangeBus standaloneBus = new RepositoryChangeBus(executor, systemWorkspaceName);
+            ChangeBus standaloneBus = null;
+            if (eventBusConfiguration.isRingBuffer()) {
+                ChangeBusMonitor monitor = new ChangeBusMonitor() {
+                    @Override
+                    public void queueSizeChanged( int delta ) {
+                        statistics().increment(ValueMetric.CHANGE_BUS_QUEUE_SIZE, delta);
+                    }
+
+                    @Override
+                    public void changeSetsDropped( int count ) {
+                        statistics().increment(ValueMetric.CHANGE_BUS_DROPPED_COUNT, count);
+                    }
+                };
+                standaloneBus = new RingBufferChangeBus(executor, systemWorkspaceName, eventBusConfiguration.getQueueSize(),
+                                                        eventBusConfiguration.getOverflowPolicy(),
+                                                        eventBusConfiguration.getMaximumBatchSize(), monitor);
+            } else {
+                standaloneBus = new RepositoryChangeBus(executor, systemWorkspaceName);
+            }
             return clusteringConfiguration.isEnabled() ? new ClusteredRepositoryChangeBus(clusteringConfiguration, standaloneBus,
                                                                                           processId) : standaloneBus;
         }
@@ -1861,12 +1942,15 @@ public class JcrRepository implements org.modeshape.jcr.api.Repository {
         private final Transactions transactions;
         private final TransactionalWorkspaceCaches transactionalWorkspaceCacheFactory;
         private final boolean indexingClustered;
+        private final GroupCommitter groupCommitter;
 
         protected RepositorySessionEnvironment( Transactions transactions,
-                                                boolean indexingClustered ) {
+                                                boolean indexingClustered,
+                                                GroupCommitter groupCommitter ) {
             this.transactions = transactions;
             this.transactionalWorkspaceCacheFactory = new TransactionalWorkspaceCaches(transactions);
             this.indexingClustered = indexingClustered;
+            this.groupCommitter = groupCommitter;
         }
 
         @Override
@@ -1883,6 +1967,11 @@ public class JcrRepository implements org.modeshape.jcr.api.Repository {
         public boolean indexingClustered() {
             return indexingClustered;
         }
+
+        @Override
+        public GroupCommitter getGroupCommitter() {
+            return groupCommitter;
+        }
     }
 
     protected static class RepositoryMonitorFactory implements MonitorFactory {
@@ -1909,6 +1998,11 @@ public class JcrRepository implements org.modeshape.jcr.api.Repository {
                 // query isn't enabled most likely, so we'll only record statistics
                 return statisticsMonitor();
             }
+            RepositoryIndexingQueue indexingQueue = this.runningState.indexingQueue();
+            if (indexingQueue != null) {
+                // record the changes in the queue, which applies them to the indexes after the transaction completes
+                return indexingQueue.newMonitor();
+            }
             return indexingMonitor(nodeTypeManager, queryManager);
         }
 
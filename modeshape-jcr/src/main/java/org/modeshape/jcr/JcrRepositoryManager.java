@@ -27,6 +27,8 @@ import java.io.File;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 import javax.jcr.RepositoryException;
+import org.modeshape.common.util.CheckArg;
+import org.modeshape.jcr.api.BulkLoader;
 import org.modeshape.jcr.api.Problems;
 import org.modeshape.jcr.api.RepositoryManager;
 import org.modeshape.jcr.value.Path;
@@ -77,9 +79,30 @@ public class JcrRepositoryManager implements RepositoryManager {
         return repository().runningState().backupService().backupRepository(backupDirectory);
     }
 
+    @Override
+    public Problems backupRepository( File backupDirectory,
+                                      File previousBackupDirectory ) throws RepositoryException {
+        session().checkPermission(Path.ROOT_PATH, ModeShapePermissions.BACKUP);
+        return repository().runningState().backupService().backupRepository(backupDirectory, previousBackupDirectory);
+    }
+
     @Override
     public Problems restoreRepository( File backupDirectory ) throws RepositoryException {
         session().checkPermission(Path.ROOT_PATH, ModeShapePermissions.RESTORE);
         return repository().runningState().backupService().restoreRepository(repository(), backupDirectory);
     }
+
+    @Override
+    public BulkLoader createBulkLoader( String parentAbsPath,
+                                       String loadId,
+                                       int batchSize,
+                                       boolean generateEvents ) throws RepositoryException {
+        CheckArg.isNotEmpty(loadId, "loadId");
+        CheckArg.isPositive(batchSize, "batchSize");
+        JcrSession session = session();
+        session.checkLive();
+        AbstractJcrNode parent = session.getNode(parentAbsPath);
+        session.checkPermission(parent.path(), ModeShapePermissions.ADD_NODE, ModeShapePermissions.SET_PROPERTY);
+        return new JcrBulkLoader(session, parent, loadId, batchSize, generateEvents);
+    }
 }
@@ -76,12 +76,14 @@ import org.modeshape.common.logging.Logger;
 import org.modeshape.common.util.ObjectUtil;
 import org.modeshape.common.util.StringUtil;
 import org.modeshape.connector.filesystem.FileSystemConnector;
+import org.modeshape.jcr.bus.RingBufferChangeBus.OverflowPolicy;
 import org.modeshape.jcr.clustering.DefaultChannelProvider;
 import org.modeshape.jcr.security.AnonymousProvider;
 import org.modeshape.jcr.security.JaasProvider;
 import org.modeshape.jcr.value.binary.AbstractBinaryStore;
 import org.modeshape.jcr.value.binary.BinaryStore;
 import org.modeshape.jcr.value.binary.BinaryStoreException;
+import org.modeshape.jcr.value.binary.ChunkedFileSystemBinaryStore;
 import org.modeshape.jcr.value.binary.CompositeBinaryStore;
 import org.modeshape.jcr.value.binary.DatabaseBinaryStore;
 import org.modeshape.jcr.value.binary.FileSystemBinaryStore;
@@ -293,6 +295,31 @@ public class RepositoryConfiguration {
          */
         public static final String MINIMUM_STRING_SIZE = "minimumStringSize";
 
+        /**
+         * The flag that specifies whether a file system binary store splits binary values into content-defined chunks and stores
+         * each distinct chunk only once, so that values that differ in only a few places share most of their storage. The
+         * default value is 'false'.
+         */
+        public static final String CONTENT_DEFINED_CHUNKING = "contentDefinedChunking";
+
+        /**
+         * The desired average size (in bytes) of the chunks when {@link #CONTENT_DEFINED_CHUNKING content-defined chunking} is
+         * enabled. The default value is '65536' bytes, or 64 kilobytes.
+         */
+        public static final String AVERAGE_CHUNK_SIZE_IN_BYTES = "averageChunkSizeInBytes";
+
+        /**
+         * The number of threads that a file system binary store uses to concurrently remove unused values from the different
+         * parts of its trash. The default value is '4'.
+         */
+        public static final String GARBAGE_COLLECTION_THREADS = "garbageCollectionThreads";
+
+        /**
+         * The maximum number of files per second that the garbage collection of a file system binary store examines or removes,
+         * so that it can run without saturating the disk. The default value is '0', which means the rate is not limited.
+         */
+        public static final String GARBAGE_COLLECTION_FILES_PER_SECOND = "garbageCollectionFilesPerSecond";
+
         /**
          * The name attribute which can be set on a binary store. It's only used when a {@link CompositeBinaryStore} is
          * configured.
@@ -415,6 +442,8 @@ public class RepositoryConfiguration {
         public static final String FULL_TEXT_SEARCH_ENABLED = "enableFullTextSearch";
         public static final String METADATA_CACHE_NAME = "metadataCacheName";
         public static final String CHUNK_SIZE = "chunkSize";
+        public static final String MAX_CONCURRENT_CHUNK_WRITES = "maxConcurrentChunkWrites";
+        public static final String READ_AHEAD_CHUNKS = "readAheadChunks";
         public static final String QUERY = "query";
         public static final String QUERY_ENABLED = "enabled";
         public static final String INDEX_STORAGE = "indexStorage";
@@ -440,6 +469,24 @@ public class RepositoryConfiguration {
         public static final String OPTIMIZATION_CHILD_COUNT_TARGET = "childCountTarget";
         public static final String OPTIMIZATION_CHILD_COUNT_TOLERANCE = "childCountTolerance";
 
+        /**
+         * The name of the configuration document under "storage" that enables coalescing the concurrent saves of different
+         * sessions into a single transaction.
+         */
+        public static final String GROUP_COMMIT = "groupCommit";
+
+        /**
+         * The name for the field under "groupCommit" specifying the maximum time in milliseconds that the first save of a group
+         * waits for other saves to join the group.
+         */
+        public static final String GROUP_COMMIT_WINDOW_IN_MILLIS = "windowInMillis";
+
+        /**
+         * The name for the field under "groupCommit" specifying the maximum number of saves that are committed in a single
+         * transaction.
+         */
+        public static final String GROUP_COMMIT_MAXIMUM_GROUP_SIZE = "maximumGroupSize";
+
         /**
          * The name for the field (under "sequencing" and "query") specifying the thread pool that should be used for sequencing.
          * By default, all repository instances will use the same thread pool within the engine. To use a dedicated thread pool
@@ -447,6 +494,31 @@ public class RepositoryConfiguration {
          */
         public static final String THREAD_POOL = "threadPool";
 
+        /**
+         * The name for the field (under each sequencer) specifying the maximum number of threads that concurrently run that
+         * sequencer. Each sequencer has its own pool of threads, so a slow sequencer cannot delay the others.
+         */
+        public static final String THREAD_POOL_SIZE = "threadPoolSize";
+
+        /**
+         * The name for the field (under each sequencer) specifying the priority of the threads that run that sequencer, between
+         * {@link Thread#MIN_PRIORITY} and {@link Thread#MAX_PRIORITY}.
+         */
+        public static final String PRIORITY = "priority";
+
+        /**
+         * The name for the field (under each sequencer) specifying the maximum number of inputs whose output is saved together.
+         * Batching the output of many small inputs avoids one save per input. The default is '1', meaning the output of each
+         * input is saved on its own.
+         */
+        public static final String SEQUENCER_BATCH_SIZE = "batchSize";
+
+        /**
+         * The name for the field (under each sequencer) specifying the maximum total size (in bytes) of the inputs whose output is
+         * saved together, or 0 if only the {@link #SEQUENCER_BATCH_SIZE number of inputs} is limited.
+         */
+        public static final String SEQUENCER_BATCH_SIZE_IN_BYTES = "batchSizeInBytes";
+
         @Deprecated
         public static final String REMOVE_DERIVED_CONTENT_WITH_ORIGINAL = "removeDerivedContentWithOriginal";
 
@@ -491,11 +563,127 @@ public class RepositoryConfiguration {
         public static final String REBUILD_INCLUDE_SYSTEM_CONTENT = "includeSystemContent";
         public static final String REBUILD_MODE = "mode";
 
+        /**
+         * The name for the field under "rebuildOnStartup" specifying the number of threads used to rebuild the indexes of the
+         * workspace content.
+         */
+        public static final String REBUILD_THREADS = "threads";
+
+        /**
+         * The name for the field under "rebuildOnStartup" specifying the number of nodes whose index updates are committed
+         * together while rebuilding the indexes.
+         */
+        public static final String REBUILD_BATCH_SIZE = "batchSize";
+
+        /**
+         * The name of the configuration document under "indexing" that enables applying the changes to the indexes
+         * asynchronously from a durable local queue, rather than while the changes are saved.
+         */
+        public static final String INDEXING_QUEUE = "queue";
+
+        /**
+         * The name for the field under "queue" specifying the directory in which the queued index operations are recorded.
+         */
+        public static final String INDEXING_QUEUE_DIRECTORY = "directory";
+
+        /**
+         * The name for the field under "queue" specifying the number of threads that apply the queued index operations.
+         */
+        public static final String INDEXING_QUEUE_THREADS = "threads";
+
+        /**
+         * The name for the field under "queue" specifying the maximum number of queued index operations that are applied
+         * together.
+         */
+        public static final String INDEXING_QUEUE_BATCH_SIZE = "batchSize";
+
+        /**
+         * The name for the field under "queue" specifying the default consistency of queries with the indexes, which is either
+         * "{@value FieldValue#INDEXING_CONSISTENCY_WAIT_FOR_OWN_WRITES}" or "{@value FieldValue#INDEXING_CONSISTENCY_BEST_EFFORT}".
+         */
+        public static final String INDEXING_QUEUE_CONSISTENCY = "consistency";
+
+        /**
+         * The name for the field under "queue" specifying the maximum time in milliseconds that a query waits for the queued
+         * index operations to be applied.
+         */
+        public static final String INDEXING_QUEUE_MAXIMUM_WAIT_IN_MILLIS = "maximumWaitInMillis";
+
+        /**
+         * The name of the field under "textExtracting" that specifies the maximum number of characters that are extracted from
+         * each binary value. A negative value means there is no limit.
+         */
+        public static final String TEXT_EXTRACTION_MAXIMUM_CHARACTERS = "maximumCharacters";
+
+        /**
+         * The name of the field under "textExtracting" that specifies the maximum time in milliseconds that the text extraction of
+         * each binary value may take. A value of 0 means there is no limit.
+         */
+        public static final String TEXT_EXTRACTION_TIMEOUT_IN_MILLIS = "timeoutInMillis";
+
+        /**
+         * The name of the field under "textExtracting" that specifies the number of characters that are buffered while the
+         * extracted text is written to the binary store.
+         */
+        public static final String TEXT_EXTRACTION_BUFFER_SIZE = "bufferSize";
+
         /**
          * The name of the clustering top-level configuration document
          */
         public static final String CLUSTERING = "clustering";
 
+        /**
+         * The name of the top-level configuration document for the repository's internal bus that dispatches changes to
+         * listeners.
+         */
+        public static final String EVENT_BUS = "eventBus";
+
+        /**
+         * The name for the field under "eventBus" specifying the kind of bus; either "{@value FieldValue#EVENT_BUS_TYPE_DEFAULT}"
+         * or "{@value FieldValue#EVENT_BUS_TYPE_RING_BUFFER}".
+         */
+        public static final String EVENT_BUS_TYPE = "type";
+
+        /**
+         * The name for the field under "eventBus" specifying the maximum number of change sets that can be waiting for each
+         * listener of a ring buffer bus.
+         */
+        public static final String EVENT_BUS_QUEUE_SIZE = "queueSize";
+
+        /**
+         * The name for the field under "eventBus" specifying what a ring buffer bus does when a listener's queue is full.
+         */
+        public static final String EVENT_BUS_OVERFLOW_POLICY = "overflowPolicy";
+
+        /**
+         * The name for the field under "eventBus" specifying the maximum number of change sets that a ring buffer bus delivers
+         * at once to a listener that accepts batches.
+         */
+        public static final String EVENT_BUS_MAXIMUM_BATCH_SIZE = "maximumBatchSize";
+
+        /**
+         * The name of the top-level configuration document for the caches of nodes that are kept for each workspace.
+         */
+        public static final String NODE_CACHE = "nodeCache";
+
+        /**
+         * The name for the field under "nodeCache" specifying the kind of cache; either "{@value FieldValue#NODE_CACHE_TYPE_DEFAULT}"
+         * or "{@value FieldValue#NODE_CACHE_TYPE_BOUNDED}".
+         */
+        public static final String NODE_CACHE_TYPE = "type";
+
+        /**
+         * The name for the field under "nodeCache" specifying the maximum total estimated size in bytes of the nodes that a bounded
+         * cache keeps on the heap for each workspace.
+         */
+        public static final String NODE_CACHE_MAXIMUM_WEIGHT = "maximumWeight";
+
+        /**
+         * The name for the field under "nodeCache" specifying the maximum number of bytes of serialized nodes that a bounded cache
+         * keeps outside of the heap for each workspace.
+         */
+        public static final String NODE_CACHE_OFF_HEAP_SIZE = "offHeapSize";
+
         /**
          * The name of the cluster as used by JChannel.connect
          */
@@ -519,6 +707,11 @@ public class RepositoryConfiguration {
          */
         public static final long MINIMUM_BINARY_SIZE_IN_BYTES = 4 * 1024L;
 
+        /**
+         * The default value of the {@link FieldName#CONTENT_DEFINED_CHUNKING} field is '{@value} '.
+         */
+        public static final boolean CONTENT_DEFINED_CHUNKING = false;
+
         /**
          * The default value of the {@link FieldName#ALLOW_CREATION} field is '{@value} '.
          */
@@ -566,6 +759,10 @@ public class RepositoryConfiguration {
         public static final boolean REMOVE_DERIVED_CONTENT_WITH_ORIGINAL = true;
 
         public static final String SEQUENCING_POOL = "modeshape-sequencer";
+        public static final int SEQUENCER_THREAD_POOL_SIZE = 4;
+        public static final int SEQUENCER_PRIORITY = Thread.NORM_PRIORITY;
+        public static final int SEQUENCER_BATCH_SIZE = 1;
+        public static final long SEQUENCER_BATCH_SIZE_IN_BYTES = 16 * 1024 * 1024L;
         public static final String QUERY_THREAD_POOL = "modeshape-indexer";
         public static final String GARBAGE_COLLECTION_POOL = "modeshape-gc";
         public static final String OPTIMIZATION_POOL = "modeshape-opt";
@@ -598,9 +795,40 @@ public class RepositoryConfiguration {
 
         public static final String OPTIMIZATION_INITIAL_TIME = "02:00";
         public static final int OPTIMIZATION_INTERVAL_IN_HOURS = 24;
+
+        public static final long GROUP_COMMIT_WINDOW_IN_MILLIS = 5L;
+        public static final int GROUP_COMMIT_MAXIMUM_GROUP_SIZE = 32;
+
+        public static final int REBUILD_THREADS = 1;
+        public static final int REBUILD_BATCH_SIZE = 1000;
+
+        public static final String INDEXING_QUEUE_DIRECTORY = "modeshape/indexing-queue";
+        public static final int INDEXING_QUEUE_THREADS = 2;
+        public static final int INDEXING_QUEUE_BATCH_SIZE = 500;
+        public static final String INDEXING_QUEUE_CONSISTENCY = FieldValue.INDEXING_CONSISTENCY_WAIT_FOR_OWN_WRITES;
+        public static final long INDEXING_QUEUE_MAXIMUM_WAIT_IN_MILLIS = 10000L;
+
+        public static final long TEXT_EXTRACTION_MAXIMUM_CHARACTERS = -1L;
+        public static final long TEXT_EXTRACTION_TIMEOUT_IN_MILLIS = 0L;
+        public static final int TEXT_EXTRACTION_BUFFER_SIZE = 8192;
+
+        public static final String EVENT_BUS_TYPE = FieldValue.EVENT_BUS_TYPE_DEFAULT;
+        public static final int EVENT_BUS_QUEUE_SIZE = 1024;
+        public static final OverflowPolicy EVENT_BUS_OVERFLOW_POLICY = OverflowPolicy.BLOCK;
+        public static final int EVENT_BUS_MAXIMUM_BATCH_SIZE = 64;
+
+        public static final String NODE_CACHE_TYPE = FieldValue.NODE_CACHE_TYPE_DEFAULT;
+        public static final long NODE_CACHE_MAXIMUM_WEIGHT = 128L * 1024L * 1024L;
+        public static final long NODE_CACHE_OFF_HEAP_SIZE = 0L;
     }
 
     public static final class FieldValue {
+        public static final String EVENT_BUS_TYPE_DEFAULT = "default";
+        public static final String EVENT_BUS_TYPE_RING_BUFFER = "ringBuffer";
+
+        public static final String NODE_CACHE_TYPE_DEFAULT = "default";
+        public static final String NODE_CACHE_TYPE_BOUNDED = "bounded";
+
         public static final String INDEX_STORAGE_RAM = "ram";
         public static final String INDEX_STORAGE_FILESYSTEM = "filesystem";
         public static final String INDEX_STORAGE_FILESYSTEM_MASTER = "filesystem-master";
@@ -615,6 +843,9 @@ public class RepositoryConfiguration {
         public static final String INDEXING_BACKEND_TYPE_BLACKHOLE = "blackhole";
         public static final String INDEXING_BACKEND_TYPE_CUSTOM = "custom";
 
+        public static final String INDEXING_CONSISTENCY_WAIT_FOR_OWN_WRITES = org.modeshape.jcr.api.query.Query.WAIT_FOR_OWN_WRITES;
+        public static final String INDEXING_CONSISTENCY_BEST_EFFORT = org.modeshape.jcr.api.query.Query.BEST_EFFORT;
+
         public static final String BINARY_STORAGE_TYPE_FILE = "file";
         public static final String BINARY_STORAGE_TYPE_CACHE = "cache";
         public static final String BINARY_STORAGE_TYPE_DATABASE = "database";
@@ -665,6 +896,10 @@ public class RepositoryConfiguration {
         skipProps.add(FieldName.CLASSLOADER);
         skipProps.add(FieldName.CLASSNAME);
         skipProps.add(FieldName.PROJECTIONS);
+        skipProps.add(FieldName.THREAD_POOL_SIZE);
+        skipProps.add(FieldName.PRIORITY);
+        skipProps.add(FieldName.SEQUENCER_BATCH_SIZE);
+        skipProps.add(FieldName.SEQUENCER_BATCH_SIZE_IN_BYTES);
         COMPONENT_SKIP_PROPERTIES = Collections.unmodifiableSet(skipProps);
 
         String jaasProvider = "org.modeshape.jcr.security.JaasProvider";
@@ -1019,6 +1254,108 @@ public class RepositoryConfiguration {
         return new Clustering(doc.getDocument(FieldName.CLUSTERING));
     }
 
+    /**
+     * Get the configuration for the repository's internal bus that dispatches changes to listeners.
+     * 
+     * @return the event bus configuration; never null
+     */
+    public EventBus getEventBus() {
+        return new EventBus(doc.getDocument(FieldName.EVENT_BUS));
+    }
+
+    @Immutable
+    public class EventBus {
+        private final Document eventBus;
+
+        protected EventBus( Document eventBus ) {
+            this.eventBus = eventBus != null ? eventBus : EMPTY;
+        }
+
+        /**
+         * Determine whether the bus should use a bounded ring buffer for each listener, rather than an unbounded queue.
+         * 
+         * @return true if a ring buffer bus should be used, or false otherwise
+         */
+        public boolean isRingBuffer() {
+            String type = eventBus.getString(FieldName.EVENT_BUS_TYPE, Default.EVENT_BUS_TYPE);
+            return FieldValue.EVENT_BUS_TYPE_RING_BUFFER.equalsIgnoreCase(type.trim());
+        }
+
+        /**
+         * Get the maximum number of change sets that can be waiting to be delivered to each listener of a ring buffer bus.
+         * 
+         * @return the queue size; always positive
+         */
+        public int getQueueSize() {
+            return eventBus.getInteger(FieldName.EVENT_BUS_QUEUE_SIZE, Default.EVENT_BUS_QUEUE_SIZE);
+        }
+
+        /**
+         * Get what a ring buffer bus should do when a listener's queue is full.
+         * 
+         * @return the overflow policy; never null
+         */
+        public OverflowPolicy getOverflowPolicy() {
+            String policy = eventBus.getString(FieldName.EVENT_BUS_OVERFLOW_POLICY);
+            return policy != null ? OverflowPolicy.valueOf(policy.trim().toUpperCase()) : Default.EVENT_BUS_OVERFLOW_POLICY;
+        }
+
+        /**
+         * Get the maximum number of change sets that a ring buffer bus delivers at once to a listener that accepts batches.
+         * 
+         * @return the maximum batch size; always positive
+         */
+        public int getMaximumBatchSize() {
+            return eventBus.getInteger(FieldName.EVENT_BUS_MAXIMUM_BATCH_SIZE, Default.EVENT_BUS_MAXIMUM_BATCH_SIZE);
+        }
+    }
+
+    /**
+     * Get the configuration for the caches of nodes that are kept for each workspace.
+     * 
+     * @return the node cache configuration; never null
+     */
+    public NodeCaching getNodeCaching() {
+        return new NodeCaching(doc.getDocument(FieldName.NODE_CACHE));
+    }
+
+    @Immutable
+    public class NodeCaching {
+        private final Document nodeCache;
+
+        protected NodeCaching( Document nodeCache ) {
+            this.nodeCache = nodeCache != null ? nodeCache : EMPTY;
+        }
+
+        /**
+         * Determine whether each workspace should use a size-bounded node cache, rather than the workspace's Infinispan cache.
+         * 
+         * @return true if a bounded cache should be used, or false otherwise
+         */
+        public boolean isBounded() {
+            String type = nodeCache.getString(FieldName.NODE_CACHE_TYPE, Default.NODE_CACHE_TYPE);
+            return FieldValue.NODE_CACHE_TYPE_BOUNDED.equalsIgnoreCase(type.trim());
+        }
+
+        /**
+         * Get the maximum total estimated size in bytes of the nodes that a bounded cache keeps on the heap for each workspace.
+         * 
+         * @return the maximum weight; always positive
+         */
+        public long getMaximumWeight() {
+            return nodeCache.getLong(FieldName.NODE_CACHE_MAXIMUM_WEIGHT, Default.NODE_CACHE_MAXIMUM_WEIGHT);
+        }
+
+        /**
+         * Get the maximum number of bytes of serialized nodes that a bounded cache keeps outside of the heap for each workspace.
+         * 
+         * @return the off-heap size, or 0 if evicted nodes are not kept outside of the heap
+         */
+        public long getOffHeapSize() {
+            return nodeCache.getLong(FieldName.NODE_CACHE_OFF_HEAP_SIZE, Default.NODE_CACHE_OFF_HEAP_SIZE);
+        }
+    }
+
     /**
      * Returns the initial content configuration for this repository configuration
      * 
@@ -1177,7 +1514,17 @@ public class RepositoryConfiguration {
                 String directory = binaryStorage.getString(FieldName.DIRECTORY);
                 assert directory != null;
                 File dir = new File(directory);
-                store = FileSystemBinaryStore.create(dir);
+                if (binaryStorage.getBoolean(FieldName.CONTENT_DEFINED_CHUNKING, Default.CONTENT_DEFINED_CHUNKING)) {
+                    int averageChunkSize = binaryStorage.getInteger(FieldName.AVERAGE_CHUNK_SIZE_IN_BYTES,
+                                                                    ChunkedFileSystemBinaryStore.DEFAULT_AVERAGE_CHUNK_SIZE);
+                    store = ChunkedFileSystemBinaryStore.create(dir, averageChunkSize);
+                } else {
+                    store = FileSystemBinaryStore.create(dir);
+                }
+                FileSystemBinaryStore fileStore = (FileSystemBinaryStore)store;
+                fileStore.setGarbageCollectionThreads(binaryStorage.getInteger(FieldName.GARBAGE_COLLECTION_THREADS,
+                                                                               FileSystemBinaryStore.DEFAULT_GARBAGE_COLLECTION_THREADS));
+                fileStore.setGarbageCollectionRate(binaryStorage.getInteger(FieldName.GARBAGE_COLLECTION_FILES_PER_SECOND, 0));
             } else if (type.equalsIgnoreCase("database")) {
                 String driverClass = binaryStorage.getString(FieldName.JDBC_DRIVER_CLASS);
                 String connectionURL = binaryStorage.getString(FieldName.CONNECTION_URL);
@@ -1206,7 +1553,13 @@ public class RepositoryConfiguration {
 
                 // String cacheTransactionManagerLookupClass = binaryStorage.getString(FieldName.CACHE_TRANSACTION_MANAGER_LOOKUP,
                 // Default.CACHE_TRANSACTION_MANAGER_LOOKUP);
-                store = new InfinispanBinaryStore(cacheContainer, dedicatedCacheContainer, metadataCacheName, blobCacheName, chunkSize);
+                InfinispanBinaryStore cacheStore = new InfinispanBinaryStore(cacheContainer, dedicatedCacheContainer,
+                                                                              metadataCacheName, blobCacheName, chunkSize);
+                cacheStore.setMaxConcurrentChunkWrites(binaryStorage.getInteger(FieldName.MAX_CONCURRENT_CHUNK_WRITES,
+                                                                                InfinispanBinaryStore.DEFAULT_MAX_CONCURRENT_CHUNK_WRITES));
+                cacheStore.setReadAheadChunks(binaryStorage.getInteger(FieldName.READ_AHEAD_CHUNKS,
+                                                                       InfinispanBinaryStore.DEFAULT_READ_AHEAD_CHUNKS));
+                store = cacheStore;
             } else if (type.equalsIgnoreCase("composite")) {
 
                 Map<String, BinaryStore> binaryStores = new LinkedHashMap<String, BinaryStore>();
@@ -1776,6 +2129,16 @@ public class RepositoryConfiguration {
             return new IndexRebuildOptions(query);
         }
 
+        /**
+         * Returns the configuration of the asynchronous indexing queue.
+         * 
+         * @return the indexing queue configuration; never null
+         */
+        public IndexingQueue getIndexingQueue() {
+            Document indexing = query.getDocument(FieldName.INDEXING);
+            return new IndexingQueue(indexing != null ? indexing.getDocument(FieldName.INDEXING_QUEUE) : null);
+        }
+
         /**
          * Get the configuration properties for the storage of indexes. The values of the properties will consist of string
          * values.
@@ -1899,6 +2262,8 @@ public class RepositoryConfiguration {
         private final QueryRebuild when;
         private final Boolean includeSystemContent;
         private final IndexingMode mode;
+        private final int threads;
+        private final int batchSize;
 
         protected IndexRebuildOptions( Document query ) {
             assert query != null;
@@ -1942,6 +2307,8 @@ public class RepositoryConfiguration {
                 this.when = defaultQueryRebuild;
                 this.includeSystemContent = defaultIncludeSystemContent;
                 this.mode = defaultIndexingMode;
+                this.threads = Default.REBUILD_THREADS;
+                this.batchSize = Default.REBUILD_BATCH_SIZE;
             } else {
                 String when = rebuildOnStartupDocument.getString(FieldName.REBUILD_WHEN, defaultQueryRebuild.name())
                                                       .toUpperCase();
@@ -1951,6 +2318,10 @@ public class RepositoryConfiguration {
                 String mode = rebuildOnStartupDocument.getString(FieldName.REBUILD_MODE, defaultIndexingMode.name())
                                                       .toUpperCase();
                 this.mode = IndexingMode.valueOf(mode);
+                this.threads = Math.max(1, rebuildOnStartupDocument.getInteger(FieldName.REBUILD_THREADS,
+                                                                               Default.REBUILD_THREADS));
+                this.batchSize = Math.max(1, rebuildOnStartupDocument.getInteger(FieldName.REBUILD_BATCH_SIZE,
+                                                                                 Default.REBUILD_BATCH_SIZE));
             }
         }
 
@@ -1980,6 +2351,24 @@ public class RepositoryConfiguration {
         public QueryRebuild getWhen() {
             return when;
         }
+
+        /**
+         * Returns the number of threads that should be used to rebuild the indexes of the workspace content.
+         * 
+         * @return the number of threads; always positive
+         */
+        public int getThreads() {
+            return threads;
+        }
+
+        /**
+         * Returns the number of nodes whose index updates should be committed together while rebuilding the indexes.
+         * 
+         * @return the batch size; always positive
+         */
+        public int getBatchSize() {
+            return batchSize;
+        }
     }
 
     @Immutable
@@ -1999,6 +2388,36 @@ public class RepositoryConfiguration {
             return textExtracting.getString(FieldName.THREAD_POOL, "modeshape-text-extractor");
         }
 
+        /**
+         * Get the maximum number of characters that are extracted from each binary value. Any text beyond this limit is not
+         * stored or indexed.
+         * 
+         * @return the maximum number of characters, or a negative number if there is no limit
+         */
+        public long getMaximumCharacters() {
+            return textExtracting.getLong(FieldName.TEXT_EXTRACTION_MAXIMUM_CHARACTERS, Default.TEXT_EXTRACTION_MAXIMUM_CHARACTERS);
+        }
+
+        /**
+         * Get the maximum time in milliseconds that the text extraction of a single binary value may take. The text extracted
+         * before the time elapses is kept.
+         * 
+         * @return the timeout in milliseconds, or 0 if there is no limit
+         */
+        public long getTimeoutInMillis() {
+            return Math.max(0L, textExtracting.getLong(FieldName.TEXT_EXTRACTION_TIMEOUT_IN_MILLIS,
+                                                       Default.TEXT_EXTRACTION_TIMEOUT_IN_MILLIS));
+        }
+
+        /**
+         * Get the number of characters that are buffered while the extracted text is written to the binary store.
+         * 
+         * @return the buffer size; always positive
+         */
+        public int getBufferSize() {
+            return Math.max(1, textExtracting.getInteger(FieldName.TEXT_EXTRACTION_BUFFER_SIZE, Default.TEXT_EXTRACTION_BUFFER_SIZE));
+        }
+
         /**
          * Get the ordered list of text extractors. All text extractors are configured with this list.
          * 
@@ -2176,6 +2595,129 @@ public class RepositoryConfiguration {
         }
     }
 
+    /**
+     * Get the configuration for coalescing the concurrent saves of different sessions into a single transaction.
+     * 
+     * @return the group commit configuration; never null
+     */
+    public GroupCommit getGroupCommit() {
+        Document storage = doc.getDocument(FieldName.STORAGE);
+        if (storage == null) {
+            storage = Schematic.newDocument();
+        }
+        return new GroupCommit(storage.getDocument(FieldName.GROUP_COMMIT));
+    }
+
+    @Immutable
+    public class IndexingQueue {
+        private final Document queue;
+        private final boolean enabled;
+
+        protected IndexingQueue( Document queue ) {
+            this.queue = queue != null ? queue : EMPTY;
+            this.enabled = queue != null;
+        }
+
+        /**
+         * Determine if the changes to the indexes should be recorded in a durable local queue and applied asynchronously. This is
+         * DISABLED by default and is enabled by defining the "{@value FieldName#INDEXING_QUEUE}" document (even if empty) under
+         * "indexing".
+         * 
+         * @return true if enabled, or false otherwise
+         */
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        /**
+         * Get the directory in which the queued index operations are recorded.
+         * 
+         * @return the directory; never null
+         */
+        public String getDirectory() {
+            return queue.getString(FieldName.INDEXING_QUEUE_DIRECTORY, Default.INDEXING_QUEUE_DIRECTORY);
+        }
+
+        /**
+         * Get the number of threads that apply the queued index operations.
+         * 
+         * @return the number of threads; always positive
+         */
+        public int getThreads() {
+            return Math.max(1, queue.getInteger(FieldName.INDEXING_QUEUE_THREADS, Default.INDEXING_QUEUE_THREADS));
+        }
+
+        /**
+         * Get the maximum number of queued index operations that are applied to the indexes together.
+         * 
+         * @return the batch size; always positive
+         */
+        public int getBatchSize() {
+            return Math.max(1, queue.getInteger(FieldName.INDEXING_QUEUE_BATCH_SIZE, Default.INDEXING_QUEUE_BATCH_SIZE));
+        }
+
+        /**
+         * Determine whether queries should by default wait until the index operations queued before they were executed have been
+         * applied, so that they see the changes saved by their own sessions.
+         * 
+         * @return true if queries wait for their own writes by default, or false if they use the indexes as they are
+         */
+        public boolean waitForOwnWrites() {
+            String consistency = queue.getString(FieldName.INDEXING_QUEUE_CONSISTENCY, Default.INDEXING_QUEUE_CONSISTENCY);
+            return FieldValue.INDEXING_CONSISTENCY_WAIT_FOR_OWN_WRITES.equalsIgnoreCase(consistency);
+        }
+
+        /**
+         * Get the maximum time in milliseconds that a query waits for the queued index operations to be applied.
+         * 
+         * @return the maximum wait time in milliseconds; never negative
+         */
+        public long getMaximumWaitInMillis() {
+            return Math.max(0L, queue.getLong(FieldName.INDEXING_QUEUE_MAXIMUM_WAIT_IN_MILLIS,
+                                              Default.INDEXING_QUEUE_MAXIMUM_WAIT_IN_MILLIS));
+        }
+    }
+
+    @Immutable
+    public class GroupCommit {
+        private final Document groupCommit;
+        private final boolean enabled;
+
+        protected GroupCommit( Document groupCommit ) {
+            this.groupCommit = groupCommit != null ? groupCommit : EMPTY;
+            this.enabled = groupCommit != null;
+        }
+
+        /**
+         * Determine if the concurrent saves of different sessions should be coalesced into a single transaction. This is
+         * DISABLED by default and is enabled by defining the "{@value FieldName#GROUP_COMMIT}" document (even if empty) under
+         * "storage".
+         * 
+         * @return true if enabled, or false otherwise
+         */
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        /**
+         * Get the maximum time in milliseconds that the first save of a group waits for other saves to join the group.
+         * 
+         * @return the window in milliseconds; never negative
+         */
+        public long getWindowInMillis() {
+            return groupCommit.getLong(FieldName.GROUP_COMMIT_WINDOW_IN_MILLIS, Default.GROUP_COMMIT_WINDOW_IN_MILLIS);
+        }
+
+        /**
+         * Get the maximum number of saves that are committed in a single transaction.
+         * 
+         * @return the maximum group size; always positive
+         */
+        public int getMaximumGroupSize() {
+            return groupCommit.getInteger(FieldName.GROUP_COMMIT_MAXIMUM_GROUP_SIZE, Default.GROUP_COMMIT_MAXIMUM_GROUP_SIZE);
+        }
+    }
+
     /**
      * The security-related configuration information.
      */
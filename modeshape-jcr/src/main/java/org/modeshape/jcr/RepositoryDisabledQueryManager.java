@@ -176,6 +176,11 @@ class RepositoryDisabledQueryManager extends RepositoryQueryManager {
         // do nothing
     }
 
+    @Override
+    protected void requireReindexing() {
+        // do nothing
+    }
+
     @Override
     protected void reindexContent( String workspaceName,
                                    NodeTypeSchemata schemata,
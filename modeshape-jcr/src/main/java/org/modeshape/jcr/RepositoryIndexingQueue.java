@@ -0,0 +1,711 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ * See the AUTHORS.txt file in the distribution for a full listing of 
+ * individual contributors.
+ *
+ * ModeShape is free software. Unless otherwise indicated, all code in ModeShape
+ * is licensed to you under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ * 
+ * ModeShape is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.modeshape.jcr;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import org.infinispan.schematic.SchematicEntry;
+import org.modeshape.common.annotation.GuardedBy;
+import org.modeshape.common.annotation.ThreadSafe;
+import org.modeshape.common.logging.Logger;
+import org.modeshape.common.util.NamedThreadFactory;
+import org.modeshape.jcr.JcrRepository.RunningState;
+import org.modeshape.jcr.RepositoryConfiguration.IndexingQueue;
+import org.modeshape.jcr.RepositoryQueryManager.IndexingBatch;
+import org.modeshape.jcr.api.monitor.ValueMetric;
+import org.modeshape.jcr.api.query.Query;
+import org.modeshape.jcr.cache.CachedNode;
+import org.modeshape.jcr.cache.NodeCache;
+import org.modeshape.jcr.cache.NodeKey;
+import org.modeshape.jcr.cache.SessionEnvironment.Monitor;
+import org.modeshape.jcr.cache.WorkspaceNotFoundException;
+import org.modeshape.jcr.cache.document.LazyCachedNode;
+import org.modeshape.jcr.query.QueryIndexing;
+import org.modeshape.jcr.txn.Transactions.TransactionFunction;
+import org.modeshape.jcr.value.Name;
+import org.modeshape.jcr.value.Path;
+import org.modeshape.jcr.value.PathFactory;
+import org.modeshape.jcr.value.Property;
+
+/**
+ * A durable queue of the index operations for committed changes, which are applied to the indexes asynchronously by a small
+ * pool of threads. This takes the indexing work out of the thread that saves the changes.
+ * <p>
+ * Each operation is appended to a journal in the configured directory, which is forced to disk before the save returns, so that
+ * operations that were not yet applied when the repository stopped are replayed upon the next startup. The journal is written
+ * in segments, and each segment is deleted once all of its operations have been applied. The operations only record the
+ * workspace, key and path of the node: the content is read from the document store at the time the operation is applied, so
+ * that multiple queued updates of the same node are applied only once.
+ * </p>
+ * <p>
+ * A batch of operations that cannot be applied remains in the journal, and is retried after a delay that grows with each
+ * consecutive failure (or upon the next startup).
+ * </p>
+ * <p>
+ * Queries can {@link #awaitQueuedOperations(String) wait} until all of the operations queued before the query was executed
+ * have been applied.
+ * </p>
+ */
+@ThreadSafe
+final class RepositoryIndexingQueue {
+
+    private static final int SEGMENT_SIZE = 10000;
+    private static final String SEGMENT_PREFIX = "index-ops-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String UPDATE = "U";
+    private static final String REMOVE = "R";
+    private static final String ENCODING = "UTF-8";
+    private static final String DELIMITER = "\t";
+    private static final long MINIMUM_RETRY_DELAY_IN_MILLIS = 100L;
+    private static final long MAXIMUM_RETRY_DELAY_IN_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+    private static final Logger LOGGER = Logger.getLogger(RepositoryIndexingQueue.class);
+
+    private final RunningState runningState;
+    private final File directory;
+    private final int batchSize;
+    private final boolean waitForOwnWrites;
+    private final long maximumWaitInMillis;
+    private final ExecutorService indexers;
+    private final Lock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+    private final Condition applied = lock.newCondition();
+
+    /**
+     * The operations that are not yet being applied, in the order they were enqueued. Only the most recent operation for each
+     * node is kept.
+     */
+    @GuardedBy( "lock" )
+    private final LinkedHashMap<NodeKey, Operation> pending = new LinkedHashMap<NodeKey, Operation>();
+    /**
+     * The keys of the nodes whose operations are currently being applied; no other operation for these nodes is applied
+     * concurrently.
+     */
+    @GuardedBy( "lock" )
+    private final Set<NodeKey> inFlight = new HashSet<NodeKey>();
+    /**
+     * The time at which each of the operations that have not yet been applied was enqueued, keyed by sequence number.
+     */
+    @GuardedBy( "lock" )
+    private final TreeMap<Long, Long> outstanding = new TreeMap<Long, Long>();
+    /**
+     * The journal segments that may still contain operations that have not been applied, keyed by their first sequence number.
+     */
+    @GuardedBy( "lock" )
+    private final TreeMap<Long, File> segments = new TreeMap<Long, File>();
+    @GuardedBy( "lock" )
+    private long lastSequence;
+    @GuardedBy( "lock" )
+    private Writer journal;
+    @GuardedBy( "lock" )
+    private FileOutputStream journalStream;
+    @GuardedBy( "lock" )
+    private int journalCount;
+    @GuardedBy( "lock" )
+    private boolean running = true;
+
+    RepositoryIndexingQueue( RunningState runningState,
+                             IndexingQueue config ) {
+        this.runningState = runningState;
+        this.directory = new File(config.getDirectory());
+        this.batchSize = config.getBatchSize();
+        this.waitForOwnWrites = config.waitForOwnWrites();
+        this.maximumWaitInMillis = config.getMaximumWaitInMillis();
+        this.directory.mkdirs();
+
+        // Re-enqueue the operations that were not applied before the repository last stopped ...
+        recover();
+
+        int threads = config.getThreads();
+        this.indexers = Executors.newFixedThreadPool(threads, new NamedThreadFactory("modeshape-indexing-queue"));
+        for (int i = 0; i != threads; ++i) {
+            indexers.submit(new Indexer());
+        }
+    }
+
+    /**
+     * Create a new monitor that records the index operations for the changes made within a single transaction, and that enqueues
+     * them only when the transaction completes.
+     * 
+     * @return the new monitor; never null
+     */
+    Monitor newMonitor() {
+        return new QueueingMonitor();
+    }
+
+    /**
+     * Wait until all of the operations that were enqueued before this method was called have been applied to the indexes, or
+     * until the maximum wait time has elapsed.
+     * 
+     * @param consistency the consistency required by the query, either {@link Query#WAIT_FOR_OWN_WRITES} or
+     *        {@link Query#BEST_EFFORT}; may be null if the configured default should be used
+     */
+    void awaitQueuedOperations( String consistency ) {
+        boolean wait = consistency != null ? Query.WAIT_FOR_OWN_WRITES.equals(consistency) : waitForOwnWrites;
+        if (!wait) return;
+        try {
+            if (!awaitAppliedThrough(maximumWaitInMillis)) {
+                LOGGER.debug(JcrI18n.timeoutWaitingForQueuedIndexOperations.text(runningState.name(), maximumWaitInMillis));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Stop applying the queued operations. Operations that are still queued after a bounded wait remain in the journal and are
+     * applied when the repository is next started.
+     */
+    void shutdown() {
+        lock.lock();
+        try {
+            running = false;
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        indexers.shutdown();
+        try {
+            if (!indexers.awaitTermination(maximumWaitInMillis, TimeUnit.MILLISECONDS)) {
+                indexers.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            indexers.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        lock.lock();
+        try {
+            closeJournal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean awaitAppliedThrough( long maximumWaitInMillis ) throws InterruptedException {
+        lock.lock();
+        try {
+            long target = lastSequence;
+            long remaining = TimeUnit.MILLISECONDS.toNanos(maximumWaitInMillis);
+            while (appliedThrough() < target) {
+                if (remaining <= 0L) return false;
+                remaining = applied.awaitNanos(remaining);
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @GuardedBy( "lock" )
+    private long appliedThrough() {
+        return outstanding.isEmpty() ? lastSequence : outstanding.firstKey() - 1L;
+    }
+
+    /**
+     * Add the supplied operations to the queue, recording them in the journal.
+     * 
+     * @param operations the operations; may not be null
+     */
+    protected void enqueue( List<Operation> operations ) {
+        if (operations.isEmpty()) return;
+        lock.lock();
+        try {
+            long now = System.currentTimeMillis();
+            for (Operation operation : operations) {
+                long sequence = ++lastSequence;
+                write(operation, sequence);
+                outstanding.put(sequence, now);
+                Operation previous = pending.remove(operation.key);
+                if (previous != null) operation.sequences.addAll(previous.sequences);
+                operation.sequences.add(sequence);
+                pending.put(operation.key, operation);
+            }
+            flushJournal();
+            updateStatistics(now);
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @GuardedBy( "lock" )
+    private List<Operation> takeBatch() {
+        if (pending.isEmpty()) return Collections.emptyList();
+        List<Operation> batch = new ArrayList<Operation>();
+        Iterator<Map.Entry<NodeKey, Operation>> iter = pending.entrySet().iterator();
+        while (iter.hasNext() && batch.size() < batchSize) {
+            Map.Entry<NodeKey, Operation> entry = iter.next();
+            if (inFlight.contains(entry.getKey())) continue;
+            iter.remove();
+            inFlight.add(entry.getKey());
+            batch.add(entry.getValue());
+        }
+        return batch;
+    }
+
+    /**
+     * Return the operations in a batch that could not be applied to the queue, so that they are applied again. Any operation for
+     * the same node that was enqueued in the meantime is applied in their place.
+     * 
+     * @param batch the operations; may not be null
+     */
+    private void requeue( List<Operation> batch ) {
+        lock.lock();
+        try {
+            for (Operation operation : batch) {
+                inFlight.remove(operation.key);
+                Operation newer = pending.get(operation.key);
+                if (newer != null) {
+                    newer.sequences.addAll(operation.sequences);
+                } else {
+                    pending.put(operation.key, operation);
+                }
+            }
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Wait before retrying operations that could not be applied, unless the queue is shut down in the meantime.
+     * 
+     * @param delayInMillis the time to wait
+     * @return true if the queue is still running, or false if it has been shut down
+     */
+    private boolean awaitRetry( long delayInMillis ) {
+        lock.lock();
+        try {
+            long remaining = TimeUnit.MILLISECONDS.toNanos(delayInMillis);
+            while (running && remaining > 0L) {
+                remaining = available.awaitNanos(remaining);
+            }
+            return running;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void markApplied( List<Operation> batch ) {
+        lock.lock();
+        try {
+            for (Operation operation : batch) {
+                inFlight.remove(operation.key);
+                for (Long sequence : operation.sequences) {
+                    outstanding.remove(sequence);
+                }
+            }
+            removeAppliedSegments();
+            updateStatistics(System.currentTimeMillis());
+            applied.signalAll();
+            // Operations for nodes that were in flight may now be applied ...
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @GuardedBy( "lock" )
+    private void updateStatistics( long now ) {
+        RepositoryStatistics statistics = runningState.statistics();
+        statistics.set(ValueMetric.INDEXING_QUEUE_SIZE, outstanding.size());
+        statistics.set(ValueMetric.INDEXING_LAG, outstanding.isEmpty() ? 0L : now - outstanding.firstEntry().getValue());
+    }
+
+    protected void apply( List<Operation> batch ) {
+        RepositoryQueryManager queryManager = runningState.queryManager();
+        QueryIndexing indexes = queryManager.getIndexes();
+        NodeTypeSchemata schemata = runningState.nodeTypeManager().getRepositorySchemata();
+        IndexingBatch txnCtx = queryManager.newIndexingBatch(batchSize, null);
+        for (Operation operation : batch) {
+            if (!operation.isRemove()) {
+                // Read the node's current content directly from the store, since the workspace cache may not yet reflect it ...
+                SchematicEntry entry = runningState.documentStore().get(operation.key.toString());
+                if (entry != null) {
+                    NodeCache cache = null;
+                    try {
+                        cache = runningState.repositoryCache().getWorkspaceCache(operation.workspace);
+                    } catch (WorkspaceNotFoundException e) {
+                        // The workspace has been removed (along with its indexed content) ...
+                        continue;
+                    }
+                    CachedNode node = new LazyCachedNode(operation.key, entry.getContentAsDocument());
+                    if (node.isQueryable(cache)) {
+                        indexes.updateIndex(operation.workspace, operation.key, operation.path, node.getPrimaryType(cache),
+                                            node.getMixinTypes(cache), node.getProperties(cache), schemata, txnCtx);
+                        continue;
+                    }
+                }
+            }
+            // The node has been removed or is no longer queryable ...
+            indexes.removeFromIndex(operation.workspace, Collections.singleton(operation.key), txnCtx);
+        }
+        txnCtx.flush();
+    }
+
+    @GuardedBy( "lock" )
+    private void write( Operation operation,
+                        long sequence ) {
+        try {
+            if (journal == null || journalCount >= SEGMENT_SIZE) {
+                closeJournal();
+                File segment = new File(directory, segmentName(sequence));
+                journalStream = new FileOutputStream(segment, true);
+                journal = new BufferedWriter(new OutputStreamWriter(journalStream, ENCODING));
+                journalCount = 0;
+                segments.put(sequence, segment);
+            }
+            journal.write(operation.toJournalEntry());
+            journal.write('\n');
+            ++journalCount;
+        } catch (IOException e) {
+            // The operation is still queued in memory, but will not survive a restart ...
+            LOGGER.error(e, JcrI18n.errorRecordingQueuedIndexOperations, directory, runningState.name(), e.getMessage());
+            closeJournal();
+        }
+    }
+
+    @GuardedBy( "lock" )
+    private void flushJournal() {
+        if (journal == null) return;
+        try {
+            journal.flush();
+            // Make sure the operations survive a crash of the process or machine before the save returns ...
+            journalStream.getChannel().force(false);
+        } catch (IOException e) {
+            LOGGER.error(e, JcrI18n.errorRecordingQueuedIndexOperations, directory, runningState.name(), e.getMessage());
+            closeJournal();
+        }
+    }
+
+    @GuardedBy( "lock" )
+    private void closeJournal() {
+        if (journal == null) return;
+        try {
+            journal.close();
+        } catch (IOException e) {
+            LOGGER.error(e, JcrI18n.errorRecordingQueuedIndexOperations, directory, runningState.name(), e.getMessage());
+        } finally {
+            journal = null;
+            journalStream = null;
+        }
+    }
+
+    @GuardedBy( "lock" )
+    private void removeAppliedSegments() {
+        if (outstanding.isEmpty()) {
+            // Everything has been applied, so none of the segments (including the current one) are needed ...
+            closeJournal();
+            for (File segment : segments.values()) {
+                segment.delete();
+            }
+            segments.clear();
+            return;
+        }
+        // Otherwise remove each segment whose operations all precede the first outstanding operation ...
+        long firstOutstanding = outstanding.firstKey();
+        Map.Entry<Long, File> first = segments.firstEntry();
+        while (first != null) {
+            Long next = segments.higherKey(first.getKey());
+            if (next == null || next > firstOutstanding) break;
+            first.getValue().delete();
+            segments.remove(first.getKey());
+            first = segments.firstEntry();
+        }
+    }
+
+    private void recover() {
+        File[] files = directory.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept( File dir,
+                                   String name ) {
+                return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+            }
+        });
+        if (files == null || files.length == 0) return;
+        // The names include the zero-padded first sequence number, so they sort in the order they were written ...
+        Arrays.sort(files);
+
+        PathFactory pathFactory = runningState.context().getValueFactories().getPathFactory();
+        List<Operation> operations = new ArrayList<Operation>();
+        long maxSequence = 0L;
+        for (File file : files) {
+            long sequence = sequenceOf(file);
+            BufferedReader reader = null;
+            try {
+                reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), ENCODING));
+                String line = null;
+                while ((line = reader.readLine()) != null) {
+                    ++sequence;
+                    Operation operation = Operation.fromJournalEntry(line, pathFactory);
+                    if (operation != null) operations.add(operation);
+                }
+            } catch (IOException e) {
+                LOGGER.error(e, JcrI18n.errorRecordingQueuedIndexOperations, directory, runningState.name(), e.getMessage());
+            } finally {
+                if (reader != null) {
+                    try {
+                        reader.close();
+                    } catch (IOException e) {
+                        // ignore
+                    }
+                }
+            }
+            maxSequence = Math.max(maxSequence, sequence);
+        }
+        if (!operations.isEmpty()) {
+            LOGGER.debug("Replaying {0} queued index operations for repository '{1}'", operations.size(), runningState.name());
+        }
+
+        lock.lock();
+        try {
+            // Use sequence numbers after those in the existing segments so that the new segments never overwrite them ...
+            lastSequence = maxSequence;
+        } finally {
+            lock.unlock();
+        }
+        // Record the operations in new segments before removing the old ones ...
+        enqueue(operations);
+        for (File file : files) {
+            file.delete();
+        }
+    }
+
+    private static String segmentName( long firstSequence ) {
+        return SEGMENT_PREFIX + String.format("%019d", firstSequence) + SEGMENT_SUFFIX;
+    }
+
+    private static long sequenceOf( File segment ) {
+        String name = segment.getName();
+        try {
+            return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())) - 1L;
+        } catch (NumberFormatException e) {
+            return 0L;
+        }
+    }
+
+    /**
+     * A single queued operation on the indexes.
+     */
+    protected static final class Operation {
+        protected final String workspace;
+        protected final NodeKey key;
+        protected final Path path;
+        protected final List<Long> sequences = new ArrayList<Long>(1);
+
+        /**
+         * Create a new operation.
+         * 
+         * @param workspace the name of the workspace; may not be null
+         * @param key the key of the node; may not be null
+         * @param path the path of the node, or null if the node was removed
+         */
+        protected Operation( String workspace,
+                             NodeKey key,
+                             Path path ) {
+            this.workspace = workspace;
+            this.key = key;
+            this.path = path;
+        }
+
+        protected boolean isRemove() {
+            return path == null;
+        }
+
+        protected String toJournalEntry() throws UnsupportedEncodingException {
+            StringBuilder sb = new StringBuilder();
+            sb.append(isRemove() ? REMOVE : UPDATE);
+            sb.append(DELIMITER).append(URLEncoder.encode(workspace, ENCODING));
+            sb.append(DELIMITER).append(key.toString());
+            if (!isRemove()) sb.append(DELIMITER).append(URLEncoder.encode(path.getString(), ENCODING));
+            return sb.toString();
+        }
+
+        /**
+         * Parse the operation in the supplied journal entry.
+         * 
+         * @param entry the journal entry; may not be null
+         * @param pathFactory the factory used to parse the path; may not be null
+         * @return the operation, or null if the entry is incomplete (e.g., because the entry was only partially written)
+         */
+        protected static Operation fromJournalEntry( String entry,
+                                                     PathFactory pathFactory ) {
+            String[] parts = entry.split(DELIMITER);
+            try {
+                if (parts.length == 3 && REMOVE.equals(parts[0])) {
+                    return new Operation(URLDecoder.decode(parts[1], ENCODING), new NodeKey(parts[2]), null);
+                }
+                if (parts.length == 4 && UPDATE.equals(parts[0])) {
+                    Path path = pathFactory.create(URLDecoder.decode(parts[3], ENCODING));
+                    return new Operation(URLDecoder.decode(parts[1], ENCODING), new NodeKey(parts[2]), path);
+                }
+            } catch (RuntimeException e) {
+                // fall through
+            } catch (UnsupportedEncodingException e) {
+                // fall through
+            }
+            LOGGER.debug("Ignoring incomplete queued index operation: {0}", entry);
+            return null;
+        }
+
+        @Override
+        public String toString() {
+            return (isRemove() ? "remove " : "update ") + key + " in '" + workspace + "'";
+        }
+    }
+
+    /**
+     * Applies batches of the queued operations until the queue is shut down and empty.
+     */
+    protected final class Indexer implements Runnable {
+        private long retryDelayInMillis = 0L;
+
+        @SuppressWarnings( "synthetic-access" )
+        @Override
+        public void run() {
+            while (true) {
+                List<Operation> batch = null;
+                lock.lock();
+                try {
+                    batch = takeBatch();
+                    while (batch.isEmpty()) {
+                        if (!running) return;
+                        available.await();
+                        batch = takeBatch();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } finally {
+                    lock.unlock();
+                }
+                try {
+                    apply(batch);
+                } catch (RuntimeException e) {
+                    LOGGER.error(e, JcrI18n.errorApplyingQueuedIndexOperations, batch.size(), runningState.name(), e.getMessage());
+                    // The operations remain in the journal, and are retried later or replayed upon the next startup ...
+                    retryDelayInMillis = Math.max(MINIMUM_RETRY_DELAY_IN_MILLIS,
+                                                  Math.min(retryDelayInMillis * 2L, MAXIMUM_RETRY_DELAY_IN_MILLIS));
+                    boolean retry = awaitRetry(retryDelayInMillis);
+                    requeue(batch);
+                    if (!retry) return;
+                    continue;
+                }
+                retryDelayInMillis = 0L;
+                markApplied(batch);
+            }
+        }
+    }
+
+    /**
+     * A monitor that records the index operations for the changes in a transaction, and enqueues them when the transaction
+     * completes. Operations recorded after the transaction has completed are enqueued immediately. Each instance is used by a
+     * single transaction.
+     */
+    protected final class QueueingMonitor implements Monitor, TransactionFunction {
+        private List<Operation> operations = new ArrayList<Operation>();
+        private boolean completed;
+
+        @SuppressWarnings( "synthetic-access" )
+        @Override
+        public void recordChanged( long changedNodesCount ) {
+            // ValueMetric.SESSION_SAVES are tracked in JcrSession.save() ...
+            runningState.statistics().increment(ValueMetric.NODE_CHANGES, changedNodesCount);
+        }
+
+        @Override
+        public void recordAdd( String workspace,
+                               NodeKey key,
+                               Path path,
+                               Name primaryType,
+                               Set<Name> mixinTypes,
+                               Iterator<Property> propertiesIterator ) {
+            record(new Operation(workspace, key, path));
+        }
+
+        @Override
+        public void recordUpdate( String workspace,
+                                  NodeKey key,
+                                  Path path,
+                                  Name primaryType,
+                                  Set<Name> mixinTypes,
+                                  Iterator<Property> properties ) {
+            record(new Operation(workspace, key, path));
+        }
+
+        @Override
+        public void recordRemove( String workspace,
+                                  Iterable<NodeKey> keys ) {
+            for (NodeKey key : keys) {
+                record(new Operation(workspace, key, null));
+            }
+        }
+
+        @Override
+        public void transactionComplete() {
+            completed = true;
+            List<Operation> committed = operations;
+            operations = new ArrayList<Operation>();
+            enqueue(committed);
+        }
+
+        private void record( Operation operation ) {
+            if (completed) {
+                enqueue(Collections.singletonList(operation));
+            } else {
+                operations.add(operation);
+            }
+        }
+    }
+}
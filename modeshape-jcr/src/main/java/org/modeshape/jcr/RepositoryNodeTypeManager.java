@@ -281,6 +281,7 @@ class RepositoryNodeTypeManager implements ChangeSetListener {
             // Now change the cache ...
             this.nodeTypesCache = newNodeTypes;
             this.schemata = null;
+            invalidateQueryPlans();
         } finally {
             nodeTypesLock.writeLock().unlock();
         }
@@ -297,6 +298,17 @@ class RepositoryNodeTypeManager implements ChangeSetListener {
 
     void signalNamespaceChanges() {
         this.schemata = null;
+        invalidateQueryPlans();
+    }
+
+    /**
+     * Remove all of the parsed and optimized queries cached by the repository, since they were planned against the node types
+     * and namespaces that were in effect before a change.
+     */
+    private void invalidateQueryPlans() {
+        RepositoryQueryManager queryManager = repository.queryManager();
+        // The query manager will be null during repository startup ...
+        if (queryManager != null) queryManager.planCache().invalidate();
     }
 
     /**
@@ -524,6 +536,7 @@ class RepositoryNodeTypeManager implements ChangeSetListener {
                 // And finally update the capabilities cache ...
                 this.nodeTypesCache = newNodeTypes;
                 this.schemata = null;
+                invalidateQueryPlans();
             }
         } finally {
             nodeTypesLock.writeLock().unlock();
@@ -23,26 +23,39 @@
  */
 package org.modeshape.jcr;
 
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 import javax.jcr.query.InvalidQueryException;
+import javax.transaction.Status;
 import javax.transaction.Synchronization;
 import org.hibernate.search.backend.TransactionContext;
 import org.hibernate.search.engine.spi.SearchFactoryImplementor;
 import org.hibernate.search.spi.SearchFactoryBuilder;
+import org.infinispan.schematic.Schematic;
+import org.infinispan.schematic.SchematicEntry;
+import org.infinispan.schematic.document.Array;
+import org.infinispan.schematic.document.EditableDocument;
 import org.modeshape.common.annotation.GuardedBy;
 import org.modeshape.common.logging.Logger;
 import org.modeshape.common.util.CheckArg;
+import org.modeshape.common.util.NamedThreadFactory;
 import org.modeshape.jcr.JcrRepository.RunningState;
+import org.modeshape.jcr.RepositoryConfiguration.IndexRebuildOptions;
+import org.modeshape.jcr.api.monitor.ValueMetric;
 import org.modeshape.jcr.api.query.qom.QueryCommand;
 import org.modeshape.jcr.cache.CachedNode;
 import org.modeshape.jcr.cache.ChildReference;
@@ -51,6 +64,7 @@ import org.modeshape.jcr.cache.NodeCache;
 import org.modeshape.jcr.cache.NodeKey;
 import org.modeshape.jcr.cache.PathCache;
 import org.modeshape.jcr.cache.RepositoryCache;
+import org.modeshape.jcr.cache.document.LocalDocumentStore;
 import org.modeshape.jcr.query.CancellableQuery;
 import org.modeshape.jcr.query.QueryIndexing;
 import org.modeshape.jcr.query.lucene.LuceneQueryEngine;
@@ -61,6 +75,7 @@ import org.modeshape.jcr.query.optimize.RuleBasedOptimizer;
 import org.modeshape.jcr.query.plan.CanonicalPlanner;
 import org.modeshape.jcr.query.plan.PlanHints;
 import org.modeshape.jcr.query.plan.Planner;
+import org.modeshape.jcr.query.plan.QueryPlanCache;
 import org.modeshape.jcr.query.validate.Schemata;
 import org.modeshape.jcr.value.Path;
 import org.modeshape.jcr.value.Path.Segment;
@@ -70,12 +85,31 @@ import org.modeshape.jcr.value.Path.Segment;
  */
 class RepositoryQueryManager {
 
+    /**
+     * The key of the document that records the subtrees that have already been re-indexed, so that a re-indexing that was
+     * interrupted can be resumed.
+     */
+    private static final String REINDEX_CHECKPOINT_KEY = "repository:reindex";
+    private static final String REINDEX_COMPLETED_FIELD_NAME = "completed";
+    private static final String REINDEX_SYSTEM_CONTENT_FIELD_NAME = "includeSystemContent";
+    private static final long CHECKPOINT_INTERVAL_IN_MILLIS = 5000L;
+
+    /**
+     * The number of subtrees per thread into which the content of each workspace is split, so that all threads remain busy even
+     * when the subtrees have very different sizes.
+     */
+    private static final int PARTITIONS_PER_THREAD = 8;
+    private static final int MAXIMUM_PARTITION_DEPTH = 3;
+
     private final RunningState runningState;
     private final ExecutorService indexingExecutorService;
     private final LuceneSearchConfiguration config;
+    private final int reindexThreads;
+    private final int reindexBatchSize;
     private final Lock engineInitLock = new ReentrantLock();
     @GuardedBy( "engineInitLock" )
     private volatile LuceneQueryEngine queryEngine;
+    private final QueryPlanCache planCache = new QueryPlanCache(QueryPlanCache.DEFAULT_MAXIMUM_SIZE);
     private final Logger logger = Logger.getLogger(getClass());
 
     private Future<Void> asyncReindexingResult;
@@ -85,15 +119,20 @@ class RepositoryQueryManager {
         this.runningState = runningState;
         this.indexingExecutorService = null;
         this.config = null;
+        this.reindexThreads = RepositoryConfiguration.Default.REBUILD_THREADS;
+        this.reindexBatchSize = RepositoryConfiguration.Default.REBUILD_BATCH_SIZE;
     }
 
     RepositoryQueryManager( RunningState runningState,
                             ExecutorService indexingExecutorService,
                             Properties backendProps,
                             Properties indexingProps,
-                            Properties indexStorageProps ) {
+                            Properties indexStorageProps,
+                            IndexRebuildOptions rebuildOptions ) {
         this.runningState = runningState;
         this.indexingExecutorService = indexingExecutorService;
+        this.reindexThreads = rebuildOptions.getThreads();
+        this.reindexBatchSize = rebuildOptions.getBatchSize();
         // Set up the query engine ...
         String repoName = runningState.name();
         this.config = new BasicLuceneConfiguration(repoName, backendProps, indexingProps, indexStorageProps);
@@ -157,6 +196,11 @@ class RepositoryQueryManager {
                                    Schemata schemata,
                                    PlanHints hints,
                                    Map<String, Object> variables ) throws InvalidQueryException {
+        RepositoryIndexingQueue indexingQueue = runningState.indexingQueue();
+        if (indexingQueue != null) {
+            // Make sure the indexes reflect the changes saved before this query, if required ...
+            indexingQueue.awaitQueuedOperations(hints != null ? hints.indexConsistency : null);
+        }
         return queryEngine().query(context,
                                    repositoryCache,
                                    workspaceNames,
@@ -171,6 +215,15 @@ class RepositoryQueryManager {
         return queryEngine().getQueryIndexing();
     }
 
+    /**
+     * Get the repository-wide cache of parsed and optimized queries.
+     * 
+     * @return the plan cache; never null
+     */
+    QueryPlanCache planCache() {
+        return planCache;
+    }
+
     protected final LuceneQueryEngine queryEngine() {
         if (queryEngine == null) {
             try {
@@ -185,7 +238,7 @@ class RepositoryQueryManager {
                     SearchFactoryImplementor searchFactory = new SearchFactoryBuilder().configuration(config)
                                                                                        .buildSearchFactory();
                     queryEngine = new LuceneQueryEngine(runningState.context(), runningState.name(), planner, optimizer,
-                                                        searchFactory, config.getVersion(), enableFullTextSearch);
+                                                        searchFactory, config.getVersion(), enableFullTextSearch, planCache);
 
                     if (this.jmsListener != null) {
                         //if we're dealing with a JMS master configuration, we need to start the JMS listener
@@ -205,36 +258,74 @@ class RepositoryQueryManager {
      * @param includeSystemContent flag which indicates whether content in the system workspace (below /jcr:system) should be
      *        re-indexed or not.
      * @param async flag which indicates whether the operation should be done synchronously or asynchronously
-     * @param onlyIfEmpty true if the repository content should be indexed only if the indexes are empty
+     * @param onlyIfEmpty true if the repository content should be indexed only if the indexes are empty or if a previous
+     *        re-indexing did not complete
      */
-    protected void reindexContent( final boolean includeSystemContent,
+    protected void reindexContent( boolean includeSystemContent,
                                    boolean async,
                                    boolean onlyIfEmpty ) {
-        if (onlyIfEmpty && !indexesEmpty()) {
+        if (onlyIfEmpty && !indexesEmpty() && !reindexingIncomplete()) {
             // There already was some indexed content, so there's nothing to do ...
             return;
         }
+        // A re-indexing required by an upgrade of the index format also includes the system content ...
+        final boolean includeSystem = includeSystemContent || reindexingRequiresSystemContent();
 
         if (async) {
             asyncReindexingResult = indexingExecutorService.submit(new Callable<Void>() {
                 @SuppressWarnings( "synthetic-access" )
                 @Override
                 public Void call() throws Exception {
-                    reindexContent(includeSystemContent);
+                    reindexContent(includeSystem);
                     return null;
                 }
             });
         } else {
-            reindexContent(includeSystemContent);
+            reindexContent(includeSystem);
         }
     }
 
+    /**
+     * Record that all of the repository content, including the system content, must be re-indexed, because the existing indexes
+     * were written in an earlier format and lack fields that queries now rely upon. This is recorded as a re-indexing that has
+     * not completed, so the content is re-indexed upon the next startup (unless the indexes are never rebuilt upon startup), and
+     * again upon each later startup until a re-indexing completes.
+     */
+    protected void requireReindexing() {
+        LocalDocumentStore store = runningState.documentStore().localStore();
+        EditableDocument doc = Schematic.newDocument();
+        doc.setArray(REINDEX_COMPLETED_FIELD_NAME, Schematic.newArray());
+        doc.setBoolean(REINDEX_SYSTEM_CONTENT_FIELD_NAME, true);
+        store.put(REINDEX_CHECKPOINT_KEY, doc);
+    }
+
     protected boolean indexesEmpty() {
         return getIndexes().initializedIndexes();
     }
 
     /**
-     * Crawl and index all of the repository content.
+     * Determine whether a previous re-indexing of all the repository content was interrupted before it completed.
+     * 
+     * @return true if the re-indexing did not complete, or false otherwise
+     */
+    protected boolean reindexingIncomplete() {
+        return runningState.documentStore().localStore().containsKey(REINDEX_CHECKPOINT_KEY);
+    }
+
+    /**
+     * Determine whether the re-indexing that did not complete must also re-index the system content.
+     * 
+     * @return true if the system content must be re-indexed, or false otherwise
+     */
+    protected boolean reindexingRequiresSystemContent() {
+        SchematicEntry entry = runningState.documentStore().localStore().get(REINDEX_CHECKPOINT_KEY);
+        return entry != null && entry.getContentAsDocument().getBoolean(REINDEX_SYSTEM_CONTENT_FIELD_NAME, false);
+    }
+
+    /**
+     * Crawl and index all of the repository content. The content of each workspace is split into subtrees that are re-indexed
+     * in parallel by the {@link RepositoryConfiguration.FieldName#REBUILD_THREADS configured number of threads}, and the
+     * subtrees that have been re-indexed are recorded in a checkpoint so that an interrupted re-indexing can later be resumed.
      * 
      * @param includeSystemContent true if the system content should also be indexed
      */
@@ -254,13 +345,94 @@ class RepositoryQueryManager {
             logger.debug("Completed reindex of system content in '{0}' repository.", runningState.name());
         }
 
-        // Index the non-system workspaces ...
-        for (String workspaceName : repoCache.getWorkspaceNames()) {
-            NodeCache workspaceCache = repoCache.getWorkspaceCache(workspaceName);
-            CachedNode rootNode = workspaceCache.getNode(workspaceCache.getRootKey());
-            logger.debug("Starting reindex of workspace '{0}' content in '{1}' repository.", runningState.name(), workspaceName);
-            reindexContent(workspaceName, schemata, workspaceCache, rootNode, Integer.MAX_VALUE, false);
-            logger.debug("Completed reindex of workspace '{0}' content in '{1}' repository.", runningState.name(), workspaceName);
+        // Index the non-system workspaces, skipping the subtrees that were already re-indexed ...
+        ReindexCheckpoint checkpoint = new ReindexCheckpoint(runningState.documentStore().localStore());
+        if (checkpoint.completedCount() > 0) {
+            logger.info(JcrI18n.resumingReindex, runningState.name(), checkpoint.completedCount());
+        }
+        List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+        ExecutorService executor = Executors.newFixedThreadPool(reindexThreads, new NamedThreadFactory("modeshape-reindex"));
+        try {
+            for (String workspaceName : repoCache.getWorkspaceNames()) {
+                NodeCache workspaceCache = repoCache.getWorkspaceCache(workspaceName);
+                CachedNode rootNode = workspaceCache.getNode(workspaceCache.getRootKey());
+                logger.debug("Starting reindex of workspace '{0}' content in '{1}' repository.", runningState.name(), workspaceName);
+                for (NodeKey subtreeKey : partition(workspaceName, schemata, workspaceCache, rootNode)) {
+                    if (checkpoint.isCompleted(subtreeKey)) continue;
+                    results.add(executor.submit(new SubtreeReindexer(workspaceName, schemata, workspaceCache, subtreeKey,
+                                                                     checkpoint)));
+                }
+            }
+            // Wait for all of the subtrees to be re-indexed ...
+            int failures = 0;
+            for (Future<Boolean> result : results) {
+                try {
+                    if (!result.get().booleanValue()) ++failures;
+                } catch (ExecutionException e) {
+                    ++failures;
+                }
+            }
+            if (failures == 0) {
+                checkpoint.remove();
+                logger.debug("Completed reindex of all content in '{0}' repository.", runningState.name());
+            } else {
+                checkpoint.write();
+                logger.warn(JcrI18n.reindexIncomplete, runningState.name(), failures);
+            }
+        } catch (InterruptedException e) {
+            // Leave the checkpoint so that the re-indexing is resumed upon the next startup ...
+            checkpoint.write();
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Split the content of a workspace into subtrees that can be re-indexed independently. The root node and any node above the
+     * returned subtrees are indexed by this method.
+     * 
+     * @param workspaceName the name of the workspace; may not be null
+     * @param schemata the node type schemata; may not be null
+     * @param cache the workspace cache; may not be null
+     * @param root the root node of the workspace; may not be null
+     * @return the keys of the top nodes of the subtrees; never null
+     */
+    protected List<NodeKey> partition( String workspaceName,
+                                       NodeTypeSchemata schemata,
+                                       NodeCache cache,
+                                       CachedNode root ) {
+        IndexingBatch batch = new IndexingBatch(reindexBatchSize, ValueMetric.REINDEXED_NODE_COUNT);
+        List<NodeKey> subtrees = new ArrayList<NodeKey>();
+        if (!root.isQueryable(cache)) return subtrees;
+        reindexContent(workspaceName, schemata, cache, root, 1, false, batch);
+        addChildKeys(root, cache, subtrees);
+        // Split the largest levels further when there are too few subtrees to keep all of the threads busy ...
+        int targetCount = reindexThreads * PARTITIONS_PER_THREAD;
+        for (int depth = 1; reindexThreads > 1 && subtrees.size() < targetCount && depth < MAXIMUM_PARTITION_DEPTH; ++depth) {
+            List<NodeKey> children = new ArrayList<NodeKey>();
+            for (NodeKey key : subtrees) {
+                CachedNode node = cache.getNode(key);
+                if (node == null || !node.isQueryable(cache)) continue;
+                reindexContent(workspaceName, schemata, cache, node, 1, false, batch);
+                addChildKeys(node, cache, children);
+            }
+            subtrees = children;
+        }
+        batch.flush();
+        return subtrees;
+    }
+
+    private void addChildKeys( CachedNode node,
+                               NodeCache cache,
+                               List<NodeKey> keys ) {
+        String systemWorkspaceKey = runningState.systemWorkspaceKey();
+        for (ChildReference childRef : node.getChildReferences(cache)) {
+            NodeKey childKey = childRef.getKey();
+            // we should not reindex anything which is in the system area
+            if (!childKey.getWorkspaceKey().equals(systemWorkspaceKey)) {
+                keys.add(childKey);
+            }
         }
     }
 
@@ -318,6 +490,18 @@ class RepositoryQueryManager {
                                    CachedNode node,
                                    int depth,
                                    boolean reindexSystemContent ) {
+        IndexingBatch batch = new IndexingBatch(reindexBatchSize, ValueMetric.REINDEXED_NODE_COUNT);
+        reindexContent(workspaceName, schemata, cache, node, depth, reindexSystemContent, batch);
+        batch.flush();
+    }
+
+    protected void reindexContent( final String workspaceName,
+                                   final NodeTypeSchemata schemata,
+                                   NodeCache cache,
+                                   CachedNode node,
+                                   int depth,
+                                   boolean reindexSystemContent,
+                                   IndexingBatch batch ) {
         if (!node.isQueryable(cache)) {
             return;
         }
@@ -328,7 +512,6 @@ class RepositoryQueryManager {
 
         // Index the first node ...
         final QueryIndexing indexes = getIndexes();
-        final TransactionContext txnCtx = NO_TRANSACTION;
         indexes.updateIndex(workspaceName,
                             node.getKey(),
                             nodePath,
@@ -336,7 +519,8 @@ class RepositoryQueryManager {
                             node.getMixinTypes(cache),
                             node.getProperties(cache),
                             schemata,
-                            txnCtx);
+                            batch);
+        batch.nodeIndexed();
 
         if (depth == 1) return;
 
@@ -389,7 +573,8 @@ class RepositoryQueryManager {
                                 node.getMixinTypes(cache),
                                 node.getProperties(cache),
                                 schemata,
-                                txnCtx);
+                                batch);
+            batch.nodeIndexed();
 
             // Check the depth ...
             if (nodePath.size() <= depth) {
@@ -476,6 +661,180 @@ class RepositoryQueryManager {
         });
     }
 
+    /**
+     * Create a new batch of index updates that are applied to the indexes together.
+     * 
+     * @param batchSize the number of nodes after which the updates are applied; must be positive
+     * @param metric the metric that records the number of indexed nodes, or null if the nodes should not be counted
+     * @return the new batch; never null
+     */
+    IndexingBatch newIndexingBatch( int batchSize,
+                                    ValueMetric metric ) {
+        return new IndexingBatch(batchSize, metric);
+    }
+
+    /**
+     * A {@link TransactionContext} that collects the index updates for many nodes and applies them to the indexes as a single
+     * unit of work, rather than committing the indexes after each node. Each instance is used by a single thread.
+     */
+    protected final class IndexingBatch implements TransactionContext {
+        private final int batchSize;
+        private final ValueMetric metric;
+        private final List<Synchronization> synchronizations = new ArrayList<Synchronization>();
+        private Object identifier = new Object();
+        private int count;
+
+        protected IndexingBatch( int batchSize,
+                                 ValueMetric metric ) {
+            this.batchSize = batchSize;
+            this.metric = metric;
+        }
+
+        @Override
+        public boolean isTransactionInProgress() {
+            return true;
+        }
+
+        @Override
+        public Object getTransactionIdentifier() {
+            return identifier;
+        }
+
+        @Override
+        public void registerSynchronization( Synchronization synchronization ) {
+            CheckArg.isNotNull(synchronization, "synchronization");
+            synchronizations.add(synchronization);
+        }
+
+        /**
+         * Record that the index updates for another node were added to this batch, and apply the batch when it is full.
+         */
+        protected void nodeIndexed() {
+            if (++count >= batchSize) flush();
+        }
+
+        /**
+         * Apply to the indexes all of the updates in this batch.
+         */
+        @SuppressWarnings( "synthetic-access" )
+        protected void flush() {
+            try {
+                for (Synchronization synchronization : synchronizations) {
+                    synchronization.beforeCompletion();
+                }
+                for (Synchronization synchronization : synchronizations) {
+                    synchronization.afterCompletion(Status.STATUS_COMMITTED);
+                }
+            } finally {
+                synchronizations.clear();
+                // Use a new identifier so that the next updates are collected into a new unit of work ...
+                identifier = new Object();
+            }
+            if (count > 0) {
+                if (metric != null) runningState.statistics().increment(metric, count);
+                count = 0;
+            }
+        }
+    }
+
+    /**
+     * Re-indexes all of the content in one subtree of a workspace, and records in the checkpoint that it has done so.
+     */
+    protected final class SubtreeReindexer implements Callable<Boolean> {
+        private final String workspaceName;
+        private final NodeTypeSchemata schemata;
+        private final NodeCache cache;
+        private final NodeKey key;
+        private final ReindexCheckpoint checkpoint;
+
+        protected SubtreeReindexer( String workspaceName,
+                                    NodeTypeSchemata schemata,
+                                    NodeCache cache,
+                                    NodeKey key,
+                                    ReindexCheckpoint checkpoint ) {
+            this.workspaceName = workspaceName;
+            this.schemata = schemata;
+            this.cache = cache;
+            this.key = key;
+            this.checkpoint = checkpoint;
+        }
+
+        @SuppressWarnings( "synthetic-access" )
+        @Override
+        public Boolean call() {
+            try {
+                CachedNode node = cache.getNode(key);
+                if (node != null) {
+                    IndexingBatch batch = new IndexingBatch(reindexBatchSize, ValueMetric.REINDEXED_NODE_COUNT);
+                    reindexContent(workspaceName, schemata, cache, node, Integer.MAX_VALUE, false, batch);
+                    batch.flush();
+                }
+                checkpoint.completed(key);
+                return Boolean.TRUE;
+            } catch (RuntimeException e) {
+                logger.error(e, JcrI18n.errorReindexingContent, key, workspaceName, runningState.name(), e.getMessage());
+                return Boolean.FALSE;
+            }
+        }
+    }
+
+    /**
+     * The record of the subtrees that have been re-indexed, which is periodically written to the document store so that an
+     * interrupted re-indexing can be resumed without re-indexing those subtrees again. The record is removed once all of the
+     * content has been re-indexed.
+     */
+    protected static final class ReindexCheckpoint {
+        private final LocalDocumentStore store;
+        private final boolean includeSystemContent;
+        @GuardedBy( "this" )
+        private final Set<String> completed = new HashSet<String>();
+        @GuardedBy( "this" )
+        private long lastWritten;
+
+        protected ReindexCheckpoint( LocalDocumentStore store ) {
+            this.store = store;
+            SchematicEntry entry = store.get(REINDEX_CHECKPOINT_KEY);
+            if (entry != null) {
+                this.includeSystemContent = entry.getContentAsDocument().getBoolean(REINDEX_SYSTEM_CONTENT_FIELD_NAME, false);
+                Array keys = entry.getContentAsDocument().getArray(REINDEX_COMPLETED_FIELD_NAME);
+                if (keys != null) {
+                    for (Object key : keys) {
+                        completed.add(key.toString());
+                    }
+                }
+            } else {
+                // Record that a re-indexing has started ...
+                this.includeSystemContent = false;
+                write();
+            }
+        }
+
+        protected synchronized int completedCount() {
+            return completed.size();
+        }
+
+        protected synchronized boolean isCompleted( NodeKey key ) {
+            return completed.contains(key.toString());
+        }
+
+        protected synchronized void completed( NodeKey key ) {
+            completed.add(key.toString());
+            if (System.currentTimeMillis() - lastWritten >= CHECKPOINT_INTERVAL_IN_MILLIS) write();
+        }
+
+        protected synchronized void write() {
+            EditableDocument doc = Schematic.newDocument();
+            doc.setArray(REINDEX_COMPLETED_FIELD_NAME, Schematic.newArray(new ArrayList<Object>(completed)));
+            if (includeSystemContent) doc.setBoolean(REINDEX_SYSTEM_CONTENT_FIELD_NAME, true);
+            store.put(REINDEX_CHECKPOINT_KEY, doc);
+            lastWritten = System.currentTimeMillis();
+        }
+
+        protected synchronized void remove() {
+            store.remove(REINDEX_CHECKPOINT_KEY);
+        }
+    }
+
     protected static final TransactionContext NO_TRANSACTION = new TransactionContext() {
         @Override
         public boolean isTransactionInProgress() {
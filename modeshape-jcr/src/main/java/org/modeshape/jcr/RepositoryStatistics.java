@@ -70,6 +70,22 @@ import org.modeshape.jcr.value.DateTimeFactory;
  * <li><b>{@link ValueMetric#SESSION_SAVES save operations}</b> - the number of Session save operations performed the window;</li>
  * <li><b>{@link ValueMetric#NODE_CHANGES changed nodes}</b> - the number of nodes that were created, updated, or deleted during
  * the window;</li>
+ * <li><b>{@link ValueMetric#CHANGE_BUS_QUEUE_SIZE change bus queue size}</b> - the number of change sets waiting to be delivered
+ * to internal listeners at the end of the window;</li>
+ * <li><b>{@link ValueMetric#CHANGE_BUS_DROPPED_COUNT dropped change sets}</b> - the number of change sets that were not delivered
+ * to internal listeners during the window because their queues were full;</li>
+ * <li><b>{@link ValueMetric#NODE_CACHE_HITS node cache hits}</b> - the number of requested nodes that were found in the bounded
+ * workspace node caches during the window;</li>
+ * <li><b>{@link ValueMetric#NODE_CACHE_MISSES node cache misses}</b> - the number of requested nodes that had to be read from the
+ * store during the window;</li>
+ * <li><b>{@link ValueMetric#NODE_CACHE_EVICTIONS node cache evictions}</b> - the number of nodes that were evicted from the bounded
+ * workspace node caches during the window;</li>
+ * <li><b>{@link ValueMetric#REINDEXED_NODE_COUNT re-indexed nodes}</b> - the number of nodes that were re-indexed during the
+ * window;</li>
+ * <li><b>{@link ValueMetric#INDEXING_QUEUE_SIZE indexing queue size}</b> - the number of queued index operations that have yet to
+ * be applied to the indexes;</li>
+ * <li><b>{@link ValueMetric#INDEXING_LAG indexing lag}</b> - the age in milliseconds of the oldest queued index operation that has
+ * yet to be applied to the indexes;</li>
  * </ol>
  * and the metrics that record durations include:
  * <ol>
@@ -78,6 +94,8 @@ import org.modeshape.jcr.value.DateTimeFactory;
  * window;</li>
  * <li><b>{@link DurationMetric#SEQUENCER_EXECUTION_TIME sequencer execution time}</b> - the duration of sequencing operations
  * completed during the window;</li>
+ * <li><b>{@link DurationMetric#SEQUENCER_QUEUE_TIME sequencer queue time}</b> - the time that the sequencing operations started
+ * during the window had waited in the queue;</li>
  * </ol>
  * This class provides a way to obtain the {@link History history} for a particular metric during a specified window, where the
  * window is comprised of the {@link Statistics statistics} (the average value, minimum value, maximum value, variance, standard
@@ -165,6 +183,8 @@ public class RepositoryStatistics implements RepositoryMonitor {
                                                                                MAXIMUM_LONG_RUNNING_QUERY_COUNT));
         durations.put(DurationMetric.SEQUENCER_EXECUTION_TIME, new DurationHistory(TimeUnit.MILLISECONDS,
                                                                                    MAXIMUM_LONG_RUNNING_SEQUENCING_COUNT));
+        durations.put(DurationMetric.SEQUENCER_QUEUE_TIME, new DurationHistory(TimeUnit.MILLISECONDS,
+                                                                               MAXIMUM_LONG_RUNNING_SEQUENCING_COUNT));
         durations.put(DurationMetric.SESSION_LIFETIME, new DurationHistory(TimeUnit.MILLISECONDS,
                                                                            MAXIMUM_LONG_RUNNING_SESSION_COUNT));
 
@@ -339,7 +359,7 @@ public class RepositoryStatistics implements RepositoryMonitor {
               long value ) {
         assert metric != null;
         ValueHistory history = values.get(metric);
-        if (history != null) history.recordNewValue(1L);
+        if (history != null) history.recordNewValue(value);
     }
 
     /**
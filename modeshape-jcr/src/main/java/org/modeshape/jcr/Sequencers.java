@@ -30,27 +30,48 @@ import java.util.Calendar;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 import javax.jcr.NamespaceRegistry;
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
 import javax.jcr.nodetype.NodeTypeManager;
+import org.infinispan.manager.EmbeddedCacheManager;
+import org.infinispan.remoting.transport.Address;
+import org.infinispan.schematic.Schematic;
+import org.infinispan.schematic.SchematicEntry;
+import org.infinispan.schematic.document.Document;
+import org.infinispan.schematic.document.Document.Field;
+import org.infinispan.schematic.document.EditableDocument;
 import org.infinispan.util.ReflectionUtil;
+import org.infinispan.util.concurrent.TimeoutException;
 import org.modeshape.common.SystemFailureException;
 import org.modeshape.common.annotation.Immutable;
+import org.modeshape.common.annotation.ThreadSafe;
 import org.modeshape.common.logging.Logger;
 import org.modeshape.common.util.HashCode;
+import org.modeshape.common.util.ObjectUtil;
+import org.modeshape.common.util.SecureHash;
 import org.modeshape.jcr.RepositoryConfiguration.Component;
+import org.modeshape.jcr.RepositoryConfiguration.Default;
+import org.modeshape.jcr.RepositoryConfiguration.FieldName;
 import org.modeshape.jcr.api.monitor.ValueMetric;
 import org.modeshape.jcr.api.sequencer.Sequencer;
 import org.modeshape.jcr.api.value.DateTime;
@@ -62,9 +83,11 @@ import org.modeshape.jcr.cache.change.PropertyAdded;
 import org.modeshape.jcr.cache.change.PropertyChanged;
 import org.modeshape.jcr.cache.change.WorkspaceAdded;
 import org.modeshape.jcr.cache.change.WorkspaceRemoved;
+import org.modeshape.jcr.cache.document.LocalDocumentStore;
 import org.modeshape.jcr.sequencer.InvalidSequencerPathExpression;
 import org.modeshape.jcr.sequencer.SequencerPathExpression;
 import org.modeshape.jcr.sequencer.SequencerPathExpression.Matcher;
+import org.modeshape.jcr.txn.Transactions.Transaction;
 import org.modeshape.jcr.value.Name;
 import org.modeshape.jcr.value.Path;
 import org.modeshape.jcr.value.ValueFactory;
@@ -77,6 +100,13 @@ import org.modeshape.jcr.value.ValueFactory;
  * implementation) for each workspace. This is so that it's much easier and more efficient to process the events, which happens
  * very frequently. Also, that structure is a bit backward compared to how the sequencers are defined in the configuration.
  * </p>
+ * <p>
+ * Each sequencer runs in its own bounded pool of threads, sized and prioritized by the sequencer's configuration. Pending
+ * sequencing work is coalesced by input, so saving the same input several times before the sequencer gets to it results in a
+ * single run, and it is recorded in the repository's cache so that work that was pending when the repository was shut down is
+ * resumed when the repository is started again. A sequencer can also be configured to save the output of many inputs
+ * together (see {@link SequencingRunner}).
+ * </p>
  */
 @Immutable
 public class Sequencers implements ChangeSetListener {
@@ -86,6 +116,9 @@ public class Sequencers implements ChangeSetListener {
     private static final boolean TRACE = LOGGER.isTraceEnabled();
     private static final boolean DEBUG = LOGGER.isDebugEnabled();
 
+    /** The number of seconds that shutting down waits for the sequencers to complete the work they have started */
+    private static final long SHUTDOWN_TIMEOUT_IN_SECONDS = 30L;
+
     protected final JcrRepository.RunningState repository;
     private final Map<UUID, Sequencer> sequencersById;
     private final Map<String, Sequencer> sequencersByName;
@@ -97,7 +130,8 @@ public class Sequencers implements ChangeSetListener {
     private final String processId;
     private final ValueFactory<String> stringFactory;
     private final WorkQueue workQueue;
-    protected final ExecutorService sequencingExecutor;
+    private final ExecutorService sequencingExecutor;
+    private final Map<UUID, SequencerWorkers> sequencerWorkers;
     private boolean initialized;
     private volatile boolean shutdown = false;
 
@@ -113,6 +147,7 @@ public class Sequencers implements ChangeSetListener {
             this.configByWorkspaceName = null;
             this.sequencersById = null;
             this.pathExpressionsBySequencerId = null;
+            this.sequencerWorkers = null;
             this.sequencingExecutor = null;
             this.workQueue = null;
             this.initialized = true;
@@ -120,6 +155,7 @@ public class Sequencers implements ChangeSetListener {
         } else {
             String threadPoolName = config.getSequencing().getThreadPoolName();
             this.sequencingExecutor = repository.context().getCachedTreadPool(threadPoolName);
+            this.sequencerWorkers = new HashMap<UUID, SequencerWorkers>();
             this.workQueue = new SequencingWorkQueue();
             this.processId = repository.context().getProcessId();
             ExecutionContext context = this.repository.context();
@@ -157,6 +193,7 @@ public class Sequencers implements ChangeSetListener {
 
                         Set<SequencerPathExpression> pathExpressions = buildPathExpressionSet(sequencer);
                         pathExpressionsBySequencerId.put(uuid, pathExpressions);
+                        sequencerWorkers.put(uuid, new SequencerWorkers(uuid, component));
                         if (DEBUG) {
                             LOGGER.debug("Created sequencer '{0}' in repository '{1}' with valid path expressions: {2}",
                                          sequencer.getName(),
@@ -183,7 +220,7 @@ public class Sequencers implements ChangeSetListener {
     private Sequencers( Sequencers original,
                         JcrRepository.RunningState repository ) {
         this.repository = repository;
-        this.sequencingExecutor = original.sequencingExecutor;
+        this.sequencerWorkers = original.sequencerWorkers;
         this.workQueue = original.workQueue;
         this.systemWorkspaceKey = original.systemWorkspaceKey;
         this.processId = original.processId;
@@ -250,6 +287,16 @@ public class Sequencers implements ChangeSetListener {
         }
     }
 
+    /**
+     * Resume the sequencing work that was pending when the repository was last shut down. This should be called once the
+     * repository is running.
+     */
+    protected void resumePendingWork() {
+        if (workQueue != null) {
+            workQueue.resume();
+        }
+    }
+
     /**
      * Determine if there are no sequencers configured.
      * 
@@ -334,11 +381,19 @@ public class Sequencers implements ChangeSetListener {
     }
 
     protected final void shutdown() {
+        shutdown = true;
         if (workQueue != null) {
-            sequencingExecutor.shutdown();
             workQueue.shutdown();
         }
-        shutdown = true;
+    }
+
+    /**
+     * Determine whether the sequencers are shutting down (or have shut down), after which no more work is started.
+     * 
+     * @return true if the sequencers are shutting down, or false otherwise
+     */
+    protected final boolean isShutdown() {
+        return shutdown;
     }
 
     protected final RepositoryStatistics statistics() {
@@ -356,8 +411,7 @@ public class Sequencers implements ChangeSetListener {
                                                              inputWorkspaceName, matcher.getSelectedPath(),
                                                              matcher.getJcrInputPath(), matcher.getOutputPath(),
                                                              matcher.getOutputWorkspaceName(), propertyName);
-        statistics().increment(ValueMetric.SEQUENCER_QUEUE_SIZE);
-        workQueue.submit(workItem);
+        workQueue.submit(workItem, System.currentTimeMillis());
     }
 
     protected Sequencer getSequencer( UUID id ) {
@@ -517,25 +571,541 @@ public class Sequencers implements ChangeSetListener {
     }
 
     protected static interface WorkQueue {
-        void submit( SequencingWorkItem work );
+        /**
+         * Submit the work, unless the same work is already waiting to be run. If the same work is being run, it is run once more
+         * after it finishes, rather than concurrently.
+         * 
+         * @param work the work; may not be null
+         * @param queuedAt the time (in milliseconds) at which the work was first queued
+         */
+        void submit( SequencingWorkItem work,
+                     long queuedAt );
 
+        /**
+         * Take the next work that is ready to be run by the given sequencer.
+         * 
+         * @param sequencerId the identifier of the sequencer; may not be null
+         * @return the work, or null if there is none
+         */
+        SequencingWorkItem poll( UUID sequencerId );
+
+        /**
+         * Signal that a sequencer is starting the work. Any submission of the same work from now on results in one more run after
+         * this one completes, since the input may have changed after the sequencer read it.
+         * 
+         * @param work the work; may not be null
+         * @return the time (in milliseconds) at which the work was queued, or null if it is not known
+         */
+        Long started( SequencingWorkItem work );
+
+        /**
+         * Signal that a sequencer finished (successfully or not) the work. The work is submitted again if it was submitted while
+         * it was being run, and otherwise is no longer recorded.
+         * 
+         * @param work the work; may not be null
+         */
+        void completed( SequencingWorkItem work );
+
+        /**
+         * Obtain an internal session for the named workspace, reusing an idle session if there is one.
+         * 
+         * @param workspaceName the name of the workspace; may not be null
+         * @return the session; never null
+         * @throws RepositoryException if a new session could not be created
+         */
+        JcrSession borrowSession( String workspaceName ) throws RepositoryException;
+
+        /**
+         * Return a session obtained with {@link #borrowSession(String)}, discarding any of its unsaved changes.
+         * 
+         * @param session the session; may be null
+         */
+        void returnSession( JcrSession session );
+
+        /**
+         * Resubmit the work that was recorded as pending when the repository was last shut down.
+         */
+        void resume();
+
+        /**
+         * Stop taking work, and wait a limited time for the work that was started to be completed. Work that is not completed
+         * remains recorded, and is resumed when the repository is started again.
+         */
         void shutdown();
     }
 
+    /**
+     * The queue of sequencing work. Each item of pending work is recorded in its own document in the repository's cache, keyed by
+     * a hash of the work's identity (which uses the sequencer's name rather than its identifier, since the latter changes each
+     * time the repository is started). A separate index document lists the hashes of the pending items, so that the work can be
+     * found again after a restart.
+     * <p>
+     * The documents are changed within transactions and under the cache's locks. Each item records the cluster member that owns
+     * it, and upon startup a process resumes only the items it is able to claim, because they were recorded by a member that is
+     * no longer in the cluster.
+     * </p>
+     */
+    @ThreadSafe
     protected final class SequencingWorkQueue implements WorkQueue {
-        private final List<Future<?>> results = new ArrayList<Future<?>>();
+        private static final String QUEUE_KEY_PREFIX = "sequencing:";
+        private static final String SEQUENCER_NAME = "sequencer";
+        private static final String USER_ID = "userId";
+        private static final String INPUT_WORKSPACE_NAME = "inputWorkspace";
+        private static final String SELECTED_PATH = "selectedPath";
+        private static final String INPUT_PATH = "inputPath";
+        private static final String OUTPUT_PATH = "outputPath";
+        private static final String OUTPUT_WORKSPACE_NAME = "outputWorkspace";
+        private static final String CHANGED_PROPERTY_NAME = "changedProperty";
+        private static final String QUEUED_AT = "queuedAt";
+        private static final String OWNER = "owner";
+
+        // The work that is waiting to be run, the work being run, and the work that was submitted again while being run ...
+        private final Map<SequencingWorkItem, Long> pending = new HashMap<SequencingWorkItem, Long>();
+        private final Set<SequencingWorkItem> running = new HashSet<SequencingWorkItem>();
+        private final Map<SequencingWorkItem, Long> rerun = new HashMap<SequencingWorkItem, Long>();
+        private final ConcurrentMap<String, Queue<JcrSession>> idleSessions = new ConcurrentHashMap<String, Queue<JcrSession>>();
+        private final Object stateLock = new Object();
+        private final String queueKey;
+        private final String owner;
+        private volatile boolean abandoned = false;
+
+        protected SequencingWorkQueue() {
+            this.queueKey = QUEUE_KEY_PREFIX + repository.repositoryKey();
+            // Only clustered caches have an address, and there is only one process using a cache that is not clustered ...
+            Address address = cacheManager().getAddress();
+            this.owner = address != null ? address.toString() : null;
+        }
+
+        @Override
+        public void submit( SequencingWorkItem work,
+                            long queuedAt ) {
+            synchronized (stateLock) {
+                if (pending.containsKey(work)) {
+                    // The same input is already waiting to be sequenced, and the sequencer will see the latest content ...
+                    if (TRACE) {
+                        LOGGER.trace("Sequencing of {0} in repository '{1}' is already pending", work, repository.name());
+                    }
+                    return;
+                }
+                if (running.contains(work)) {
+                    // The sequencer may already have read the input, so run it once more after it finishes ...
+                    if (!rerun.containsKey(work)) rerun.put(work, queuedAt);
+                    return;
+                }
+                pending.put(work, queuedAt);
+                persist(work, queuedAt);
+            }
+            if (shutdown) {
+                // The work remains recorded, and is resumed when the repository is started again ...
+                return;
+            }
+            statistics().increment(ValueMetric.SEQUENCER_QUEUE_SIZE);
+            enqueue(work);
+        }
+
+        private void enqueue( SequencingWorkItem work ) {
+            SequencerWorkers workers = sequencerWorkers.get(work.getSequencerId());
+            try {
+                if (workers == null) throw new RejectedExecutionException();
+                workers.ready.add(work);
+                startRunners(workers);
+            } catch (RejectedExecutionException e) {
+                // We're shutting down, so leave the work recorded for when the repository is started again ...
+                if (workers != null) workers.ready.remove(work);
+                synchronized (stateLock) {
+                    pending.remove(work);
+                }
+                statistics().decrement(ValueMetric.SEQUENCER_QUEUE_SIZE);
+            }
+        }
+
+        /**
+         * Start runners for the sequencer's ready work, but no more than the number of threads the sequencer is configured to
+         * use. The runners take the work (and possibly more) from the ready queue, so a runner is not needed for each item.
+         * 
+         * @param workers the sequencer's workers; may not be null
+         * @throws RejectedExecutionException if the sequencing thread pool has been shut down
+         */
+        private void startRunners( final SequencerWorkers workers ) {
+            while (!workers.ready.isEmpty()) {
+                int runners = workers.runners.get();
+                if (runners >= workers.poolSize) {
+                    // The existing runners will take the work ...
+                    return;
+                }
+                if (!workers.runners.compareAndSet(runners, runners + 1)) continue;
+                final SequencingRunner runner = new SequencingRunner(repository, this, workers.sequencerId, workers.batchSize,
+                                                                     workers.batchSizeInBytes);
+                try {
+                    sequencingExecutor.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            // The threads are shared by all sequencers, so use this sequencer's priority only while running ...
+                            Thread thread = Thread.currentThread();
+                            int priority = thread.getPriority();
+                            thread.setPriority(workers.priority);
+                            try {
+                                runner.run();
+                            } finally {
+                                thread.setPriority(priority);
+                                workers.runners.decrementAndGet();
+                                // Work may have been made ready after this runner last looked but before it finished ...
+                                if (!shutdown) {
+                                    try {
+                                        startRunners(workers);
+                                    } catch (RejectedExecutionException e) {
+                                        // We're shutting down, and the ready work remains recorded ...
+                                    }
+                                }
+                            }
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    workers.runners.decrementAndGet();
+                    throw e;
+                }
+            }
+        }
+
+        @Override
+        public SequencingWorkItem poll( UUID sequencerId ) {
+            if (shutdown) {
+                // Don't start any more work, which remains recorded ...
+                return null;
+            }
+            SequencerWorkers workers = sequencerWorkers.get(sequencerId);
+            return workers != null ? workers.ready.poll() : null;
+        }
 
         @Override
-        public void submit( SequencingWorkItem work ) {
-            results.add(sequencingExecutor.submit(new SequencingRunner(repository, work)));
+        public Long started( SequencingWorkItem work ) {
+            synchronized (stateLock) {
+                running.add(work);
+                return pending.remove(work);
+            }
+        }
+
+        @Override
+        public void completed( SequencingWorkItem work ) {
+            Long rerunQueuedAt = null;
+            synchronized (stateLock) {
+                running.remove(work);
+                rerunQueuedAt = rerun.remove(work);
+                if (abandoned) {
+                    // Shutting down timed out and the work may have been interrupted, so leave it to be resumed upon the next start
+                    return;
+                }
+                if (rerunQueuedAt != null) {
+                    // The work was submitted again while it was being run, and remains recorded ...
+                    pending.put(work, rerunQueuedAt);
+                } else {
+                    unpersist(work);
+                }
+            }
+            if (rerunQueuedAt != null && !shutdown) {
+                statistics().increment(ValueMetric.SEQUENCER_QUEUE_SIZE);
+                enqueue(work);
+            }
+        }
+
+        @Override
+        public JcrSession borrowSession( String workspaceName ) throws RepositoryException {
+            Queue<JcrSession> sessions = idleSessions.get(workspaceName);
+            if (sessions != null) {
+                JcrSession session = null;
+                while ((session = sessions.poll()) != null) {
+                    if (session.isLive()) return session;
+                }
+            }
+            return repository.loginInternalSession(workspaceName);
+        }
+
+        @Override
+        public void returnSession( JcrSession session ) {
+            if (session == null || !session.isLive()) return;
+            if (!shutdown) {
+                try {
+                    // Discard any changes (e.g., from a failed sequencer) and cached content ...
+                    session.refresh(false);
+                    String workspaceName = session.workspaceName();
+                    Queue<JcrSession> sessions = idleSessions.get(workspaceName);
+                    if (sessions == null) {
+                        sessions = new ConcurrentLinkedQueue<JcrSession>();
+                        Queue<JcrSession> existing = idleSessions.putIfAbsent(workspaceName, sessions);
+                        if (existing != null) sessions = existing;
+                    }
+                    sessions.add(session);
+                    if (!shutdown) return;
+                    // Otherwise we were shut down concurrently, so make sure the session is closed ...
+                    if (!sessions.remove(session)) return;
+                } catch (RepositoryException e) {
+                    // Don't reuse this session ...
+                }
+            }
+            session.logout();
+        }
+
+        @Override
+        public void resume() {
+            SchematicEntry index = repository.documentStore().localStore().get(queueKey);
+            if (index == null) return;
+            List<String> hashes = new ArrayList<String>();
+            for (Field field : index.getContentAsDocument().fields()) {
+                hashes.add(field.getName());
+            }
+            Set<String> members = clusterMembers();
+            int count = 0;
+            for (String hash : hashes) {
+                Document item = claim(hash, members);
+                if (item == null) {
+                    // Another member of the cluster owns the work, or it was already completed ...
+                    continue;
+                }
+                Sequencer sequencer = getSequencer(item.getString(SEQUENCER_NAME));
+                if (sequencer == null || !sequencerWorkers.containsKey(sequencer.getUniqueId())) {
+                    // The sequencer is no longer configured, so drop the work ...
+                    remove(hash, owner);
+                    continue;
+                }
+                SequencingWorkItem work = new SequencingWorkItem(sequencer.getUniqueId(), item.getString(USER_ID),
+                                                                 item.getString(INPUT_WORKSPACE_NAME),
+                                                                 item.getString(SELECTED_PATH), item.getString(INPUT_PATH),
+                                                                 item.getString(OUTPUT_PATH),
+                                                                 item.getString(OUTPUT_WORKSPACE_NAME),
+                                                                 item.getString(CHANGED_PROPERTY_NAME));
+                submit(work, item.getLong(QUEUED_AT, System.currentTimeMillis()));
+                ++count;
+            }
+            if (count != 0) {
+                LOGGER.info(JcrI18n.resumingSequencingWork, count, repository.name());
+            }
         }
 
         @Override
         public void shutdown() {
-            for (Future<?> workItem : results) {
-                workItem.cancel(true);
+            // The runners complete the work they have started, but don't take any more ...
+            sequencingExecutor.shutdown();
+            try {
+                if (!sequencingExecutor.awaitTermination(SHUTDOWN_TIMEOUT_IN_SECONDS, TimeUnit.SECONDS)) {
+                    abandoned = true;
+                    LOGGER.warn(JcrI18n.sequencingWorkNotCompletedBeforeShutdown, repository.name(),
+                                SHUTDOWN_TIMEOUT_IN_SECONDS);
+                }
+            } catch (InterruptedException e) {
+                abandoned = true;
+                Thread.currentThread().interrupt();
+            }
+            if (abandoned) {
+                // Interrupt the work that is still running, which remains recorded and is resumed upon the next start ...
+                sequencingExecutor.shutdownNow();
+            }
+            repository.context().releaseThreadPool(sequencingExecutor);
+            for (Queue<JcrSession> sessions : idleSessions.values()) {
+                JcrSession session = null;
+                while ((session = sessions.poll()) != null) {
+                    if (session.isLive()) session.logout();
+                }
+            }
+        }
+
+        private void persist( SequencingWorkItem work,
+                              long queuedAt ) {
+            final Sequencer sequencer = getSequencer(work.getSequencerId());
+            if (sequencer == null) return;
+            final String hash = hashOf(work, sequencer);
+            final EditableDocument item = Schematic.newDocument();
+            item.setString(SEQUENCER_NAME, sequencer.getName());
+            item.setString(USER_ID, work.getUserId());
+            item.setString(INPUT_WORKSPACE_NAME, work.getInputWorkspaceName());
+            item.setString(SELECTED_PATH, work.getSelectedPath());
+            item.setString(INPUT_PATH, work.getInputPath());
+            item.setString(OUTPUT_PATH, work.getOutputPath());
+            if (work.getOutputWorkspaceName() != null) item.setString(OUTPUT_WORKSPACE_NAME, work.getOutputWorkspaceName());
+            item.setString(CHANGED_PROPERTY_NAME, work.getChangedPropertyName());
+            item.setNumber(QUEUED_AT, queuedAt);
+            if (owner != null) item.setString(OWNER, owner);
+            runInTransaction(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    LocalDocumentStore store = repository.documentStore().localStore();
+                    String itemKey = itemKeyFor(hash);
+                    lock(store, itemKey);
+                    boolean indexed = store.containsKey(itemKey);
+                    // Replace any earlier record of the same work, which now belongs to this process ...
+                    store.put(itemKey, item);
+                    if (!indexed) {
+                        lock(store, queueKey);
+                        SchematicEntry index = store.get(queueKey);
+                        if (index == null) {
+                            store.put(queueKey, Schematic.newDocument(hash, sequencer.getName()));
+                        } else {
+                            index.editDocumentContent().setString(hash, sequencer.getName());
+                        }
+                    }
+                    return null;
+                }
+            });
+        }
+
+        private void unpersist( SequencingWorkItem work ) {
+            Sequencer sequencer = getSequencer(work.getSequencerId());
+            if (sequencer == null) return;
+            remove(hashOf(work, sequencer), owner);
+        }
+
+        /**
+         * Remove the record of the work with the given hash, unless it has since been recorded by a different owner.
+         * 
+         * @param hash the hash of the work; may not be null
+         * @param expectedOwner the owner that recorded the work; may be null if the cache is not clustered
+         */
+        private void remove( final String hash,
+                             final String expectedOwner ) {
+            runInTransaction(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    LocalDocumentStore store = repository.documentStore().localStore();
+                    String itemKey = itemKeyFor(hash);
+                    lock(store, itemKey);
+                    SchematicEntry entry = store.get(itemKey);
+                    if (entry != null) {
+                        String itemOwner = entry.getContentAsDocument().getString(OWNER);
+                        if (!ObjectUtil.isEqualWithNulls(expectedOwner, itemOwner)) {
+                            // Another member of the cluster recorded the same work, and will run it ...
+                            return null;
+                        }
+                        store.remove(itemKey);
+                    }
+                    lock(store, queueKey);
+                    SchematicEntry index = store.get(queueKey);
+                    if (index != null && index.getContentAsDocument().containsField(hash)) {
+                        index.editDocumentContent().remove(hash);
+                    }
+                    return null;
+                }
+            });
+        }
+
+        /**
+         * Claim the recorded work with the given hash, so that no other process resumes it.
+         * 
+         * @param hash the hash of the work; may not be null
+         * @param members the names of the current members of the cluster; may not be null
+         * @return the recorded work, or null if it no longer exists or is owned by another member of the cluster
+         */
+        private Document claim( final String hash,
+                                final Set<String> members ) {
+            return runInTransaction(new Callable<Document>() {
+                @Override
+                public Document call() {
+                    LocalDocumentStore store = repository.documentStore().localStore();
+                    String itemKey = itemKeyFor(hash);
+                    lock(store, itemKey);
+                    SchematicEntry entry = store.get(itemKey);
+                    if (entry == null) {
+                        // The work was completed, but the index was not updated ...
+                        lock(store, queueKey);
+                        SchematicEntry index = store.get(queueKey);
+                        if (index != null) index.editDocumentContent().remove(hash);
+                        return null;
+                    }
+                    Document item = entry.getContentAsDocument();
+                    String itemOwner = item.getString(OWNER);
+                    if (itemOwner != null && members.contains(itemOwner)) {
+                        // The work belongs to a running member of the cluster (possibly this process) ...
+                        return null;
+                    }
+                    EditableDocument claimed = Schematic.newDocument(item);
+                    if (owner != null) {
+                        claimed.setString(OWNER, owner);
+                    } else {
+                        claimed.remove(OWNER);
+                    }
+                    store.put(itemKey, claimed);
+                    return claimed;
+                }
+            });
+        }
+
+        private <V> V runInTransaction( Callable<V> operation ) {
+            Transaction txn = null;
+            try {
+                txn = repository.transactions().begin();
+                V result = operation.call();
+                txn.commit();
+                return result;
+            } catch (Exception e) {
+                if (txn != null) {
+                    try {
+                        txn.rollback();
+                    } catch (Exception rollbackError) {
+                        LOGGER.debug(rollbackError, "Error while rolling back the transaction for sequencing work");
+                    }
+                }
+                // The work is still run, but won't be resumed after a restart ...
+                LOGGER.warn(JcrI18n.unableToPersistSequencingWork, repository.name(), e.getMessage());
+                return null;
             }
-            results.clear();
+        }
+
+        private void lock( LocalDocumentStore store,
+                           String key ) {
+            if (!store.prepareDocumentsForUpdate(Collections.singleton(key))) {
+                throw new TimeoutException("Unable to acquire storage lock: " + key);
+            }
+        }
+
+        private Set<String> clusterMembers() {
+            Set<String> members = new HashSet<String>();
+            List<Address> addresses = cacheManager().getMembers();
+            if (addresses != null) {
+                for (Address address : addresses) {
+                    members.add(address.toString());
+                }
+            }
+            return members;
+        }
+
+        private EmbeddedCacheManager cacheManager() {
+            return repository.documentStore().localStore().localCache().getCacheManager();
+        }
+
+        private String itemKeyFor( String hash ) {
+            return queueKey + ":" + hash;
+        }
+
+        private String hashOf( SequencingWorkItem work,
+                               Sequencer sequencer ) {
+            return SecureHash.sha1(sequencer.getName() + "|" + work.getInputWorkspaceName() + "|" + work.getInputPath() + "|"
+                                   + work.getChangedPropertyName() + "|" + work.getOutputPath() + "|"
+                                   + work.getOutputWorkspaceName());
+        }
+    }
+
+    /**
+     * The work that is ready for a single sequencer, and the number of the repository's sequencing threads that are running it.
+     * Each sequencer uses no more threads than its configuration allows, so that a slow sequencer cannot delay the others.
+     */
+    @ThreadSafe
+    protected static final class SequencerWorkers {
+        protected final UUID sequencerId;
+        protected final Queue<SequencingWorkItem> ready = new ConcurrentLinkedQueue<SequencingWorkItem>();
+        protected final AtomicInteger runners = new AtomicInteger();
+        protected final int poolSize;
+        protected final int priority;
+        protected final int batchSize;
+        protected final long batchSizeInBytes;
+
+        protected SequencerWorkers( UUID sequencerId,
+                                    Component component ) {
+            Document config = component.getDocument();
+            this.sequencerId = sequencerId;
+            this.poolSize = Math.max(1, config.getInteger(FieldName.THREAD_POOL_SIZE, Default.SEQUENCER_THREAD_POOL_SIZE));
+            int priority = config.getInteger(FieldName.PRIORITY, Default.SEQUENCER_PRIORITY);
+            this.priority = Math.min(Thread.MAX_PRIORITY, Math.max(Thread.MIN_PRIORITY, priority));
+            this.batchSize = Math.max(1, config.getInteger(FieldName.SEQUENCER_BATCH_SIZE, Default.SEQUENCER_BATCH_SIZE));
+            this.batchSizeInBytes = Math.max(0L, config.getLong(FieldName.SEQUENCER_BATCH_SIZE_IN_BYTES,
+                                                                Default.SEQUENCER_BATCH_SIZE_IN_BYTES));
         }
     }
 
@@ -711,8 +1281,9 @@ public class Sequencers implements ChangeSetListener {
                 if (!this.sequencerId.equals(that.sequencerId)) return false;
                 if (!this.inputWorkspaceName.equals(that.inputWorkspaceName)) return false;
                 if (!this.inputPath.equals(that.inputPath)) return false;
-                if (!this.outputPath.equals(that.outputWorkspaceName)) return false;
-                if (!this.outputWorkspaceName.equals(that.outputWorkspaceName)) return false;
+                if (!this.changedPropertyName.equals(that.changedPropertyName)) return false;
+                if (!this.outputPath.equals(that.outputPath)) return false;
+                if (!ObjectUtil.isEqualWithNulls(this.outputWorkspaceName, that.outputWorkspaceName)) return false;
                 return true;
             }
             return false;
@@ -26,9 +26,11 @@ package org.modeshape.jcr;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 import javax.jcr.AccessDeniedException;
 import javax.jcr.Item;
@@ -40,11 +42,14 @@ import javax.jcr.Property;
 import javax.jcr.PropertyType;
 import javax.jcr.RepositoryException;
 import javax.jcr.ValueFormatException;
+import org.modeshape.common.annotation.Immutable;
+import org.modeshape.common.annotation.NotThreadSafe;
 import org.modeshape.common.logging.Logger;
 import org.modeshape.common.util.StringUtil;
 import org.modeshape.jcr.JcrRepository.RunningState;
 import org.modeshape.jcr.Sequencers.SequencingContext;
 import org.modeshape.jcr.Sequencers.SequencingWorkItem;
+import org.modeshape.jcr.Sequencers.WorkQueue;
 import org.modeshape.jcr.api.JcrConstants;
 import org.modeshape.jcr.api.JcrTools;
 import org.modeshape.jcr.api.monitor.DurationMetric;
@@ -53,6 +58,13 @@ import org.modeshape.jcr.api.sequencer.Sequencer;
 import org.modeshape.jcr.api.value.DateTime;
 import org.modeshape.jcr.cache.change.RecordingChanges;
 
+/**
+ * Runs a sequencer over the work queued for it. Work with the same input and output workspaces is sequenced against shared
+ * sessions and saved in batches of up to a configured number of items or input bytes, so that bulk changes don't result in one
+ * save per input. The failure of one item discards only that item's output: the rest of the batch is sequenced again without it,
+ * and if saving the batch fails, each of its items is saved on its own.
+ */
+@NotThreadSafe
 final class SequencingRunner implements Runnable {
 
     /** We don't use the standard logging convention here; we want clients to easily configure logging for sequencing */
@@ -64,32 +76,270 @@ final class SequencingRunner implements Runnable {
     private static final String DERIVED_FROM_PROPERTY_NAME = "mode:derivedFrom";
 
     private final RunningState repository;
-    private final SequencingWorkItem work;
+    private final WorkQueue queue;
+    private final UUID sequencerId;
+    private final int batchSize;
+    private final long batchSizeInBytes;
 
+    /**
+     * @param repository the repository; may not be null
+     * @param queue the queue from which the work is taken; may not be null
+     * @param sequencerId the identifier of the sequencer whose work is to be run; may not be null
+     * @param batchSize the maximum number of items saved together; must be positive
+     * @param batchSizeInBytes the maximum total size of the inputs of the items saved together, or 0 if there is no limit
+     */
     protected SequencingRunner( RunningState repository,
-                                SequencingWorkItem work ) {
+                                WorkQueue queue,
+                                UUID sequencerId,
+                                int batchSize,
+                                long batchSizeInBytes ) {
         this.repository = repository;
-        this.work = work;
+        this.queue = queue;
+        this.sequencerId = sequencerId;
+        this.batchSize = batchSize;
+        this.batchSizeInBytes = batchSizeInBytes;
     }
 
     @Override
     public void run() {
-        JcrSession inputSession = null;
-        JcrSession outputSession = null;
-        final RepositoryStatistics stats = repository.statistics();
-        Sequencer sequencer = null;
-        String sequencerName = null;
+        Batch batch = null;
         try {
-            // Create the required session(s) ...
-            inputSession = repository.loginInternalSession(work.getInputWorkspaceName());
-            if (work.getOutputWorkspaceName() != null && !work.getOutputWorkspaceName().equals(work.getInputWorkspaceName())) {
-                outputSession = repository.loginInternalSession(work.getOutputWorkspaceName());
+            SequencingWorkItem work = null;
+            while (!Thread.currentThread().isInterrupted() && (work = queue.poll(sequencerId)) != null) {
+                if (batch != null && !batch.accepts(work)) {
+                    batch.commit();
+                    batch = null;
+                }
+                if (batch == null) {
+                    try {
+                        batch = new Batch(work);
+                    } catch (Throwable t) {
+                        // We couldn't even obtain the sessions ...
+                        queue.started(work);
+                        logFailure(work, sequencerName(), t);
+                        complete(work);
+                        continue;
+                    }
+                }
+                batch.add(work);
+                if (batch.isFull()) {
+                    batch.commit();
+                    batch = null;
+                }
+            }
+        } finally {
+            if (batch != null) batch.commit();
+        }
+    }
+
+    private String sequencerName() {
+        Sequencer sequencer = repository.sequencers().getSequencer(sequencerId);
+        return sequencer != null ? sequencer.getName() : null;
+    }
+
+    private void complete( SequencingWorkItem work ) {
+        RepositoryStatistics stats = repository.statistics();
+        stats.increment(ValueMetric.SEQUENCED_COUNT);
+        stats.decrement(ValueMetric.SEQUENCER_QUEUE_SIZE);
+        queue.completed(work);
+    }
+
+    private void logFailure( SequencingWorkItem work,
+                             String sequencerName,
+                             Throwable t ) {
+        Logger logger = Logger.getLogger(getClass());
+        if (work.getOutputWorkspaceName() != null) {
+            logger.error(t,
+                         RepositoryI18n.errorWhileSequencingNodeIntoWorkspace,
+                         sequencerName,
+                         repository.name(),
+                         work.getInputPath(),
+                         work.getInputWorkspaceName(),
+                         work.getOutputPath(),
+                         work.getOutputWorkspaceName());
+        } else {
+            logger.error(t,
+                         RepositoryI18n.errorWhileSequencingNode,
+                         sequencerName,
+                         repository.name(),
+                         work.getInputPath(),
+                         work.getInputWorkspaceName(),
+                         work.getOutputPath());
+        }
+    }
+
+    private static String outputWorkspaceName( SequencingWorkItem work ) {
+        return work.getOutputWorkspaceName() != null ? work.getOutputWorkspaceName() : work.getInputWorkspaceName();
+    }
+
+    /**
+     * The work that is sequenced against the same sessions and saved together.
+     */
+    @NotThreadSafe
+    private final class Batch {
+        private final String inputWorkspaceName;
+        private final String outputWorkspaceName;
+        private final JcrSession inputSession;
+        private final JcrSession outputSession;
+        private final List<SequencingWorkItem> items = new ArrayList<SequencingWorkItem>();
+        private final List<SequencedItem> sequenced = new ArrayList<SequencedItem>();
+        private long sequencedBytes = 0L;
+
+        protected Batch( SequencingWorkItem first ) throws RepositoryException {
+            this.inputWorkspaceName = first.getInputWorkspaceName();
+            this.outputWorkspaceName = outputWorkspaceName(first);
+            // Obtain the required session(s), reusing those of earlier work where possible ...
+            this.inputSession = queue.borrowSession(inputWorkspaceName);
+            if (!outputWorkspaceName.equals(inputWorkspaceName)) {
+                try {
+                    this.outputSession = queue.borrowSession(outputWorkspaceName);
+                } catch (RepositoryException e) {
+                    queue.returnSession(inputSession);
+                    throw e;
+                }
             } else {
-                outputSession = inputSession;
+                this.outputSession = inputSession;
+            }
+        }
+
+        protected boolean accepts( SequencingWorkItem work ) {
+            return inputWorkspaceName.equals(work.getInputWorkspaceName())
+                   && outputWorkspaceName.equals(outputWorkspaceName(work));
+        }
+
+        protected boolean isFull() {
+            return items.size() >= batchSize || (batchSizeInBytes > 0L && sequencedBytes >= batchSizeInBytes);
+        }
+
+        protected void add( SequencingWorkItem work ) {
+            items.add(work);
+            Long queuedAt = queue.started(work);
+            if (queuedAt != null) {
+                Map<String, String> payload = new HashMap<String, String>();
+                payload.put("sequencerName", sequencerName());
+                payload.put("sequencedPath", work.getInputPath());
+                repository.statistics().recordDuration(DurationMetric.SEQUENCER_QUEUE_TIME,
+                                                       Math.max(0L, System.currentTimeMillis() - queuedAt),
+                                                       TimeUnit.MILLISECONDS,
+                                                       payload);
+            }
+            sequenceAll(Collections.singletonList(work));
+        }
+
+        /**
+         * Sequence the supplied work into the output session, without saving.
+         * 
+         * @param works the work to be sequenced; may not be null
+         */
+        private void sequenceAll( List<SequencingWorkItem> works ) {
+            for (int i = 0; i != works.size(); ++i) {
+                SequencingWorkItem work = works.get(i);
+                try {
+                    SequencedItem result = sequence(work);
+                    if (result != null) {
+                        sequenced.add(result);
+                        sequencedBytes += result.inputSize;
+                    }
+                } catch (Throwable t) {
+                    logFailure(work, sequencerName(), t);
+                    // Discarding the failed work's partial output also discards the output of the rest of the batch,
+                    // so sequence the rest of the batch again ...
+                    List<SequencingWorkItem> redo = new ArrayList<SequencingWorkItem>();
+                    for (SequencedItem item : sequenced) {
+                        redo.add(item.work);
+                    }
+                    redo.addAll(works.subList(i + 1, works.size()));
+                    discard();
+                    sequenceAll(redo);
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Save the sequenced output, fire the events, and release the sessions. If the batch cannot be saved, each of the items is
+         * sequenced and saved on its own.
+         */
+        protected void commit() {
+            try {
+                save();
+            } finally {
+                if (outputSession != inputSession) queue.returnSession(outputSession);
+                queue.returnSession(inputSession);
+                for (SequencingWorkItem work : items) {
+                    complete(work);
+                }
+            }
+        }
+
+        private void save() {
+            if (sequenced.isEmpty()) return;
+            List<SequencedItem> saving = new ArrayList<SequencedItem>(sequenced);
+            sequenced.clear();
+            sequencedBytes = 0L;
+            try {
+                LOGGER.trace("Saving session with the output of {0} sequenced item(s)", saving.size());
+                outputSession.save();
+            } catch (Throwable t) {
+                discard();
+                if (saving.size() == 1) {
+                    SequencedItem item = saving.get(0);
+                    try {
+                        fireSequencingFailureEvent(item.selectedNode, inputSession, t, item.sequencerName, item.work);
+                    } catch (Throwable t2) {
+                        // ignore, since we're logging the original problem ...
+                    }
+                    logFailure(item.work, item.sequencerName, t);
+                    return;
+                }
+                // Find the offending item by sequencing and saving each item on its own ...
+                for (SequencedItem item : saving) {
+                    sequenceAll(Collections.singletonList(item.work));
+                    save();
+                }
+                return;
+            }
+            for (SequencedItem item : saving) {
+                try {
+                    // fire the sequencing event after save (hopefully by this time the transaction has been committed)
+                    LOGGER.trace("Firing events resulting from sequencing '{0}'", item.work.getInputPath());
+                    fireSequencingEvent(item.selectedNode, item.outputNodes, outputSession, item.sequencerName, item.work);
+                } catch (Throwable t) {
+                    logFailure(item.work, item.sequencerName, t);
+                }
+                long durationInNanos = Math.abs(System.nanoTime() - item.start);
+                Map<String, String> payload = new HashMap<String, String>();
+                payload.put("sequencerName", item.sequencerClassName);
+                payload.put("sequencedPath", item.sequencedPath);
+                payload.put("outputPath", item.outputPath);
+                repository.statistics().recordDuration(DurationMetric.SEQUENCER_EXECUTION_TIME,
+                                                       durationInNanos,
+                                                       TimeUnit.NANOSECONDS,
+                                                       payload);
             }
+        }
 
+        private void discard() {
+            sequenced.clear();
+            sequencedBytes = 0L;
+            try {
+                outputSession.refresh(false);
+                if (inputSession != outputSession) inputSession.refresh(false);
+            } catch (RepositoryException e) {
+                LOGGER.debug(e, "Unable to discard the changes of the sequencing session(s) in repository '{0}'", repository.name());
+            }
+        }
+
+        /**
+         * Run the sequencer on the supplied work, leaving the output unsaved in the output session.
+         * 
+         * @param work the work; may not be null
+         * @return the sequenced output, or null if the sequencer did not apply or produced no output
+         * @throws Throwable if the sequencing failed
+         */
+        private SequencedItem sequence( SequencingWorkItem work ) throws Throwable {
             // Get the sequencer ...
-            sequencer = repository.sequencers().getSequencer(work.getSequencerId());
+            Sequencer sequencer = repository.sequencers().getSequencer(work.getSequencerId());
             if (sequencer == null) {
                 if (DEBUG) {
                     LOGGER.debug("Unable to find sequencer with ID '{0}' in repository '{1}'; skipping input '{3}:{2}' and output '{5}:{4}'",
@@ -100,9 +350,9 @@ final class SequencingRunner implements Runnable {
                                  work.getOutputPath(),
                                  work.getOutputWorkspaceName());
                 }
-                return;
+                return null;
             }
-            sequencerName = sequencer.getName();
+            String sequencerName = sequencer.getName();
 
             String logMsg = null;
             if (TRACE || DEBUG) {
@@ -112,7 +362,7 @@ final class SequencingRunner implements Runnable {
                                                  work.getInputPath(),
                                                  work.getInputWorkspaceName(),
                                                  work.getOutputPath(),
-                                                 work.getOutputWorkspaceName() != null ? work.getOutputWorkspaceName() : work.getInputWorkspaceName());
+                                                 outputWorkspaceName(work));
                 LOGGER.debug("Running {0}", logMsg);
             }
 
@@ -139,7 +389,7 @@ final class SequencingRunner implements Runnable {
                 // See if the sequencer accepts the MIME type ...
                 if (mimeType != null && !sequencer.isAccepted(mimeType)) {
                     LOGGER.debug("Skipping sequencing because MIME type of input doesn't match expectations for {0}", logMsg);
-                    return; // nope
+                    return null; // nope
                 }
             }
 
@@ -188,77 +438,92 @@ final class SequencingRunner implements Runnable {
             // Execute the sequencer ...
             DateTime now = outputSession.dateFactory().create();
             Sequencer.Context context = new SequencingContext(now, outputSession.getValueFactory());
-            if (inputSession.isLive() && (inputSession == outputSession || outputSession.isLive())) {
-                final long start = System.nanoTime();
+            if (!inputSession.isLive() || (inputSession != outputSession && !outputSession.isLive())) {
+                return null;
+            }
+            final long start = System.nanoTime();
+            try {
+                LOGGER.trace("Executing {0}", logMsg);
+                if (!sequencer.execute(changedProperty, outputNode, context)) {
+                    return null;
+                }
+                LOGGER.trace("Completed executing {0}", logMsg);
 
-                try {
-                    LOGGER.trace("Executing {0}", logMsg);
-                    if (sequencer.execute(changedProperty, outputNode, context)) {
-                        LOGGER.trace("Completed executing {0}", logMsg);
-
-                        // Make sure that the sequencer did not change the primary type of the selected node ..
-                        if (selectedNode == outputNode && !selectedNode.getPrimaryNodeType().getName().equals(primaryType)) {
-                            String msg = RepositoryI18n.sequencersMayNotChangeThePrimaryTypeOfTheSelectedNode.text();
-                            throw new RepositoryException(msg);
-                        }
-
-                        // find the new nodes created by the sequencing before saving, so we can properly fire the events
-                        List<AbstractJcrNode> outputNodes = findOutputNodes(outputNode);
-
-                        // set the createdBy property (if it applies) to the user which triggered the sequencing, not the context
-                        // of the saving session
-                        setCreatedByIfNecessary(outputSession, outputNodes);
-
-                        // outputSession
-                        LOGGER.trace("Saving session used by {0}", logMsg);
-                        outputSession.save();
-
-                        // fire the sequencing event after save (hopefully by this time the transaction has been committed)
-                        LOGGER.trace("Firing events resulting from {0}", logMsg);
-                        fireSequencingEvent(selectedNode, outputNodes, outputSession, sequencerName);
-
-                        long durationInNanos = Math.abs(System.nanoTime() - start);
-                        Map<String, String> payload = new HashMap<String, String>();
-                        payload.put("sequencerName", sequencer.getClass().getName());
-                        payload.put("sequencedPath", changedProperty.getPath());
-                        payload.put("outputPath", outputNode.getPath());
-                        stats.recordDuration(DurationMetric.SEQUENCER_EXECUTION_TIME,
-                                             durationInNanos,
-                                             TimeUnit.NANOSECONDS,
-                                             payload);
-                    }
-                } catch (Throwable t) {
-                    fireSequencingFailureEvent(selectedNode, inputSession, t, sequencerName);
-                    // let it bubble down, because we still want to log it and update the stats
-                    throw t;
+                // Make sure that the sequencer did not change the primary type of the selected node ..
+                if (selectedNode == outputNode && !selectedNode.getPrimaryNodeType().getName().equals(primaryType)) {
+                    String msg = RepositoryI18n.sequencersMayNotChangeThePrimaryTypeOfTheSelectedNode.text();
+                    throw new RepositoryException(msg);
                 }
+
+                // find the new nodes created by the sequencing before saving, so we can properly fire the events
+                List<AbstractJcrNode> outputNodes = findOutputNodes(outputNode);
+
+                // set the createdBy property (if it applies) to the user which triggered the sequencing, not the context
+                // of the saving session
+                setCreatedByIfNecessary(outputSession, outputNodes, work.getUserId());
+
+                return new SequencedItem(work, selectedNode, outputNodes, sequencerName, sequencer.getClass().getName(),
+                                         changedProperty.getPath(), outputNode.getPath(), inputSize(changedProperty), start);
+            } catch (Throwable t) {
+                fireSequencingFailureEvent(selectedNode, inputSession, t, sequencerName, work);
+                // let it bubble down, because we still want to log it
+                throw t;
             }
-        } catch (Throwable t) {
-            Logger logger = Logger.getLogger(getClass());
-            if (work.getOutputWorkspaceName() != null) {
-                logger.error(t,
-                             RepositoryI18n.errorWhileSequencingNodeIntoWorkspace,
-                             sequencerName,
-                             repository.name(),
-                             work.getInputPath(),
-                             work.getInputWorkspaceName(),
-                             work.getOutputPath(),
-                             work.getOutputWorkspaceName());
-            } else {
-                logger.error(t,
-                             RepositoryI18n.errorWhileSequencingNode,
-                             sequencerName,
-                             repository.name(),
-                             work.getInputPath(),
-                             work.getInputWorkspaceName(),
-                             work.getOutputPath());
+        }
+    }
+
+    /**
+     * The unsaved output of sequencing one item of work.
+     */
+    @Immutable
+    private static final class SequencedItem {
+        protected final SequencingWorkItem work;
+        protected final AbstractJcrNode selectedNode;
+        protected final List<AbstractJcrNode> outputNodes;
+        protected final String sequencerName;
+        protected final String sequencerClassName;
+        protected final String sequencedPath;
+        protected final String outputPath;
+        protected final long inputSize;
+        protected final long start;
+
+        protected SequencedItem( SequencingWorkItem work,
+                                 AbstractJcrNode selectedNode,
+                                 List<AbstractJcrNode> outputNodes,
+                                 String sequencerName,
+                                 String sequencerClassName,
+                                 String sequencedPath,
+                                 String outputPath,
+                                 long inputSize,
+                                 long start ) {
+            this.work = work;
+            this.selectedNode = selectedNode;
+            this.outputNodes = outputNodes;
+            this.sequencerName = sequencerName;
+            this.sequencerClassName = sequencerClassName;
+            this.sequencedPath = sequencedPath;
+            this.outputPath = outputPath;
+            this.inputSize = inputSize;
+            this.start = start;
+        }
+    }
+
+    /**
+     * Determine the size of the sequenced input, which counts towards the limit on the size of a batch.
+     * 
+     * @param changedProperty the property being sequenced
+     * @return the size in bytes of the property's value(s), or 0 if it cannot be determined
+     * @throws RepositoryException if there is a problem accessing the property
+     */
+    private static long inputSize( Property changedProperty ) throws RepositoryException {
+        if (changedProperty.isMultiple()) {
+            long size = 0L;
+            for (long length : changedProperty.getLengths()) {
+                if (length > 0L) size += length;
             }
-        } finally {
-            stats.increment(ValueMetric.SEQUENCED_COUNT);
-            stats.decrement(ValueMetric.SEQUENCER_QUEUE_SIZE);
-            if (inputSession != null && inputSession.isLive()) inputSession.logout();
-            if (outputSession != null && outputSession != inputSession && outputSession.isLive()) outputSession.logout();
+            return size;
         }
+        return Math.max(0L, changedProperty.getLength());
     }
 
     /**
@@ -311,14 +576,15 @@ final class SequencingRunner implements Runnable {
         return mimeType;
     }
 
-    private void setCreatedByIfNecessary( JcrSession outputSession,
-                                          List<AbstractJcrNode> outputNodes ) throws RepositoryException {
+    private static void setCreatedByIfNecessary( JcrSession outputSession,
+                                                 List<AbstractJcrNode> outputNodes,
+                                                 String userId ) throws RepositoryException {
         // if the mix:created mixin is on any of the new nodes, we need to set the createdBy here, otherwise it will be
         // set by the system session when it saves and it will default to "modeshape-worker"
         for (AbstractJcrNode node : outputNodes) {
             if (node.isNodeType(JcrMixLexicon.CREATED)) {
                 node.setProperty(JcrLexicon.CREATED_BY,
-                                 outputSession.getValueFactory().createValue(work.getUserId()),
+                                 outputSession.getValueFactory().createValue(userId),
                                  true,
                                  true,
                                  false,
@@ -330,7 +596,8 @@ final class SequencingRunner implements Runnable {
     private void fireSequencingEvent( AbstractJcrNode sequencedNode,
                                       List<AbstractJcrNode> outputNodes,
                                       JcrSession outputSession,
-                                      String sequencerName ) throws RepositoryException {
+                                      String sequencerName,
+                                      SequencingWorkItem work ) throws RepositoryException {
 
         RecordingChanges sequencingChanges = new RecordingChanges(outputSession.context().getProcessId(),
                                                                   outputSession.getRepository().repositoryKey(),
@@ -352,7 +619,8 @@ final class SequencingRunner implements Runnable {
     private void fireSequencingFailureEvent( AbstractJcrNode sequencedNode,
                                              JcrSession inputSession,
                                              Throwable cause,
-                                             String sequencerName ) throws RepositoryException {
+                                             String sequencerName,
+                                             SequencingWorkItem work ) throws RepositoryException {
         assert sequencedNode != null;
         assert inputSession != null;
         RecordingChanges sequencingChanges = new RecordingChanges(inputSession.context().getProcessId(),
@@ -376,7 +644,7 @@ final class SequencingRunner implements Runnable {
      * @return the first level of output nodes that were created during the sequencing process; never null
      * @throws RepositoryException if there is a problem finding the output nodes
      */
-    private List<AbstractJcrNode> findOutputNodes( AbstractJcrNode rootOutputNode ) throws RepositoryException {
+    private static List<AbstractJcrNode> findOutputNodes( AbstractJcrNode rootOutputNode ) throws RepositoryException {
         if (rootOutputNode.isNew()) {
             return Arrays.asList(rootOutputNode);
         }
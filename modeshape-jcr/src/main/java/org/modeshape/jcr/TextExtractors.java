@@ -26,51 +26,121 @@ package org.modeshape.jcr;
 import org.modeshape.common.annotation.Immutable;
 import org.modeshape.common.logging.Logger;
 import org.modeshape.common.util.CheckArg;
-import org.modeshape.common.util.StringUtil;
+import org.modeshape.common.util.NamedThreadFactory;
 import org.modeshape.jcr.RepositoryConfiguration.Component;
 import org.modeshape.jcr.api.text.TextExtractor;
+import org.modeshape.jcr.text.TextExtractionTimeoutException;
 import org.modeshape.jcr.text.TextExtractorOutput;
 import org.modeshape.jcr.value.BinaryKey;
 import org.modeshape.jcr.value.BinaryValue;
 import org.modeshape.jcr.value.binary.AbstractBinaryStore;
+import org.modeshape.jcr.value.binary.ExtractedTextWriter;
 import org.modeshape.jcr.value.binary.InMemoryBinaryValue;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Callable;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
- * Facility for managing {@link TextExtractor} instances and submitting text extraction work
+ * Facility for managing {@link TextExtractor} instances and submitting text extraction work.
+ * <p>
+ * The text of stored binary values is extracted at most once per {@link BinaryKey} at a time, regardless of how many nodes (in
+ * however many workspaces) use the value, and is streamed into the binary store rather than being accumulated in memory. The
+ * number of characters extracted from each value and the time each extraction may take can both be limited.
+ * </p>
  */
 @Immutable
 public final class TextExtractors {
 
     private static final Logger LOGGER = Logger.getLogger(TextExtractors.class);
 
+    /**
+     * The maximum number of texts extracted from in-memory binary values that are cached.
+     */
+    private static final int IN_MEMORY_TEXT_CACHE_SIZE = 1000;
+
+    private static final String TIMED_EXTRACTOR_NAME = "modeshape-text-extractor";
+
     private final List<TextExtractor> extractors;
     private final ExecutorService extractingQueue;
+    private final ExecutorService timedExtractors;
     private final ConcurrentHashMap<BinaryKey, CountDownLatch> workerLatches;
+    private final Map<BinaryKey, String> inMemoryTexts;
     private final boolean fullTextSearchEnabled;
+    private final long maximumCharacters;
+    private final long timeoutInMillis;
+    private final int bufferSize;
 
     public TextExtractors( ExecutorService extractingQueue,
                            boolean fullTextSearchEnabled,
                            List<TextExtractor> extractors ) {
+        this(extractingQueue, fullTextSearchEnabled, extractors, RepositoryConfiguration.Default.TEXT_EXTRACTION_MAXIMUM_CHARACTERS,
+             RepositoryConfiguration.Default.TEXT_EXTRACTION_TIMEOUT_IN_MILLIS,
+             RepositoryConfiguration.Default.TEXT_EXTRACTION_BUFFER_SIZE);
+    }
+
+    /**
+     * Create the text extractors with the given limits.
+     * 
+     * @param extractingQueue the executor that extracts the text of the stored binary values; may not be null
+     * @param fullTextSearchEnabled true if full-text search is enabled, or false otherwise
+     * @param extractors the text extractors, in order of preference; may not be null
+     * @param maximumCharacters the maximum number of characters extracted from each binary value, or a negative number if there
+     *        is no limit
+     * @param timeoutInMillis the maximum time in milliseconds that each extraction may take, or 0 if there is no limit
+     * @param bufferSize the number of characters buffered while the extracted text is written to the binary store
+     */
+    public TextExtractors( ExecutorService extractingQueue,
+                           boolean fullTextSearchEnabled,
+                           List<TextExtractor> extractors,
+                           long maximumCharacters,
+                           long timeoutInMillis,
+                           int bufferSize ) {
+        CheckArg.isPositive(bufferSize, "bufferSize");
         this.extractingQueue = extractingQueue;
         this.workerLatches = new ConcurrentHashMap<BinaryKey, CountDownLatch>();
+        this.inMemoryTexts = Collections.synchronizedMap(new LinkedHashMap<BinaryKey, String>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry( Map.Entry<BinaryKey, String> eldest ) {
+                return size() > IN_MEMORY_TEXT_CACHE_SIZE;
+            }
+        });
         this.fullTextSearchEnabled = fullTextSearchEnabled;
         this.extractors = extractors;
+        this.maximumCharacters = maximumCharacters;
+        this.timeoutInMillis = timeoutInMillis;
+        this.bufferSize = bufferSize;
+        // Extractions with a timeout are run in their own threads, so that the caller can stop waiting for them ...
+        NamedThreadFactory threadFactory = new NamedThreadFactory(TIMED_EXTRACTOR_NAME);
+        this.timedExtractors = timeoutInMillis > 0L ? Executors.newCachedThreadPool(threadFactory) : null;
     }
 
     TextExtractors( JcrRepository.RunningState repository,
                     RepositoryConfiguration.TextExtracting extracting ) {
         this(repository.context().getCachedTreadPool(extracting.getThreadPoolName()), repository.isFullTextSearchEnabled(),
-             getConfiguredExtractors(repository, extracting));
+             getConfiguredExtractors(repository, extracting), extracting.getMaximumCharacters(),
+             extracting.getTimeoutInMillis(), extracting.getBufferSize());
     }
 
     protected void shutdown() {
         extractors.clear();
+        inMemoryTexts.clear();
         extractingQueue.shutdown();
+        if (timedExtractors != null) {
+            timedExtractors.shutdownNow();
+        }
     }
 
     public boolean extractionEnabled() {
@@ -79,19 +149,21 @@ public final class TextExtractors {
 
     public String extract( InMemoryBinaryValue inMemoryBinaryValue,
                            TextExtractor.Context context ) {
+        // The same small value is often used in many nodes, so reuse the text that was already extracted ...
+        BinaryKey key = inMemoryBinaryValue.getKey();
+        String cachedText = inMemoryTexts.get(key);
+        if (cachedText != null) {
+            return cachedText;
+        }
         try {
-            String mimeType = inMemoryBinaryValue.getMimeType();
-            TextExtractorOutput output = new TextExtractorOutput();
-            // Run through the extractors and have them extract the text - the first one which accepts the mime-type will win
-            for (TextExtractor extractor : extractors) {
-                if (!extractor.supportsMimeType(mimeType)) {
-                    continue;
-                }
-                extractor.extractFrom(inMemoryBinaryValue, output, context);
-                break;
+            TextExtractor extractor = extractorFor(inMemoryBinaryValue.getMimeType());
+            TextExtractorOutput output = new TextExtractorOutput(maximumCharacters, timeoutInMillis);
+            if (extractor != null) {
+                extractFrom(extractor, inMemoryBinaryValue, output, context);
             }
-
-            return output.getText();
+            String text = output.getText();
+            inMemoryTexts.put(key, text);
+            return text;
         } catch (Exception e) {
             LOGGER.error(e, JcrI18n.errorExtractingTextFromBinary, inMemoryBinaryValue.getHexHash(), e.getLocalizedMessage());
         }
@@ -109,7 +181,12 @@ public final class TextExtractors {
             return null;
         }
         CheckArg.isNotNull(binaryValue, "binaryValue");
-        CountDownLatch latch = getWorkerLatch(binaryValue.getKey(), true);
+        CountDownLatch latch = new CountDownLatch(1);
+        CountDownLatch existingLatch = workerLatches.putIfAbsent(binaryValue.getKey(), latch);
+        if (existingLatch != null) {
+            // The text of this value is already being extracted (perhaps for a node in another workspace) ...
+            return existingLatch;
+        }
         extractingQueue.execute(new Worker(store, binaryValue, context, latch));
         return latch;
     }
@@ -124,6 +201,72 @@ public final class TextExtractors {
         return workerLatches.get(binaryKey);
     }
 
+    private TextExtractor extractorFor( String mimeType ) {
+        // The first extractor which accepts the mime-type will win
+        for (TextExtractor extractor : extractors) {
+            if (extractor.supportsMimeType(mimeType)) {
+                return extractor;
+            }
+        }
+        return null;
+    }
+
+    private void extractFrom( TextExtractor extractor,
+                              BinaryValue binaryValue,
+                              TextExtractorOutput output,
+                              TextExtractor.Context context ) throws Exception {
+        try {
+            if (timeoutInMillis > 0L) {
+                extractWithTimeout(extractor, binaryValue, output, context);
+            } else {
+                extractor.extractFrom(binaryValue, output, context);
+            }
+        } catch (TextExtractionTimeoutException e) {
+            // Keep what was extracted until the timeout ...
+            LOGGER.warn(JcrI18n.textExtractionTimedOut, binaryValue.getHexHash(), e.getTimeoutInMillis());
+        }
+        if (output.isTruncated()) {
+            LOGGER.debug("The text extracted from binary value {0} was truncated to {1} characters", binaryValue.getHexHash(),
+                         output.getCharacterCount());
+        }
+    }
+
+    /**
+     * Run the extractor in a separate thread, and stop waiting for it (and interrupt it) once the timeout has elapsed. This
+     * enforces the timeout even when the extractor doesn't record any text for a long time (e.g., while parsing a large or
+     * malformed document).
+     */
+    private void extractWithTimeout( final TextExtractor extractor,
+                                     final BinaryValue binaryValue,
+                                     final TextExtractorOutput output,
+                                     final TextExtractor.Context context ) throws Exception {
+        Future<Void> future = timedExtractors.submit(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                extractor.extractFrom(binaryValue, output, context);
+                return null;
+            }
+        });
+        try {
+            future.get(timeoutInMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // Stop accepting text before interrupting the extractor, so the text extracted so far can be used ...
+            output.expire();
+            future.cancel(true);
+            throw new TextExtractionTimeoutException(timeoutInMillis);
+        } catch (InterruptedException e) {
+            output.expire();
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw e;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) throw (Exception)cause;
+            if (cause instanceof Error) throw (Error)cause;
+            throw e;
+        }
+    }
+
     private static List<TextExtractor> getConfiguredExtractors( JcrRepository.RunningState repository,
                                                                 RepositoryConfiguration.TextExtracting extracting ) {
         List<Component> extractorComponents = extracting.getTextExtractors(repository.problems());
@@ -143,7 +286,7 @@ public final class TextExtractors {
     }
 
     /**
-     * A unit of work which extracts text from a binary value, stores that text in a store and notifies a latch that the
+     * A unit of work which extracts text from a binary value, streams that text into a store and notifies a latch that the
      * extraction operation has finished.
      */
     protected final class Worker implements Runnable {
@@ -165,6 +308,7 @@ public final class TextExtractors {
         @SuppressWarnings( "synthetic-access" )
         @Override
         public void run() {
+            ExtractedTextWriter writer = null;
             try {
                 // only extract text if there isn't a stored value for the binary key (note that any changes in the binary will
                 // produce a different key)
@@ -172,26 +316,26 @@ public final class TextExtractors {
                     return;
                 }
 
-                String mimeType = binaryValue.getMimeType();
-                TextExtractorOutput output = new TextExtractorOutput();
-                // Run through the extractors and have them extract the text - the first one which accepts the mime-type will win
-                for (TextExtractor extractor : extractors) {
-                    if (!extractor.supportsMimeType(mimeType)) {
-                        continue;
-                    }
-                    extractor.extractFrom(binaryValue, output, context);
-                    break;
+                TextExtractor extractor = extractorFor(binaryValue.getMimeType());
+                if (extractor == null) {
+                    return;
                 }
-
-                String extractedText = output.getText();
-                if (extractedText != null && !StringUtil.isBlank(extractedText)) {
-                    store.storeExtractedText(binaryValue, extractedText);
+                writer = store.extractedTextWriter(binaryValue, bufferSize);
+                TextExtractorOutput output = new TextExtractorOutput(writer, " ", maximumCharacters, timeoutInMillis);
+                extractFrom(extractor, binaryValue, output, context);
+                if (output.hasText()) {
+                    // Closing the output stores the text ...
+                    output.close();
                 }
             } catch (Exception e) {
                 LOGGER.error(e, JcrI18n.errorExtractingTextFromBinary, binaryValue.getHexHash(), e.getLocalizedMessage());
             } finally {
+                // discard whatever was not stored (this does nothing if the text was stored)
+                if (writer != null) writer.discard();
                 // decrement the latch regardless of success/failure to avoid blocking, as extraction is not retried
                 latch.countDown();
+                // and allow the text to be extracted again should it not have been stored
+                workerLatches.remove(binaryValue.getKey(), latch);
             }
         }
     }
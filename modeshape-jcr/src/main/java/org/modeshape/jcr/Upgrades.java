@@ -68,7 +68,7 @@ public class Upgrades {
     public static final Upgrades STANDARD_UPGRADES;
 
     static {
-        STANDARD_UPGRADES = new Upgrades(ModeShape_3_6_0.INSTANCE);
+        STANDARD_UPGRADES = new Upgrades(ModeShape_3_6_0.INSTANCE, ModeShape_3_7_0.INSTANCE);
     }
 
     private final List<UpgradeOperation> operations = new ArrayList<UpgradeOperation>();
@@ -236,4 +236,23 @@ public class Upgrades {
             return true;
         }
     }
+
+    /**
+     * Upgrade operation handling moving to ModeShape 3.7.0.Final. The indexes now contain the sortable forms of each node's path
+     * and name and the lengths of its path and name, which the range and length constraints on paths and names rely upon. Indexes
+     * written by earlier versions lack these fields, so this operation requires that all of the content be re-indexed.
+     */
+    protected static class ModeShape_3_7_0 extends UpgradeOperation {
+        protected static final UpgradeOperation INSTANCE = new ModeShape_3_7_0();
+
+        protected ModeShape_3_7_0() {
+            super(2);
+        }
+
+        @Override
+        public void apply( Context resources ) {
+            LOGGER.info(JcrI18n.upgrade3_7_0Running);
+            resources.getRepository().queryManager().requireReindexing();
+        }
+    }
 }
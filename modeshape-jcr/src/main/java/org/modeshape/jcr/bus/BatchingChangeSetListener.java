@@ -0,0 +1,47 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ * See the AUTHORS.txt file in the distribution for a full listing of
+ * individual contributors.
+ *
+ * ModeShape is free software. Unless otherwise indicated, all code in ModeShape
+ * is licensed to you under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * ModeShape is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.modeshape.jcr.bus;
+
+import java.util.List;
+import org.modeshape.jcr.cache.change.ChangeSet;
+import org.modeshape.jcr.cache.change.ChangeSetListener;
+
+/**
+ * A {@link ChangeSetListener} that can process several {@link ChangeSet}s at once. A {@link RingBufferChangeBus} will deliver
+ * all of the change sets that are waiting in the queue of such a listener (up to the configured maximum batch size) with a single
+ * call, and will inform the listener when change sets had to be dropped because the queue was full. Other buses deliver each
+ * change set individually via {@link #notify(ChangeSet)}.
+ */
+public interface BatchingChangeSetListener extends ChangeSetListener {
+
+    /**
+     * Notifies a listener of several change sets, in the order in which they were made.
+     * 
+     * @param changeSets the non-empty list of change sets; never null
+     * @param droppedCount the number of change sets that were not delivered to this listener since the previous notification
+     *        because its queue was full; a positive value means the listener has missed changes and may need to resynchronize
+     */
+    void notify( List<ChangeSet> changeSets,
+                 long droppedCount );
+}
@@ -18,6 +18,8 @@ public final class BusI18n {
     public static I18n clusteringChannelIsRunningAndCannotBeChangedUnlessShutdown;
     public static I18n memberOfClusterIsSuspect;
     public static I18n channelConfigurationError;
+    public static I18n changeSetsDroppedForListener;
+    public static I18n errorNotifyingListener;
 
     static {
         try {
@@ -0,0 +1,57 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ * See the AUTHORS.txt file in the distribution for a full listing of
+ * individual contributors.
+ *
+ * ModeShape is free software. Unless otherwise indicated, all code in ModeShape
+ * is licensed to you under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * ModeShape is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.modeshape.jcr.bus;
+
+/**
+ * A component that is informed of the activity within the queues of a {@link ChangeBus}, usually to record statistics.
+ */
+public interface ChangeBusMonitor {
+
+    /**
+     * A monitor that does nothing.
+     */
+    public static final ChangeBusMonitor NONE = new ChangeBusMonitor() {
+        @Override
+        public void queueSizeChanged( int delta ) {
+        }
+
+        @Override
+        public void changeSetsDropped( int count ) {
+        }
+    };
+
+    /**
+     * Record that the total number of change sets waiting to be delivered to listeners has changed.
+     * 
+     * @param delta the positive or negative change in the number of waiting change sets
+     */
+    void queueSizeChanged( int delta );
+
+    /**
+     * Record that change sets were not delivered to a listener because its queue was full.
+     * 
+     * @param count the number of change sets that were dropped
+     */
+    void changeSetsDropped( int count );
+}
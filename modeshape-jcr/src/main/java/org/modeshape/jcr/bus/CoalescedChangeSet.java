@@ -0,0 +1,155 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ * See the AUTHORS.txt file in the distribution for a full listing of
+ * individual contributors.
+ *
+ * ModeShape is free software. Unless otherwise indicated, all code in ModeShape
+ * is licensed to you under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * ModeShape is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.modeshape.jcr.bus;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.modeshape.common.annotation.Immutable;
+import org.modeshape.common.util.ObjectUtil;
+import org.modeshape.jcr.api.value.DateTime;
+import org.modeshape.jcr.cache.NodeKey;
+import org.modeshape.jcr.cache.change.Change;
+import org.modeshape.jcr.cache.change.ChangeSet;
+
+/**
+ * A {@link ChangeSet} that contains, in order, the changes of several change sets that were made by the same user in the same
+ * workspace. The {@link RingBufferChangeBus} uses this when its overflow policy is {@link RingBufferChangeBus.OverflowPolicy#COALESCE}
+ * to merge a new change set into the last one waiting in a full queue.
+ */
+@Immutable
+final class CoalescedChangeSet implements ChangeSet {
+
+    private static final long serialVersionUID = 1L;
+
+    private final ChangeSet latest;
+    private final List<Change> changes;
+    private final Set<NodeKey> changedNodes;
+
+    private CoalescedChangeSet( ChangeSet latest,
+                                List<Change> changes,
+                                Set<NodeKey> changedNodes ) {
+        this.latest = latest;
+        this.changes = Collections.unmodifiableList(changes);
+        this.changedNodes = Collections.unmodifiableSet(changedNodes);
+    }
+
+    /**
+     * Determine whether the two change sets can be merged without losing the information about who made the changes and where.
+     * 
+     * @param first the earlier change set; may not be null
+     * @param second the later change set; may not be null
+     * @return true if the change sets can be {@link #merge(ChangeSet, ChangeSet) merged}, or false otherwise
+     */
+    static boolean canMerge( ChangeSet first,
+                             ChangeSet second ) {
+        return ObjectUtil.isEqualWithNulls(first.getWorkspaceName(), second.getWorkspaceName())
+               && ObjectUtil.isEqualWithNulls(first.getUserId(), second.getUserId())
+               && ObjectUtil.isEqualWithNulls(first.getProcessKey(), second.getProcessKey())
+               && ObjectUtil.isEqualWithNulls(first.getRepositoryKey(), second.getRepositoryKey())
+               && ObjectUtil.isEqualWithNulls(first.getUserData(), second.getUserData());
+    }
+
+    /**
+     * Create a change set that contains all of the changes in the first change set followed by all of the changes in the second.
+     * 
+     * @param first the earlier change set; may not be null
+     * @param second the later change set; may not be null
+     * @return the merged change set; never null
+     */
+    static ChangeSet merge( ChangeSet first,
+                            ChangeSet second ) {
+        assert canMerge(first, second);
+        List<Change> changes = new ArrayList<Change>(first.size() + second.size());
+        for (Change change : first) {
+            changes.add(change);
+        }
+        for (Change change : second) {
+            changes.add(change);
+        }
+        Set<NodeKey> changedNodes = new HashSet<NodeKey>(first.changedNodes());
+        changedNodes.addAll(second.changedNodes());
+        return new CoalescedChangeSet(second, changes, changedNodes);
+    }
+
+    @Override
+    public int size() {
+        return changes.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return changes.isEmpty() && changedNodes.isEmpty();
+    }
+
+    @Override
+    public Iterator<Change> iterator() {
+        return changes.iterator();
+    }
+
+    @Override
+    public String getUserId() {
+        return latest.getUserId();
+    }
+
+    @Override
+    public Map<String, String> getUserData() {
+        return latest.getUserData();
+    }
+
+    @Override
+    public DateTime getTimestamp() {
+        return latest.getTimestamp();
+    }
+
+    @Override
+    public String getProcessKey() {
+        return latest.getProcessKey();
+    }
+
+    @Override
+    public String getRepositoryKey() {
+        return latest.getRepositoryKey();
+    }
+
+    @Override
+    public String getWorkspaceName() {
+        return latest.getWorkspaceName();
+    }
+
+    @Override
+    public Set<NodeKey> changedNodes() {
+        return changedNodes;
+    }
+
+    @Override
+    public String toString() {
+        return "Coalesced changes by '" + getUserId() + "' in workspace '" + getWorkspaceName() + "' up to " + getTimestamp()
+               + " : " + changes;
+    }
+}
@@ -0,0 +1,362 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ * See the AUTHORS.txt file in the distribution for a full listing of
+ * individual contributors.
+ *
+ * ModeShape is free software. Unless otherwise indicated, all code in ModeShape
+ * is licensed to you under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * ModeShape is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.modeshape.jcr.bus;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import org.modeshape.common.annotation.GuardedBy;
+import org.modeshape.common.annotation.ThreadSafe;
+import org.modeshape.common.logging.Logger;
+import org.modeshape.common.util.CheckArg;
+import org.modeshape.common.util.HashCode;
+import org.modeshape.jcr.cache.change.ChangeSet;
+import org.modeshape.jcr.cache.change.ChangeSetListener;
+
+/**
+ * A {@link ChangeBus} implementation that gives each listener a bounded ring buffer of change sets, so that a slow listener can
+ * never cause an unbounded number of change sets to accumulate in memory. What happens when a listener's buffer is full is
+ * determined by the {@link OverflowPolicy}.
+ * <p>
+ * Each listener is called from its own dispatching thread, which takes all of the change sets waiting in the buffer (up to the
+ * maximum batch size) at once. Listeners that implement {@link BatchingChangeSetListener} receive these change sets with a single
+ * call; other listeners are notified of each change set in turn.
+ * </p>
+ * <p>
+ * Unlike the {@link RepositoryChangeBus}, the list of listeners is copied upon each registration, so that
+ * {@link #notify(ChangeSet)} never has to acquire a bus-wide lock.
+ * </p>
+ */
+@ThreadSafe
+public final class RingBufferChangeBus implements ChangeBus {
+
+    /**
+     * The policy that describes what a {@link RingBufferChangeBus} does when the buffer of a listener is full.
+     */
+    public static enum OverflowPolicy {
+        /**
+         * Wait until the listener has processed enough change sets to make room in the buffer.
+         */
+        BLOCK,
+        /**
+         * Merge the change set with the last change set in the buffer if both were made by the same user in the same workspace,
+         * or otherwise wait until there is room in the buffer.
+         */
+        COALESCE,
+        /**
+         * Discard the change set, and inform the listener (if it is a {@link BatchingChangeSetListener}) of the number of change
+         * sets it missed.
+         */
+        DROP;
+    }
+
+    private static final String NULL_WORKSPACE_NAME = "null_workspace_name";
+    protected static final Logger LOGGER = Logger.getLogger(RingBufferChangeBus.class);
+
+    protected volatile boolean shutdown;
+
+    private final ExecutorService executor;
+    private final String systemWorkspaceName;
+    private final int queueSize;
+    private final OverflowPolicy overflowPolicy;
+    private final int maximumBatchSize;
+    private final ChangeBusMonitor monitor;
+    private final List<ListenerQueue> queues = new CopyOnWriteArrayList<ListenerQueue>();
+    @GuardedBy( "this" )
+    private final Map<Integer, ListenerQueue> queuesByListenerHashCode = new HashMap<Integer, ListenerQueue>();
+
+    /**
+     * Creates new change bus
+     * 
+     * @param executor the {@link ExecutorService} which will be used internally to submit workers to dispatching events to
+     *        listeners.
+     * @param systemWorkspaceName the name of the system workspace, needed because internal (system) events are dispatched in the
+     *        same thread; may no be null
+     * @param queueSize the maximum number of change sets that can be waiting for each listener; must be positive
+     * @param overflowPolicy what is to be done when the buffer of a listener is full; may not be null
+     * @param maximumBatchSize the maximum number of change sets that are taken from a listener's buffer at once; must be positive
+     * @param monitor the monitor that should be informed of the buffer sizes and dropped change sets; may be null
+     */
+    public RingBufferChangeBus( ExecutorService executor,
+                                String systemWorkspaceName,
+                                int queueSize,
+                                OverflowPolicy overflowPolicy,
+                                int maximumBatchSize,
+                                ChangeBusMonitor monitor ) {
+        CheckArg.isPositive(queueSize, "queueSize");
+        CheckArg.isNotNull(overflowPolicy, "overflowPolicy");
+        CheckArg.isPositive(maximumBatchSize, "maximumBatchSize");
+        this.executor = executor;
+        this.systemWorkspaceName = systemWorkspaceName;
+        this.queueSize = queueSize;
+        this.overflowPolicy = overflowPolicy;
+        this.maximumBatchSize = maximumBatchSize;
+        this.monitor = monitor != null ? monitor : ChangeBusMonitor.NONE;
+        this.shutdown = false;
+    }
+
+    @Override
+    public synchronized void start() {
+    }
+
+    @Override
+    public synchronized void shutdown() {
+        shutdown = true;
+        for (ListenerQueue queue : queuesByListenerHashCode.values()) {
+            // each dispatcher will deliver what remains in its buffer before completing ...
+            queue.stop();
+        }
+        queuesByListenerHashCode.clear();
+        queues.clear();
+        executor.shutdown();
+    }
+
+    @Override
+    public synchronized boolean register( ChangeSetListener listener ) {
+        if (listener == null) {
+            return false;
+        }
+        int hashCode = HashCode.compute(listener);
+        if (queuesByListenerHashCode.containsKey(hashCode)) {
+            return false;
+        }
+        ListenerQueue queue = new ListenerQueue(listener, hashCode);
+        queuesByListenerHashCode.put(hashCode, queue);
+        queues.add(queue);
+        executor.submit(queue);
+        return true;
+    }
+
+    @Override
+    public synchronized boolean unregister( ChangeSetListener listener ) {
+        if (listener == null) {
+            return false;
+        }
+        ListenerQueue queue = queuesByListenerHashCode.remove(HashCode.compute(listener));
+        if (queue == null) {
+            return false;
+        }
+        queues.remove(queue);
+        queue.stop();
+        return true;
+    }
+
+    @Override
+    public void notify( ChangeSet changeSet ) {
+        if (changeSet == null || !hasObservers()) {
+            return;
+        }
+
+        if (shutdown) {
+            throw new IllegalStateException("Change bus has been already shut down, should not have any more observers");
+        }
+
+        String workspaceName = changeSet.getWorkspaceName() != null ? changeSet.getWorkspaceName() : NULL_WORKSPACE_NAME;
+        boolean inThread = workspaceName.equalsIgnoreCase(systemWorkspaceName);
+        for (ListenerQueue queue : queues) {
+            if (inThread) {
+                // changes in the system workspace are always submitted in the same thread because they need immediate processing
+                queue.listener().notify(changeSet);
+            } else {
+                queue.add(changeSet);
+            }
+        }
+    }
+
+    @Override
+    public boolean hasObservers() {
+        return !queues.isEmpty();
+    }
+
+    /**
+     * A bounded ring buffer of change sets for a single listener, which also dispatches the change sets to that listener.
+     */
+    protected final class ListenerQueue implements Callable<Void> {
+
+        private final ChangeSetListener listener;
+        private final int listenerHashCode;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition notEmpty = lock.newCondition();
+        private final Condition notFull = lock.newCondition();
+        @GuardedBy( "lock" )
+        private ChangeSet[] buffer;
+        @GuardedBy( "lock" )
+        private int head;
+        @GuardedBy( "lock" )
+        private int count;
+        @GuardedBy( "lock" )
+        private long droppedCount;
+        @GuardedBy( "lock" )
+        private boolean stopped;
+        private volatile Thread dispatchingThread;
+
+        protected ListenerQueue( ChangeSetListener listener,
+                                 int listenerHashCode ) {
+            this.listener = listener;
+            this.listenerHashCode = listenerHashCode;
+            this.buffer = new ChangeSet[queueSize];
+        }
+
+        protected ChangeSetListener listener() {
+            return listener;
+        }
+
+        protected void add( ChangeSet changeSet ) {
+            lock.lock();
+            try {
+                while (count == buffer.length && !stopped) {
+                    if (Thread.currentThread() == dispatchingThread) {
+                        // The listener is itself making changes; waiting for room would never end, so make room ...
+                        grow();
+                        break;
+                    }
+                    if (overflowPolicy == OverflowPolicy.DROP) {
+                        if (droppedCount++ == 0) {
+                            LOGGER.warn(BusI18n.changeSetsDroppedForListener, listener, buffer.length);
+                        }
+                        monitor.changeSetsDropped(1);
+                        return;
+                    }
+                    if (overflowPolicy == OverflowPolicy.COALESCE) {
+                        int last = (head + count - 1) % buffer.length;
+                        if (CoalescedChangeSet.canMerge(buffer[last], changeSet)) {
+                            buffer[last] = CoalescedChangeSet.merge(buffer[last], changeSet);
+                            return;
+                        }
+                    }
+                    try {
+                        notFull.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        LOGGER.debug("Interrupted while waiting to submit change set: {0}", changeSet);
+                        return;
+                    }
+                }
+                if (stopped) {
+                    LOGGER.debug("Cannot submit change set: {0} because the listener has been unregistered", changeSet);
+                    return;
+                }
+                buffer[(head + count) % buffer.length] = changeSet;
+                ++count;
+                monitor.queueSizeChanged(1);
+                notEmpty.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @GuardedBy( "lock" )
+        private void grow() {
+            ChangeSet[] larger = new ChangeSet[buffer.length * 2];
+            for (int i = 0; i != count; ++i) {
+                larger[i] = buffer[(head + i) % buffer.length];
+            }
+            buffer = larger;
+            head = 0;
+        }
+
+        @Override
+        public Void call() {
+            dispatchingThread = Thread.currentThread();
+            try {
+                List<ChangeSet> batch = new ArrayList<ChangeSet>(Math.min(maximumBatchSize, queueSize));
+                while (true) {
+                    long dropped = 0L;
+                    lock.lock();
+                    try {
+                        while (count == 0 && !stopped) {
+                            notEmpty.await();
+                        }
+                        if (count == 0) {
+                            // stopped and everything has been delivered ...
+                            return null;
+                        }
+                        int batchSize = Math.min(count, maximumBatchSize);
+                        for (int i = 0; i != batchSize; ++i) {
+                            batch.add(buffer[head]);
+                            buffer[head] = null;
+                            head = (head + 1) % buffer.length;
+                        }
+                        count -= batchSize;
+                        dropped = droppedCount;
+                        droppedCount = 0L;
+                        notFull.signalAll();
+                    } finally {
+                        lock.unlock();
+                    }
+                    monitor.queueSizeChanged(-batch.size());
+                    dispatch(batch, dropped);
+                    batch.clear();
+                }
+            } catch (InterruptedException e) {
+                Thread.interrupted();
+                return null;
+            } finally {
+                dispatchingThread = null;
+            }
+        }
+
+        private void dispatch( List<ChangeSet> batch,
+                               long dropped ) {
+            try {
+                if (listener instanceof BatchingChangeSetListener) {
+                    ((BatchingChangeSetListener)listener).notify(batch, dropped);
+                } else {
+                    for (ChangeSet changeSet : batch) {
+                        listener.notify(changeSet);
+                    }
+                }
+            } catch (RuntimeException e) {
+                LOGGER.error(e, BusI18n.errorNotifyingListener, listener, e.getMessage());
+            }
+        }
+
+        protected void stop() {
+            lock.lock();
+            try {
+                stopped = true;
+                notEmpty.signalAll();
+                notFull.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public int hashCode() {
+            return listenerHashCode;
+        }
+
+        @Override
+        public boolean equals( Object obj ) {
+            return obj == this;
+        }
+    }
+}
@@ -29,6 +29,7 @@ import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -76,12 +77,14 @@ import org.modeshape.jcr.cache.change.RecordingChanges;
 import org.modeshape.jcr.cache.change.RepositoryMetadataChanged;
 import org.modeshape.jcr.cache.change.WorkspaceAdded;
 import org.modeshape.jcr.cache.change.WorkspaceRemoved;
+import org.modeshape.jcr.cache.document.BoundedNodeCache;
 import org.modeshape.jcr.cache.document.DocumentOptimizer;
 import org.modeshape.jcr.cache.document.DocumentStore;
 import org.modeshape.jcr.cache.document.DocumentTranslator;
 import org.modeshape.jcr.cache.document.LocalDocumentStore;
 import org.modeshape.jcr.cache.document.LocalDocumentStore.DocumentOperation;
 import org.modeshape.jcr.cache.document.LocalDocumentStore.DocumentOperationResults;
+import org.modeshape.jcr.cache.document.NodeCacheMonitor;
 import org.modeshape.jcr.cache.document.ReadOnlySessionCache;
 import org.modeshape.jcr.cache.document.WorkspaceCache;
 import org.modeshape.jcr.cache.document.WritableSessionCache;
@@ -133,6 +136,7 @@ public class RepositoryCache implements Observable {
     private final SessionEnvironment sessionContext;
     private final String processKey;
     private final CacheContainer workspaceCacheManager;
+    private final NodeCacheMonitor nodeCacheMonitor;
     protected final Upgrades upgrades;
     private volatile boolean initializingRepository = false;
     private volatile boolean upgradingRepository = false;
@@ -145,6 +149,7 @@ public class RepositoryCache implements Observable {
                             SessionEnvironment sessionContext,
                             ChangeBus changeBus,
                             CacheContainer workspaceCacheContainer,
+                            NodeCacheMonitor nodeCacheMonitor,
                             Upgrades upgradeFunctions ) {
         this.context = context;
         this.configuration = configuration;
@@ -154,6 +159,7 @@ public class RepositoryCache implements Observable {
         this.sessionContext = sessionContext;
         this.processKey = context.getProcessId();
         this.workspaceCacheManager = workspaceCacheContainer;
+        this.nodeCacheMonitor = nodeCacheMonitor != null ? nodeCacheMonitor : NodeCacheMonitor.NONE;
         this.logger = Logger.getLogger(getClass());
         this.rootNodeId = RepositoryConfiguration.ROOT_NODE_ID;
         this.name = configuration.getName();
@@ -837,10 +843,8 @@ public class RepositoryCache implements Observable {
                     @SuppressWarnings( "synthetic-access" )
                     @Override
                     public WorkspaceCache call() throws Exception {
-                        // Create/get the Infinispan workspaceCache that we'll use within the WorkspaceCache, using the
-                        // workspaceCache manager's
-                        // default configuration ...
-                        Cache<NodeKey, CachedNode> nodeCache = cacheForWorkspace(name);
+                        // Create/get the cache of nodes that we'll use within the WorkspaceCache ...
+                        ConcurrentMap<NodeKey, CachedNode> nodeCache = nodeCacheForWorkspace(name);
                         ExecutionContext context = context();
 
                         // Compute the root key for this workspace ...
@@ -879,6 +883,22 @@ public class RepositoryCache implements Observable {
         return workspaceCachesByName.get(name);
     }
 
+    /**
+     * Create the map of nodes that the named workspace's {@link WorkspaceCache} should use. This is a size-bounded cache when the
+     * configuration's {@link RepositoryConfiguration#getNodeCaching() node caching} is bounded, or otherwise the workspace's
+     * Infinispan cache obtained with the workspace cache manager's default configuration.
+     * 
+     * @param name the name of the workspace
+     * @return the node cache; never null
+     */
+    protected ConcurrentMap<NodeKey, CachedNode> nodeCacheForWorkspace( String name ) {
+        RepositoryConfiguration.NodeCaching nodeCaching = configuration.getNodeCaching();
+        if (nodeCaching.isBounded()) {
+            return new BoundedNodeCache(nodeCaching.getMaximumWeight(), nodeCaching.getOffHeapSize(), nodeCacheMonitor);
+        }
+        return cacheForWorkspace(name);
+    }
+
     protected Cache<NodeKey, CachedNode> cacheForWorkspace( String name ) {
         Cache<NodeKey, CachedNode> cache = workspaceCacheManager.getCache(cacheNameForWorkspace(name));
         if (cache instanceof AdvancedCache) {
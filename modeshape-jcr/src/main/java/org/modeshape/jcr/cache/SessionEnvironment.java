@@ -25,6 +25,7 @@ package org.modeshape.jcr.cache;
 
 import java.util.Iterator;
 import java.util.Set;
+import org.modeshape.jcr.cache.document.GroupCommitter;
 import org.modeshape.jcr.cache.document.TransactionalWorkspaceCaches;
 import org.modeshape.jcr.txn.Transactions;
 import org.modeshape.jcr.value.Name;
@@ -57,6 +58,13 @@ public interface SessionEnvironment {
      */
     boolean indexingClustered();
 
+    /**
+     * Get the component that coalesces the concurrent saves of different sessions into a single transaction.
+     * 
+     * @return the group committer, or null if each save should use its own transaction
+     */
+    GroupCommitter getGroupCommitter();
+
     public static interface Monitor {
         /**
          * Add to the index the information about a node.
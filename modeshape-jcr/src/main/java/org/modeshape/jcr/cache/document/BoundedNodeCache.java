@@ -0,0 +1,737 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ * See the AUTHORS.txt file in the distribution for a full listing of 
+ * individual contributors.
+ *
+ * ModeShape is free software. Unless otherwise indicated, all code in ModeShape
+ * is licensed to you under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ * 
+ * ModeShape is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.modeshape.jcr.cache.document;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+import org.infinispan.schematic.document.Binary;
+import org.infinispan.schematic.document.Bson;
+import org.infinispan.schematic.document.Document;
+import org.modeshape.common.annotation.GuardedBy;
+import org.modeshape.common.annotation.ThreadSafe;
+import org.modeshape.common.logging.Logger;
+import org.modeshape.common.util.CheckArg;
+import org.modeshape.jcr.cache.CachedNode;
+import org.modeshape.jcr.cache.NodeKey;
+
+/**
+ * A {@link ConcurrentMap} of {@link CachedNode} instances that can be used by a {@link WorkspaceCache}, and that keeps the total
+ * estimated size of the nodes it holds below a fixed number of bytes.
+ * <p>
+ * The eviction policy is W-TinyLFU: new nodes enter a small LRU "window" segment, and nodes leaving the window are only admitted
+ * to the main segment when they have been requested more often than the node the main segment would have to evict to make room.
+ * The request frequencies are tracked approximately in a small count-min sketch that periodically halves its counters, so that
+ * nodes that were popular long ago do not stay in the cache forever. The main segment is itself split into a "probation" segment
+ * and a "protected" segment holding the nodes that have been requested again after being admitted. This keeps one-off scans
+ * (e.g., a query or export that touches every node once) from flushing the frequently-used nodes out of the cache.
+ * </p>
+ * <p>
+ * Hits do not block: a hit only records the node in a small, lossy buffer that is drained by whichever thread next obtains the
+ * eviction lock. All other operations obtain the eviction lock, but those are cache misses that have already paid to read the
+ * node's document from the {@link DocumentStore}.
+ * </p>
+ * <p>
+ * When an off-heap size is given, evicted {@link LazyCachedNode} instances are not discarded but their documents are serialized
+ * into BSON and kept in direct (off-heap) {@link ByteBuffer buffers}, up to that number of bytes. A request for such a node
+ * rebuilds the node from the BSON and moves it back into the heap segments, which is far cheaper than reading it from the store
+ * and adds nothing to the heap that the garbage collector must trace. The off-heap tier is also maintained in LRU order. Note
+ * that the memory of a direct buffer is only released once the (small) buffer object is garbage collected, so the JVM's
+ * <code>-XX:MaxDirectMemorySize</code> should allow some headroom above the configured off-heap size.
+ * </p>
+ */
+@ThreadSafe
+public class BoundedNodeCache extends AbstractMap<NodeKey, CachedNode> implements ConcurrentMap<NodeKey, CachedNode> {
+
+    /**
+     * The estimated weight in bytes of nodes whose size cannot be estimated, and the average node weight used to size the
+     * frequency sketch.
+     */
+    public static final long DEFAULT_NODE_WEIGHT = 1024L;
+
+    protected static final Logger LOGGER = Logger.getLogger(BoundedNodeCache.class);
+
+    private static final int READ_BUFFER_SIZE = 128;
+    private static final int READ_BUFFER_DRAIN_THRESHOLD = READ_BUFFER_SIZE / 4;
+    private static final int WINDOW_PERCENTAGE = 1;
+    private static final int PROTECTED_PERCENTAGE = 80;
+
+    private static enum Segment {
+        WINDOW,
+        PROBATION,
+        PROTECTED;
+    }
+
+    private final long maximumWeight;
+    private final long windowMaximumWeight;
+    private final long mainMaximumWeight;
+    private final long protectedMaximumWeight;
+    private final NodeCacheMonitor monitor;
+    private final ConcurrentHashMap<NodeKey, Entry> data = new ConcurrentHashMap<NodeKey, Entry>();
+    private final Queue<Entry> readBuffer = new ArrayBlockingQueue<Entry>(READ_BUFFER_SIZE);
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    @GuardedBy( "evictionLock" )
+    private final LinkedHashMap<NodeKey, Entry> window = new LinkedHashMap<NodeKey, Entry>(16, 0.75f, true);
+    @GuardedBy( "evictionLock" )
+    private final LinkedHashMap<NodeKey, Entry> probation = new LinkedHashMap<NodeKey, Entry>(16, 0.75f, true);
+    @GuardedBy( "evictionLock" )
+    private final LinkedHashMap<NodeKey, Entry> protectedSegment = new LinkedHashMap<NodeKey, Entry>(16, 0.75f, true);
+    @GuardedBy( "evictionLock" )
+    private final FrequencySketch sketch;
+    @GuardedBy( "evictionLock" )
+    private final OffHeapTier offHeap;
+    @GuardedBy( "evictionLock" )
+    private long windowWeight;
+    @GuardedBy( "evictionLock" )
+    private long probationWeight;
+    @GuardedBy( "evictionLock" )
+    private long protectedWeight;
+
+    /**
+     * Create a cache that keeps the estimated size of its nodes below the given number of bytes, and that has no off-heap tier.
+     * 
+     * @param maximumWeight the maximum total estimated size in bytes of the nodes held on the heap; must be positive
+     * @param monitor the monitor that should be informed of hits, misses and evictions; may be null
+     */
+    public BoundedNodeCache( long maximumWeight,
+                             NodeCacheMonitor monitor ) {
+        this(maximumWeight, 0L, monitor);
+    }
+
+    /**
+     * Create a cache that keeps the estimated size of its nodes below the given number of bytes, and that keeps the BSON
+     * documents of evicted nodes outside of the heap.
+     * 
+     * @param maximumWeight the maximum total estimated size in bytes of the nodes held on the heap; must be positive
+     * @param offHeapSize the maximum number of bytes of BSON documents held outside of the heap, or 0 if evicted nodes should be
+     *        discarded
+     * @param monitor the monitor that should be informed of hits, misses and evictions; may be null
+     */
+    public BoundedNodeCache( long maximumWeight,
+                             long offHeapSize,
+                             NodeCacheMonitor monitor ) {
+        CheckArg.isPositive(maximumWeight, "maximumWeight");
+        CheckArg.isNonNegative(offHeapSize, "offHeapSize");
+        this.maximumWeight = maximumWeight;
+        this.windowMaximumWeight = Math.max(1L, maximumWeight * WINDOW_PERCENTAGE / 100);
+        this.mainMaximumWeight = Math.max(1L, maximumWeight - windowMaximumWeight);
+        this.protectedMaximumWeight = mainMaximumWeight * PROTECTED_PERCENTAGE / 100;
+        this.monitor = monitor != null ? monitor : NodeCacheMonitor.NONE;
+        this.sketch = new FrequencySketch(maximumWeight / DEFAULT_NODE_WEIGHT);
+        this.offHeap = offHeapSize > 0L ? new OffHeapTier(offHeapSize) : null;
+    }
+
+    /**
+     * Get the maximum total estimated size in bytes of the nodes held on the heap.
+     * 
+     * @return the maximum weight; always positive
+     */
+    public long getMaximumWeight() {
+        return maximumWeight;
+    }
+
+    /**
+     * Get the current total estimated size in bytes of the nodes held on the heap.
+     * 
+     * @return the weight of the nodes in this cache; never negative
+     */
+    public long getWeight() {
+        evictionLock.lock();
+        try {
+            drainReadBuffer();
+            return windowWeight + probationWeight + protectedWeight;
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Get the number of nodes whose documents are held outside of the heap.
+     * 
+     * @return the number of nodes in the off-heap tier; 0 if there is no off-heap tier
+     */
+    public int getOffHeapCount() {
+        if (offHeap == null) return 0;
+        evictionLock.lock();
+        try {
+            return offHeap.buffers.size();
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    @Override
+    public CachedNode get( Object key ) {
+        Entry entry = data.get(key);
+        if (entry != null) {
+            recordRead(entry);
+            monitor.hit();
+            return entry.node;
+        }
+        if (offHeap != null && key instanceof NodeKey) {
+            CachedNode node = reload((NodeKey)key);
+            if (node != null) {
+                monitor.hit();
+                return node;
+            }
+        }
+        monitor.miss();
+        return null;
+    }
+
+    @Override
+    public boolean containsKey( Object key ) {
+        if (data.containsKey(key)) return true;
+        if (offHeap == null) return false;
+        evictionLock.lock();
+        try {
+            return offHeap.buffers.containsKey(key);
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        return data.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return data.isEmpty();
+    }
+
+    @Override
+    public CachedNode put( NodeKey key,
+                           CachedNode node ) {
+        CheckArg.isNotNull(key, "key");
+        CheckArg.isNotNull(node, "node");
+        evictionLock.lock();
+        try {
+            Entry old = removeEntry(key);
+            addEntry(key, node);
+            return old != null ? old.node : null;
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    @Override
+    public CachedNode putIfAbsent( NodeKey key,
+                                   CachedNode node ) {
+        CheckArg.isNotNull(key, "key");
+        CheckArg.isNotNull(node, "node");
+        evictionLock.lock();
+        try {
+            Entry existing = data.get(key);
+            if (existing != null) return existing.node;
+            // A node that was evicted to the off-heap tier is replaced by the supplied (and probably newer) node ...
+            if (offHeap != null) offHeap.discard(key);
+            addEntry(key, node);
+            return null;
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    @Override
+    public CachedNode replace( NodeKey key,
+                               CachedNode node ) {
+        CheckArg.isNotNull(key, "key");
+        CheckArg.isNotNull(node, "node");
+        evictionLock.lock();
+        try {
+            if (!data.containsKey(key)) return null;
+            Entry old = removeEntry(key);
+            addEntry(key, node);
+            return old.node;
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean replace( NodeKey key,
+                            CachedNode oldNode,
+                            CachedNode newNode ) {
+        CheckArg.isNotNull(key, "key");
+        CheckArg.isNotNull(newNode, "newNode");
+        evictionLock.lock();
+        try {
+            Entry existing = data.get(key);
+            if (existing == null || !existing.node.equals(oldNode)) return false;
+            removeEntry(key);
+            addEntry(key, newNode);
+            return true;
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    @Override
+    public CachedNode remove( Object key ) {
+        if (!(key instanceof NodeKey)) return null;
+        evictionLock.lock();
+        try {
+            Entry old = removeEntry((NodeKey)key);
+            return old != null ? old.node : null;
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean remove( Object key,
+                           Object node ) {
+        if (!(key instanceof NodeKey) || node == null) return false;
+        evictionLock.lock();
+        try {
+            Entry existing = data.get(key);
+            if (existing == null || !existing.node.equals(node)) return false;
+            removeEntry((NodeKey)key);
+            return true;
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        evictionLock.lock();
+        try {
+            for (Entry entry : data.values()) {
+                entry.segment = null;
+            }
+            data.clear();
+            readBuffer.clear();
+            window.clear();
+            probation.clear();
+            protectedSegment.clear();
+            windowWeight = 0L;
+            probationWeight = 0L;
+            protectedWeight = 0L;
+            if (offHeap != null) offHeap.clear();
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    @Override
+    public Set<Map.Entry<NodeKey, CachedNode>> entrySet() {
+        return new AbstractSet<Map.Entry<NodeKey, CachedNode>>() {
+            @Override
+            public Iterator<Map.Entry<NodeKey, CachedNode>> iterator() {
+                final Iterator<Entry> iter = data.values().iterator();
+                return new Iterator<Map.Entry<NodeKey, CachedNode>>() {
+                    private Entry last;
+
+                    @Override
+                    public boolean hasNext() {
+                        return iter.hasNext();
+                    }
+
+                    @Override
+                    public Map.Entry<NodeKey, CachedNode> next() {
+                        last = iter.next();
+                        return new SimpleImmutableEntry<NodeKey, CachedNode>(last.key, last.node);
+                    }
+
+                    @Override
+                    public void remove() {
+                        if (last == null) throw new IllegalStateException();
+                        BoundedNodeCache.this.remove(last.key, last.node);
+                        last = null;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return data.size();
+            }
+        };
+    }
+
+    private void recordRead( Entry entry ) {
+        // The buffer is lossy: if it is full, this read will simply not affect the eviction order ...
+        readBuffer.offer(entry);
+        if (readBuffer.size() >= READ_BUFFER_DRAIN_THRESHOLD && evictionLock.tryLock()) {
+            try {
+                drainReadBuffer();
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+    }
+
+    private CachedNode reload( NodeKey key ) {
+        evictionLock.lock();
+        try {
+            // Another thread may have reloaded the node while we were waiting for the lock ...
+            Entry existing = data.get(key);
+            if (existing != null) return existing.node;
+            CachedNode node = offHeap.remove(key);
+            if (node != null) addEntry(key, node);
+            return node;
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    @GuardedBy( "evictionLock" )
+    private void drainReadBuffer() {
+        Entry entry = null;
+        while ((entry = readBuffer.poll()) != null) {
+            if (entry.segment == null) continue; // already removed
+            sketch.increment(entry.key);
+            switch (entry.segment) {
+                case WINDOW:
+                    window.get(entry.key);
+                    break;
+                case PROBATION:
+                    // A second request promotes the node to the protected segment ...
+                    probation.remove(entry.key);
+                    probationWeight -= entry.weight;
+                    entry.segment = Segment.PROTECTED;
+                    protectedSegment.put(entry.key, entry);
+                    protectedWeight += entry.weight;
+                    while (protectedWeight > protectedMaximumWeight && protectedSegment.size() > 1) {
+                        Entry demoted = eldest(protectedSegment);
+                        protectedSegment.remove(demoted.key);
+                        protectedWeight -= demoted.weight;
+                        demoted.segment = Segment.PROBATION;
+                        probation.put(demoted.key, demoted);
+                        probationWeight += demoted.weight;
+                    }
+                    break;
+                case PROTECTED:
+                    protectedSegment.get(entry.key);
+                    break;
+            }
+        }
+    }
+
+    @GuardedBy( "evictionLock" )
+    private void addEntry( NodeKey key,
+                           CachedNode node ) {
+        drainReadBuffer();
+        Entry entry = new Entry(key, node, weigh(node));
+        data.put(key, entry);
+        sketch.increment(key);
+        entry.segment = Segment.WINDOW;
+        window.put(key, entry);
+        windowWeight += entry.weight;
+        evict();
+    }
+
+    @GuardedBy( "evictionLock" )
+    private Entry removeEntry( NodeKey key ) {
+        if (offHeap != null) offHeap.discard(key);
+        Entry entry = data.remove(key);
+        if (entry != null) unlink(entry);
+        return entry;
+    }
+
+    @GuardedBy( "evictionLock" )
+    private void unlink( Entry entry ) {
+        if (entry.segment == null) return;
+        switch (entry.segment) {
+            case WINDOW:
+                window.remove(entry.key);
+                windowWeight -= entry.weight;
+                break;
+            case PROBATION:
+                probation.remove(entry.key);
+                probationWeight -= entry.weight;
+                break;
+            case PROTECTED:
+                protectedSegment.remove(entry.key);
+                protectedWeight -= entry.weight;
+                break;
+        }
+        entry.segment = null;
+    }
+
+    @GuardedBy( "evictionLock" )
+    private void evict() {
+        // Each node leaving the window must compete with the main segment's LRU victim for admission ...
+        while (windowWeight > windowMaximumWeight && window.size() > 1) {
+            Entry candidate = eldest(window);
+            window.remove(candidate.key);
+            windowWeight -= candidate.weight;
+            candidate.segment = null;
+            boolean admit = true;
+            while (probationWeight + protectedWeight + candidate.weight > mainMaximumWeight) {
+                Entry victim = !probation.isEmpty() ? eldest(probation) : eldest(protectedSegment);
+                if (victim == null) break;
+                if (sketch.frequency(candidate.key) <= sketch.frequency(victim.key)) {
+                    admit = false;
+                    break;
+                }
+                evict(victim);
+            }
+            if (admit) {
+                candidate.segment = Segment.PROBATION;
+                probation.put(candidate.key, candidate);
+                probationWeight += candidate.weight;
+            } else {
+                data.remove(candidate.key, candidate);
+                evicted(candidate);
+            }
+        }
+        // Nodes heavier than the window can still leave the whole cache over its limit ...
+        while (windowWeight + probationWeight + protectedWeight > maximumWeight) {
+            Entry victim = eldest(probation);
+            if (victim == null) victim = eldest(protectedSegment);
+            if (victim == null) victim = eldest(window);
+            if (victim == null) break;
+            evict(victim);
+        }
+    }
+
+    @GuardedBy( "evictionLock" )
+    private void evict( Entry victim ) {
+        data.remove(victim.key, victim);
+        unlink(victim);
+        evicted(victim);
+    }
+
+    @GuardedBy( "evictionLock" )
+    private void evicted( Entry entry ) {
+        if (offHeap != null) {
+            // The node only leaves the cache if it cannot be kept off-heap ...
+            offHeap.store(entry.key, entry.node);
+        } else {
+            monitor.evicted(1);
+        }
+    }
+
+    private static Entry eldest( LinkedHashMap<NodeKey, Entry> segment ) {
+        Iterator<Entry> iter = segment.values().iterator();
+        return iter.hasNext() ? iter.next() : null;
+    }
+
+    /**
+     * Estimate the number of bytes of heap used by the supplied node.
+     * 
+     * @param node the node; may not be null
+     * @return the estimated weight in bytes; always positive
+     */
+    protected long weigh( CachedNode node ) {
+        if (node instanceof LazyCachedNode) {
+            Document document = ((LazyCachedNode)node).documentIfLoaded();
+            if (document != null) return 64L + estimateSize(document);
+        }
+        return DEFAULT_NODE_WEIGHT;
+    }
+
+    private static long estimateSize( Object value ) {
+        if (value instanceof Document) {
+            // This includes arrays ...
+            long size = 48L;
+            for (Document.Field field : ((Document)value).fields()) {
+                size += 40L + 2L * field.getName().length() + estimateSize(field.getValue());
+            }
+            return size;
+        }
+        if (value instanceof String) return 40L + 2L * ((String)value).length();
+        if (value instanceof Binary) return 24L + ((Binary)value).length();
+        return 16L;
+    }
+
+    private static final class Entry {
+        private final NodeKey key;
+        private final CachedNode node;
+        private final long weight;
+        @GuardedBy( "evictionLock" )
+        private Segment segment;
+
+        Entry( NodeKey key,
+              CachedNode node,
+              long weight ) {
+            this.key = key;
+            this.node = node;
+            this.weight = weight;
+        }
+    }
+
+    /**
+     * A count-min sketch of 4-bit counters that estimates how often each key has been requested. Each 64-bit word holds 16
+     * counters, and each key maps to one counter in each of 4 words. Once the number of increments reaches 10 times the number
+     * of words, all counters are halved so that the estimates favor recent requests.
+     */
+    static final class FrequencySketch {
+        private static final long[] SEEDS = {0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL,
+            0xcbf29ce484222325L};
+        private static final long RESET_MASK = 0x7777777777777777L;
+        private static final int MAXIMUM_TABLE_SIZE = 1 << 24;
+
+        private final long[] table;
+        private final int tableMask;
+        private final int sampleSize;
+        private int additions;
+
+        FrequencySketch( long expectedEntries ) {
+            int size = 64;
+            while (size < expectedEntries && size < MAXIMUM_TABLE_SIZE) {
+                size <<= 1;
+            }
+            this.table = new long[size];
+            this.tableMask = size - 1;
+            this.sampleSize = 10 * size;
+        }
+
+        int frequency( Object key ) {
+            int hash = spread(key.hashCode());
+            int frequency = Integer.MAX_VALUE;
+            for (int i = 0; i != 4; ++i) {
+                int count = (int)((table[indexOf(hash, i)] >>> offsetOf(hash, i)) & 0xfL);
+                frequency = Math.min(frequency, count);
+            }
+            return frequency;
+        }
+
+        void increment( Object key ) {
+            int hash = spread(key.hashCode());
+            boolean added = false;
+            for (int i = 0; i != 4; ++i) {
+                int index = indexOf(hash, i);
+                int offset = offsetOf(hash, i);
+                long mask = 0xfL << offset;
+                if ((table[index] & mask) != mask) {
+                    table[index] += 1L << offset;
+                    added = true;
+                }
+            }
+            if (added && ++additions == sampleSize) {
+                for (int i = 0; i != table.length; ++i) {
+                    table[i] = (table[i] >>> 1) & RESET_MASK;
+                }
+                additions /= 2;
+            }
+        }
+
+        private int indexOf( int hash,
+                             int i ) {
+            long h = (hash + SEEDS[i]) * SEEDS[i];
+            h += h >>> 32;
+            return (int)h & tableMask;
+        }
+
+        private static int offsetOf( int hash,
+                                     int i ) {
+            return ((hash >>> (i << 3)) & 0xf) << 2;
+        }
+
+        private static int spread( int x ) {
+            x = ((x >>> 16) ^ x) * 0x45d9f3b;
+            x = ((x >>> 16) ^ x) * 0x45d9f3b;
+            return (x >>> 16) ^ x;
+        }
+    }
+
+    /**
+     * The LRU store of BSON documents kept in direct buffers, for nodes that were evicted from the heap segments.
+     */
+    private final class OffHeapTier {
+        private final long capacity;
+        private final LinkedHashMap<NodeKey, ByteBuffer> buffers = new LinkedHashMap<NodeKey, ByteBuffer>(16, 0.75f, true);
+        private long size;
+
+        OffHeapTier( long capacity ) {
+            this.capacity = capacity;
+        }
+
+        void store( NodeKey key,
+                    CachedNode node ) {
+            Document document = node instanceof LazyCachedNode ? ((LazyCachedNode)node).documentIfLoaded() : null;
+            if (document == null) {
+                monitor.evicted(1);
+                return;
+            }
+            byte[] bytes = null;
+            try {
+                bytes = Bson.write(document);
+            } catch (IOException e) {
+                LOGGER.debug(e, "Unable to serialize the document for node '{0}'; discarding it from the cache", key);
+                monitor.evicted(1);
+                return;
+            }
+            if (bytes.length > capacity) {
+                monitor.evicted(1);
+                return;
+            }
+            ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+            buffer.put(bytes);
+            buffer.flip();
+            discard(key);
+            buffers.put(key, buffer);
+            size += bytes.length;
+            int evicted = 0;
+            while (size > capacity) {
+                Iterator<Map.Entry<NodeKey, ByteBuffer>> iter = buffers.entrySet().iterator();
+                if (!iter.hasNext()) break;
+                size -= iter.next().getValue().capacity();
+                iter.remove();
+                ++evicted;
+            }
+            if (evicted != 0) monitor.evicted(evicted);
+        }
+
+        CachedNode remove( NodeKey key ) {
+            ByteBuffer buffer = buffers.remove(key);
+            if (buffer == null) return null;
+            size -= buffer.capacity();
+            byte[] bytes = new byte[buffer.capacity()];
+            buffer.duplicate().get(bytes);
+            try {
+                return new LazyCachedNode(key, Bson.read(new ByteArrayInputStream(bytes)));
+            } catch (IOException e) {
+                LOGGER.debug(e, "Unable to read the off-heap document for node '{0}'; it will be read from the store", key);
+                return null;
+            }
+        }
+
+        void discard( NodeKey key ) {
+            ByteBuffer buffer = buffers.remove(key);
+            if (buffer != null) size -= buffer.capacity();
+        }
+
+        void clear() {
+            buffers.clear();
+            size = 0L;
+        }
+    }
+}
@@ -0,0 +1,514 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ * See the AUTHORS.txt file in the distribution for a full listing of 
+ * individual contributors.
+ *
+ * ModeShape is free software. Unless otherwise indicated, all code in ModeShape
+ * is licensed to you under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ * 
+ * ModeShape is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.modeshape.jcr.cache.document;
+
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import org.infinispan.schematic.Schematic;
+import org.infinispan.schematic.SchematicEntry;
+import org.infinispan.schematic.document.Document;
+import org.infinispan.schematic.document.EditableDocument;
+import org.modeshape.common.SystemFailureException;
+import org.modeshape.common.annotation.NotThreadSafe;
+import org.modeshape.common.logging.Logger;
+import org.modeshape.common.util.CheckArg;
+import org.modeshape.jcr.ExecutionContext;
+import org.modeshape.jcr.JcrI18n;
+import org.modeshape.jcr.cache.CachedNode;
+import org.modeshape.jcr.cache.CachedNode.ReferenceType;
+import org.modeshape.jcr.cache.DocumentAlreadyExistsException;
+import org.modeshape.jcr.cache.DocumentNotFoundException;
+import org.modeshape.jcr.cache.NodeKey;
+import org.modeshape.jcr.cache.NodeNotFoundException;
+import org.modeshape.jcr.cache.PathCache;
+import org.modeshape.jcr.cache.change.RecordingChanges;
+import org.modeshape.jcr.cache.document.SessionNode.ReferrerChanges;
+import org.modeshape.jcr.txn.Transactions;
+import org.modeshape.jcr.txn.Transactions.Transaction;
+import org.modeshape.jcr.value.BinaryKey;
+import org.modeshape.jcr.value.Name;
+import org.modeshape.jcr.value.Path;
+import org.modeshape.jcr.value.Property;
+import org.modeshape.jcr.value.Reference;
+import org.modeshape.jcr.value.basic.NodeKeyReference;
+import org.modeshape.jcr.value.basic.StringReference;
+import org.modeshape.jcr.value.basic.UuidReference;
+
+/**
+ * A component that writes large numbers of new nodes directly into a workspace's {@link DocumentStore}, bypassing the per-node
+ * overhead of a {@link WritableSessionCache}. The node documents are built with the workspace's {@link DocumentTranslator} and
+ * are written in batches, each within a single transaction that also records a checkpoint document with the number of nodes
+ * loaded so far.
+ * <p>
+ * The keys of the loaded nodes are derived from the load identifier and the position of the node within the load, so that a
+ * failed load can be resumed by creating a new loader with the same load identifier and adding the same sequence of nodes: the
+ * nodes that were already written are simply skipped.
+ * </p>
+ * <p>
+ * Every loaded node is placed below the node at which the load is rooted: the parent of each new node must be that node, an
+ * existing node below it, or a node added by the load. The referrers of the nodes referenced by REFERENCE and WEAKREFERENCE
+ * properties of the new nodes are updated in the same batch.
+ * </p>
+ * <p>
+ * Loaded nodes are not indexed, and events are only recorded if requested; callers are expected to index the content below the
+ * root of the load in a single pass once the load is {@link #finish() finished}.
+ * </p>
+ */
+@NotThreadSafe
+public final class BulkNodeLoader {
+
+    private static final Logger LOGGER = Logger.getLogger(BulkNodeLoader.class);
+
+    protected static final String CHECKPOINT_KEY_PREFIX = "bulkload:";
+
+    protected static final class FieldName {
+        public static final String LOAD_ID = "loadId";
+        public static final String COUNT = "count";
+    }
+
+    private final WorkspaceCache workspaceCache;
+    private final Transactions txns;
+    private final ExecutionContext context;
+    private final NodeKey loadRootKey;
+    private final String loadId;
+    private final String checkpointKey;
+    private final int batchSize;
+    private final boolean generateEvents;
+    private final long checkpointedCount;
+    private long count;
+    private long writtenCount;
+    private final Map<NodeKey, EditableDocument> newDocuments = new LinkedHashMap<NodeKey, EditableDocument>();
+    private final Map<NodeKey, Map<Name, Property>> newProperties = new HashMap<NodeKey, Map<Name, Property>>();
+    private final Map<NodeKey, MutableChildReferences> appendedByParent = new LinkedHashMap<NodeKey, MutableChildReferences>();
+    private final Map<NodeKey, Path> newPaths = new HashMap<NodeKey, Path>();
+    private final Map<NodeKey, ReferrerChanges> referrerChanges = new LinkedHashMap<NodeKey, ReferrerChanges>();
+    private final Set<NodeKey> parentsWithinLoad = new HashSet<NodeKey>();
+    private RecordingChanges changes;
+    private PathCache paths;
+    private boolean closed;
+
+    /**
+     * Create a loader that writes new nodes into the supplied workspace below the given node.
+     * 
+     * @param workspaceCache the cache for the workspace into which the nodes are to be loaded; may not be null
+     * @param txns the transactions used to write each batch; may not be null
+     * @param context the context of the user performing the load; may not be null
+     * @param loadRootKey the key of the existing node that is the default parent of loaded nodes; may not be null
+     * @param loadId the identifier of the load; may not be null
+     * @param batchSize the maximum number of nodes written in each batch; must be positive
+     * @param generateEvents true if the changes should be recorded and published to the workspace's listeners, or false if only
+     *        the workspace cache should be purged of the changed nodes
+     */
+    public BulkNodeLoader( WorkspaceCache workspaceCache,
+                           Transactions txns,
+                           ExecutionContext context,
+                           NodeKey loadRootKey,
+                           String loadId,
+                           int batchSize,
+                           boolean generateEvents ) {
+        CheckArg.isNotNull(workspaceCache, "workspaceCache");
+        CheckArg.isNotNull(txns, "txns");
+        CheckArg.isNotNull(context, "context");
+        CheckArg.isNotNull(loadRootKey, "loadRootKey");
+        CheckArg.isNotEmpty(loadId, "loadId");
+        CheckArg.isPositive(batchSize, "batchSize");
+        this.workspaceCache = workspaceCache;
+        this.txns = txns;
+        this.context = context;
+        this.loadRootKey = loadRootKey;
+        this.loadId = loadId;
+        this.checkpointKey = CHECKPOINT_KEY_PREFIX + loadRootKey.getWorkspaceKey() + ":" + loadId;
+        this.batchSize = batchSize;
+        this.generateEvents = generateEvents;
+        SchematicEntry checkpoint = workspaceCache.documentStore().get(checkpointKey);
+        this.checkpointedCount = checkpoint != null ? checkpoint.getContentAsDocument().getLong(FieldName.COUNT, 0L) : 0L;
+        this.writtenCount = this.checkpointedCount;
+        if (this.checkpointedCount > 0L) {
+            LOGGER.debug("Resuming bulk load '{0}' after {1} previously loaded nodes", loadId, checkpointedCount);
+        }
+    }
+
+    /**
+     * Get the identifier of this load.
+     * 
+     * @return the load identifier; never null
+     */
+    public String getLoadId() {
+        return loadId;
+    }
+
+    /**
+     * Get the number of nodes that were written by prior loads with the same identifier.
+     * 
+     * @return the number of nodes written before this loader was created
+     */
+    public long getCheckpointedNodeCount() {
+        return checkpointedCount;
+    }
+
+    /**
+     * Get the number of nodes added to this loader, including those that were skipped because they were written by prior loads.
+     * 
+     * @return the number of added nodes
+     */
+    public long getNodeCount() {
+        return count;
+    }
+
+    /**
+     * Get the key that will be assigned to the next node {@link #addNode(NodeKey, Name, Map) added} to this loader.
+     * 
+     * @return the key of the next node; never null
+     */
+    public NodeKey nextNodeKey() {
+        return keyFor(count);
+    }
+
+    /**
+     * Determine whether the node with the supplied key was added to this loader but has not yet been written.
+     * 
+     * @param key the node key; may not be null
+     * @return true if the node is in the current batch, or false otherwise
+     */
+    public boolean isUnwritten( NodeKey key ) {
+        return newDocuments.containsKey(key);
+    }
+
+    /**
+     * Add a new node, writing the current batch if it is full.
+     * 
+     * @param parentKey the key of the parent, which is either the root of the load, an existing node below the root of the load,
+     *        or a node previously added to this loader; or null if the parent is the root of the load
+     * @param name the name of the new node; may not be null
+     * @param properties the properties of the new node, including the primary type; may not be null
+     * @return the key of the new node; never null
+     * @throws NodeNotFoundException if the parent node or a node referenced by a REFERENCE property does not exist
+     * @throws IllegalArgumentException if the parent node is not the root of the load or below it
+     * @throws DocumentAlreadyExistsException if a node with the same key already exists when the batch is written
+     */
+    public NodeKey addNode( NodeKey parentKey,
+                            Name name,
+                            Map<Name, Property> properties ) {
+        CheckArg.isNotNull(name, "name");
+        CheckArg.isNotNull(properties, "properties");
+        checkNotClosed();
+        if (parentKey == null) parentKey = loadRootKey;
+        NodeKey key = keyFor(count++);
+        if (count <= checkpointedCount) {
+            // This node was written by a prior attempt of this load ...
+            return key;
+        }
+
+        boolean newParent = newDocuments.containsKey(parentKey);
+        if (!newParent) {
+            checkWithinLoad(parentKey);
+        }
+        recordReferrers(key, properties);
+
+        DocumentTranslator translator = workspaceCache.translator();
+        EditableDocument doc = Schematic.newDocument();
+        translator.setKey(doc, key);
+        translator.setParents(doc, parentKey, null, null);
+        newDocuments.put(key, doc);
+        newProperties.put(key, properties);
+
+        MutableChildReferences appended = appendedByParent.get(parentKey);
+        if (appended == null) {
+            appended = new MutableChildReferences();
+            appendedByParent.put(parentKey, appended);
+        }
+        if (generateEvents) {
+            recordCreated(key, parentKey, newParent, name, appended, properties);
+        }
+        appended.append(key, name);
+
+        if (newDocuments.size() >= batchSize) {
+            checkpoint();
+        }
+        return key;
+    }
+
+    /**
+     * Write all of the nodes added since the last batch, and record the checkpoint in the same transaction.
+     */
+    public void checkpoint() {
+        checkNotClosed();
+        writeBatch(false);
+    }
+
+    /**
+     * Write all of the remaining nodes, and remove the checkpoint in the same transaction. This loader may not be used after this
+     * method is called, or after any batch could not be written.
+     */
+    public void finish() {
+        checkNotClosed();
+        writeBatch(true);
+        closed = true;
+    }
+
+    /**
+     * Verify that the existing node with the supplied key is the root of the load or one of its descendants, so that a load can
+     * never add nodes elsewhere in the workspace (where they would neither be covered by the permission check on the root of the
+     * load nor be reindexed when the load is finished).
+     * 
+     * @param parentKey the key of the existing parent; may not be null
+     * @throws NodeNotFoundException if the parent node does not exist
+     * @throws IllegalArgumentException if the parent node is not the root of the load or below it
+     */
+    private void checkWithinLoad( NodeKey parentKey ) {
+        if (parentKey.equals(loadRootKey) || parentsWithinLoad.contains(parentKey)) return;
+        CachedNode node = workspaceCache.getNode(parentKey);
+        if (node == null) throw new NodeNotFoundException(parentKey);
+        List<NodeKey> visited = new ArrayList<NodeKey>();
+        while (node != null) {
+            visited.add(node.getKey());
+            NodeKey ancestorKey = node.getParentKey(workspaceCache);
+            if (ancestorKey == null) break;
+            if (ancestorKey.equals(loadRootKey) || parentsWithinLoad.contains(ancestorKey)) {
+                parentsWithinLoad.addAll(visited);
+                return;
+            }
+            node = workspaceCache.getNode(ancestorKey);
+        }
+        throw new IllegalArgumentException(JcrI18n.bulkLoadParentIsNotWithinLoad.text(parentKey, loadRootKey, loadId));
+    }
+
+    /**
+     * Record the new node as a referrer of each node referenced by its REFERENCE and WEAKREFERENCE properties.
+     * 
+     * @param key the key of the new node; may not be null
+     * @param properties the properties of the new node; may not be null
+     * @throws NodeNotFoundException if a node referenced by a REFERENCE property does not exist
+     */
+    private void recordReferrers( NodeKey key,
+                                  Map<Name, Property> properties ) {
+        for (Property property : properties.values()) {
+            if (!property.isReference()) continue;
+            for (Iterator<?> iter = property.getValues(); iter.hasNext();) {
+                Reference reference = (Reference)iter.next();
+                NodeKey referredKey = keyFor(reference);
+                if (!newDocuments.containsKey(referredKey) && !referrerChanges.containsKey(referredKey)
+                    && !workspaceCache.documentStore().containsKey(referredKey.toString())) {
+                    // Weak references may refer to nodes that don't exist ...
+                    if (reference.isWeak()) continue;
+                    throw new NodeNotFoundException(referredKey);
+                }
+                ReferrerChanges changes = referrerChanges.get(referredKey);
+                if (changes == null) {
+                    changes = new ReferrerChanges();
+                    referrerChanges.put(referredKey, changes);
+                }
+                if (reference.isWeak()) {
+                    changes.addWeakReferrer(key);
+                } else {
+                    changes.addStrongReferrer(key);
+                }
+            }
+        }
+    }
+
+    private NodeKey keyFor( Reference reference ) {
+        if (reference instanceof NodeKeyReference) {
+            return ((NodeKeyReference)reference).getNodeKey();
+        } else if (reference instanceof StringReference) {
+            return new NodeKey(reference.getString());
+        } else if (reference instanceof UuidReference) {
+            return loadRootKey.withId(reference.getString());
+        }
+        throw new IllegalArgumentException("Unknown reference type: " + reference.getClass().getSimpleName());
+    }
+
+    protected final NodeKey keyFor( long position ) {
+        try {
+            byte[] bytes = (loadId + "/" + position).getBytes("UTF-8");
+            return loadRootKey.withId(UUID.nameUUIDFromBytes(bytes).toString());
+        } catch (UnsupportedEncodingException e) {
+            // UTF-8 is always supported ...
+            throw new SystemFailureException(e);
+        }
+    }
+
+    private void recordCreated( NodeKey key,
+                                NodeKey parentKey,
+                                boolean newParent,
+                                Name name,
+                                MutableChildReferences appended,
+                                Map<Name, Property> properties ) {
+        if (changes == null) {
+            changes = new RecordingChanges(workspaceCache.getProcessKey(), workspaceCache.getRepositoryKey(),
+                                           workspaceCache.getWorkspaceName());
+            paths = new PathCache(workspaceCache);
+        }
+        Path parentPath = null;
+        int snsIndex = appended.getChildCount(name) + 1;
+        if (newParent) {
+            parentPath = newPaths.get(parentKey);
+        } else {
+            CachedNode parent = workspaceCache.getNode(parentKey);
+            if (parent == null) throw new NodeNotFoundException(parentKey);
+            parentPath = paths.getPath(parent);
+            snsIndex += parent.getChildReferences(workspaceCache).getChildCount(name);
+        }
+        Path path = context.getValueFactories().getPathFactory().create(parentPath, name, snsIndex);
+        newPaths.put(key, path);
+        changes.nodeCreated(key, parentKey, path, properties);
+    }
+
+    private void writeBatch( boolean removeCheckpoint ) {
+        if (newDocuments.isEmpty() && !removeCheckpoint) return;
+        DocumentStore documentStore = workspaceCache.documentStore();
+        DocumentTranslator translator = workspaceCache.translator();
+        Transaction txn = null;
+        try {
+            txn = txns.begin();
+
+            // Lock the existing parents and referenced nodes that are to be changed ...
+            Set<String> existingNodes = new HashSet<String>();
+            for (NodeKey parentKey : appendedByParent.keySet()) {
+                if (!newDocuments.containsKey(parentKey)) existingNodes.add(parentKey.toString());
+            }
+            for (NodeKey referredKey : referrerChanges.keySet()) {
+                if (!newDocuments.containsKey(referredKey)) existingNodes.add(referredKey.toString());
+            }
+            if (documentStore.updatesRequirePreparing() && !existingNodes.isEmpty()) {
+                if (!documentStore.prepareDocumentsForUpdate(existingNodes)) {
+                    throw new org.infinispan.util.concurrent.TimeoutException("Unable to acquire storage locks: "
+                                                                              + existingNodes);
+                }
+            }
+
+            // Set the properties on the new documents, which also records any references to binary values ...
+            Set<BinaryKey> unusedBinaryKeys = new HashSet<BinaryKey>();
+            for (Map.Entry<NodeKey, EditableDocument> entry : newDocuments.entrySet()) {
+                for (Property property : newProperties.get(entry.getKey()).values()) {
+                    translator.setProperty(entry.getValue(), property, unusedBinaryKeys);
+                }
+            }
+
+            // Append the new children to their parents ...
+            for (Map.Entry<NodeKey, MutableChildReferences> entry : appendedByParent.entrySet()) {
+                NodeKey parentKey = entry.getKey();
+                EditableDocument parentDoc = newDocuments.get(parentKey);
+                if (parentDoc == null) {
+                    SchematicEntry parentEntry = documentStore.get(parentKey.toString());
+                    if (parentEntry == null) throw new DocumentNotFoundException(parentKey.toString());
+                    parentDoc = parentEntry.editDocumentContent();
+                }
+                translator.changeChildren(parentDoc, null, entry.getValue());
+            }
+
+            // Record the new nodes as referrers of the nodes they reference ...
+            for (Map.Entry<NodeKey, ReferrerChanges> entry : referrerChanges.entrySet()) {
+                NodeKey referredKey = entry.getKey();
+                EditableDocument referredDoc = newDocuments.get(referredKey);
+                if (referredDoc == null) {
+                    SchematicEntry referredEntry = documentStore.get(referredKey.toString());
+                    if (referredEntry == null) {
+                        // The node was removed after the references to it were added ...
+                        if (!entry.getValue().getAddedReferrers(ReferenceType.STRONG).isEmpty()) {
+                            throw new DocumentNotFoundException(referredKey.toString());
+                        }
+                        continue;
+                    }
+                    referredDoc = referredEntry.editDocumentContent();
+                }
+                translator.changeReferrers(referredDoc, entry.getValue());
+            }
+
+            // Store the new documents ...
+            for (Map.Entry<NodeKey, EditableDocument> entry : newDocuments.entrySet()) {
+                String keyStr = entry.getKey().toString();
+                if (documentStore.storeDocument(keyStr, entry.getValue()) != null) {
+                    throw new DocumentAlreadyExistsException(keyStr);
+                }
+            }
+
+            // Record or remove the checkpoint ...
+            long newWrittenCount = writtenCount + newDocuments.size();
+            if (removeCheckpoint) {
+                documentStore.remove(checkpointKey);
+            } else {
+                Document checkpoint = Schematic.newDocument(FieldName.LOAD_ID, loadId, FieldName.COUNT, newWrittenCount);
+                documentStore.localStore().put(checkpointKey, checkpoint);
+            }
+
+            txn.commit();
+            LOGGER.debug("Bulk load '{0}' wrote {1} node(s); {2} node(s) loaded so far", loadId, newDocuments.size(),
+                         newWrittenCount);
+            writtenCount = newWrittenCount;
+        } catch (RuntimeException e) {
+            rollback(txn);
+            throw e;
+        } catch (Exception e) {
+            rollback(txn);
+            throw new SystemFailureException(e);
+        }
+
+        // The batch was committed, so update the workspace cache and notify the listeners ...
+        Set<NodeKey> changedExistingNodes = new HashSet<NodeKey>(appendedByParent.keySet());
+        changedExistingNodes.addAll(referrerChanges.keySet());
+        changedExistingNodes.removeAll(newDocuments.keySet());
+        if (changes != null) {
+            Set<NodeKey> changedNodes = new HashSet<NodeKey>(changedExistingNodes);
+            changedNodes.addAll(newDocuments.keySet());
+            changes.setChangedNodes(changedNodes);
+            changes.freeze(context.getSecurityContext().getUserName(), context.getData(),
+                           context.getValueFactories().getDateFactory().create());
+            workspaceCache.changed(changes);
+        } else {
+            workspaceCache.purge(changedExistingNodes);
+        }
+        newDocuments.clear();
+        newProperties.clear();
+        appendedByParent.clear();
+        newPaths.clear();
+        referrerChanges.clear();
+        parentsWithinLoad.clear();
+        changes = null;
+        paths = null;
+    }
+
+    private void rollback( Transaction txn ) {
+        // The batch was not written, so this loader can no longer be used; the load can be resumed with a new loader ...
+        closed = true;
+        if (txn == null) return;
+        try {
+            txn.rollback();
+        } catch (Exception e) {
+            LOGGER.debug(e, "Error while rolling back the transaction for bulk load '{0}'", loadId);
+        }
+    }
+
+    private void checkNotClosed() {
+        if (closed) throw new IllegalStateException("The bulk loader for '" + loadId + "' has been closed");
+    }
+}
@@ -0,0 +1,488 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ * See the AUTHORS.txt file in the distribution for a full listing of 
+ * individual contributors.
+ *
+ * ModeShape is free software. Unless otherwise indicated, all code in ModeShape
+ * is licensed to you under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ * 
+ * ModeShape is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.modeshape.jcr.cache.document;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.infinispan.schematic.Schematic;
+import org.infinispan.schematic.SchematicEntry;
+import org.infinispan.schematic.document.Document;
+import org.infinispan.schematic.document.EditableArray;
+import org.infinispan.schematic.document.EditableDocument;
+
+/**
+ * A hashed directory of the blocks of child references for a node whose children are split into multiple blocks. The directory
+ * is stored in one or more bucket documents, and records for each child name the blocks (in order) that contain children with
+ * that name along with the number of such children in each block, and for each child key the block that contains that child.
+ * This means that a child can be found by name and SNS index or by key, and the existence of a child can be checked, by reading
+ * a single bucket and a single block rather than by walking all of the blocks.
+ * <p>
+ * The number of children with a given name in each block only changes when children are added, removed or renamed, and the
+ * {@link DocumentTranslator} always updates the directory when that happens, rewriting only the buckets for the names and keys
+ * of the affected children. The buckets are rebalanced only when the number of children is far from what they were sized for.
+ * The {@link DocumentOptimizer} rebuilds the directory when it moves children between blocks. Readers still verify what they
+ * find in a block, and fall back to walking the blocks when the directory does not match.
+ * </p>
+ */
+public class ChildReferencesIndex implements DocumentConstants {
+
+    /**
+     * The target number of children described by each bucket document.
+     */
+    public static final int TARGET_CHILDREN_PER_BUCKET = 1000;
+
+    /**
+     * The factor by which the number of buckets in an index may differ from the {@link #bucketCountFor(long) ideal number} before
+     * the index is rebalanced.
+     */
+    public static final int REBALANCE_FACTOR = 2;
+
+    protected static final String NAMES = "names";
+    protected static final String KEYS = "keys";
+    protected static final String BUCKET_KEY_SUFFIX = "-childIndex-";
+
+    /**
+     * Get the key of the bucket document with the given number.
+     * 
+     * @param ownerKey the key of the node document that owns the children; may not be null
+     * @param bucket the number of the bucket
+     * @return the key of the bucket document; never null
+     */
+    public static String bucketKey( String ownerKey,
+                                    int bucket ) {
+        return ownerKey + BUCKET_KEY_SUFFIX + bucket;
+    }
+
+    /**
+     * Get the number of the bucket that describes the child name or child key.
+     * 
+     * @param nameOrKey the string form of the child name or child key; may not be null
+     * @param bucketCount the number of buckets in the index; must be positive
+     * @return the bucket number
+     */
+    public static int bucketFor( String nameOrKey,
+                                 int bucketCount ) {
+        return (nameOrKey.hashCode() & Integer.MAX_VALUE) % bucketCount;
+    }
+
+    /**
+     * Get the number of buckets that should be used to index the given number of children.
+     * 
+     * @param childCount the number of children
+     * @return the number of buckets; always positive
+     */
+    public static int bucketCountFor( long childCount ) {
+        return (int)Math.max(1L, (childCount + TARGET_CHILDREN_PER_BUCKET - 1) / TARGET_CHILDREN_PER_BUCKET);
+    }
+
+    /**
+     * Determine whether an index with the given number of buckets should be rebalanced because it has far too few or far too many
+     * buckets for the given number of children.
+     * 
+     * @param bucketCount the number of buckets in the index
+     * @param childCount the number of children
+     * @return true if the index should be rebuilt with the ideal number of buckets, or false otherwise
+     */
+    public static boolean needsRebalancing( int bucketCount,
+                                            long childCount ) {
+        int idealCount = bucketCountFor(childCount);
+        return idealCount > bucketCount * REBALANCE_FACTOR || idealCount * REBALANCE_FACTOR < bucketCount;
+    }
+
+    /**
+     * Get the number of buckets in the index described by the supplied 'childrenInfo' document.
+     * 
+     * @param childrenInfo the 'childrenInfo' document of the node; may be null
+     * @return the number of buckets, or 0 if the children are not indexed
+     */
+    public static int bucketCount( Document childrenInfo ) {
+        return childrenInfo != null ? childrenInfo.getInteger(INDEX_BUCKETS, 0) : 0;
+    }
+
+    /**
+     * Get the keys of all of the bucket documents used by the supplied node document.
+     * 
+     * @param ownerKey the key of the node document; may not be null
+     * @param document the node document; may not be null
+     * @return the keys of the bucket documents; never null but possibly empty
+     */
+    public static List<String> bucketKeys( String ownerKey,
+                                           Document document ) {
+        int bucketCount = bucketCount(document.getDocument(CHILDREN_INFO));
+        if (bucketCount == 0) return Collections.emptyList();
+        List<String> keys = new ArrayList<String>(bucketCount);
+        for (int i = 0; i != bucketCount; ++i) {
+            keys.add(bucketKey(ownerKey, i));
+        }
+        return keys;
+    }
+
+    /**
+     * Get the blocks that contain children with the supplied name.
+     * 
+     * @param bucket the bucket document for the name; may not be null
+     * @param name the string form of the child name; may not be null
+     * @return the alternating block keys and child counts, in block order; never null but empty if there are no such children
+     */
+    public static List<?> blocksWithName( Document bucket,
+                                          String name ) {
+        Document names = bucket.getDocument(NAMES);
+        List<?> blocks = names != null ? names.getArray(name) : null;
+        return blocks != null ? blocks : Collections.emptyList();
+    }
+
+    /**
+     * Get the block that contains the child with the supplied key.
+     * 
+     * @param bucket the bucket document for the key; may not be null
+     * @param key the string form of the child key; may not be null
+     * @return the key of the block, or null if there is no such child
+     */
+    public static String blockWithKey( Document bucket,
+                                       String key ) {
+        Document keys = bucket.getDocument(KEYS);
+        return keys != null ? keys.getString(key) : null;
+    }
+
+    /**
+     * Remove all of the bucket documents used by the supplied node document, which is being removed.
+     * 
+     * @param ownerKey the key of the node document; may not be null
+     * @param document the node document; may not be null
+     * @param documentStore the store from which the buckets are to be removed; may not be null
+     */
+    public static void removeAll( String ownerKey,
+                                  Document document,
+                                  DocumentStore documentStore ) {
+        for (String bucketKey : bucketKeys(ownerKey, document)) {
+            documentStore.remove(bucketKey);
+        }
+    }
+
+    /**
+     * Remove all of the bucket documents for the node's children.
+     * 
+     * @param ownerKey the key of the node document; may not be null
+     * @param childrenInfo the node's 'childrenInfo' document; may be null
+     * @param documentStore the store from which the buckets are to be removed; may not be null
+     */
+    public static void remove( String ownerKey,
+                               EditableDocument childrenInfo,
+                               DocumentStore documentStore ) {
+        int bucketCount = bucketCount(childrenInfo);
+        if (bucketCount == 0) return;
+        for (int i = 0; i != bucketCount; ++i) {
+            documentStore.remove(bucketKey(ownerKey, i));
+        }
+        childrenInfo.remove(INDEX_BUCKETS);
+    }
+
+    private final String ownerKey;
+    private final Map<String, List<Object>> blocksByName = new HashMap<String, List<Object>>();
+    private final Map<String, String> blocksByKey = new HashMap<String, String>();
+
+    /**
+     * Create an index for the children of the node with the supplied key.
+     * 
+     * @param ownerKey the key of the node document; may not be null
+     */
+    public ChildReferencesIndex( String ownerKey ) {
+        this.ownerKey = ownerKey;
+    }
+
+    /**
+     * Add to this index the children in the next block. Blocks must be added in order.
+     * 
+     * @param blockKey the key of the block, which is the owner's key for the first block; may not be null
+     * @param children the child reference documents in the block; may be null
+     */
+    public void addBlock( String blockKey,
+                          List<?> children ) {
+        if (children == null) return;
+        for (Object value : children) {
+            if (value instanceof Document) {
+                Document child = (Document)value;
+                add(blockKey, child.getString(NAME), child.getString(KEY));
+            }
+        }
+    }
+
+    /**
+     * Add to this index a child in the supplied block. Children must be added in order.
+     * 
+     * @param blockKey the key of the block, which is the owner's key for the first block; may not be null
+     * @param name the string form of the child's name; may not be null
+     * @param key the string form of the child's key; may not be null
+     */
+    public void add( String blockKey,
+                     String name,
+                     String key ) {
+        List<Object> blocks = blocksByName.get(name);
+        if (blocks == null) {
+            blocks = new ArrayList<Object>(2);
+            blocksByName.put(name, blocks);
+        }
+        int size = blocks.size();
+        if (size != 0 && blockKey.equals(blocks.get(size - 2))) {
+            blocks.set(size - 1, (Integer)blocks.get(size - 1) + 1);
+        } else {
+            blocks.add(blockKey);
+            blocks.add(1);
+        }
+        blocksByKey.put(key, blockKey);
+    }
+
+    /**
+     * Get the number of children in this index.
+     * 
+     * @return the number of children
+     */
+    public int size() {
+        return blocksByKey.size();
+    }
+
+    /**
+     * Replace the node's existing index (if any) with this index, writing all of the bucket documents and removing those that are
+     * no longer needed.
+     * 
+     * @param childrenInfo the node's 'childrenInfo' document, which will be updated with the number of buckets; may not be null
+     * @param documentStore the store to which the buckets are to be written; may not be null
+     */
+    public void write( EditableDocument childrenInfo,
+                       DocumentStore documentStore ) {
+        int oldBucketCount = bucketCount(childrenInfo);
+        int bucketCount = bucketCountFor(size());
+        EditableDocument[] buckets = new EditableDocument[bucketCount];
+        for (int i = 0; i != bucketCount; ++i) {
+            buckets[i] = Schematic.newDocument(NAMES, Schematic.newDocument(), KEYS, Schematic.newDocument());
+        }
+        for (Map.Entry<String, List<Object>> entry : blocksByName.entrySet()) {
+            EditableDocument bucket = buckets[bucketFor(entry.getKey(), bucketCount)];
+            bucket.getDocument(NAMES).setArray(entry.getKey(), Schematic.newArray(entry.getValue()));
+        }
+        for (Map.Entry<String, String> entry : blocksByKey.entrySet()) {
+            EditableDocument bucket = buckets[bucketFor(entry.getKey(), bucketCount)];
+            bucket.getDocument(KEYS).setString(entry.getKey(), entry.getValue());
+        }
+        for (int i = 0; i != bucketCount; ++i) {
+            documentStore.localStore().put(bucketKey(ownerKey, i), buckets[i]);
+        }
+        for (int i = bucketCount; i < oldBucketCount; ++i) {
+            documentStore.remove(bucketKey(ownerKey, i));
+        }
+        childrenInfo.setNumber(INDEX_BUCKETS, bucketCount);
+    }
+
+    /**
+     * Update the entries in the node's existing index for the supplied child names and keys, which must include every name and
+     * key whose entry may have changed, so that only the bucket documents for those names and keys are rewritten. This index
+     * must describe all of the node's children. If there is no existing index, if it has far too few or far too many buckets, or
+     * if one of its bucket documents cannot be found, the existing index is instead {@link #write replaced}.
+     * 
+     * @param childrenInfo the node's 'childrenInfo' document; may not be null
+     * @param names the string forms of the child names whose entries may have changed; may not be null
+     * @param keys the string forms of the child keys whose entries may have changed; may not be null
+     * @param documentStore the store in which the buckets are to be updated; may not be null
+     */
+    public void update( EditableDocument childrenInfo,
+                        Set<String> names,
+                        Set<String> keys,
+                        DocumentStore documentStore ) {
+        int bucketCount = bucketCount(childrenInfo);
+        if (bucketCount == 0 || needsRebalancing(bucketCount, size())) {
+            write(childrenInfo, documentStore);
+            return;
+        }
+        Map<Integer, EditableDocument> buckets = new HashMap<Integer, EditableDocument>();
+        for (String name : names) {
+            EditableDocument bucket = editBucket(bucketFor(name, bucketCount), buckets, documentStore);
+            if (bucket == null) {
+                write(childrenInfo, documentStore);
+                return;
+            }
+            List<Object> blocks = blocksByName.get(name);
+            if (blocks != null) {
+                bucket.getOrCreateDocument(NAMES).setArray(name, Schematic.newArray(blocks));
+            } else {
+                bucket.getOrCreateDocument(NAMES).remove(name);
+            }
+        }
+        for (String key : keys) {
+            EditableDocument bucket = editBucket(bucketFor(key, bucketCount), buckets, documentStore);
+            if (bucket == null) {
+                write(childrenInfo, documentStore);
+                return;
+            }
+            String blockKey = blocksByKey.get(key);
+            if (blockKey != null) {
+                bucket.getOrCreateDocument(KEYS).setString(key, blockKey);
+            } else {
+                bucket.getOrCreateDocument(KEYS).remove(key);
+            }
+        }
+    }
+
+    /**
+     * Merge the children in this index, which must all have been appended after the children already in the node's existing
+     * index, into the existing bucket documents. If the node now has far more children than the existing buckets were sized for,
+     * the existing buckets are read and the whole index is rewritten with more buckets. If any of the bucket documents cannot be
+     * found, the existing index is removed altogether so that readers walk the blocks until the index is rebuilt.
+     * 
+     * @param childrenInfo the node's 'childrenInfo' document; may not be null
+     * @param childCount the total number of children, including those in this index
+     * @param documentStore the store in which the buckets are to be updated; may not be null
+     */
+    public void appendTo( EditableDocument childrenInfo,
+                          long childCount,
+                          DocumentStore documentStore ) {
+        int bucketCount = bucketCount(childrenInfo);
+        if (bucketCount == 0) return;
+        if (needsRebalancing(bucketCount, childCount)) {
+            ChildReferencesIndex index = read(ownerKey, bucketCount, documentStore);
+            if (index == null) {
+                remove(ownerKey, childrenInfo, documentStore);
+                return;
+            }
+            index.addAll(this);
+            index.write(childrenInfo, documentStore);
+            return;
+        }
+        Map<Integer, EditableDocument> buckets = new HashMap<Integer, EditableDocument>();
+        for (Map.Entry<String, List<Object>> entry : blocksByName.entrySet()) {
+            EditableDocument bucket = editBucket(bucketFor(entry.getKey(), bucketCount), buckets, documentStore);
+            if (bucket == null) {
+                remove(ownerKey, childrenInfo, documentStore);
+                return;
+            }
+            EditableDocument names = bucket.getOrCreateDocument(NAMES);
+            EditableArray existing = names.getArray(entry.getKey());
+            if (existing == null) {
+                names.setArray(entry.getKey(), Schematic.newArray(entry.getValue()));
+                continue;
+            }
+            List<Object> blocks = entry.getValue();
+            for (int i = 0; i < blocks.size(); i += 2) {
+                int size = existing.size();
+                int count = (Integer)blocks.get(i + 1);
+                if (size != 0 && blocks.get(i).equals(existing.get(size - 2))) {
+                    existing.setNumber(size - 1, ((Number)existing.get(size - 1)).intValue() + count);
+                } else {
+                    existing.addString((String)blocks.get(i));
+                    existing.addNumber(count);
+                }
+            }
+        }
+        for (Map.Entry<String, String> entry : blocksByKey.entrySet()) {
+            EditableDocument bucket = editBucket(bucketFor(entry.getKey(), bucketCount), buckets, documentStore);
+            if (bucket == null) {
+                remove(ownerKey, childrenInfo, documentStore);
+                return;
+            }
+            bucket.getOrCreateDocument(KEYS).setString(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Read all of the entries in the node's existing index.
+     * 
+     * @param ownerKey the key of the node document; may not be null
+     * @param bucketCount the number of buckets in the existing index
+     * @param documentStore the store containing the buckets; may not be null
+     * @return the index, or null if one of the bucket documents cannot be found
+     */
+    private static ChildReferencesIndex read( String ownerKey,
+                                              int bucketCount,
+                                              DocumentStore documentStore ) {
+        ChildReferencesIndex index = new ChildReferencesIndex(ownerKey);
+        for (int i = 0; i != bucketCount; ++i) {
+            SchematicEntry entry = documentStore.get(bucketKey(ownerKey, i));
+            if (entry == null) return null;
+            Document bucket = entry.getContentAsDocument();
+            Document names = bucket.getDocument(NAMES);
+            if (names != null) {
+                for (Document.Field field : names.fields()) {
+                    List<?> existing = names.getArray(field.getName());
+                    if (existing == null) continue;
+                    List<Object> blocks = new ArrayList<Object>(existing.size());
+                    for (int j = 0; j + 1 < existing.size(); j += 2) {
+                        blocks.add(existing.get(j));
+                        blocks.add(((Number)existing.get(j + 1)).intValue());
+                    }
+                    index.blocksByName.put(field.getName(), blocks);
+                }
+            }
+            Document keys = bucket.getDocument(KEYS);
+            if (keys != null) {
+                for (Document.Field field : keys.fields()) {
+                    index.blocksByKey.put(field.getName(), keys.getString(field.getName()));
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Add to this index all of the entries in the supplied index, whose children must all follow those in this index.
+     * 
+     * @param appended the index of the children that follow; may not be null
+     */
+    private void addAll( ChildReferencesIndex appended ) {
+        for (Map.Entry<String, List<Object>> entry : appended.blocksByName.entrySet()) {
+            List<Object> blocks = blocksByName.get(entry.getKey());
+            if (blocks == null) {
+                blocksByName.put(entry.getKey(), new ArrayList<Object>(entry.getValue()));
+                continue;
+            }
+            List<Object> appendedBlocks = entry.getValue();
+            for (int i = 0; i < appendedBlocks.size(); i += 2) {
+                int size = blocks.size();
+                Integer count = (Integer)appendedBlocks.get(i + 1);
+                if (size != 0 && appendedBlocks.get(i).equals(blocks.get(size - 2))) {
+                    blocks.set(size - 1, (Integer)blocks.get(size - 1) + count);
+                } else {
+                    blocks.add(appendedBlocks.get(i));
+                    blocks.add(count);
+                }
+            }
+        }
+        blocksByKey.putAll(appended.blocksByKey);
+    }
+
+    private EditableDocument editBucket( int bucket,
+                                         Map<Integer, EditableDocument> buckets,
+                                         DocumentStore documentStore ) {
+        EditableDocument doc = buckets.get(bucket);
+        if (doc == null) {
+            SchematicEntry entry = documentStore.get(bucketKey(ownerKey, bucket));
+            if (entry == null) return null;
+            doc = entry.editDocumentContent();
+            buckets.put(bucket, doc);
+        }
+        return doc;
+    }
+}
@@ -148,9 +148,50 @@ public class DocumentOptimizer implements DocumentConstants {
                 }
             }
         }
+        if (changed && document.containsField(KEY)) {
+            // The children were moved between blocks, so the index of the blocks has to be rebuilt ...
+            indexChildren(key, document);
+        }
         return changed;
     }
 
+    /**
+     * Rebuild the {@link ChildReferencesIndex index} of the blocks of children in the supplied node document, or remove the index
+     * if the children are no longer split into multiple blocks.
+     * <p>
+     * Note that this method changes the underlying db as well as the given document, so *it must* be called either from a
+     * transactional context or it must be followed by a session.save call.
+     * </p>
+     * 
+     * @param key the key for the node; may not be null
+     * @param document the node's document; may not be null
+     */
+    protected void indexChildren( NodeKey key,
+                                  EditableDocument document ) {
+        String ownerKey = key.toString();
+        EditableDocument info = document.getDocument(CHILDREN_INFO);
+        if (info == null) {
+            return;
+        }
+        if (!info.containsField(NEXT_BLOCK)) {
+            // The children were all merged back into the node document ...
+            ChildReferencesIndex.remove(ownerKey, info, documentStore);
+            return;
+        }
+        ChildReferencesIndex index = new ChildReferencesIndex(ownerKey);
+        Set<String> visited = new HashSet<String>();
+        Document doc = document;
+        String docKey = ownerKey;
+        while (doc != null && visited.add(docKey)) {
+            index.addBlock(docKey, doc.getArray(CHILDREN));
+            Document docInfo = doc.getDocument(CHILDREN_INFO);
+            docKey = docInfo != null ? docInfo.getString(NEXT_BLOCK) : null;
+            SchematicEntry nextEntry = docKey != null ? lookup(docKey) : null;
+            doc = nextEntry != null ? nextEntry.getContentAsDocument() : null;
+        }
+        index.write(info, documentStore);
+    }
+
     protected SchematicEntry lookup( String key ) {
         return documentStore != null ? documentStore.get(key) : store.get(key);
     }
@@ -709,12 +709,42 @@ public class DocumentTranslator implements DocumentConstants {
         EditableDocument doc = document;
         EditableDocument lastDoc = document;
         String lastDocKey = null;
+
+        // Segmented children are indexed by name and key. The index is rebuilt in memory while we walk the blocks, but only the
+        // entries for the names and keys of the removed, renamed, inserted and appended children are written. Otherwise the
+        // index is updated with the appended children ...
+        String ownerKey = getKey(document);
+        boolean indexed = ownerKey != null && info != null && info.nextKey != null && isLocal(ownerKey);
+        ChildReferencesIndex index = null;
+        Set<String> changedNames = null;
+        Set<String> changedKeys = null;
+        Set<String> removedOrRenamedKeys = null;
         if (changedChildren != null && !changedChildren.isEmpty()) {
             Map<NodeKey, Insertions> insertionsByBeforeKey = changedChildren.getInsertionsByBeforeKey();
 
             // Handle removals and renames ...
             Set<NodeKey> removals = changedChildren.getRemovals();
             Map<NodeKey, Name> newNames = changedChildren.getNewNames();
+            if (indexed) {
+                index = new ChildReferencesIndex(ownerKey);
+                changedNames = new HashSet<String>();
+                changedKeys = new HashSet<String>();
+                removedOrRenamedKeys = new HashSet<String>();
+                for (NodeKey key : removals) {
+                    changedKeys.add(key.toString());
+                    removedOrRenamedKeys.add(key.toString());
+                }
+                for (Map.Entry<NodeKey, Name> entry : newNames.entrySet()) {
+                    removedOrRenamedKeys.add(entry.getKey().toString());
+                    changedNames.add(strings.create(entry.getValue()));
+                }
+                for (Insertions insertions : insertionsByBeforeKey.values()) {
+                    for (ChildReference inserted : insertions.inserted()) {
+                        changedKeys.add(inserted.getKey().toString());
+                        changedNames.add(strings.create(inserted.getName()));
+                    }
+                }
+            }
             while (doc != null) {
                 // we need to clean up projections
                 if (isFederatedDocument(doc) && !removals.isEmpty()) {
@@ -728,9 +758,11 @@ public class DocumentTranslator implements DocumentConstants {
                     removeFederatedSegments(doc, removalsStrings);
                 }
 
-                // Change the existing children ...
+                // Record the current names of the children being removed or renamed, and then change the existing children ...
+                if (index != null) addNamesOf(doc.getArray(CHILDREN), removedOrRenamedKeys, changedNames);
                 long blockCount = insertChildren(doc, insertionsByBeforeKey, removals, newNames);
                 newTotalSize += blockCount;
+                if (index != null) index.addBlock(doc == document ? ownerKey : lastDocKey, doc.getArray(CHILDREN));
 
                 // Look at the 'childrenInfo' document for info about the next block of children ...
                 SchematicEntry nextEntry = null;
@@ -774,9 +806,17 @@ public class DocumentTranslator implements DocumentConstants {
             }
             // Just append the new children to the end of the last document; we can use an asynchronous process
             // to adjust/optimize the number of children in each block ...
+            String lastBlockKey = lastDoc == document ? ownerKey : (lastKey != null ? lastKey : lastDocKey);
+            if (indexed && index == null && info.indexBuckets != 0) index = new ChildReferencesIndex(ownerKey);
             EditableArray lastChildren = lastDoc.getOrCreateArray(CHILDREN);
             for (ChildReference ref : appended) {
-                lastChildren.add(fromChildReference(ref));
+                EditableDocument child = fromChildReference(ref);
+                lastChildren.add(child);
+                if (index != null) index.add(lastBlockKey, child.getString(NAME), child.getString(KEY));
+                if (changedNames != null) {
+                    changedNames.add(child.getString(NAME));
+                    changedKeys.add(child.getString(KEY));
+                }
             }
 
             if (lastDoc != document) {
@@ -795,6 +835,41 @@ public class DocumentTranslator implements DocumentConstants {
                 childInfo.setString(LAST_BLOCK, lastKey);
             }
         }
+
+        if (index != null) {
+            EditableDocument childInfo = document.getDocument(CHILDREN_INFO);
+            if (changedNames != null) {
+                // We walked all of the blocks, so update the entries that may have changed ...
+                index.update(childInfo, changedNames, changedKeys, documentStore);
+            } else {
+                // Only the appended children need to be added to the existing index ...
+                index.appendTo(childInfo, newTotalSize, documentStore);
+            }
+        }
+    }
+
+    /**
+     * Add to the supplied set the names of those children in the block that have one of the supplied keys.
+     * 
+     * @param children the child reference documents in the block; may be null
+     * @param keys the string forms of the child keys; may not be null
+     * @param names the set to which the string forms of the names are to be added; may not be null
+     */
+    private void addNamesOf( List<?> children,
+                             Set<String> keys,
+                             Set<String> names ) {
+        if (children == null || keys.isEmpty()) return;
+        for (Object value : children) {
+            if (value instanceof Document) {
+                Document child = (Document)value;
+                if (keys.contains(child.getString(KEY))) names.add(child.getString(NAME));
+            }
+        }
+    }
+
+    private boolean isLocal( String key ) {
+        String localSourceKey = documentStore.getLocalSourceKey();
+        return localSourceKey == null || key.startsWith(localSourceKey);
     }
 
     protected long insertChildren( EditableDocument document,
@@ -937,7 +1012,8 @@ public class DocumentTranslator implements DocumentConstants {
             long blockSize = childrenInfo.getLong(BLOCK_SIZE, 0L);
             String nextBlockKey = childrenInfo.getString(NEXT_BLOCK);
             String lastBlockKey = childrenInfo.getString(LAST_BLOCK, nextBlockKey);
-            return new ChildReferencesInfo(totalSize, blockSize, nextBlockKey, lastBlockKey);
+            int indexBuckets = childrenInfo.getInteger(INDEX_BUCKETS, 0);
+            return new ChildReferencesInfo(totalSize, blockSize, nextBlockKey, lastBlockKey, document.getString(KEY), indexBuckets);
         }
         return null;
     }
@@ -948,15 +1024,28 @@ public class DocumentTranslator implements DocumentConstants {
         public final long blockSize;
         public final String nextKey;
         public final String lastKey;
+        public final String ownerKey;
+        public final int indexBuckets;
 
         public ChildReferencesInfo( long totalSize,
                                     long blockSize,
                                     String nextKey,
                                     String lastKey ) {
+            this(totalSize, blockSize, nextKey, lastKey, null, 0);
+        }
+
+        public ChildReferencesInfo( long totalSize,
+                                    long blockSize,
+                                    String nextKey,
+                                    String lastKey,
+                                    String ownerKey,
+                                    int indexBuckets ) {
             this.totalSize = totalSize;
             this.blockSize = blockSize;
             this.nextKey = nextKey;
             this.lastKey = lastKey;
+            this.ownerKey = ownerKey;
+            this.indexBuckets = indexBuckets;
         }
 
         @Override
@@ -0,0 +1,407 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ * See the AUTHORS.txt file in the distribution for a full listing of 
+ * individual contributors.
+ *
+ * ModeShape is free software. Unless otherwise indicated, all code in ModeShape
+ * is licensed to you under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ * 
+ * ModeShape is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.modeshape.jcr.cache.document;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import org.modeshape.common.annotation.GuardedBy;
+import org.modeshape.common.annotation.ThreadSafe;
+import org.modeshape.common.logging.Logger;
+import org.modeshape.common.util.CheckArg;
+import org.modeshape.jcr.cache.NodeKey;
+import org.modeshape.jcr.cache.SessionCache.PreSave;
+import org.modeshape.jcr.cache.SessionEnvironment.Monitor;
+import org.modeshape.jcr.cache.WrappedException;
+import org.modeshape.jcr.cache.change.ChangeSet;
+import org.modeshape.jcr.txn.Transactions;
+import org.modeshape.jcr.txn.Transactions.Transaction;
+import org.modeshape.jcr.txn.Transactions.TransactionFunction;
+
+/**
+ * A component that coalesces concurrent {@link WritableSessionCache#save() saves} of different sessions into a single transaction,
+ * so that many small saves (e.g., from ingest threads) share one Infinispan commit and cache store flush. This applies to all of
+ * the ways in which a session can be saved, including saves that also persist the changes of a second (e.g., system) session and
+ * saves of only some of a session's changes.
+ * <p>
+ * The first thread to save while no group is being formed becomes the group's leader, and waits up to the configured window
+ * (or until the maximum group size is reached) for other saves to arrive. The leader then takes the queued saves whose sessions
+ * changed disjoint sets of nodes, and persists all of their changes within one transaction, producing a separate
+ * {@link ChangeSet} for each session. Saves that overlap an earlier save in the group are left queued, and one of the waiting
+ * threads becomes the leader of the next group.
+ * </p>
+ * <p>
+ * The pre-save operations of a second session may change nodes (e.g., version histories) that are not known until those
+ * operations run, so any save whose changes then overlap the changes of an earlier save in the group is removed from the group
+ * and is instead saved on its own after the group is committed. If any part of a group fails, the group's transaction is rolled back
+ * and each session in the group is then saved on its own, so that each save succeeds or fails exactly as it would have without
+ * grouping. Pre-save operations that have already been run are never run a second time.
+ * </p>
+ * <p>
+ * Saves made while the calling thread has an active (e.g., user) transaction are never grouped.
+ * </p>
+ */
+@ThreadSafe
+public class GroupCommitter {
+
+    private static final Logger LOGGER = Logger.getLogger(GroupCommitter.class);
+
+    private final Transactions txns;
+    private final long windowInNanos;
+    private final int maximumGroupSize;
+    private final Lock lock = new ReentrantLock();
+    private final Condition groupFull = lock.newCondition();
+    private final Condition requestChanged = lock.newCondition();
+    @GuardedBy( "lock" )
+    private final LinkedList<Request> queue = new LinkedList<Request>();
+    @GuardedBy( "lock" )
+    private boolean leaderActive = false;
+
+    /**
+     * Create a new group committer.
+     * 
+     * @param txns the transactions object; may not be null
+     * @param windowInMillis the maximum time in milliseconds that the first save in a group waits for other saves; may not be
+     *        negative
+     * @param maximumGroupSize the maximum number of saves in a single group; must be positive
+     */
+    public GroupCommitter( Transactions txns,
+                           long windowInMillis,
+                           int maximumGroupSize ) {
+        CheckArg.isNotNull(txns, "txns");
+        CheckArg.isNonNegative(windowInMillis, "windowInMillis");
+        CheckArg.isPositive(maximumGroupSize, "maximumGroupSize");
+        this.txns = txns;
+        this.windowInNanos = TimeUnit.MILLISECONDS.toNanos(windowInMillis);
+        this.maximumGroupSize = maximumGroupSize;
+    }
+
+    /**
+     * Save the changes in the supplied session, possibly within the same transaction as the saves of other sessions. This method
+     * blocks until the session's changes have been committed or the save has failed.
+     * 
+     * @param session the session whose changes are to be saved; may not be null
+     * @param other the other session whose changes are to be saved with those of the session; may be null
+     * @param toBeSaved the keys of the nodes in the session whose changes are to be saved, or null if all of the session's
+     *        changes are to be saved
+     * @param preSaveOperation the set of operations to run against the new and changed nodes prior to saving; may be null
+     */
+    void save( WritableSessionCache session,
+               WritableSessionCache other,
+               Set<NodeKey> toBeSaved,
+               PreSave preSaveOperation ) {
+        Request request = new Request(session, other, toBeSaved, preSaveOperation);
+        boolean lead = false;
+        lock.lock();
+        try {
+            queue.add(request);
+            if (!leaderActive) {
+                leaderActive = true;
+                request.leader = true;
+            } else if (queue.size() >= maximumGroupSize) {
+                groupFull.signal();
+            }
+            while (!request.done && !request.leader) {
+                requestChanged.await();
+            }
+            lead = request.leader && !request.done;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (!request.leader && queue.remove(request)) {
+                // The save was not yet taken by a leader, so it can be abandoned ...
+                throw new WrappedException(e);
+            }
+            lead = request.leader && !request.done;
+        } finally {
+            lock.unlock();
+        }
+        if (lead) lead();
+        awaitCompletion(request);
+        if (request.failure instanceof RuntimeException) throw (RuntimeException)request.failure;
+        if (request.failure instanceof Error) throw (Error)request.failure;
+        if (request.failure != null) throw new WrappedException(request.failure);
+    }
+
+    private void awaitCompletion( Request request ) {
+        lock.lock();
+        try {
+            boolean interrupted = false;
+            while (!request.done) {
+                try {
+                    requestChanged.await();
+                } catch (InterruptedException e) {
+                    // The save has already been taken by a leader, so we have to wait for its outcome ...
+                    interrupted = true;
+                }
+            }
+            if (interrupted) Thread.currentThread().interrupt();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Form the next group from the queued saves and commit it, and then hand leadership to the oldest save that is still queued.
+     */
+    private void lead() {
+        List<Request> group = null;
+        lock.lock();
+        try {
+            // Wait for other saves to join the group ...
+            long remaining = windowInNanos;
+            while (queue.size() < maximumGroupSize && remaining > 0L) {
+                try {
+                    remaining = groupFull.awaitNanos(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            group = takeGroup();
+        } finally {
+            lock.unlock();
+        }
+
+        try {
+            commit(group);
+        } finally {
+            lock.lock();
+            try {
+                for (Request request : group) {
+                    request.done = true;
+                }
+                Request next = queue.peek();
+                if (next != null) {
+                    next.leader = true;
+                } else {
+                    leaderActive = false;
+                }
+                requestChanged.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    @GuardedBy( "lock" )
+    private List<Request> takeGroup() {
+        List<Request> group = new ArrayList<Request>(Math.min(queue.size(), maximumGroupSize));
+        Set<NodeKey> groupKeys = new HashSet<NodeKey>();
+        Set<WritableSessionCache> groupSessions = new HashSet<WritableSessionCache>();
+        for (Request request : new ArrayList<Request>(queue)) {
+            if (group.size() >= maximumGroupSize) break;
+            if (groupSessions.contains(request.session) || groupSessions.contains(request.other)) continue;
+            Set<NodeKey> keys = request.changedNodeKeys();
+            if (!group.isEmpty() && containsAny(groupKeys, keys)) continue;
+            groupKeys.addAll(keys);
+            groupSessions.add(request.session);
+            if (request.other != null) groupSessions.add(request.other);
+            group.add(request);
+            queue.remove(request);
+        }
+        return group;
+    }
+
+    private static boolean containsAny( Set<NodeKey> keys,
+                                        Set<NodeKey> others ) {
+        for (NodeKey key : others) {
+            if (keys.contains(key)) return true;
+        }
+        return false;
+    }
+
+    private void commit( List<Request> requests ) {
+        if (requests.size() == 1) {
+            // There's nothing to coalesce ...
+            saveAlone(requests.get(0));
+            return;
+        }
+        List<Request> group = new ArrayList<Request>(requests);
+        List<Lock> sessionLocks = new ArrayList<Lock>(group.size() * 2);
+        List<Request> deferred = new ArrayList<Request>();
+        Transaction txn = null;
+        boolean committed = false;
+        try {
+            for (Request request : group) {
+                // Never block while holding other sessions' locks, since another thread may be saving two of these sessions ...
+                tryLock(request.session, sessionLocks);
+                if (request.other != null) tryLock(request.other, sessionLocks);
+            }
+            for (Request request : group) {
+                request.session.runPreSaveBeforeGroupTransaction(request.preSaveOperation, request.toBeSaved);
+                request.preSaveRun = true;
+            }
+            // The pre-save operations may have changed more nodes, so remove any save that now overlaps an earlier one ...
+            Set<NodeKey> groupKeys = new HashSet<NodeKey>();
+            for (Iterator<Request> iter = group.iterator(); iter.hasNext();) {
+                Request request = iter.next();
+                Set<NodeKey> keys = request.changedNodeKeys();
+                if (containsAny(groupKeys, keys)) {
+                    deferred.add(request);
+                    iter.remove();
+                    continue;
+                }
+                groupKeys.addAll(keys);
+            }
+            txn = txns.begin();
+            final Monitor monitor = txn.createMonitor();
+            for (Request request : group) {
+                request.savedNodesInOrder = request.session.changedNodeKeys(request.toBeSaved);
+                request.changes = request.session.persistChangesInGroup(request.savedNodesInOrder,
+                                                                        request.toBeSaved,
+                                                                        request.preSaveOperation,
+                                                                        monitor);
+                if (request.other != null) {
+                    request.otherChanges = request.other.persistChangesInGroup(request.other.changedNodeKeys(null),
+                                                                               null,
+                                                                               null,
+                                                                               monitor);
+                }
+            }
+            final List<Request> savedGroup = group;
+            txn.uponCompletion(new TransactionFunction() {
+                @Override
+                public void transactionComplete() {
+                    if (monitor != null) {
+                        for (Request request : savedGroup) {
+                            if (request.changes != null) monitor.recordChanged(request.changes.changedNodes().size());
+                            if (request.otherChanges != null) monitor.recordChanged(request.otherChanges.changedNodes().size());
+                        }
+                    }
+                }
+            });
+            txn.commit();
+            committed = true;
+            for (Request request : group) {
+                if (request.toBeSaved == null) {
+                    request.session.clearState();
+                } else {
+                    request.session.clearState(request.savedNodesInOrder);
+                }
+                if (request.other != null) request.other.clearState();
+            }
+            LOGGER.debug("Committed the saves of {0} sessions in one transaction", group.size());
+        } catch (Throwable t) {
+            if (txn != null && !committed) {
+                try {
+                    txn.rollback();
+                } catch (Throwable rollbackError) {
+                    // The transaction may already have been rolled back ...
+                    LOGGER.debug(rollbackError, "Error while rolling back the transaction for a group of saves");
+                }
+            }
+            LOGGER.debug(t,
+                         "Unable to commit the saves of {0} sessions in one transaction; saving each separately",
+                         requests.size());
+        } finally {
+            for (Lock sessionLock : sessionLocks) {
+                sessionLock.unlock();
+            }
+        }
+
+        if (committed) {
+            for (Request request : group) {
+                request.session.updateCacheAfterGroupSave(request.changes, txn);
+                if (request.other != null) request.other.updateCacheAfterGroupSave(request.otherChanges, txn);
+            }
+        } else {
+            // Save each session on its own, so that each gets its own outcome ...
+            for (Request request : group) {
+                saveAlone(request);
+            }
+        }
+        for (Request request : deferred) {
+            saveAlone(request);
+        }
+    }
+
+    private static void tryLock( WritableSessionCache session,
+                                 List<Lock> sessionLocks ) {
+        Lock sessionLock = session.saveLock();
+        if (!sessionLock.tryLock()) {
+            throw new IllegalStateException("Session " + session + " is being used by another save");
+        }
+        sessionLocks.add(sessionLock);
+    }
+
+    private void saveAlone( Request request ) {
+        // Don't run the pre-save operations again if they were already run for a group that failed ...
+        boolean runPreSave = !request.preSaveRun;
+        try {
+            if (request.other == null) {
+                request.session.saveAlone(request.preSaveOperation, runPreSave);
+            } else if (request.toBeSaved == null) {
+                request.session.saveAlone(request.other, request.preSaveOperation, runPreSave);
+            } else {
+                request.session.saveAlone(request.toBeSaved, request.other, request.preSaveOperation, runPreSave);
+            }
+        } catch (Throwable t) {
+            request.failure = t;
+        }
+    }
+
+    protected static final class Request {
+        protected final WritableSessionCache session;
+        protected final WritableSessionCache other;
+        protected final Set<NodeKey> toBeSaved;
+        protected final PreSave preSaveOperation;
+        @GuardedBy( "lock" )
+        protected boolean leader;
+        @GuardedBy( "lock" )
+        protected boolean done;
+        protected boolean preSaveRun;
+        protected List<NodeKey> savedNodesInOrder;
+        protected ChangeSet changes;
+        protected ChangeSet otherChanges;
+        protected Throwable failure;
+
+        protected Request( WritableSessionCache session,
+                           WritableSessionCache other,
+                           Set<NodeKey> toBeSaved,
+                           PreSave preSaveOperation ) {
+            this.session = session;
+            this.other = other;
+            this.toBeSaved = toBeSaved;
+            this.preSaveOperation = preSaveOperation;
+        }
+
+        /**
+         * Get the keys of the changed nodes that this save will persist, in both sessions.
+         * 
+         * @return the keys; never null
+         */
+        protected Set<NodeKey> changedNodeKeys() {
+            Set<NodeKey> keys = new HashSet<NodeKey>(session.changedNodeKeys(toBeSaved));
+            if (other != null) keys.addAll(other.changedNodeKeys(null));
+            return keys;
+        }
+    }
+}
@@ -31,6 +31,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import org.infinispan.schematic.document.Document;
 import org.modeshape.common.annotation.Immutable;
 import org.modeshape.common.collection.EmptyIterator;
@@ -381,6 +383,10 @@ public class ImmutableChildReferences {
         protected final WorkspaceCache cache;
         protected final long totalSize;
         private Segment firstSegment;
+        private final String ownerKey;
+        private final int indexBuckets;
+        private final ConcurrentMap<String, Document> indexBucketsByKey = new ConcurrentHashMap<String, Document>();
+        private final ConcurrentMap<String, ChildReferences> blocksByKey = new ConcurrentHashMap<String, ChildReferences>();
 
         public Segmented( WorkspaceCache cache,
                           ChildReferences firstSegment,
@@ -388,6 +394,99 @@ public class ImmutableChildReferences {
             this.cache = cache;
             this.totalSize = info.totalSize;
             this.firstSegment = new Segment(firstSegment, info.nextKey);
+            this.ownerKey = info.ownerKey;
+            this.indexBuckets = info.ownerKey != null ? info.indexBuckets : 0;
+        }
+
+        /**
+         * Get the bucket of the {@link ChildReferencesIndex index} that describes the supplied child name or key.
+         * 
+         * @param nameOrKey the string form of the child name or key
+         * @return the bucket document, or null if the children are not indexed
+         */
+        private Document indexBucketFor( String nameOrKey ) {
+            if (indexBuckets == 0) return null;
+            String bucketKey = ChildReferencesIndex.bucketKey(ownerKey,
+                                                              ChildReferencesIndex.bucketFor(nameOrKey, indexBuckets));
+            Document bucket = indexBucketsByKey.get(bucketKey);
+            if (bucket == null) {
+                bucket = cache.blockFor(bucketKey);
+                if (bucket == null) return null;
+                indexBucketsByKey.putIfAbsent(bucketKey, bucket);
+            }
+            return bucket;
+        }
+
+        /**
+         * Get the blocks that contain children with the supplied name.
+         * 
+         * @param name the child name
+         * @return the alternating block keys and child counts, in block order; empty if there are no such children, or null if
+         *         the children are not indexed
+         */
+        private List<?> indexedBlocksWith( Name name ) {
+            String nameStr = cache.translator().getStringFactory().create(name);
+            Document bucket = indexBucketFor(nameStr);
+            return bucket != null ? ChildReferencesIndex.blocksWithName(bucket, nameStr) : null;
+        }
+
+        private ChildReferences indexedBlock( String blockKey ) {
+            if (blockKey.equals(ownerKey)) return firstSegment.getReferences();
+            ChildReferences block = blocksByKey.get(blockKey);
+            if (block == null) {
+                Document blockDoc = cache.blockFor(blockKey);
+                if (blockDoc == null) return null;
+                block = cache.translator().getChildReferencesFromBlock(blockDoc);
+                blocksByKey.putIfAbsent(blockKey, block);
+            }
+            return block;
+        }
+
+        /**
+         * Find the child with the supplied name and SNS index using the index.
+         * 
+         * @param name the child name
+         * @param snsIndex the SNS index of the child
+         * @param blocks the indexed blocks with children of that name
+         * @return the child reference, or null if the block named in the index does not contain the expected children
+         */
+        private ChildReference indexedChild( Name name,
+                                             int snsIndex,
+                                             List<?> blocks ) {
+            int before = 0;
+            for (int i = 0; i < blocks.size(); i += 2) {
+                int count = ((Number)blocks.get(i + 1)).intValue();
+                if (snsIndex <= before + count) {
+                    ChildReferences block = indexedBlock((String)blocks.get(i));
+                    if (block == null || block.getChildCount(name) != count) return null;
+                    ChildReference ref = block.getChild(name, snsIndex - before);
+                    return ref != null ? ref.with(snsIndex) : null;
+                }
+                before += count;
+            }
+            return null;
+        }
+
+        /**
+         * Find the child with the supplied key in the given block, and compute its SNS index using the index.
+         * 
+         * @param key the child key
+         * @param blockKey the key of the block that the index says contains the child
+         * @return the child reference, or null if the block does not contain the child
+         */
+        private ChildReference indexedChild( NodeKey key,
+                                             String blockKey ) {
+            ChildReferences block = indexedBlock(blockKey);
+            ChildReference ref = block != null ? block.getChild(key) : null;
+            if (ref == null) return null;
+            List<?> blocks = indexedBlocksWith(ref.getName());
+            if (blocks == null) return null;
+            int before = 0;
+            for (int i = 0; i < blocks.size(); i += 2) {
+                if (blockKey.equals(blocks.get(i))) return ref.with(before + ref.getSnsIndex());
+                before += ((Number)blocks.get(i + 1)).intValue();
+            }
+            return null;
         }
 
         @Override
@@ -402,6 +501,15 @@ public class ImmutableChildReferences {
 
         @Override
         public int getChildCount( Name name ) {
+            List<?> blocks = indexedBlocksWith(name);
+            if (blocks != null) {
+                // The index records the number of children with the name in each block ...
+                int result = 0;
+                for (int i = 1; i < blocks.size(); i += 2) {
+                    result += ((Number)blocks.get(i)).intValue();
+                }
+                return result;
+            }
             int result = 0;
             Segment segment = this.firstSegment;
             while (segment != null) {
@@ -415,6 +523,15 @@ public class ImmutableChildReferences {
         public ChildReference getChild( Name name,
                                         int snsIndex,
                                         Context context ) {
+            if (context == null || context.changes() == null) {
+                List<?> blocks = indexedBlocksWith(name);
+                if (blocks != null) {
+                    if (blocks.isEmpty()) return null;
+                    ChildReference result = indexedChild(name, snsIndex, blocks);
+                    if (result != null) return result;
+                    // Otherwise the index does not match the blocks, so walk them ...
+                }
+            }
             ChildReference result = null;
             Segment segment = this.firstSegment;
             while (segment != null) {
@@ -429,6 +546,15 @@ public class ImmutableChildReferences {
 
         @Override
         public boolean hasChild( NodeKey key ) {
+            String keyStr = key.toString();
+            Document bucket = indexBucketFor(keyStr);
+            if (bucket != null) {
+                String blockKey = ChildReferencesIndex.blockWithKey(bucket, keyStr);
+                if (blockKey == null) return false;
+                ChildReferences block = indexedBlock(blockKey);
+                if (block != null && block.hasChild(key)) return true;
+                // Otherwise the index does not match the blocks, so walk them ...
+            }
             Segment segment = this.firstSegment;
             while (segment != null) {
                 if (segment.getReferences().hasChild(key)) {
@@ -447,6 +573,17 @@ public class ImmutableChildReferences {
         @Override
         public ChildReference getChild( NodeKey key,
                                         Context context ) {
+            if (context == null || context.changes() == null) {
+                String keyStr = key.toString();
+                Document bucket = indexBucketFor(keyStr);
+                if (bucket != null) {
+                    String blockKey = ChildReferencesIndex.blockWithKey(bucket, keyStr);
+                    if (blockKey == null) return null;
+                    ChildReference result = indexedChild(key, blockKey);
+                    if (result != null) return result;
+                    // Otherwise the index does not match the blocks, so walk them ...
+                }
+            }
             ChildReference result = null;
             Segment segment = this.firstSegment;
             while (segment != null) {
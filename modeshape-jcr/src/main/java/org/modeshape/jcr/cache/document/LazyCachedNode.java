@@ -106,6 +106,15 @@ public class LazyCachedNode implements CachedNode, Serializable {
         return document;
     }
 
+    /**
+     * Get the {@link Document} that represents this node, if it has already been read.
+     * 
+     * @return the document, or null if it has not yet been read
+     */
+    final Document documentIfLoaded() {
+        return document;
+    }
+
     @Override
     public NodeKey getParentKey( NodeCache cache ) {
         if (parent == null) {
@@ -0,0 +1,64 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ * See the AUTHORS.txt file in the distribution for a full listing of 
+ * individual contributors.
+ *
+ * ModeShape is free software. Unless otherwise indicated, all code in ModeShape
+ * is licensed to you under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ * 
+ * ModeShape is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.modeshape.jcr.cache.document;
+
+/**
+ * A component that is informed of the activity within a {@link BoundedNodeCache}, usually to record statistics.
+ */
+public interface NodeCacheMonitor {
+
+    /**
+     * A monitor that does nothing.
+     */
+    public static final NodeCacheMonitor NONE = new NodeCacheMonitor() {
+        @Override
+        public void hit() {
+        }
+
+        @Override
+        public void miss() {
+        }
+
+        @Override
+        public void evicted( int count ) {
+        }
+    };
+
+    /**
+     * Record that a requested node was found in the cache.
+     */
+    void hit();
+
+    /**
+     * Record that a requested node was not found in the cache and will have to be read from the document store.
+     */
+    void miss();
+
+    /**
+     * Record that nodes were evicted from the cache to keep it within its bounds.
+     * 
+     * @param count the number of nodes that were evicted
+     */
+    void evicted( int count );
+}
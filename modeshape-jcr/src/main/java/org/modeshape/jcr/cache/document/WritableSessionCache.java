@@ -124,6 +124,7 @@ public class WritableSessionCache extends AbstractSessionCache {
     private LinkedHashSet<NodeKey> changedNodesInOrder;
     private Map<NodeKey, ReferrerChanges> referrerChangesForRemovedNodes;
     private final Transactions txns;
+    private final GroupCommitter groupCommitter;
 
     /**
      * Create a new SessionCache that can be used for making changes to the workspace.
@@ -140,6 +141,7 @@ public class WritableSessionCache extends AbstractSessionCache {
         this.changedNodesInOrder = new LinkedHashSet<NodeKey>();
         this.referrerChangesForRemovedNodes = new HashMap<NodeKey, ReferrerChanges>();
         this.txns = sessionContext.getTransactions();
+        this.groupCommitter = sessionContext.getGroupCommitter();
     }
 
     protected final void assertInSession( SessionNode node ) {
@@ -424,6 +426,39 @@ public class WritableSessionCache extends AbstractSessionCache {
             return;
         }
 
+        if (shouldGroupCommit()) {
+            // Let the changes be persisted in the same transaction as the concurrent saves of other sessions ...
+            groupCommitter.save(this, null, null, preSaveOperation);
+            return;
+        }
+        saveAlone(preSaveOperation, true);
+    }
+
+    private boolean shouldGroupCommit() {
+        return groupCommitter != null && !isCurrentlyInTransaction();
+    }
+
+    private boolean isCurrentlyInTransaction() {
+        try {
+            return txns.isCurrentlyInTransaction();
+        } catch (SystemException err) {
+            throw new SystemFailureException(err);
+        }
+    }
+
+    /**
+     * Persist the changes within a transaction used only by this session.
+     * 
+     * @param preSaveOperation the set of operations to run against the new and changed nodes prior to saving; may be null
+     * @param runPreSave true if the {@link PreSave#process pre-save operations} are to be run before the transaction is started,
+     *        or false if they were already run (e.g., by a group of saves that failed)
+     */
+    final void saveAlone( PreSave preSaveOperation,
+                          boolean runPreSave ) {
+        if (!this.hasChanges()) {
+            return;
+        }
+
         ChangeSet events = null;
         Lock lock = this.lock.writeLock();
         Transaction txn = null;
@@ -431,7 +466,9 @@ public class WritableSessionCache extends AbstractSessionCache {
             lock.lock();
 
             // Before we start the transaction, apply the pre-save operations to the new and changed nodes ...
-            runPreSaveBeforeTransaction(preSaveOperation);
+            if (runPreSave) {
+                runPreSaveBeforeTransaction(preSaveOperation, null);
+            }
 
             final int numNodes = this.changedNodes.size();
 
@@ -448,7 +485,7 @@ public class WritableSessionCache extends AbstractSessionCache {
                     lockAndPurgeCache(changedNodesInOrder);
 
                     // process after locking
-                    runPreSaveAfterLocking(preSaveOperation);
+                    runPreSaveAfterLocking(preSaveOperation, null);
 
                     // Now persist the changes ...
                     logChangesBeingSaved(this.changedNodesInOrder, this.changedNodes, null, null);
@@ -527,11 +564,97 @@ public class WritableSessionCache extends AbstractSessionCache {
         txns.updateCache(workspaceCache(), events, txn);
     }
 
-    private void runPreSaveBeforeTransaction( PreSave preSaveOperation ) throws Exception {
+    /**
+     * Get the lock that must be held while this session's changes are being persisted.
+     * 
+     * @return the lock; never null
+     */
+    final Lock saveLock() {
+        return this.lock.writeLock();
+    }
+
+    /**
+     * Get the keys of the nodes that have been changed in this session and that are to be saved.
+     * 
+     * @param toBeSaved the keys of the nodes whose changes are to be saved, or null if all of the changes are to be saved
+     * @return the keys of the changed nodes that are to be saved, in the order they were changed; never null
+     */
+    final List<NodeKey> changedNodeKeys( Set<NodeKey> toBeSaved ) {
+        Lock lock = this.lock.readLock();
+        try {
+            lock.lock();
+            return toBeSaved == null ? new ArrayList<NodeKey>(changedNodesInOrder) : changedNodesIn(toBeSaved);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @GuardedBy( "lock" )
+    private List<NodeKey> changedNodesIn( Set<NodeKey> toBeSaved ) {
+        List<NodeKey> savedNodesInOrder = new LinkedList<NodeKey>();
+        for (NodeKey key : changedNodesInOrder) {
+            if (toBeSaved.contains(key) && changedNodes.get(key) != REMOVED) {
+                savedNodesInOrder.add(key);
+            }
+        }
+        return savedNodesInOrder;
+    }
+
+    /**
+     * Apply the pre-save operations before the transaction of a group of saves is started. The caller must hold the
+     * {@link #saveLock() save lock}.
+     * 
+     * @param preSaveOperation the set of operations to run against the new and changed nodes prior to saving; may be null
+     * @param toBeSaved the keys of the nodes whose changes are to be saved, or null if all of the changes are to be saved
+     * @throws Exception if the operations fail
+     * @see GroupCommitter
+     */
+    final void runPreSaveBeforeGroupTransaction( PreSave preSaveOperation,
+                                                 Set<NodeKey> toBeSaved ) throws Exception {
+        runPreSaveBeforeTransaction(preSaveOperation, toBeSaved);
+    }
+
+    /**
+     * Lock the supplied changed nodes and persist their changes within the (already started) transaction of a group of saves. The
+     * caller must hold the {@link #saveLock() save lock}, and must {@link #clearState(Iterable) clear the state} of the saved
+     * nodes after the transaction is committed.
+     * 
+     * @param savedNodesInOrder the keys of the changed nodes that are to be persisted; may not be null
+     * @param toBeSaved the keys of the nodes whose changes are to be saved, or null if all of the changes are to be saved
+     * @param preSaveOperation the set of operations to run against the new and changed nodes prior to saving; may be null
+     * @param monitor the monitor for the changes; may be null
+     * @return the changes that were persisted; may be null
+     * @throws Exception if the changes could not be persisted
+     * @see GroupCommitter
+     */
+    final ChangeSet persistChangesInGroup( List<NodeKey> savedNodesInOrder,
+                                           Set<NodeKey> toBeSaved,
+                                           PreSave preSaveOperation,
+                                           Monitor monitor ) throws Exception {
+        lockAndPurgeCache(savedNodesInOrder);
+        runPreSaveAfterLocking(preSaveOperation, toBeSaved);
+        logChangesBeingSaved(savedNodesInOrder, this.changedNodes, null, null);
+        return persistChanges(savedNodesInOrder, monitor);
+    }
+
+    /**
+     * Notify the workspace of the changes that were committed as part of a group of saves.
+     * 
+     * @param changes the changes made by this session; may be null
+     * @param txn the transaction in which the changes were committed
+     * @see GroupCommitter
+     */
+    final void updateCacheAfterGroupSave( ChangeSet changes,
+                                          Transaction txn ) {
+        txns.updateCache(workspaceCache(), changes, txn);
+    }
+
+    private void runPreSaveBeforeTransaction( PreSave preSaveOperation,
+                                              Set<NodeKey> toBeSaved ) throws Exception {
         if (preSaveOperation != null) {
             SaveContext saveContext = new BasicSaveContext(context());
             for (MutableCachedNode node : this.changedNodes.values()) {
-                if (node == REMOVED) {
+                if (node == REMOVED || (toBeSaved != null && !toBeSaved.contains(node.getKey()))) {
                     continue;
                 }
                 checkNodeNotRemovedByAnotherTransaction(node);
@@ -541,12 +664,13 @@ public class WritableSessionCache extends AbstractSessionCache {
         }
     }
 
-    private void runPreSaveAfterLocking( PreSave preSaveOperation ) throws Exception {
+    private void runPreSaveAfterLocking( PreSave preSaveOperation,
+                                         Set<NodeKey> toBeSaved ) throws Exception {
         if (preSaveOperation != null) {
             SaveContext saveContext = new BasicSaveContext(context());
             for (MutableCachedNode node : this.changedNodes.values()) {
                 // only process existing nodes that have not been removed
-                if (node == REMOVED || node.isNew()) {
+                if (node == REMOVED || node.isNew() || (toBeSaved != null && !toBeSaved.contains(node.getKey()))) {
                     continue;
                 }
                 preSaveOperation.processAfterLocking(node, saveContext, workspaceCache());
@@ -578,9 +702,31 @@ public class WritableSessionCache extends AbstractSessionCache {
     @Override
     public void save( SessionCache other,
                       PreSave preSaveOperation ) {
+        final WritableSessionCache that = (WritableSessionCache)other.unwrap();
+        if (!this.hasChanges() && !that.hasChanges()) {
+            return;
+        }
 
+        if (shouldGroupCommit()) {
+            // Let the changes be persisted in the same transaction as the concurrent saves of other sessions ...
+            groupCommitter.save(this, that, null, preSaveOperation);
+            return;
+        }
+        saveAlone(that, preSaveOperation, true);
+    }
+
+    /**
+     * Persist the changes of this session and the other session within a transaction used only by these sessions.
+     * 
+     * @param that the other session
+     * @param preSaveOperation the set of operations to run against the new and changed nodes prior to saving; may be null
+     * @param runPreSave true if the {@link PreSave#process pre-save operations} are to be run before the transaction is started,
+     *        or false if they were already run (e.g., by a group of saves that failed)
+     */
+    final void saveAlone( WritableSessionCache that,
+                          PreSave preSaveOperation,
+                          boolean runPreSave ) {
         // Try getting locks on both sessions ...
-        final WritableSessionCache that = (WritableSessionCache)other.unwrap();
         Lock thisLock = this.lock.writeLock();
         Lock thatLock = that.lock.writeLock();
 
@@ -592,7 +738,9 @@ public class WritableSessionCache extends AbstractSessionCache {
             thatLock.lock();
 
             // Before we start the transaction, apply the pre-save operations to the new and changed nodes ...
-            runPreSaveBeforeTransaction(preSaveOperation);
+            if (runPreSave) {
+                runPreSaveBeforeTransaction(preSaveOperation, null);
+            }
 
             final int numNodes = this.changedNodes.size() + that.changedNodes.size();
 
@@ -610,7 +758,7 @@ public class WritableSessionCache extends AbstractSessionCache {
                         that.lockAndPurgeCache(that.changedNodesInOrder);
 
                         // process after locking
-                        runPreSaveAfterLocking(preSaveOperation);
+                        runPreSaveAfterLocking(preSaveOperation, null);
 
                         // Now persist the changes ...
                         logChangesBeingSaved(this.changedNodesInOrder,
@@ -731,9 +879,30 @@ public class WritableSessionCache extends AbstractSessionCache {
     public void save( Set<NodeKey> toBeSaved,
                       SessionCache other,
                       PreSave preSaveOperation ) {
+        final WritableSessionCache that = (WritableSessionCache)other.unwrap();
+        if (shouldGroupCommit()) {
+            // Let the changes be persisted in the same transaction as the concurrent saves of other sessions ...
+            groupCommitter.save(this, that, toBeSaved, preSaveOperation);
+            return;
+        }
+        saveAlone(toBeSaved, that, preSaveOperation, true);
+    }
 
+    /**
+     * Persist the changes of the supplied nodes in this session and the changes of the other session within a transaction used
+     * only by these sessions.
+     * 
+     * @param toBeSaved the set of keys identifying the nodes whose changes should be saved; may not be null
+     * @param that the other session
+     * @param preSaveOperation the set of operations to run against the new and changed nodes prior to saving; may be null
+     * @param runPreSave true if the {@link PreSave#process pre-save operations} are to be run before the transaction is started,
+     *        or false if they were already run (e.g., by a group of saves that failed)
+     */
+    final void saveAlone( Set<NodeKey> toBeSaved,
+                          WritableSessionCache that,
+                          PreSave preSaveOperation,
+                          boolean runPreSave ) {
         // Try getting locks on both sessions ...
-        final WritableSessionCache that = (WritableSessionCache)other.unwrap();
         Lock thisLock = this.lock.writeLock();
         Lock thatLock = that.lock.writeLock();
 
@@ -745,19 +914,9 @@ public class WritableSessionCache extends AbstractSessionCache {
             thatLock.lock();
 
             // Before we start the transaction, apply the pre-save operations to the new and changed nodes below the path ...
-            final List<NodeKey> savedNodesInOrder = new LinkedList<NodeKey>();
-
-            // Before we start the transaction, apply the pre-save operations to the new and changed nodes ...
-            if (preSaveOperation != null) {
-                SaveContext saveContext = new BasicSaveContext(context());
-                for (MutableCachedNode node : this.changedNodes.values()) {
-                    if (node == REMOVED || !toBeSaved.contains(node.getKey())) {
-                        continue;
-                    }
-                    checkNodeNotRemovedByAnotherTransaction(node);
-                    preSaveOperation.process(node, saveContext);
-                    savedNodesInOrder.add(node.getKey());
-                }
+            final List<NodeKey> savedNodesInOrder = changedNodesIn(toBeSaved);
+            if (runPreSave) {
+                runPreSaveBeforeTransaction(preSaveOperation, toBeSaved);
             }
 
             final int numNodes = savedNodesInOrder.size() + that.changedNodesInOrder.size();
@@ -777,16 +936,7 @@ public class WritableSessionCache extends AbstractSessionCache {
                         that.lockAndPurgeCache(that.changedNodesInOrder);
 
                         // process after locking
-                        // Before we start the transaction, apply the pre-save operations to the new and changed nodes ...
-                        if (preSaveOperation != null) {
-                            SaveContext saveContext = new BasicSaveContext(context());
-                            for (MutableCachedNode node : this.changedNodes.values()) {
-                                if (node == REMOVED || !toBeSaved.contains(node.getKey())) {
-                                    continue;
-                                }
-                                preSaveOperation.processAfterLocking(node, saveContext, workspaceCache());
-                            }
-                        }
+                        runPreSaveAfterLocking(preSaveOperation, toBeSaved);
 
                         // Now persist the changes ...
                         logChangesBeingSaved(savedNodesInOrder, this.changedNodes, that.changedNodesInOrder, that.changedNodes);
@@ -1316,7 +1466,11 @@ public class WritableSessionCache extends AbstractSessionCache {
             // Note 2: we do this last because the children are removed from their parent before the removal is handled above
             // (see Node 1), meaning getting the path and other information for removed nodes never would work properly.
             for (NodeKey removedKey : removedNodes) {
-                documentStore.remove(removedKey.toString());
+                String key = removedKey.toString();
+                SchematicEntry entry = documentStore.get(key);
+                // Also remove the index of the node's children, which is stored in separate documents ...
+                if (entry != null) ChildReferencesIndex.removeAll(key, entry.getContentAsDocument(), documentStore);
+                documentStore.remove(key);
             }
 
             // And record the removals via the monitor ...
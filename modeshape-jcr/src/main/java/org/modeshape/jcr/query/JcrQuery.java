@@ -55,6 +55,7 @@ public class JcrQuery extends JcrAbstractQuery {
     private QueryCommand query;
     private final PlanHints hints;
     private final Map<String, Object> variables;
+    private String indexConsistency;
     private volatile Set<String> variableNames;
     private final AtomicReference<CancellableQuery> executingQuery = new AtomicReference<CancellableQuery>();
 
@@ -101,6 +102,23 @@ public class JcrQuery extends JcrAbstractQuery {
         return query.toString();
     }
 
+    @Override
+    public void setIndexConsistency( String consistency ) {
+        if (consistency != null && !org.modeshape.jcr.api.query.Query.WAIT_FOR_OWN_WRITES.equals(consistency)
+            && !org.modeshape.jcr.api.query.Query.BEST_EFFORT.equals(consistency)) {
+            throw new IllegalArgumentException(JcrI18n.invalidIndexConsistency.text(consistency));
+        }
+        this.indexConsistency = consistency;
+    }
+
+    protected PlanHints hintsForExecution() {
+        if (indexConsistency == null) return hints;
+        // Don't change the supplied hints, since they may be shared ...
+        PlanHints result = hints != null ? hints.clone() : new PlanHints();
+        result.indexConsistency = indexConsistency;
+        return result;
+    }
+
     /**
      * {@inheritDoc}
      * 
@@ -113,7 +131,7 @@ public class JcrQuery extends JcrAbstractQuery {
         final long start = System.nanoTime();
         Schemata schemata = context.getSchemata();
         // Create an executable query and set it on this object ...
-        CancellableQuery newExecutable = context.createExecutableQuery(query, hints, variables);
+        CancellableQuery newExecutable = context.createExecutableQuery(query, hintsForExecution(), variables);
         CancellableQuery executable = executingQuery.getAndSet(newExecutable);
         if (executable == null) {
             // We are the first to call 'execute()', so use our newly-created one ...
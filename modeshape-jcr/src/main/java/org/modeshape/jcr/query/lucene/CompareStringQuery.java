@@ -32,6 +32,7 @@ import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TermRangeQuery;
 import org.apache.lucene.search.Weight;
 import org.apache.lucene.search.WildcardQuery;
 import org.apache.lucene.search.regex.JavaUtilRegexCapabilities;
@@ -154,10 +155,14 @@ public class CompareStringQuery extends CompareQuery<String> {
      *        evaluated; may not be null
      * @return the query; never null
      */
-    public static CompareStringQuery createQueryForNodesWithFieldGreaterThan( String constraintValue,
-                                                                              String fieldName,
-                                                                              ValueFactories factories,
-                                                                              CaseOperation caseOperation ) {
+    public static Query createQueryForNodesWithFieldGreaterThan( String constraintValue,
+                                                                 String fieldName,
+                                                                 ValueFactories factories,
+                                                                 CaseOperation caseOperation ) {
+        if (caseOperation == CaseOperations.AS_IS) {
+            // The terms are ordered the same way as the strings, so we can use a range of terms ...
+            return new TermRangeQuery(fieldName, constraintValue, null, false, false);
+        }
         return new CompareStringQuery(fieldName, constraintValue, factories.getStringFactory(), factories.getStringFactory(),
                                       IS_GREATER_THAN, caseOperation);
     }
@@ -173,10 +178,14 @@ public class CompareStringQuery extends CompareQuery<String> {
      *        evaluated; may not be null
      * @return the query; never null
      */
-    public static CompareStringQuery createQueryForNodesWithFieldGreaterThanOrEqualTo( String constraintValue,
-                                                                                       String fieldName,
-                                                                                       ValueFactories factories,
-                                                                                       CaseOperation caseOperation ) {
+    public static Query createQueryForNodesWithFieldGreaterThanOrEqualTo( String constraintValue,
+                                                                          String fieldName,
+                                                                          ValueFactories factories,
+                                                                          CaseOperation caseOperation ) {
+        if (caseOperation == CaseOperations.AS_IS) {
+            // The terms are ordered the same way as the strings, so we can use a range of terms ...
+            return new TermRangeQuery(fieldName, constraintValue, null, true, false);
+        }
         return new CompareStringQuery(fieldName, constraintValue, factories.getStringFactory(), factories.getStringFactory(),
                                       IS_GREATER_THAN_OR_EQUAL_TO, caseOperation);
     }
@@ -192,10 +201,14 @@ public class CompareStringQuery extends CompareQuery<String> {
      *        evaluated; may not be null
      * @return the query; never null
      */
-    public static CompareStringQuery createQueryForNodesWithFieldLessThan( String constraintValue,
-                                                                           String fieldName,
-                                                                           ValueFactories factories,
-                                                                           CaseOperation caseOperation ) {
+    public static Query createQueryForNodesWithFieldLessThan( String constraintValue,
+                                                              String fieldName,
+                                                              ValueFactories factories,
+                                                              CaseOperation caseOperation ) {
+        if (caseOperation == CaseOperations.AS_IS) {
+            // The terms are ordered the same way as the strings, so we can use a range of terms ...
+            return new TermRangeQuery(fieldName, null, constraintValue, false, false);
+        }
         return new CompareStringQuery(fieldName, constraintValue, factories.getStringFactory(), factories.getStringFactory(),
                                       IS_LESS_THAN, caseOperation);
     }
@@ -211,10 +224,14 @@ public class CompareStringQuery extends CompareQuery<String> {
      *        evaluated; may not be null
      * @return the query; never null
      */
-    public static CompareStringQuery createQueryForNodesWithFieldLessThanOrEqualTo( String constraintValue,
-                                                                                    String fieldName,
-                                                                                    ValueFactories factories,
-                                                                                    CaseOperation caseOperation ) {
+    public static Query createQueryForNodesWithFieldLessThanOrEqualTo( String constraintValue,
+                                                                       String fieldName,
+                                                                       ValueFactories factories,
+                                                                       CaseOperation caseOperation ) {
+        if (caseOperation == CaseOperations.AS_IS) {
+            // The terms are ordered the same way as the strings, so we can use a range of terms ...
+            return new TermRangeQuery(fieldName, null, constraintValue, false, true);
+        }
         return new CompareStringQuery(fieldName, constraintValue, factories.getStringFactory(), factories.getStringFactory(),
                                       IS_LESS_THAN_OR_EQUAL_TO, caseOperation);
     }
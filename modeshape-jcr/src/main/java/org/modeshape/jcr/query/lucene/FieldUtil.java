@@ -25,6 +25,8 @@ package org.modeshape.jcr.query.lucene;
 
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import org.modeshape.jcr.value.Name;
+import org.modeshape.jcr.value.Path;
 
 /**
  * Utility for working with Lucene field values.
@@ -249,6 +251,100 @@ public class FieldUtil {
         return new BigDecimal(negate ? significand.negate() : significand, scale);
     }
 
+    /**
+     * The character used to separate the parts of the sortable forms of names, segments and paths. This character sorts before
+     * all characters that can appear in a local name or namespace URI.
+     */
+    protected static final char SORTABLE_SEPARATOR = '\u0001';
+
+    /**
+     * The number of digits used for the same-name-sibling index in the sortable form of a segment.
+     */
+    protected static final int SORTABLE_SNS_INDEX_LENGTH = 10;
+
+    private static final String LARGEST_SORTABLE_SNS_INDEX = "9999999999";
+
+    /**
+     * Creates a string representation of the supplied {@link Name} whose lexicographical order is the same as the
+     * {@link Name#compareTo(Name) natural order} of names, which compares the local names and then the namespace URIs. This makes
+     * it possible to use term ranges to find names that are less than or greater than a given name.
+     * 
+     * @param name the name; may not be null
+     * @return the sortable representation; never null
+     */
+    public static String nameToSortableString( Name name ) {
+        return appendSortable(new StringBuilder(), name).toString();
+    }
+
+    /**
+     * Creates a string representation of the supplied {@link Path.Segment} whose lexicographical order is the same as the
+     * {@link Path.Segment#compareTo(Path.Segment) natural order} of segments, which compares the names and then the
+     * same-name-sibling indexes.
+     * 
+     * @param segment the segment; may not be null
+     * @return the sortable representation; never null
+     * @see #nameToSortableString(Name)
+     */
+    public static String segmentToSortableString( Path.Segment segment ) {
+        return appendSortable(new StringBuilder(), segment).toString();
+    }
+
+    /**
+     * Creates a string representation of the supplied {@link Path} whose lexicographical order is the same as the
+     * {@link Path#compareTo(Path) natural order} of paths, which compares the segments in order and places ancestors before
+     * their descendants. The representation of the root path is an empty string.
+     * 
+     * @param path the path; may not be null
+     * @return the sortable representation; never null
+     * @see #segmentToSortableString(Path.Segment)
+     */
+    public static String pathToSortableString( Path path ) {
+        StringBuilder sb = new StringBuilder();
+        for (Path.Segment segment : path) {
+            appendSortable(sb, segment);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Get the sortable representation that is smaller than those of all segments with the supplied name and larger than those of
+     * all segments with smaller names.
+     * 
+     * @param name the name; may not be null
+     * @return the lower bound; never null
+     * @see #segmentToSortableString(Path.Segment)
+     */
+    public static String smallestSortableSegment( Name name ) {
+        return appendSortable(new StringBuilder(), name).append(SORTABLE_SEPARATOR).toString();
+    }
+
+    /**
+     * Get the sortable representation that is larger than those of all segments with the supplied name and smaller than those of
+     * all segments with larger names.
+     * 
+     * @param name the name; may not be null
+     * @return the upper bound; never null
+     * @see #segmentToSortableString(Path.Segment)
+     */
+    public static String largestSortableSegment( Name name ) {
+        return appendSortable(new StringBuilder(), name).append(SORTABLE_SEPARATOR).append(LARGEST_SORTABLE_SNS_INDEX).toString();
+    }
+
+    private static StringBuilder appendSortable( StringBuilder sb,
+                                                 Name name ) {
+        return sb.append(name.getLocalName()).append(SORTABLE_SEPARATOR).append(name.getNamespaceUri());
+    }
+
+    private static StringBuilder appendSortable( StringBuilder sb,
+                                                 Path.Segment segment ) {
+        appendSortable(sb, segment.getName()).append(SORTABLE_SEPARATOR);
+        String index = Integer.toString(segment.getIndex());
+        for (int i = index.length(); i < SORTABLE_SNS_INDEX_LENGTH; ++i) {
+            sb.append('0');
+        }
+        return sb.append(index);
+    }
+
     /**
      * Compute the "negated" string, which replaces the digits (0 becomes 9, 1 becomes 8, ... and 9 becomes 0).
      * 
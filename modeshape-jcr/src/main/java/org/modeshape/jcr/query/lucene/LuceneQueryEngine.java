@@ -52,6 +52,8 @@ import org.modeshape.jcr.query.QueryResults;
 import org.modeshape.jcr.query.QueryResults.Columns;
 import org.modeshape.jcr.query.lucene.basic.BasicLuceneSchema;
 import org.modeshape.jcr.query.lucene.basic.ExistsTupleCollector;
+import org.modeshape.jcr.query.lucene.basic.LimitTupleCollector;
+import org.modeshape.jcr.query.lucene.basic.TopKTupleCollector;
 import org.modeshape.jcr.query.model.Constraint;
 import org.modeshape.jcr.query.model.FullTextSearchScore;
 import org.modeshape.jcr.query.model.QueryCommand;
@@ -59,6 +61,7 @@ import org.modeshape.jcr.query.optimize.Optimizer;
 import org.modeshape.jcr.query.plan.PlanHints;
 import org.modeshape.jcr.query.plan.PlanNode;
 import org.modeshape.jcr.query.plan.Planner;
+import org.modeshape.jcr.query.plan.QueryPlanCache;
 import org.modeshape.jcr.query.process.AbstractAccessComponent;
 import org.modeshape.jcr.query.process.ProcessingComponent;
 import org.modeshape.jcr.query.process.QueryEngine;
@@ -88,6 +91,7 @@ public class LuceneQueryEngine extends QueryEngine {
      * @param searchFactory the search factory for accessing the indexes
      * @param version the Lucene version used by the indexes
      * @param enableFullTextSearch true if full-text searching is enabled, or false otherwise
+     * @param planCache the cache of optimized plans, or null if plans should not be cached
      */
     public LuceneQueryEngine( ExecutionContext context,
                               String repositoryName,
@@ -95,8 +99,9 @@ public class LuceneQueryEngine extends QueryEngine {
                               Optimizer optimizer,
                               SearchFactoryImplementor searchFactory,
                               Version version,
-                              boolean enableFullTextSearch ) {
-        super(planner, optimizer, new LuceneQueryProcessor(repositoryName, searchFactory));
+                              boolean enableFullTextSearch,
+                              QueryPlanCache planCache ) {
+        super(planner, optimizer, new LuceneQueryProcessor(repositoryName, searchFactory), planCache);
         this.repositoryContext = context;
         // this.repositoryName = repositoryName;
         this.schema = new BasicLuceneSchema(this.repositoryContext, searchFactory, version, enableFullTextSearch);
@@ -329,6 +334,24 @@ public class LuceneQueryEngine extends QueryEngine {
                             // This only happens when the query has a row limit of 1, and we've found a tuple.
                             // So we should eat this exception and just continue ...
                         }
+                    } else if (sortingComparator != null && limit.hasRowLimited() && limit.getRowLimit() > 0
+                               && queries.getPostProcessingConstraints() == null) {
+                        // The ordering and limit were pushed down and all of the constraints were pushed down, so only keep
+                        // the top tuples in a bounded priority queue rather than collecting all of them ...
+                        int maxTuples = (int)Math.min(Integer.MAX_VALUE, (long)limit.getOffset() + limit.getRowLimit());
+                        collector = new TopKTupleCollector(collector, sortingComparator, maxTuples);
+                        searcher.search(pushDownQuery, collector);
+                    } else if (sortingComparator == null && limit.hasRowLimited() && limit.getRowLimit() > 0
+                               && queries.getPostProcessingConstraints() == null) {
+                        // All of the constraints were pushed down, so every collected tuple will be returned. Therefore stop
+                        // the search as soon as we have all the tuples that could possibly be returned ...
+                        int maxTuples = (int)Math.min(Integer.MAX_VALUE, (long)limit.getOffset() + limit.getRowLimit());
+                        collector = new LimitTupleCollector(collector, maxTuples);
+                        try {
+                            searcher.search(pushDownQuery, collector);
+                        } catch (LimitTupleCollector.CompletedException e) {
+                            // We've found enough tuples, so we should eat this exception and just continue ...
+                        }
                     } else {
                         searcher.search(pushDownQuery, collector);
                     }
@@ -360,14 +383,20 @@ public class LuceneQueryEngine extends QueryEngine {
                     tuples = selector.execute();
                 }
 
+                // Sort the tuples if the ordering was pushed down (the sort is cheap if they're already sorted) ...
+                if (sortingComparator != null && tuples.size() > 1) {
+                    Collections.sort(tuples, sortingComparator);
+                }
+
                 // Limit the tuples ...
                 if (!limit.isUnlimited()) {
                     int firstIndex = limit.getOffset();
                     int maxRows = Math.min(tuples.size(), limit.getRowLimit());
                     if (firstIndex > 0) {
                         // There is an offset and we're limiting the number of rows ...
-                        if (firstIndex > tuples.size()) {
-                            tuples.clear(); // not enough rows, so return no tuples
+                        maxRows = (int)Math.min(tuples.size(), (long)firstIndex + limit.getRowLimit());
+                        if (firstIndex >= tuples.size()) {
+                            tuples = Collections.emptyList(); // not enough rows, so return no tuples
                         } else {
                             // Find the tuples for the range of rows we're interested in ...
                             tuples = tuples.subList(firstIndex, maxRows);
@@ -39,11 +39,11 @@ import org.apache.lucene.search.NumericRangeQuery;
 import org.apache.lucene.search.PrefixQuery;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TermRangeQuery;
 import org.apache.lucene.search.regex.JavaUtilRegexCapabilities;
 import org.apache.lucene.search.regex.RegexQuery;
 import org.apache.lucene.util.Version;
 import org.hibernate.search.SearchFactory;
-import org.modeshape.jcr.api.JcrConstants;
 import org.modeshape.jcr.api.query.qom.NodeDepth;
 import org.modeshape.jcr.api.query.qom.NodePath;
 import org.modeshape.jcr.api.query.qom.Operator;
@@ -51,7 +51,6 @@ import org.modeshape.jcr.api.value.DateTime;
 import org.modeshape.jcr.query.QueryContext;
 import org.modeshape.jcr.query.lucene.CaseOperations;
 import org.modeshape.jcr.query.lucene.CaseOperations.CaseOperation;
-import org.modeshape.jcr.query.lucene.CompareLengthQuery;
 import org.modeshape.jcr.query.lucene.CompareNameQuery;
 import org.modeshape.jcr.query.lucene.ComparePathQuery;
 import org.modeshape.jcr.query.lucene.CompareStringQuery;
@@ -62,6 +61,7 @@ import org.modeshape.jcr.query.lucene.basic.NodeInfoIndex.FieldName;
 import org.modeshape.jcr.query.model.ReferenceValue;
 import org.modeshape.jcr.query.model.SelectorName;
 import org.modeshape.jcr.query.validate.Schemata;
+import org.modeshape.jcr.value.Name;
 import org.modeshape.jcr.value.Path;
 import org.modeshape.jcr.value.PropertyType;
 import org.modeshape.jcr.value.ValueFormatException;
@@ -196,53 +196,31 @@ public class BasicLuceneQueryFactory extends LuceneQueryFactory {
         String field = stringFactory.create(propertyValue.getPropertyName());
         long length = factories.getLongFactory().create(value).longValue();
         if (length <= 0L) return new MatchNoneQuery();
-        if (JcrConstants.JCR_NAME.equals(field) || JcrConstants.JCR_PATH.equals(field)
-            || JcrConstants.MODE_LOCAL_NAME.equals(field)) {
-            // We can actually use the stored field ...
-            switch (operator) {
-                case EQUAL_TO:
-                    return CompareLengthQuery.createQueryForNodesWithFieldEqualTo(length, field, factories);
-                case NOT_EQUAL_TO:
-                    return CompareLengthQuery.createQueryForNodesWithFieldNotEqualTo(length, field, factories);
-                case GREATER_THAN:
-                    return CompareLengthQuery.createQueryForNodesWithFieldGreaterThan(length, field, factories);
-                case GREATER_THAN_OR_EQUAL_TO:
-                    return CompareLengthQuery.createQueryForNodesWithFieldGreaterThanOrEqualTo(length, field, factories);
-                case LESS_THAN:
-                    return CompareLengthQuery.createQueryForNodesWithFieldLessThan(length, field, factories);
-                case LESS_THAN_OR_EQUAL_TO:
-                    return CompareLengthQuery.createQueryForNodesWithFieldLessThanOrEqualTo(length, field, factories);
-                case LIKE:
-                    // This is not allowed ...
-                    assert false;
-                    break;
-            }
-        } else {
-            // We should use the LONG field that begins with ':len:' ...
-            field = FieldName.LENGTH_PREFIX + field;
-            switch (operator) {
-                case EQUAL_TO:
-                    return NumericRangeQuery.newLongRange(field, length, length, true, true);
-                case NOT_EQUAL_TO:
-                    Query upper = NumericRangeQuery.newLongRange(field, length, Long.MAX_VALUE, false, false);
-                    Query lower = NumericRangeQuery.newLongRange(field, 0L, length, true, false);
-                    BooleanQuery query = new BooleanQuery();
-                    query.add(new BooleanClause(upper, Occur.SHOULD));
-                    query.add(new BooleanClause(lower, Occur.SHOULD));
-                    return query;
-                case GREATER_THAN:
-                    return NumericRangeQuery.newLongRange(field, length, Long.MAX_VALUE, false, false);
-                case GREATER_THAN_OR_EQUAL_TO:
-                    return NumericRangeQuery.newLongRange(field, length, Long.MAX_VALUE, true, false);
-                case LESS_THAN:
-                    return NumericRangeQuery.newLongRange(field, 0L, length, true, false);
-                case LESS_THAN_OR_EQUAL_TO:
-                    return NumericRangeQuery.newLongRange(field, 0L, length, true, true);
-                case LIKE:
-                    // This is not allowed ...
-                    assert false;
-                    break;
-            }
+        // We should use the LONG field that begins with ':len:', which for the node's name, local name and path
+        // is one of the fields that are always indexed ...
+        field = FieldName.LENGTH_PREFIX + field;
+        switch (operator) {
+            case EQUAL_TO:
+                return NumericRangeQuery.newLongRange(field, length, length, true, true);
+            case NOT_EQUAL_TO:
+                Query upper = NumericRangeQuery.newLongRange(field, length, Long.MAX_VALUE, false, false);
+                Query lower = NumericRangeQuery.newLongRange(field, 0L, length, true, false);
+                BooleanQuery query = new BooleanQuery();
+                query.add(new BooleanClause(upper, Occur.SHOULD));
+                query.add(new BooleanClause(lower, Occur.SHOULD));
+                return query;
+            case GREATER_THAN:
+                return NumericRangeQuery.newLongRange(field, length, Long.MAX_VALUE, false, false);
+            case GREATER_THAN_OR_EQUAL_TO:
+                return NumericRangeQuery.newLongRange(field, length, Long.MAX_VALUE, true, false);
+            case LESS_THAN:
+                return NumericRangeQuery.newLongRange(field, 0L, length, true, false);
+            case LESS_THAN_OR_EQUAL_TO:
+                return NumericRangeQuery.newLongRange(field, 0L, length, true, true);
+            case LIKE:
+                // This is not allowed ...
+                assert false;
+                break;
         }
         return null;
     }
@@ -749,25 +727,10 @@ public class BasicLuceneQueryFactory extends LuceneQueryFactory {
             case DECIMAL:
                 BigDecimal lowerDecimal = factories.getDecimalFactory().create(lowerValue);
                 BigDecimal upperDecimal = factories.getDecimalFactory().create(upperValue);
-                CaseOperation caseOp = CaseOperations.AS_IS; // decimals are stored the same way regardless
+                // Decimals are stored as strings that sort in numeric order, so use a single range of terms ...
                 String lsv = FieldUtil.decimalToString(lowerDecimal);
                 String usv = FieldUtil.decimalToString(upperDecimal);
-                Query lower = null;
-                if (includesLower) {
-                    lower = CompareStringQuery.createQueryForNodesWithFieldGreaterThanOrEqualTo(lsv, field, factories, caseOp);
-                } else {
-                    lower = CompareStringQuery.createQueryForNodesWithFieldGreaterThan(lsv, field, factories, caseOp);
-                }
-                Query upper = null;
-                if (includesUpper) {
-                    upper = CompareStringQuery.createQueryForNodesWithFieldLessThanOrEqualTo(usv, field, factories, caseOp);
-                } else {
-                    upper = CompareStringQuery.createQueryForNodesWithFieldLessThan(usv, field, factories, caseOp);
-                }
-                BooleanQuery query = new BooleanQuery();
-                query.add(lower, Occur.MUST);
-                query.add(upper, Occur.MUST);
-                return query;
+                return new TermRangeQuery(field, lsv, usv, includesLower, includesUpper);
             case OBJECT:
             case URI:
             case UUID:
@@ -805,6 +768,82 @@ public class BasicLuceneQueryFactory extends LuceneQueryFactory {
         return sb.toString();
     }
 
+    /**
+     * Create a query that finds the nodes whose path is within the range defined by the supplied path and operator. The
+     * comparison uses the {@link FieldName#PATH_ORDER sortable form} of the paths, which orders the terms in the same way that
+     * the paths themselves are ordered.
+     * 
+     * @param path the path; may not be null
+     * @param operator the range operator; must be one of {@link Operator#GREATER_THAN}, {@link Operator#GREATER_THAN_OR_EQUAL_TO},
+     *        {@link Operator#LESS_THAN} or {@link Operator#LESS_THAN_OR_EQUAL_TO}
+     * @return the query; never null
+     */
+    protected Query findNodesWithPathInRange( Path path,
+                                              Operator operator ) {
+        String value = FieldUtil.pathToSortableString(path);
+        switch (operator) {
+            case GREATER_THAN:
+                return new TermRangeQuery(FieldName.PATH_ORDER, value, null, false, false);
+            case GREATER_THAN_OR_EQUAL_TO:
+                return new TermRangeQuery(FieldName.PATH_ORDER, value, null, true, false);
+            case LESS_THAN:
+                return new TermRangeQuery(FieldName.PATH_ORDER, null, value, false, false);
+            case LESS_THAN_OR_EQUAL_TO:
+                return new TermRangeQuery(FieldName.PATH_ORDER, null, value, false, true);
+            default:
+                assert false;
+        }
+        return new MatchNoneQuery();
+    }
+
+    /**
+     * Create a query that finds the nodes whose name is within the range defined by the supplied segment and operator. The
+     * comparison uses the {@link FieldName#NODE_NAME_ORDER sortable form} of the names. When the SNS index is not to be
+     * included, all same-name-siblings are treated as having the same name.
+     * 
+     * @param segment the path segment containing the name and SNS index; may not be null
+     * @param operator the range operator; must be one of {@link Operator#GREATER_THAN}, {@link Operator#GREATER_THAN_OR_EQUAL_TO},
+     *        {@link Operator#LESS_THAN} or {@link Operator#LESS_THAN_OR_EQUAL_TO}
+     * @param includeSns true if the SNS index should be considered, or false if only the name should be compared
+     * @return the query; never null
+     */
+    protected Query findNodesWithNameInRange( Path.Segment segment,
+                                              Operator operator,
+                                              boolean includeSns ) {
+        String field = FieldName.NODE_NAME_ORDER;
+        if (includeSns) {
+            String value = FieldUtil.segmentToSortableString(segment);
+            switch (operator) {
+                case GREATER_THAN:
+                    return new TermRangeQuery(field, value, null, false, false);
+                case GREATER_THAN_OR_EQUAL_TO:
+                    return new TermRangeQuery(field, value, null, true, false);
+                case LESS_THAN:
+                    return new TermRangeQuery(field, null, value, false, false);
+                case LESS_THAN_OR_EQUAL_TO:
+                    return new TermRangeQuery(field, null, value, false, true);
+                default:
+                    assert false;
+            }
+            return new MatchNoneQuery();
+        }
+        // Otherwise, bracket all of the same-name-siblings ...
+        Name name = segment.getName();
+        switch (operator) {
+            case GREATER_THAN:
+                return new TermRangeQuery(field, FieldUtil.largestSortableSegment(name), null, false, false);
+            case GREATER_THAN_OR_EQUAL_TO:
+                return new TermRangeQuery(field, FieldUtil.smallestSortableSegment(name), null, true, false);
+            case LESS_THAN:
+                return new TermRangeQuery(field, null, FieldUtil.smallestSortableSegment(name), false, false);
+            case LESS_THAN_OR_EQUAL_TO:
+                return new TermRangeQuery(field, null, FieldUtil.largestSortableSegment(name), false, true);
+            default:
+                assert false;
+        }
+        return new MatchNoneQuery();
+    }
+
     @Override
     protected Query findNodesWith( SelectorName selectorName,
                                    NodePath nodePath,
@@ -840,21 +879,25 @@ public class BasicLuceneQueryFactory extends LuceneQueryFactory {
                 }
                 break;
             case GREATER_THAN:
+                if (caseOperation == CaseOperations.AS_IS) return findNodesWithPathInRange(pathValue, operator);
                 query = ComparePathQuery.createQueryForNodesWithPathGreaterThan(pathValue,
                                                                                 FieldName.PATH,
                                                                                 factories,
                                                                                 caseOperation);
                 break;
             case GREATER_THAN_OR_EQUAL_TO:
+                if (caseOperation == CaseOperations.AS_IS) return findNodesWithPathInRange(pathValue, operator);
                 query = ComparePathQuery.createQueryForNodesWithPathGreaterThanOrEqualTo(pathValue,
                                                                                          FieldName.PATH,
                                                                                          factories,
                                                                                          caseOperation);
                 break;
             case LESS_THAN:
+                if (caseOperation == CaseOperations.AS_IS) return findNodesWithPathInRange(pathValue, operator);
                 query = ComparePathQuery.createQueryForNodesWithPathLessThan(pathValue, FieldName.PATH, factories, caseOperation);
                 break;
             case LESS_THAN_OR_EQUAL_TO:
+                if (caseOperation == CaseOperations.AS_IS) return findNodesWithPathInRange(pathValue, operator);
                 query = ComparePathQuery.createQueryForNodesWithPathLessThanOrEqualTo(pathValue,
                                                                                       FieldName.PATH,
                                                                                       factories,
@@ -899,6 +942,10 @@ public class BasicLuceneQueryFactory extends LuceneQueryFactory {
                 query = not(query);
                 break;
             case GREATER_THAN:
+                if (caseOperation == CaseOperations.AS_IS) {
+                    query = findNodesWithNameInRange(segment, operator, includeSns);
+                    break;
+                }
                 query = CompareNameQuery.createQueryForNodesWithNameGreaterThan(segment,
                                                                                 FieldName.NODE_NAME,
                                                                                 FieldName.SNS_INDEX,
@@ -907,6 +954,10 @@ public class BasicLuceneQueryFactory extends LuceneQueryFactory {
                                                                                 includeSns);
                 break;
             case GREATER_THAN_OR_EQUAL_TO:
+                if (caseOperation == CaseOperations.AS_IS) {
+                    query = findNodesWithNameInRange(segment, operator, includeSns);
+                    break;
+                }
                 query = CompareNameQuery.createQueryForNodesWithNameGreaterThanOrEqualTo(segment,
                                                                                          FieldName.NODE_NAME,
                                                                                          FieldName.SNS_INDEX,
@@ -915,6 +966,10 @@ public class BasicLuceneQueryFactory extends LuceneQueryFactory {
                                                                                          includeSns);
                 break;
             case LESS_THAN:
+                if (caseOperation == CaseOperations.AS_IS) {
+                    query = findNodesWithNameInRange(segment, operator, includeSns);
+                    break;
+                }
                 query = CompareNameQuery.createQueryForNodesWithNameLessThan(segment,
                                                                              FieldName.NODE_NAME,
                                                                              FieldName.SNS_INDEX,
@@ -923,6 +978,10 @@ public class BasicLuceneQueryFactory extends LuceneQueryFactory {
                                                                              includeSns);
                 break;
             case LESS_THAN_OR_EQUAL_TO:
+                if (caseOperation == CaseOperations.AS_IS) {
+                    query = findNodesWithNameInRange(segment, operator, includeSns);
+                    break;
+                }
                 query = CompareNameQuery.createQueryForNodesWithNameLessThanOrEqualTo(segment,
                                                                                       FieldName.NODE_NAME,
                                                                                       FieldName.SNS_INDEX,
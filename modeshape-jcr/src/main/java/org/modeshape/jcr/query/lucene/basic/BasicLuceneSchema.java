@@ -173,12 +173,14 @@ public class BasicLuceneSchema implements LuceneSchema {
                                        NodeTypeSchemata schemata ) {
         String pathStr = null;
         String name = null;
+        String nameOrder = null;
         String localName = null;
         int depth = 0;
         int snsIndex = 1;
         if (path.isRoot()) {
             pathStr = "/";
             name = "";
+            nameOrder = "";
             localName = "";
             depth = 0;
         } else {
@@ -186,10 +188,14 @@ public class BasicLuceneSchema implements LuceneSchema {
             Path.Segment segment = path.getLastSegment();
             Name nodeName = segment.getName();
             name = stringFrom(nodeName);
+            nameOrder = FieldUtil.segmentToSortableString(segment);
             localName = nodeName.getLocalName();
             depth = path.size();
             snsIndex = segment.getIndex();
         }
+        // The sortable forms and lengths are used for range queries on the path and name ...
+        String pathOrder = FieldUtil.pathToSortableString(path);
+        long pathLength = pathStr.length();
 
         // Get the schemata tables for the primary type and mixin types ...
         IndexRules rules = schemata.getIndexRules();
@@ -233,7 +239,8 @@ public class BasicLuceneSchema implements LuceneSchema {
         }
 
         // Return the node information object ...
-        return new NodeInfo(id, workspace, pathStr, name, localName, snsIndex, depth, dynamicField);
+        return new NodeInfo(id, workspace, pathStr, pathOrder, name, localName, nameOrder, snsIndex, depth, name.length(),
+                            localName.length(), pathLength, dynamicField);
     }
 
     /**
@@ -26,7 +26,6 @@ package org.modeshape.jcr.query.lucene.basic;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
 import org.apache.lucene.document.Document;
@@ -77,7 +76,7 @@ public class BasicTupleCollector extends TupleCollector {
 
     private final QueryContext queryContext;
     private final Columns columns;
-    private final LinkedList<Object[]> tuples = new LinkedList<Object[]>();
+    private final List<Object[]> tuples = new ArrayList<Object[]>();
     private final RepositoryPathCache repositoryPathCache;
     private final Name[] columnNames;
     private final int numValues;
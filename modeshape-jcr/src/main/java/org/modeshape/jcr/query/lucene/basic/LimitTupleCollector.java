@@ -0,0 +1,95 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ * See the AUTHORS.txt file in the distribution for a full listing of 
+ * individual contributors.
+ *
+ * ModeShape is free software. Unless otherwise indicated, all code in ModeShape
+ * is licensed to you under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ * 
+ * ModeShape is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.modeshape.jcr.query.lucene.basic;
+
+import java.io.IOException;
+import java.util.List;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.Scorer;
+import org.modeshape.jcr.query.lucene.LuceneQueryEngine.TupleCollector;
+
+/**
+ * A special TupleCollector implementation that will terminate the search as soon as the wrapped collector has collected the
+ * maximum number of tuples. This is used when the access query has a row limit and all of the constraints were pushed down to
+ * Lucene, so that no more tuples are materialized than will be returned.
+ */
+public class LimitTupleCollector extends TupleCollector {
+
+    private final TupleCollector collector;
+    private final int maxTuples;
+
+    /**
+     * Create a LimitTupleCollector wrapper over another {@link Collector}, where the wrapper stops after the wrapped collector has
+     * collected the supplied number of tuples.
+     * 
+     * @param collector the wrapped {@link Collector}
+     * @param maxTuples the maximum number of tuples that are to be collected; must be positive
+     */
+    public LimitTupleCollector( final TupleCollector collector,
+                                int maxTuples ) {
+        this.collector = collector;
+        this.maxTuples = maxTuples;
+        assert this.maxTuples > 0;
+    }
+
+    @SuppressWarnings( "synthetic-access" )
+    @Override
+    public float doCollect( int doc ) throws IOException {
+        if (collector.getTuples().size() >= maxTuples) {
+            throw new CompletedException(maxTuples);
+        }
+        return this.collector.doCollect(doc);
+    }
+
+    /** Thrown when the maximum number of tuples have been collected. */
+    public static class CompletedException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private CompletedException( int maxTuples ) {
+            super("Limit collector completed with " + maxTuples + " found tuples");
+        }
+    }
+
+    @Override
+    public List<Object[]> getTuples() {
+        return collector.getTuples();
+    }
+
+    @Override
+    public void setScorer( Scorer scorer ) throws IOException {
+        collector.setScorer(scorer);
+    }
+
+    @Override
+    public void setNextReader( IndexReader reader,
+                               int docBase ) throws IOException {
+        collector.setNextReader(reader, docBase);
+    }
+
+    @Override
+    public boolean acceptsDocsOutOfOrder() {
+        return collector.acceptsDocsOutOfOrder();
+    }
+}
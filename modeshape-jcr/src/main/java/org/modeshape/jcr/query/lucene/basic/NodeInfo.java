@@ -53,9 +53,15 @@ public class NodeInfo {
     @Field( name = NodeInfoIndex.FieldName.PATH, analyze = Analyze.NO, store = Store.YES, index = Index.YES )
     private final String path;
 
+    @Field( name = NodeInfoIndex.FieldName.PATH_ORDER, analyze = Analyze.NO, store = Store.NO, index = Index.YES )
+    private final String pathOrder;
+
     @Field( name = NodeInfoIndex.FieldName.NODE_NAME, analyze = Analyze.NO, store = Store.YES, index = Index.YES )
     private final String name;
 
+    @Field( name = NodeInfoIndex.FieldName.NODE_NAME_ORDER, analyze = Analyze.NO, store = Store.NO, index = Index.YES )
+    private final String nameOrder;
+
     @Field( name = NodeInfoIndex.FieldName.LOCAL_NAME, analyze = Analyze.NO, store = Store.YES, index = Index.YES )
     private final String localName;
 
@@ -67,6 +73,18 @@ public class NodeInfo {
     @NumericField( forField = NodeInfoIndex.FieldName.DEPTH )
     private final int depth;
 
+    @Field( name = NodeInfoIndex.FieldName.NODE_NAME_LENGTH, analyze = Analyze.NO, store = Store.NO, index = Index.YES )
+    @NumericField( forField = NodeInfoIndex.FieldName.NODE_NAME_LENGTH )
+    private final long nameLength;
+
+    @Field( name = NodeInfoIndex.FieldName.LOCAL_NAME_LENGTH, analyze = Analyze.NO, store = Store.NO, index = Index.YES )
+    @NumericField( forField = NodeInfoIndex.FieldName.LOCAL_NAME_LENGTH )
+    private final long localNameLength;
+
+    @Field( name = NodeInfoIndex.FieldName.PATH_LENGTH, analyze = Analyze.NO, store = Store.NO, index = Index.YES )
+    @NumericField( forField = NodeInfoIndex.FieldName.PATH_LENGTH )
+    private final long pathLength;
+
     @Field( analyze = Analyze.YES, store = Store.NO )
     @FieldBridge( impl = DynamicFieldBridge.class )
     private final DynamicField firstDynamicField;
@@ -79,13 +97,34 @@ public class NodeInfo {
                      int snsIndex,
                      int depth,
                      DynamicField firstDynamicField ) {
+        this(nodeKey, workspace, path, null, localName, name, null, snsIndex, depth, 0L, 0L, 0L, firstDynamicField);
+    }
+
+    public NodeInfo( String nodeKey,
+                     String workspace,
+                     String path,
+                     String pathOrder,
+                     String localName,
+                     String name,
+                     String nameOrder,
+                     int snsIndex,
+                     int depth,
+                     long nameLength,
+                     long localNameLength,
+                     long pathLength,
+                     DynamicField firstDynamicField ) {
         this.id = nodeKey;
         this.workspace = workspace;
         this.path = path;
+        this.pathOrder = pathOrder;
         this.name = name;
+        this.nameOrder = nameOrder;
         this.localName = localName;
         this.snsIndex = snsIndex;
         this.depth = depth;
+        this.nameLength = nameLength;
+        this.localNameLength = localNameLength;
+        this.pathLength = pathLength;
         this.firstDynamicField = firstDynamicField;
     }
 
@@ -69,6 +69,13 @@ public class NodeInfoIndex {
          * </p>
          */
         public static final String PATH = "::pth";
+        /**
+         * The name of the {@link Field string field} used to store the path of the node in a sortable form, which is ordered in
+         * the same way as {@link Path paths} and can be used in term range queries for path comparisons.
+         * 
+         * @see org.modeshape.jcr.query.lucene.FieldUtil#pathToSortableString(Path)
+         */
+        public static final String PATH_ORDER = "::pto";
         /**
          * The name of the {@link Field string field} used to store the node {@link Name name} in <i>qualified form</i>, using the
          * <i>durable prefix</i> for the namespace used in the name.
@@ -86,6 +93,14 @@ public class NodeInfoIndex {
          * </p>
          */
         public static final String NODE_NAME = "::nam";
+        /**
+         * The name of the {@link Field string field} used to store the last segment of the node's path (that is, the node name
+         * and same-name-sibling index) in a sortable form, which is ordered in the same way as {@link Path.Segment segments} and
+         * can be used in term range queries for name comparisons.
+         * 
+         * @see org.modeshape.jcr.query.lucene.FieldUtil#segmentToSortableString(Path.Segment)
+         */
+        public static final String NODE_NAME_ORDER = "::nmo";
         /**
          * The name of the {@link Field string field} used to store the {@link Name#getLocalName() local name} of the node (which
          * excludes the namespace component). This makes it easier to search for the nodes based upon local name criteria.
@@ -127,6 +142,21 @@ public class NodeInfoIndex {
          */
         public static final String LENGTH_PREFIX = ":len:";
 
+        /**
+         * The name of the {@link NumericField numeric field} used to store the length of the node's name.
+         */
+        public static final String NODE_NAME_LENGTH = LENGTH_PREFIX + "jcr:name";
+
+        /**
+         * The name of the {@link NumericField numeric field} used to store the length of the node's local name.
+         */
+        public static final String LOCAL_NAME_LENGTH = LENGTH_PREFIX + "mode:localName";
+
+        /**
+         * The name of the {@link NumericField numeric field} used to store the length of the node's path.
+         */
+        public static final String PATH_LENGTH = LENGTH_PREFIX + "jcr:path";
+
         /**
          * The prefix of the name of the {@link Field string field} used to store the SHA-1 of the binary values for the property.
          * Note that the prefix uses a single leading ':', which means that it cannot result in the same field name for a
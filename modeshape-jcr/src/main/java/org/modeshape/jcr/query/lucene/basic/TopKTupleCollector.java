@@ -0,0 +1,147 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ * See the AUTHORS.txt file in the distribution for a full listing of 
+ * individual contributors.
+ *
+ * ModeShape is free software. Unless otherwise indicated, all code in ModeShape
+ * is licensed to you under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ * 
+ * ModeShape is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.modeshape.jcr.query.lucene.basic;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.Scorer;
+import org.modeshape.common.annotation.NotThreadSafe;
+import org.modeshape.jcr.query.lucene.LuceneQueryEngine.TupleCollector;
+
+/**
+ * A special TupleCollector implementation that keeps only the first K tuples (as defined by a comparator) of all the tuples found
+ * by the wrapped collector. The tuples are kept in a bounded priority queue, so that the memory required is proportional to K
+ * rather than to the number of matching documents, and collecting N documents is O(N log K).
+ * <p>
+ * Tuples that compare as equal are kept in the order in which they were collected, so that the result is the same as that of
+ * sorting all of the tuples with a stable sort and then taking the first K.
+ * </p>
+ */
+@NotThreadSafe
+public class TopKTupleCollector extends TupleCollector {
+
+    private final TupleCollector collector;
+    private final int maxTuples;
+    private final Comparator<RankedTuple> comparator;
+    private final PriorityQueue<RankedTuple> queue;
+    private long sequence = 0L;
+
+    /**
+     * Create a TopKTupleCollector wrapper over another {@link Collector}. The wrapped collector's {@link #getTuples() tuple list}
+     * must be modifiable, since this collector removes each tuple from that list as soon as it is collected.
+     * 
+     * @param collector the wrapped {@link Collector}
+     * @param comparator the comparator that defines the order of the tuples; may not be null
+     * @param maxTuples the maximum number of tuples that are to be kept; must be positive
+     */
+    public TopKTupleCollector( final TupleCollector collector,
+                               final Comparator<Object[]> comparator,
+                               int maxTuples ) {
+        this.collector = collector;
+        this.maxTuples = maxTuples;
+        assert this.maxTuples > 0;
+        assert comparator != null;
+        this.comparator = new Comparator<RankedTuple>() {
+            @Override
+            public int compare( RankedTuple ranked1,
+                                RankedTuple ranked2 ) {
+                int diff = comparator.compare(ranked1.tuple, ranked2.tuple);
+                if (diff != 0) return diff;
+                return ranked1.sequence < ranked2.sequence ? -1 : (ranked1.sequence == ranked2.sequence ? 0 : 1);
+            }
+        };
+        // The head of the queue is the "largest" tuple, so that it can be evicted when a "smaller" tuple is found ...
+        this.queue = new PriorityQueue<RankedTuple>(Math.min(maxTuples, 1024) + 1, Collections.reverseOrder(this.comparator));
+    }
+
+    @Override
+    public float doCollect( int doc ) throws IOException {
+        float score = this.collector.doCollect(doc);
+        List<Object[]> collected = this.collector.getTuples();
+        if (!collected.isEmpty()) {
+            // Take the tuple away from the wrapped collector so that it never holds more than one tuple ...
+            Object[] tuple = collected.remove(collected.size() - 1);
+            RankedTuple ranked = new RankedTuple(tuple, sequence++);
+            if (queue.size() < maxTuples) {
+                queue.add(ranked);
+            } else if (comparator.compare(ranked, queue.peek()) < 0) {
+                queue.poll();
+                queue.add(ranked);
+            }
+        }
+        return score;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The tuples are returned in the order defined by the comparator.
+     * </p>
+     * 
+     * @see org.modeshape.jcr.query.lucene.LuceneQueryEngine.TupleCollector#getTuples()
+     */
+    @Override
+    public List<Object[]> getTuples() {
+        List<RankedTuple> ranked = new ArrayList<RankedTuple>(queue);
+        Collections.sort(ranked, comparator);
+        List<Object[]> tuples = new ArrayList<Object[]>(ranked.size());
+        for (RankedTuple rankedTuple : ranked) {
+            tuples.add(rankedTuple.tuple);
+        }
+        return tuples;
+    }
+
+    @Override
+    public void setScorer( Scorer scorer ) throws IOException {
+        collector.setScorer(scorer);
+    }
+
+    @Override
+    public void setNextReader( IndexReader reader,
+                               int docBase ) throws IOException {
+        collector.setNextReader(reader, docBase);
+    }
+
+    @Override
+    public boolean acceptsDocsOutOfOrder() {
+        return collector.acceptsDocsOutOfOrder();
+    }
+
+    protected static final class RankedTuple {
+        protected final Object[] tuple;
+        protected final long sequence;
+
+        protected RankedTuple( Object[] tuple,
+                               long sequence ) {
+            this.tuple = tuple;
+            this.sequence = sequence;
+        }
+    }
+}
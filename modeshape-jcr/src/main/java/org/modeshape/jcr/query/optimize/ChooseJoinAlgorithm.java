@@ -33,6 +33,7 @@ import org.modeshape.jcr.query.model.DescendantNodeJoinCondition;
 import org.modeshape.jcr.query.model.DynamicOperand;
 import org.modeshape.jcr.query.model.EquiJoinCondition;
 import org.modeshape.jcr.query.model.JoinCondition;
+import org.modeshape.jcr.query.model.JoinType;
 import org.modeshape.jcr.query.model.Order;
 import org.modeshape.jcr.query.model.Ordering;
 import org.modeshape.jcr.query.model.PropertyValue;
@@ -105,6 +106,14 @@ import org.modeshape.jcr.query.plan.PlanNode.Type;
  * 
  * </li>
  * </ol>
+ * When the condition is an {@link EquiJoinCondition} or {@link SameNodeJoinCondition} and neither side of the join is already
+ * sorted, the {@link #USE_BEST_JOIN_ALGORITHM} instance will instead use the {@link JoinAlgorithm#HASH hash} algorithm, which
+ * requires neither sorting nor duplicate removal.
+ * </p>
+ * <p>
+ * Finally, the {@link #USE_NESTED_OR_HASH_JOIN_ALGORITHM} instance will use the {@link JoinAlgorithm#HASH hash} algorithm for all
+ * {@link EquiJoinCondition} and {@link SameNodeJoinCondition} joins (other than cross joins), and the
+ * {@link JoinAlgorithm#NESTED_LOOP nested-loop} algorithm for all other joins.
  * </p>
  */
 @Immutable
@@ -112,11 +121,19 @@ public class ChooseJoinAlgorithm implements OptimizerRule {
 
     public static final ChooseJoinAlgorithm USE_ONLY_NESTED_JOIN_ALGORITHM = new ChooseJoinAlgorithm(true);
     public static final ChooseJoinAlgorithm USE_BEST_JOIN_ALGORITHM = new ChooseJoinAlgorithm(false);
+    public static final ChooseJoinAlgorithm USE_NESTED_OR_HASH_JOIN_ALGORITHM = new ChooseJoinAlgorithm(true, true);
 
     private final boolean useOnlyNested;
+    private final boolean useHash;
 
     protected ChooseJoinAlgorithm( boolean useOnlyNested ) {
+        this(useOnlyNested, !useOnlyNested);
+    }
+
+    protected ChooseJoinAlgorithm( boolean useOnlyNested,
+                                   boolean useHash ) {
         this.useOnlyNested = useOnlyNested;
+        this.useHash = useHash;
     }
 
     @Override
@@ -126,6 +143,11 @@ public class ChooseJoinAlgorithm implements OptimizerRule {
         // For each of the JOIN nodes ...
         for (PlanNode joinNode : plan.findAllAtOrBelow(Type.JOIN)) {
             JoinCondition condition = joinNode.getProperty(Property.JOIN_CONDITION, JoinCondition.class);
+            if (useHash && canUseHashJoin(joinNode, condition) && (useOnlyNested || !isSorted(joinNode))) {
+                // Neither side needs to be sorted for a hash join ...
+                joinNode.setProperty(Property.JOIN_ALGORITHM, JoinAlgorithm.HASH);
+                continue;
+            }
             if (useOnlyNested) {
                 joinNode.setProperty(Property.JOIN_ALGORITHM, JoinAlgorithm.NESTED_LOOP);
                 break;
@@ -169,6 +191,36 @@ public class ChooseJoinAlgorithm implements OptimizerRule {
         return plan;
     }
 
+    /**
+     * Determine whether the supplied JOIN node can be processed with the {@link JoinAlgorithm#HASH hash} algorithm.
+     * 
+     * @param joinNode the JOIN node; never null
+     * @param condition the join condition; may be null
+     * @return true if the hash join algorithm can be used, or false otherwise
+     */
+    protected boolean canUseHashJoin( PlanNode joinNode,
+                                      JoinCondition condition ) {
+        if (joinNode.getProperty(Property.JOIN_TYPE, JoinType.class) == JoinType.CROSS) return false;
+        return condition instanceof EquiJoinCondition || condition instanceof SameNodeJoinCondition;
+    }
+
+    /**
+     * Determine whether either side of the supplied JOIN node already produces sorted tuples.
+     * 
+     * @param joinNode the JOIN node; never null
+     * @return true if the left or right side of the join is already sorted, or false otherwise
+     */
+    protected boolean isSorted( PlanNode joinNode ) {
+        for (PlanNode child : joinNode) {
+            PlanNode node = child;
+            while (node.isOneOf(Type.DUP_REMOVE, Type.PROJECT) && node.getChildCount() == 1) {
+                node = node.getFirstChild();
+            }
+            if (node.is(Type.SORT)) return true;
+        }
+        return false;
+    }
+
     protected void createOrderBysForJoinCondition( JoinCondition condition,
                                                    Set<SelectorName> leftSelectors,
                                                    List<Object> leftSortBy,
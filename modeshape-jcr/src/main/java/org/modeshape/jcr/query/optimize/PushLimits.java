@@ -0,0 +1,131 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ * See the AUTHORS.txt file in the distribution for a full listing of
+ * individual contributors.
+ *
+ * ModeShape is free software. Unless otherwise indicated, all code in ModeShape
+ * is licensed to you under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * ModeShape is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.modeshape.jcr.query.optimize;
+
+import java.util.LinkedList;
+import org.modeshape.common.annotation.Immutable;
+import org.modeshape.jcr.query.QueryContext;
+import org.modeshape.jcr.query.plan.PlanNode;
+import org.modeshape.jcr.query.plan.PlanNode.Property;
+import org.modeshape.jcr.query.plan.PlanNode.Type;
+
+/**
+ * An {@link OptimizerRule optimizer rule} that copies a LIMIT node into the ACCESS node directly below it, so that the access
+ * query never materializes more tuples than can possibly be returned. The LIMIT is only copied when the only nodes between the
+ * LIMIT and the ACCESS node are PROJECT nodes, since any SORT, DUP_REMOVE, JOIN or SET_OPERATION nodes require all of the tuples
+ * from the ACCESS node.
+ * <p>
+ * Because the original LIMIT node is left in place and will still apply any offset, the copied LIMIT node has no offset and a row
+ * count equal to the sum of the original offset and row count.
+ * </p>
+ * <p>
+ * Before:
+ *
+ * <pre>
+ *        LIMIT       (offset=O, count=C)
+ *          |
+ *       PROJECT
+ *          |
+ *        ACCESS
+ *          |
+ *         ...
+ * </pre>
+ *
+ * After:
+ *
+ * <pre>
+ *        LIMIT       (offset=O, count=C)
+ *          |
+ *       PROJECT
+ *          |
+ *        ACCESS
+ *          |
+ *        LIMIT       (count=O+C)
+ *          |
+ *         ...
+ * </pre>
+ *
+ * </p>
+ */
+@Immutable
+public class PushLimits implements OptimizerRule {
+
+    public static final PushLimits INSTANCE = new PushLimits();
+
+    @Override
+    public PlanNode execute( QueryContext context,
+                             PlanNode plan,
+                             LinkedList<OptimizerRule> ruleStack ) {
+        for (PlanNode limit : plan.findAllAtOrBelow(Type.LIMIT)) {
+            if (limit.hasAncestorOfType(Type.ACCESS)) continue;
+            PlanNode access = findAccessBelow(limit);
+            if (access == null) continue;
+            if (access.hasProperty(Property.ACCESS_NO_RESULTS)) continue;
+            if (access.findAtOrBelow(Type.LIMIT) != null) continue;
+
+            int pushedCount = pushedRowLimit(limit);
+            if (pushedCount < 0) continue;
+
+            PlanNode pushed = new PlanNode(Type.LIMIT, access.getSelectors());
+            pushed.setProperty(Property.LIMIT_COUNT, pushedCount);
+            access.getFirstChild().insertAsParent(pushed);
+        }
+        return plan;
+    }
+
+    /**
+     * Find the ACCESS node that is below the supplied LIMIT node and separated from it only by PROJECT nodes.
+     *
+     * @param limit the LIMIT node; may not be null
+     * @return the ACCESS node, or null if there is no such ACCESS node
+     */
+    protected PlanNode findAccessBelow( PlanNode limit ) {
+        PlanNode node = limit;
+        while (node.getChildCount() == 1) {
+            node = node.getFirstChild();
+            if (node.is(Type.ACCESS)) return node.getChildCount() == 1 ? node : null;
+            if (node.isNot(Type.PROJECT)) return null;
+        }
+        return null;
+    }
+
+    /**
+     * Compute the row limit that can be applied within the access query, given the original LIMIT node.
+     *
+     * @param limit the original LIMIT node; may not be null
+     * @return the row limit, or -1 if the original LIMIT does not bound the number of rows
+     */
+    protected int pushedRowLimit( PlanNode limit ) {
+        Integer count = limit.getProperty(Property.LIMIT_COUNT, Integer.class);
+        if (count == null || count.intValue() == Integer.MAX_VALUE) return -1;
+        Integer offset = limit.getProperty(Property.LIMIT_OFFSET, Integer.class);
+        long total = (long)count.intValue() + (offset != null ? offset.intValue() : 0);
+        return total >= Integer.MAX_VALUE ? -1 : (int)total;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName();
+    }
+}
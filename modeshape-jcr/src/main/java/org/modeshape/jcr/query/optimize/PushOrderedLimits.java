@@ -0,0 +1,143 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ * See the AUTHORS.txt file in the distribution for a full listing of
+ * individual contributors.
+ *
+ * ModeShape is free software. Unless otherwise indicated, all code in ModeShape
+ * is licensed to you under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * ModeShape is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.modeshape.jcr.query.optimize;
+
+import java.util.LinkedList;
+import java.util.List;
+import org.modeshape.common.annotation.Immutable;
+import org.modeshape.jcr.query.QueryContext;
+import org.modeshape.jcr.query.model.Ordering;
+import org.modeshape.jcr.query.plan.PlanNode;
+import org.modeshape.jcr.query.plan.PlanNode.Property;
+import org.modeshape.jcr.query.plan.PlanNode.Type;
+
+/**
+ * An {@link OptimizerRule optimizer rule} that copies a LIMIT node and the SORT node directly below it into the ACCESS node below
+ * the SORT, so that the access query only needs to keep the top-K tuples (where K is the sum of the offset and row count) rather
+ * than all matching tuples. The LIMIT and SORT are only copied when the only other nodes between the LIMIT and the ACCESS node are
+ * PROJECT nodes, and when the SORT node orders by {@link Ordering} objects (rather than by locations prior to a merge join).
+ * <p>
+ * Because the original LIMIT and SORT nodes are left in place, the copied LIMIT node has no offset and a row count equal to the
+ * sum of the original offset and row count.
+ * </p>
+ * <p>
+ * Before:
+ * 
+ * <pre>
+ *        LIMIT       (offset=O, count=C)
+ *          |
+ *        SORT
+ *          |
+ *       PROJECT
+ *          |
+ *        ACCESS
+ *          |
+ *         ...
+ * </pre>
+ * 
+ * After:
+ * 
+ * <pre>
+ *        LIMIT       (offset=O, count=C)
+ *          |
+ *        SORT
+ *          |
+ *       PROJECT
+ *          |
+ *        ACCESS
+ *          |
+ *        LIMIT       (count=O+C)
+ *          |
+ *        SORT
+ *          |
+ *         ...
+ * </pre>
+ * 
+ * </p>
+ * 
+ * @see PushLimits
+ */
+@Immutable
+public class PushOrderedLimits implements OptimizerRule {
+
+    public static final PushOrderedLimits INSTANCE = new PushOrderedLimits();
+
+    @Override
+    public PlanNode execute( QueryContext context,
+                             PlanNode plan,
+                             LinkedList<OptimizerRule> ruleStack ) {
+        for (PlanNode limit : plan.findAllAtOrBelow(Type.LIMIT)) {
+            if (limit.hasAncestorOfType(Type.ACCESS)) continue;
+            PlanNode sort = findSortBelow(limit);
+            if (sort == null) continue;
+            List<Object> orderBys = sort.getPropertyAsList(Property.SORT_ORDER_BY, Object.class);
+            if (!areAllOrderings(orderBys)) continue;
+            PlanNode access = PushLimits.INSTANCE.findAccessBelow(sort);
+            if (access == null) continue;
+            if (access.hasProperty(Property.ACCESS_NO_RESULTS)) continue;
+            if (access.findAtOrBelow(Type.LIMIT, Type.SORT) != null) continue;
+
+            int pushedCount = PushLimits.INSTANCE.pushedRowLimit(limit);
+            if (pushedCount < 0) continue;
+
+            PlanNode pushedSort = new PlanNode(Type.SORT, access.getSelectors());
+            pushedSort.setProperty(Property.SORT_ORDER_BY, orderBys);
+            access.getFirstChild().insertAsParent(pushedSort);
+
+            PlanNode pushedLimit = new PlanNode(Type.LIMIT, access.getSelectors());
+            pushedLimit.setProperty(Property.LIMIT_COUNT, pushedCount);
+            pushedSort.insertAsParent(pushedLimit);
+        }
+        return plan;
+    }
+
+    /**
+     * Find the SORT node that is below the supplied LIMIT node and separated from it only by PROJECT nodes.
+     * 
+     * @param limit the LIMIT node; may not be null
+     * @return the SORT node, or null if there is no such SORT node
+     */
+    protected PlanNode findSortBelow( PlanNode limit ) {
+        PlanNode node = limit;
+        while (node.getChildCount() == 1) {
+            node = node.getFirstChild();
+            if (node.is(Type.SORT)) return node;
+            if (node.isNot(Type.PROJECT)) return null;
+        }
+        return null;
+    }
+
+    private boolean areAllOrderings( List<Object> orderBys ) {
+        if (orderBys == null || orderBys.isEmpty()) return false;
+        for (Object orderBy : orderBys) {
+            if (!(orderBy instanceof Ordering)) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName();
+    }
+}
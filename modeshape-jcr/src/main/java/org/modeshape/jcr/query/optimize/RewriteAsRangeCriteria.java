@@ -52,7 +52,8 @@ import org.modeshape.jcr.value.ValueComparators;
 /**
  * An {@link OptimizerRule optimizer rule} that rewrites two {@link And AND-ed} {@link Constraint}s that constraint a dynamic
  * operand to a range of values as a single {@link Between} constraint. This rule also collapses and removes any constraints that
- * are unnecessary because other constraints are more restrictive or because they cancel out other constraints.
+ * are unnecessary because other constraints are more restrictive or because they cancel out other constraints. Only comparisons
+ * against {@link Literal literal values} are rewritten.
  */
 @Immutable
 public class RewriteAsRangeCriteria implements OptimizerRule {
@@ -81,10 +82,12 @@ public class RewriteAsRangeCriteria implements OptimizerRule {
             Multimap<DynamicOperand, PlanNode> selectNodeByOperand = ArrayListMultimap.create();
             for (PlanNode select : access.findAllAtOrBelow(Type.SELECT)) {
                 Constraint constraint = select.getProperty(Property.SELECT_CRITERIA, Constraint.class);
-                // Look for Comparison constraints that use a range operator
+                // Look for Comparison constraints that use a range operator with a literal value. Comparisons with bind
+                // variables are left as is, so that the optimized plan does not depend upon the variables' values
+                // and can be cached and reused with other values ...
                 if (constraint instanceof Comparison) {
                     Comparison comparison = (Comparison)constraint;
-                    if (comparison.operator().isRangeOperator()) {
+                    if (comparison.operator().isRangeOperator() && comparison.getOperand2() instanceof Literal) {
                         selectNodeByOperand.put(comparison.getOperand1(), select);
                     }
                 }
@@ -65,6 +65,10 @@ public class RuleBasedOptimizer implements Optimizer {
      */
     protected void populateRuleStack( LinkedList<OptimizerRule> ruleStack,
                                       PlanHints hints ) {
+        if (hints.hasLimit) {
+            ruleStack.addFirst(PushLimits.INSTANCE);
+            ruleStack.addFirst(PushOrderedLimits.INSTANCE);
+        }
         ruleStack.addFirst(RewritePathAndNameCriteria.INSTANCE);
         if (hints.hasSubqueries) {
             ruleStack.addFirst(RaiseVariableName.INSTANCE);
@@ -72,7 +76,7 @@ public class RuleBasedOptimizer implements Optimizer {
         ruleStack.addFirst(RewriteAsRangeCriteria.INSTANCE);
         if (hints.hasJoin) {
             ruleStack.addFirst(AddJoinConditionColumnsToSources.INSTANCE);
-            ruleStack.addFirst(ChooseJoinAlgorithm.USE_ONLY_NESTED_JOIN_ALGORITHM);
+            ruleStack.addFirst(ChooseJoinAlgorithm.USE_NESTED_OR_HASH_JOIN_ALGORITHM);
             ruleStack.addFirst(RewriteIdentityJoins.INSTANCE);
         }
         ruleStack.addFirst(AddOrderingColumnsToSources.INSTANCE);
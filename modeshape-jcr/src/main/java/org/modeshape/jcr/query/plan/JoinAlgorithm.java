@@ -29,5 +29,6 @@ package org.modeshape.jcr.query.plan;
 public enum JoinAlgorithm {
     // PARTITIONED_SORT,
     NESTED_LOOP,
-    MERGE
+    MERGE,
+    HASH
 }
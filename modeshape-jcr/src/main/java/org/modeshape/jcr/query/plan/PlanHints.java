@@ -94,6 +94,13 @@ public final class PlanHints implements Serializable, Cloneable {
      */
     public boolean qualifyExpandedColumnNames = false;
 
+    /**
+     * The consistency with the indexes that the query requires, or null if the repository's default consistency should be used.
+     * 
+     * @see org.modeshape.jcr.api.query.Query#setIndexConsistency(String)
+     */
+    public String indexConsistency = null;
+
     public PlanHints() {
     }
 
@@ -116,6 +123,7 @@ public final class PlanHints implements Serializable, Cloneable {
         sb.append(", includeSystemContent=").append(includeSystemContent);
         sb.append(", useSessionContent=").append(useSessionContent);
         sb.append(", qualifyExpandedColumnNames=").append(qualifyExpandedColumnNames);
+        sb.append(", indexConsistency=").append(indexConsistency);
         sb.append('}');
         return sb.toString();
     }
@@ -139,6 +147,7 @@ public final class PlanHints implements Serializable, Cloneable {
         clone.includeSystemContent = this.includeSystemContent;
         clone.useSessionContent = this.useSessionContent;
         clone.qualifyExpandedColumnNames = this.qualifyExpandedColumnNames;
+        clone.indexConsistency = this.indexConsistency;
         return clone;
     }
 }
@@ -0,0 +1,337 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ * See the AUTHORS.txt file in the distribution for a full listing of 
+ * individual contributors.
+ *
+ * ModeShape is free software. Unless otherwise indicated, all code in ModeShape
+ * is licensed to you under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ * 
+ * ModeShape is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.modeshape.jcr.query.plan;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.modeshape.common.annotation.Immutable;
+import org.modeshape.common.annotation.ThreadSafe;
+import org.modeshape.common.util.CheckArg;
+import org.modeshape.jcr.ExecutionContext;
+import org.modeshape.jcr.query.model.QueryCommand;
+import org.modeshape.jcr.query.validate.Schemata;
+import org.modeshape.jcr.value.NamespaceRegistry;
+import org.modeshape.jcr.value.basic.LocalNamespaceRegistry;
+
+/**
+ * A bounded, least-recently-used cache of parsed {@link QueryCommand query commands} and optimized {@link PlanNode query plans}
+ * that is shared by all sessions of a repository.
+ * <p>
+ * Parsed commands are keyed by the query language and the query expression. Optimized plans are keyed by the
+ * {@link QueryCommand} (whose equality is structural, so that it is effectively a normalized form of the original expression),
+ * the {@link Schemata} instance that was used to plan the query, and the hints supplied by the caller. Because a new
+ * {@link Schemata} instance is created whenever the node types or namespaces of the repository change, plans created against an
+ * older schemata will never be found again; {@link #invalidate()} should nevertheless be called upon such changes so that those
+ * stale plans do not occupy the cache.
+ * </p>
+ * <p>
+ * Plans are only cached when they do not depend on the values of any bind variables, so a cached plan can be re-executed with
+ * different variable values.
+ * </p>
+ */
+@ThreadSafe
+public class QueryPlanCache {
+
+    /** The default maximum number of commands and of plans held by the cache. */
+    public static final int DEFAULT_MAXIMUM_SIZE = 500;
+
+    private final int maximumSize;
+    private final Map<CommandKey, QueryCommand> commands;
+    private final Map<PlanKey, CachedPlan> plans;
+
+    /**
+     * Create a new cache.
+     * 
+     * @param maximumSize the maximum number of parsed commands and the maximum number of optimized plans held by this cache; must
+     *        be positive
+     */
+    public QueryPlanCache( int maximumSize ) {
+        CheckArg.isPositive(maximumSize, "maximumSize");
+        this.maximumSize = maximumSize;
+        this.commands = new BoundedMap<CommandKey, QueryCommand>(maximumSize);
+        this.plans = new BoundedMap<PlanKey, CachedPlan>(maximumSize);
+    }
+
+    /**
+     * Get the maximum number of parsed commands and of optimized plans that this cache will hold.
+     * 
+     * @return the maximum size; always positive
+     */
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    /**
+     * Determine whether queries issued within the supplied context can use the shared cache. Queries can only share cached commands
+     * and plans when the context does not remap any namespace prefixes, since the prefixes used in the query expression are resolved
+     * against the context's namespace registry during parsing and planning.
+     * 
+     * @param context the execution context; may not be null
+     * @return true if the cache can be used, or false otherwise
+     */
+    public static boolean canBeUsedWithin( ExecutionContext context ) {
+        NamespaceRegistry registry = context.getNamespaceRegistry();
+        if (registry instanceof LocalNamespaceRegistry) {
+            return ((LocalNamespaceRegistry)registry).getLocalNamespaces().isEmpty();
+        }
+        return true;
+    }
+
+    /**
+     * Get the parsed command for the supplied query expression.
+     * 
+     * @param language the query language; may not be null
+     * @param expression the query expression; may not be null
+     * @return the cached command, or null if no such command is cached
+     */
+    public QueryCommand getCommand( String language,
+                                    String expression ) {
+        CommandKey key = new CommandKey(language, expression);
+        synchronized (commands) {
+            return commands.get(key);
+        }
+    }
+
+    /**
+     * Cache the parsed command for the supplied query expression.
+     * 
+     * @param language the query language; may not be null
+     * @param expression the query expression; may not be null
+     * @param command the parsed command; may not be null
+     */
+    public void putCommand( String language,
+                            String expression,
+                            QueryCommand command ) {
+        CheckArg.isNotNull(command, "command");
+        CommandKey key = new CommandKey(language, expression);
+        synchronized (commands) {
+            commands.put(key, command);
+        }
+    }
+
+    /**
+     * Get the optimized plan for the supplied query.
+     * 
+     * @param command the query command; may not be null
+     * @param schemata the schemata against which the query is to be planned; may not be null
+     * @param hints the hints supplied with the query; may not be null
+     * @return the cached plan, or null if no such plan is cached
+     */
+    public CachedPlan getPlan( QueryCommand command,
+                               Schemata schemata,
+                               PlanHints hints ) {
+        PlanKey key = new PlanKey(command, schemata, hints);
+        synchronized (plans) {
+            return plans.get(key);
+        }
+    }
+
+    /**
+     * Cache the optimized plan for the supplied query.
+     * 
+     * @param command the query command; may not be null
+     * @param schemata the schemata against which the query was planned; may not be null
+     * @param suppliedHints the hints as they were supplied with the query, before planning; may not be null
+     * @param plan the optimized plan; may not be null
+     * @param resultingHints the hints as they were after planning and optimization; may not be null
+     */
+    public void putPlan( QueryCommand command,
+                         Schemata schemata,
+                         PlanHints suppliedHints,
+                         PlanNode plan,
+                         PlanHints resultingHints ) {
+        CheckArg.isNotNull(plan, "plan");
+        CheckArg.isNotNull(resultingHints, "resultingHints");
+        PlanKey key = new PlanKey(command, schemata, suppliedHints);
+        CachedPlan cached = new CachedPlan(plan.clone(), resultingHints.clone());
+        synchronized (plans) {
+            plans.put(key, cached);
+        }
+    }
+
+    /**
+     * Get the number of optimized plans in this cache.
+     * 
+     * @return the number of plans
+     */
+    public int size() {
+        synchronized (plans) {
+            return plans.size();
+        }
+    }
+
+    /**
+     * Remove all cached commands and plans. This should be called whenever the node types or namespaces of the repository change.
+     */
+    public void invalidate() {
+        synchronized (commands) {
+            commands.clear();
+        }
+        synchronized (plans) {
+            plans.clear();
+        }
+    }
+
+    /**
+     * An optimized plan and the hints that resulted from planning and optimizing it.
+     */
+    @Immutable
+    public static final class CachedPlan {
+        private final PlanNode plan;
+        private final PlanHints hints;
+
+        protected CachedPlan( PlanNode plan,
+                              PlanHints hints ) {
+            this.plan = plan;
+            this.hints = hints;
+        }
+
+        /**
+         * Get a copy of the optimized plan that can be processed (and modified) by the caller.
+         * 
+         * @return the copy of the plan; never null
+         */
+        public PlanNode getPlan() {
+            return plan.clone();
+        }
+
+        /**
+         * Record in the supplied hints the information discovered while planning and optimizing the query.
+         * 
+         * @param target the hints that are to be updated; may not be null
+         */
+        public void applyHintsTo( PlanHints target ) {
+            target.hasCriteria = hints.hasCriteria;
+            target.hasView = hints.hasView;
+            target.hasJoin = hints.hasJoin;
+            target.hasSort = hints.hasSort;
+            target.hasSetQuery = hints.hasSetQuery;
+            target.hasLimit = hints.hasLimit;
+            target.hasOptionalJoin = hints.hasOptionalJoin;
+            target.hasFullTextSearch = hints.hasFullTextSearch;
+            target.hasSubqueries = hints.hasSubqueries;
+            target.isExistsQuery = hints.isExistsQuery;
+        }
+    }
+
+    protected static final class CommandKey {
+        private final String language;
+        private final String expression;
+        private final int hc;
+
+        protected CommandKey( String language,
+                              String expression ) {
+            CheckArg.isNotNull(language, "language");
+            CheckArg.isNotNull(expression, "expression");
+            this.language = language;
+            this.expression = expression;
+            this.hc = 31 * language.hashCode() + expression.hashCode();
+        }
+
+        @Override
+        public int hashCode() {
+            return hc;
+        }
+
+        @Override
+        public boolean equals( Object obj ) {
+            if (obj == this) return true;
+            if (obj instanceof CommandKey) {
+                CommandKey that = (CommandKey)obj;
+                return this.hc == that.hc && this.language.equals(that.language) && this.expression.equals(that.expression);
+            }
+            return false;
+        }
+    }
+
+    protected static final class PlanKey {
+        private final QueryCommand command;
+        private final Schemata schemata;
+        private final int hintFlags;
+        private final int hc;
+
+        protected PlanKey( QueryCommand command,
+                           Schemata schemata,
+                           PlanHints hints ) {
+            CheckArg.isNotNull(command, "command");
+            CheckArg.isNotNull(schemata, "schemata");
+            CheckArg.isNotNull(hints, "hints");
+            this.command = command;
+            this.schemata = schemata;
+            this.hintFlags = suppliedFlags(hints);
+            this.hc = 31 * (31 * command.hashCode() + System.identityHashCode(schemata)) + hintFlags;
+        }
+
+        /**
+         * Encode the hints that are supplied by the caller and that influence planning. The remaining hints are only ever set by
+         * the planner and optimizer, and are the same for equivalent commands.
+         * 
+         * @param hints the hints; may not be null
+         * @return the encoded hints
+         */
+        private static int suppliedFlags( PlanHints hints ) {
+            int flags = 0;
+            if (hints.hasFullTextSearch) flags |= 1;
+            if (hints.showPlan) flags |= 1 << 1;
+            if (hints.planOnly) flags |= 1 << 2;
+            if (hints.validateColumnExistance) flags |= 1 << 3;
+            if (hints.includeSystemContent) flags |= 1 << 4;
+            if (hints.useSessionContent) flags |= 1 << 5;
+            if (hints.qualifyExpandedColumnNames) flags |= 1 << 6;
+            return flags;
+        }
+
+        @Override
+        public int hashCode() {
+            return hc;
+        }
+
+        @Override
+        public boolean equals( Object obj ) {
+            if (obj == this) return true;
+            if (obj instanceof PlanKey) {
+                PlanKey that = (PlanKey)obj;
+                // Schemata instances are compared by identity, since a new instance is created upon each change ...
+                return this.hc == that.hc && this.schemata == that.schemata && this.hintFlags == that.hintFlags
+                       && this.command.equals(that.command);
+            }
+            return false;
+        }
+    }
+
+    protected static final class BoundedMap<K, V> extends LinkedHashMap<K, V> {
+        private static final long serialVersionUID = 1L;
+        private final int maximumSize;
+
+        protected BoundedMap( int maximumSize ) {
+            super(16, 0.75f, true);
+            this.maximumSize = maximumSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry( Map.Entry<K, V> eldest ) {
+            return size() > maximumSize;
+        }
+    }
+}
@@ -0,0 +1,433 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ * See the AUTHORS.txt file in the distribution for a full listing of 
+ * individual contributors.
+ *
+ * ModeShape is free software. Unless otherwise indicated, all code in ModeShape
+ * is licensed to you under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ * 
+ * ModeShape is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.modeshape.jcr.query.process;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import org.modeshape.jcr.query.QueryContext;
+import org.modeshape.jcr.query.QueryResults.Location;
+import org.modeshape.jcr.query.model.EquiJoinCondition;
+import org.modeshape.jcr.query.model.JoinCondition;
+import org.modeshape.jcr.query.model.JoinType;
+import org.modeshape.jcr.query.model.SameNodeJoinCondition;
+import org.modeshape.jcr.value.Path;
+import org.modeshape.jcr.value.PathFactory;
+
+/**
+ * Create a processing component that performs a hash-join algorithm. This algorithm only makes sense for {@link EquiJoinCondition
+ * equi-joins} and {@link SameNodeJoinCondition same-node joins}, but unlike the {@link MergeJoinComponent merge-join} it does not
+ * require the left and right processing components to be sorted.
+ * <p>
+ * The tuples on one side of the join (the "build" side) are placed into a hash table keyed by their join value, and then the
+ * tuples on the other side (the "probe" side) are looked up in that table. For inner and left-outer joins the right side is the
+ * build side, while for right-outer joins the left side is the build side. The hash table is split into partitions by the hash of
+ * the join value, and when there are enough tuples the partitions are built (and the probe side is processed in chunks) in
+ * parallel using the {@link #THREAD_POOL_NAME query join thread pool}. The order of the resulting tuples follows the order of the
+ * probe side, regardless of whether the join was done in parallel.
+ * </p>
+ */
+public class HashJoinComponent extends JoinComponent {
+
+    /**
+     * The name of the thread pool used to build and probe the hash table in parallel.
+     */
+    public static final String THREAD_POOL_NAME = "modeshape-query-joins";
+
+    /**
+     * The minimum number of tuples on the build or probe side before the work is done in parallel.
+     */
+    protected static final int DEFAULT_PARALLEL_THRESHOLD = 10000;
+
+    /**
+     * The number of partitions (and maximum number of parallel tasks) used when the join is done in parallel.
+     */
+    protected static final int DEFAULT_PARTITION_COUNT = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+    private final int parallelThreshold;
+    private final int partitionCount;
+
+    public HashJoinComponent( QueryContext context,
+                              ProcessingComponent left,
+                              ProcessingComponent right,
+                              EquiJoinCondition condition,
+                              JoinType joinType ) {
+        this(context, left, right, (JoinCondition)condition, joinType, DEFAULT_PARALLEL_THRESHOLD, DEFAULT_PARTITION_COUNT);
+    }
+
+    public HashJoinComponent( QueryContext context,
+                              ProcessingComponent left,
+                              ProcessingComponent right,
+                              SameNodeJoinCondition condition,
+                              JoinType joinType ) {
+        this(context, left, right, (JoinCondition)condition, joinType, DEFAULT_PARALLEL_THRESHOLD, DEFAULT_PARTITION_COUNT);
+    }
+
+    protected HashJoinComponent( QueryContext context,
+                                 ProcessingComponent left,
+                                 ProcessingComponent right,
+                                 JoinCondition condition,
+                                 JoinType joinType,
+                                 int parallelThreshold,
+                                 int partitionCount ) {
+        super(context, left, right, condition, joinType);
+        assert condition instanceof EquiJoinCondition || condition instanceof SameNodeJoinCondition;
+        assert joinType != JoinType.CROSS;
+        assert partitionCount > 0;
+        this.parallelThreshold = parallelThreshold;
+        this.partitionCount = partitionCount;
+    }
+
+    @Override
+    public List<Object[]> execute() {
+        // Construct the necessary components ...
+        final KeySelector leftKeys = keySelectorFor(left(), getJoinCondition(), true);
+        final KeySelector rightKeys = keySelectorFor(right(), getJoinCondition(), false);
+        final TupleMerger merger = createMerger(getColumns(), left().getColumns(), right().getColumns());
+
+        // Get the left and right results ...
+        List<Object[]> leftTuples = left().execute();
+        List<Object[]> rightTuples = right().execute();
+        if (getContext().isCancelled()) return emptyTuples();
+
+        final JoinType joinType = getJoinType();
+        final boolean buildLeft = joinType == JoinType.RIGHT_OUTER;
+        final List<Object[]> buildTuples = buildLeft ? leftTuples : rightTuples;
+        final List<Object[]> probeTuples = buildLeft ? rightTuples : leftTuples;
+        final KeySelector buildKeys = buildLeft ? leftKeys : rightKeys;
+        final KeySelector probeKeys = buildLeft ? rightKeys : leftKeys;
+        final boolean includeUnmatchedProbe = joinType != JoinType.INNER;
+        final boolean includeUnmatchedBuild = joinType == JoinType.FULL_OUTER;
+
+        final boolean parallel = probeTuples.size() >= parallelThreshold || buildTuples.size() >= parallelThreshold;
+        final ExecutorService executor = parallel && partitionCount > 1 ? getContext().getExecutionContext()
+                                                                                      .getThreadPool(THREAD_POOL_NAME) : null;
+
+        // Build the partitioned hash table ...
+        final List<Map<Object, List<BuildEntry>>> partitions = build(buildTuples, buildKeys, executor);
+        if (getContext().isCancelled()) return emptyTuples();
+
+        // Probe the hash table with each chunk of the probe tuples ...
+        final BitSet matchedBuildTuples = includeUnmatchedBuild ? new BitSet(buildTuples.size()) : null;
+        List<Callable<List<Object[]>>> probes = new ArrayList<Callable<List<Object[]>>>();
+        int chunks = executor != null ? partitionCount : 1;
+        int chunkSize = Math.max(1, (probeTuples.size() + chunks - 1) / chunks);
+        for (int start = 0; start < probeTuples.size(); start += chunkSize) {
+            final List<Object[]> chunk = probeTuples.subList(start, Math.min(probeTuples.size(), start + chunkSize));
+            probes.add(new Callable<List<Object[]>>() {
+                @Override
+                public List<Object[]> call() {
+                    BitSet matched = includeUnmatchedBuild ? new BitSet() : null;
+                    List<Object[]> results = probe(chunk, probeKeys, partitions, merger, buildLeft, includeUnmatchedProbe, matched);
+                    if (matched != null) {
+                        synchronized (matchedBuildTuples) {
+                            matchedBuildTuples.or(matched);
+                        }
+                    }
+                    return results;
+                }
+            });
+        }
+        List<Object[]> tuples = new ArrayList<Object[]>(probeTuples.size());
+        for (List<Object[]> results : run(probes, executor)) {
+            tuples.addAll(results);
+        }
+
+        if (includeUnmatchedBuild) {
+            // Include all of the build tuples that were never matched ...
+            int index = 0;
+            for (Object[] buildTuple : buildTuples) {
+                if (!matchedBuildTuples.get(index++)) {
+                    tuples.add(buildLeft ? merger.merge(buildTuple, null) : merger.merge(null, buildTuple));
+                }
+            }
+        }
+        return tuples;
+    }
+
+    /**
+     * Build the hash table containing the supplied tuples, where the hash table is split into {@link #partitionCount} partitions
+     * by the hash of the key.
+     * 
+     * @param buildTuples the tuples to be placed into the hash table; may not be null
+     * @param buildKeys the selector for the keys of the tuples; may not be null
+     * @param executor the executor that should be used to build the partitions in parallel, or null if they are to be built in
+     *        the current thread
+     * @return the partitions of the hash table; never null
+     */
+    protected List<Map<Object, List<BuildEntry>>> build( List<Object[]> buildTuples,
+                                                         KeySelector buildKeys,
+                                                         ExecutorService executor ) {
+        final int numPartitions = executor != null ? partitionCount : 1;
+
+        // Compute the keys and place each keyed tuple into its partition ...
+        List<List<BuildEntry>> entriesByPartition = new ArrayList<List<BuildEntry>>(numPartitions);
+        for (int i = 0; i != numPartitions; ++i) {
+            entriesByPartition.add(new ArrayList<BuildEntry>());
+        }
+        int index = 0;
+        for (Object[] tuple : buildTuples) {
+            Object[] keys = buildKeys.keysFor(tuple);
+            if (keys != null) {
+                for (Object key : keys) {
+                    entriesByPartition.get(partitionFor(key, numPartitions)).add(new BuildEntry(key, tuple, index));
+                }
+            }
+            ++index;
+        }
+
+        // Build the hash table for each partition ...
+        List<Callable<Map<Object, List<BuildEntry>>>> builders = new ArrayList<Callable<Map<Object, List<BuildEntry>>>>();
+        for (final List<BuildEntry> entries : entriesByPartition) {
+            builders.add(new Callable<Map<Object, List<BuildEntry>>>() {
+                @Override
+                public Map<Object, List<BuildEntry>> call() {
+                    Map<Object, List<BuildEntry>> table = new HashMap<Object, List<BuildEntry>>();
+                    for (BuildEntry entry : entries) {
+                        List<BuildEntry> matches = table.get(entry.key);
+                        if (matches == null) {
+                            matches = new ArrayList<BuildEntry>(1);
+                            table.put(entry.key, matches);
+                        }
+                        matches.add(entry);
+                    }
+                    return table;
+                }
+            });
+        }
+        return run(builders, executor);
+    }
+
+    /**
+     * Look up each of the supplied probe tuples in the hash table and merge them with the matching build tuples. The build tuples
+     * that match a probe tuple are always merged in the order in which they appeared on the build side.
+     * 
+     * @param probeTuples the tuples to be looked up; may not be null
+     * @param probeKeys the selector for the keys of the probe tuples; may not be null
+     * @param partitions the partitions of the hash table; may not be null
+     * @param merger the merger for the joined tuples; may not be null
+     * @param buildLeft true if the build tuples are the left side of the join, or false if they are the right side
+     * @param includeUnmatched true if probe tuples that match no build tuples should be included in the results
+     * @param matchedBuildTuples the set of indexes into which the positions of all matched build tuples should be placed, or null
+     *        if not needed
+     * @return the joined tuples; never null
+     */
+    protected List<Object[]> probe( List<Object[]> probeTuples,
+                                    KeySelector probeKeys,
+                                    List<Map<Object, List<BuildEntry>>> partitions,
+                                    TupleMerger merger,
+                                    boolean buildLeft,
+                                    boolean includeUnmatched,
+                                    BitSet matchedBuildTuples ) {
+        final int numPartitions = partitions.size();
+        List<Object[]> results = new ArrayList<Object[]>(probeTuples.size());
+        for (Object[] probeTuple : probeTuples) {
+            if (getContext().isCancelled()) break;
+            Object[] keys = probeKeys.keysFor(probeTuple);
+            List<BuildEntry> matches = null;
+            if (keys != null) {
+                if (keys.length == 1) {
+                    matches = partitions.get(partitionFor(keys[0], numPartitions)).get(keys[0]);
+                } else {
+                    // A multi-valued key matches each build tuple at most once ...
+                    for (Object key : keys) {
+                        List<BuildEntry> keyMatches = partitions.get(partitionFor(key, numPartitions)).get(key);
+                        if (keyMatches == null) continue;
+                        if (matches == null) matches = new ArrayList<BuildEntry>();
+                        matches.addAll(keyMatches);
+                    }
+                    if (matches != null) matches = inBuildOrder(matches);
+                }
+            }
+            if (matches != null && !matches.isEmpty()) {
+                for (BuildEntry match : matches) {
+                    results.add(buildLeft ? merger.merge(match.tuple, probeTuple) : merger.merge(probeTuple, match.tuple));
+                    if (matchedBuildTuples != null) matchedBuildTuples.set(match.index);
+                }
+            } else if (includeUnmatched) {
+                results.add(buildLeft ? merger.merge(null, probeTuple) : merger.merge(probeTuple, null));
+            }
+        }
+        return results;
+    }
+
+    private static List<BuildEntry> inBuildOrder( List<BuildEntry> entries ) {
+        Collections.sort(entries);
+        List<BuildEntry> result = new ArrayList<BuildEntry>(entries.size());
+        int lastIndex = -1;
+        for (BuildEntry entry : entries) {
+            if (entry.index == lastIndex) continue;
+            result.add(entry);
+            lastIndex = entry.index;
+        }
+        return result;
+    }
+
+    /**
+     * Run the supplied tasks, either in parallel using the supplied executor or sequentially in the current thread.
+     * 
+     * @param tasks the tasks; may not be null
+     * @param executor the executor, or null if the tasks should be run in the current thread
+     * @return the results of the tasks, in the same order as the tasks; never null
+     */
+    protected <T> List<T> run( List<Callable<T>> tasks,
+                               ExecutorService executor ) {
+        List<T> results = new ArrayList<T>(tasks.size());
+        try {
+            if (executor == null || tasks.size() < 2) {
+                for (Callable<T> task : tasks) {
+                    results.add(task.call());
+                }
+            } else {
+                for (Future<T> future : executor.invokeAll(tasks)) {
+                    results.add(future.get());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            getContext().cancel();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException)cause;
+            throw new RuntimeException(cause);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+        return results;
+    }
+
+    protected static int partitionFor( Object key,
+                                       int numPartitions ) {
+        return numPartitions == 1 ? 0 : (key.hashCode() & 0x7fffffff) % numPartitions;
+    }
+
+    /**
+     * A tuple on the build side of the join, along with one of its keys and its position on the build side.
+     */
+    protected static final class BuildEntry implements Comparable<BuildEntry> {
+        protected final Object key;
+        protected final Object[] tuple;
+        protected final int index;
+
+        protected BuildEntry( Object key,
+                              Object[] tuple,
+                              int index ) {
+            this.key = key;
+            this.tuple = tuple;
+            this.index = index;
+        }
+
+        @Override
+        public int compareTo( BuildEntry that ) {
+            return this.index < that.index ? -1 : (this.index == that.index ? 0 : 1);
+        }
+    }
+
+    /**
+     * Interface defining the hash keys of a tuple that are used in the join condition.
+     */
+    protected static interface KeySelector {
+        /**
+         * Obtain the hash keys for the supplied tuple. A tuple will match any tuple on the other side of the join that has at
+         * least one of the same keys.
+         * 
+         * @param tuple the tuple
+         * @return the non-null keys, or null if the tuple cannot match any other tuple
+         */
+        Object[] keysFor( Object[] tuple );
+    }
+
+    /**
+     * Create a {@link KeySelector} that obtains the hash keys for the supplied side of the join, consistent with the
+     * {@link #joinableFor(ProcessingComponent, ProcessingComponent, JoinCondition) joinable} semantics of the join condition.
+     * 
+     * @param source the source component; may not be null
+     * @param condition the join condition; may not be null
+     * @param isLeft true if the source component is the left side of the join
+     * @return the key selector; never null
+     */
+    protected static KeySelector keySelectorFor( ProcessingComponent source,
+                                                 JoinCondition condition,
+                                                 final boolean isLeft ) {
+        final ValueSelector valueSelector = valueSelectorFor(source, condition);
+        if (condition instanceof EquiJoinCondition) {
+            return new KeySelector() {
+                @Override
+                public Object[] keysFor( Object[] tuple ) {
+                    Object value = valueSelector.evaluate(tuple);
+                    if (value == null) return null;
+                    if (value instanceof Object[]) {
+                        // Only multi-valued properties on the left side match any of their values ...
+                        if (!isLeft) return null;
+                        Set<Object> keys = new LinkedHashSet<Object>();
+                        for (Object v : (Object[])value) {
+                            if (v != null) keys.add(v);
+                        }
+                        return keys.isEmpty() ? null : keys.toArray();
+                    }
+                    return new Object[] {value};
+                }
+            };
+        }
+        if (condition instanceof SameNodeJoinCondition) {
+            SameNodeJoinCondition joinCondition = (SameNodeJoinCondition)condition;
+            final PathFactory pathFactory = source.getContext().getExecutionContext().getValueFactories().getPathFactory();
+            final String relPathStr = joinCondition.getSelector2Path();
+            final Path relPath = relPathStr != null ? pathFactory.create(relPathStr) : null;
+            boolean isSelector2 = source.getColumns().hasSelector(joinCondition.selector2Name().name());
+            if (isSelector2 && relPath != null && !relPath.isAbsolute()
+                && !(relPath.size() == 1 && relPath.getLastSegment().isSelfReference())) {
+                // The location's path must be resolved against the relative path ...
+                return new KeySelector() {
+                    @Override
+                    public Object[] keysFor( Object[] tuple ) {
+                        Location location = (Location)valueSelector.evaluate(tuple);
+                        if (location == null || location.getPath() == null) return null;
+                        return new Object[] {pathFactory.create(location.getPath(), relPath).getNormalizedPath()};
+                    }
+                };
+            }
+            return new KeySelector() {
+                @Override
+                public Object[] keysFor( Object[] tuple ) {
+                    Location location = (Location)valueSelector.evaluate(tuple);
+                    if (location == null || location.getPath() == null) return null;
+                    return new Object[] {location.getPath()};
+                }
+            };
+        }
+        throw new IllegalArgumentException();
+    }
+}
@@ -26,6 +26,7 @@ package org.modeshape.jcr.query.process;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 import org.modeshape.common.annotation.NotThreadSafe;
 import org.modeshape.common.collection.Problems;
 import org.modeshape.jcr.query.QueryContext;
@@ -40,8 +41,11 @@ import org.modeshape.jcr.query.model.NodeDepth;
 import org.modeshape.jcr.query.model.NodeLocalName;
 import org.modeshape.jcr.query.model.NodeName;
 import org.modeshape.jcr.query.model.NodePath;
+import org.modeshape.jcr.query.model.Order;
+import org.modeshape.jcr.query.model.Ordering;
 import org.modeshape.jcr.query.model.PropertyValue;
 import org.modeshape.jcr.query.model.ReferenceValue;
+import org.modeshape.jcr.query.model.SelectorName;
 import org.modeshape.jcr.query.model.TypeSystem;
 import org.modeshape.jcr.query.model.TypeSystem.TypeFactory;
 import org.modeshape.jcr.query.model.UpperCase;
@@ -116,6 +120,109 @@ public abstract class ProcessingComponent {
         return new ArrayList<Object[]>(0);
     }
 
+    /**
+     * Create a comparator that orders tuples according to the supplied orderings.
+     * 
+     * @param context the context in which the query is being processed; may not be null
+     * @param columns the definition of the columns in the tuples; may not be null
+     * @param orderings the orderings; may not be null
+     * @param sourceNamesByAlias the map of source names keyed by their alias; may be null
+     * @return the comparator, or null if there are no orderings
+     */
+    protected Comparator<Object[]> createSortComparator( QueryContext context,
+                                                         Columns columns,
+                                                         List<Ordering> orderings,
+                                                         Map<SelectorName, SelectorName> sourceNamesByAlias ) {
+        assert context != null;
+        assert orderings != null;
+        if (orderings.isEmpty()) {
+            return null;
+        }
+        if (orderings.size() == 1) {
+            return createSortComparator(context, columns, orderings.get(0), sourceNamesByAlias);
+        }
+        // Create a comparator that uses an ordered list of comparators ...
+        final List<Comparator<Object[]>> comparators = new ArrayList<Comparator<Object[]>>(orderings.size());
+        for (Ordering ordering : orderings) {
+            comparators.add(createSortComparator(context, columns, ordering, sourceNamesByAlias));
+        }
+        return new Comparator<Object[]>() {
+            @Override
+            public int compare( Object[] tuple1,
+                                Object[] tuple2 ) {
+                for (Comparator<Object[]> comparator : comparators) {
+                    int result = comparator.compare(tuple1, tuple2);
+                    if (result != 0) return result;
+                }
+                return 0;
+            }
+        };
+    }
+
+    /**
+     * Create a comparator that orders tuples according to a single ordering.
+     * 
+     * @param context the context in which the query is being processed; may not be null
+     * @param columns the definition of the columns in the tuples; may not be null
+     * @param ordering the ordering; may not be null
+     * @param sourceNamesByAlias the map of source names keyed by their alias; may be null
+     * @return the comparator; never null
+     */
+    @SuppressWarnings( "unchecked" )
+    protected Comparator<Object[]> createSortComparator( QueryContext context,
+                                                         Columns columns,
+                                                         Ordering ordering,
+                                                         final Map<SelectorName, SelectorName> sourceNamesByAlias ) {
+        assert context != null;
+        assert ordering != null;
+        final Schemata originalSchemata = context.getSchemata();
+        final Schemata schemataWithAliases = sourceNamesByAlias == null ? originalSchemata : new Schemata() {
+            @Override
+            public Table getTable( SelectorName name ) {
+                // First assume that the name is an alias, so try resolving it first ...
+                Table result = null;
+                SelectorName unaliasedName = sourceNamesByAlias.get(name);
+                if (unaliasedName != null) {
+                    result = originalSchemata.getTable(unaliasedName);
+                }
+                if (result == null) {
+                    // The name was not an alias, so use it to look up the table ...
+                    result = originalSchemata.getTable(name);
+                }
+                return result;
+            }
+        };
+        final DynamicOperation operation = createDynamicOperation(context.getTypeSystem(),
+                                                                  schemataWithAliases,
+                                                                  columns,
+                                                                  ordering.getOperand());
+        final TypeSystem typeSystem = context.getTypeSystem();
+        final TypeFactory<?> typeFactory = typeSystem.getTypeFactory(operation.getExpectedType());
+        assert typeFactory != null;
+        final Comparator<Object> typeComparator = (Comparator<Object>)typeFactory.getComparator();
+        assert typeComparator != null;
+        if (ordering.order() == Order.DESCENDING) {
+            return new Comparator<Object[]>() {
+                @Override
+                public int compare( Object[] tuple1,
+                                    Object[] tuple2 ) {
+                    Object value1 = typeFactory.create(operation.evaluate(tuple1));
+                    Object value2 = typeFactory.create(operation.evaluate(tuple2));
+                    return 0 - typeComparator.compare(value1, value2);
+                }
+            };
+        }
+        return new Comparator<Object[]>() {
+            @Override
+            public int compare( Object[] tuple1,
+                                Object[] tuple2 ) {
+                Object value1 = typeFactory.create(operation.evaluate(tuple1));
+                Object value2 = typeFactory.create(operation.evaluate(tuple2));
+                return typeComparator.compare(value1, value2);
+            }
+        };
+    }
+
     /**
      * Interface for evaluating a {@link DynamicOperand} to return the resulting value.
      */
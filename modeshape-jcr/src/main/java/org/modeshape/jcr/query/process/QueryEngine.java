@@ -46,6 +46,8 @@ import org.modeshape.jcr.query.plan.PlanNode.Property;
 import org.modeshape.jcr.query.plan.PlanNode.Traversal;
 import org.modeshape.jcr.query.plan.PlanNode.Type;
 import org.modeshape.jcr.query.plan.Planner;
+import org.modeshape.jcr.query.plan.QueryPlanCache;
+import org.modeshape.jcr.query.plan.QueryPlanCache.CachedPlan;
 import org.modeshape.jcr.query.validate.Schemata;
 
 /**
@@ -57,6 +59,7 @@ public class QueryEngine {
     protected final Planner planner;
     protected final Optimizer optimizer;
     protected final Processor processor;
+    protected final QueryPlanCache planCache;
 
     /**
      * Create a new query engine given the {@link Planner planner}, {@link Optimizer optimizer}, {@link Processor processor}, and
@@ -72,10 +75,30 @@ public class QueryEngine {
     public QueryEngine( Planner planner,
                         Optimizer optimizer,
                         Processor processor ) {
+        this(planner, optimizer, processor, null);
+    }
+
+    /**
+     * Create a new query engine given the {@link Planner planner}, {@link Optimizer optimizer}, {@link Processor processor}, and
+     * the cache in which optimized plans are to be kept.
+     * 
+     * @param planner the planner that should be used to generate canonical query plans for the queries; may be null if the
+     *        {@link CanonicalPlanner} should be used
+     * @param optimizer the optimizer that should be used to optimize the canonical query plan; may be null if the
+     *        {@link RuleBasedOptimizer} should be used
+     * @param processor the processor implementation that should be used to process the planned query and return the results
+     * @param planCache the cache of optimized plans; may be null if every query is to be planned and optimized
+     * @throws IllegalArgumentException if the processor reference is null
+     */
+    public QueryEngine( Planner planner,
+                        Optimizer optimizer,
+                        Processor processor,
+                        QueryPlanCache planCache ) {
         CheckArg.isNotNull(processor, "processor");
         this.planner = planner != null ? planner : new CanonicalPlanner();
         this.optimizer = optimizer != null ? optimizer : new RuleBasedOptimizer();
         this.processor = processor;
+        this.planCache = planCache;
     }
 
     private void checkCancelled( QueryContext context ) throws QueryCancelledException {
@@ -111,9 +134,19 @@ public class QueryEngine {
             }
         });
 
-        // Create the canonical plan ...
+        // Look for a previously optimized plan ...
+        boolean useCache = planCache != null && !context.getProblems().hasErrors()
+                           && QueryPlanCache.canBeUsedWithin(context.getExecutionContext());
+        PlanHints suppliedHints = useCache ? context.getHints().clone() : null;
         long start = System.nanoTime();
-        PlanNode plan = planner.createPlan(context, query);
+        CachedPlan cachedPlan = useCache ? planCache.getPlan(query, context.getSchemata(), suppliedHints) : null;
+        PlanNode plan = null;
+        if (cachedPlan != null) {
+            cachedPlan.applyHintsTo(context.getHints());
+        } else {
+            // Create the canonical plan ...
+            plan = planner.createPlan(context, query);
+        }
         long duration = Math.abs(System.nanoTime() - start);
         Statistics stats = new Statistics(duration);
 
@@ -122,7 +155,15 @@ public class QueryEngine {
         if (!context.getProblems().hasErrors()) {
             // Optimize the plan ...
             start = System.nanoTime();
-            PlanNode optimizedPlan = optimizer.optimize(context, plan);
+            PlanNode optimizedPlan = null;
+            if (cachedPlan != null) {
+                optimizedPlan = cachedPlan.getPlan();
+            } else {
+                optimizedPlan = optimizer.optimize(context, plan);
+                if (useCache && isCacheable(context)) {
+                    planCache.putPlan(query, context.getSchemata(), suppliedHints, optimizedPlan, context.getHints());
+                }
+            }
             duration = Math.abs(System.nanoTime() - start);
             stats = stats.withOptimizationTime(duration);
 
@@ -151,6 +192,18 @@ public class QueryEngine {
         return new org.modeshape.jcr.query.process.QueryResults(resultColumns, stats, context.getProblems());
     }
 
+    /**
+     * Determine whether the plan that was just created and optimized within the supplied context can be cached and reused for
+     * other executions of the same query. Plans of queries that reported any problems or that contain subqueries (whose results
+     * are bound to variables during planning and processing) are not cached.
+     * 
+     * @param context the context in which the query was planned and optimized; never null
+     * @return true if the optimized plan can be cached, or false otherwise
+     */
+    protected boolean isCacheable( QueryContext context ) {
+        return context.getProblems().isEmpty() && !context.getHints().hasSubqueries;
+    }
+
     protected QueryResultColumns determineQueryResultColumns( PlanNode optimizedPlan,
                                                               PlanHints hints ) {
         // Look for which columns to include in the results; this will be defined by the highest PROJECT node ...
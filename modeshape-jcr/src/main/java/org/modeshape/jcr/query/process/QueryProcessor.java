@@ -259,6 +259,18 @@ public abstract class QueryProcessor<ProcessingContextType> implements Processor
                     case NESTED_LOOP:
                         component = new NestedLoopJoinComponent(context, left, right, joinCondition, joinType);
                         break;
+                    case HASH:
+                        if (joinCondition instanceof SameNodeJoinCondition && joinType != JoinType.CROSS) {
+                            SameNodeJoinCondition condition = (SameNodeJoinCondition)joinCondition;
+                            component = new HashJoinComponent(context, left, right, condition, joinType);
+                        } else if (joinCondition instanceof EquiJoinCondition && joinType != JoinType.CROSS) {
+                            EquiJoinCondition condition = (EquiJoinCondition)joinCondition;
+                            component = new HashJoinComponent(context, left, right, condition, joinType);
+                        } else {
+                            // The hash join doesn't apply, so fall back to the nested-loop join ...
+                            component = new NestedLoopJoinComponent(context, left, right, joinCondition, joinType);
+                        }
+                        break;
                 }
                 // For each Constraint object applied to the JOIN, simply create a SelectComponent on top ...
                 List<Constraint> constraints = node.getPropertyAsList(Property.JOIN_CONSTRAINTS, Constraint.class);
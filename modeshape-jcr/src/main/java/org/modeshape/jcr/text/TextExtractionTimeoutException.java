@@ -0,0 +1,55 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ * See the AUTHORS.txt file in the distribution for a full listing of
+ * individual contributors.
+ *
+ * ModeShape is free software. Unless otherwise indicated, all code in ModeShape
+ * is licensed to you under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * ModeShape is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.modeshape.jcr.text;
+
+import org.modeshape.jcr.JcrI18n;
+
+/**
+ * An exception thrown to a {@link org.modeshape.jcr.api.text.TextExtractor} when it records text after the maximum time allowed
+ * for extracting the text of a single binary value has elapsed.
+ */
+public class TextExtractionTimeoutException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long timeoutInMillis;
+
+    /**
+     * @param timeoutInMillis the maximum time in milliseconds that the extraction was allowed to take
+     */
+    public TextExtractionTimeoutException( long timeoutInMillis ) {
+        super(JcrI18n.textExtractionTimeout.text(timeoutInMillis));
+        this.timeoutInMillis = timeoutInMillis;
+    }
+
+    /**
+     * Get the maximum time that the extraction was allowed to take.
+     *
+     * @return the timeout in milliseconds
+     */
+    public long getTimeoutInMillis() {
+        return timeoutInMillis;
+    }
+}
@@ -24,12 +24,24 @@
 
 package org.modeshape.jcr.text;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import org.modeshape.common.util.StringUtil;
 import org.modeshape.jcr.api.text.TextExtractor;
 
 
 /**
- * A {@link org.modeshape.jcr.api.text.TextExtractor.Output} implementation which appends each incoming text into a buffer,
- * separating the content via the configured separator.
+ * A {@link org.modeshape.jcr.api.text.TextExtractor.Output} implementation which writes each incoming text into a
+ * {@link Writer}, separating the content via the configured separator. By default the text is accumulated in memory, but it can
+ * also be streamed into another writer (e.g., one that stores the text in a binary store) so that the extracted text is never
+ * held in memory in its entirety.
+ * <p>
+ * The output can limit the number of characters that are written, in which case any text beyond that limit is silently
+ * discarded, and the time that the extraction may take, in which case a {@link TextExtractionTimeoutException} is thrown to the
+ * extractor once the time has elapsed. Since an extractor may run for a long time without recording any text, the caller should
+ * also enforce the time limit from outside the extractor, and {@link #expire() expire} the output when it stops waiting.
+ * </p>
  *
  * @author Horia Chiorean
  */
@@ -37,26 +49,149 @@ public final class TextExtractorOutput implements TextExtractor.Output {
 
     private static final String DEFAULT_SEPARATOR = " ";
 
-    private final StringBuilder buffer = new StringBuilder("");
+    private final StringWriter buffer;
+    private final Writer writer;
     private final String separator;
+    private final long maximumCharacters;
+    private final long timeoutInMillis;
+    private final long deadline;
+    private long count;
+    private boolean hasText;
+    private boolean truncated;
+    private boolean expired;
+    private IOException failure;
 
     public TextExtractorOutput() {
         this(DEFAULT_SEPARATOR);
     }
 
     public TextExtractorOutput( String separator ) {
+        this(null, separator, -1L, 0L);
+    }
+
+    /**
+     * Create an output that accumulates the text in memory, with the given limits.
+     *
+     * @param maximumCharacters the maximum number of characters that are recorded, or a negative number if there is no limit
+     * @param timeoutInMillis the maximum time in milliseconds that the extraction may take, or 0 if there is no limit
+     */
+    public TextExtractorOutput( long maximumCharacters,
+                                long timeoutInMillis ) {
+        this(null, DEFAULT_SEPARATOR, maximumCharacters, timeoutInMillis);
+    }
+
+    /**
+     * Create an output that writes the text into the supplied writer, with the given limits.
+     *
+     * @param writer the writer to which the text is written, or null if the text should be accumulated in memory
+     * @param separator the separator that is written between the texts that are recorded; may not be null
+     * @param maximumCharacters the maximum number of characters that are written, or a negative number if there is no limit
+     * @param timeoutInMillis the maximum time in milliseconds that the extraction may take, or 0 if there is no limit
+     */
+    public TextExtractorOutput( Writer writer,
+                                String separator,
+                                long maximumCharacters,
+                                long timeoutInMillis ) {
+        this.buffer = writer == null ? new StringWriter() : null;
+        this.writer = writer == null ? this.buffer : writer;
         this.separator = separator;
+        this.maximumCharacters = maximumCharacters;
+        this.timeoutInMillis = timeoutInMillis;
+        this.deadline = timeoutInMillis > 0L ? System.currentTimeMillis() + timeoutInMillis : Long.MAX_VALUE;
     }
 
     @Override
-    public void recordText( String text ) {
-        if (buffer.length() > 0) {
-            buffer.append(separator);
+    public synchronized void recordText( String text ) {
+        if (expired || System.currentTimeMillis() > deadline) {
+            throw new TextExtractionTimeoutException(timeoutInMillis);
+        }
+        if (text == null || truncated || failure != null) {
+            return;
+        }
+        try {
+            if (count > 0) {
+                write(separator);
+            }
+            write(text);
+            if (!hasText && !StringUtil.isBlank(text)) {
+                hasText = true;
+            }
+        } catch (IOException e) {
+            // The extractors cannot handle the exception, so record it and report it when the output is closed ...
+            failure = e;
         }
-        buffer.append(text);
     }
 
+    private void write( String text ) throws IOException {
+        if (truncated) {
+            return;
+        }
+        int length = text.length();
+        if (maximumCharacters >= 0L && count + length > maximumCharacters) {
+            length = (int)(maximumCharacters - count);
+            truncated = true;
+        }
+        writer.write(text, 0, length);
+        count += length;
+    }
+
+    /**
+     * Stop accepting text, because the caller is no longer waiting for the extraction. Any text that the extractor records after
+     * this method returns results in a {@link TextExtractionTimeoutException}, so the text recorded so far can safely be used
+     * while the extractor is still running.
+     */
+    public synchronized void expire() {
+        expired = true;
+    }
+
+    /**
+     * Get the text that was recorded, if it was accumulated in memory.
+     *
+     * @return the text, or null if the text was written into another writer
+     */
     public String getText() {
-        return buffer.toString();
+        return buffer != null ? buffer.toString() : null;
+    }
+
+    /**
+     * Determine whether any non-blank text was recorded.
+     *
+     * @return true if non-blank text was recorded, or false otherwise
+     */
+    public boolean hasText() {
+        return hasText;
+    }
+
+    /**
+     * Determine whether some of the recorded text was discarded because it exceeded the maximum number of characters.
+     *
+     * @return true if the text was truncated, or false otherwise
+     */
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    /**
+     * Get the number of characters that were written.
+     *
+     * @return the number of characters; never negative
+     */
+    public long getCharacterCount() {
+        return count;
+    }
+
+    /**
+     * Close the underlying writer.
+     *
+     * @throws IOException if there was a problem writing any of the recorded text or closing the writer
+     */
+    public void close() throws IOException {
+        try {
+            writer.close();
+        } finally {
+            if (failure != null) {
+                throw failure;
+            }
+        }
     }
 }
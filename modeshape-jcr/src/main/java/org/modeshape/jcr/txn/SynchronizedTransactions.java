@@ -162,7 +162,7 @@ public final class SynchronizedTransactions extends Transactions {
                     }
                 }
             };
-            this.monitor = new SynchronizedMonitor(newMonitor());
+            this.monitor = new SynchronizedMonitor(monitorFor(this));
             txnMgr.getTransaction().registerSynchronization(synchronization);
         }
 
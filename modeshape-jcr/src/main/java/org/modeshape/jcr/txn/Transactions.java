@@ -243,6 +243,21 @@ public abstract class Transactions {
         return monitorFactory.createMonitor();
     }
 
+    /**
+     * Create a new monitor for the supplied transaction. A monitor that is also a {@link TransactionFunction} is called when the
+     * transaction completes, so that it can act upon the changes only once they have been committed.
+     * 
+     * @param transaction the transaction; may not be null
+     * @return the monitor; may be null if there is no monitoring
+     */
+    protected Monitor monitorFor( Transaction transaction ) {
+        Monitor monitor = newMonitor();
+        if (monitor instanceof TransactionFunction) {
+            transaction.uponCompletion((TransactionFunction)monitor);
+        }
+        return monitor;
+    }
+
     protected abstract class BaseTransaction implements Transaction {
         protected final TransactionManager txnMgr;
         private List<TransactionFunction> functions;
@@ -253,7 +268,7 @@ public abstract class Transactions {
 
         @Override
         public Monitor createMonitor() {
-            return newMonitor();
+            return monitorFor(this);
         }
 
         protected void executeFunctions() {
@@ -222,6 +222,21 @@ public abstract class AbstractBinaryStore implements BinaryStore {
     public abstract void storeExtractedText( BinaryValue source,
                                              String extractedText ) throws BinaryStoreException;
 
+    /**
+     * Create a writer through which the text extracted from a binary value is stored into this store when the writer is closed.
+     * By default the text is collected in memory and then {@link #storeExtractedText(BinaryValue, String) stored}; stores that can
+     * persist the text incrementally should override this method so that the text is never held in memory in its entirety.
+     *
+     * @param source a {@code non-null} {@link BinaryValue} instance from which the text is extracted
+     * @param bufferSize the number of characters that should be buffered before they are written; always positive
+     * @return the writer; never null
+     * @throws BinaryStoreException if the writer cannot be created
+     */
+    public ExtractedTextWriter extractedTextWriter( BinaryValue source,
+                                                    int bufferSize ) throws BinaryStoreException {
+        return new StoringExtractedTextWriter(source);
+    }
+
     /**
      * Returns the extracted text of a binary value, or {@code null} if such text hasn't been stored previously (but the binary
      * value can be found in the store)
@@ -266,4 +281,54 @@ public abstract class AbstractBinaryStore implements BinaryStore {
     public void shutdown() {
         //does nothing by default
     }
+
+    /**
+     * An {@link ExtractedTextWriter} that collects the text in memory, and stores it upon {@link #close()}.
+     */
+    protected final class StoringExtractedTextWriter extends ExtractedTextWriter {
+        private final BinaryValue source;
+        private StringBuilder text = new StringBuilder();
+
+        protected StoringExtractedTextWriter( BinaryValue source ) {
+            this.source = source;
+        }
+
+        @Override
+        public void write( char[] cbuf,
+                           int off,
+                           int len ) {
+            if (text != null) text.append(cbuf, off, len);
+        }
+
+        @Override
+        public void write( String str,
+                           int off,
+                           int len ) {
+            if (text != null) text.append(str, off, off + len);
+        }
+
+        @Override
+        public void flush() {
+            // nothing to flush
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (text == null) return;
+            String extractedText = text.toString();
+            text = null;
+            if (!StringUtil.isBlank(extractedText)) {
+                try {
+                    storeExtractedText(source, extractedText);
+                } catch (BinaryStoreException e) {
+                    throw new IOException(e);
+                }
+            }
+        }
+
+        @Override
+        public void discard() {
+            text = null;
+        }
+    }
 }
@@ -0,0 +1,596 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ * See the AUTHORS.txt file in the distribution for a full listing of 
+ * individual contributors.
+ *
+ * ModeShape is free software. Unless otherwise indicated, all code in ModeShape
+ * is licensed to you under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ * 
+ * ModeShape is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.modeshape.jcr.value.binary;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import org.modeshape.common.SystemFailureException;
+import org.modeshape.common.annotation.Immutable;
+import org.modeshape.common.annotation.ThreadSafe;
+import org.modeshape.common.util.CheckArg;
+import org.modeshape.common.util.IoUtil;
+import org.modeshape.common.util.SecureHash;
+import org.modeshape.common.util.SecureHash.Algorithm;
+import org.modeshape.common.util.SecureHash.HashingInputStream;
+import org.modeshape.jcr.JcrI18n;
+import org.modeshape.jcr.text.TextExtractorContext;
+import org.modeshape.jcr.value.BinaryKey;
+import org.modeshape.jcr.value.BinaryValue;
+
+/**
+ * A {@link FileSystemBinaryStore} that splits each binary value into content-defined chunks (see
+ * {@link ContentDefinedChunker}) and stores each distinct chunk only once, keyed by the SHA-1 of the chunk. Two large values
+ * that differ in only a few places therefore share all but a few of their chunks.
+ * <p>
+ * A binary value is still stored under the SHA-1 of its entire content, but the file at that location is a small
+ * <i>manifest</i> that lists the keys and lengths of the value's chunks. The chunks themselves live in the "chunks"
+ * subdirectory, using the same directory structure as the values. Because the manifests occupy the normal location of the
+ * values, marking values as unused and removing them works just as in the {@link FileSystemBinaryStore}. In addition,
+ * {@link #removeValuesUnusedLongerThan(long, TimeUnit)} removes the chunks that are no longer referenced by any manifest
+ * (including the manifests of unused values that have not yet been removed).
+ * </p>
+ * <p>
+ * Files that are not manifests (e.g., values stored before chunking was enabled for the directory, extracted text, and MIME
+ * types) are read as-is.
+ * </p>
+ */
+@ThreadSafe
+public class ChunkedFileSystemBinaryStore extends FileSystemBinaryStore {
+
+    /**
+     * The default average size of a chunk, in bytes.
+     */
+    public static final int DEFAULT_AVERAGE_CHUNK_SIZE = 1 << 16; // 64K
+
+    protected static final String CHUNKS_DIRECTORY_NAME = "chunks";
+
+    private static final String TEMP_FILE_PREFIX = "ms-chunked-binstore";
+    private static final String TEMP_FILE_SUFFIX = "chunk";
+
+    private static final ConcurrentHashMap<String, ChunkedFileSystemBinaryStore> INSTANCES = new ConcurrentHashMap<String, ChunkedFileSystemBinaryStore>();
+
+    /**
+     * Get the chunked store for the supplied directory.
+     * 
+     * @param directory the directory in which the values are stored; may not be null
+     * @param averageChunkSize the desired average size of the chunks in bytes; must be positive and is only used when the store
+     *        for the directory is first created
+     * @return the store; never null
+     */
+    public static ChunkedFileSystemBinaryStore create( File directory,
+                                                       int averageChunkSize ) {
+        String key = directory.getAbsolutePath();
+        ChunkedFileSystemBinaryStore store = INSTANCES.get(key);
+        if (store == null) {
+            store = new ChunkedFileSystemBinaryStore(directory, averageChunkSize);
+            ChunkedFileSystemBinaryStore existing = INSTANCES.putIfAbsent(key, store);
+            if (existing != null) {
+                store = existing;
+            }
+        }
+        return store;
+    }
+
+    private final File chunks;
+    private final NamedLocks chunkLocks = new NamedLocks();
+    private final int minimumChunkSize;
+    private final int averageChunkSize;
+    private final int maximumChunkSize;
+
+    protected ChunkedFileSystemBinaryStore( File directory,
+                                            int averageChunkSize ) {
+        super(directory);
+        CheckArg.isPositive(averageChunkSize, "averageChunkSize");
+        this.chunks = new File(directory, CHUNKS_DIRECTORY_NAME);
+        this.averageChunkSize = averageChunkSize;
+        this.minimumChunkSize = Math.max(1, averageChunkSize / 4);
+        this.maximumChunkSize = averageChunkSize * 4;
+    }
+
+    /**
+     * Get the desired average size of the chunks.
+     * 
+     * @return the average chunk size in bytes
+     */
+    public int getAverageChunkSize() {
+        return averageChunkSize;
+    }
+
+    @Override
+    public BinaryValue storeValue( InputStream stream ) throws BinaryStoreException {
+        File manifestFile = null;
+        try {
+            // Split the content into chunks, and while we do grab the SHA-1 hash of the whole value ...
+            HashingInputStream hashingStream = SecureHash.createHashingStream(Algorithm.SHA_1, stream);
+            ContentDefinedChunker chunker = new ContentDefinedChunker(hashingStream, minimumChunkSize, averageChunkSize,
+                                                                      maximumChunkSize);
+            // Hold on to the leading chunks until we know whether the value is small enough to be kept in-memory ...
+            List<byte[]> leadingChunks = new ArrayList<byte[]>();
+            long numberOfBytes = 0L;
+            byte[] chunk = chunker.nextChunk();
+            while (chunk != null && numberOfBytes < getMinimumBinarySizeInBytes()) {
+                leadingChunks.add(chunk);
+                numberOfBytes += chunk.length;
+                chunk = chunker.nextChunk();
+            }
+            if (chunk == null && numberOfBytes < getMinimumBinarySizeInBytes()) {
+                // The content is small enough to just store in-memory ...
+                hashingStream.close();
+                ByteArrayOutputStream content = new ByteArrayOutputStream((int)numberOfBytes);
+                for (byte[] leadingChunk : leadingChunks) {
+                    content.write(leadingChunk);
+                }
+                return new InMemoryBinaryValue(this, new BinaryKey(hashingStream.getHash()), content.toByteArray());
+            }
+            List<ChunkReference> references = new ArrayList<ChunkReference>();
+            for (byte[] leadingChunk : leadingChunks) {
+                references.add(storeChunk(leadingChunk));
+            }
+            while (chunk != null) {
+                references.add(storeChunk(chunk));
+                numberOfBytes += chunk.length;
+                chunk = chunker.nextChunk();
+            }
+            hashingStream.close();
+            BinaryKey key = new BinaryKey(hashingStream.getHash());
+
+            // Write the manifest and move it into the store, where it takes the place of the value's content ...
+            manifestFile = File.createTempFile(TEMP_FILE_PREFIX, TEMP_FILE_SUFFIX);
+            new Manifest(key, numberOfBytes, references).write(manifestFile);
+            BinaryValue value = saveTempFileToStore(manifestFile, key, numberOfBytes);
+
+            if (extractors() != null) {
+                extractors().extract(this, value, new TextExtractorContext(detector()));
+            }
+            return value;
+        } catch (IOException e) {
+            throw new BinaryStoreException(e);
+        } catch (NoSuchAlgorithmException e) {
+            throw new SystemFailureException(e);
+        } finally {
+            IoUtil.closeQuietly(stream);
+            if (manifestFile != null) {
+                manifestFile.delete();
+            }
+        }
+    }
+
+    /**
+     * Store the supplied chunk unless a chunk with the same content is already stored.
+     * 
+     * @param chunk the content of the chunk; may not be null
+     * @return the reference to the stored chunk; never null
+     * @throws IOException if the chunk could not be written
+     * @throws BinaryStoreException if the location of the chunk could not be determined
+     */
+    protected ChunkReference storeChunk( byte[] chunk ) throws IOException, BinaryStoreException {
+        BinaryKey chunkKey = BinaryKey.keyFor(chunk);
+        File chunkFile = findFile(chunks, chunkKey, true);
+        // The read lock allows concurrent writers of the same chunk, but excludes the removal of unreferenced chunks ...
+        Lock lock = chunkLocks.readLock(chunkKey.toString());
+        try {
+            if (chunkFile.exists()) {
+                // Reuse the existing chunk, but make sure it doesn't look like an old, unreferenced chunk
+                // to a concurrent removal (since our manifest hasn't been written yet) ...
+                chunkFile.setLastModified(System.currentTimeMillis());
+            } else {
+                // Write the chunk into a temporary file in the same directory, and then rename it ...
+                File tmpFile = File.createTempFile(TEMP_FILE_PREFIX, TEMP_FILE_SUFFIX, chunkFile.getParentFile());
+                try {
+                    OutputStream output = new FileOutputStream(tmpFile);
+                    try {
+                        output.write(chunk);
+                    } finally {
+                        output.close();
+                    }
+                    if (!tmpFile.renameTo(chunkFile) && !chunkFile.exists()) {
+                        throw new IOException(JcrI18n.unableToPersistBinaryValueToFileSystemStore.text(chunkKey,
+                                                                                                        chunkFile.getPath()));
+                    }
+                } finally {
+                    tmpFile.delete();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        return new ChunkReference(chunkKey, chunk.length);
+    }
+
+    @Override
+    public InputStream getInputStream( BinaryKey key ) throws BinaryStoreException {
+        Manifest manifest = null;
+        InputStream stream = super.getInputStream(key);
+        try {
+            manifest = Manifest.read(stream, key);
+        } catch (IOException e) {
+            throw new BinaryStoreException(e);
+        } finally {
+            IoUtil.closeQuietly(stream);
+        }
+        if (manifest == null) {
+            // This is not a manifest, so just read the file ...
+            return super.getInputStream(key);
+        }
+        return new ChunkedInputStream(manifest.chunks());
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * After the unused values are removed, this method removes the chunks that are no longer referenced by any remaining
+     * manifest. A chunk is only removed if it has not been written or reused within the same period, so that the chunks of a
+     * value that is being stored concurrently (and whose manifest does not exist yet) are kept.
+     * </p>
+     */
+    @Override
+    public void removeValuesUnusedLongerThan( long minimumAge,
+                                              TimeUnit unit ) throws BinaryStoreException {
+        long oldestTimestamp = System.currentTimeMillis() - TimeUnit.MILLISECONDS.convert(minimumAge, unit);
+        super.removeValuesUnusedLongerThan(minimumAge, unit);
+
+        // Collect all chunks referenced from the manifests. Values are moved into and out of the trash concurrently,
+        // so look at the values, the trash, and then the values again so that a moving manifest is seen at least once ...
+        File directory = getDirectory();
+        File trash = new File(directory, TRASH_DIRECTORY_NAME);
+        Set<BinaryKey> referenced = new HashSet<BinaryKey>();
+        try {
+            collectReferencedChunks(directory, referenced);
+            collectReferencedChunks(trash, referenced);
+            collectReferencedChunks(directory, referenced);
+            removeUnreferencedChunks(chunks, referenced, oldestTimestamp);
+        } catch (IOException e) {
+            throw new BinaryStoreException(e);
+        }
+    }
+
+    private void collectReferencedChunks( File parentDirectory,
+                                          Set<BinaryKey> referenced ) throws IOException {
+        File[] files = parentDirectory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File fileOrDir : files) {
+            if (fileOrDir.isDirectory()) {
+                String name = fileOrDir.getName();
+                if (parentDirectory.equals(getDirectory())
+                    && (name.equals(TRASH_DIRECTORY_NAME) || name.equals(CHUNKS_DIRECTORY_NAME))) {
+                    continue;
+                }
+                collectReferencedChunks(fileOrDir, referenced);
+            } else if (BinaryKey.isProperlyFormattedKey(fileOrDir.getName())) {
+                Manifest manifest = Manifest.read(fileOrDir);
+                if (manifest != null) {
+                    for (ChunkReference reference : manifest.chunks()) {
+                        referenced.add(reference.key());
+                    }
+                }
+            }
+        }
+    }
+
+    private void removeUnreferencedChunks( File parentDirectory,
+                                           Set<BinaryKey> referenced,
+                                           long oldestTimestamp ) {
+        File[] files = parentDirectory.listFiles();
+        if (files == null) {
+            return;
+        }
+        boolean removed = false;
+        for (File fileOrDir : files) {
+            if (fileOrDir.isDirectory()) {
+                removeUnreferencedChunks(fileOrDir, referenced, oldestTimestamp);
+                continue;
+            }
+            String name = fileOrDir.getName();
+            if (BinaryKey.isProperlyFormattedKey(name)) {
+                BinaryKey chunkKey = new BinaryKey(name);
+                if (referenced.contains(chunkKey)) continue;
+                Lock lock = chunkLocks.writeLock(name);
+                try {
+                    if (fileOrDir.lastModified() < oldestTimestamp && fileOrDir.delete()) {
+                        removed = true;
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            } else if (name.startsWith(TEMP_FILE_PREFIX) && fileOrDir.lastModified() < oldestTimestamp) {
+                // A temporary file left behind by a failed write ...
+                fileOrDir.delete();
+            }
+        }
+        if (removed) {
+            pruneEmptyDirectories(chunks, parentDirectory);
+        }
+    }
+
+    /**
+     * A reference to a stored chunk.
+     */
+    @Immutable
+    protected static final class ChunkReference {
+        private final BinaryKey key;
+        private final int length;
+
+        protected ChunkReference( BinaryKey key,
+                                  int length ) {
+            this.key = key;
+            this.length = length;
+        }
+
+        /**
+         * @return the SHA-1 of the chunk's content; never null
+         */
+        public BinaryKey key() {
+            return key;
+        }
+
+        /**
+         * @return the number of bytes in the chunk
+         */
+        public int length() {
+            return length;
+        }
+    }
+
+    /**
+     * The list of chunks that make up a binary value. A manifest is written as:
+     * <ol>
+     * <li>the 8-byte {@link #MAGIC magic number} and a 1-byte version number;</li>
+     * <li>the 20-byte SHA-1 of the value, which distinguishes a manifest from a value that just happens to start with the same
+     * bytes;</li>
+     * <li>the 8-byte length of the value and the 4-byte number of chunks; and</li>
+     * <li>for each chunk, the 20-byte SHA-1 and the 4-byte length of the chunk.</li>
+     * </ol>
+     */
+    @Immutable
+    protected static final class Manifest {
+        private static final long MAGIC = 0x4d534348554e4b53L; // "MSCHUNKS"
+        private static final byte VERSION = 1;
+
+        private final BinaryKey key;
+        private final long length;
+        private final List<ChunkReference> chunks;
+
+        protected Manifest( BinaryKey key,
+                            long length,
+                            List<ChunkReference> chunks ) {
+            this.key = key;
+            this.length = length;
+            this.chunks = Collections.unmodifiableList(chunks);
+        }
+
+        /**
+         * @return the key of the value; never null
+         */
+        public BinaryKey key() {
+            return key;
+        }
+
+        /**
+         * @return the length of the value in bytes
+         */
+        public long length() {
+            return length;
+        }
+
+        /**
+         * @return the references to the chunks of the value, in order; never null
+         */
+        public List<ChunkReference> chunks() {
+            return chunks;
+        }
+
+        protected void write( File file ) throws IOException {
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+            try {
+                output.writeLong(MAGIC);
+                output.writeByte(VERSION);
+                output.write(key.toBytes());
+                output.writeLong(length);
+                output.writeInt(chunks.size());
+                for (ChunkReference chunk : chunks) {
+                    output.write(chunk.key().toBytes());
+                    output.writeInt(chunk.length());
+                }
+            } finally {
+                output.close();
+            }
+        }
+
+        /**
+         * Read the manifest in the supplied file, whose name is the key of the value.
+         * 
+         * @param file the file; may not be null
+         * @return the manifest, or null if the file is not a manifest
+         * @throws IOException if the file could not be read
+         */
+        protected static Manifest read( File file ) throws IOException {
+            InputStream stream = new FileInputStream(file);
+            try {
+                return read(stream, new BinaryKey(file.getName()));
+            } finally {
+                stream.close();
+            }
+        }
+
+        /**
+         * Read the manifest of the value with the given key from the supplied stream.
+         * 
+         * @param stream the stream; may not be null
+         * @param key the key of the value
+         * @return the manifest, or null if the stream does not contain the manifest of the value with the given key
+         * @throws IOException if the stream could not be read
+         */
+        protected static Manifest read( InputStream stream,
+                                        BinaryKey key ) throws IOException {
+            DataInputStream input = new DataInputStream(new BufferedInputStream(stream));
+            try {
+                if (input.readLong() != MAGIC || input.readByte() != VERSION) {
+                    return null;
+                }
+                if (!key.equals(readKey(input))) {
+                    return null;
+                }
+                long length = input.readLong();
+                int count = input.readInt();
+                List<ChunkReference> chunks = new ArrayList<ChunkReference>(count);
+                for (int i = 0; i != count; ++i) {
+                    BinaryKey chunkKey = readKey(input);
+                    chunks.add(new ChunkReference(chunkKey, input.readInt()));
+                }
+                return new Manifest(key, length, chunks);
+            } catch (EOFException e) {
+                // Too short to be a manifest ...
+                return null;
+            }
+        }
+
+        private static BinaryKey readKey( DataInputStream input ) throws IOException {
+            byte[] sha1 = new byte[20];
+            input.readFully(sha1);
+            return new BinaryKey(sha1);
+        }
+    }
+
+    /**
+     * An {@link InputStream} that reads the chunks of a value in order, opening each chunk file only when it is needed. Skipping
+     * moves over entire chunks without opening them.
+     */
+    protected final class ChunkedInputStream extends InputStream {
+        private final List<ChunkReference> references;
+        private int index = -1;
+        private InputStream current;
+        private File currentFile;
+        private long remainingInCurrent;
+        private boolean closed;
+
+        protected ChunkedInputStream( List<ChunkReference> references ) {
+            this.references = references;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!nextChunkIfNeeded()) return -1;
+            int b = current.read();
+            if (b == -1) throw new EOFException(currentFile.getPath());
+            --remainingInCurrent;
+            return b;
+        }
+
+        @Override
+        public int read( byte[] b,
+                         int off,
+                         int len ) throws IOException {
+            if (len == 0) return 0;
+            if (!nextChunkIfNeeded()) return -1;
+            int read = current.read(b, off, (int)Math.min(len, remainingInCurrent));
+            if (read == -1) throw new EOFException(currentFile.getPath());
+            remainingInCurrent -= read;
+            return read;
+        }
+
+        @Override
+        public long skip( long n ) throws IOException {
+            long skipped = 0L;
+            while (skipped < n && !closed) {
+                if (current != null && remainingInCurrent > 0) {
+                    long skippedInCurrent = current.skip(Math.min(n - skipped, remainingInCurrent));
+                    if (skippedInCurrent <= 0) break;
+                    remainingInCurrent -= skippedInCurrent;
+                    skipped += skippedInCurrent;
+                } else if (index + 1 < references.size() && references.get(index + 1).length() <= n - skipped) {
+                    // Skip the whole next chunk without opening it ...
+                    closeCurrent();
+                    ++index;
+                    skipped += references.get(index).length();
+                } else if (!nextChunkIfNeeded()) {
+                    break;
+                }
+            }
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return current != null ? (int)Math.min(Integer.MAX_VALUE, remainingInCurrent) : 0;
+        }
+
+        @Override
+        public void close() throws IOException {
+            closed = true;
+            closeCurrent();
+        }
+
+        @SuppressWarnings( "synthetic-access" )
+        private boolean nextChunkIfNeeded() throws IOException {
+            while (!closed && (current == null || remainingInCurrent == 0)) {
+                closeCurrent();
+                if (index + 1 >= references.size()) {
+                    return false;
+                }
+                ++index;
+                ChunkReference reference = references.get(index);
+                try {
+                    currentFile = findFile(chunks, reference.key(), false);
+                } catch (BinaryStoreException e) {
+                    throw new IOException(e);
+                }
+                current = new BufferedInputStream(new FileInputStream(currentFile), MEDIUM_BUFFER_SIZE);
+                remainingInCurrent = reference.length();
+            }
+            return !closed;
+        }
+
+        private void closeCurrent() throws IOException {
+            if (current != null) {
+                try {
+                    current.close();
+                } finally {
+                    current = null;
+                    remainingInCurrent = 0L;
+                }
+            }
+        }
+    }
+}
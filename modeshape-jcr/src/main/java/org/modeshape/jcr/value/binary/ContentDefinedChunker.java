@@ -0,0 +1,151 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ * See the AUTHORS.txt file in the distribution for a full listing of 
+ * individual contributors.
+ *
+ * ModeShape is free software. Unless otherwise indicated, all code in ModeShape
+ * is licensed to you under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ * 
+ * ModeShape is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.modeshape.jcr.value.binary;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+import org.modeshape.common.annotation.NotThreadSafe;
+import org.modeshape.common.util.CheckArg;
+
+/**
+ * Splits a stream of bytes into variable-sized chunks whose boundaries are determined by the content itself, using a "gear"
+ * rolling hash over (roughly) the last 64 bytes. Because a boundary only depends on the bytes just before it, inserting or
+ * removing bytes in one part of a stream changes only the chunks around that edit, and the chunks of the rest of the stream
+ * remain the same. That is what allows {@link ChunkedFileSystemBinaryStore} to store each distinct chunk only once, even when
+ * two versions of a large file differ by only a few bytes.
+ * <p>
+ * Each chunk is at least the minimum size (except for the last chunk in the stream) and at most the maximum size. The
+ * boundaries in between are found where the rolling hash has its top <i>n</i> bits cleared, where 2<sup><i>n</i></sup> is the
+ * largest power of two not greater than the average size.
+ * </p>
+ */
+@NotThreadSafe
+final class ContentDefinedChunker {
+
+    /**
+     * The gear table maps each byte value to a random 64-bit number. It is generated from a fixed seed, and since the
+     * {@link Random} algorithm is fully specified, every JVM produces the same table and therefore the same chunk boundaries.
+     */
+    private static final long[] GEAR = new long[256];
+
+    static {
+        Random random = new Random(0x4d6f646553686170L);
+        for (int i = 0; i != GEAR.length; ++i) {
+            GEAR[i] = random.nextLong();
+        }
+    }
+
+    private final InputStream stream;
+    private final int minimumChunkSize;
+    private final int maximumChunkSize;
+    private final long mask;
+    private final byte[] buffer;
+    private int start;
+    private int end;
+    private boolean endOfStream;
+
+    /**
+     * Create a chunker that reads the supplied stream.
+     * 
+     * @param stream the stream to be split into chunks; may not be null
+     * @param minimumChunkSize the minimum size of a chunk in bytes; must be positive
+     * @param averageChunkSize the desired average size of a chunk in bytes; must not be less than the minimum size
+     * @param maximumChunkSize the maximum size of a chunk in bytes; must not be less than the average size
+     */
+    ContentDefinedChunker( InputStream stream,
+                           int minimumChunkSize,
+                           int averageChunkSize,
+                           int maximumChunkSize ) {
+        CheckArg.isNotNull(stream, "stream");
+        CheckArg.isPositive(minimumChunkSize, "minimumChunkSize");
+        CheckArg.isGreaterThanOrEqualTo(averageChunkSize, minimumChunkSize, "averageChunkSize");
+        CheckArg.isGreaterThanOrEqualTo(maximumChunkSize, averageChunkSize, "maximumChunkSize");
+        this.stream = stream;
+        this.minimumChunkSize = minimumChunkSize;
+        this.maximumChunkSize = maximumChunkSize;
+        int bits = 31 - Integer.numberOfLeadingZeros(averageChunkSize);
+        this.mask = bits == 0 ? 0L : -1L << (64 - bits);
+        this.buffer = new byte[maximumChunkSize * 2];
+    }
+
+    /**
+     * Read the next chunk from the stream.
+     * 
+     * @return the bytes of the next chunk, or null if the end of the stream has been reached
+     * @throws IOException if there is a problem reading the stream
+     */
+    byte[] nextChunk() throws IOException {
+        fill();
+        int available = end - start;
+        if (available == 0) {
+            return null;
+        }
+        int length = boundary(available);
+        byte[] chunk = Arrays.copyOfRange(buffer, start, start + length);
+        start += length;
+        return chunk;
+    }
+
+    /**
+     * Make sure the buffer contains at least a maximum-sized chunk, unless the end of the stream has been reached.
+     * 
+     * @throws IOException if there is a problem reading the stream
+     */
+    private void fill() throws IOException {
+        if (endOfStream || end - start >= maximumChunkSize) {
+            return;
+        }
+        if (start > 0) {
+            // Move the unread bytes to the front of the buffer ...
+            System.arraycopy(buffer, start, buffer, 0, end - start);
+            end -= start;
+            start = 0;
+        }
+        while (end < buffer.length) {
+            int read = stream.read(buffer, end, buffer.length - end);
+            if (read == -1) {
+                endOfStream = true;
+                return;
+            }
+            end += read;
+        }
+    }
+
+    private int boundary( int available ) {
+        if (available <= minimumChunkSize) {
+            return available;
+        }
+        int limit = Math.min(available, maximumChunkSize);
+        long hash = 0L;
+        for (int i = minimumChunkSize; i < limit; ++i) {
+            hash = (hash << 1) + GEAR[buffer[start + i] & 0xff];
+            if ((hash & mask) == 0L) {
+                return i + 1;
+            }
+        }
+        return limit;
+    }
+}
@@ -25,24 +25,42 @@ package org.modeshape.jcr.value.binary;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.RandomAccessFile;
+import java.io.Writer;
 import java.nio.channels.Channels;
 import java.nio.channels.FileChannel;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
 import org.modeshape.common.SystemFailureException;
 import org.modeshape.common.annotation.ThreadSafe;
 import org.modeshape.common.logging.Logger;
+import org.modeshape.common.util.CheckArg;
 import org.modeshape.common.util.IoUtil;
+import org.modeshape.common.util.NamedThreadFactory;
 import org.modeshape.common.util.SecureHash;
 import org.modeshape.common.util.SecureHash.Algorithm;
 import org.modeshape.common.util.SecureHash.HashingInputStream;
@@ -89,10 +107,22 @@ public class FileSystemBinaryStore extends AbstractBinaryStore {
     private static final String TEMP_FILE_SUFFIX = "hashing";
     protected static final String TRASH_DIRECTORY_NAME = "trash";
 
+    /**
+     * The default number of threads that remove unused values from the trash.
+     */
+    public static final int DEFAULT_GARBAGE_COLLECTION_THREADS = 4;
+
+    private static final String TRASH_INDEX_FILE_NAME = ".trash-index";
+    private static final String COLLECTING_TRASH_INDEX_FILE_NAME = ".trash-index.collecting";
+    private static final String INCOMPLETE_TRASH_INDEX_MARKER = "*";
+    private static final String TRASH_INDEX_LOCK_PREFIX = "trash-index/";
+
     private final File directory;
     private final File trash;
     private final NamedLocks locks = new NamedLocks();
     private volatile boolean initialized = false;
+    private volatile int garbageCollectionThreads = DEFAULT_GARBAGE_COLLECTION_THREADS;
+    private volatile int garbageCollectionRate = 0;
 
     protected FileSystemBinaryStore( File directory ) {
         this.directory = directory;
@@ -103,6 +133,44 @@ public class FileSystemBinaryStore extends AbstractBinaryStore {
         return directory;
     }
 
+    /**
+     * Get the number of threads that concurrently remove unused values from the different parts of the trash.
+     * 
+     * @return the number of garbage collection threads; always positive
+     */
+    public int getGarbageCollectionThreads() {
+        return garbageCollectionThreads;
+    }
+
+    /**
+     * Set the number of threads that concurrently remove unused values from the different parts of the trash.
+     * 
+     * @param garbageCollectionThreads the number of threads; must be positive
+     */
+    public void setGarbageCollectionThreads( int garbageCollectionThreads ) {
+        CheckArg.isPositive(garbageCollectionThreads, "garbageCollectionThreads");
+        this.garbageCollectionThreads = garbageCollectionThreads;
+    }
+
+    /**
+     * Get the maximum number of files per second that the garbage collection examines or removes.
+     * 
+     * @return the maximum rate, or 0 if the garbage collection is not throttled
+     */
+    public int getGarbageCollectionRate() {
+        return garbageCollectionRate;
+    }
+
+    /**
+     * Set the maximum number of files per second that the garbage collection examines or removes, across all of its threads.
+     * 
+     * @param filesPerSecond the maximum rate, or 0 if the garbage collection should not be throttled
+     */
+    public void setGarbageCollectionRate( int filesPerSecond ) {
+        CheckArg.isNonNegative(filesPerSecond, "filesPerSecond");
+        this.garbageCollectionRate = filesPerSecond;
+    }
+
     @Override
     public BinaryValue storeValue( InputStream stream ) throws BinaryStoreException {
         File tmpFile = null;
@@ -151,9 +219,20 @@ public class FileSystemBinaryStore extends AbstractBinaryStore {
         }
     }
 
-    private BinaryValue saveTempFileToStore( File tmpFile,
-                                             BinaryKey key,
-                                             long numberOfBytes ) throws BinaryStoreException {
+    /**
+     * Move the supplied temporary file into the store under the given key, unless the store already contains a file with that
+     * key.
+     * 
+     * @param tmpFile the temporary file; may not be null
+     * @param key the key of the value
+     * @param numberOfBytes the length of the binary value, which is also the length of the file unless a subclass stores some
+     *        other representation of the value
+     * @return the binary value for the stored file; never null
+     * @throws BinaryStoreException if the file could not be moved into the store
+     */
+    protected BinaryValue saveTempFileToStore( File tmpFile,
+                                               BinaryKey key,
+                                               long numberOfBytes ) throws BinaryStoreException {
         // Now that we know the SHA-1, find the File object that corresponds to the existing persisted file ...
         File persistedFile = findFile(directory, key, true);
 
@@ -172,7 +251,7 @@ public class FileSystemBinaryStore extends AbstractBinaryStore {
         } finally {
             lock.unlock();
         }
-        return new StoredBinaryValue(this, key, persistedFile.length());
+        return new StoredBinaryValue(this, key, numberOfBytes);
     }
 
     protected final void moveFileExclusively( File original,
@@ -296,6 +375,9 @@ public class FileSystemBinaryStore extends AbstractBinaryStore {
             return;
         }
 
+        // Record when it was trashed, so that the garbage collection doesn't have to look at every file in the trash ...
+        recordTrashed(key, System.currentTimeMillis());
+
         // Find where it should live in the trash ...
         File trashed = findFile(trash, key, true);
 
@@ -365,56 +447,270 @@ public class FileSystemBinaryStore extends AbstractBinaryStore {
         return false;
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The trash is split into shards (the first level of the hash-based directory structure), and each shard is processed
+     * independently by one of the {@link #getGarbageCollectionThreads() garbage collection threads}. Each shard contains an
+     * index of the times at which its files were moved into the trash, so that only the files that are old enough have to be
+     * examined. A shard without an index (e.g., one written by an earlier version) is scanned once, after which the index is
+     * complete. The number of files examined or removed per second can be {@link #setGarbageCollectionRate(int) limited}, so
+     * that the collection can run without saturating the disk.
+     * </p>
+     */
     @Override
     public void removeValuesUnusedLongerThan( long minimumAge,
                                               TimeUnit unit ) throws BinaryStoreException {
-        long oldestTimestamp = System.currentTimeMillis() - TimeUnit.MILLISECONDS.convert(minimumAge, unit);
+        final long oldestTimestamp = System.currentTimeMillis() - TimeUnit.MILLISECONDS.convert(minimumAge, unit);
+        File[] shards = trash.listFiles();
+        if (shards == null) {
+            return;
+        }
+        final Throttle throttle = new Throttle(garbageCollectionRate);
+        int threads = Math.min(garbageCollectionThreads, shards.length);
         try {
-            removeFilesOlderThan(oldestTimestamp, trash);
+            if (threads <= 1) {
+                for (File shard : shards) {
+                    if (shard.isDirectory()) {
+                        removeTrashedFilesOlderThan(oldestTimestamp, shard, throttle);
+                    }
+                }
+                return;
+            }
+            ExecutorService executor = Executors.newFixedThreadPool(threads, new NamedThreadFactory("modeshape-binary-gc"));
+            try {
+                List<Future<Void>> results = new ArrayList<Future<Void>>(shards.length);
+                for (final File shard : shards) {
+                    if (!shard.isDirectory()) continue;
+                    results.add(executor.submit(new Callable<Void>() {
+                        @SuppressWarnings( "synthetic-access" )
+                        @Override
+                        public Void call() throws Exception {
+                            removeTrashedFilesOlderThan(oldestTimestamp, shard, throttle);
+                            return null;
+                        }
+                    }));
+                }
+                for (Future<Void> result : results) {
+                    result.get();
+                }
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof BinaryStoreException) throw (BinaryStoreException)cause;
+                throw new BinaryStoreException(cause);
+            } finally {
+                executor.shutdownNow();
+            }
         } catch (IOException e) {
             throw new BinaryStoreException(e);
+        } catch (InterruptedException e) {
+            // Stop collecting; whatever remains will be removed the next time ...
+            Thread.currentThread().interrupt();
         }
     }
 
-    private void removeFilesOlderThan( long oldestTimestamp,
-                                       File parentDirectory ) throws IOException {
-        if (parentDirectory == null || !parentDirectory.exists() || parentDirectory.isFile()) {
-            return;
+    private void removeTrashedFilesOlderThan( long oldestTimestamp,
+                                              File shard,
+                                              Throttle throttle )
+        throws IOException, BinaryStoreException, InterruptedException {
+        File index = new File(shard, TRASH_INDEX_FILE_NAME);
+        File collecting = new File(shard, COLLECTING_TRASH_INDEX_FILE_NAME);
+
+        // Move the index aside, so that files trashed from now on are recorded in a new index ...
+        Lock lock = locks.writeLock(TRASH_INDEX_LOCK_PREFIX + shard.getName());
+        try {
+            if (index.exists()) {
+                if (collecting.exists()) {
+                    // A previous collection didn't finish, so add the new entries to its entries ...
+                    Map<String, Long> entries = new HashMap<String, Long>();
+                    boolean complete = readTrashIndex(index, entries);
+                    writeTrashIndex(collecting, entries, complete, true);
+                    index.delete();
+                } else if (!index.renameTo(collecting)) {
+                    throw new IOException(JcrI18n.unableToPersistBinaryValueToFileSystemStore.text(shard.getName(),
+                                                                                                    collecting.getPath()));
+                }
+            } else if (!collecting.exists()) {
+                // There is no index, so the shard has to be scanned ...
+                writeTrashIndex(collecting, Collections.<String, Long>emptyMap(), false, false);
+            }
+        } finally {
+            lock.unlock();
         }
-        boolean removed = false;
-        for (File fileOrDir : parentDirectory.listFiles()) {
-            if (fileOrDir == null || !fileOrDir.exists()) {
+
+        Map<String, Long> trashedSince = new HashMap<String, Long>();
+        if (!readTrashIndex(collecting, trashedSince)) {
+            scanTrashedFiles(shard, trashedSince, throttle);
+        }
+
+        Map<String, Long> remaining = new HashMap<String, Long>();
+        for (Map.Entry<String, Long> entry : trashedSince.entrySet()) {
+            if (entry.getValue() >= oldestTimestamp) {
+                remaining.put(entry.getKey(), entry.getValue());
+                continue;
+            }
+            throttle.acquire();
+            File file = findFile(trash, new BinaryKey(entry.getKey()), false);
+            if (!file.exists()) {
+                // The value was used again and moved out of the trash ...
                 continue;
             }
-            // The file or directory should exist at this point (at least for now) ...
+            long lastModified = file.lastModified();
+            if (lastModified >= oldestTimestamp || !removeTrashedFile(file)) {
+                // The file was trashed again recently, or is locked and will be removed next time ...
+                remaining.put(entry.getKey(), Math.max(entry.getValue(), lastModified));
+                continue;
+            }
+            pruneEmptyDirectories(trash, file.getParentFile());
+        }
+
+        // Record the files that remain in the trash ...
+        lock = locks.writeLock(TRASH_INDEX_LOCK_PREFIX + shard.getName());
+        try {
+            if (!remaining.isEmpty()) {
+                writeTrashIndex(index, remaining, true, true);
+            }
+            collecting.delete();
+            pruneEmptyDirectories(trash, shard);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean removeTrashedFile( File file ) throws IOException {
+        if (LOCK_WHEN_REMOVING_UNUSED_FILES) {
+            // Get a write lock on the file we want to delete ...
+            WrappedLock fileLock = FileLocks.get().tryWriteLock(file);
+            if (fileLock == null) {
+                // It is locked, so just skip the file and we'll get it next time round
+                return false;
+            }
+            try {
+                // And then delete the file ...
+                return file.delete();
+            } finally {
+                fileLock.unlock();
+            }
+        }
+        return file.delete();
+    }
+
+    private void scanTrashedFiles( File parentDirectory,
+                                   Map<String, Long> trashedSince,
+                                   Throttle throttle ) throws InterruptedException {
+        File[] files = parentDirectory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File fileOrDir : files) {
             if (fileOrDir.isDirectory()) {
-                removeFilesOlderThan(oldestTimestamp, fileOrDir);
-            } else if (fileOrDir.isFile()) {
-                File file = fileOrDir;
-                if (file.lastModified() < oldestTimestamp) {
-                    if (LOCK_WHEN_REMOVING_UNUSED_FILES) {
-                        // Get a write lock on the file we want to delete ...
-                        WrappedLock fileLock = FileLocks.get().tryWriteLock(file);
-                        if (fileLock != null) {
-                            try {
-                                // And then delete the file ...
-                                file.delete();
-                                removed = true;
-                            } finally {
-                                fileLock.unlock();
-                            }
-                        }
-                        // otherwise it was locked, so just skip the file and we'll get it next time round
-                    } else {
-                        if (file.delete()) {
-                            removed = true;
-                        }
-                    }
+                scanTrashedFiles(fileOrDir, trashedSince, throttle);
+            } else if (BinaryKey.isProperlyFormattedKey(fileOrDir.getName())) {
+                throttle.acquire();
+                addTrashIndexEntry(trashedSince, fileOrDir.getName(), fileOrDir.lastModified());
+            }
+        }
+    }
+
+    /**
+     * Record in the index of the trash shard that the value with the supplied key was moved into the trash.
+     * 
+     * @param key the key of the value
+     * @param timestamp the time at which the value was trashed
+     * @throws BinaryStoreException if the index cannot be written
+     */
+    private void recordTrashed( BinaryKey key,
+                                long timestamp ) throws BinaryStoreException {
+        File shard = new File(trash, key.toString().substring(0, 2));
+        Lock lock = locks.writeLock(TRASH_INDEX_LOCK_PREFIX + shard.getName());
+        try {
+            File index = new File(shard, TRASH_INDEX_FILE_NAME);
+            // A new index is only complete if the shard doesn't already contain trashed files that aren't in an index ...
+            boolean complete = index.exists() || new File(shard, COLLECTING_TRASH_INDEX_FILE_NAME).exists()
+                               || !containsTrashedFiles(shard);
+            writeTrashIndex(index, Collections.singletonMap(key.toString(), timestamp), complete, true);
+        } catch (IOException e) {
+            throw new BinaryStoreException(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean containsTrashedFiles( File parentDirectory ) {
+        File[] files = parentDirectory.listFiles();
+        if (files == null) {
+            return false;
+        }
+        for (File fileOrDir : files) {
+            if (fileOrDir.isDirectory() ? containsTrashedFiles(fileOrDir) : BinaryKey.isProperlyFormattedKey(fileOrDir.getName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Read the entries of a trash index. Each line of the index contains the key of a trashed value and the time at which it
+     * was trashed; a line containing only {@value #INCOMPLETE_TRASH_INDEX_MARKER} means the shard has to be scanned.
+     * 
+     * @param index the index file
+     * @param entries the map into which the latest time for each key is placed
+     * @return true if the index is complete, or false if the shard has to be scanned
+     * @throws IOException if the index cannot be read
+     */
+    private boolean readTrashIndex( File index,
+                                    Map<String, Long> entries ) throws IOException {
+        boolean complete = true;
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(index), "UTF-8"));
+        try {
+            String line = null;
+            while ((line = reader.readLine()) != null) {
+                int separator = line.indexOf(' ');
+                if (separator < 0) {
+                    // The marker, or a partially-written line ...
+                    complete = false;
+                    continue;
                 }
+                try {
+                    addTrashIndexEntry(entries, line.substring(0, separator), Long.parseLong(line.substring(separator + 1)));
+                } catch (NumberFormatException e) {
+                    complete = false;
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return complete;
+    }
+
+    private void writeTrashIndex( File index,
+                                  Map<String, Long> entries,
+                                  boolean complete,
+                                  boolean append ) throws IOException {
+        index.getParentFile().mkdirs();
+        Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(index, append), "UTF-8"));
+        try {
+            if (!complete) {
+                writer.write(INCOMPLETE_TRASH_INDEX_MARKER);
+                writer.write('\n');
             }
+            for (Map.Entry<String, Long> entry : entries.entrySet()) {
+                writer.write(entry.getKey());
+                writer.write(' ');
+                writer.write(entry.getValue().toString());
+                writer.write('\n');
+            }
+        } finally {
+            writer.close();
         }
-        if (removed) {
-            pruneEmptyDirectories(trash, parentDirectory);
+    }
+
+    private static void addTrashIndexEntry( Map<String, Long> entries,
+                                            String key,
+                                            long timestamp ) {
+        Long existing = entries.get(key);
+        if (existing == null || existing < timestamp) {
+            entries.put(key, timestamp);
         }
     }
 
@@ -450,6 +746,18 @@ public class FileSystemBinaryStore extends AbstractBinaryStore {
         storeStringAtKey(extractedText, extractedTextKey);
     }
 
+    @Override
+    public ExtractedTextWriter extractedTextWriter( BinaryValue source,
+                                                    int bufferSize ) throws BinaryStoreException {
+        BinaryKey extractedTextKey = createKeyFromSourceWithSuffix(source.getKey(), EXTRACTED_TEXT_SUFFIX);
+        try {
+            File tmpFile = File.createTempFile(TEMP_FILE_PREFIX, TEMP_FILE_SUFFIX + EXTRACTED_TEXT_SUFFIX);
+            return new FileExtractedTextWriter(tmpFile, extractedTextKey, bufferSize);
+        } catch (IOException e) {
+            throw new BinaryStoreException(e);
+        }
+    }
+
     private void storeStringAtKey( String string,
                                    BinaryKey key ) throws BinaryStoreException {
         File tmpFile = null;
@@ -526,6 +834,125 @@ public class FileSystemBinaryStore extends AbstractBinaryStore {
     }
 
     private boolean isReadableDir( File file ) {
-        return directory != null && directory.isDirectory() && directory.canRead();
+        return file != null && file.isDirectory() && file.canRead();
+    }
+
+    /**
+     * An {@link ExtractedTextWriter} that writes the text into a temporary file, which is moved into the store upon
+     * {@link #close()}.
+     */
+    protected final class FileExtractedTextWriter extends ExtractedTextWriter {
+        private final File tmpFile;
+        private final BinaryKey key;
+        private final Writer writer;
+        private boolean hasText;
+        private boolean closed;
+
+        protected FileExtractedTextWriter( File tmpFile,
+                                           BinaryKey key,
+                                           int bufferSize ) throws IOException {
+            this.tmpFile = tmpFile;
+            this.key = key;
+            this.writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tmpFile)), bufferSize);
+        }
+
+        @Override
+        public void write( char[] cbuf,
+                           int off,
+                           int len ) throws IOException {
+            if (!hasText) {
+                for (int i = off; i != off + len; ++i) {
+                    if (!Character.isWhitespace(cbuf[i])) {
+                        hasText = true;
+                        break;
+                    }
+                }
+            }
+            writer.write(cbuf, off, len);
+        }
+
+        @Override
+        public void write( String str,
+                           int off,
+                           int len ) throws IOException {
+            if (!hasText) {
+                for (int i = off; i != off + len; ++i) {
+                    if (!Character.isWhitespace(str.charAt(i))) {
+                        hasText = true;
+                        break;
+                    }
+                }
+            }
+            writer.write(str, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            writer.flush();
+        }
+
+        @SuppressWarnings( "synthetic-access" )
+        @Override
+        public void close() throws IOException {
+            if (closed) return;
+            closed = true;
+            try {
+                writer.close();
+                if (hasText) {
+                    saveTempFileToStore(tmpFile, key, tmpFile.length());
+                }
+            } catch (BinaryStoreException e) {
+                throw new IOException(e);
+            } finally {
+                tmpFile.delete();
+            }
+        }
+
+        @Override
+        public void discard() {
+            if (closed) return;
+            closed = true;
+            try {
+                writer.close();
+            } catch (IOException e) {
+                // ignore, since the file is deleted anyway
+            } finally {
+                tmpFile.delete();
+            }
+        }
+    }
+
+    /**
+     * Spaces out the file operations of a garbage collection, so that the operations of all threads together don't exceed a
+     * given rate.
+     */
+    @ThreadSafe
+    private static final class Throttle {
+        private final long intervalInNanos;
+        private long next;
+
+        protected Throttle( int permitsPerSecond ) {
+            this.intervalInNanos = permitsPerSecond > 0 ? TimeUnit.SECONDS.toNanos(1) / permitsPerSecond : 0L;
+            this.next = System.nanoTime();
+        }
+
+        protected void acquire() throws InterruptedException {
+            if (intervalInNanos == 0L) {
+                return;
+            }
+            long waitInNanos;
+            synchronized (this) {
+                long now = System.nanoTime();
+                if (next - now < 0) {
+                    // We've been idle, so don't allow a burst to catch up ...
+                    next = now;
+                }
+                waitInNanos = next - now;
+                next += intervalInNanos;
+            }
+            if (waitInNanos > 0) {
+                TimeUnit.NANOSECONDS.sleep(waitInNanos);
+            }
+        }
     }
 }
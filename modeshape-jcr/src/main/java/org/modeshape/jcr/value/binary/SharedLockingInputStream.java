@@ -28,8 +28,11 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.concurrent.Callable;
 import java.util.concurrent.locks.Lock;
+import org.modeshape.jcr.api.value.FileBackedStream;
 import org.modeshape.jcr.value.BinaryKey;
 
 /**
@@ -39,7 +42,7 @@ import org.modeshape.jcr.value.BinaryKey;
  * working with this class, as any open without close operations can produce "readLocks" which do not get released, blocking any
  * potential subsequent writes.
  */
-public final class SharedLockingInputStream extends InputStream {
+public final class SharedLockingInputStream extends InputStream implements FileBackedStream {
 
     protected final BinaryKey key;
     protected final File file;
@@ -261,6 +264,37 @@ public final class SharedLockingInputStream extends InputStream {
         });
     }
 
+    @Override
+    public long transferTo( final long position,
+                            final long count,
+                            final WritableByteChannel target ) throws IOException {
+        // Obtain the same locks as when reading the stream, but only for the duration of the transfer ...
+        Lock transferLock = lockManager != null ? lockManager.readLock(key.toString()) : null;
+        try {
+            FileLocks.WrappedLock transferFileLock = FileLocks.get().readLock(file);
+            try {
+                FileInputStream input = new FileInputStream(file);
+                try {
+                    FileChannel channel = input.getChannel();
+                    long end = Math.min(channel.size(), position + count);
+                    long transferred = 0L;
+                    while (position + transferred < end) {
+                        long bytes = channel.transferTo(position + transferred, end - position - transferred, target);
+                        if (bytes <= 0L) break;
+                        transferred += bytes;
+                    }
+                    return transferred;
+                } finally {
+                    input.close();
+                }
+            } finally {
+                transferFileLock.unlock();
+            }
+        } finally {
+            if (transferLock != null) transferLock.unlock();
+        }
+    }
+
     @Override
     public String toString() {
         return key.toString();
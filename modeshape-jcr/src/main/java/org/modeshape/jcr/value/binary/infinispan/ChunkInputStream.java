@@ -28,9 +28,20 @@ import org.modeshape.common.logging.Logger;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 /**
  * Merges chunks from cache and provides InputStream-feeling.
+ * <p>
+ * While the stream is read sequentially, the next chunks are fetched asynchronously ahead of the reader, so that the round
+ * trips to a remote cache overlap with the consumption of the current chunk. {@link #skip(long) Skipping} moves directly to the
+ * chunk containing the new position and does not read ahead until the reader continues sequentially past that chunk, so that
+ * reading a range only fetches the chunks that overlap the range.
+ * </p>
  */
 class ChunkInputStream extends InputStream {
 
@@ -41,6 +52,8 @@ class ChunkInputStream extends InputStream {
     private final int chunkSize;
     private final long totalSize;
     private final int chunksCount;
+    private final int readAheadChunks;
+    private final Map<Integer, Future<byte[]>> prefetchedChunks = new HashMap<Integer, Future<byte[]>>();
 
     protected int indexInBuffer;
     protected byte[] buffer;
@@ -50,6 +63,23 @@ class ChunkInputStream extends InputStream {
                                 String key,
                                 int chunkSize,
                                 long totalSize ) {
+        this(blobCache, key, chunkSize, totalSize, InfinispanBinaryStore.DEFAULT_READ_AHEAD_CHUNKS);
+    }
+
+    /**
+     * Creates a new stream.
+     * 
+     * @param blobCache the cache containing the chunks
+     * @param key the prefix of the chunk keys
+     * @param chunkSize the size (in bytes) of a chunk
+     * @param totalSize the total number of bytes in all chunks
+     * @param readAheadChunks the number of chunks that are fetched ahead of the reader; 0 disables the read-ahead
+     */
+    protected ChunkInputStream( Cache<String, byte[]> blobCache,
+                                String key,
+                                int chunkSize,
+                                long totalSize,
+                                int readAheadChunks ) {
         this.blobCache = blobCache;
         this.key = key;
         this.chunkSize = chunkSize;
@@ -59,6 +89,7 @@ class ChunkInputStream extends InputStream {
         int remainderSize = (int) (totalSize % chunkSize);
         int numberOfChunks = (int) totalSize / chunkSize;
         this.chunksCount = remainderSize > 0 ? numberOfChunks + 1 : numberOfChunks;
+        this.readAheadChunks = Math.max(0, readAheadChunks);
     }
 
     @Override
@@ -128,8 +159,8 @@ class ChunkInputStream extends InputStream {
         if (n < availableInBuffer) {
             //we can skip "n" without requiring any additional chunks
             if (buffer == null) {
-                //we haven't been initialized yet, so load the first chunk
-                fillBufferWithFirstChunk();
+                //we haven't been initialized yet, so load the first chunk (without reading ahead)
+                fillBuffer(0, false);
             }
             indexInBuffer += n;
             return n;
@@ -151,7 +182,7 @@ class ChunkInputStream extends InputStream {
             return availableInBuffer + bytesAvailableToSkip;
         }
         //move directly to the required chunk
-        fillBuffer(chunkNumber);
+        fillBuffer(chunkNumber, false);
         if (buffer.length > leftToReadAfterSkip) {
             //move the pointer in this chunk
             indexInBuffer = leftToReadAfterSkip;
@@ -165,19 +196,23 @@ class ChunkInputStream extends InputStream {
 
     private void fillBufferWithNextChunk() {
         this.chunkNumber++;
-        fillBuffer(this.chunkNumber);
+        fillBuffer(this.chunkNumber, true);
     }
 
     private void fillBufferWithFirstChunk() {
-        fillBuffer(0);
+        fillBuffer(0, true);
     }
 
-    private void fillBuffer(int chunkNumber) {
+    private void fillBuffer( int chunkNumber,
+                             boolean sequential ) {
         buffer = readChunk(chunkNumber);
         if (buffer == null) {
             endOfStream();
         } else {
             indexInBuffer = 0;
+            if (sequential) {
+                readAhead(chunkNumber);
+            }
         }
     }
 
@@ -185,11 +220,46 @@ class ChunkInputStream extends InputStream {
         buffer = new byte[0];
         indexInBuffer = -1;
         chunkNumber = -1;
+        cancelPrefetchedChunks(Integer.MAX_VALUE);
     }
 
     private byte[] readChunk( int chunkNumber ) {
         String chunkKey = key + "-" + chunkNumber;
+        // Any chunks prefetched before this one have been skipped and will never be read ...
+        cancelPrefetchedChunks(chunkNumber);
+        Future<byte[]> prefetched = prefetchedChunks.remove(chunkNumber);
+        if (prefetched != null) {
+            try {
+                LOGGER.debug("Read prefetched chunk {0}", chunkKey);
+                return prefetched.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                LOGGER.debug("Interrupted while waiting for prefetched chunk {0}", chunkKey);
+            } catch (ExecutionException e) {
+                LOGGER.debug(e.getCause(), "Unable to prefetch chunk {0}", chunkKey);
+            }
+        }
         LOGGER.debug("Read chunk {0}", chunkKey);
         return blobCache.get(chunkKey);
     }
+
+    private void readAhead( int chunkNumber ) {
+        int lastChunk = Math.min(chunkNumber + readAheadChunks, chunksCount - 1);
+        for (int next = chunkNumber + 1; next <= lastChunk; next++) {
+            if (!prefetchedChunks.containsKey(next)) {
+                prefetchedChunks.put(next, blobCache.getAsync(key + "-" + next));
+            }
+        }
+    }
+
+    private void cancelPrefetchedChunks( int beforeChunkNumber ) {
+        if (prefetchedChunks.isEmpty()) return;
+        for (Iterator<Map.Entry<Integer, Future<byte[]>>> iter = prefetchedChunks.entrySet().iterator(); iter.hasNext();) {
+            Map.Entry<Integer, Future<byte[]>> entry = iter.next();
+            if (entry.getKey() < beforeChunkNumber) {
+                entry.getValue().cancel(false);
+                iter.remove();
+            }
+        }
+    }
 }
@@ -26,11 +26,15 @@ package org.modeshape.jcr.value.binary.infinispan;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.LinkedList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import org.infinispan.Cache;
 import org.modeshape.common.logging.Logger;
 
 /**
- * This stream writes data as chunks into separate cache entries.
+ * This stream writes data as chunks into separate cache entries. Chunks are put into the cache asynchronously, so that up to
+ * a configurable number of chunks are in flight at any one time; {@link #close()} waits until all of them have been stored.
  */
 class ChunkOutputStream extends OutputStream {
 
@@ -43,6 +47,8 @@ class ChunkOutputStream extends OutputStream {
 
     private final ByteArrayOutputStream chunkBuffer;
     private final int chunkSize;
+    private final int maxPendingChunks;
+    private final LinkedList<PendingChunk> pendingChunks = new LinkedList<PendingChunk>();
     private boolean closed;
 
     protected ChunkOutputStream( Cache<String, byte[]> blobCache,
@@ -53,11 +59,28 @@ class ChunkOutputStream extends OutputStream {
     protected ChunkOutputStream( Cache<String, byte[]> blobCache,
                                  String keyPrefix,
                                  int chunkSize ) {
+        this(blobCache, keyPrefix, chunkSize, InfinispanBinaryStore.DEFAULT_MAX_CONCURRENT_CHUNK_WRITES);
+    }
+
+    /**
+     * Creates a new stream.
+     * 
+     * @param blobCache the cache into which the chunks are written
+     * @param keyPrefix the prefix of the chunk keys
+     * @param chunkSize the size (in bytes) of a chunk
+     * @param maxPendingChunks the maximum number of chunks that may be written concurrently; a value of 1 or less means that
+     *        each chunk is written synchronously
+     */
+    protected ChunkOutputStream( Cache<String, byte[]> blobCache,
+                                 String keyPrefix,
+                                 int chunkSize,
+                                 int maxPendingChunks ) {
         this.blobCache = blobCache;
         this.keyPrefix = keyPrefix;
         this.chunkIndex = 0;
         this.chunkBuffer = new ByteArrayOutputStream(BUFFER_SIZE);
         this.chunkSize = chunkSize;
+        this.maxPendingChunks = maxPendingChunks;
     }
 
     protected int chunksCount() {
@@ -94,19 +117,39 @@ class ChunkOutputStream extends OutputStream {
             return;
         }
         closed = true;
-        // store last chunk
-        if (chunkBuffer.size() > 0) {
-            storeBufferInBLOBCache();
+        try {
+            // store last chunk
+            if (chunkBuffer.size() > 0) {
+                storeBufferInBLOBCache();
+            }
+        } finally {
+            awaitPendingChunks();
         }
     }
 
     private void storeBufferInBLOBCache() throws IOException {
+        final String chunkKey = keyPrefix + "-" + chunkIndex;
         final byte[] chunk = chunkBuffer.toByteArray();
+        if (maxPendingChunks <= 1) {
+            storeChunk(chunkKey, chunk);
+        } else {
+            if (pendingChunks.size() >= maxPendingChunks) {
+                // Wait for the oldest chunk so that the number of buffered chunks stays bounded ...
+                awaitChunk(pendingChunks.removeFirst());
+            }
+            LOGGER.debug("Store chunk {0} asynchronously", chunkKey);
+            pendingChunks.add(new PendingChunk(chunkKey, chunk, blobCache.putAsync(chunkKey, chunk)));
+        }
+        chunkIndex++;
+        chunkBuffer.reset();
+    }
+
+    private void storeChunk( final String chunkKey,
+                             final byte[] chunk ) throws IOException {
         try {
             new RetryOperation() {
                 @Override
                 protected boolean call() {
-                    String chunkKey = keyPrefix + "-" + chunkIndex;
                     LOGGER.debug("Store chunk {0}", chunkKey);
                     blobCache.put(chunkKey, chunk);
                     return true;
@@ -117,7 +160,44 @@ class ChunkOutputStream extends OutputStream {
         } catch (Exception e) {
             throw new IOException(e);
         }
-        chunkIndex++;
-        chunkBuffer.reset();
+    }
+
+    private void awaitChunk( PendingChunk pending ) throws IOException {
+        try {
+            pending.result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            // The asynchronous put failed (e.g., because of a view change), so write it again using the usual retries ...
+            LOGGER.debug(e.getCause(), "Asynchronous store of chunk {0} failed", pending.key);
+            storeChunk(pending.key, pending.chunk);
+        }
+    }
+
+    private void awaitPendingChunks() throws IOException {
+        IOException failure = null;
+        while (!pendingChunks.isEmpty()) {
+            try {
+                awaitChunk(pendingChunks.removeFirst());
+            } catch (IOException e) {
+                if (failure == null) failure = e;
+            }
+        }
+        if (failure != null) throw failure;
+    }
+
+    private static final class PendingChunk {
+        protected final String key;
+        protected final byte[] chunk;
+        protected final Future<byte[]> result;
+
+        protected PendingChunk( String key,
+                                byte[] chunk,
+                                Future<byte[]> result ) {
+            this.key = key;
+            this.chunk = chunk;
+            this.result = result;
+        }
     }
 }
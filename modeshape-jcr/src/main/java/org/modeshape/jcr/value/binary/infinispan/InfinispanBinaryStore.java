@@ -55,6 +55,7 @@ import org.infinispan.transaction.LockingMode;
 import org.infinispan.transaction.TransactionMode;
 import org.modeshape.common.SystemFailureException;
 import org.modeshape.common.annotation.ThreadSafe;
+import org.modeshape.common.util.CheckArg;
 import org.modeshape.common.util.IoUtil;
 import org.modeshape.common.util.SecureHash;
 import org.modeshape.jcr.InfinispanUtil;
@@ -75,6 +76,16 @@ public class InfinispanBinaryStore extends AbstractBinaryStore {
 
     public static final int DEFAULT_CHUNK_SIZE = 1024 * 1024 * 1; // 1 MB
 
+    /**
+     * The default number of chunks that are put into the cache concurrently while a binary value is stored.
+     */
+    public static final int DEFAULT_MAX_CONCURRENT_CHUNK_WRITES = 4;
+
+    /**
+     * The default number of chunks that are fetched from the cache ahead of a sequential reader.
+     */
+    public static final int DEFAULT_READ_AHEAD_CHUNKS = 2;
+
     private static final String META_SUFFIX = "-meta";
     private static final String DATA_SUFFIX = "-data";
     private static final String TEXT_SUFFIX = "-text";
@@ -91,6 +102,8 @@ public class InfinispanBinaryStore extends AbstractBinaryStore {
     private boolean dedicatedCacheContainer;
     private Cache<String, byte[]> blobCache;
     private int chunkSize;
+    private volatile int maxConcurrentChunkWrites = DEFAULT_MAX_CONCURRENT_CHUNK_WRITES;
+    private volatile int readAheadChunks = DEFAULT_READ_AHEAD_CHUNKS;
 
     private String metadataCacheName;
     private String blobCacheName;
@@ -134,6 +147,45 @@ public class InfinispanBinaryStore extends AbstractBinaryStore {
         this.chunkSize = chunkSize;
     }
 
+    /**
+     * Get the maximum number of chunks of a single binary value that are put into the cache concurrently.
+     * 
+     * @return the maximum number of concurrent chunk writes; 1 means that chunks are written one at a time
+     */
+    public int getMaxConcurrentChunkWrites() {
+        return maxConcurrentChunkWrites;
+    }
+
+    /**
+     * Set the maximum number of chunks of a single binary value that are put into the cache concurrently. Each pending chunk
+     * is held in memory until the cache acknowledges it.
+     * 
+     * @param maxConcurrentChunkWrites the maximum number of concurrent chunk writes; must be positive
+     */
+    public void setMaxConcurrentChunkWrites( int maxConcurrentChunkWrites ) {
+        CheckArg.isPositive(maxConcurrentChunkWrites, "maxConcurrentChunkWrites");
+        this.maxConcurrentChunkWrites = maxConcurrentChunkWrites;
+    }
+
+    /**
+     * Get the number of chunks that are fetched ahead of a sequential reader.
+     * 
+     * @return the number of read-ahead chunks; 0 if read-ahead is disabled
+     */
+    public int getReadAheadChunks() {
+        return readAheadChunks;
+    }
+
+    /**
+     * Set the number of chunks that are fetched ahead of a sequential reader.
+     * 
+     * @param readAheadChunks the number of read-ahead chunks; may be 0 to disable read-ahead, but not negative
+     */
+    public void setReadAheadChunks( int readAheadChunks ) {
+        CheckArg.isNonNegative(readAheadChunks, "readAheadChunks");
+        this.readAheadChunks = readAheadChunks;
+    }
+
     protected final String lockKeyFrom( BinaryKey key ) {
         return key.toString();
     }
@@ -259,7 +311,8 @@ public class InfinispanBinaryStore extends AbstractBinaryStore {
             final long lastModified = tmpFile.lastModified();
             final long fileLength = tmpFile.length();
             int bufferSize = bestBufferSize(fileLength);
-            ChunkOutputStream chunkOutputStream = new ChunkOutputStream(blobCache, dataKey, chunkSize);
+            ChunkOutputStream chunkOutputStream = new ChunkOutputStream(blobCache, dataKey, chunkSize,
+                                                                        maxConcurrentChunkWrites);
             IoUtil.write(new FileInputStream(tmpFile), chunkOutputStream, bufferSize);
 
             Lock lock = lockFactory.writeLock(lockKeyFrom(binaryKey));
@@ -302,7 +355,8 @@ public class InfinispanBinaryStore extends AbstractBinaryStore {
         if (metadata.getLength() == 0) {
             return new ByteArrayInputStream(new byte[0]);
         }
-        return new ChunkInputStream(blobCache, dataKeyFrom(binaryKey), metadata.getChunkSize(), metadata.getLength());
+        return new ChunkInputStream(blobCache, dataKeyFrom(binaryKey), metadata.getChunkSize(), metadata.getLength(),
+                                    readAheadChunks);
     }
 
     @Override
@@ -515,7 +569,8 @@ public class InfinispanBinaryStore extends AbstractBinaryStore {
         }
         try {
             final String textKey = textKeyFrom(key);
-            return IoUtil.read(new ChunkInputStream(blobCache, textKey, metadata.getChunkSize(), metadata.getLength()), "UTF-8");
+            return IoUtil.read(new ChunkInputStream(blobCache, textKey, metadata.getChunkSize(), metadata.getLength(),
+                                                    readAheadChunks), "UTF-8");
         } catch (IOException ex) {
             logger.debug(ex, "Error during read of extracted text for {0}", key);
             throw new BinaryStoreException(JcrI18n.errorReadingExtractedText.text(ex.getCause().getMessage()));
@@ -536,12 +591,12 @@ public class InfinispanBinaryStore extends AbstractBinaryStore {
             }
             // Note that it's okay if another process intercedes at this point, because it should be idempotent ...
             final String textKey = textKeyFrom(key);
-            ChunkOutputStream chunkOutputStream = null;
+            // Close explicitly rather than quietly, since closing waits for the pending chunk writes and reports their failures
+            ChunkOutputStream chunkOutputStream = new ChunkOutputStream(blobCache, textKey, chunkSize, maxConcurrentChunkWrites);
             try {
-                chunkOutputStream = new ChunkOutputStream(blobCache, textKey, chunkSize);
                 chunkOutputStream.write(extractedText.getBytes("UTF-8"));
             } finally {
-                IoUtil.closeQuietly(chunkOutputStream);
+                chunkOutputStream.close();
             }
             putMetadata(metadataKey, metadata.withNumberOfTextChunks(chunkOutputStream.chunksCount()));
         } catch (IOException ex) {
@@ -0,0 +1,200 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ * See the AUTHORS.txt file in the distribution for a full listing of 
+ * individual contributors.
+ *
+ * ModeShape is free software. Unless otherwise indicated, all code in ModeShape
+ * is licensed to you under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ * 
+ * ModeShape is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.modeshape.jcr;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.notNullValue;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.junit.Assert.assertThat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.jcr.Node;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.version.VersionManager;
+import org.infinispan.schematic.Schematic;
+import org.infinispan.schematic.document.EditableDocument;
+import org.junit.Test;
+import org.modeshape.jcr.RepositoryConfiguration.FieldName;
+
+/**
+ * Verifies that concurrent {@link Session#save() session saves} and {@link javax.jcr.Item#save() item saves} are correct when
+ * the repository coalesces them into group commits.
+ */
+public class GroupCommitJcrSessionTest extends SingleUseAbstractTest {
+
+    private static final int SESSION_COUNT = 4;
+
+    @Override
+    protected RepositoryConfiguration createRepositoryConfiguration( String repositoryName,
+                                                                     Environment environment ) throws Exception {
+        EditableDocument doc = Schematic.newDocument(FieldName.NAME, repositoryName);
+        EditableDocument groupCommit = doc.getOrCreateDocument(FieldName.STORAGE).getOrCreateDocument(FieldName.GROUP_COMMIT);
+        // Use a window long enough for all of the concurrent saves to join one group ...
+        groupCommit.setNumber(FieldName.GROUP_COMMIT_WINDOW_IN_MILLIS, 500);
+        groupCommit.setNumber(FieldName.GROUP_COMMIT_MAXIMUM_GROUP_SIZE, SESSION_COUNT);
+        return new RepositoryConfiguration(doc, repositoryName, environment);
+    }
+
+    protected interface Changes {
+        /**
+         * Make changes in the supplied session, and then save some or all of them.
+         * 
+         * @param session the session; never null
+         * @param index the index of the session
+         * @param barrier the barrier that must be awaited just before saving
+         * @throws Exception if there is a problem
+         */
+        void makeAndSave( Session session,
+                          int index,
+                          CyclicBarrier barrier ) throws Exception;
+    }
+
+    protected void createParents() throws RepositoryException {
+        Node root = session.getRootNode();
+        for (int i = 0; i != SESSION_COUNT; ++i) {
+            Node parent = root.addNode("parent" + i);
+            parent.addNode("target");
+            parent.addNode("other");
+        }
+        session.save();
+    }
+
+    /**
+     * Concurrently make and save changes in separate sessions.
+     * 
+     * @param changes the changes to be made and saved in each session
+     * @return the failure of each session, or null for each session that succeeded
+     * @throws Exception if the test fails
+     */
+    protected List<Throwable> saveConcurrently( final Changes changes ) throws Exception {
+        final CyclicBarrier barrier = new CyclicBarrier(SESSION_COUNT);
+        ExecutorService executor = Executors.newFixedThreadPool(SESSION_COUNT);
+        try {
+            List<Future<Throwable>> futures = new ArrayList<Future<Throwable>>();
+            for (int i = 0; i != SESSION_COUNT; ++i) {
+                final int index = i;
+                futures.add(executor.submit(new Callable<Throwable>() {
+                    @Override
+                    public Throwable call() throws Exception {
+                        Session session = newSession();
+                        try {
+                            changes.makeAndSave(session, index, barrier);
+                            return null;
+                        } catch (Throwable t) {
+                            return t;
+                        } finally {
+                            session.logout();
+                        }
+                    }
+                }));
+            }
+            List<Throwable> failures = new ArrayList<Throwable>();
+            for (Future<Throwable> future : futures) {
+                failures.add(future.get());
+            }
+            return failures;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    protected void assertNoFailures( List<Throwable> failures ) {
+        for (Throwable failure : failures) {
+            assertThat(failure, is(nullValue()));
+        }
+    }
+
+    @Test
+    public void shouldSaveConcurrentSessions() throws Exception {
+        createParents();
+        assertNoFailures(saveConcurrently(new Changes() {
+            @Override
+            public void makeAndSave( Session session,
+                                     int index,
+                                     CyclicBarrier barrier ) throws Exception {
+                Node child = session.getNode("/parent" + index).addNode("child");
+                child.setProperty("p1", "value" + index);
+                barrier.await();
+                session.save();
+            }
+        }));
+        for (int i = 0; i != SESSION_COUNT; ++i) {
+            assertThat(session.getProperty("/parent" + i + "/child/p1").getString(), is("value" + i));
+        }
+    }
+
+    @Test
+    public void shouldSaveConcurrentSessionsCreatingVersionableNodes() throws Exception {
+        createParents();
+        // Each save also creates a version history in the system workspace ...
+        assertNoFailures(saveConcurrently(new Changes() {
+            @Override
+            public void makeAndSave( Session session,
+                                     int index,
+                                     CyclicBarrier barrier ) throws Exception {
+                Node child = session.getNode("/parent" + index).addNode("child");
+                child.addMixin("mix:versionable");
+                barrier.await();
+                session.save();
+            }
+        }));
+        VersionManager versionManager = session.getWorkspace().getVersionManager();
+        for (int i = 0; i != SESSION_COUNT; ++i) {
+            String path = "/parent" + i + "/child";
+            assertThat(versionManager.getBaseVersion(path), is(notNullValue()));
+            versionManager.checkin(path);
+        }
+    }
+
+    @SuppressWarnings( "deprecation" )
+    @Test
+    public void shouldSaveConcurrentItems() throws Exception {
+        createParents();
+        assertNoFailures(saveConcurrently(new Changes() {
+            @Override
+            public void makeAndSave( Session session,
+                                     int index,
+                                     CyclicBarrier barrier ) throws Exception {
+                Node parent = session.getNode("/parent" + index);
+                parent.getNode("other").setProperty("p1", "unsaved");
+                Node target = parent.getNode("target");
+                target.addNode("child").setProperty("p1", "value" + index);
+                barrier.await();
+                // Save only the changes at and below the "target" node ...
+                target.save();
+                assertThat(session.hasPendingChanges(), is(true));
+            }
+        }));
+        for (int i = 0; i != SESSION_COUNT; ++i) {
+            assertThat(session.getProperty("/parent" + i + "/target/child/p1").getString(), is("value" + i));
+            assertThat(session.getNode("/parent" + i + "/other").hasProperty("p1"), is(false));
+        }
+    }
+}
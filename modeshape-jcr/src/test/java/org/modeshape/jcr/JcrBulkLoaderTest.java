@@ -0,0 +1,233 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ * See the AUTHORS.txt file in the distribution for a full listing of 
+ * individual contributors.
+ *
+ * ModeShape is free software. Unless otherwise indicated, all code in ModeShape
+ * is licensed to you under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ * 
+ * ModeShape is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.modeshape.jcr;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.jcr.ItemNotFoundException;
+import javax.jcr.Node;
+import javax.jcr.PropertyType;
+import javax.jcr.Value;
+import javax.jcr.nodetype.ConstraintViolationException;
+import javax.jcr.query.Query;
+import javax.jcr.query.QueryResult;
+import org.junit.Before;
+import org.junit.Test;
+import org.modeshape.jcr.api.BulkLoader;
+import org.modeshape.jcr.api.Problems;
+
+public class JcrBulkLoaderTest extends SingleUseAbstractTest {
+
+    @Override
+    @Before
+    public void beforeEach() throws Exception {
+        super.beforeEach();
+        session.getRootNode().addNode("loadArea");
+        session.save();
+    }
+
+    protected BulkLoader bulkLoader( String loadId,
+                                     int batchSize ) throws Exception {
+        return session.getWorkspace().getRepositoryManager().createBulkLoader("/loadArea", loadId, batchSize, false);
+    }
+
+    protected Map<String, Object> properties( String name,
+                                              String value ) throws Exception {
+        Map<String, Object> properties = new HashMap<String, Object>();
+        properties.put(name, session.getValueFactory().createValue(value));
+        return properties;
+    }
+
+    protected List<String> loadNodes( BulkLoader loader,
+                                      int count ) throws Exception {
+        List<String> identifiers = new ArrayList<String>();
+        for (int i = 0; i != count; ++i) {
+            String id = loader.addNode(null, "node" + i, "nt:unstructured", properties("prop", "value" + i));
+            loader.addNode(id, "child", "nt:unstructured", null);
+            identifiers.add(id);
+        }
+        return identifiers;
+    }
+
+    @Test
+    public void shouldLoadNodesInBatches() throws Exception {
+        BulkLoader loader = bulkLoader("load1", 7);
+        List<String> identifiers = loadNodes(loader, 20);
+        assertThat(loader.getNodeCount(), is(40L));
+        Problems problems = loader.finish();
+        assertThat(problems.hasProblems(), is(false));
+
+        Node loadArea = session.getNode("/loadArea");
+        assertThat(loadArea.getNodes().getSize(), is(20L));
+        for (int i = 0; i != 20; ++i) {
+            Node node = session.getNode("/loadArea/node" + i);
+            assertThat(node.getIdentifier(), is(identifiers.get(i)));
+            assertThat(node.getPrimaryNodeType().getName(), is("nt:unstructured"));
+            assertThat(node.getProperty("prop").getString(), is("value" + i));
+            assertThat(node.getNode("child").getParent().getIdentifier(), is(node.getIdentifier()));
+        }
+    }
+
+    @Test
+    public void shouldIndexLoadedContentWhenFinished() throws Exception {
+        BulkLoader loader = bulkLoader("load2", 5);
+        loadNodes(loader, 12);
+        loader.finish();
+
+        Query query = session.getWorkspace().getQueryManager().createQuery("SELECT * FROM [nt:unstructured] WHERE prop = 'value11'",
+                                                                           Query.JCR_SQL2);
+        QueryResult result = query.execute();
+        assertThat(result.getNodes().getSize(), is(1L));
+        assertThat(result.getNodes().nextNode().getPath(), is("/loadArea/node11"));
+    }
+
+    @Test
+    public void shouldResumeLoadAfterLastCheckpoint() throws Exception {
+        // Add 15 nodes but only write the first batch of 10 ...
+        BulkLoader loader = bulkLoader("load3", 10);
+        List<String> firstIdentifiers = new ArrayList<String>();
+        for (int i = 0; i != 15; ++i) {
+            firstIdentifiers.add(loader.addNode(null, "node" + i, "nt:unstructured", null));
+        }
+        assertThat(loader.getCheckpointedNodeCount(), is(0L));
+
+        // Resume the load, which should skip the nodes that were written ...
+        loader = bulkLoader("load3", 10);
+        assertThat(loader.getCheckpointedNodeCount(), is(10L));
+        for (int i = 0; i != 15; ++i) {
+            assertThat(loader.addNode(null, "node" + i, "nt:unstructured", null), is(firstIdentifiers.get(i)));
+        }
+        loader.finish();
+        assertThat(session.getNode("/loadArea").getNodes().getSize(), is(15L));
+
+        // The checkpoint was removed, so the same load identifier starts a new load ...
+        assertThat(bulkLoader("load3", 10).getCheckpointedNodeCount(), is(0L));
+    }
+
+    @Test
+    public void shouldSetIdentifierOnReferenceableNodes() throws Exception {
+        BulkLoader loader = bulkLoader("load4", 10);
+        Map<String, Object> properties = new HashMap<String, Object>();
+        properties.put("jcr:mixinTypes", new Value[] {session.getValueFactory().createValue("mix:referenceable")});
+        String id = loader.addNode(null, "referenceable", "nt:unstructured", properties);
+        loader.finish();
+
+        Node node = session.getNodeByIdentifier(id);
+        assertThat(node.getPath(), is("/loadArea/referenceable"));
+        assertThat(node.isNodeType("mix:referenceable"), is(true));
+        assertThat(node.getProperty("jcr:uuid").getString(), is(id));
+    }
+
+    @Test
+    public void shouldDecideMultiplicityOfPropertiesFromTheirDefinitions() throws Exception {
+        BulkLoader loader = bulkLoader("load10", 10);
+        Map<String, Object> properties = new HashMap<String, Object>();
+        // The mixin types are supplied as a single value, and the single-valued title as an array ...
+        properties.put("jcr:mixinTypes", session.getValueFactory().createValue("mix:title"));
+        properties.put("jcr:title", new Value[] {session.getValueFactory().createValue("The title")});
+        properties.put("single", session.getValueFactory().createValue("value"));
+        properties.put("multiple", new Value[] {session.getValueFactory().createValue("value")});
+        loader.addNode(null, "titled", "nt:unstructured", properties);
+        loader.finish();
+
+        Node node = session.getNode("/loadArea/titled");
+        assertThat(node.isNodeType("mix:title"), is(true));
+        assertThat(node.getProperty("jcr:mixinTypes").isMultiple(), is(true));
+        assertThat(node.getProperty("jcr:title").isMultiple(), is(false));
+        assertThat(node.getProperty("jcr:title").getString(), is("The title"));
+        // The residual definitions of nt:unstructured allow either, so the supplied values decide ...
+        assertThat(node.getProperty("single").isMultiple(), is(false));
+        assertThat(node.getProperty("multiple").isMultiple(), is(true));
+    }
+
+    @Test( expected = ItemNotFoundException.class )
+    public void shouldNotAddNodeBelowNonExistentParent() throws Exception {
+        BulkLoader loader = bulkLoader("load5", 10);
+        loader.addNode("8d4ee4b4-6a3f-4d2a-bd7c-0b1a6c7e2a11", "orphan", "nt:unstructured", null);
+    }
+
+    @Test( expected = ConstraintViolationException.class )
+    public void shouldNotAddNodeBelowExistingParentOutsideOfLoad() throws Exception {
+        Node outside = session.getRootNode().addNode("outside");
+        session.save();
+        BulkLoader loader = bulkLoader("load6", 10);
+        loader.addNode(outside.getIdentifier(), "stray", "nt:unstructured", null);
+    }
+
+    @Test
+    public void shouldAddNodesBelowExistingNodeWithinLoad() throws Exception {
+        Node existing = session.getNode("/loadArea").addNode("existing");
+        session.save();
+        BulkLoader loader = bulkLoader("load7", 10);
+        String id = loader.addNode(existing.getIdentifier(), "loaded", "nt:unstructured", properties("prop", "below"));
+        loader.finish();
+
+        assertThat(session.getNode("/loadArea/existing/loaded").getIdentifier(), is(id));
+        Query query = session.getWorkspace().getQueryManager().createQuery("SELECT * FROM [nt:unstructured] WHERE prop = 'below'",
+                                                                           Query.JCR_SQL2);
+        assertThat(query.execute().getNodes().nextNode().getPath(), is("/loadArea/existing/loaded"));
+    }
+
+    @Test
+    public void shouldUpdateReferrersOfReferencedNodes() throws Exception {
+        Node target = session.getRootNode().addNode("target");
+        target.addMixin("mix:referenceable");
+        Node weakTarget = session.getRootNode().addNode("weakTarget");
+        weakTarget.addMixin("mix:referenceable");
+        session.save();
+
+        BulkLoader loader = bulkLoader("load8", 10);
+        Map<String, Object> properties = new HashMap<String, Object>();
+        properties.put("ref", session.getValueFactory().createValue(target));
+        properties.put("weakRef", session.getValueFactory().createValue(weakTarget, true));
+        String id = loader.addNode(null, "referrer", "nt:unstructured", properties);
+        loader.finish();
+
+        Node referrer = session.getNodeByIdentifier(id);
+        assertThat(referrer.getProperty("ref").getType(), is(PropertyType.REFERENCE));
+        assertThat(referrer.getProperty("ref").getNode().getPath(), is("/target"));
+        assertThat(session.getNode("/target").getReferences().getSize(), is(1L));
+        assertThat(session.getNode("/target").getReferences().nextProperty().getParent().getIdentifier(), is(id));
+        assertThat(session.getNode("/weakTarget").getWeakReferences().getSize(), is(1L));
+    }
+
+    @Test( expected = ItemNotFoundException.class )
+    public void shouldNotAddNodeWithReferenceToNonExistentNode() throws Exception {
+        Node target = session.getRootNode().addNode("target");
+        target.addMixin("mix:referenceable");
+        session.save();
+        Value reference = session.getValueFactory().createValue(target);
+        target.remove();
+        session.save();
+
+        BulkLoader loader = bulkLoader("load9", 10);
+        Map<String, Object> properties = new HashMap<String, Object>();
+        properties.put("ref", reference);
+        loader.addNode(null, "referrer", "nt:unstructured", properties);
+    }
+}
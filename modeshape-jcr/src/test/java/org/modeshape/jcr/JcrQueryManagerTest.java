@@ -1046,6 +1046,48 @@ public class JcrQueryManagerTest extends MultiUseAbstractTest {
         assertRow(result).has("car:model", "Prius").and("car:msrp", "$21,500").and("car:year", 2008);
     }
 
+    @Test
+    public void shouldBeAbleToCreateAndExecuteJcrSql2QueryWithPathRange() throws RepositoryException {
+        String sql = "SELECT car.[car:model] FROM [car:Car] AS car "
+                     + "WHERE PATH(car) > '/Cars/Sports' AND PATH(car) < '/Cars/Utility'";
+        Query query = session.getWorkspace().getQueryManager().createQuery(sql, Query.JCR_SQL2);
+        QueryResult result = query.execute();
+        assertResults(query, result, 2L);
+        assertRow(result).has("car:model", "DB9");
+        assertRow(result).has("car:model", "G37");
+    }
+
+    @Test
+    public void shouldBeAbleToCreateAndExecuteJcrSql2QueryWithNameRange() throws RepositoryException {
+        String sql = "SELECT car.[car:model] FROM [car:Car] AS car WHERE NAME(car) >= 'Land Rover' AND NAME(car) < 'Lexus'";
+        Query query = session.getWorkspace().getQueryManager().createQuery(sql, Query.JCR_SQL2);
+        QueryResult result = query.execute();
+        assertResults(query, result, 2L);
+        assertRow(result).has("car:model", "LR2");
+        assertRow(result).has("car:model", "LR3");
+    }
+
+    @Test
+    public void shouldBeAbleToCreateAndExecuteJcrSql2QueryWithNameLengthRange() throws RepositoryException {
+        String sql = "SELECT car.[car:model] FROM [car:Car] AS car WHERE LENGTH(car.[jcr:name]) < 11";
+        Query query = session.getWorkspace().getQueryManager().createQuery(sql, Query.JCR_SQL2);
+        QueryResult result = query.execute();
+        assertResults(query, result, 2L);
+        assertRow(result).has("car:model", "H3");
+        assertRow(result).has("car:model", "F-150");
+    }
+
+    @Test
+    public void shouldBeAbleToCreateAndExecuteJcrSql2QueryWithPathLengthRange() throws RepositoryException {
+        String sql = "SELECT car.[car:model] FROM [car:Car] AS car WHERE LENGTH(car.[jcr:path]) <= 24";
+        Query query = session.getWorkspace().getQueryManager().createQuery(sql, Query.JCR_SQL2);
+        QueryResult result = query.execute();
+        assertResults(query, result, 3L);
+        assertRow(result).has("car:model", "H3");
+        assertRow(result).has("car:model", "F-150");
+        assertRow(result).has("car:model", "IS350");
+    }
+
     @FixFor( "MODE-1824" )
     @Test
     public void shouldBeAbleToExecuteQueryWithTwoColumns() throws RepositoryException {
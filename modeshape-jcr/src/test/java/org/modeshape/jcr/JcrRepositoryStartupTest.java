@@ -33,18 +33,23 @@ import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 import javax.jcr.NoSuchWorkspaceException;
 import javax.jcr.Node;
+import javax.jcr.NodeIterator;
 import javax.jcr.PathNotFoundException;
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
 import javax.jcr.query.Query;
 import javax.jcr.query.QueryManager;
+import org.infinispan.schematic.SchematicEntry;
 import org.infinispan.schematic.document.EditableDocument;
 import org.junit.Test;
 import org.modeshape.common.FixFor;
@@ -56,8 +61,11 @@ import org.modeshape.jcr.cache.CachedNode;
 import org.modeshape.jcr.cache.ChildReference;
 import org.modeshape.jcr.cache.ChildReferences;
 import org.modeshape.jcr.cache.MutableCachedNode;
+import org.modeshape.jcr.cache.NodeKey;
 import org.modeshape.jcr.cache.SessionCache;
 import org.modeshape.jcr.cache.document.DocumentStore;
+import org.modeshape.jcr.cache.document.LocalDocumentStore;
+import org.modeshape.jcr.cache.document.WorkspaceCache;
 import org.modeshape.jcr.value.PropertyFactory;
 
 /**
@@ -358,6 +366,278 @@ public class JcrRepositoryStartupTest extends MultiPassAbstractTest {
         }, repositoryConfigFile);
     }
 
+    @Test
+    public void shouldRebuildIndexesInParallelIfConfiguredTo() throws Exception {
+        FileUtil.delete("target/persistent_repository");
+
+        String repositoryConfigFile = "config/repo-config-persistent-always-rebuild-indexes-parallel.json";
+        startRunStop(new RepositoryOperation() {
+            @Override
+            public Void call() throws Exception {
+                Session session = repository.login();
+                javax.jcr.Node parent = session.getRootNode().addNode("parent");
+                for (int i = 0; i != 5; ++i) {
+                    javax.jcr.Node child = parent.addNode("child" + i);
+                    for (int j = 0; j != 20; ++j) {
+                        child.addNode("grandchild" + j);
+                    }
+                }
+                session.save();
+                return null;
+            }
+        }, repositoryConfigFile);
+
+        startRunStop(new RepositoryOperation() {
+            @Override
+            public Void call() throws Exception {
+                Session session = repository.login();
+
+                QueryManager queryManager = session.getWorkspace().getQueryManager();
+                Query query = queryManager.createQuery("select * from [nt:unstructured] where ISDESCENDANTNODE('/parent')",
+                                                       Query.JCR_SQL2);
+                assertEquals(105, query.execute().getNodes().getSize());
+                assertThat(repository.runningState().queryManager().reindexingIncomplete(), is(false));
+
+                return null;
+            }
+        }, repositoryConfigFile);
+    }
+
+    @Test
+    public void shouldResumeInterruptedIndexRebuildFromCheckpoint() throws Exception {
+        FileUtil.delete("target/persistent_repository");
+
+        // The indexes are kept in memory, so they're empty on each startup and contain only what the rebuild indexed ...
+        String repositoryConfigFile = "config/repo-config-persistent-always-rebuild-indexes-parallel.json";
+        final List<String> completedPaths = new ArrayList<String>();
+        startRunStop(new RepositoryOperation() {
+            @Override
+            public Void call() throws Exception {
+                Session session = repository.login();
+                javax.jcr.Node parent = session.getRootNode().addNode("parent");
+                for (int i = 0; i != 5; ++i) {
+                    javax.jcr.Node child = parent.addNode("child" + i);
+                    for (int j = 0; j != 20; ++j) {
+                        child.addNode("grandchild" + j);
+                    }
+                }
+                session.save();
+
+                // Leave the checkpoint of a rebuild that was interrupted after re-indexing the first half of the subtrees ...
+                RepositoryQueryManager queryManager = repository.runningState().queryManager();
+                WorkspaceCache workspaceCache = repository.repositoryCache().getWorkspaceCache("default");
+                List<NodeKey> subtrees = queryManager.partition("default", repository.nodeTypeManager().getRepositorySchemata(),
+                                                                workspaceCache,
+                                                                workspaceCache.getNode(workspaceCache.getRootKey()));
+                assertThat(subtrees.size() > 1, is(true));
+                LocalDocumentStore localStore = repository.documentStore().localStore();
+                RepositoryQueryManager.ReindexCheckpoint checkpoint = new RepositoryQueryManager.ReindexCheckpoint(localStore);
+                for (NodeKey subtree : subtrees.subList(0, subtrees.size() / 2)) {
+                    checkpoint.completed(subtree);
+                    completedPaths.add(session.getNodeByIdentifier(subtree.toString()).getPath());
+                }
+                checkpoint.write();
+                assertThat(queryManager.reindexingIncomplete(), is(true));
+                return null;
+            }
+        }, repositoryConfigFile);
+
+        startRunStop(new RepositoryOperation() {
+            @Override
+            public Void call() throws Exception {
+                Session session = repository.login();
+
+                QueryManager queryManager = session.getWorkspace().getQueryManager();
+                Query query = queryManager.createQuery("select * from [nt:unstructured] where ISDESCENDANTNODE('/parent')",
+                                                       Query.JCR_SQL2);
+                NodeIterator nodes = query.execute().getNodes();
+                int skipped = 0;
+                for (String completedPath : completedPaths) {
+                    skipped += countSubtree(session.getNode(completedPath));
+                }
+                // Only the subtrees that were not checkpointed were re-indexed, and all of them were ...
+                assertEquals(105 - skipped, nodes.getSize());
+                while (nodes.hasNext()) {
+                    String path = nodes.nextNode().getPath();
+                    for (String completedPath : completedPaths) {
+                        assertFalse(path.equals(completedPath) || path.startsWith(completedPath + "/"));
+                    }
+                }
+                assertThat(repository.runningState().queryManager().reindexingIncomplete(), is(false));
+
+                return null;
+            }
+        }, repositoryConfigFile);
+    }
+
+    private int countSubtree( javax.jcr.Node node ) throws RepositoryException {
+        int count = 1;
+        NodeIterator children = node.getNodes();
+        while (children.hasNext()) {
+            count += countSubtree(children.nextNode());
+        }
+        return count;
+    }
+
+    @Test
+    public void shouldReindexAllContentWhenUpgradingToNewIndexFormat() throws Exception {
+        FileUtil.delete("target/persistent_repository");
+
+        String repositoryConfigFile = "config/repo-config-persistent-cache.json";
+        startRunStop(new RepositoryOperation() {
+            @Override
+            public Void call() throws Exception {
+                Session session = repository.login();
+                javax.jcr.Node parent = session.getRootNode().addNode("parent");
+                for (int i = 0; i != 5; ++i) {
+                    parent.addNode("child" + i);
+                }
+                session.save();
+
+                // Make the repository look as if it was last used by a version with the earlier index format ...
+                DocumentStore documentStore = repository.documentStore();
+                EditableDocument editableDocument = documentStore.localStore().get("repository:info").editDocumentContent();
+                editableDocument.set("lastUpgradeId", Upgrades.ModeShape_3_6_0.INSTANCE.getId());
+                documentStore.localStore().put("repository:info", editableDocument);
+                return null;
+            }
+        }, repositoryConfigFile);
+
+        startRunStop(new RepositoryOperation() {
+            @Override
+            public Void call() throws Exception {
+                // The upgrade requires a re-indexing, which was done upon startup ...
+                assertThat(repository.runningState().queryManager().reindexingIncomplete(), is(false));
+
+                Session session = repository.login();
+                QueryManager queryManager = session.getWorkspace().getQueryManager();
+                String sql = "select * from [nt:unstructured] as node "
+                             + "where PATH(node) > '/parent/child1' and LENGTH(node.[jcr:name]) = 6";
+                Query query = queryManager.createQuery(sql, Query.JCR_SQL2);
+                assertEquals(3, query.execute().getNodes().getSize());
+                return null;
+            }
+        }, repositoryConfigFile);
+    }
+
+    @Test
+    public void shouldResumePendingSequencingWorkAfterRestart() throws Exception {
+        FileUtil.delete("target/persistent_repository");
+        TestSequencersHolder.BlockingSequencer.reset();
+
+        String repositoryConfigFile = "config/repo-config-persistent-sequencing.json";
+        final AtomicReference<Thread> releaser = new AtomicReference<Thread>();
+        try {
+            startRunStop(new RepositoryOperation() {
+                @Override
+                public Void call() throws Exception {
+                    Session session = repository.login();
+                    javax.jcr.Node input = session.getRootNode().addNode("input");
+                    input.addNode("foo").setProperty("bar", TestSequencersHolder.BlockingSequencer.BLOCKING_VALUE);
+                    session.save();
+                    for (int i = 0; i != 50 && TestSequencersHolder.BlockingSequencer.EXECUTE_CALL_COUNTER.get() == 0; ++i) {
+                        Thread.sleep(100L);
+                    }
+                    // The sequencer has a single thread, so this input waits behind the first ...
+                    input.addNode("baz").setProperty("bar", "value of bar");
+                    session.save();
+                    assertEquals(1, TestSequencersHolder.BlockingSequencer.EXECUTE_CALL_COUNTER.get());
+                    assertTrue(hasPendingSequencingWork(repository));
+
+                    // Let the sequencer finish the first input only once the repository is shutting down ...
+                    final Sequencers sequencers = repository.runningState().sequencers();
+                    Thread thread = new Thread(new Runnable() {
+                        @Override
+                        public void run() {
+                            try {
+                                while (!sequencers.isShutdown()) {
+                                    Thread.sleep(10L);
+                                }
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                            } finally {
+                                TestSequencersHolder.BlockingSequencer.release();
+                            }
+                        }
+                    });
+                    releaser.set(thread);
+                    thread.start();
+                    return null;
+                }
+            }, repositoryConfigFile);
+        } finally {
+            TestSequencersHolder.BlockingSequencer.release();
+            if (releaser.get() != null) releaser.get().join();
+        }
+
+        startRunStop(new RepositoryOperation() {
+            @Override
+            public Void call() throws Exception {
+                // The first input was completed while shutting down, and only the second is resumed ...
+                Session session = repository.login();
+                assertNotNull(session.getNode("/output/foo/" + TestSequencersHolder.DERIVED_NODE_NAME));
+                for (int i = 0; i != 50 && !session.nodeExists("/output/baz"); ++i) {
+                    Thread.sleep(100L);
+                    session.refresh(false);
+                }
+                assertNotNull(session.getNode("/output/baz/" + TestSequencersHolder.DERIVED_NODE_NAME));
+                for (int i = 0; i != 50 && hasPendingSequencingWork(repository); ++i) {
+                    Thread.sleep(100L);
+                }
+                assertFalse(hasPendingSequencingWork(repository));
+                assertEquals(2, TestSequencersHolder.BlockingSequencer.EXECUTE_CALL_COUNTER.get());
+                return null;
+            }
+        }, repositoryConfigFile);
+    }
+
+    protected boolean hasPendingSequencingWork( JcrRepository repository ) {
+        String queueKey = "sequencing:" + repository.runningState().repositoryKey();
+        SchematicEntry entry = repository.documentStore().localStore().get(queueKey);
+        return entry != null && entry.getContentAsDocument().size() != 0;
+    }
+
+    @Test
+    public void shouldApplyQueuedIndexOperationsBeforeQueryingOwnWrites() throws Exception {
+        FileUtil.delete("target/persistent_repository");
+
+        String repositoryConfigFile = "config/repo-config-persistent-indexing-queue.json";
+        startRunStop(new RepositoryOperation() {
+            @Override
+            public Void call() throws Exception {
+                assertThat(repository.runningState().indexingQueue(), is(notNullValue()));
+                Session session = repository.login();
+                javax.jcr.Node parent = session.getRootNode().addNode("parent");
+                for (int i = 0; i != 50; ++i) {
+                    parent.addNode("child" + i);
+                }
+                session.save();
+
+                QueryManager queryManager = session.getWorkspace().getQueryManager();
+                Query query = queryManager.createQuery("select * from [nt:unstructured] where ISCHILDNODE('/parent')",
+                                                       Query.JCR_SQL2);
+                assertEquals(50, query.execute().getNodes().getSize());
+
+                parent.getNode("child0").remove();
+                session.save();
+                assertEquals(49, query.execute().getNodes().getSize());
+                return null;
+            }
+        }, repositoryConfigFile);
+
+        startRunStop(new RepositoryOperation() {
+            @Override
+            public Void call() throws Exception {
+                Session session = repository.login();
+                QueryManager queryManager = session.getWorkspace().getQueryManager();
+                Query query = queryManager.createQuery("select * from [nt:unstructured] where ISCHILDNODE('/parent')",
+                                                       Query.JCR_SQL2);
+                assertEquals(49, query.execute().getNodes().getSize());
+                return null;
+            }
+        }, repositoryConfigFile);
+    }
+
     @Test
     @FixFor( "MODE-1844" )
     public void shouldNotRemainInInconsistentStateIfErrorsOccurOnStartup() throws Exception {
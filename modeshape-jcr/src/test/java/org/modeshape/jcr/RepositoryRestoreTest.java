@@ -24,25 +24,33 @@
 package org.modeshape.jcr;
 
 import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.notNullValue;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import javax.jcr.ImportUUIDBehavior;
 import javax.jcr.NoSuchWorkspaceException;
+import javax.jcr.PathNotFoundException;
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
 import javax.jcr.query.Query;
 import javax.jcr.query.QueryResult;
+import org.infinispan.schematic.document.Document;
+import org.infinispan.schematic.document.Json;
 import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Test;
 import org.modeshape.common.statistic.Stopwatch;
 import org.modeshape.common.util.FileUtil;
 import org.modeshape.jcr.api.Problems;
+import org.modeshape.jcr.cache.document.DocumentConstants;
 
 /**
  * Test performance writing graph subtrees of various sizes with varying number of properties
@@ -129,6 +137,100 @@ public class RepositoryRestoreTest extends SingleUseAbstractTest {
         }
     }
 
+    @Test
+    public void shouldRestoreRepositoryFromIncrementalBackup() throws Exception {
+        loadContent();
+        Problems problems = session().getWorkspace().getRepositoryManager().backupRepository(backupDirectory);
+        assertNoProblems(problems);
+
+        // Change some of the content ...
+        session().getNode("/Cars/Sports/Infiniti G37").remove();
+        session().getNode("/Cars/Sports").addNode("Audi R8", "car:Car").setProperty("car:year", "2012");
+        session().save();
+        // The change tracker is notified asynchronously ...
+        Thread.sleep(500L);
+
+        problems = session().getWorkspace().getRepositoryManager().backupRepository(backupDirectory2, backupDirectory);
+        assertNoProblems(problems);
+        assertThat(readBackupSummary(backupDirectory2).getString(BackupService.FieldName.BASE_BACKUP), is(notNullValue()));
+
+        // Start up a new repository
+        ((LocalEnvironment)environment).setShared(true);
+        RepositoryConfiguration config = RepositoryConfiguration.read("config/restore-repo-config.json").with(environment);
+        JcrRepository newRepository = new JcrRepository(config);
+        try {
+            newRepository.start();
+
+            // And restore it from the incremental backup, which also restores the full backup ...
+            JcrSession newSession = newRepository.login();
+            try {
+                Problems restoreProblems = newSession.getWorkspace().getRepositoryManager().restoreRepository(backupDirectory2);
+                assertNoProblems(restoreProblems);
+            } finally {
+                newSession.logout();
+            }
+
+            assertWorkspaces(newRepository, "default", "ws2", "ws3");
+            assertContentInWorkspace(newRepository, "ws2");
+            assertContentInWorkspace(newRepository, "ws3");
+
+            newSession = newRepository.login();
+            try {
+                newSession.getNode("/Cars/Sports/Aston Martin DB9");
+                assertThat(newSession.getNode("/Cars/Sports/Audi R8").getProperty("car:year").getString(), is("2012"));
+                try {
+                    newSession.getNode("/Cars/Sports/Infiniti G37");
+                    fail("The removed node was restored");
+                } catch (PathNotFoundException e) {
+                    // expected
+                }
+            } finally {
+                newSession.logout();
+            }
+        } finally {
+            newRepository.shutdown().get(10, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void shouldRecordRemovedChildBlocksInIncrementalBackup() throws Exception {
+        AbstractJcrNode parent = session().getRootNode().addNode("parent");
+        for (int i = 0; i != 20; ++i) {
+            parent.addNode("child" + i);
+        }
+        session().save();
+
+        // Split the children into several blocks, each stored in a separate document ...
+        String parentKey = parent.key().toString();
+        repository().runningState().repositoryCache().optimizeChildren(5, 1);
+        Document parentDoc = repository().documentStore().get(parentKey).getContentAsDocument();
+        String blockKey = parentDoc.getDocument(DocumentConstants.CHILDREN_INFO).getString(DocumentConstants.NEXT_BLOCK);
+        assertThat(blockKey, is(notNullValue()));
+
+        Problems problems = session().getWorkspace().getRepositoryManager().backupRepository(backupDirectory);
+        assertNoProblems(problems);
+
+        session().getNode("/parent").remove();
+        session().save();
+        // The change tracker is notified asynchronously ...
+        Thread.sleep(500L);
+
+        problems = session().getWorkspace().getRepositoryManager().backupRepository(backupDirectory2, backupDirectory);
+        assertNoProblems(problems);
+        List<?> removedKeys = readBackupSummary(backupDirectory2).getArray(BackupService.FieldName.REMOVED_DOCUMENT_KEYS);
+        assertThat(removedKeys.contains(parentKey), is(true));
+        assertThat(removedKeys.contains(blockKey), is(true));
+    }
+
+    private Document readBackupSummary( File backup ) throws IOException {
+        FileInputStream summaryStream = new FileInputStream(new File(backup, BackupService.BACKUP_SUMMARY_FILE_NAME));
+        try {
+            return Json.read(summaryStream);
+        } finally {
+            summaryStream.close();
+        }
+    }
+
     private void assertWorkspaces( JcrRepository newRepository,
                                    String... workspaceNames ) throws RepositoryException {
         Set<String> expectedNames = new HashSet<String>();
@@ -33,7 +33,9 @@ import static org.junit.Assert.fail;
 import java.io.InputStream;
 import javax.jcr.Node;
 import org.infinispan.schematic.Schematic;
+import org.infinispan.schematic.SchematicEntry;
 import org.infinispan.schematic.document.Document;
+import org.infinispan.schematic.document.Document.Field;
 import org.infinispan.schematic.document.EditableDocument;
 import org.infinispan.schematic.document.Json;
 import org.junit.Test;
@@ -155,6 +157,166 @@ public class SequencingTest extends AbstractSequencerTest {
         assertThat(session.getRootNode().hasNode("output/foo"), is(false));
     }
 
+    @Test
+    public void shouldRunSequencerInItsOwnThreadPoolAndForgetCompletedWork() throws Exception {
+        EditableDocument doc = Schematic.newDocument();
+        addSequencer(doc, "seq1", TestSequencersHolder.DefaultSequencer.class.getName(), "/foo[@bar] => /output");
+        EditableDocument sequencer = doc.getDocument(FieldName.SEQUENCING).getDocument(FieldName.SEQUENCERS).getDocument("seq1");
+        sequencer.setNumber(FieldName.THREAD_POOL_SIZE, 1);
+        sequencer.setNumber(FieldName.PRIORITY, Thread.MAX_PRIORITY);
+        startRepositoryWithConfiguration(doc);
+
+        // Add several nodes that are to be sequenced one at a time ...
+        for (int i = 0; i != 3; ++i) {
+            Node foo = session.getRootNode().addNode("foo" + i);
+            foo.setProperty("bar", "value of bar");
+        }
+        session.save();
+        for (int i = 0; i != 3; ++i) {
+            assertThat(getOutputNode("/output/foo" + i), is(notNullValue()));
+        }
+
+        // The completed work should no longer be recorded as pending ...
+        String queueKey = "sequencing:" + repository.runningState().repositoryKey();
+        for (int i = 0; i != 50 && hasPendingSequencingWork(queueKey); ++i) {
+            Thread.sleep(100L);
+        }
+        assertThat(hasPendingSequencingWork(queueKey), is(false));
+    }
+
+    @Test
+    public void shouldSaveOutputOfSequencedInputsInBatchesAndIsolateFailures() throws Exception {
+        EditableDocument doc = Schematic.newDocument();
+        addSequencer(doc, "seq1", TestSequencersHolder.FaultyForSomeInputs.class.getName(), "/foo[@bar] => /output");
+        EditableDocument sequencer = doc.getDocument(FieldName.SEQUENCING).getDocument(FieldName.SEQUENCERS).getDocument("seq1");
+        sequencer.setNumber(FieldName.THREAD_POOL_SIZE, 1);
+        sequencer.setNumber(FieldName.SEQUENCER_BATCH_SIZE, 10);
+        startRepositoryWithConfiguration(doc);
+
+        // Add several nodes, one of which the sequencer fails on after writing some output ...
+        Node failing = null;
+        for (int i = 0; i != 5; ++i) {
+            Node foo = session.getRootNode().addNode("foo" + i);
+            String value = i == 2 ? TestSequencersHolder.FaultyForSomeInputs.FAILING_VALUE : "value of bar";
+            foo.setProperty("bar", value);
+            if (i == 2) failing = foo;
+        }
+        session.save();
+
+        // The output of all the other nodes should have been saved ...
+        for (int i = 0; i != 5; ++i) {
+            if (i == 2) continue;
+            assertThat(getOutputNode("/output/foo" + i), is(notNullValue()));
+        }
+        expectSequencingFailure(failing);
+        session.refresh(false);
+        assertThat(session.getRootNode().hasNode("output/foo2"), is(false));
+    }
+
+    @Test
+    public void shouldSequenceInputThatIsSavedRepeatedlyOnceWhileItIsPending() throws Exception {
+        TestSequencersHolder.BlockingSequencer.reset();
+        EditableDocument doc = Schematic.newDocument();
+        addSequencer(doc, "seq1", TestSequencersHolder.BlockingSequencer.class.getName(), "/input/*[@bar] => /output");
+        EditableDocument sequencer = doc.getDocument(FieldName.SEQUENCING).getDocument(FieldName.SEQUENCERS).getDocument("seq1");
+        sequencer.setNumber(FieldName.THREAD_POOL_SIZE, 1);
+        startRepositoryWithConfiguration(doc);
+
+        String queueKey = "sequencing:" + repository.runningState().repositoryKey();
+        try {
+            // Keep the sequencer's only thread busy ...
+            Node input = session.getRootNode().addNode("input");
+            input.addNode("blocker").setProperty("bar", TestSequencersHolder.BlockingSequencer.BLOCKING_VALUE);
+            session.save();
+
+            // Save the same input several times, and then another input ...
+            Node foo = input.addNode("foo");
+            for (int i = 0; i != 3; ++i) {
+                foo.setProperty("bar", "value " + i);
+                session.save();
+            }
+            input.addNode("last").setProperty("bar", "value of bar");
+            session.save();
+
+            // Each input is recorded once, in its own document ...
+            for (int i = 0; i != 50 && pendingSequencingWork(queueKey).size() != 3; ++i) {
+                Thread.sleep(100L);
+            }
+            Document pending = pendingSequencingWork(queueKey);
+            assertThat(pending.size(), is(3));
+            for (Field field : pending.fields()) {
+                assertThat(repository.documentStore().localStore().get(queueKey + ":" + field.getName()), is(notNullValue()));
+            }
+        } finally {
+            TestSequencersHolder.BlockingSequencer.release();
+        }
+
+        // The repeatedly-saved input was sequenced only once ...
+        assertThat(getOutputNode("/output/foo"), is(notNullValue()));
+        assertThat(getOutputNode("/output/last"), is(notNullValue()));
+        for (int i = 0; i != 50 && hasPendingSequencingWork(queueKey); ++i) {
+            Thread.sleep(100L);
+        }
+        assertThat(hasPendingSequencingWork(queueKey), is(false));
+        assertThat(TestSequencersHolder.BlockingSequencer.EXECUTE_CALL_COUNTER.get(), is(3));
+    }
+
+    @Test
+    public void shouldRunInputThatIsSavedWhileBeingSequencedOnceMoreAfterwards() throws Exception {
+        TestSequencersHolder.BlockingSequencer.reset();
+        EditableDocument doc = Schematic.newDocument();
+        addSequencer(doc, "seq1", TestSequencersHolder.BlockingSequencer.class.getName(), "/input/*[@bar] => /output");
+        EditableDocument sequencer = doc.getDocument(FieldName.SEQUENCING).getDocument(FieldName.SEQUENCERS).getDocument("seq1");
+        sequencer.setNumber(FieldName.THREAD_POOL_SIZE, 2);
+        startRepositoryWithConfiguration(doc);
+
+        String queueKey = "sequencing:" + repository.runningState().repositoryKey();
+        try {
+            // Start sequencing an input, which waits until released ...
+            Node input = session.getRootNode().addNode("input");
+            Node foo = input.addNode("foo");
+            foo.setProperty("bar", TestSequencersHolder.BlockingSequencer.BLOCKING_VALUE);
+            session.save();
+            for (int i = 0; i != 50 && TestSequencersHolder.BlockingSequencer.EXECUTE_CALL_COUNTER.get() == 0; ++i) {
+                Thread.sleep(100L);
+            }
+
+            // Save the input again while it is being sequenced, and then another input ...
+            foo.setProperty("bar", "value 1");
+            session.save();
+            foo.setProperty("bar", "value 2");
+            session.save();
+            input.addNode("last").setProperty("bar", "value of bar");
+            session.save();
+
+            // The other input is sequenced by the second thread, but the first input is not sequenced concurrently ...
+            assertThat(getOutputNode("/output/last"), is(notNullValue()));
+            assertThat(TestSequencersHolder.BlockingSequencer.EXECUTE_CALL_COUNTER.get(), is(2));
+            assertThat(hasPendingSequencingWork(queueKey), is(true));
+        } finally {
+            TestSequencersHolder.BlockingSequencer.release();
+        }
+
+        // The first input is sequenced once more after the first run completes ...
+        for (int i = 0; i != 50 && TestSequencersHolder.BlockingSequencer.EXECUTE_CALL_COUNTER.get() < 3; ++i) {
+            Thread.sleep(100L);
+        }
+        for (int i = 0; i != 50 && hasPendingSequencingWork(queueKey); ++i) {
+            Thread.sleep(100L);
+        }
+        assertThat(hasPendingSequencingWork(queueKey), is(false));
+        assertThat(TestSequencersHolder.BlockingSequencer.EXECUTE_CALL_COUNTER.get(), is(3));
+    }
+
+    private boolean hasPendingSequencingWork( String queueKey ) {
+        return pendingSequencingWork(queueKey).size() != 0;
+    }
+
+    private Document pendingSequencingWork( String queueKey ) {
+        SchematicEntry entry = repository.documentStore().localStore().get(queueKey);
+        return entry != null ? entry.getContentAsDocument() : Schematic.newDocument();
+    }
+
     /**
      * Sequencer path expressions are matching expressions, and therefore we cannot verify that they actually represent paths. So,
      * even though this is an valid path expression, it won't match any real paths.
@@ -28,6 +28,7 @@ import static org.junit.Assert.assertNotNull;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicInteger;
 import javax.jcr.NamespaceRegistry;
 import javax.jcr.Node;
@@ -90,6 +91,55 @@ public class TestSequencersHolder {
         }
     }
 
+    /**
+     * A sequencer that records the number of times all instances are {@link #execute executed}, and that waits until
+     * {@link #release() released} before sequencing an input whose value is {@link #BLOCKING_VALUE}.
+     */
+    public static class BlockingSequencer extends Sequencer {
+        public static final String BLOCKING_VALUE = "block";
+        public static final AtomicInteger EXECUTE_CALL_COUNTER = new AtomicInteger();
+        private static volatile CountDownLatch gate = new CountDownLatch(1);
+
+        public static void reset() {
+            EXECUTE_CALL_COUNTER.set(0);
+            gate = new CountDownLatch(1);
+        }
+
+        public static void release() {
+            gate.countDown();
+        }
+
+        @Override
+        public boolean execute( Property inputProperty,
+                                Node outputNode,
+                                Context context ) throws Exception {
+            EXECUTE_CALL_COUNTER.incrementAndGet();
+            if (BLOCKING_VALUE.equals(inputProperty.getString())) {
+                gate.await();
+            }
+            outputNode.addNode(DERIVED_NODE_NAME);
+            return true;
+        }
+    }
+
+    /**
+     * A sequencer that writes its output, and then fails if the input's value is {@link #FAILING_VALUE}.
+     */
+    public static class FaultyForSomeInputs extends Sequencer {
+        public static final String FAILING_VALUE = "fail";
+
+        @Override
+        public boolean execute( Property inputProperty,
+                                Node outputNode,
+                                Context context ) throws Exception {
+            outputNode.addNode(DERIVED_NODE_NAME);
+            if (FAILING_VALUE.equals(inputProperty.getString())) {
+                throw new IllegalArgumentException("We're expecting to get this exception");
+            }
+            return true;
+        }
+    }
+
     /**
      * A sequencer which has different property types and is used to test the setting of property values.
      */
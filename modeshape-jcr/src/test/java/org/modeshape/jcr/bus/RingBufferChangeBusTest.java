@@ -0,0 +1,228 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ * See the AUTHORS.txt file in the distribution for a full listing of
+ * individual contributors.
+ *
+ * ModeShape is free software. Unless otherwise indicated, all code in ModeShape
+ * is licensed to you under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * ModeShape is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.modeshape.jcr.bus;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.After;
+import org.junit.Test;
+import org.modeshape.jcr.bus.RingBufferChangeBus.OverflowPolicy;
+import org.modeshape.jcr.cache.change.ChangeSet;
+
+/**
+ * Unit test for {@link RingBufferChangeBus}, which must also pass all of the tests for the {@link RepositoryChangeBus}.
+ */
+public class RingBufferChangeBusTest extends RepositoryChangeBusTest {
+
+    private static final String WORKSPACE = "ws";
+
+    private RingBufferChangeBus bus;
+    private CountingMonitor monitor;
+
+    @Override
+    protected ChangeBus createRepositoryChangeBus() {
+        return createBus(OverflowPolicy.BLOCK, 16, 4);
+    }
+
+    protected RingBufferChangeBus createBus( OverflowPolicy policy,
+                                             int queueSize,
+                                             int batchSize ) {
+        monitor = new CountingMonitor();
+        return new RingBufferChangeBus(Executors.newCachedThreadPool(), null, queueSize, policy, batchSize, monitor);
+    }
+
+    @Override
+    @After
+    public void afterEach() {
+        super.afterEach();
+        if (bus != null) bus.shutdown();
+    }
+
+    @Test
+    public void shouldDeliverAllChangeSetsToSlowListenerWhenBlocking() throws Exception {
+        bus = createBus(OverflowPolicy.BLOCK, 2, 2);
+        GatedListener listener = new GatedListener(10);
+        assertTrue(bus.register(listener));
+        Thread releaser = listener.releaseLater(100);
+        for (int i = 0; i != 10; ++i) {
+            bus.notify(new TestChangeSet(WORKSPACE));
+        }
+        releaser.join();
+        assertTrue(listener.await());
+        assertThat(listener.count(), is(10));
+        assertThat(monitor.dropped.get(), is(0));
+    }
+
+    @Test
+    public void shouldDropAndFlagChangeSetsWhenQueueOfBatchingListenerIsFull() throws Exception {
+        bus = createBus(OverflowPolicy.DROP, 2, 10);
+        GatedListener listener = new GatedListener(3);
+        assertTrue(bus.register(listener));
+        // The first change set is taken by the dispatcher, which blocks until released; the next two fill the queue ...
+        bus.notify(new TestChangeSet(WORKSPACE));
+        listener.awaitFirstDelivery();
+        bus.notify(new TestChangeSet(WORKSPACE));
+        bus.notify(new TestChangeSet(WORKSPACE));
+        // ... and these are dropped ...
+        bus.notify(new TestChangeSet(WORKSPACE));
+        bus.notify(new TestChangeSet(WORKSPACE));
+        listener.release();
+        assertTrue(listener.await());
+        assertThat(listener.count(), is(3));
+        assertThat(listener.dropped.get(), is(2L));
+        assertThat(monitor.dropped.get(), is(2));
+        // Both of the remaining change sets were delivered in one batch ...
+        assertThat(listener.batchSizes.get(listener.batchSizes.size() - 1), is(2));
+    }
+
+    @Test
+    public void shouldCoalesceChangeSetsFromSameUserAndWorkspaceWhenQueueIsFull() throws Exception {
+        bus = createBus(OverflowPolicy.COALESCE, 1, 10);
+        GatedListener listener = new GatedListener(2);
+        assertTrue(bus.register(listener));
+        bus.notify(new TestChangeSet(WORKSPACE));
+        listener.awaitFirstDelivery();
+        bus.notify(new TestChangeSet(WORKSPACE));
+        bus.notify(new TestChangeSet(WORKSPACE));
+        bus.notify(new TestChangeSet(WORKSPACE));
+        listener.release();
+        assertTrue(listener.await());
+        assertThat(listener.count(), is(2));
+        assertThat(listener.received.get(1) instanceof CoalescedChangeSet, is(true));
+        assertThat(monitor.dropped.get(), is(0));
+    }
+
+    @Test
+    public void shouldRecordQueueSize() throws Exception {
+        bus = createBus(OverflowPolicy.BLOCK, 10, 10);
+        GatedListener listener = new GatedListener(4);
+        assertTrue(bus.register(listener));
+        bus.notify(new TestChangeSet(WORKSPACE));
+        listener.awaitFirstDelivery();
+        bus.notify(new TestChangeSet(WORKSPACE));
+        bus.notify(new TestChangeSet(WORKSPACE));
+        bus.notify(new TestChangeSet(WORKSPACE));
+        assertThat(monitor.queueSize.get(), is(3));
+        listener.release();
+        assertTrue(listener.await());
+        assertThat(monitor.queueSize.get(), is(0));
+    }
+
+    protected static class CountingMonitor implements ChangeBusMonitor {
+        protected final AtomicInteger queueSize = new AtomicInteger();
+        protected final AtomicInteger dropped = new AtomicInteger();
+
+        @Override
+        public void queueSizeChanged( int delta ) {
+            queueSize.addAndGet(delta);
+        }
+
+        @Override
+        public void changeSetsDropped( int count ) {
+            dropped.addAndGet(count);
+        }
+    }
+
+    /**
+     * A batching listener that blocks in its first notification until it is released.
+     */
+    protected static class GatedListener implements BatchingChangeSetListener {
+        protected final List<ChangeSet> received = new ArrayList<ChangeSet>();
+        protected final List<Integer> batchSizes = new ArrayList<Integer>();
+        protected final AtomicLong dropped = new AtomicLong();
+        private final CountDownLatch firstDelivery = new CountDownLatch(1);
+        private final CountDownLatch gate = new CountDownLatch(1);
+        private final CountDownLatch done;
+
+        protected GatedListener( int expected ) {
+            this.done = new CountDownLatch(expected);
+        }
+
+        @Override
+        public void notify( ChangeSet changeSet ) {
+            throw new AssertionError("Should have been notified of batches");
+        }
+
+        @Override
+        public void notify( List<ChangeSet> changeSets,
+                            long droppedCount ) {
+            firstDelivery.countDown();
+            try {
+                gate.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            synchronized (received) {
+                received.addAll(changeSets);
+                batchSizes.add(changeSets.size());
+            }
+            dropped.addAndGet(droppedCount);
+            for (int i = 0; i != changeSets.size(); ++i) {
+                done.countDown();
+            }
+        }
+
+        protected void awaitFirstDelivery() throws InterruptedException {
+            assertTrue(firstDelivery.await(5, TimeUnit.SECONDS));
+        }
+
+        protected void release() {
+            gate.countDown();
+        }
+
+        protected Thread releaseLater( final long millis ) {
+            Thread thread = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        Thread.sleep(millis);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    release();
+                }
+            };
+            thread.start();
+            return thread;
+        }
+
+        protected boolean await() throws InterruptedException {
+            return done.await(5, TimeUnit.SECONDS);
+        }
+
+        protected int count() {
+            synchronized (received) {
+                return received.size();
+            }
+        }
+    }
+}
@@ -79,6 +79,7 @@ public abstract class AbstractSessionCacheTest extends AbstractNodeCacheTest {
             private final Transactions transactions = new NoClientTransactions(monitorFactory, txnMgr);
             private final TransactionalWorkspaceCaches transactionalWorkspaceCacheFactory = new TransactionalWorkspaceCaches(
                                                                                                                              transactions);
+            private final GroupCommitter groupCommitter = createGroupCommitter(transactions);
 
             @Override
             public Transactions getTransactions() {
@@ -94,9 +95,24 @@ public abstract class AbstractSessionCacheTest extends AbstractNodeCacheTest {
             public boolean indexingClustered() {
                 return false;
             }
+
+            @Override
+            public GroupCommitter getGroupCommitter() {
+                return groupCommitter;
+            }
         };
     }
 
+    /**
+     * Create the component that should coalesce the saves of different sessions.
+     * 
+     * @param transactions the transactions object
+     * @return the group committer, or null if each save should use its own transaction
+     */
+    protected GroupCommitter createGroupCommitter( Transactions transactions ) {
+        return null;
+    }
+
     protected SessionCache session() {
         return (SessionCache)cache;
     }
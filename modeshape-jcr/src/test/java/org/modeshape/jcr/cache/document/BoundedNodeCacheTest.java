@@ -0,0 +1,172 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ * See the AUTHORS.txt file in the distribution for a full listing of 
+ * individual contributors.
+ *
+ * ModeShape is free software. Unless otherwise indicated, all code in ModeShape
+ * is licensed to you under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ * 
+ * ModeShape is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.modeshape.jcr.cache.document;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.notNullValue;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.hamcrest.core.IsSame.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.infinispan.schematic.Schematic;
+import org.infinispan.schematic.document.Document;
+import org.infinispan.schematic.document.EditableDocument;
+import org.junit.Before;
+import org.junit.Test;
+import org.modeshape.jcr.cache.CachedNode;
+import org.modeshape.jcr.cache.NodeKey;
+
+public class BoundedNodeCacheTest {
+
+    private CountingMonitor monitor;
+
+    @Before
+    public void beforeEach() {
+        monitor = new CountingMonitor();
+    }
+
+    protected NodeKey key( int id ) {
+        return new NodeKey("source1works1-" + id);
+    }
+
+    protected LazyCachedNode node( int id ) {
+        EditableDocument doc = Schematic.newDocument();
+        doc.setString("name", "node" + id);
+        doc.setNumber("id", id);
+        return new LazyCachedNode(key(id), doc);
+    }
+
+    @Test
+    public void shouldKeepEstimatedWeightWithinMaximum() {
+        BoundedNodeCache cache = new BoundedNodeCache(4 * 1024L, monitor);
+        for (int i = 0; i != 1000; ++i) {
+            cache.putIfAbsent(key(i), node(i));
+            assertTrue(cache.getWeight() <= cache.getMaximumWeight());
+        }
+        assertTrue(cache.size() < 1000);
+        assertThat(monitor.evictions.get(), is(1000 - cache.size()));
+    }
+
+    @Test
+    public void shouldCountHitsAndMisses() {
+        BoundedNodeCache cache = new BoundedNodeCache(1024 * 1024L, monitor);
+        LazyCachedNode node = node(1);
+        assertThat(cache.get(key(1)), is(nullValue()));
+        assertThat(cache.putIfAbsent(key(1), node), is(nullValue()));
+        assertThat(cache.get(key(1)), is(sameInstance((CachedNode)node)));
+        assertThat(cache.get(key(1)), is(sameInstance((CachedNode)node)));
+        assertThat(cache.get(key(2)), is(nullValue()));
+        assertThat(monitor.hits.get(), is(2));
+        assertThat(monitor.misses.get(), is(2));
+        assertThat(monitor.evictions.get(), is(0));
+    }
+
+    @Test
+    public void shouldKeepFrequentlyUsedNodesDuringScan() {
+        BoundedNodeCache cache = new BoundedNodeCache(8 * 1024L, monitor);
+        for (int i = 0; i != 10; ++i) {
+            cache.put(key(i), node(i));
+        }
+        // Scan many nodes that are each used only once, while using the first nodes far less often than an LRU cache
+        // of this size would need to keep them ...
+        for (int i = 100; i != 10000; ++i) {
+            if (cache.get(key(i)) == null) cache.putIfAbsent(key(i), node(i));
+            if (i % 100 == 0) {
+                for (int j = 0; j != 10; ++j) {
+                    assertThat(cache.get(key(j)), is(notNullValue()));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void shouldMoveEvictedNodesToOffHeapTierAndReloadThem() {
+        BoundedNodeCache cache = new BoundedNodeCache(1024L, 1024 * 1024L, monitor);
+        for (int i = 0; i != 100; ++i) {
+            cache.put(key(i), node(i));
+        }
+        assertTrue(cache.size() < 100);
+        assertThat(cache.getOffHeapCount(), is(100 - cache.size()));
+        assertThat(monitor.evictions.get(), is(0));
+
+        // The very first node was evicted, so it must be rebuilt from its BSON ...
+        CachedNode reloaded = cache.get(key(0));
+        assertThat(reloaded, is(notNullValue()));
+        Document doc = ((LazyCachedNode)reloaded).documentIfLoaded();
+        assertThat(doc.getString("name"), is("node0"));
+        assertThat(doc.getInteger("id"), is(0));
+        assertThat(monitor.hits.get(), is(1));
+        assertThat(monitor.misses.get(), is(0));
+    }
+
+    @Test
+    public void shouldRemoveNodesFromOffHeapTier() {
+        BoundedNodeCache cache = new BoundedNodeCache(1024L, 1024 * 1024L, monitor);
+        for (int i = 0; i != 100; ++i) {
+            cache.put(key(i), node(i));
+        }
+        assertThat(cache.containsKey(key(0)), is(true));
+        cache.remove(key(0));
+        assertThat(cache.containsKey(key(0)), is(false));
+        assertThat(cache.get(key(0)), is(nullValue()));
+
+        cache.clear();
+        assertThat(cache.size(), is(0));
+        assertThat(cache.getOffHeapCount(), is(0));
+        assertThat(cache.get(key(50)), is(nullValue()));
+    }
+
+    @Test
+    public void shouldDiscardLeastRecentlyUsedOffHeapNodesWhenOffHeapTierIsFull() {
+        BoundedNodeCache cache = new BoundedNodeCache(1024L, 512L, monitor);
+        for (int i = 0; i != 100; ++i) {
+            cache.put(key(i), node(i));
+        }
+        assertTrue(cache.getOffHeapCount() > 0);
+        assertThat(monitor.evictions.get(), is(100 - cache.size() - cache.getOffHeapCount()));
+        assertThat(cache.get(key(0)), is(nullValue()));
+    }
+
+    protected static class CountingMonitor implements NodeCacheMonitor {
+        protected final AtomicInteger hits = new AtomicInteger();
+        protected final AtomicInteger misses = new AtomicInteger();
+        protected final AtomicInteger evictions = new AtomicInteger();
+
+        @Override
+        public void hit() {
+            hits.incrementAndGet();
+        }
+
+        @Override
+        public void miss() {
+            misses.incrementAndGet();
+        }
+
+        @Override
+        public void evicted( int count ) {
+            evictions.addAndGet(count);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ * See the AUTHORS.txt file in the distribution for a full listing of 
+ * individual contributors.
+ *
+ * ModeShape is free software. Unless otherwise indicated, all code in ModeShape
+ * is licensed to you under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ * 
+ * ModeShape is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.modeshape.jcr.cache.document;
+
+import org.modeshape.jcr.cache.NodeCache;
+
+/**
+ * Runs the {@link AbstractNodeCacheTest node cache tests} against a {@link WorkspaceCache} whose nodes are held in a
+ * {@link BoundedNodeCache} that is small enough to evict nodes to its off-heap tier and to discard some of them altogether.
+ */
+public class BoundedWorkspaceCacheTest extends AbstractNodeCacheTest {
+
+    @Override
+    protected NodeCache createCache() {
+        BoundedNodeCache nodeCache = new BoundedNodeCache(16 * 1024L, 32 * 1024L, null);
+        DocumentStore documentStore = new LocalDocumentStore(schematicDb);
+        DocumentTranslator translator = new DocumentTranslator(context, documentStore, 100L);
+        WorkspaceCache workspaceCache = new WorkspaceCache(context, "repo", "ws", documentStore, translator, ROOT_KEY_WS1,
+                                                           nodeCache, null);
+        loadJsonDocuments(resource(resourceNameForWorkspaceContentDocument()));
+        return workspaceCache;
+    }
+
+}
@@ -24,11 +24,14 @@
 package org.modeshape.jcr.cache.document;
 
 import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.nullValue;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.fail;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import org.infinispan.schematic.SchematicEntry;
 import org.infinispan.schematic.document.Document;
 import org.infinispan.schematic.document.EditableArray;
@@ -37,6 +40,7 @@ import org.junit.Before;
 import org.junit.Test;
 import org.modeshape.jcr.ExecutionContext;
 import org.modeshape.jcr.cache.ChildReference;
+import org.modeshape.jcr.cache.ChildReferences;
 import org.modeshape.jcr.cache.MutableCachedNode;
 import org.modeshape.jcr.cache.NodeKey;
 import org.modeshape.jcr.cache.SessionCache;
@@ -175,6 +179,120 @@ public class DocumentOptimizerTest extends AbstractSessionCacheTest {
         print(document(key), true);
     }
 
+    @Test
+    public void shouldIndexChildReferenceBlocksByNameAndKey() throws Exception {
+        MutableCachedNode nodeB = check(session1).mutableNode("/childB");
+        NodeKey key = nodeB.getKey();
+        for (int i = 0; i != 20; ++i) {
+            NodeKey newKey = key.withId("child" + (i + 1));
+            nodeB.createChild(session(), newKey, name(i % 2 == 0 ? "even" : "odd"), property("p1a", 344));
+        }
+        session1.save();
+
+        // Split the children into blocks, which also indexes the blocks ...
+        optimizer.optimizeChildrenBlocks(key, null, 5, 2);
+        session1.save();
+        assertIndexedChildren(key);
+
+        // Append more children, which only updates the index ...
+        nodeB = check(session1).mutableNode("/childB");
+        for (int i = 20; i != 30; ++i) {
+            NodeKey newKey = key.withId("child" + (i + 1));
+            nodeB.createChild(session(), newKey, name(i % 2 == 0 ? "even" : "odd"), property("p1a", 344));
+        }
+        session1.save();
+        assertIndexedChildren(key);
+
+        // Remove a child, which updates only the affected buckets ...
+        nodeB = check(session1).mutableNode("/childB");
+        nodeB.removeChild(session(), key.withId("child3"));
+        session1.save();
+        assertIndexedChildren(key);
+        assertThat(childReferences(key).hasChild(key.withId("child3")), is(false));
+        assertThat(childReferences(key).getChildCount(name("even")), is(14));
+
+        // Rename a child ...
+        nodeB = check(session1).mutableNode("/childB");
+        nodeB.renameChild(session(), key.withId("child4"), name("renamed"));
+        session1.save();
+        assertIndexedChildren(key);
+        assertThat(childReferences(key).getChildCount(name("odd")), is(14));
+        assertThat(childReferences(key).getChild(name("renamed")).getKey(), is(key.withId("child4")));
+    }
+
+    @Test
+    public void shouldRebalanceChildReferencesIndexWhenManyChildrenAreAppended() throws Exception {
+        MutableCachedNode nodeB = check(session1).mutableNode("/childB");
+        NodeKey key = nodeB.getKey();
+        for (int i = 0; i != 20; ++i) {
+            nodeB.createChild(session(), key.withId("child" + (i + 1)), name("child"), property("p1a", 344));
+        }
+        session1.save();
+        optimizer.optimizeChildrenBlocks(key, null, 5, 2);
+        session1.save();
+        assertThat(ChildReferencesIndex.bucketCount(document(key).getDocument(DocumentTranslator.CHILDREN_INFO)), is(1));
+
+        // Append enough children that a single bucket is far too few ...
+        int total = ChildReferencesIndex.TARGET_CHILDREN_PER_BUCKET * (ChildReferencesIndex.REBALANCE_FACTOR + 1);
+        nodeB = check(session1).mutableNode("/childB");
+        for (int i = 20; i != total; ++i) {
+            Name childName = name(i % 2 == 0 ? "even" : "odd");
+            nodeB.createChild(session(), key.withId("child" + (i + 1)), childName, property("p1a", 344));
+        }
+        session1.save();
+        int bucketCount = ChildReferencesIndex.bucketCount(document(key).getDocument(DocumentTranslator.CHILDREN_INFO));
+        assertThat(bucketCount, is(ChildReferencesIndex.bucketCountFor(childReferences(key).size())));
+        assertIndexedChildren(key);
+    }
+
+    @Test
+    public void shouldRemoveChildReferencesIndexWhenNodeIsRemoved() throws Exception {
+        MutableCachedNode nodeB = check(session1).mutableNode("/childB");
+        NodeKey key = nodeB.getKey();
+        for (int i = 0; i != 20; ++i) {
+            nodeB.createChild(session(), key.withId("child" + (i + 1)), name("child"), property("p1a", 344));
+        }
+        session1.save();
+        optimizer.optimizeChildrenBlocks(key, null, 5, 2);
+        session1.save();
+        String bucketKey = ChildReferencesIndex.bucketKey(key.toString(), 0);
+        assertThat(workspaceCache.documentStore().get(bucketKey) != null, is(true));
+
+        session1.destroy(key);
+        session1.save();
+        assertThat(workspaceCache.documentStore().get(key.toString()), is(nullValue()));
+        assertThat(workspaceCache.documentStore().get(bucketKey), is(nullValue()));
+    }
+
+    protected ChildReferences childReferences( NodeKey key ) {
+        return workspaceCache.translator().getChildReferences(workspaceCache, document(key));
+    }
+
+    protected void assertIndexedChildren( NodeKey key ) {
+        Document doc = document(key);
+        assertThat(ChildReferencesIndex.bucketCount(doc.getDocument(DocumentTranslator.CHILDREN_INFO)) > 0, is(true));
+
+        // Walk all of the blocks, and verify that the indexed lookups find the same children ...
+        ChildReferences refs = childReferences(key);
+        Map<Name, Integer> countsByName = new HashMap<Name, Integer>();
+        Iterator<ChildReference> iter = refs.iterator();
+        while (iter.hasNext()) {
+            ChildReference ref = iter.next();
+            Integer snsIndex = countsByName.get(ref.getName());
+            snsIndex = snsIndex == null ? 1 : snsIndex + 1;
+            countsByName.put(ref.getName(), snsIndex);
+            assertThat(refs.hasChild(ref.getKey()), is(true));
+            assertThat(refs.getChild(ref.getKey()).getSnsIndex(), is(snsIndex.intValue()));
+            assertThat(refs.getChild(ref.getName(), snsIndex).getKey(), is(ref.getKey()));
+        }
+        for (Map.Entry<Name, Integer> entry : countsByName.entrySet()) {
+            assertThat(refs.getChildCount(entry.getKey()), is(entry.getValue().intValue()));
+            assertThat(refs.getChild(entry.getKey(), entry.getValue() + 1), is(nullValue()));
+        }
+        assertThat(refs.hasChild(key.withId("nonExistentChild")), is(false));
+        assertThat(refs.getChildCount(name("nonExistentChild")), is(0));
+    }
+
     protected Document document( NodeKey key ) {
         SchematicEntry entry = workspaceCache.documentStore().get(key.toString());
         return entry.getContentAsDocument();
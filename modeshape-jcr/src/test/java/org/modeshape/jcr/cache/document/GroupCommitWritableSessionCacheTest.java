@@ -0,0 +1,202 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ * See the AUTHORS.txt file in the distribution for a full listing of 
+ * individual contributors.
+ *
+ * ModeShape is free software. Unless otherwise indicated, all code in ModeShape
+ * is licensed to you under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ * 
+ * ModeShape is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.modeshape.jcr.cache.document;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsInstanceOf.instanceOf;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.junit.Assert.assertThat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import org.modeshape.jcr.cache.DocumentAlreadyExistsException;
+import org.modeshape.jcr.cache.MutableCachedNode;
+import org.modeshape.jcr.cache.NodeCache;
+import org.modeshape.jcr.cache.NodeKey;
+import org.modeshape.jcr.cache.SessionCache;
+import org.modeshape.jcr.cache.SessionCache.PreSave;
+import org.modeshape.jcr.cache.SessionCache.SaveContext;
+import org.modeshape.jcr.cache.SessionEnvironment;
+import org.modeshape.jcr.txn.Transactions;
+
+/**
+ * Runs the {@link WritableSessionCacheTest} tests with sessions whose saves go through a {@link GroupCommitter}, and verifies that
+ * concurrent saves are coalesced without changing the outcome of each save.
+ */
+public class GroupCommitWritableSessionCacheTest extends WritableSessionCacheTest {
+
+    private static final int SESSION_COUNT = 4;
+
+    @Override
+    protected GroupCommitter createGroupCommitter( Transactions transactions ) {
+        // Use a window long enough for all of the concurrent saves to join one group ...
+        return new GroupCommitter(transactions, 500L, SESSION_COUNT);
+    }
+
+    protected NodeKey[] createParents() {
+        NodeKey[] parentKeys = new NodeKey[SESSION_COUNT];
+        MutableCachedNode root = session1.mutable(session1.getRootKey());
+        for (int i = 0; i != SESSION_COUNT; ++i) {
+            parentKeys[i] = root.createChild(session1, newKey("parent" + i), name("parent" + i), property("p1", "value")).getKey();
+        }
+        root.createChild(session1, newKey("existing"), name("existing"), property("p1", "value"));
+        session1.save();
+        return parentKeys;
+    }
+
+    /**
+     * Concurrently save one session per parent, where each session creates a child with the given identifier under its parent.
+     * 
+     * @param parentKeys the keys of the parents
+     * @param childIds the identifiers of the children
+     * @return the failure of each save, or null for each save that succeeded
+     * @throws Exception if the test fails
+     */
+    protected List<Throwable> saveConcurrently( final NodeKey[] parentKeys,
+                                                final String[] childIds ) throws Exception {
+        return saveConcurrently(parentKeys, childIds, null);
+    }
+
+    /**
+     * Concurrently save one session per parent, where each session creates a child with the given identifier under its parent
+     * and is saved together with another session using the supplied pre-save operations.
+     * 
+     * @param parentKeys the keys of the parents
+     * @param childIds the identifiers of the children
+     * @param preSave the pre-save operations, or null if each session is to be saved on its own
+     * @return the failure of each save, or null for each save that succeeded
+     * @throws Exception if the test fails
+     */
+    protected List<Throwable> saveConcurrently( final NodeKey[] parentKeys,
+                                                final String[] childIds,
+                                                final PreSave preSave ) throws Exception {
+        final SessionEnvironment sessionEnv = createSessionContext();
+        final CountDownLatch ready = new CountDownLatch(SESSION_COUNT);
+        ExecutorService executor = Executors.newFixedThreadPool(SESSION_COUNT);
+        try {
+            List<Future<Throwable>> futures = new ArrayList<Future<Throwable>>();
+            for (int i = 0; i != SESSION_COUNT; ++i) {
+                final SessionCache session = createSessionCache(context, workspaceCache, sessionEnv);
+                final SessionCache other = createSessionCache(context, workspaceCache, sessionEnv);
+                final int index = i;
+                futures.add(executor.submit(new Callable<Throwable>() {
+                    @Override
+                    public Throwable call() throws Exception {
+                        MutableCachedNode parent = session.mutable(parentKeys[index]);
+                        parent.createChild(session, newKey(childIds[index]), name("child"), property("p1", "value" + index));
+                        ready.countDown();
+                        ready.await();
+                        try {
+                            if (preSave == null) {
+                                session.save();
+                            } else {
+                                session.save(other, preSave);
+                            }
+                            return null;
+                        } catch (Throwable t) {
+                            return t;
+                        }
+                    }
+                }));
+            }
+            List<Throwable> failures = new ArrayList<Throwable>();
+            for (Future<Throwable> future : futures) {
+                failures.add(future.get());
+            }
+            return failures;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void shouldCoalesceConcurrentSavesOfDisjointNodes() throws Exception {
+        NodeKey[] parentKeys = createParents();
+        List<Throwable> failures = saveConcurrently(parentKeys, new String[] {"child0", "child1", "child2", "child3"});
+        for (int i = 0; i != SESSION_COUNT; ++i) {
+            assertThat(failures.get(i), is(nullValue()));
+            check(session1).node("/parent" + i + "/child");
+            check(session1).property("/parent" + i + "/child", property("p1", "value" + i));
+        }
+    }
+
+    @Test
+    public void shouldFailOnlyTheSaveThatFailsWithinAGroup() throws Exception {
+        NodeKey[] parentKeys = createParents();
+        // The last session tries to create a node with the same key as an existing node ...
+        List<Throwable> failures = saveConcurrently(parentKeys, new String[] {"child0", "child1", "child2", "existing"});
+        int failureCount = 0;
+        for (int i = 0; i != SESSION_COUNT; ++i) {
+            if (failures.get(i) != null) {
+                assertThat(failures.get(i), is(instanceOf(DocumentAlreadyExistsException.class)));
+                ++failureCount;
+            }
+        }
+        assertThat(failureCount, is(1));
+        assertThat(failures.get(SESSION_COUNT - 1), is(instanceOf(DocumentAlreadyExistsException.class)));
+        for (int i = 0; i != SESSION_COUNT - 1; ++i) {
+            check(session1).node("/parent" + i + "/child");
+        }
+        check(session1).noNode("/parent" + (SESSION_COUNT - 1) + "/child");
+    }
+
+    @Test
+    public void shouldRunPreSaveOperationsOnlyOnceWhenAGroupFails() throws Exception {
+        NodeKey[] parentKeys = createParents();
+        final ConcurrentMap<NodeKey, AtomicInteger> processed = new ConcurrentHashMap<NodeKey, AtomicInteger>();
+        PreSave preSave = new PreSave() {
+            @Override
+            public void process( MutableCachedNode modifiedOrNewNode,
+                                 SaveContext context ) {
+                AtomicInteger count = processed.putIfAbsent(modifiedOrNewNode.getKey(), new AtomicInteger(1));
+                if (count != null) count.incrementAndGet();
+            }
+
+            @Override
+            public void processAfterLocking( MutableCachedNode modifiedNode,
+                                             SaveContext context,
+                                             NodeCache persistentNodeCache ) {
+            }
+        };
+        // The last session fails, so the group is rolled back and each session is saved on its own ...
+        String[] childIds = {"child0", "child1", "child2", "existing"};
+        List<Throwable> failures = saveConcurrently(parentKeys, childIds, preSave);
+        assertThat(failures.get(SESSION_COUNT - 1), is(instanceOf(DocumentAlreadyExistsException.class)));
+        for (int i = 0; i != SESSION_COUNT; ++i) {
+            assertThat(processed.get(parentKeys[i]).get(), is(1));
+            assertThat(processed.get(newKey(childIds[i])).get(), is(1));
+        }
+        for (int i = 0; i != SESSION_COUNT - 1; ++i) {
+            check(session1).node("/parent" + i + "/child");
+        }
+    }
+}
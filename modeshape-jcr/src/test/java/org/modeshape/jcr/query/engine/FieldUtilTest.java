@@ -29,9 +29,15 @@ import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import org.junit.Test;
+import org.modeshape.jcr.ExecutionContext;
 import org.modeshape.jcr.query.lucene.FieldUtil;
+import org.modeshape.jcr.value.Name;
+import org.modeshape.jcr.value.Path;
+import org.modeshape.jcr.value.PathFactory;
 
 public class FieldUtilTest {
 
@@ -211,6 +217,88 @@ public class FieldUtilTest {
                        BIG_POSITIVE.toString());
     }
 
+    @Test
+    public void shouldSortSerializedFormOfPathsSameAsPaths() {
+        assertSortablePaths("/",
+                            "/a",
+                            "/a[2]",
+                            "/a[10]",
+                            "/a/b",
+                            "/a/b[3]/c",
+                            "/a[2]/b",
+                            "/ab",
+                            "/ab/a",
+                            "/b",
+                            "/jcr:a",
+                            "/jcr:b",
+                            "/mode:a",
+                            "/jcr:system/mode:namespaces",
+                            "/A",
+                            "/a b",
+                            "/a-b");
+    }
+
+    @Test
+    public void shouldSortSerializedFormOfSegmentsSameAsSegments() {
+        assertSortableSegments("a", "a[2]", "a[10]", "a[9]", "ab", "b", "jcr:a", "mode:a", "jcr:b", "B", "a b");
+    }
+
+    @Test
+    public void shouldBracketAllSameNameSiblingsWithSmallestAndLargestSegments() {
+        PathFactory paths = new ExecutionContext().getValueFactories().getPathFactory();
+        for (String value : new String[] {"a", "a[2]", "a[123]", "jcr:a[4]"}) {
+            Path.Segment segment = paths.createSegment(value);
+            String sortable = FieldUtil.segmentToSortableString(segment);
+            String smallest = FieldUtil.smallestSortableSegment(segment.getName());
+            String largest = FieldUtil.largestSortableSegment(segment.getName());
+            assertThat(smallest.compareTo(sortable) < 0, is(true));
+            assertThat(largest.compareTo(sortable) > 0, is(true));
+        }
+        Name a = paths.createSegment("a").getName();
+        String smallestAb = FieldUtil.smallestSortableSegment(paths.createSegment("ab").getName());
+        String sortableAb = FieldUtil.segmentToSortableString(paths.createSegment("ab"));
+        assertThat(FieldUtil.largestSortableSegment(a).compareTo(smallestAb) < 0, is(true));
+        assertThat(FieldUtil.largestSortableSegment(a).compareTo(sortableAb) < 0, is(true));
+    }
+
+    protected void assertSortablePaths( String... values ) {
+        PathFactory paths = new ExecutionContext().getValueFactories().getPathFactory();
+        List<Path> pathList = new ArrayList<Path>();
+        Map<String, Path> pathsBySortable = new HashMap<String, Path>();
+        for (String value : values) {
+            Path path = paths.create(value);
+            pathList.add(path);
+            pathsBySortable.put(FieldUtil.pathToSortableString(path), path);
+        }
+        List<String> sortables = new ArrayList<String>(pathsBySortable.keySet());
+        Collections.sort(pathList);
+        Collections.sort(sortables);
+        List<Path> actual = new ArrayList<Path>();
+        for (String sortable : sortables) {
+            actual.add(pathsBySortable.get(sortable));
+        }
+        assertThat(actual, is(pathList));
+    }
+
+    protected void assertSortableSegments( String... values ) {
+        PathFactory paths = new ExecutionContext().getValueFactories().getPathFactory();
+        List<Path.Segment> segments = new ArrayList<Path.Segment>();
+        Map<String, Path.Segment> segmentsBySortable = new HashMap<String, Path.Segment>();
+        for (String value : values) {
+            Path.Segment segment = paths.createSegment(value);
+            segments.add(segment);
+            segmentsBySortable.put(FieldUtil.segmentToSortableString(segment), segment);
+        }
+        List<String> sortables = new ArrayList<String>(segmentsBySortable.keySet());
+        Collections.sort(segments);
+        Collections.sort(sortables);
+        List<Path.Segment> actual = new ArrayList<Path.Segment>();
+        for (String sortable : sortables) {
+            actual.add(segmentsBySortable.get(sortable));
+        }
+        assertThat(actual, is(segments));
+    }
+
     protected void assertSortable( String... decimals ) {
         // Create the big decimals and string values ...
         List<BigDecimal> bigDecimals = new ArrayList<BigDecimal>();
@@ -0,0 +1,93 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ * See the AUTHORS.txt file in the distribution for a full listing of 
+ * individual contributors.
+ *
+ * ModeShape is free software. Unless otherwise indicated, all code in ModeShape
+ * is licensed to you under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ * 
+ * ModeShape is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.modeshape.jcr.query.lucene.basic;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import java.util.List;
+import org.junit.Test;
+import org.modeshape.jcr.query.lucene.basic.LimitTupleCollector.CompletedException;
+
+public class LimitTupleCollectorTest {
+
+    /**
+     * Collect the documents until the collector completes.
+     * 
+     * @param collector the collector
+     * @param numberOfDocs the number of documents that are found
+     * @return the number of documents that were collected before the collector completed
+     * @throws Exception if there is a problem collecting
+     */
+    protected int collectUntilCompleted( LimitTupleCollector collector,
+                                         int numberOfDocs ) throws Exception {
+        for (int doc = 0; doc != numberOfDocs; ++doc) {
+            try {
+                collector.collect(doc);
+            } catch (CompletedException e) {
+                return doc;
+            }
+        }
+        return numberOfDocs;
+    }
+
+    @Test
+    public void shouldStopCollectingOnceTheLimitIsReached() throws Exception {
+        StubTupleCollector stub = new StubTupleCollector(5, 3, 9, 1, 7);
+        LimitTupleCollector collector = new LimitTupleCollector(stub, 3);
+        assertThat(collectUntilCompleted(collector, 5), is(3));
+        List<Object[]> tuples = collector.getTuples();
+        assertThat(tuples.size(), is(3));
+        // The tuples are the first ones found, in the order they were found ...
+        for (int i = 0; i != 3; ++i) {
+            assertThat((Integer)tuples.get(i)[1], is(i));
+        }
+    }
+
+    @Test
+    public void shouldCollectTheTuplesForTheOffsetAndLimit() throws Exception {
+        // An offset of 2 and a limit of 3 requires the first 5 tuples ...
+        StubTupleCollector stub = new StubTupleCollector(0, 1, 2, 3, 4, 5, 6, 7, 8, 9);
+        LimitTupleCollector collector = new LimitTupleCollector(stub, 2 + 3);
+        assertThat(collectUntilCompleted(collector, 10), is(5));
+        List<Object[]> page = collector.getTuples().subList(2, 5);
+        assertThat((Integer)page.get(0)[1], is(2));
+        assertThat((Integer)page.get(2)[1], is(4));
+    }
+
+    @Test
+    public void shouldCollectAllTuplesWhenThereAreFewerThanTheLimit() throws Exception {
+        StubTupleCollector stub = new StubTupleCollector(4, 2);
+        LimitTupleCollector collector = new LimitTupleCollector(stub, 5);
+        assertThat(collectUntilCompleted(collector, 2), is(2));
+        assertThat(collector.getTuples().size(), is(2));
+    }
+
+    @Test
+    public void shouldCollectAllTuplesWhenThereAreExactlyAsManyAsTheLimit() throws Exception {
+        StubTupleCollector stub = new StubTupleCollector(4, 2, 3);
+        LimitTupleCollector collector = new LimitTupleCollector(stub, 3);
+        assertThat(collectUntilCompleted(collector, 3), is(3));
+        assertThat(collector.getTuples().size(), is(3));
+    }
+}
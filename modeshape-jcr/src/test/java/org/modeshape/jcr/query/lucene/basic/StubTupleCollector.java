@@ -0,0 +1,71 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ * See the AUTHORS.txt file in the distribution for a full listing of 
+ * individual contributors.
+ *
+ * ModeShape is free software. Unless otherwise indicated, all code in ModeShape
+ * is licensed to you under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ * 
+ * ModeShape is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.modeshape.jcr.query.lucene.basic;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.Scorer;
+import org.modeshape.jcr.query.lucene.LuceneQueryEngine.TupleCollector;
+
+/**
+ * A {@link TupleCollector} that, for each collected document, adds a tuple containing the document's value and number.
+ */
+public class StubTupleCollector extends TupleCollector {
+
+    private final List<Object[]> tuples = new ArrayList<Object[]>();
+    private final int[] values;
+
+    /**
+     * @param values the value of each document, indexed by document number
+     */
+    public StubTupleCollector( int... values ) {
+        this.values = values;
+    }
+
+    @Override
+    public float doCollect( int doc ) {
+        tuples.add(new Object[] {values[doc], doc});
+        return 1.0f;
+    }
+
+    @Override
+    public List<Object[]> getTuples() {
+        return tuples;
+    }
+
+    @Override
+    public void setScorer( Scorer scorer ) {
+    }
+
+    @Override
+    public void setNextReader( IndexReader reader,
+                               int docBase ) {
+    }
+
+    @Override
+    public boolean acceptsDocsOutOfOrder() {
+        return false;
+    }
+}
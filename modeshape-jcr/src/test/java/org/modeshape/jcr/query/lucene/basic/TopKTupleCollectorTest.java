@@ -0,0 +1,116 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ * See the AUTHORS.txt file in the distribution for a full listing of 
+ * individual contributors.
+ *
+ * ModeShape is free software. Unless otherwise indicated, all code in ModeShape
+ * is licensed to you under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ * 
+ * ModeShape is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.modeshape.jcr.query.lucene.basic;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import org.junit.Test;
+import org.modeshape.jcr.query.lucene.LuceneQueryEngine.TupleCollector;
+
+public class TopKTupleCollectorTest {
+
+    private static final Comparator<Object[]> BY_VALUE = new Comparator<Object[]>() {
+        @Override
+        public int compare( Object[] tuple1,
+                            Object[] tuple2 ) {
+            return ((Integer)tuple1[0]).compareTo((Integer)tuple2[0]);
+        }
+    };
+
+    protected List<Object[]> collectAll( TupleCollector collector,
+                                         int numberOfDocs ) throws Exception {
+        for (int doc = 0; doc != numberOfDocs; ++doc) {
+            collector.collect(doc);
+        }
+        return collector.getTuples();
+    }
+
+    protected List<Integer> valuesOf( List<Object[]> tuples ) {
+        List<Integer> values = new ArrayList<Integer>();
+        for (Object[] tuple : tuples) {
+            values.add((Integer)tuple[0]);
+        }
+        return values;
+    }
+
+    protected List<Integer> docsOf( List<Object[]> tuples ) {
+        List<Integer> docs = new ArrayList<Integer>();
+        for (Object[] tuple : tuples) {
+            docs.add((Integer)tuple[1]);
+        }
+        return docs;
+    }
+
+    protected List<Integer> list( Integer... values ) {
+        List<Integer> result = new ArrayList<Integer>();
+        for (Integer value : values) {
+            result.add(value);
+        }
+        return result;
+    }
+
+    @Test
+    public void shouldKeepTheFirstKTuplesInOrder() throws Exception {
+        StubTupleCollector stub = new StubTupleCollector(5, 3, 9, 1, 7, 8, 2);
+        List<Object[]> tuples = collectAll(new TopKTupleCollector(stub, BY_VALUE, 3), 7);
+        assertThat(valuesOf(tuples), is(list(1, 2, 3)));
+        assertThat(docsOf(tuples), is(list(3, 6, 1)));
+        // The wrapped collector never keeps the tuples ...
+        assertThat(stub.getTuples().isEmpty(), is(true));
+    }
+
+    @Test
+    public void shouldKeepTuplesThatCompareAsEqualInTheOrderTheyWereCollected() throws Exception {
+        StubTupleCollector stub = new StubTupleCollector(2, 1, 2, 1, 2, 1);
+        List<Object[]> tuples = collectAll(new TopKTupleCollector(stub, BY_VALUE, 4), 6);
+        assertThat(valuesOf(tuples), is(list(1, 1, 1, 2)));
+        assertThat(docsOf(tuples), is(list(1, 3, 5, 0)));
+    }
+
+    @Test
+    public void shouldKeepTheTuplesForTheOffsetAndLimit() throws Exception {
+        // An offset of 3 and a limit of 4 requires the first 7 tuples ...
+        StubTupleCollector stub = new StubTupleCollector(6, 0, 9, 3, 8, 1, 5, 2, 7, 4);
+        List<Object[]> tuples = collectAll(new TopKTupleCollector(stub, BY_VALUE, 3 + 4), 10);
+        assertThat(tuples.size(), is(7));
+        assertThat(valuesOf(tuples.subList(3, 7)), is(list(3, 4, 5, 6)));
+    }
+
+    @Test
+    public void shouldReturnAllTuplesInOrderWhenThereAreFewerThanK() throws Exception {
+        StubTupleCollector stub = new StubTupleCollector(4, 2, 3);
+        List<Object[]> tuples = collectAll(new TopKTupleCollector(stub, BY_VALUE, 5), 3);
+        assertThat(valuesOf(tuples), is(list(2, 3, 4)));
+    }
+
+    @Test
+    public void shouldReturnNoTuplesWhenNothingWasCollected() throws Exception {
+        StubTupleCollector stub = new StubTupleCollector();
+        List<Object[]> tuples = collectAll(new TopKTupleCollector(stub, BY_VALUE, 5), 0);
+        assertThat(tuples.isEmpty(), is(true));
+    }
+}
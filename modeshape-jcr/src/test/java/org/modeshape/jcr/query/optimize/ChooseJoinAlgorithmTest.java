@@ -37,8 +37,10 @@ import org.modeshape.jcr.query.AbstractQueryTest;
 import org.modeshape.jcr.query.QueryContext;
 import org.modeshape.jcr.query.model.ChildNodeJoinCondition;
 import org.modeshape.jcr.query.model.DescendantNodeJoinCondition;
+import org.modeshape.jcr.query.model.EquiJoinCondition;
 import org.modeshape.jcr.query.model.JoinCondition;
 import org.modeshape.jcr.query.model.JoinType;
+import org.modeshape.jcr.query.model.SameNodeJoinCondition;
 import org.modeshape.jcr.query.plan.JoinAlgorithm;
 import org.modeshape.jcr.query.plan.PlanNode;
 import org.modeshape.jcr.query.plan.PlanNode.Property;
@@ -157,4 +159,52 @@ public class ChooseJoinAlgorithmTest extends AbstractQueryTest {
 
         assertChildren(join, leftDup, rightDup);
     }
+
+    @Test
+    public void shouldHaveBestRuleSetJoinAlgorithmToHashIfConditionIsEquiJoinAndNeitherSideIsSorted() {
+        PlanNode join = new PlanNode(Type.JOIN, selector("t1"), selector("t2"));
+        PlanNode leftSource = new PlanNode(Type.SOURCE, join, selector("t1"));
+        PlanNode rightSource = new PlanNode(Type.SOURCE, join, selector("t2"));
+        // Set the join type and condition ...
+        JoinCondition joinCondition = new EquiJoinCondition(selector("t1"), "c11", selector("t2"), "c21");
+        join.setProperty(Property.JOIN_CONDITION, joinCondition);
+        join.setProperty(Property.JOIN_TYPE, JoinType.INNER);
+
+        // Execute the rule ...
+        PlanNode result = bestRule.execute(context, join, new LinkedList<OptimizerRule>());
+        assertThat(result, is(sameInstance(join)));
+        assertThat(join.getProperty(Property.JOIN_ALGORITHM, JoinAlgorithm.class), is(JoinAlgorithm.HASH));
+        assertChildren(join, leftSource, rightSource);
+    }
+
+    @Test
+    public void shouldHaveNestedOrHashRuleSetJoinAlgorithmToHashIfConditionIsSameNode() {
+        PlanNode join = new PlanNode(Type.JOIN, selector("t1"), selector("t2"));
+        PlanNode leftSource = new PlanNode(Type.SOURCE, join, selector("t1"));
+        PlanNode rightSource = new PlanNode(Type.SOURCE, join, selector("t2"));
+        // Set the join type and condition ...
+        JoinCondition joinCondition = new SameNodeJoinCondition(selector("t1"), selector("t2"));
+        join.setProperty(Property.JOIN_CONDITION, joinCondition);
+        join.setProperty(Property.JOIN_TYPE, JoinType.LEFT_OUTER);
+
+        // Execute the rule ...
+        ChooseJoinAlgorithm.USE_NESTED_OR_HASH_JOIN_ALGORITHM.execute(context, join, new LinkedList<OptimizerRule>());
+        assertThat(join.getProperty(Property.JOIN_ALGORITHM, JoinAlgorithm.class), is(JoinAlgorithm.HASH));
+        assertChildren(join, leftSource, rightSource);
+    }
+
+    @Test
+    public void shouldHaveNestedOrHashRuleSetJoinAlgorithmToNestedLoopIfConditionIsChildNode() {
+        PlanNode join = new PlanNode(Type.JOIN, selector("Parent"), selector("Child"));
+        new PlanNode(Type.SOURCE, join, selector("Parent"));
+        new PlanNode(Type.SOURCE, join, selector("Child"));
+        // Set the join type and condition ...
+        JoinCondition joinCondition = new ChildNodeJoinCondition(selector("Parent"), selector("Child"));
+        join.setProperty(Property.JOIN_CONDITION, joinCondition);
+        join.setProperty(Property.JOIN_TYPE, JoinType.INNER);
+
+        // Execute the rule ...
+        ChooseJoinAlgorithm.USE_NESTED_OR_HASH_JOIN_ALGORITHM.execute(context, join, new LinkedList<OptimizerRule>());
+        assertThat(join.getProperty(Property.JOIN_ALGORITHM, JoinAlgorithm.class), is(JoinAlgorithm.NESTED_LOOP));
+    }
 }
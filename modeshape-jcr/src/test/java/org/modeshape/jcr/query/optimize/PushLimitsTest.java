@@ -0,0 +1,136 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ * See the AUTHORS.txt file in the distribution for a full listing of 
+ * individual contributors.
+ *
+ * ModeShape is free software. Unless otherwise indicated, all code in ModeShape
+ * is licensed to you under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ * 
+ * ModeShape is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.modeshape.jcr.query.optimize;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.hamcrest.core.IsSame.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import java.util.Collections;
+import java.util.LinkedList;
+import org.junit.Before;
+import org.junit.Test;
+import org.modeshape.jcr.ExecutionContext;
+import org.modeshape.jcr.cache.RepositoryCache;
+import org.modeshape.jcr.query.AbstractQueryTest;
+import org.modeshape.jcr.query.QueryContext;
+import org.modeshape.jcr.query.plan.PlanNode;
+import org.modeshape.jcr.query.plan.PlanNode.Property;
+import org.modeshape.jcr.query.plan.PlanNode.Type;
+import org.modeshape.jcr.query.validate.Schemata;
+
+/**
+ * 
+ */
+public class PushLimitsTest extends AbstractQueryTest {
+
+    private PushLimits rule;
+    private QueryContext context;
+
+    @Before
+    public void beforeEach() {
+        context = new QueryContext(new ExecutionContext(), mock(RepositoryCache.class), Collections.singleton("workspace"),
+                                   mock(Schemata.class));
+        rule = PushLimits.INSTANCE;
+    }
+
+    /**
+     * Before:
+     * 
+     * <pre>
+     *          LIMIT (offset=5, count=10)
+     *           |
+     *        PROJECT
+     *           |
+     *        ACCESS
+     *           |
+     *        SOURCE
+     * </pre>
+     * 
+     * And after:
+     * 
+     * <pre>
+     *          LIMIT (offset=5, count=10)
+     *           |
+     *        PROJECT
+     *           |
+     *        ACCESS
+     *           |
+     *         LIMIT (count=15)
+     *           |
+     *        SOURCE
+     * </pre>
+     */
+    @Test
+    public void shouldPushLimitIntoAccessNodeBelowProject() {
+        PlanNode limit = new PlanNode(Type.LIMIT, selector("Selector1"));
+        limit.setProperty(Property.LIMIT_OFFSET, 5);
+        limit.setProperty(Property.LIMIT_COUNT, 10);
+        PlanNode project = new PlanNode(Type.PROJECT, limit, selector("Selector1"));
+        PlanNode access = new PlanNode(Type.ACCESS, project, selector("Selector1"));
+        PlanNode source = new PlanNode(Type.SOURCE, access, selector("Selector1"));
+
+        // Execute the rule ...
+        PlanNode result = rule.execute(context, limit, new LinkedList<OptimizerRule>());
+        assertThat(result, is(sameInstance(limit)));
+        assertChildren(limit, project);
+        assertChildren(project, access);
+        PlanNode pushed = access.getFirstChild();
+        assertThat(pushed.getType(), is(Type.LIMIT));
+        assertThat(pushed.getProperty(Property.LIMIT_COUNT, Integer.class), is(15));
+        assertThat(pushed.getProperty(Property.LIMIT_OFFSET, Integer.class), is(nullValue()));
+        assertSelectors(pushed, "Selector1");
+        assertChildren(pushed, source);
+    }
+
+    @Test
+    public void shouldNotPushLimitBelowSort() {
+        PlanNode limit = new PlanNode(Type.LIMIT, selector("Selector1"));
+        limit.setProperty(Property.LIMIT_COUNT, 10);
+        PlanNode sort = new PlanNode(Type.SORT, limit, selector("Selector1"));
+        PlanNode project = new PlanNode(Type.PROJECT, sort, selector("Selector1"));
+        PlanNode access = new PlanNode(Type.ACCESS, project, selector("Selector1"));
+        PlanNode source = new PlanNode(Type.SOURCE, access, selector("Selector1"));
+
+        // Execute the rule ...
+        PlanNode result = rule.execute(context, limit, new LinkedList<OptimizerRule>());
+        assertThat(result, is(sameInstance(limit)));
+        assertChildren(access, source);
+    }
+
+    @Test
+    public void shouldNotPushLimitWithoutRowLimit() {
+        PlanNode limit = new PlanNode(Type.LIMIT, selector("Selector1"));
+        limit.setProperty(Property.LIMIT_OFFSET, 5);
+        limit.setProperty(Property.LIMIT_COUNT, Integer.MAX_VALUE);
+        PlanNode project = new PlanNode(Type.PROJECT, limit, selector("Selector1"));
+        PlanNode access = new PlanNode(Type.ACCESS, project, selector("Selector1"));
+        PlanNode source = new PlanNode(Type.SOURCE, access, selector("Selector1"));
+
+        // Execute the rule ...
+        rule.execute(context, limit, new LinkedList<OptimizerRule>());
+        assertChildren(access, source);
+    }
+}
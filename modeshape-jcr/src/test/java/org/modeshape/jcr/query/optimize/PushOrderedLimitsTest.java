@@ -0,0 +1,157 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ * See the AUTHORS.txt file in the distribution for a full listing of 
+ * individual contributors.
+ *
+ * ModeShape is free software. Unless otherwise indicated, all code in ModeShape
+ * is licensed to you under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ * 
+ * ModeShape is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.modeshape.jcr.query.optimize;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsSame.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import org.modeshape.jcr.ExecutionContext;
+import org.modeshape.jcr.cache.RepositoryCache;
+import org.modeshape.jcr.query.AbstractQueryTest;
+import org.modeshape.jcr.query.QueryContext;
+import org.modeshape.jcr.query.model.Order;
+import org.modeshape.jcr.query.model.Ordering;
+import org.modeshape.jcr.query.model.PropertyValue;
+import org.modeshape.jcr.query.plan.PlanNode;
+import org.modeshape.jcr.query.plan.PlanNode.Property;
+import org.modeshape.jcr.query.plan.PlanNode.Type;
+import org.modeshape.jcr.query.validate.Schemata;
+
+/**
+ * 
+ */
+public class PushOrderedLimitsTest extends AbstractQueryTest {
+
+    private PushOrderedLimits rule;
+    private QueryContext context;
+
+    @Before
+    public void beforeEach() {
+        context = new QueryContext(new ExecutionContext(), mock(RepositoryCache.class), Collections.singleton("workspace"),
+                                   mock(Schemata.class));
+        rule = PushOrderedLimits.INSTANCE;
+    }
+
+    /**
+     * Before:
+     * 
+     * <pre>
+     *          LIMIT (offset=5, count=10)
+     *           |
+     *          SORT
+     *           |
+     *        PROJECT
+     *           |
+     *        ACCESS
+     *           |
+     *        SOURCE
+     * </pre>
+     * 
+     * And after:
+     * 
+     * <pre>
+     *          LIMIT (offset=5, count=10)
+     *           |
+     *          SORT
+     *           |
+     *        PROJECT
+     *           |
+     *        ACCESS
+     *           |
+     *         LIMIT (count=15)
+     *           |
+     *          SORT
+     *           |
+     *        SOURCE
+     * </pre>
+     */
+    @Test
+    public void shouldPushLimitAndSortIntoAccessNode() {
+        List<Object> orderings = Collections.<Object>singletonList(new Ordering(new PropertyValue(selector("Selector1"), "p1"),
+                                                                                Order.ASCENDING));
+        PlanNode limit = new PlanNode(Type.LIMIT, selector("Selector1"));
+        limit.setProperty(Property.LIMIT_OFFSET, 5);
+        limit.setProperty(Property.LIMIT_COUNT, 10);
+        PlanNode sort = new PlanNode(Type.SORT, limit, selector("Selector1"));
+        sort.setProperty(Property.SORT_ORDER_BY, orderings);
+        PlanNode project = new PlanNode(Type.PROJECT, sort, selector("Selector1"));
+        PlanNode access = new PlanNode(Type.ACCESS, project, selector("Selector1"));
+        PlanNode source = new PlanNode(Type.SOURCE, access, selector("Selector1"));
+
+        // Execute the rule ...
+        PlanNode result = rule.execute(context, limit, new LinkedList<OptimizerRule>());
+        assertThat(result, is(sameInstance(limit)));
+        assertChildren(limit, sort);
+        assertChildren(sort, project);
+        assertChildren(project, access);
+        PlanNode pushedLimit = access.getFirstChild();
+        assertThat(pushedLimit.getType(), is(Type.LIMIT));
+        assertThat(pushedLimit.getProperty(Property.LIMIT_COUNT, Integer.class), is(15));
+        PlanNode pushedSort = pushedLimit.getFirstChild();
+        assertThat(pushedSort.getType(), is(Type.SORT));
+        assertThat(pushedSort.getPropertyAsList(Property.SORT_ORDER_BY, Object.class), is(orderings));
+        assertChildren(pushedSort, source);
+    }
+
+    @Test
+    public void shouldNotPushLimitAndSortWhenSortingByLocations() {
+        PlanNode limit = new PlanNode(Type.LIMIT, selector("Selector1"));
+        limit.setProperty(Property.LIMIT_COUNT, 10);
+        PlanNode sort = new PlanNode(Type.SORT, limit, selector("Selector1"));
+        sort.setProperty(Property.SORT_ORDER_BY, Collections.singletonList(selector("Selector1")));
+        PlanNode project = new PlanNode(Type.PROJECT, sort, selector("Selector1"));
+        PlanNode access = new PlanNode(Type.ACCESS, project, selector("Selector1"));
+        PlanNode source = new PlanNode(Type.SOURCE, access, selector("Selector1"));
+
+        // Execute the rule ...
+        rule.execute(context, limit, new LinkedList<OptimizerRule>());
+        assertChildren(access, source);
+    }
+
+    @Test
+    public void shouldNotPushLimitAndSortAboveJoin() {
+        List<Object> orderings = Collections.<Object>singletonList(new Ordering(new PropertyValue(selector("Selector1"), "p1"),
+                                                                                Order.ASCENDING));
+        PlanNode limit = new PlanNode(Type.LIMIT, selector("Selector1"), selector("Selector2"));
+        limit.setProperty(Property.LIMIT_COUNT, 10);
+        PlanNode sort = new PlanNode(Type.SORT, limit, selector("Selector1"), selector("Selector2"));
+        sort.setProperty(Property.SORT_ORDER_BY, orderings);
+        PlanNode join = new PlanNode(Type.JOIN, sort, selector("Selector1"), selector("Selector2"));
+        PlanNode access1 = new PlanNode(Type.ACCESS, join, selector("Selector1"));
+        PlanNode source1 = new PlanNode(Type.SOURCE, access1, selector("Selector1"));
+        PlanNode access2 = new PlanNode(Type.ACCESS, join, selector("Selector2"));
+        PlanNode source2 = new PlanNode(Type.SOURCE, access2, selector("Selector2"));
+
+        // Execute the rule ...
+        rule.execute(context, limit, new LinkedList<OptimizerRule>());
+        assertChildren(access1, source1);
+        assertChildren(access2, source2);
+    }
+}
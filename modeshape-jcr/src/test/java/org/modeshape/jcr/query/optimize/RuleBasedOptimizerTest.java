@@ -425,7 +425,7 @@ public class RuleBasedOptimizerTest extends AbstractQueryTest {
         PlanNode project = new PlanNode(Type.PROJECT, selector("t2"), selector("t1"));
         project.setProperty(Property.PROJECT_COLUMNS, columns(column("t1", "c11"), column("t1", "c12"), column("t2", "c23")));
         PlanNode join = new PlanNode(Type.JOIN, project, selector("t2"), selector("t1"));
-        join.setProperty(Property.JOIN_ALGORITHM, JoinAlgorithm.NESTED_LOOP);
+        join.setProperty(Property.JOIN_ALGORITHM, JoinAlgorithm.HASH);
         join.setProperty(Property.JOIN_TYPE, JoinType.INNER);
         join.setProperty(Property.JOIN_CONDITION, new EquiJoinCondition(selector("t1"), "c11", selector("t2"), "c21"));
 
@@ -482,7 +482,7 @@ public class RuleBasedOptimizerTest extends AbstractQueryTest {
         PlanNode project = new PlanNode(Type.PROJECT, selector("t1"));
         project.setProperty(Property.PROJECT_COLUMNS, columns(column("t1", "c11", "c1")));
         PlanNode join = new PlanNode(Type.JOIN, project, selector("t2"), selector("t1"));
-        join.setProperty(Property.JOIN_ALGORITHM, JoinAlgorithm.NESTED_LOOP);
+        join.setProperty(Property.JOIN_ALGORITHM, JoinAlgorithm.HASH);
         join.setProperty(Property.JOIN_TYPE, JoinType.INNER);
         join.setProperty(Property.JOIN_CONDITION, new EquiJoinCondition(selector("t1"), "c11", selector("t2"), "c21"));
 
@@ -587,7 +587,7 @@ public class RuleBasedOptimizerTest extends AbstractQueryTest {
                                     column("type2", "a3", "c"),
                                     column("type2", "a4", "d")));
         PlanNode join = new PlanNode(Type.JOIN, project, selector("type1"), selector("type2"));
-        join.setProperty(Property.JOIN_ALGORITHM, JoinAlgorithm.NESTED_LOOP);
+        join.setProperty(Property.JOIN_ALGORITHM, JoinAlgorithm.HASH);
         join.setProperty(Property.JOIN_TYPE, JoinType.INNER);
         join.setProperty(Property.JOIN_CONDITION, new EquiJoinCondition(selector("type1"), "a2", selector("type2"), "a3"));
 
@@ -745,7 +745,7 @@ public class RuleBasedOptimizerTest extends AbstractQueryTest {
         PlanNode project = new PlanNode(Type.PROJECT, sort, selector("t1"));
         project.setProperty(Property.PROJECT_COLUMNS, columns(column("t1", "c11", "c1"), column("t1", "c12")));
         PlanNode join = new PlanNode(Type.JOIN, project, selector("t2"), selector("t1"));
-        join.setProperty(Property.JOIN_ALGORITHM, JoinAlgorithm.NESTED_LOOP);
+        join.setProperty(Property.JOIN_ALGORITHM, JoinAlgorithm.HASH);
         join.setProperty(Property.JOIN_TYPE, JoinType.INNER);
         join.setProperty(Property.JOIN_CONDITION, new EquiJoinCondition(selector("t1"), "c11", selector("t2"), "c21"));
 
@@ -786,7 +786,7 @@ public class RuleBasedOptimizerTest extends AbstractQueryTest {
         PlanNode project = new PlanNode(Type.PROJECT, sort, selector("t1"));
         project.setProperty(Property.PROJECT_COLUMNS, columns(column("t1", "c11", "c1"), column("t1", "c12")));
         PlanNode join = new PlanNode(Type.JOIN, project, selector("t2"), selector("t1"));
-        join.setProperty(Property.JOIN_ALGORITHM, JoinAlgorithm.NESTED_LOOP);
+        join.setProperty(Property.JOIN_ALGORITHM, JoinAlgorithm.HASH);
         join.setProperty(Property.JOIN_TYPE, JoinType.INNER);
         join.setProperty(Property.JOIN_CONDITION, new EquiJoinCondition(selector("t1"), "c11", selector("t2"), "c21"));
 
@@ -827,7 +827,7 @@ public class RuleBasedOptimizerTest extends AbstractQueryTest {
         PlanNode project = new PlanNode(Type.PROJECT, sort, selector("t1"));
         project.setProperty(Property.PROJECT_COLUMNS, columns(column("t1", "c11", "c1")));
         PlanNode join = new PlanNode(Type.JOIN, project, selector("t2"), selector("t1"));
-        join.setProperty(Property.JOIN_ALGORITHM, JoinAlgorithm.NESTED_LOOP);
+        join.setProperty(Property.JOIN_ALGORITHM, JoinAlgorithm.HASH);
         join.setProperty(Property.JOIN_TYPE, JoinType.INNER);
         join.setProperty(Property.JOIN_CONDITION, new EquiJoinCondition(selector("t1"), "c11", selector("t2"), "c21"));
 
@@ -868,7 +868,7 @@ public class RuleBasedOptimizerTest extends AbstractQueryTest {
         PlanNode project = new PlanNode(Type.PROJECT, sort, selector("t1"));
         project.setProperty(Property.PROJECT_COLUMNS, columns(column("t1", "c11"), column("t1", "c12")));
         PlanNode join = new PlanNode(Type.JOIN, project, selector("t2"), selector("t1"));
-        join.setProperty(Property.JOIN_ALGORITHM, JoinAlgorithm.NESTED_LOOP);
+        join.setProperty(Property.JOIN_ALGORITHM, JoinAlgorithm.HASH);
         join.setProperty(Property.JOIN_TYPE, JoinType.INNER);
         join.setProperty(Property.JOIN_CONDITION, new EquiJoinCondition(selector("t1"), "c11", selector("t2"), "c21"));
 
@@ -909,7 +909,7 @@ public class RuleBasedOptimizerTest extends AbstractQueryTest {
         PlanNode project = new PlanNode(Type.PROJECT, sort, selector("t1"));
         project.setProperty(Property.PROJECT_COLUMNS, columns(column("t1", "c11"), column("t1", "c12")));
         PlanNode join = new PlanNode(Type.JOIN, project, selector("t2"), selector("t1"));
-        join.setProperty(Property.JOIN_ALGORITHM, JoinAlgorithm.NESTED_LOOP);
+        join.setProperty(Property.JOIN_ALGORITHM, JoinAlgorithm.HASH);
         join.setProperty(Property.JOIN_TYPE, JoinType.INNER);
         join.setProperty(Property.JOIN_CONDITION, new EquiJoinCondition(selector("t1"), "c11", selector("t2"), "c21"));
 
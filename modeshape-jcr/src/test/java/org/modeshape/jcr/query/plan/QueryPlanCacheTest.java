@@ -0,0 +1,131 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ * See the AUTHORS.txt file in the distribution for a full listing of 
+ * individual contributors.
+ *
+ * ModeShape is free software. Unless otherwise indicated, all code in ModeShape
+ * is licensed to you under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ * 
+ * ModeShape is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.modeshape.jcr.query.plan;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNot.not;
+import static org.hamcrest.core.IsNull.notNullValue;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.hamcrest.core.IsSame.sameInstance;
+import static org.junit.Assert.assertThat;
+import org.junit.Before;
+import org.junit.Test;
+import org.modeshape.jcr.ExecutionContext;
+import org.modeshape.jcr.query.QueryBuilder;
+import org.modeshape.jcr.query.model.QueryCommand;
+import org.modeshape.jcr.query.plan.PlanNode.Type;
+import org.modeshape.jcr.query.plan.QueryPlanCache.CachedPlan;
+import org.modeshape.jcr.query.validate.ImmutableSchemata;
+import org.modeshape.jcr.query.validate.Schemata;
+
+public class QueryPlanCacheTest {
+
+    private ExecutionContext context;
+    private QueryBuilder builder;
+    private Schemata schemata;
+    private PlanHints hints;
+    private QueryPlanCache cache;
+
+    @Before
+    public void beforeEach() {
+        context = new ExecutionContext();
+        builder = new QueryBuilder(context.getValueFactories().getTypeSystem());
+        schemata = ImmutableSchemata.createBuilder(context).addTable("someTable", "column1", "column2").build();
+        hints = new PlanHints();
+        cache = new QueryPlanCache(2);
+    }
+
+    protected QueryCommand query( String column ) {
+        return builder.select(column).from("someTable").query();
+    }
+
+    protected PlanNode plan() {
+        PlanNode project = new PlanNode(Type.PROJECT);
+        new PlanNode(Type.SOURCE, project);
+        return project;
+    }
+
+    @Test
+    public void shouldFindPlanForEquivalentCommand() {
+        PlanNode plan = plan();
+        PlanHints resulting = hints.clone();
+        resulting.hasLimit = true;
+        cache.putPlan(query("column1"), schemata, hints, plan, resulting);
+
+        CachedPlan cached = cache.getPlan(query("column1"), schemata, hints);
+        assertThat(cached, is(notNullValue()));
+        PlanNode copy = cached.getPlan();
+        assertThat(copy, is(not(sameInstance(plan))));
+        assertThat(copy.toString(), is(plan.toString()));
+
+        PlanHints target = new PlanHints();
+        cached.applyHintsTo(target);
+        assertThat(target.hasLimit, is(true));
+    }
+
+    @Test
+    public void shouldNotFindPlanForDifferentCommandSchemataOrHints() {
+        cache.putPlan(query("column1"), schemata, hints, plan(), hints);
+        assertThat(cache.getPlan(query("column2"), schemata, hints), is(nullValue()));
+
+        Schemata newSchemata = ImmutableSchemata.createBuilder(context).addTable("someTable", "column1", "column2").build();
+        assertThat(cache.getPlan(query("column1"), newSchemata, hints), is(nullValue()));
+
+        PlanHints otherHints = hints.clone();
+        otherHints.qualifyExpandedColumnNames = !hints.qualifyExpandedColumnNames;
+        assertThat(cache.getPlan(query("column1"), schemata, otherHints), is(nullValue()));
+
+        // Hints that are set by the planner should not matter ...
+        PlanHints plannedHints = hints.clone();
+        plannedHints.hasLimit = true;
+        assertThat(cache.getPlan(query("column1"), schemata, plannedHints), is(notNullValue()));
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyUsedPlans() {
+        cache.putPlan(query("column1"), schemata, hints, plan(), hints);
+        cache.putPlan(query("column2"), schemata, hints, plan(), hints);
+        // Use the first so that the second is the least recently used ...
+        assertThat(cache.getPlan(query("column1"), schemata, hints), is(notNullValue()));
+        cache.putPlan(query("column3"), schemata, hints, plan(), hints);
+        assertThat(cache.size(), is(2));
+        assertThat(cache.getPlan(query("column1"), schemata, hints), is(notNullValue()));
+        assertThat(cache.getPlan(query("column2"), schemata, hints), is(nullValue()));
+        assertThat(cache.getPlan(query("column3"), schemata, hints), is(notNullValue()));
+    }
+
+    @Test
+    public void shouldRemoveAllCommandsAndPlansWhenInvalidated() {
+        QueryCommand command = query("column1");
+        cache.putCommand("JCR-SQL2", "SELECT column1 FROM someTable", command);
+        cache.putPlan(command, schemata, hints, plan(), hints);
+        assertThat(cache.getCommand("JCR-SQL2", "SELECT column1 FROM someTable"), is(sameInstance(command)));
+        assertThat(cache.getCommand("xpath", "SELECT column1 FROM someTable"), is(nullValue()));
+
+        cache.invalidate();
+        assertThat(cache.size(), is(0));
+        assertThat(cache.getCommand("JCR-SQL2", "SELECT column1 FROM someTable"), is(nullValue()));
+        assertThat(cache.getPlan(command, schemata, hints), is(nullValue()));
+    }
+}
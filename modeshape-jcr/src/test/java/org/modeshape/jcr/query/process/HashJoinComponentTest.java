@@ -0,0 +1,128 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ * See the AUTHORS.txt file in the distribution for a full listing of 
+ * individual contributors.
+ *
+ * ModeShape is free software. Unless otherwise indicated, all code in ModeShape
+ * is licensed to you under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ * 
+ * ModeShape is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.modeshape.jcr.query.process;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import org.modeshape.jcr.cache.RepositoryCache;
+import org.modeshape.jcr.query.QueryContext;
+import org.modeshape.jcr.query.QueryResults.Columns;
+import org.modeshape.jcr.query.model.EquiJoinCondition;
+import org.modeshape.jcr.query.model.JoinType;
+import org.modeshape.jcr.query.validate.Schemata;
+import org.modeshape.jcr.value.PropertyType;
+
+/**
+ * 
+ */
+public class HashJoinComponentTest extends AbstractQueryResultsTest {
+
+    private QueryContext context;
+    private Columns leftColumns;
+    private Columns rightColumns;
+    private ProcessingComponent left;
+    private ProcessingComponent right;
+    private List<Object[]> leftTuples;
+    private List<Object[]> rightTuples;
+    private EquiJoinCondition condition;
+
+    @Before
+    public void beforeEach() {
+        leftColumns = resultColumns("t1", new String[] {"c11", "c12"}, PropertyType.STRING, PropertyType.STRING);
+        rightColumns = resultColumns("t2", new String[] {"c21", "c22"}, PropertyType.STRING, PropertyType.STRING);
+        context = new QueryContext(executionContext, mock(RepositoryCache.class), Collections.singleton("workspace"),
+                                   mock(Schemata.class));
+        leftTuples = new ArrayList<Object[]>();
+        rightTuples = new ArrayList<Object[]>();
+        left = new ProcessingComponent(context, leftColumns) {
+            @SuppressWarnings( "synthetic-access" )
+            @Override
+            public List<Object[]> execute() {
+                return new ArrayList<Object[]>(leftTuples);
+            }
+        };
+        right = new ProcessingComponent(context, rightColumns) {
+            @SuppressWarnings( "synthetic-access" )
+            @Override
+            public List<Object[]> execute() {
+                return new ArrayList<Object[]>(rightTuples);
+            }
+        };
+        condition = new EquiJoinCondition(selector("t1"), "c11", selector("t2"), "c21");
+
+        leftTuples.add(tuple(leftColumns, "/a/b1", "k1", "l1"));
+        leftTuples.add(tuple(leftColumns, "/a/b2", "k2", "l2"));
+        leftTuples.add(tuple(leftColumns, "/a/b3", null, "l3"));
+        leftTuples.add(tuple(leftColumns, "/a/b4", "k4", "l4"));
+        leftTuples.add(tuple(leftColumns, "/a/b5", new Object[] {"k1", "k2"}, "l5"));
+        rightTuples.add(tuple(rightColumns, "/x/y1", "k1", "r1"));
+        rightTuples.add(tuple(rightColumns, "/x/y2", "k2", "r2"));
+        rightTuples.add(tuple(rightColumns, "/x/y3", "k1", "r3"));
+        rightTuples.add(tuple(rightColumns, "/x/y4", "k3", "r4"));
+        rightTuples.add(tuple(rightColumns, "/x/y5", null, "r5"));
+    }
+
+    protected void assertSameResultsAsNestedLoop( JoinType joinType,
+                                                  int parallelThreshold,
+                                                  int partitionCount ) {
+        HashJoinComponent hashJoin = new HashJoinComponent(context, left, right, condition, joinType, parallelThreshold,
+                                                           partitionCount);
+        NestedLoopJoinComponent nestedJoin = new NestedLoopJoinComponent(context, left, right, condition, joinType);
+        assertThat(hashJoin.execute(), is(nestedJoin.execute()));
+    }
+
+    @Test
+    public void shouldProduceSameResultsAsNestedLoopForInnerJoin() {
+        assertSameResultsAsNestedLoop(JoinType.INNER, Integer.MAX_VALUE, 1);
+    }
+
+    @Test
+    public void shouldProduceSameResultsAsNestedLoopForLeftOuterJoin() {
+        assertSameResultsAsNestedLoop(JoinType.LEFT_OUTER, Integer.MAX_VALUE, 1);
+    }
+
+    @Test
+    public void shouldProduceSameResultsAsNestedLoopForInnerJoinInParallel() {
+        assertSameResultsAsNestedLoop(JoinType.INNER, 1, 3);
+    }
+
+    @Test
+    public void shouldProduceSameResultsAsNestedLoopForLeftOuterJoinInParallel() {
+        assertSameResultsAsNestedLoop(JoinType.LEFT_OUTER, 1, 3);
+    }
+
+    @Test
+    public void shouldIncludeUnmatchedTuplesFromBothSidesForFullOuterJoin() {
+        HashJoinComponent hashJoin = new HashJoinComponent(context, left, right, condition, JoinType.FULL_OUTER);
+        List<Object[]> results = hashJoin.execute();
+        // 6 matched pairs, plus 2 unmatched tuples on the left and 2 unmatched tuples on the right ...
+        assertThat(results.size(), is(10));
+    }
+}
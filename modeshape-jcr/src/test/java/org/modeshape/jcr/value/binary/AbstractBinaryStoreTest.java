@@ -221,6 +221,47 @@ public abstract class AbstractBinaryStoreTest extends AbstractTransactionalTest
         assertEquals(DummyTextExtractor.EXTRACTED_TEXT, extractedText);
     }
 
+    @Test
+    public void shouldStoreOnlyTheMaximumNumberOfExtractedCharacters() throws Exception {
+        TextExtractors extractors = new TextExtractors(Executors.newSingleThreadExecutor(), true,
+                                                       Arrays.<TextExtractor>asList(new DummyTextExtractor()), 4L, 0L, 2);
+        BinaryStore binaryStore = getBinaryStore();
+        binaryStore.setTextExtractors(extractors);
+
+        // use content that no other test stores, so that no text has yet been extracted for it ...
+        byte[] content = new byte[STORED_LARGE_BINARY.length];
+        RANDOM.nextBytes(content);
+        BinaryValue binaryValue = getBinaryStore().storeValue(new ByteArrayInputStream(content));
+        String extractedText = binaryStore.getText(binaryValue);
+        if (extractedText == null) {
+            Thread.sleep(TimeUnit.SECONDS.toMillis(2));
+            extractedText = binaryStore.getText(binaryValue);
+        }
+        assertEquals(DummyTextExtractor.EXTRACTED_TEXT.substring(0, 4), extractedText);
+    }
+
+    @Test
+    public void shouldStopExtractingTextThatTakesLongerThanTheTimeout() throws Exception {
+        TextExtractors extractors = new TextExtractors(Executors.newSingleThreadExecutor(), true,
+                                                       Arrays.<TextExtractor>asList(new SlowTextExtractor()), -1L, 200L, 2);
+        BinaryStore binaryStore = getBinaryStore();
+        binaryStore.setTextExtractors(extractors);
+
+        // use content that no other test stores, so that no text has yet been extracted for it ...
+        byte[] content = new byte[STORED_LARGE_BINARY.length];
+        RANDOM.nextBytes(content);
+        long start = System.currentTimeMillis();
+        BinaryValue binaryValue = getBinaryStore().storeValue(new ByteArrayInputStream(content));
+        String extractedText = binaryStore.getText(binaryValue);
+        if (extractedText == null) {
+            Thread.sleep(TimeUnit.SECONDS.toMillis(2));
+            extractedText = binaryStore.getText(binaryValue);
+        }
+        // The extraction is stopped at the timeout rather than waited for, and the text recorded until then is kept ...
+        assertEquals(DummyTextExtractor.EXTRACTED_TEXT, extractedText);
+        assertTrue(System.currentTimeMillis() - start < SlowTextExtractor.DELAY_IN_MILLIS);
+    }
+
     protected static final class DummyMimeTypeDetector implements MimeTypeDetector {
 
         public static final String DEFAULT_TYPE = "application/foobar";
@@ -247,4 +288,25 @@ public abstract class AbstractBinaryStoreTest extends AbstractTransactionalTest
             return true;
         }
     }
+
+    /**
+     * An extractor which records some text, and then takes a long time before recording the rest.
+     */
+    protected static final class SlowTextExtractor extends TextExtractor {
+        private static final long DELAY_IN_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+        @Override
+        public void extractFrom( org.modeshape.jcr.api.Binary binary,
+                                 Output output,
+                                 Context context ) throws Exception {
+            output.recordText(DummyTextExtractor.EXTRACTED_TEXT);
+            Thread.sleep(DELAY_IN_MILLIS);
+            output.recordText(DummyTextExtractor.EXTRACTED_TEXT);
+        }
+
+        @Override
+        public boolean supportsMimeType( String mimeType ) {
+            return true;
+        }
+    }
 }
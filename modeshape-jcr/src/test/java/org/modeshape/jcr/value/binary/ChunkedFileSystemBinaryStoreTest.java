@@ -0,0 +1,191 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ * See the AUTHORS.txt file in the distribution for a full listing of 
+ * individual contributors.
+ *
+ * ModeShape is free software. Unless otherwise indicated, all code in ModeShape
+ * is licensed to you under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ * 
+ * ModeShape is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.modeshape.jcr.value.binary;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertThat;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Test;
+import org.modeshape.common.util.FileUtil;
+import org.modeshape.common.util.IoUtil;
+import org.modeshape.jcr.value.BinaryKey;
+import org.modeshape.jcr.value.BinaryValue;
+import org.modeshape.jcr.value.binary.ChunkedFileSystemBinaryStore.ChunkReference;
+import org.modeshape.jcr.value.binary.ChunkedFileSystemBinaryStore.Manifest;
+
+public class ChunkedFileSystemBinaryStoreTest extends FileSystemBinaryStoreTest {
+
+    protected static final int AVERAGE_CHUNK_SIZE = 1024;
+
+    protected static File chunks;
+
+    @Override
+    @Before
+    public void beforeClass() {
+        directory = new File("target/chunked-fsbs/");
+        FileUtil.delete(directory);
+        directory.mkdirs();
+        trash = new File(directory, FileSystemBinaryStore.TRASH_DIRECTORY_NAME);
+        chunks = new File(directory, ChunkedFileSystemBinaryStore.CHUNKS_DIRECTORY_NAME);
+        store = new ChunkedFileSystemBinaryStore(directory, AVERAGE_CHUNK_SIZE);
+        store.setMinimumBinarySizeInBytes(MIN_BINARY_SIZE);
+        print = false;
+    }
+
+    @Override
+    protected int countStoredFiles() throws IOException {
+        return countFiles(directory, trash, chunks);
+    }
+
+    protected int countChunkFiles() throws IOException {
+        return countFiles(chunks);
+    }
+
+    @Test
+    public void shouldStoreTheSharedChunksOfSimilarValuesOnlyOnce() throws Exception {
+        byte[] original = randomContent();
+        byte[] edited = insertBytesInTheMiddle(original);
+
+        BinaryValue first = store.storeValue(new ByteArrayInputStream(original));
+        int chunksOfFirst = countChunkFiles();
+        assertThat(chunksOfFirst > 32, is(true));
+
+        // Only the chunks around the edit should be new ...
+        BinaryValue second = store.storeValue(new ByteArrayInputStream(edited));
+        assertThat(countChunkFiles() - chunksOfFirst <= 3, is(true));
+
+        assertArrayEquals(original, IoUtil.readBytes(first.getStream()));
+        assertArrayEquals(edited, IoUtil.readBytes(second.getStream()));
+    }
+
+    @Test
+    public void shouldSplitValuesIntoChunksWithinTheSizeLimits() throws Exception {
+        BinaryValue value = store.storeValue(new ByteArrayInputStream(randomContent()));
+        List<ChunkReference> references = manifestFor(value.getKey()).chunks();
+        for (ChunkReference reference : references.subList(0, references.size() - 1)) {
+            assertThat(reference.length() >= AVERAGE_CHUNK_SIZE / 4, is(true));
+            assertThat(reference.length() <= AVERAGE_CHUNK_SIZE * 4, is(true));
+        }
+    }
+
+    @Test
+    public void shouldRemoveOnlyTheChunksThatAreNoLongerReferenced() throws Exception {
+        byte[] original = randomContent();
+        byte[] edited = insertBytesInTheMiddle(original);
+        BinaryValue first = store.storeValue(new ByteArrayInputStream(original));
+        BinaryValue second = store.storeValue(new ByteArrayInputStream(edited));
+        Set<BinaryKey> chunksOfSecond = new HashSet<BinaryKey>();
+        for (ChunkReference reference : manifestFor(second.getKey()).chunks()) {
+            chunksOfSecond.add(reference.key());
+        }
+        assertThat(countChunkFiles() > chunksOfSecond.size(), is(true));
+
+        store.markAsUnused(Collections.singleton(first.getKey()));
+        Thread.sleep(1100L); // Sleep more than a second, since modified times may only be accurate to nearest second ...
+        store.removeValuesUnusedLongerThan(1, TimeUnit.SECONDS);
+
+        // The chunks shared with the second value must remain ...
+        assertThat(countChunkFiles(), is(chunksOfSecond.size()));
+        assertArrayEquals(edited, IoUtil.readBytes(second.getStream()));
+        assertThat(store.hasBinary(first.getKey()), is(false));
+    }
+
+    @Test
+    public void shouldKeepTheChunksOfUnusedValuesUntilTheyAreRemoved() throws Exception {
+        BinaryValue value = store.storeValue(new ByteArrayInputStream(randomContent()));
+        int chunkCount = countChunkFiles();
+        store.markAsUnused(Collections.singleton(value.getKey()));
+        // Make the chunks look old, so that only the (recently trashed) manifest keeps them ...
+        makeOlder(chunks, TimeUnit.HOURS.toMillis(2));
+        store.removeValuesUnusedLongerThan(1, TimeUnit.HOURS);
+        assertThat(countChunkFiles(), is(chunkCount));
+        assertArrayEquals(randomContent(), IoUtil.readBytes(store.getInputStream(value.getKey())));
+    }
+
+    @Test
+    public void shouldSkipAcrossChunks() throws Exception {
+        byte[] content = randomContent();
+        BinaryValue value = store.storeValue(new ByteArrayInputStream(content));
+        InputStream stream = value.getStream();
+        try {
+            int offset = AVERAGE_CHUNK_SIZE * 10 + 17;
+            assertThat(stream.skip(offset), is((long)offset));
+            byte[] expected = new byte[content.length - offset];
+            System.arraycopy(content, offset, expected, 0, expected.length);
+            assertArrayEquals(expected, IoUtil.readBytes(stream));
+        } finally {
+            stream.close();
+        }
+    }
+
+    @Test
+    public void shouldReadValuesStoredWithoutChunking() throws Exception {
+        byte[] content = randomContent();
+        BinaryValue value = new FileSystemBinaryStore(directory).storeValue(new ByteArrayInputStream(content));
+        assertArrayEquals(content, IoUtil.readBytes(store.getInputStream(value.getKey())));
+    }
+
+    protected void makeOlder( File fileOrDir,
+                              long millis ) {
+        if (fileOrDir.isDirectory()) {
+            for (File child : fileOrDir.listFiles()) {
+                makeOlder(child, millis);
+            }
+        } else {
+            fileOrDir.setLastModified(fileOrDir.lastModified() - millis);
+        }
+    }
+
+    protected Manifest manifestFor( BinaryKey key ) throws Exception {
+        return Manifest.read(store.findFile(directory, key, false));
+    }
+
+    protected byte[] randomContent() {
+        byte[] content = new byte[AVERAGE_CHUNK_SIZE * 64];
+        new Random(0L).nextBytes(content);
+        return content;
+    }
+
+    protected byte[] insertBytesInTheMiddle( byte[] content ) {
+        byte[] edited = new byte[content.length + 10];
+        int middle = content.length / 2;
+        System.arraycopy(content, 0, edited, 0, middle);
+        for (int i = 0; i != 10; ++i) {
+            edited[middle + i] = (byte)i;
+        }
+        System.arraycopy(content, middle, edited, middle + 10, content.length - middle);
+        return edited;
+    }
+}
@@ -42,7 +42,9 @@ import java.nio.channels.Channels;
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileLock;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
@@ -207,6 +209,115 @@ public class FileSystemBinaryStoreTest extends AbstractBinaryStoreTest {
         assertThat(countTrashFiles(), is(0));
     }
 
+    @Test
+    public void shouldRemoveUnusedFilesFromTrashWithoutIndexUsingMultipleThreads() throws Exception {
+        Set<String> storedSha1s = new HashSet<String>();
+        for (int i = 0; i != CONTENT.length; ++i) {
+            Binary binary = storeAndCheck(i);
+            if (binary instanceof StoredBinaryValue) storedSha1s.add(binary.getHexHash());
+        }
+        assertThat(countStoredFiles(), is(storedSha1s.size()));
+
+        // Mark all of the files as being unused ...
+        Set<BinaryKey> unused = new HashSet<BinaryKey>();
+        for (String sha1 : storedSha1s) {
+            unused.add(new BinaryKey(sha1));
+        }
+        store.markAsUnused(unused);
+        assertThat(countTrashFiles(), is(storedSha1s.size()));
+
+        // Make the trash look like it was written without an index, long ago ...
+        long longAgo = System.currentTimeMillis() - TimeUnit.MILLISECONDS.convert(2, TimeUnit.HOURS);
+        for (File shard : trash.listFiles()) {
+            new File(shard, ".trash-index").delete();
+        }
+        for (String sha1 : storedSha1s) {
+            File trashed = store.findFile(trash, new BinaryKey(sha1), false);
+            assertThat(trashed.setLastModified(longAgo), is(true));
+        }
+
+        store.setGarbageCollectionThreads(3);
+        store.setGarbageCollectionRate(1000);
+        store.removeValuesUnusedLongerThan(1, TimeUnit.HOURS);
+
+        // Make sure all of the files were removed from the trash, along with the (empty) directories ...
+        assertThat(countStoredFiles(), is(0));
+        assertThat(countTrashFiles(), is(0));
+        assertThat(trash.listFiles().length, is(0));
+    }
+
+    @Test
+    public void shouldRemoveOnlyOldUnusedFilesRecordedInTrashIndexUsingMultipleThreads() throws Exception {
+        List<String> storedSha1s = new ArrayList<String>();
+        for (int i = 0; i != CONTENT.length; ++i) {
+            Binary binary = storeAndCheck(i);
+            if (binary instanceof StoredBinaryValue) storedSha1s.add(binary.getHexHash());
+        }
+        assertThat(storedSha1s.size() > 3, is(true));
+
+        // Mark some of the files as unused long enough ago, and the others just now ...
+        List<String> old = storedSha1s.subList(0, storedSha1s.size() / 2);
+        List<String> recent = storedSha1s.subList(old.size(), storedSha1s.size());
+        store.markAsUnused(keysFor(old));
+        Thread.sleep(1100L); // Sleep more than a second, since modified times may only be accurate to nearest second ...
+        store.markAsUnused(keysFor(recent));
+        assertThat(countTrashFiles(), is(storedSha1s.size()));
+
+        // A trashed file that isn't in the (complete) index of its shard is not examined ...
+        String shardName = old.get(0).substring(0, 2);
+        BinaryKey unindexed = new BinaryKey(shardName + sha1("not in the index").substring(2));
+        File unindexedFile = store.findFile(trash, unindexed, true);
+        IoUtil.write("not in the index", unindexedFile);
+        long longAgo = System.currentTimeMillis() - TimeUnit.MILLISECONDS.convert(2, TimeUnit.HOURS);
+        assertThat(unindexedFile.setLastModified(longAgo), is(true));
+
+        // One of the old values is used again before the collection ...
+        String reused = old.get(1);
+        assertThat(IoUtil.read(store.getInputStream(new BinaryKey(reused))).length() != 0, is(true));
+
+        store.setGarbageCollectionThreads(4);
+        store.removeValuesUnusedLongerThan(1, TimeUnit.SECONDS);
+
+        for (String sha1 : old) {
+            assertThat(store.findFile(trash, new BinaryKey(sha1), false).exists(), is(false));
+        }
+        assertThat(store.findFile(directory, new BinaryKey(reused), false).exists(), is(true));
+        for (String sha1 : recent) {
+            assertThat(store.findFile(trash, new BinaryKey(sha1), false).exists(), is(true));
+            // The files that remain in the trash are still recorded in the index of their shard ...
+            File index = new File(new File(trash, sha1.substring(0, 2)), ".trash-index");
+            assertThat(IoUtil.read(index).contains(sha1 + " "), is(true));
+        }
+        assertThat(unindexedFile.exists(), is(true));
+        assertThat(countTrashFiles(), is(recent.size() + 1));
+        assertThat(countStoredFiles(), is(1));
+    }
+
+    @Test
+    public void shouldLimitRateOfGarbageCollection() throws Exception {
+        Set<String> storedSha1s = new HashSet<String>();
+        for (int i = 0; i != CONTENT.length; ++i) {
+            Binary binary = storeAndCheck(i);
+            if (binary instanceof StoredBinaryValue) storedSha1s.add(binary.getHexHash());
+        }
+        store.markAsUnused(keysFor(storedSha1s));
+        Thread.sleep(1100L); // Sleep more than a second, since modified times may only be accurate to nearest second ...
+
+        // Remove at most 4 files per second, across all of the threads ...
+        int filesPerSecond = 4;
+        store.setGarbageCollectionThreads(3);
+        store.setGarbageCollectionRate(filesPerSecond);
+        long start = System.currentTimeMillis();
+        store.removeValuesUnusedLongerThan(1, TimeUnit.SECONDS);
+        long elapsed = System.currentTimeMillis() - start;
+
+        // The first file is removed immediately, and each of the others after waiting for its turn ...
+        long minimumMillis = (storedSha1s.size() - 1) * TimeUnit.SECONDS.toMillis(1) / filesPerSecond;
+        assertThat("Collection took only " + elapsed + "ms", elapsed >= minimumMillis - 50L, is(true));
+        assertThat(countTrashFiles(), is(0));
+        assertThat(trash.listFiles().length, is(0));
+    }
+
     @Test
     public void shouldStoreLargeFile() throws Exception {
         print = true;
@@ -424,6 +535,14 @@ public class FileSystemBinaryStoreTest extends AbstractBinaryStoreTest {
         }
     }
 
+    protected Set<BinaryKey> keysFor( Collection<String> sha1s ) {
+        Set<BinaryKey> keys = new HashSet<BinaryKey>();
+        for (String sha1 : sha1s) {
+            keys.add(new BinaryKey(sha1));
+        }
+        return keys;
+    }
+
     protected int countStoredFiles() throws IOException {
         return countFiles(directory, trash);
     }
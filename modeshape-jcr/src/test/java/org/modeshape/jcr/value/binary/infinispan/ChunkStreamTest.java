@@ -57,7 +57,9 @@ import org.modeshape.jcr.value.binary.AbstractBinaryStoreTest;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Random;
 
 import static junit.framework.Assert.assertEquals;
@@ -274,4 +276,47 @@ public class ChunkStreamTest {
         expected = new byte[0];
         assertArrayEquals(expected, IoUtil.readBytes(chunkInputStream)) ;
     }
+
+    @Test
+    public void shouldStreamManyChunksWrittenConcurrentlyAndReadAhead() throws Exception {
+        int smallChunkSize = 1024;
+        byte[] data = new byte[smallChunkSize * 10 + 100];
+        RANDOM.nextBytes(data);
+        BinaryKey dataKey = BinaryKey.keyFor(data);
+
+        ChunkOutputStream chunkOutputStream = new ChunkOutputStream(blobCache, dataKey.toString(), smallChunkSize, 3);
+        IoUtil.write(new ByteArrayInputStream(data), chunkOutputStream);
+        assertEquals(11, chunkOutputStream.chunksCount());
+
+        ChunkInputStream chunkInputStream = new ChunkInputStream(blobCache, dataKey.toString(), smallChunkSize, data.length, 4);
+        assertArrayEquals("Invalid data read from the stream", data, IoUtil.readBytes(chunkInputStream));
+    }
+
+    @Test
+    public void shouldReadCorrectlyWhenSkippingPastPrefetchedChunks() throws Exception {
+        int smallChunkSize = 1024;
+        byte[] data = new byte[smallChunkSize * 10];
+        RANDOM.nextBytes(data);
+        BinaryKey dataKey = BinaryKey.keyFor(data);
+
+        ChunkOutputStream chunkOutputStream = new ChunkOutputStream(blobCache, dataKey.toString(), smallChunkSize, 3);
+        IoUtil.write(new ByteArrayInputStream(data), chunkOutputStream);
+
+        ChunkInputStream chunkInputStream = new ChunkInputStream(blobCache, dataKey.toString(), smallChunkSize, data.length, 2);
+        DataInputStream input = new DataInputStream(chunkInputStream);
+        // read into the second chunk, so that the following chunks are prefetched ...
+        byte[] actual = new byte[smallChunkSize + 10];
+        input.readFully(actual);
+        assertArrayEquals(Arrays.copyOfRange(data, 0, actual.length), actual);
+        // skip past the prefetched chunks and read across the next chunk boundary ...
+        int position = actual.length;
+        assertEquals(smallChunkSize * 4, chunkInputStream.skip(smallChunkSize * 4));
+        position += smallChunkSize * 4;
+        actual = new byte[smallChunkSize];
+        input.readFully(actual);
+        assertArrayEquals(Arrays.copyOfRange(data, position, position + actual.length), actual);
+        position += actual.length;
+        // and read the rest ...
+        assertArrayEquals(Arrays.copyOfRange(data, position, data.length), IoUtil.readBytes(chunkInputStream));
+    }
 }
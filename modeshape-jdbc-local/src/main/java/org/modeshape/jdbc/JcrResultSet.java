@@ -58,6 +58,7 @@ import javax.jcr.query.QueryResult;
 import javax.jcr.query.Row;
 import javax.jcr.query.RowIterator;
 import org.modeshape.common.util.IoUtil;
+import org.modeshape.jdbc.delegate.PagedQueryResult;
 import org.modeshape.jdbc.util.TimestampWithTimezone;
 
 /**
@@ -143,6 +144,9 @@ public class JcrResultSet implements ResultSet {
     public void close() {
         if (!closed) {
             closed = true;
+            if (jcrResults instanceof PagedQueryResult) {
+                ((PagedQueryResult)jcrResults).close();
+            }
         	this.statement.close();
         }
     }
@@ -439,6 +443,9 @@ public class JcrResultSet implements ResultSet {
     @Override
     public int getFetchSize() throws SQLException {
         notClosed();
+        if (jcrResults instanceof PagedQueryResult) {
+            return ((PagedQueryResult)jcrResults).getFetchSize();
+        }
         return statement.getFetchSize();
     }
 
@@ -1582,12 +1589,18 @@ public class JcrResultSet implements ResultSet {
 
     /**
      * {@inheritDoc}
+     * <p>
+     * The fetch size only changes the number of rows in the pages that remote connections retrieve from the server; it is ignored
+     * when all the rows were retrieved at once.
+     * </p>
      * 
      * @see java.sql.ResultSet#setFetchSize(int)
      */
     @Override
     public void setFetchSize( int rows ) /*throws SQLException*/{
-        // does nothing
+        if (jcrResults instanceof PagedQueryResult) {
+            ((PagedQueryResult)jcrResults).setFetchSize(rows);
+        }
     }
 
     /**
@@ -43,6 +43,7 @@ class JcrStatement implements Statement {
     private boolean closed;
     private SQLWarning warning;
     private int rowLimit = -1;
+    private int fetchSize = 0;
     private int fetchDirection = ResultSet.FETCH_FORWARD;
     private boolean poolable;
     private int moreResults = 0;
@@ -64,22 +65,20 @@ class JcrStatement implements Statement {
 
     /**
      * {@inheritDoc}
-     * <p>
-     * This driver doesn't have a way to set the fetch size, so this method always returns 0.
-     * </p>
      * 
      * @see java.sql.Statement#getFetchSize()
      */
     @Override
     public int getFetchSize() throws SQLException {
         notClosed();
-        return 0;
+        return fetchSize;
     }
 
     /**
      * {@inheritDoc}
      * <p>
-     * This driver doesn't have a way to set the fetch size, so this method is ignored and does nothing.
+     * The fetch size is the number of rows that remote connections retrieve from the server in each page of the results; 0 (the
+     * default) means all the rows are retrieved at once. Local connections ignore the fetch size.
      * </p>
      * 
      * @see java.sql.Statement#setFetchSize(int)
@@ -87,6 +86,10 @@ class JcrStatement implements Statement {
     @Override
     public void setFetchSize( int rows ) throws SQLException {
         notClosed();
+        if (rows < 0) {
+            throw new SQLException(JdbcLocalI18n.argumentMayNotBeNegative.text("rows", rows));
+        }
+        fetchSize = rows;
     }
 
     /**
@@ -286,6 +289,10 @@ class JcrStatement implements Statement {
     public void close() {
         if (!closed) {
         	closed = true;
+            if (results instanceof JcrResultSet) {
+                // Release any rows that remain on the server ...
+                ((JcrResultSet)results).close();
+            }
         	connection.getRepositoryDelegate().closeStatement();            
         }
     }
@@ -426,7 +433,7 @@ class JcrStatement implements Statement {
             // Convert the supplied SQL into JCR-SQL2 ...
             String jcrSql2 = connection.nativeSQL(sql);
             // Create the query ...
-            final QueryResult jcrResults = getJcrRepositoryDelegate().execute(jcrSql2, this.sqlLanguage);
+            final QueryResult jcrResults = getJcrRepositoryDelegate().execute(jcrSql2, this.sqlLanguage, this.fetchSize);
             results = new JcrResultSet(this, jcrResults, null);
             moreResults = 1;
         } catch (RepositoryException e) {
@@ -29,6 +29,7 @@ import java.util.Properties;
 import java.util.Set;
 import javax.jcr.Repository;
 import javax.jcr.RepositoryException;
+import javax.jcr.query.QueryResult;
 import org.modeshape.common.logging.Logger;
 import org.modeshape.jdbc.DriverInfo;
 import org.modeshape.jdbc.JcrConnection;
@@ -81,6 +82,21 @@ public abstract class AbstractRepositoryDelegate implements RepositoryDelegate {
         return connInfo;
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * By default all the rows are obtained by {@link #execute(String, String)}, and the fetch size is ignored.
+     * </p>
+     * 
+     * @see org.modeshape.jdbc.delegate.RepositoryDelegate#execute(java.lang.String, java.lang.String, int)
+     */
+    @Override
+    public QueryResult execute( String query,
+                                String language,
+                                int fetchSize ) throws RepositoryException {
+        return execute(query, language);
+    }
+
     /**
      * {@inheritDoc}
      * 
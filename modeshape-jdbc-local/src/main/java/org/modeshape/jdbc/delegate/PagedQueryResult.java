@@ -0,0 +1,51 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ * See the AUTHORS.txt file in the distribution for a full listing of 
+ * individual contributors.
+ *
+ * ModeShape is free software. Unless otherwise indicated, all code in ModeShape
+ * is licensed to you under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ * 
+ * ModeShape is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.modeshape.jdbc.delegate;
+
+import javax.jcr.query.QueryResult;
+
+/**
+ * A {@link QueryResult} whose rows are retrieved from the repository one page at a time, as they are iterated.
+ */
+public interface PagedQueryResult extends QueryResult {
+
+    /**
+     * Get the maximum number of rows retrieved in each page.
+     * 
+     * @return the page size, or 0 if all the rows were retrieved at once
+     */
+    int getFetchSize();
+
+    /**
+     * Set the maximum number of rows retrieved in each of the following pages.
+     * 
+     * @param rows the page size; if not positive, the page size with which the query was executed is used
+     */
+    void setFetchSize( int rows );
+
+    /**
+     * Release the resources held by the repository for the rows that have not been retrieved yet.
+     */
+    void close();
+}
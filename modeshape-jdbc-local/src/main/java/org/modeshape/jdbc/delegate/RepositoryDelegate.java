@@ -87,6 +87,21 @@ public interface RepositoryDelegate {
     QueryResult execute( String query,
                          String language ) throws RepositoryException;
 
+    /**
+     * Call to execute the <code>query</code> based on the specified JCR language, hinting at the number of rows that should be
+     * retrieved at a time.
+     * 
+     * @param query is the query expression to execute
+     * @param language is the JCR language the <code>query</code> should be executed based on.
+     * @param fetchSize the number of rows that should be retrieved at a time, or 0 if the delegate should decide; delegates that
+     *        retrieve the rows page by page return a {@link PagedQueryResult}
+     * @return QueryResult is the JCR query result
+     * @throws RepositoryException
+     */
+    QueryResult execute( String query,
+                         String language,
+                         int fetchSize ) throws RepositoryException;
+
     /**
      * Generate the plan for the <code>query</code> based on the specified JCR language.
      * 
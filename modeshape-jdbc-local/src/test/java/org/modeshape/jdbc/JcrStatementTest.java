@@ -329,6 +329,14 @@ public class JcrStatementTest {
             return queryResult;
         }
 
+        @SuppressWarnings( "synthetic-access" )
+        @Override
+        public QueryResult execute( String query,
+                                    String language,
+                                    int fetchSize ) {
+            return queryResult;
+        }
+
         @SuppressWarnings( "synthetic-access" )
         @Override
         public String explain( String query,
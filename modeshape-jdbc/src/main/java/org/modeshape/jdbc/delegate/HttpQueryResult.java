@@ -36,17 +36,28 @@ import javax.jcr.NodeIterator;
 import javax.jcr.Value;
 import javax.jcr.query.Row;
 import javax.jcr.query.RowIterator;
+import org.modeshape.common.logging.Logger;
 import org.modeshape.jcr.api.query.QueryResult;
 import org.modeshape.jdbc.JdbcJcrValueFactory;
+import org.modeshape.web.jcr.rest.client.IRestClient;
+import org.modeshape.web.jcr.rest.client.domain.QueryPage;
 import org.modeshape.web.jcr.rest.client.domain.QueryRow;
+import org.modeshape.web.jcr.rest.client.domain.Workspace;
 
 /**
- * A simple implementation of the {@link QueryResult} interface used to iterate over list of {@link QueryRow rows}
+ * A simple implementation of the {@link QueryResult} interface used to iterate over list of {@link QueryRow rows}. When the query
+ * was executed with a fetch size, only one page of rows is held at a time, and the next pages are retrieved from the server's
+ * cursor as the rows are iterated.
  * 
  * @author Horia Chiorean
  */
-public final class HttpQueryResult implements QueryResult {
+public final class HttpQueryResult implements QueryResult, PagedQueryResult {
 
+    private static final Logger LOGGER = Logger.getLogger(HttpQueryResult.class);
+
+    /**
+     * The rows of the current page
+     */
     protected final List<HttpRow> rows = new ArrayList<HttpRow>();
 
     /**
@@ -54,8 +65,35 @@ public final class HttpQueryResult implements QueryResult {
      */
     protected final Map<String, String> columns = new LinkedHashMap<String, String>();
 
+    private final IRestClient restClient;
+    private final Workspace workspace;
+    private final HttpRowIterator pagedRowIterator;
+    private String handle;
+    private int fetchSize;
+    private long pageStart = 0L;
+
     HttpQueryResult( List<QueryRow> queryRows ) {
+        this(null, null, queryRows, Collections.<String, String>emptyMap(), null, 0);
+    }
+
+    HttpQueryResult( IRestClient restClient,
+                     Workspace workspace,
+                     QueryPage firstPage,
+                     int fetchSize ) {
+        this(restClient, workspace, firstPage.getRows(), firstPage.getColumnTypes(), firstPage.getHandle(), fetchSize);
+    }
+
+    private HttpQueryResult( IRestClient restClient,
+                             Workspace workspace,
+                             List<QueryRow> queryRows,
+                             Map<String, String> columnTypes,
+                             String handle,
+                             int fetchSize ) {
         assert queryRows != null;
+        this.restClient = restClient;
+        this.workspace = workspace;
+        this.handle = handle;
+        this.fetchSize = fetchSize;
 
         if (!queryRows.isEmpty()) {
             QueryRow firstQueryRow = queryRows.get(0);
@@ -63,13 +101,74 @@ public final class HttpQueryResult implements QueryResult {
             for (String queryColumnName : queryColumnNames) {
                 columns.put(queryColumnName, firstQueryRow.getColumnType(queryColumnName));
             }
+        } else {
+            columns.putAll(columnTypes);
         }
 
+        addRows(queryRows);
+        // A paged result can only be iterated once, since the previous pages are discarded ...
+        this.pagedRowIterator = isPaged() ? new HttpRowIterator() : null;
+    }
+
+    private boolean isPaged() {
+        return restClient != null;
+    }
+
+    private void addRows( List<QueryRow> queryRows ) {
         for (QueryRow queryRow : queryRows) {
             rows.add(new HttpRow(queryRow));
         }
     }
 
+    /**
+     * Replace the current page with the next page from the server's cursor.
+     * 
+     * @return true if there is a next page, or false if the current page is the last one
+     */
+    protected boolean nextPage() {
+        if (handle == null) {
+            return false;
+        }
+        QueryPage page = null;
+        try {
+            page = restClient.nextQueryPage(workspace, handle, fetchSize);
+        } catch (Exception e) {
+            throw new RuntimeException(e.getMessage(), e);
+        }
+        pageStart += rows.size();
+        rows.clear();
+        addRows(page.getRows());
+        handle = page.getHandle();
+        return true;
+    }
+
+    @Override
+    public int getFetchSize() {
+        return fetchSize;
+    }
+
+    @Override
+    public void setFetchSize( int rows ) {
+        if (isPaged() && rows > 0) {
+            this.fetchSize = rows;
+        }
+    }
+
+    @Override
+    public void close() {
+        if (handle == null) {
+            return;
+        }
+        try {
+            restClient.closeQuery(workspace, handle);
+        } catch (Exception e) {
+            // The cursor will expire on the server anyway ...
+            LOGGER.debug(e, "Unable to close the query cursor {0}", handle);
+        } finally {
+            handle = null;
+        }
+    }
+
     @Override
     public String getPlan() {
         return null;
@@ -87,7 +186,7 @@ public final class HttpQueryResult implements QueryResult {
 
     @Override
     public RowIterator getRows() {
-        return new HttpRowIterator();
+        return isPaged() ? pagedRowIterator : new HttpRowIterator();
     }
 
     @Override
@@ -107,15 +206,17 @@ public final class HttpQueryResult implements QueryResult {
 
     private class HttpRowIterator implements RowIterator {
 
-        private static final int EMPTY_CURSOR = -1;
-        private int cursor = rows.isEmpty() ? EMPTY_CURSOR : 0;
+        /**
+         * The index of the next row in the current page
+         */
+        private int cursor = 0;
 
         protected HttpRowIterator() {
         }
 
         @Override
         public Row nextRow() {
-            if (cursor == -1 || cursor >= rows.size()) {
+            if (!hasNext()) {
                 throw new NoSuchElementException("No more rows to iterate over");
             }
             return rows.get(cursor++);
@@ -126,26 +227,47 @@ public final class HttpQueryResult implements QueryResult {
             if (skipNum < 0) {
                 throw new IllegalArgumentException("skipNum must be a positive value");
             }
-            int availableRowsCount = rows.size() - cursor;
-            if (skipNum > availableRowsCount) {
-                throw new NoSuchElementException("Skip would go past collection end");
+            while (skipNum > 0) {
+                int availableRowsCount = rows.size() - cursor;
+                if (skipNum <= availableRowsCount) {
+                    cursor += skipNum;
+                    return;
+                }
+                skipNum -= availableRowsCount;
+                cursor = rows.size();
+                if (!hasNext()) {
+                    throw new NoSuchElementException("Skip would go past collection end");
+                }
             }
-            cursor += skipNum;
         }
 
+        @SuppressWarnings( "synthetic-access" )
         @Override
         public long getSize() {
-            return rows.size();
+            // The size of a paged result is not known until the last page has been retrieved ...
+            return handle == null ? pageStart + rows.size() : -1L;
         }
 
+        @SuppressWarnings( "synthetic-access" )
         @Override
         public long getPosition() {
-            return cursor;
+            if (pageStart == 0L && rows.isEmpty()) {
+                // There are no rows at all ...
+                return -1L;
+            }
+            return pageStart + cursor;
         }
 
+        @SuppressWarnings( "synthetic-access" )
         @Override
         public boolean hasNext() {
-            return cursor != -1 && cursor < rows.size();
+            while (cursor >= rows.size()) {
+                if (!isPaged() || !nextPage()) {
+                    return false;
+                }
+                cursor = 0;
+            }
+            return true;
         }
 
         @Override
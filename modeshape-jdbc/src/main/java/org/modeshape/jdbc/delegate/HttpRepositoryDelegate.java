@@ -40,6 +40,7 @@ import javax.jcr.query.QueryResult;
 import org.modeshape.jdbc.JcrDriver;
 import org.modeshape.jdbc.JdbcLocalI18n;
 import org.modeshape.jdbc.LocalJcrDriver.JcrContextFactory;
+import org.modeshape.web.jcr.rest.client.domain.QueryPage;
 import org.modeshape.web.jcr.rest.client.domain.QueryRow;
 import org.modeshape.web.jcr.rest.client.domain.Repository;
 import org.modeshape.web.jcr.rest.client.domain.Server;
@@ -113,6 +114,23 @@ public class HttpRepositoryDelegate extends AbstractRepositoryDelegate {
         }
     }
 
+    @Override
+    public QueryResult execute( String query,
+                                String language,
+                                int fetchSize ) throws RepositoryException {
+        if (fetchSize <= 0) {
+            return execute(query, language);
+        }
+        logger.trace("Executing query with fetch size {0}: {1}", fetchSize, query);
+
+        try {
+            QueryPage firstPage = this.restClient.openQuery(workspace, language, query, fetchSize, null);
+            return new HttpQueryResult(restClient, workspace, firstPage, fetchSize);
+        } catch (Exception e) {
+            throw new RepositoryException(e.getMessage(), e);
+        }
+    }
+
     @Override
     public String explain( String query,
                            String language ) throws RepositoryException {
@@ -0,0 +1,115 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ * See the AUTHORS.txt file in the distribution for a full listing of 
+ * individual contributors.
+ *
+ * ModeShape is free software. Unless otherwise indicated, all code in ModeShape
+ * is licensed to you under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ * 
+ * ModeShape is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.modeshape.jdbc.delegate;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.jcr.query.RowIterator;
+import org.junit.Before;
+import org.junit.Test;
+import org.modeshape.web.jcr.rest.client.IRestClient;
+import org.modeshape.web.jcr.rest.client.domain.QueryPage;
+import org.modeshape.web.jcr.rest.client.domain.QueryRow;
+import org.modeshape.web.jcr.rest.client.domain.Workspace;
+
+public class HttpQueryResultTest {
+
+    private static final String COLUMN = "name";
+
+    private IRestClient restClient;
+    private Workspace workspace;
+
+    @Before
+    public void beforeEach() {
+        restClient = mock(IRestClient.class);
+        workspace = mock(Workspace.class);
+    }
+
+    @Test
+    public void shouldRetrieveTheNextPagesWhileIterating() throws Exception {
+        when(restClient.nextQueryPage(workspace, "cursor", 2)).thenReturn(page(2, 2, "cursor2"));
+        when(restClient.nextQueryPage(workspace, "cursor2", 2)).thenReturn(page(4, 1, null));
+
+        HttpQueryResult result = new HttpQueryResult(restClient, workspace, page(0, 2, "cursor"), 2);
+        RowIterator rows = result.getRows();
+        assertThat(rows.getSize(), is(-1L));
+        for (int i = 0; i != 5; ++i) {
+            assertThat(rows.hasNext(), is(true));
+            assertThat(rows.nextRow().getValue(COLUMN).getString(), is("row" + i));
+        }
+        assertThat(rows.hasNext(), is(false));
+        assertThat(rows.getPosition(), is(5L));
+        assertThat(rows.getSize(), is(5L));
+    }
+
+    @Test
+    public void shouldSkipAcrossPages() throws Exception {
+        when(restClient.nextQueryPage(workspace, "cursor", 2)).thenReturn(page(2, 2, "cursor2"));
+
+        HttpQueryResult result = new HttpQueryResult(restClient, workspace, page(0, 2, "cursor"), 2);
+        RowIterator rows = result.getRows();
+        rows.skip(3);
+        assertThat(rows.nextRow().getValue(COLUMN).getString(), is("row3"));
+    }
+
+    @Test
+    public void shouldUseTheNewFetchSizeForTheNextPages() throws Exception {
+        when(restClient.nextQueryPage(workspace, "cursor", 10)).thenReturn(page(2, 1, null));
+
+        HttpQueryResult result = new HttpQueryResult(restClient, workspace, page(0, 2, "cursor"), 2);
+        result.setFetchSize(10);
+        RowIterator rows = result.getRows();
+        rows.skip(2);
+        assertThat(rows.nextRow().getValue(COLUMN).getString(), is("row2"));
+        assertThat(result.getFetchSize(), is(10));
+    }
+
+    @Test
+    public void shouldCloseTheCursorWhenClosedBeforeTheLastPage() throws Exception {
+        HttpQueryResult result = new HttpQueryResult(restClient, workspace, page(0, 2, "cursor"), 2);
+        result.close();
+        verify(restClient).closeQuery(workspace, "cursor");
+    }
+
+    private QueryPage page( int firstRow,
+                            int rowCount,
+                            String handle ) {
+        Map<String, String> types = Collections.singletonMap(COLUMN, "STRING");
+        List<QueryRow> rows = new ArrayList<QueryRow>();
+        for (int i = firstRow; i != firstRow + rowCount; ++i) {
+            Map<String, Object> values = new HashMap<String, Object>();
+            values.put(COLUMN, "row" + i);
+            rows.add(new QueryRow(types, values));
+        }
+        return new QueryPage(types, rows, handle);
+    }
+}
@@ -32,9 +32,16 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import org.modeshape.common.SystemFailureException;
 import org.modeshape.common.annotation.Immutable;
 import org.modeshape.common.text.ParsingException;
 import org.modeshape.common.text.Position;
+import org.modeshape.common.text.TokenStream;
 import org.modeshape.common.util.CheckArg;
 import org.modeshape.jcr.api.JcrConstants;
 import org.modeshape.sequencer.ddl.dialect.derby.DerbyDdlParser;
@@ -101,12 +108,13 @@ public class DdlParsers {
 
     private List<DdlParser> parsers;
     private AstNodeFactory nodeFactory = new AstNodeFactory();
+    private final ExecutorService scoringExecutor;
 
     /**
      * Create an instance that uses all of the {@link #BUILTIN_PARSERS built-in parsers}.
      */
     public DdlParsers() {
-        this.parsers = BUILTIN_PARSERS;
+        this(null);
     }
 
     /**
@@ -115,7 +123,26 @@ public class DdlParsers {
      * @param parsers the list of parsers; may be empty or null if the {@link #BUILTIN_PARSERS built-in parsers} should be used
      */
     public DdlParsers( List<DdlParser> parsers ) {
+        this(parsers, null);
+    }
+
+    /**
+     * Create an instance that uses the supplied parsers, in order, and that scores the DDL content with all of the parsers
+     * concurrently. Regardless of the executor, the DDL content is tokenized only once and the tokens are shared by all of the
+     * parsers that extend {@link StandardDdlParser}.
+     * <p>
+     * The parsers must be distinct instances, since each parser is used by at most one thread at a time. The executor is not shut
+     * down by this object.
+     * </p>
+     * 
+     * @param parsers the list of parsers; may be empty or null if the {@link #BUILTIN_PARSERS built-in parsers} should be used
+     * @param scoringExecutor the executor used to score the parsers concurrently; may be null if the parsers should be scored one
+     *        after the other in the calling thread
+     */
+    public DdlParsers( List<DdlParser> parsers,
+                       ExecutorService scoringExecutor ) {
         this.parsers = (parsers != null && !parsers.isEmpty()) ? parsers : BUILTIN_PARSERS;
+        this.scoringExecutor = scoringExecutor;
     }
 
     private AstNode createDdlStatementsContainer( final String parserId ) {
@@ -244,32 +271,43 @@ public class DdlParsers {
                                             final List<DdlParser> parsers ) {
         CheckArg.isNotEmpty(ddl, "ddl");
 
-        final List<ParsingResult> results = new ArrayList<DdlParsers.ParsingResult>(this.parsers.size());
-        final DdlParserScorer scorer = new DdlParserScorer();
-
-        for (final DdlParser parser : this.parsers) {
-            final String parserId = parser.getId();
-            int score = ParsingResult.NO_SCORE;
-            AstNode rootNode = null;
-            Exception error = null;
-
-            try {
-                // score
-                final Object scorerOutput = parser.score(ddl, null, scorer);
-                score = scorer.getScore();
+        // tokenize once, and then score and parse with each parser (possibly concurrently)
+        final TokenStream tokenized = tokenize(ddl);
+        final List<Callable<ParsingResult>> tasks = new ArrayList<Callable<ParsingResult>>(parsers.size());
+
+        for (final DdlParser parser : parsers) {
+            tasks.add(new Callable<ParsingResult>() {
+                @Override
+                public ParsingResult call() {
+                    final String parserId = parser.getId();
+                    final DdlParserScorer scorer = new DdlParserScorer();
+                    int score = ParsingResult.NO_SCORE;
+                    AstNode rootNode = null;
+                    Exception error = null;
+
+                    try {
+                        // score
+                        final Object scorerOutput = score(parser, ddl, tokenized, null, scorer);
+                        score = scorer.getScore();
+
+                        // create DDL root node
+                        rootNode = createDdlStatementsContainer(parserId);
+
+                        // parse
+                        parse(parser, ddl, tokenized, rootNode, scorerOutput);
+                    } catch (final RuntimeException e) {
+                        error = e;
+                    }
+
+                    return new ParsingResult(parserId, rootNode, score, error);
+                }
+            });
+        }
 
-                // create DDL root node
-                rootNode = createDdlStatementsContainer(parserId);
+        final List<ParsingResult> results = new ArrayList<DdlParsers.ParsingResult>(parsers.size());
 
-                // parse
-                parser.parse(ddl, rootNode, scorerOutput);
-            } catch (final RuntimeException e) {
-                error = e;
-            } finally {
-                final ParsingResult result = new ParsingResult(parserId, rootNode, score, error);
-                results.add(result);
-                scorer.reset();
-            }
+        for (final Future<ParsingResult> result : run(tasks)) {
+            results.add(resultOf(result));
         }
 
         Collections.sort(results);
@@ -302,20 +340,31 @@ public class DdlParsers {
         CheckArg.isNotEmpty(ddl, "ddl");
         RuntimeException firstException = null;
 
-        // Go through each parser and score the DDL content
-        final Map<DdlParser, Integer> scoreMap = new HashMap<DdlParser, Integer>(this.parsers.size());
-        final DdlParserScorer scorer = new DdlParserScorer();
+        // Tokenize once, and then have each parser score the DDL content (possibly concurrently)
+        final TokenStream tokenized = tokenize(ddl);
+        final List<Callable<Integer>> tasks = new ArrayList<Callable<Integer>>(this.parsers.size());
 
         for (final DdlParser parser : this.parsers) {
+            tasks.add(new Callable<Integer>() {
+                @Override
+                public Integer call() {
+                    final DdlParserScorer scorer = new DdlParserScorer();
+                    score(parser, ddl, tokenized, fileName, scorer);
+                    return scorer.getScore();
+                }
+            });
+        }
+
+        final Map<DdlParser, Integer> scoreMap = new HashMap<DdlParser, Integer>(this.parsers.size());
+        final List<Future<Integer>> scores = run(tasks);
+
+        for (int i = 0; i != scores.size(); ++i) {
             try {
-                parser.score(ddl, fileName, scorer);
-                scoreMap.put(parser, scorer.getScore());
+                scoreMap.put(this.parsers.get(i), resultOf(scores.get(i)));
             } catch (RuntimeException e) {
                 if (firstException == null) {
                     firstException = e;
                 }
-            } finally {
-                scorer.reset();
             }
         }
 
@@ -343,7 +392,7 @@ public class DdlParsers {
                 astRoot = createDdlStatementsContainer(parser.getId());
 
                 // parse
-                parser.parse(ddl, astRoot, null);
+                parse(parser, ddl, tokenized, astRoot, null);
                 return astRoot; // successfully parsed
             } catch (final RuntimeException e) {
                 if (astRoot != null) {
@@ -363,6 +412,90 @@ public class DdlParsers {
         throw firstException;
     }
 
+    private static TokenStream tokenize( final String ddl ) {
+        try {
+            return DdlTokenStream.tokenize(ddl);
+        } catch (final ParsingException e) {
+            // each parser will tokenize the content itself and report the problem ...
+            return null;
+        }
+    }
+
+    private Object score( final DdlParser parser,
+                          final String ddl,
+                          final TokenStream tokenized,
+                          final String fileName,
+                          final DdlParserScorer scorer ) {
+        if ((tokenized != null) && (parser instanceof StandardDdlParser)) {
+            // reuse the shared tokens ...
+            return ((StandardDdlParser)parser).score(tokenized, fileName, scorer);
+        }
+
+        return parser.score(ddl, fileName, scorer);
+    }
+
+    private void parse( final DdlParser parser,
+                        final String ddl,
+                        final TokenStream tokenized,
+                        final AstNode rootNode,
+                        final Object scorerOutput ) {
+        if ((tokenized != null) && (parser instanceof StandardDdlParser)) {
+            // reuse the shared tokens ...
+            ((StandardDdlParser)parser).parse(tokenized, rootNode, scorerOutput);
+        } else {
+            parser.parse(ddl, rootNode, scorerOutput);
+        }
+    }
+
+    /**
+     * Run the supplied tasks, concurrently if there is a {@link #DdlParsers(List, ExecutorService) scoring executor}, or one after
+     * the other in the calling thread if there is not.
+     * 
+     * @param tasks the tasks to run; may not be null
+     * @return the completed results, in the same order as the tasks; never null
+     */
+    private <T> List<Future<T>> run( final List<Callable<T>> tasks ) {
+        if ((this.scoringExecutor == null) || (tasks.size() < 2)) {
+            final List<Future<T>> results = new ArrayList<Future<T>>(tasks.size());
+
+            for (final Callable<T> task : tasks) {
+                final FutureTask<T> result = new FutureTask<T>(task);
+                result.run();
+                results.add(result);
+            }
+
+            return results;
+        }
+
+        try {
+            return this.scoringExecutor.invokeAll(tasks);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ParsingException(Position.EMPTY_CONTENT_POSITION, DdlSequencerI18n.interruptedWhileScoringDdlContent.text());
+        }
+    }
+
+    private static <T> T resultOf( final Future<T> result ) {
+        try {
+            return result.get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ParsingException(Position.EMPTY_CONTENT_POSITION, DdlSequencerI18n.interruptedWhileScoringDdlContent.text());
+        } catch (final ExecutionException e) {
+            final Throwable cause = e.getCause();
+
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException)cause;
+            }
+
+            if (cause instanceof Error) {
+                throw (Error)cause;
+            }
+
+            throw new SystemFailureException(cause);
+        }
+    }
+
     /**
      * Represents a parsing result of one parser parsing one DDL input.
      */
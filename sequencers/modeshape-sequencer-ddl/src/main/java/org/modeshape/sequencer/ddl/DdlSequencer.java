@@ -35,6 +35,10 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import javax.jcr.Binary;
 import javax.jcr.NamespaceRegistry;
 import javax.jcr.Node;
@@ -47,6 +51,7 @@ import org.modeshape.common.logging.Logger;
 import org.modeshape.common.text.ParsingException;
 import org.modeshape.common.util.CheckArg;
 import org.modeshape.common.util.IoUtil;
+import org.modeshape.common.util.NamedThreadFactory;
 import org.modeshape.jcr.api.JcrConstants;
 import org.modeshape.jcr.api.Session;
 import org.modeshape.jcr.api.nodetype.NodeTypeManager;
@@ -64,6 +69,11 @@ public class DdlSequencer extends Sequencer {
     protected static final URL[] DEFAULT_CLASSPATH = new URL[] {};
     protected static final List<String> DEFAULT_GRAMMARS;
     protected static final Map<String, DdlParser> STANDARD_PARSERS_BY_NAME;
+    protected static final int DEFAULT_SCORING_THREADS = 1;
+    /**
+     * The number of seconds that an idle scoring thread is kept, so that the threads don't outlive the repository.
+     */
+    private static final long SCORING_THREAD_KEEP_ALIVE_IN_SECONDS = 60L;
 
     static {
         List<String> grammarNames = new ArrayList<String>();
@@ -79,6 +89,8 @@ public class DdlSequencer extends Sequencer {
 
     private String[] parserGrammars = DEFAULT_GRAMMARS.toArray(new String[DEFAULT_GRAMMARS.size()]);
     private URL[] classpath = DEFAULT_CLASSPATH;
+    private int scoringThreads = DEFAULT_SCORING_THREADS;
+    private ExecutorService scoringExecutor;
     private final Map<AstNode, Node> nodeMap = new HashMap<AstNode, Node>();
 
     /**
@@ -123,6 +135,26 @@ public class DdlSequencer extends Sequencer {
         this.classpath = classpath != null ? classpath : DEFAULT_CLASSPATH;
     }
 
+    /**
+     * Get the maximum number of threads used to score the DDL content with the different grammars.
+     * 
+     * @return the number of threads; 1 if the grammars are scored one after the other in the sequencing thread
+     */
+    public int getScoringThreads() {
+        return scoringThreads;
+    }
+
+    /**
+     * Set the maximum number of threads used to score the DDL content with the different grammars. Scoring large DDL files with
+     * several grammars concurrently can significantly reduce the time needed to sequence them.
+     * 
+     * @param scoringThreads the number of threads; a value of 1 or less means the grammars are scored one after the other in the
+     *        sequencing thread
+     */
+    public void setScoringThreads( int scoringThreads ) {
+        this.scoringThreads = scoringThreads > 1 ? scoringThreads : DEFAULT_SCORING_THREADS;
+    }
+
     /**
      * Method that creates the DdlParsers instance. This may be overridden in subclasses to creates specific implementations.
      * 
@@ -133,6 +165,19 @@ public class DdlSequencer extends Sequencer {
         return new DdlParsers(parsers);
     }
 
+    /**
+     * Method that creates the DdlParsers instance that scores the DDL content with the supplied executor. This may be overridden in
+     * subclasses to creates specific implementations.
+     * 
+     * @param parsers the list of DdlParser instances to use; may be empty or null
+     * @param scoringExecutor the executor used to score the DDL content concurrently; never null
+     * @return the DdlParsers implementation; may not be null
+     */
+    protected DdlParsers createParsers( List<DdlParser> parsers,
+                                        ExecutorService scoringExecutor ) {
+        return new DdlParsers(parsers, scoringExecutor);
+    }
+
     @SuppressWarnings( "unchecked" )
     protected List<DdlParser> getParserList() {
         List<DdlParser> parserList = new LinkedList<DdlParser>();
@@ -179,6 +224,16 @@ public class DdlSequencer extends Sequencer {
         registerNodeTypes("dialect/oracle/OracleDdl.cnd", nodeTypeManager, true);
         registerNodeTypes("dialect/postgres/PostgresDdl.cnd", nodeTypeManager, true);
         registerNodeTypes("dialect/teiid/TeiidDdl.cnd", nodeTypeManager, true);
+
+        // Create the scoring threads once, and reuse them for each DDL file that is sequenced ...
+        if (scoringThreads > 1 && parserGrammars.length > 1) {
+            int threads = Math.min(scoringThreads, parserGrammars.length);
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, SCORING_THREAD_KEEP_ALIVE_IN_SECONDS,
+                                                                 TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                                                                 new NamedThreadFactory("modeshape-ddl-scoring"));
+            executor.allowCoreThreadTimeOut(true);
+            this.scoringExecutor = executor;
+        }
     }
 
     @Override
@@ -196,7 +251,13 @@ public class DdlSequencer extends Sequencer {
 
         // Perform the parsing
         final AstNode rootNode;
-        DdlParsers parsers = createParsers(getParserList());
+        List<DdlParser> parserList = getParserList();
+        DdlParsers parsers = null;
+        if (scoringExecutor != null && parserList.size() > 1) {
+            parsers = createParsers(parserList, scoringExecutor);
+        } else {
+            parsers = createParsers(parserList);
+        }
         InputStream stream = ddlContent.getStream();
         try {
             rootNode = parsers.parse(IoUtil.read(stream), fileName);
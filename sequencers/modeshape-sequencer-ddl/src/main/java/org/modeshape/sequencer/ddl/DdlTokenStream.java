@@ -55,6 +55,8 @@ public class DdlTokenStream extends TokenStream {
 
     private Position currentMarkedPosition = Position.EMPTY_CONTENT_POSITION;
 
+    private final boolean excludeComments;
+
     /**
      * {@inheritDoc}
      * 
@@ -66,6 +68,17 @@ public class DdlTokenStream extends TokenStream {
         // APPLICABLE TOKEN TYPE BITMASK VALUES
         // MyClass[] array = (MyClass[])list.toArray(new MyClass[list.size()]);
 
+        if (excludeComments) {
+            // The shared tokens include the comments, but this stream should not ...
+            List<Token> uncommentedTokens = new ArrayList<Token>(tokens.size());
+            for (Token token : tokens) {
+                if (!token.matches(DdlTokenizer.COMMENT)) {
+                    uncommentedTokens.add(token);
+                }
+            }
+            tokens = uncommentedTokens;
+        }
+
         Token[] tokensArray = tokens.toArray(new Token[tokens.size()]);
         List<Token> reTypedTokens = new ArrayList<Token>(tokens.size());
 
@@ -124,6 +137,33 @@ public class DdlTokenStream extends TokenStream {
                            Tokenizer tokenizer,
                            boolean caseSensitive ) {
         super(content, tokenizer, caseSensitive);
+        this.excludeComments = false;
+    }
+
+    /**
+     * Create a stream that reuses the tokens of DDL content that was already {@link #tokenize(String) tokenized}, so that several
+     * parsers can each register their own key words and statement start phrases without tokenizing the content again.
+     * 
+     * @param tokenized the started stream of shared tokens, as returned by {@link #tokenize(String)}; may not be null
+     * @param includeComments true if the comments should be retained and be included in the token stream, or false if comments
+     *        should be excluded
+     */
+    public DdlTokenStream( TokenStream tokenized,
+                           boolean includeComments ) {
+        super(tokenized);
+        this.excludeComments = !includeComments;
+    }
+
+    /**
+     * Tokenize the supplied DDL content (including comments) exactly once. The resulting stream is never consumed directly;
+     * instead, its tokens are shared by the {@link #DdlTokenStream(TokenStream, boolean) token streams} of each parser.
+     * 
+     * @param content the DDL content; may not be null
+     * @return the started stream holding the shared tokens; never null
+     * @throws ParsingException if an error occurs during tokenization of the content
+     */
+    public static TokenStream tokenize( String content ) throws ParsingException {
+        return new TokenStream(content, ddlTokenizer(true), false).start();
     }
 
     /**
@@ -32,6 +32,7 @@ package org.modeshape.sequencer.ddl;
 import org.modeshape.common.annotation.NotThreadSafe;
 import org.modeshape.common.text.ParsingException;
 import org.modeshape.common.text.Position;
+import org.modeshape.common.text.TokenStream;
 import org.modeshape.common.util.CheckArg;
 import org.modeshape.sequencer.ddl.DdlTokenStream.DdlTokenizer;
 import static org.modeshape.sequencer.ddl.StandardDdlLexicon.*;
@@ -121,6 +122,33 @@ public class StandardDdlParser implements DdlParser, DdlConstants, DdlConstants.
                          String fileName,
                          DdlParserScorer scorer ) throws ParsingException {
         CheckArg.isNotNull(ddl, "ddl");
+        boolean includeComments = true;
+        return scoreTokens(new DdlTokenStream(ddl, DdlTokenStream.ddlTokenizer(includeComments), false), fileName, scorer);
+    }
+
+    /**
+     * Determine this parser's score for DDL content that was already {@link DdlTokenStream#tokenize(String) tokenized}. This is
+     * equivalent to {@link #score(String, String, DdlParserScorer)}, except that the content is not tokenized again, and is safe
+     * to call concurrently with other parsers sharing the same tokens.
+     * 
+     * @param tokenized the shared tokens of the DDL content, as returned by {@link DdlTokenStream#tokenize(String)}; may not be
+     *        null
+     * @param fileName the name of the DDL content, which may be used to improve the score; may be null if not known
+     * @param scorer the scorer that should be used to record the score; may not be null
+     * @return an object that will be passed to the {@link #parse(TokenStream, AstNode, Object)} method
+     * @throws ParsingException if there is an error parsing the supplied DDL content
+     */
+    public Object score( TokenStream tokenized,
+                         String fileName,
+                         DdlParserScorer scorer ) throws ParsingException {
+        CheckArg.isNotNull(tokenized, "tokenized");
+        boolean includeComments = true;
+        return scoreTokens(new DdlTokenStream(tokenized, includeComments), fileName, scorer);
+    }
+
+    private Object scoreTokens( DdlTokenStream tokens,
+                                String fileName,
+                                DdlParserScorer scorer ) throws ParsingException {
         CheckArg.isNotNull(scorer, "scorer");
 
         if (fileName != null) {
@@ -130,8 +158,6 @@ public class StandardDdlParser implements DdlParser, DdlConstants, DdlConstants.
 
         // Create the state of this parser ...
         problems.clear();
-        boolean includeComments = true;
-        DdlTokenStream tokens = new DdlTokenStream(ddl, DdlTokenStream.ddlTokenizer(includeComments), false);
         initializeTokenStream(tokens);
         tokens.start();
 
@@ -199,6 +225,46 @@ public class StandardDdlParser implements DdlParser, DdlConstants, DdlConstants.
             tokens.start();
         }
 
+        parseTokens(tokens, rootNode);
+    }
+
+    /**
+     * Parses DDL content that was already {@link DdlTokenStream#tokenize(String) tokenized}, adding child {@link AstNode}s and
+     * properties to the supplied root. This is equivalent to {@link #parse(String, AstNode, Object)}, except that the content is
+     * not tokenized again.
+     * 
+     * @param tokenized the shared tokens of the DDL content, as returned by {@link DdlTokenStream#tokenize(String)}; may not be
+     *        null
+     * @param rootNode the top level {@link AstNode}; may not be null
+     * @param scoreReturnObject the object returned from {@link #score(TokenStream, String, DdlParserScorer)} for the same
+     *        tokens; may be null if the content should be parsed without comments
+     * @throws ParsingException if there is an error parsing the supplied DDL content
+     */
+    public void parse( TokenStream tokenized,
+                       AstNode rootNode,
+                       Object scoreReturnObject ) throws ParsingException {
+        CheckArg.isNotNull(tokenized, "tokenized");
+        CheckArg.isNotNull(rootNode, "rootNode");
+        problems.clear();
+        setRootNode(rootNode);
+
+        DdlTokenStream tokens = null;
+        if (scoreReturnObject instanceof DdlTokenStream) {
+            tokens = (DdlTokenStream)scoreReturnObject;
+            tokens.rewind();
+        } else {
+            // Reuse the shared tokens ...
+            boolean includeComments = false;
+            tokens = new DdlTokenStream(tokenized, includeComments);
+            initializeTokenStream(tokens);
+            tokens.start();
+        }
+
+        parseTokens(tokens, rootNode);
+    }
+
+    private void parseTokens( DdlTokenStream tokens,
+                              AstNode rootNode ) throws ParsingException {
         testPrint("\n== >> StandardDdlParser.parse() PARSING STARTED: ");
 
         // Simply move to the next statement start (registered prior to tokenizing).
@@ -34,10 +34,13 @@ import static org.modeshape.sequencer.ddl.StandardDdlLexicon.TYPE_PROBLEM;
 import static org.modeshape.sequencer.ddl.StandardDdlLexicon.TYPE_UNKNOWN_STATEMENT;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import org.junit.Before;
 import org.junit.Test;
 import org.modeshape.common.text.ParsingException;
 import org.modeshape.sequencer.ddl.DdlParsers.ParsingResult;
+import org.modeshape.sequencer.ddl.dialect.derby.DerbyDdlParser;
 import org.modeshape.sequencer.ddl.dialect.oracle.OracleDdlParser;
 import org.modeshape.sequencer.ddl.dialect.postgres.PostgresDdlParser;
 import org.modeshape.sequencer.ddl.dialect.teiid.TeiidDdlParser;
@@ -191,6 +194,29 @@ public class DdlParsersTest extends DdlParserTestHelper {
         assertThat("ORACLE", is((String)this.rootNode.getProperty(StandardDdlLexicon.PARSER_ID)));
     }
 
+    @Test
+    public void shouldParseHugeOracleFileScoringParsersConcurrently() {
+        printTest("shouldParseHugeOracleFileScoringParsersConcurrently()");
+
+        final String content = getFileContent(DDL_TEST_FILE_PATH + "dialect/oracle/huge.ddl");
+        final List<DdlParser> myParsers = new ArrayList<DdlParser>();
+        myParsers.add(new StandardDdlParser());
+        myParsers.add(new OracleDdlParser());
+        myParsers.add(new DerbyDdlParser());
+        myParsers.add(new PostgresDdlParser());
+        myParsers.add(new TeiidDdlParser());
+
+        final ExecutorService executor = Executors.newFixedThreadPool(myParsers.size());
+        try {
+            this.rootNode = new DdlParsers(myParsers, executor).parse(content, null);
+        } finally {
+            executor.shutdown();
+        }
+
+        assertThat("ORACLE", is((String)this.rootNode.getProperty(StandardDdlLexicon.PARSER_ID)));
+        assertThat(this.rootNode.getChildCount(), is(this.parsers.parse(content, null).getChildCount()));
+    }
+
     @Test
     public void shouldReturnBuiltInParsers() {
         printTest("shouldReturnBuiltInParsers()");
@@ -24,8 +24,10 @@
 
 package org.modeshape.sequencer.zip;
 
-import java.io.ByteArrayOutputStream;
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 import javax.jcr.Binary;
@@ -41,6 +43,12 @@ import org.modeshape.jcr.api.sequencer.Sequencer;
 
 /**
  * A sequencer that processes and extract the files and folders from ZIP archive files.
+ * <p>
+ * The archive is read as a stream and the content of each entry is streamed directly into the repository's binary store, so
+ * the memory used by this sequencer does not depend upon the size of the archive or of its entries. Archives nested within the
+ * archive (e.g., JAR files within a WAR file) can optionally be sequenced as well; see
+ * {@link #setSequenceNestedArchives(boolean)}.
+ * </p>
  * 
  * @author Horia Chiorean
  */
@@ -51,6 +59,58 @@ public class ZipSequencer extends Sequencer {
         public static final String ZIP = "application/zip";
     }
 
+    protected static final int DEFAULT_MAXIMUM_NESTING_DEPTH = 4;
+
+    /**
+     * The signatures that begin a ZIP archive: a local file header, or the end of the central directory of an empty archive.
+     */
+    private static final int LOCAL_FILE_HEADER_SIGNATURE = 0x04034b50;
+    private static final int EMPTY_ARCHIVE_SIGNATURE = 0x06054b50;
+    private static final int SIGNATURE_LENGTH = 4;
+
+    private boolean sequenceNestedArchives = false;
+    private int maximumNestingDepth = DEFAULT_MAXIMUM_NESTING_DEPTH;
+
+    /**
+     * Get whether the ZIP and JAR archives found within the sequenced archive are themselves sequenced.
+     * 
+     * @return true if nested archives are sequenced, or false if they are stored as regular files
+     */
+    public boolean isSequenceNestedArchives() {
+        return sequenceNestedArchives;
+    }
+
+    /**
+     * Set whether the ZIP and JAR archives found within the sequenced archive should themselves be sequenced. When enabled, each
+     * nested archive is represented by a {@link ZipLexicon#FILE zip:file} node containing the sequenced files and folders, rather
+     * than by an "nt:file" node containing the archive's bytes. An entry that is named like an archive but does not contain one
+     * is still stored as an "nt:file" node. The default is false.
+     * 
+     * @param sequenceNestedArchives true if nested archives should be sequenced, or false if they should be stored as files
+     */
+    public void setSequenceNestedArchives( boolean sequenceNestedArchives ) {
+        this.sequenceNestedArchives = sequenceNestedArchives;
+    }
+
+    /**
+     * Get the maximum depth of the nested archives that are sequenced.
+     * 
+     * @return the maximum nesting depth
+     */
+    public int getMaximumNestingDepth() {
+        return maximumNestingDepth;
+    }
+
+    /**
+     * Set the maximum depth of the nested archives that are sequenced when {@link #setSequenceNestedArchives(boolean) nested
+     * archives are sequenced}. Archives nested any deeper are stored as regular files.
+     * 
+     * @param maximumNestingDepth the maximum nesting depth; a value less than 1 means the default depth is used
+     */
+    public void setMaximumNestingDepth( int maximumNestingDepth ) {
+        this.maximumNestingDepth = maximumNestingDepth > 0 ? maximumNestingDepth : DEFAULT_MAXIMUM_NESTING_DEPTH;
+    }
+
     @Override
     public void initialize( NamespaceRegistry registry,
                             NodeTypeManager nodeTypeManager ) throws RepositoryException, IOException {
@@ -68,14 +128,8 @@ public class ZipSequencer extends Sequencer {
         ZipInputStream zipInputStream = null;
         try {
             zipInputStream = new ZipInputStream(binaryValue.getStream());
-
-            ZipEntry entry = zipInputStream.getNextEntry();
-
             outputNode = createTopLevelNode(outputNode);
-
-            while (entry != null) {
-                entry = sequenceZipEntry(outputNode, context, zipInputStream, entry);
-            }
+            sequenceZipEntries(outputNode, context, zipInputStream, 0);
             return true;
         } finally {
             if (zipInputStream != null) {
@@ -97,19 +151,82 @@ public class ZipSequencer extends Sequencer {
         return outputNode;
     }
 
-    private ZipEntry sequenceZipEntry( Node outputNode,
-                                       Context context,
-                                       ZipInputStream zipInputStream,
-                                       ZipEntry entry ) throws RepositoryException, IOException {
-        Node zipEntryNode = createZipEntryPath(outputNode, entry);
+    private void sequenceZipEntries( Node outputNode,
+                                     Context context,
+                                     ZipInputStream zipInputStream,
+                                     int depth ) throws RepositoryException, IOException {
+        ZipEntry entry = zipInputStream.getNextEntry();
+        while (entry != null) {
+            sequenceZipEntry(outputNode, context, zipInputStream, entry, depth);
+            entry = zipInputStream.getNextEntry();
+        }
+    }
+
+    private void sequenceZipEntry( Node outputNode,
+                                   Context context,
+                                   ZipInputStream zipInputStream,
+                                   ZipEntry entry,
+                                   int depth ) throws RepositoryException, IOException {
+        if (entry.isDirectory()) {
+            createZipEntryPath(outputNode, entry, JcrConstants.NT_FOLDER);
+            return;
+        }
+        String archiveMimeType = nestedArchiveMimeType(entry, depth);
+        InputStream entryStream = new EntryInputStream(zipInputStream);
+        if (archiveMimeType != null) {
+            entryStream = new BufferedInputStream(entryStream);
+            if (isArchive(entryStream)) {
+                // Sequence the nested archive directly from this archive's stream ...
+                Node archiveNode = createZipEntryPath(outputNode, entry, ZipLexicon.FILE);
+                archiveNode.setProperty(JcrConstants.JCR_MIME_TYPE, archiveMimeType);
+                sequenceZipEntries(archiveNode, context, new ZipInputStream(entryStream), depth + 1);
+                return;
+            }
+            getLogger().warn("The entry {0} is not a valid archive, so it is stored as a regular file", entry.getName());
+        }
+        Node zipEntryNode = createZipEntryPath(outputNode, entry, JcrConstants.NT_FILE);
+        addFileContent(entryStream, entry, context, zipEntryNode);
+    }
 
-        if (!entry.isDirectory()) {
-            addFileContent(zipInputStream, entry, context, zipEntryNode);
+    /**
+     * Determine whether the supplied stream begins with a ZIP archive signature, leaving the stream positioned at its start.
+     * 
+     * @param stream the stream over the content of an entry; must support {@link InputStream#mark(int) marking}
+     * @return true if the stream contains a ZIP archive, or false otherwise
+     * @throws IOException if there is a problem reading the stream
+     */
+    private boolean isArchive( InputStream stream ) throws IOException {
+        stream.mark(SIGNATURE_LENGTH);
+        try {
+            int signature = 0;
+            for (int i = 0; i != SIGNATURE_LENGTH; ++i) {
+                int b = stream.read();
+                if (b == -1) return false;
+                signature |= b << (8 * i);
+            }
+            return signature == LOCAL_FILE_HEADER_SIGNATURE || signature == EMPTY_ARCHIVE_SIGNATURE;
+        } finally {
+            stream.reset();
         }
-        return zipInputStream.getNextEntry();
     }
 
-    private void addFileContent( ZipInputStream zipInputStream,
+    /**
+     * Determine whether the supplied entry is an archive that should be sequenced.
+     * 
+     * @param entry the ZIP file entry
+     * @param depth the nesting depth of the archive containing the entry, where 0 is the sequenced archive
+     * @return the MIME type of the nested archive, or null if the entry should not be sequenced as an archive
+     */
+    private String nestedArchiveMimeType( ZipEntry entry,
+                                          int depth ) {
+        if (!sequenceNestedArchives || depth >= maximumNestingDepth) return null;
+        String entryName = entry.getName().toLowerCase();
+        if (entryName.endsWith(".zip")) return MimeTypeConstants.ZIP;
+        if (entryName.endsWith(".jar")) return MimeTypeConstants.JAR;
+        return null;
+    }
+
+    private void addFileContent( InputStream contentStream,
                                  ZipEntry entry,
                                  Context context,
                                  Node zipFileNode ) throws RepositoryException, IOException {
@@ -117,9 +234,8 @@ public class ZipSequencer extends Sequencer {
         // on session pre-save the appropriate properties should be set automatically
         contentNode.addMixin(JcrConstants.MIX_LAST_MODIFIED);
 
-        // set the content bytes
-        byte[] contentBytes = readContent(zipInputStream);
-        org.modeshape.jcr.api.Binary contentBinary = context.valueFactory().createBinary(contentBytes);
+        // stream the content bytes into the binary store, which spools them to disk if it needs to ...
+        org.modeshape.jcr.api.Binary contentBinary = context.valueFactory().createBinary(contentStream, entry.getName());
         contentNode.setProperty(JcrConstants.JCR_DATA, contentBinary);
 
         // Figure out the mime type ...
@@ -129,35 +245,19 @@ public class ZipSequencer extends Sequencer {
         }
     }
 
-    /**
-     * Reads the content from the {@link ZipInputStream}, making sure it doesn't close the stream.
-     * 
-     * @param zipInputStream the input stream
-     * @return the content
-     * @throws IOException if there is a problem reading the stream
-     */
-    private byte[] readContent( ZipInputStream zipInputStream ) throws IOException {
-        int bufferLength = 1024;
-        byte[] buffer = new byte[bufferLength];
-        int n;
-        ByteArrayOutputStream baout = new ByteArrayOutputStream();
-        while ((n = zipInputStream.read(buffer, 0, bufferLength)) > -1) {
-            baout.write(buffer, 0, n);
-        }
-        return baout.toByteArray();
-    }
-
     /**
      * Creates (if necessary) the path from the {@link Node parentNode} to the {@link ZipEntry zip entry}, based on the name of
      * the zip entry, which should contain its absolute path.
      * 
      * @param parentNode the parent node under which the node for the ZIP entry should be created
      * @param entry the ZIP file entry
+     * @param primaryType the primary type of the node for the ZIP entry, if that node does not exist yet
      * @return the newly created node
      * @throws RepositoryException if there is a problem writing the content to the repository session
      */
     private Node createZipEntryPath( Node parentNode,
-                                     ZipEntry entry ) throws RepositoryException {
+                                     ZipEntry entry,
+                                     String primaryType ) throws RepositoryException {
         Node zipEntryNode = parentNode;
         String entryName = entry.getName();
         String[] segments = entryName.split("/");
@@ -168,10 +268,26 @@ public class ZipSequencer extends Sequencer {
             } catch (PathNotFoundException e) {
                 // the path does not exist yet - create it
                 boolean isLastSegment = (i == segments.length - 1);
-                String segmentPrimaryType = isLastSegment ? (entry.isDirectory() ? JcrConstants.NT_FOLDER : JcrConstants.NT_FILE) : JcrConstants.NT_FOLDER;
+                String segmentPrimaryType = isLastSegment ? primaryType : JcrConstants.NT_FOLDER;
                 zipEntryNode = zipEntryNode.addNode(segmentName, segmentPrimaryType);
             }
         }
         return zipEntryNode;
     }
+
+    /**
+     * A stream over the content of the current entry of a {@link ZipInputStream}, which does not close the archive's stream when
+     * the consumer (e.g., the binary store) closes it. The next entry is read by the sequencer once the consumer is done.
+     */
+    private static final class EntryInputStream extends FilterInputStream {
+
+        EntryInputStream( ZipInputStream zipInputStream ) {
+            super(zipInputStream);
+        }
+
+        @Override
+        public void close() {
+            // leave the archive's stream open ...
+        }
+    }
 }
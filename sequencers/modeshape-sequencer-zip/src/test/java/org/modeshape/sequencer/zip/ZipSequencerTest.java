@@ -26,9 +26,17 @@ package org.modeshape.sequencer.zip;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 import javax.jcr.Binary;
 import javax.jcr.Node;
 import javax.jcr.RepositoryException;
@@ -106,6 +114,107 @@ public class ZipSequencerTest extends AbstractSequencerTest {
         assertNode(path + "/testFolder/testInnerFolder/MODE-960-fix2.patch/jcr:content", JcrConstants.NT_RESOURCE);
     }
 
+    @Test
+    public void shouldStoreNestedArchivesAsFilesByDefault() throws Exception {
+        String filename = "nested.zip";
+        createNodeWithContentFromFile(filename, filename);
+
+        Node outputZip = getOutputNode(rootNode, "zip/" + filename);
+        assertNotNull(outputZip);
+        assertFile(outputZip, "readme.txt", "This archive contains another archive\n");
+
+        String path = "/zip/nested.zip";
+        assertNode(path + "/archives", JcrConstants.NT_FOLDER);
+        assertNode(path + "/archives/inner.zip", JcrConstants.NT_FILE);
+        assertNode(path + "/archives/inner.zip/jcr:content", JcrConstants.NT_RESOURCE);
+    }
+
+    @Test
+    public void shouldSequenceNestedArchives() throws Exception {
+        String filename = "nested.zip";
+        createNodeWithContentFromFile("nested/" + filename, filename);
+
+        Node outputZip = getOutputNode(rootNode, "zip/nested/" + filename);
+        assertNotNull(outputZip);
+        assertEquals(ZipLexicon.FILE, outputZip.getPrimaryNodeType().getName());
+        assertFile(outputZip, "readme.txt", "This archive contains another archive\n");
+
+        Node innerZip = outputZip.getNode("archives/inner.zip");
+        assertEquals(ZipLexicon.FILE, innerZip.getPrimaryNodeType().getName());
+        assertEquals(ZipSequencer.MimeTypeConstants.ZIP, innerZip.getProperty(JcrConstants.JCR_MIME_TYPE).getString());
+        assertFile(innerZip, "test1.txt", "This is a test content of file 1\n");
+        assertFile(innerZip.getNode("test subfolder"), "test2.txt", "This is a test content of file2\n");
+    }
+
+    @Test
+    public void shouldSequenceZipWithLargeEntry() throws Exception {
+        // Create an archive with an entry that is much larger than the archive itself ...
+        long entrySize = 64L * 1024 * 1024;
+        byte[] line = new byte[1024];
+        Arrays.fill(line, (byte)'a');
+        line[line.length - 1] = '\n';
+        File archive = File.createTempFile("large", ".zip");
+        try {
+            ZipOutputStream zipOutputStream = new ZipOutputStream(new FileOutputStream(archive));
+            try {
+                zipOutputStream.putNextEntry(new ZipEntry("large.txt"));
+                for (long written = 0; written < entrySize; written += line.length) {
+                    zipOutputStream.write(line);
+                }
+                zipOutputStream.closeEntry();
+            } finally {
+                zipOutputStream.close();
+            }
+
+            FileInputStream archiveStream = new FileInputStream(archive);
+            try {
+                Node parent = rootNode.addNode("large.zip");
+                Node content = parent.addNode(JcrConstants.JCR_CONTENT);
+                content.setProperty(JcrConstants.JCR_DATA,
+                                    ((javax.jcr.Session)session).getValueFactory().createBinary(archiveStream));
+                session.save();
+            } finally {
+                archiveStream.close();
+            }
+        } finally {
+            archive.delete();
+        }
+
+        Node outputZip = getOutputNode(rootNode, "zip/large.zip");
+        assertNotNull(outputZip);
+        assertFile(outputZip, "large.txt", null);
+        Binary fileData = outputZip.getProperty("large.txt/jcr:content/jcr:data").getBinary();
+        assertEquals(entrySize, fileData.getSize());
+    }
+
+    @Test
+    public void shouldStoreNestedEntryThatIsNotAnArchiveAsFile() throws Exception {
+        String entryContent = "This is not an archive\n";
+        ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        ZipOutputStream zipOutputStream = new ZipOutputStream(archive);
+        try {
+            zipOutputStream.putNextEntry(new ZipEntry("archives/fake.zip"));
+            zipOutputStream.write(entryContent.getBytes("UTF-8"));
+            zipOutputStream.closeEntry();
+        } finally {
+            zipOutputStream.close();
+        }
+
+        Node parent = rootNode.addNode("nested").addNode("fake.zip");
+        Node content = parent.addNode(JcrConstants.JCR_CONTENT);
+        content.setProperty(JcrConstants.JCR_DATA,
+                            ((javax.jcr.Session)session).getValueFactory()
+                                                        .createBinary(new ByteArrayInputStream(archive.toByteArray())));
+        session.save();
+
+        Node outputZip = getOutputNode(rootNode, "zip/nested/fake.zip");
+        assertNotNull(outputZip);
+        Node fakeZip = outputZip.getNode("archives/fake.zip");
+        assertEquals(JcrConstants.NT_FILE, fakeZip.getPrimaryNodeType().getName());
+        Binary fileData = fakeZip.getProperty("jcr:content/jcr:data").getBinary();
+        assertEquals(entryContent, IoUtil.read(fileData.getStream()));
+    }
+
     @Test
     public void shouldFailIfZipCorrupted() throws Throwable {
         String filename = "corrupt.zip";
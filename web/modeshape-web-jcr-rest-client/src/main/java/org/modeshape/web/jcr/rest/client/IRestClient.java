@@ -29,6 +29,7 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import org.modeshape.web.jcr.rest.client.Status.Severity;
+import org.modeshape.web.jcr.rest.client.domain.QueryPage;
 import org.modeshape.web.jcr.rest.client.domain.QueryRow;
 import org.modeshape.web.jcr.rest.client.domain.Repository;
 import org.modeshape.web.jcr.rest.client.domain.Server;
@@ -245,4 +246,50 @@ public interface IRestClient {
                           int offset,
                           int limit,
                           Map<String, String> variables ) throws Exception;
+
+    /**
+     * Executes the given query in the workspace, returning only the first page of rows. The next pages are retrieved with
+     * {@link #nextQueryPage(Workspace, String, int)}, and the server keeps a cursor over the results until the last page has been
+     * retrieved or the query is {@link #closeQuery(Workspace, String) closed}.
+     * 
+     * @param workspace the workspace where the query will be executed (never <code>null</code>)
+     * @param language the JCR query language to use (never <code>null</code>)
+     * @param statement the query itself (never <code>null</code>)
+     * @param pageSize the maximum number of rows in each page; must be positive
+     * @param variables the query variables; may be null
+     * @return the first page of rows (never <code>null</code>)
+     * @throws Exception if there is a problem executing the query
+     * @since 3.7
+     */
+    QueryPage openQuery( Workspace workspace,
+                         String language,
+                         String statement,
+                         int pageSize,
+                         Map<String, String> variables ) throws Exception;
+
+    /**
+     * Retrieves the next page of rows of a query opened with {@link #openQuery(Workspace, String, String, int, Map)}.
+     * 
+     * @param workspace the workspace where the query was executed (never <code>null</code>)
+     * @param handle the handle of the cursor, as returned with the previous page (never <code>null</code>)
+     * @param pageSize the maximum number of rows in the page; if not positive, the page size of the query is used
+     * @return the next page of rows (never <code>null</code>)
+     * @throws Exception if there is a problem retrieving the rows, including when the cursor has expired
+     * @since 3.7
+     */
+    QueryPage nextQueryPage( Workspace workspace,
+                             String handle,
+                             int pageSize ) throws Exception;
+
+    /**
+     * Closes the cursor of a query opened with {@link #openQuery(Workspace, String, String, int, Map)} before all the pages have
+     * been retrieved.
+     * 
+     * @param workspace the workspace where the query was executed (never <code>null</code>)
+     * @param handle the handle of the cursor, as returned with the last page (never <code>null</code>)
+     * @throws Exception if there is a problem closing the cursor
+     * @since 3.7
+     */
+    void closeQuery( Workspace workspace,
+                     String handle ) throws Exception;
 }
@@ -0,0 +1,89 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ * See the AUTHORS.txt file in the distribution for a full listing of 
+ * individual contributors. 
+ *
+ * ModeShape is free software. Unless otherwise indicated, all code in ModeShape
+ * is licensed to you under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * ModeShape is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.modeshape.web.jcr.rest.client.domain;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import org.modeshape.common.annotation.Immutable;
+
+/**
+ * A page of the rows returned by a query which was executed with a page size.
+ * 
+ * @since 3.7
+ */
+@Immutable
+public class QueryPage {
+
+    private final Map<String, String> columnTypes;
+    private final List<QueryRow> rows;
+    private final String handle;
+
+    public QueryPage( Map<String, String> columnTypes,
+                      List<QueryRow> rows,
+                      String handle ) {
+        // columnTypes is expected to already be an unmodifiable map
+        this.columnTypes = columnTypes;
+        this.rows = Collections.unmodifiableList(rows);
+        this.handle = handle;
+    }
+
+    /**
+     * @return the [columnName, columnType] mappings of the query (never <code>null</code>)
+     */
+    public Map<String, String> getColumnTypes() {
+        return columnTypes;
+    }
+
+    /**
+     * @return the rows in this page (never <code>null</code>)
+     */
+    public List<QueryRow> getRows() {
+        return rows;
+    }
+
+    /**
+     * @return the handle of the cursor from which the next page can be retrieved, or <code>null</code> if this is the last page
+     */
+    public String getHandle() {
+        return handle;
+    }
+
+    /**
+     * @return <code>true</code> if there are more rows after this page
+     */
+    public boolean hasMoreRows() {
+        return handle != null;
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return rows.toString();
+    }
+}
@@ -44,6 +44,7 @@ import org.modeshape.web.jcr.rest.client.IRestClient;
 import org.modeshape.web.jcr.rest.client.RestClientI18n;
 import org.modeshape.web.jcr.rest.client.Status;
 import org.modeshape.web.jcr.rest.client.Status.Severity;
+import org.modeshape.web.jcr.rest.client.domain.QueryPage;
 import org.modeshape.web.jcr.rest.client.domain.QueryRow;
 import org.modeshape.web.jcr.rest.client.domain.Repository;
 import org.modeshape.web.jcr.rest.client.domain.Server;
@@ -676,7 +677,6 @@ public final class JsonRestClient implements IRestClient {
         return query(workspace, language, statement, 0, -1, null);
     }
 
-    @SuppressWarnings( "unchecked" )
     @Override
     public List<QueryRow> query( Workspace workspace,
                                  String language,
@@ -755,50 +755,193 @@ public final class JsonRestClient implements IRestClient {
 
             String response = connection.read();
             JSONObject result = new JSONObject(response);
-            Map<String, String> columnTypes = new HashMap<String, String>();
+            return queryRows(result, columnTypes(result));
+        } finally {
+            if (connection != null) {
+                LOGGER.trace("query: leaving");
+                connection.disconnect();
+            }
+        }
+    }
+
+    @Override
+    public QueryPage openQuery( Workspace workspace,
+                                String language,
+                                String statement,
+                                int pageSize,
+                                Map<String, String> variables ) throws Exception {
+        assert workspace != null;
+        assert language != null;
+        assert statement != null;
+        assert pageSize > 0;
+
+        LOGGER.trace("openQuery: workspace={0}, language={1}, file={2}, pageSize={3}",
+                     workspace.getName(),
+                     language,
+                     statement,
+                     pageSize);
+
+        HttpClientConnection connection = null;
 
-            // Get the result types ...
-            if (result.has("types")) {
-                JSONObject types = (JSONObject)result.get("types");
+        try {
+            WorkspaceNode workspaceNode = new WorkspaceNode(workspace);
+            StringBuilder url = new StringBuilder(workspaceNode.getQueryUrl().toString());
+            url.append("?pageSize=").append(pageSize);
 
-                for (Iterator<String> iter = types.keys(); iter.hasNext();) {
-                    String columnName = iter.next();
-                    columnTypes.put(columnName, types.getString(columnName));
+            if (variables != null && !variables.isEmpty()) {
+                for (Map.Entry<String, String> varEntry : variables.entrySet()) {
+                    String varName = varEntry.getKey();
+                    String varValue = varEntry.getValue();
+                    if (varName == null || varName.trim().length() == 0) continue;
+                    if (varValue == null || varValue.trim().length() == 0) continue;
+                    url.append('&').append(varName).append('=').append(varValue);
                 }
             }
 
-            Map<String, String> types = Collections.unmodifiableMap(columnTypes);
-
-            // Get the rows ...
-            JSONArray rows = (JSONArray)result.get("rows");
-            List<QueryRow> queryRows = new LinkedList<QueryRow>();
-            for (int i = 0; i < rows.length(); i++) {
-                JSONObject row = (JSONObject)rows.get(i);
-                Map<String, Object> values = new HashMap<String, Object>();
-
-                for (Iterator<String> valueIter = row.keys(); valueIter.hasNext();) {
-                    String valueName = valueIter.next();
-                    if (valueName.endsWith(IJsonConstants.BASE64_SUFFIX)) {
-                        byte[] data = Base64.decode(row.getString(valueName));
-                        valueName = valueName.substring(0, valueName.length() - IJsonConstants.BASE64_SUFFIX.length());
-                        values.put(valueName, data);
-                    } else {
-                        values.put(valueName, row.getString(valueName));
-                    }
-                }
+            connection = connect(workspace.getServer(), new URL(url.toString()), RequestMethod.POST);
+            connection.setContentType(contentTypeFor(language));
+            connection.write(statement.getBytes());
 
-                queryRows.add(new QueryRow(types, values));
+            // A query only succeeds if the response is 200 ...
+            int responseCode = connection.getResponseCode();
+            LOGGER.trace("responseCode={0}", responseCode);
+            if (responseCode != HttpURLConnection.HTTP_OK) {
+                // Something other than 200, so fail ...
+                String response = connection.read();
+                String msg = "Error while executiong {0} query \"{1}\" with page size {2}: {3}";
+                LOGGER.debug(msg, language, statement, pageSize, response);
+                throw new RuntimeException(RestClientI18n.invalidQueryMsg.text(response));
             }
 
-            return queryRows;
+            return queryPage(connection.read());
         } finally {
             if (connection != null) {
-                LOGGER.trace("query: leaving");
+                LOGGER.trace("openQuery: leaving");
+                connection.disconnect();
+            }
+        }
+    }
+
+    @Override
+    public QueryPage nextQueryPage( Workspace workspace,
+                                    String handle,
+                                    int pageSize ) throws Exception {
+        assert workspace != null;
+        assert handle != null;
+
+        LOGGER.trace("nextQueryPage: workspace={0}, handle={1}, pageSize={2}", workspace.getName(), handle, pageSize);
+
+        HttpClientConnection connection = null;
+
+        try {
+            WorkspaceNode workspaceNode = new WorkspaceNode(workspace);
+            StringBuilder url = new StringBuilder(workspaceNode.getQueryUrl().toString());
+            url.append('/').append(JsonUtils.encode(handle));
+            if (pageSize > 0) {
+                url.append("?pageSize=").append(pageSize);
+            }
+
+            connection = connect(workspace.getServer(), new URL(url.toString()), RequestMethod.GET);
+
+            int responseCode = connection.getResponseCode();
+            LOGGER.trace("responseCode={0}", responseCode);
+            if (responseCode != HttpURLConnection.HTTP_OK) {
+                // Something other than 200, so fail ...
+                String response = connection.read();
+                LOGGER.debug("Error while reading the next page of query results with handle {0}: {1}", handle, response);
+                throw new RuntimeException(RestClientI18n.invalidQueryMsg.text(response));
+            }
+
+            return queryPage(connection.read());
+        } finally {
+            if (connection != null) {
+                LOGGER.trace("nextQueryPage: leaving");
                 connection.disconnect();
             }
         }
     }
 
+    @Override
+    public void closeQuery( Workspace workspace,
+                            String handle ) throws Exception {
+        assert workspace != null;
+        assert handle != null;
+
+        LOGGER.trace("closeQuery: workspace={0}, handle={1}", workspace.getName(), handle);
+
+        HttpClientConnection connection = null;
+
+        try {
+            WorkspaceNode workspaceNode = new WorkspaceNode(workspace);
+            URL url = new URL(workspaceNode.getQueryUrl().toString() + '/' + JsonUtils.encode(handle));
+            connection = connect(workspace.getServer(), url, RequestMethod.DELETE);
+
+            int responseCode = connection.getResponseCode();
+            LOGGER.trace("responseCode={0}", responseCode);
+            // The cursor may already have expired on the server ...
+            if (responseCode != HttpURLConnection.HTTP_NO_CONTENT && responseCode != HttpURLConnection.HTTP_NOT_FOUND) {
+                LOGGER.error(RestClientI18n.connectionErrorMsg, responseCode, "closeQuery");
+                throw new RuntimeException(RestClientI18n.invalidQueryMsg.text(connection.read()));
+            }
+        } finally {
+            if (connection != null) {
+                LOGGER.trace("closeQuery: leaving");
+                connection.disconnect();
+            }
+        }
+    }
+
+    private QueryPage queryPage( String response ) throws Exception {
+        JSONObject result = new JSONObject(response);
+        Map<String, String> types = columnTypes(result);
+        String handle = result.has("handle") ? result.getString("handle") : null;
+        return new QueryPage(types, queryRows(result, types), handle);
+    }
+
+    @SuppressWarnings( "unchecked" )
+    private Map<String, String> columnTypes( JSONObject result ) throws JSONException {
+        Map<String, String> columnTypes = new HashMap<String, String>();
+
+        // Get the result types ...
+        if (result.has("types")) {
+            JSONObject types = (JSONObject)result.get("types");
+
+            for (Iterator<String> iter = types.keys(); iter.hasNext();) {
+                String columnName = iter.next();
+                columnTypes.put(columnName, types.getString(columnName));
+            }
+        }
+
+        return Collections.unmodifiableMap(columnTypes);
+    }
+
+    @SuppressWarnings( "unchecked" )
+    private List<QueryRow> queryRows( JSONObject result,
+                                      Map<String, String> types ) throws Exception {
+        // Get the rows ...
+        JSONArray rows = (JSONArray)result.get("rows");
+        List<QueryRow> queryRows = new LinkedList<QueryRow>();
+        for (int i = 0; i < rows.length(); i++) {
+            JSONObject row = (JSONObject)rows.get(i);
+            Map<String, Object> values = new HashMap<String, Object>();
+
+            for (Iterator<String> valueIter = row.keys(); valueIter.hasNext();) {
+                String valueName = valueIter.next();
+                if (valueName.endsWith(IJsonConstants.BASE64_SUFFIX)) {
+                    byte[] data = Base64.decode(row.getString(valueName));
+                    valueName = valueName.substring(0, valueName.length() - IJsonConstants.BASE64_SUFFIX.length());
+                    values.put(valueName, data);
+                } else {
+                    values.put(valueName, row.getString(valueName));
+                }
+            }
+
+            queryRows.add(new QueryRow(types, values));
+        }
+
+        return queryRows;
+    }
+
     @Override
     public String planForQuery( Workspace workspace,
                                 String language,
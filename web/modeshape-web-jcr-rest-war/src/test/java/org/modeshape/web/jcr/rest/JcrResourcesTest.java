@@ -24,6 +24,7 @@
 package org.modeshape.web.jcr.rest;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import java.io.ByteArrayInputStream;
@@ -521,6 +522,26 @@ public class JcrResourcesTest {
         jcrSQL2Query(query, queryUrl()).isOk().isJSON().isJSONObjectLikeFile(jcrSQL2Result());
     }
 
+    @Test
+    public void shouldReturnQueryResultsInPages() throws Exception {
+        doPost(queryNode(), itemsUrl(TEST_NODE)).isCreated();
+        doPost(queryNode(), itemsUrl(TEST_NODE, "child")).isCreated();
+        doPost(queryNode(), itemsUrl(TEST_NODE, "child")).isCreated();
+        doPost(queryNode(), itemsUrl(TEST_NODE, "child")).isCreated();
+
+        String query = "SELECT * FROM [nt:unstructured] WHERE ISCHILDNODE('/" + TEST_NODE + "')";
+        JSONObject firstPage = jcrSQL2Query(query, queryUrl() + "?pageSize=2").isOk().json();
+        assertEquals(2, firstPage.getJSONArray("rows").length());
+        String handle = firstPage.getString("handle");
+
+        JSONObject lastPage = doGet(queryUrl(handle)).isOk().json();
+        assertEquals(1, lastPage.getJSONArray("rows").length());
+        assertFalse(lastPage.has("handle"));
+
+        // The cursor is closed once the last page has been read ...
+        doGet(queryUrl(handle)).isNotFound();
+    }
+
     protected String jcrSQL2Result() {
         return "v1/query/query_result_jcrSql2.json";
     }
@@ -545,6 +566,14 @@ public class JcrResourcesTest {
         return new Response(newConnection("GET", null, url));
     }
 
+    protected Response doGet( String url,
+                              String headerName,
+                              String headerValue ) throws Exception {
+        HttpURLConnection connection = newConnection("GET", null, url);
+        connection.setRequestProperty(headerName, headerValue);
+        return new Response(connection);
+    }
+
     protected Response doPost( String payloadFile,
                                String url ) throws Exception {
         InputStream is = null;
@@ -864,6 +893,23 @@ public class JcrResourcesTest {
             return hasCode(HttpURLConnection.HTTP_OK);
         }
 
+        protected Response isPartialContent() throws Exception {
+            return hasCode(HttpURLConnection.HTTP_PARTIAL);
+        }
+
+        protected Response isNotModified() throws Exception {
+            return hasCode(HttpURLConnection.HTTP_NOT_MODIFIED);
+        }
+
+        protected Response hasContentRange( String contentRange ) {
+            hasHeader("Content-Range", contentRange);
+            return this;
+        }
+
+        protected String getHeader( String name ) {
+            return connection.getHeaderField(name);
+        }
+
         protected Response isCreated() throws Exception {
             return hasCode(HttpURLConnection.HTTP_CREATED);
         }
@@ -29,6 +29,7 @@ import static org.hamcrest.core.IsNull.notNullValue;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 import java.io.ByteArrayInputStream;
@@ -286,6 +287,27 @@ public class ModeShapeRestServiceTest extends JcrResourcesTest {
     public void shouldRetrieveRootNodeWhenDeprecatedDepthSet() throws Exception {
     }
 
+    @Test
+    public void shouldStreamAllRowsOfQueryResult() throws Exception {
+        doPost(queryNode(), itemsUrl(TEST_NODE)).isCreated();
+        for (int i = 0; i != 25; ++i) {
+            doPost(queryNode(), itemsUrl(TEST_NODE, "child")).isCreated();
+        }
+
+        String query = "SELECT * FROM [nt:unstructured] WHERE ISCHILDNODE('/" + TEST_NODE + "')";
+        JSONObject result = jcrSQL2Query(query, queryUrl()).isOk().json();
+        assertTrue(result.has("columns"));
+        assertEquals(25, result.getJSONArray("rows").length());
+
+        result = jcrSQL2Query(query, queryUrl() + "?offset=20&limit=10").isOk().json();
+        assertEquals(5, result.getJSONArray("rows").length());
+
+        // There is no "rows" field when there are no rows ...
+        result = jcrSQL2Query(query, queryUrl() + "?offset=25").isOk().json();
+        assertTrue(result.has("columns"));
+        assertFalse(result.has("rows"));
+    }
+
     @Test
     public void shouldRetrieveBinaryPropertyValue() throws Exception {
         doPost(nodeWithBinaryProperty(), itemsUrl(TEST_NODE)).isCreated();
@@ -299,6 +321,24 @@ public class ModeShapeRestServiceTest extends JcrResourcesTest {
         assertEquals("testValue", new String(bos.toByteArray()));
     }
 
+    @Test
+    public void shouldRetrieveRangeOfBinaryPropertyValue() throws Exception {
+        doPost(nodeWithBinaryProperty(), itemsUrl(TEST_NODE)).isCreated();
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        doGet(binaryUrl(TEST_NODE, binaryPropertyName()), "Range", "bytes=4-").isPartialContent()
+                                                                             .hasContentRange("bytes 4-8/9")
+                                                                             .copyInputStream(bos);
+        assertEquals("Value", new String(bos.toByteArray()));
+    }
+
+    @Test
+    public void shouldReturnNotModifiedForMatchingBinaryEntityTag() throws Exception {
+        doPost(nodeWithBinaryProperty(), itemsUrl(TEST_NODE)).isCreated();
+        String eTag = doGet(binaryUrl(TEST_NODE, binaryPropertyName())).isOk().getHeader("ETag");
+        assertNotNull(eTag);
+        doGet(binaryUrl(TEST_NODE, binaryPropertyName()), "If-None-Match", eTag).isNotModified();
+    }
+
     private String newBinaryProperty() {
         return "v2/post/new_binary_property_response.json";
     }
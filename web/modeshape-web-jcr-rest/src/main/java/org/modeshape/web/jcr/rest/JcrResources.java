@@ -88,6 +88,11 @@ import org.modeshape.web.jcr.rest.handler.ServerHandler;
  * application/jcr+sql, application/jcr+sql2, or application/search)</td>
  * <td>POST</td>
  * </tr>
+ * <tr>
+ * <td>/resources/{repositoryName}/{workspaceName}/query/{handle}</td>
+ * <td>retrieves the next page of the results of a query executed with a "pageSize", or closes the cursor over those results</td>
+ * <td>GET, DELETE</td>
+ * </tr>
  * </table>
  * <h3>Binary data</h3>
  * <p>
@@ -338,6 +343,8 @@ public class JcrResources {
      * @param limit the maximum number of rows to be returned. If this value is greater than the size of the result set, the
      *        entire result set will be returned. If this value is less than zero, the entire result set will be returned. The
      *        results are counted from the record specified in the offset parameter.
+     * @param pageSize the number of rows in each page of the results. If this value is positive, only the first page is returned,
+     *        together with the handle of a cursor from which the next pages can be retrieved, and the limit is ignored.
      * @param uriInfo the information about the URI (from which the other query parameters will be obtained)
      * @param requestContent the query expression
      * @return the JSON-encoded representation of the query results.
@@ -354,6 +361,7 @@ public class JcrResources {
                                   @PathParam( "workspaceName" ) String rawWorkspaceName,
                                   @QueryParam( "offset" ) @DefaultValue( "-1" ) long offset,
                                   @QueryParam( "limit" ) @DefaultValue( "-1" ) long limit,
+                                  @QueryParam( "pageSize" ) @DefaultValue( "-1" ) int pageSize,
                                   @Context UriInfo uriInfo,
                                   String requestContent ) throws InvalidQueryException, RepositoryException, JSONException {
         return queryHandler.postItem(request,
@@ -363,6 +371,7 @@ public class JcrResources {
                                      requestContent,
                                      offset,
                                      limit,
+                                     pageSize,
                                      uriInfo);
     }
 
@@ -381,6 +390,8 @@ public class JcrResources {
      * @param limit the maximum number of rows to be returned. If this value is greater than the size of the result set, the
      *        entire result set will be returned. If this value is less than zero, the entire result set will be returned. The
      *        results are counted from the record specified in the offset parameter.
+     * @param pageSize the number of rows in each page of the results. If this value is positive, only the first page is returned,
+     *        together with the handle of a cursor from which the next pages can be retrieved, and the limit is ignored.
      * @param uriInfo the information about the URI (from which the other query parameters will be obtained)
      * @param requestContent the query expression
      * @return the JSON-encoded representation of the query results.
@@ -397,6 +408,7 @@ public class JcrResources {
                                    @PathParam( "workspaceName" ) String rawWorkspaceName,
                                    @QueryParam( "offset" ) @DefaultValue( "-1" ) long offset,
                                    @QueryParam( "limit" ) @DefaultValue( "-1" ) long limit,
+                                   @QueryParam( "pageSize" ) @DefaultValue( "-1" ) int pageSize,
                                    @Context UriInfo uriInfo,
                                    String requestContent ) throws InvalidQueryException, RepositoryException, JSONException {
         return queryHandler.postItem(request,
@@ -406,6 +418,7 @@ public class JcrResources {
                                      requestContent,
                                      offset,
                                      limit,
+                                     pageSize,
                                      uriInfo);
     }
 
@@ -424,6 +437,8 @@ public class JcrResources {
      * @param limit the maximum number of rows to be returned. If this value is greater than the size of the result set, the
      *        entire result set will be returned. If this value is less than zero, the entire result set will be returned. The
      *        results are counted from the record specified in the offset parameter.
+     * @param pageSize the number of rows in each page of the results. If this value is positive, only the first page is returned,
+     *        together with the handle of a cursor from which the next pages can be retrieved, and the limit is ignored.
      * @param uriInfo the information about the URI (from which the other query parameters will be obtained)
      * @param requestContent the query expression
      * @return the JSON-encoded representation of the query results.
@@ -440,6 +455,7 @@ public class JcrResources {
                                     @PathParam( "workspaceName" ) String rawWorkspaceName,
                                     @QueryParam( "offset" ) @DefaultValue( "-1" ) long offset,
                                     @QueryParam( "limit" ) @DefaultValue( "-1" ) long limit,
+                                    @QueryParam( "pageSize" ) @DefaultValue( "-1" ) int pageSize,
                                     @Context UriInfo uriInfo,
                                     String requestContent ) throws InvalidQueryException, RepositoryException, JSONException {
         return queryHandler.postItem(request,
@@ -449,6 +465,7 @@ public class JcrResources {
                                      requestContent,
                                      offset,
                                      limit,
+                                     pageSize,
                                      uriInfo);
     }
 
@@ -467,6 +484,8 @@ public class JcrResources {
      * @param limit the maximum number of rows to be returned. If this value is greater than the size of the result set, the
      *        entire result set will be returned. If this value is less than zero, the entire result set will be returned. The
      *        results are counted from the record specified in the offset parameter.
+     * @param pageSize the number of rows in each page of the results. If this value is positive, only the first page is returned,
+     *        together with the handle of a cursor from which the next pages can be retrieved, and the limit is ignored.
      * @param uriInfo the information about the URI (from which the other query parameters will be obtained)
      * @param requestContent the query expression
      * @return the JSON-encoded representation of the query results.
@@ -483,6 +502,7 @@ public class JcrResources {
                                       @PathParam( "workspaceName" ) String rawWorkspaceName,
                                       @QueryParam( "offset" ) @DefaultValue( "-1" ) long offset,
                                       @QueryParam( "limit" ) @DefaultValue( "-1" ) long limit,
+                                      @QueryParam( "pageSize" ) @DefaultValue( "-1" ) int pageSize,
                                       @Context UriInfo uriInfo,
                                       String requestContent ) throws RepositoryException, JSONException {
         return queryHandler.postItem(request,
@@ -492,6 +512,54 @@ public class JcrResources {
                                      requestContent,
                                      offset,
                                      limit,
+                                     pageSize,
                                      uriInfo);
     }
+
+    /**
+     * Retrieves the next page of the results of a query which was executed with a page size.
+     * 
+     * @param request the servlet request; may not be null or unauthenticated
+     * @param rawRepositoryName the URL-encoded repository name
+     * @param rawWorkspaceName the URL-encoded workspace name
+     * @param handle the handle of the cursor over the results, as returned with the previous page
+     * @param offset the offset of the first row to be returned, which may not be before the end of the previous page. If this
+     *        value is less than 0, the page starts after the previous page.
+     * @param pageSize the maximum number of rows to be returned. If this value is less than 1, the page size of the query is used.
+     * @return the JSON-encoded representation of the page, which contains the handle of the cursor if there are more rows.
+     * @throws JSONException if there is an error encoding the rows
+     * @throws RepositoryException if any other error occurs
+     */
+    @GET
+    @Path( "{repositoryName}/{workspaceName}/query/{handle}" )
+    @Produces( {MediaType.TEXT_PLAIN, MediaType.APPLICATION_JSON, MediaType.TEXT_HTML} )
+    public String getQueryPage( @Context HttpServletRequest request,
+                                @PathParam( "repositoryName" ) String rawRepositoryName,
+                                @PathParam( "workspaceName" ) String rawWorkspaceName,
+                                @PathParam( "handle" ) String handle,
+                                @QueryParam( "offset" ) @DefaultValue( "-1" ) long offset,
+                                @QueryParam( "pageSize" ) @DefaultValue( "-1" ) int pageSize )
+        throws RepositoryException, JSONException {
+        return queryHandler.nextPage(request, rawRepositoryName, rawWorkspaceName, handle, offset, pageSize);
+    }
+
+    /**
+     * Closes the cursor over the results of a query which was executed with a page size, before all the pages have been
+     * retrieved.
+     * 
+     * @param request the servlet request; may not be null or unauthenticated
+     * @param rawRepositoryName the URL-encoded repository name
+     * @param rawWorkspaceName the URL-encoded workspace name
+     * @param handle the handle of the cursor over the results
+     * @return a {@code non-null} {@link Response} instance.
+     */
+    @DELETE
+    @Path( "{repositoryName}/{workspaceName}/query/{handle}" )
+    public Response closeQuery( @Context HttpServletRequest request,
+                                @PathParam( "repositoryName" ) String rawRepositoryName,
+                                @PathParam( "workspaceName" ) String rawWorkspaceName,
+                                @PathParam( "handle" ) String handle ) {
+        queryHandler.closeCursor(request, rawRepositoryName, rawWorkspaceName, handle);
+        return Response.noContent().build();
+    }
 }
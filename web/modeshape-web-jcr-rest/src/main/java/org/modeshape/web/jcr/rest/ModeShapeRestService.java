@@ -25,7 +25,6 @@
 package org.modeshape.web.jcr.rest;
 
 import java.io.InputStream;
-import javax.jcr.Binary;
 import javax.jcr.Property;
 import javax.jcr.PropertyType;
 import javax.jcr.RepositoryException;
@@ -126,12 +125,19 @@ import org.modeshape.web.jcr.rest.model.RestWorkspaces;
  * application/jcr+sql, application/jcr+sql2, or application/search)</td>
  * <td>POST</td>
  * </tr>
+ * <tr>
+ * <td>/resources/{repositoryName}/{workspaceName}/query/{handle}</td>
+ * <td>retrieves the next page of the results of a query executed with a "pageSize", or closes the cursor over those results</td>
+ * <td>GET, DELETE</td>
+ * </tr>
  * </table>
  * <h3>Binary data</h3>
  * <p>
  * When working with binary values, the <i>/resources/{repositoryName}/{workspaceName}/binary/{path}</i> method should be used.
  * When returning information involving binary values (either nodes with binary properties or binary properties directly), the
- * response will contain an URL which can be then called to retrieve the actual content of the binary value.
+ * response will contain an URL which can be then called to retrieve the actual content of the binary value. Retrieving the content
+ * supports byte {@code Range} requests and conditional requests via the {@code ETag} (derived from the SHA-1 of the content) and
+ * {@code If-None-Match} headers.
  * </p>
  * 
  * @author Horia Chiorean (hchiorea@redhat.com)
@@ -188,8 +194,8 @@ public final class ModeShapeRestService {
      * @param mimeType an optional {@link String} representing the "already-known" mime-type of the binary. Can be {@code null}
      * @param contentDisposition an optional {@link String} representing the client-preferred content disposition of the respose.
      *        Can be {@code null}
-     * @return the binary stream of the requested binary property or NOT_FOUND if either the property isn't found or it isn't a
-     *         binary
+     * @return the binary stream (or the requested ranges of it) of the requested binary property, NOT_MODIFIED if the client's
+     *         copy is current, or NOT_FOUND if either the property isn't found or it isn't a binary
      * @throws RepositoryException if any JCR related operation fails, including the case when the path to the property isn't
      *         valid.
      */
@@ -208,7 +214,6 @@ public final class ModeShapeRestService {
                            .entity(new RestException("The property " + binaryProperty.getPath() + " is not a binary"))
                            .build();
         }
-        Binary binary = binaryProperty.getBinary();
         if (StringUtil.isBlank(mimeType)) {
             mimeType = binaryHandler.getDefaultMimeType(binaryProperty);
         }
@@ -216,7 +221,7 @@ public final class ModeShapeRestService {
             contentDisposition = binaryHandler.getDefaultContentDisposition(binaryProperty);
         }
 
-        return Response.ok(binary.getStream(), mimeType).header("Content-Disposition", contentDisposition).build();
+        return binaryHandler.getBinaryContent(request, binaryProperty, mimeType, contentDisposition);
     }
 
     /**
@@ -567,6 +572,8 @@ public final class ModeShapeRestService {
      * @param limit the maximum number of rows to be returned. If this value is greater than the size of the result set, the
      *        entire result set will be returned. If this value is less than zero, the entire result set will be returned. The
      *        results are counted from the record specified in the offset parameter.
+     * @param pageSize the number of rows in each page of the results. If this value is positive, only the first page is returned,
+     *        together with the handle of a cursor from which the next pages can be retrieved, and the limit is ignored.
      * @param uriInfo the information about the URI (from which the other query parameters will be obtained)
      * @param requestContent the query expression
      * @return a {@code non-null} {@link RestQueryResult} instance.
@@ -582,6 +589,7 @@ public final class ModeShapeRestService {
                                            @PathParam( "workspaceName" ) String rawWorkspaceName,
                                            @QueryParam( "offset" ) @DefaultValue( "-1" ) long offset,
                                            @QueryParam( "limit" ) @DefaultValue( "-1" ) long limit,
+                                           @QueryParam( "pageSize" ) @DefaultValue( "-1" ) int pageSize,
                                            @Context UriInfo uriInfo,
                                            String requestContent ) throws RepositoryException {
         return queryHandler.executeQuery(request,
@@ -591,6 +599,7 @@ public final class ModeShapeRestService {
                                          requestContent,
                                          offset,
                                          limit,
+                                         pageSize,
                                          uriInfo);
     }
 
@@ -609,6 +618,8 @@ public final class ModeShapeRestService {
      * @param limit the maximum number of rows to be returned. If this value is greater than the size of the result set, the
      *        entire result set will be returned. If this value is less than zero, the entire result set will be returned. The
      *        results are counted from the record specified in the offset parameter.
+     * @param pageSize the number of rows in each page of the results. If this value is positive, only the first page is returned,
+     *        together with the handle of a cursor from which the next pages can be retrieved, and the limit is ignored.
      * @param uriInfo the information about the URI (from which the other query parameters will be obtained)
      * @param requestContent the query expression
      * @return a {@code non-null} {@link RestQueryResult} instance.
@@ -624,6 +635,7 @@ public final class ModeShapeRestService {
                                             @PathParam( "workspaceName" ) String rawWorkspaceName,
                                             @QueryParam( "offset" ) @DefaultValue( "-1" ) long offset,
                                             @QueryParam( "limit" ) @DefaultValue( "-1" ) long limit,
+                                            @QueryParam( "pageSize" ) @DefaultValue( "-1" ) int pageSize,
                                             @Context UriInfo uriInfo,
                                             String requestContent ) throws RepositoryException {
         return queryHandler.executeQuery(request,
@@ -633,6 +645,7 @@ public final class ModeShapeRestService {
                                          requestContent,
                                          offset,
                                          limit,
+                                         pageSize,
                                          uriInfo);
     }
 
@@ -651,6 +664,8 @@ public final class ModeShapeRestService {
      * @param limit the maximum number of rows to be returned. If this value is greater than the size of the result set, the
      *        entire result set will be returned. If this value is less than zero, the entire result set will be returned. The
      *        results are counted from the record specified in the offset parameter.
+     * @param pageSize the number of rows in each page of the results. If this value is positive, only the first page is returned,
+     *        together with the handle of a cursor from which the next pages can be retrieved, and the limit is ignored.
      * @param uriInfo the information about the URI (from which the other query parameters will be obtained)
      * @param requestContent the query expression
      * @return a {@code non-null} {@link RestQueryResult} instance.
@@ -665,6 +680,7 @@ public final class ModeShapeRestService {
                                              @PathParam( "workspaceName" ) String rawWorkspaceName,
                                              @QueryParam( "offset" ) @DefaultValue( "-1" ) long offset,
                                              @QueryParam( "limit" ) @DefaultValue( "-1" ) long limit,
+                                             @QueryParam( "pageSize" ) @DefaultValue( "-1" ) int pageSize,
                                              @Context UriInfo uriInfo,
                                              String requestContent ) throws RepositoryException {
         return queryHandler.executeQuery(request,
@@ -674,6 +690,7 @@ public final class ModeShapeRestService {
                                          requestContent,
                                          offset,
                                          limit,
+                                         pageSize,
                                          uriInfo);
     }
 
@@ -692,6 +709,8 @@ public final class ModeShapeRestService {
      * @param limit the maximum number of rows to be returned. If this value is greater than the size of the result set, the
      *        entire result set will be returned. If this value is less than zero, the entire result set will be returned. The
      *        results are counted from the record specified in the offset parameter.
+     * @param pageSize the number of rows in each page of the results. If this value is positive, only the first page is returned,
+     *        together with the handle of a cursor from which the next pages can be retrieved, and the limit is ignored.
      * @param uriInfo the information about the URI (from which the other query parameters will be obtained)
      * @param requestContent the query expression
      * @return a {@code non-null} {@link RestQueryResult} instance.
@@ -706,6 +725,7 @@ public final class ModeShapeRestService {
                                                @PathParam( "workspaceName" ) String rawWorkspaceName,
                                                @QueryParam( "offset" ) @DefaultValue( "-1" ) long offset,
                                                @QueryParam( "limit" ) @DefaultValue( "-1" ) long limit,
+                                               @QueryParam( "pageSize" ) @DefaultValue( "-1" ) int pageSize,
                                                @Context UriInfo uriInfo,
                                                String requestContent ) throws RepositoryException {
         return queryHandler.executeQuery(request,
@@ -715,9 +735,55 @@ public final class ModeShapeRestService {
                                          requestContent,
                                          offset,
                                          limit,
+                                         pageSize,
                                          uriInfo);
     }
 
+    /**
+     * Retrieves the next page of the results of a query which was executed with a page size.
+     * 
+     * @param request the servlet request; may not be null or unauthenticated
+     * @param rawRepositoryName the URL-encoded repository name
+     * @param rawWorkspaceName the URL-encoded workspace name
+     * @param handle the handle of the cursor over the results, as returned with the previous page
+     * @param offset the offset of the first row to be returned, which may not be before the end of the previous page. If this
+     *        value is less than 0, the page starts after the previous page.
+     * @param pageSize the maximum number of rows to be returned. If this value is less than 1, the page size of the query is used.
+     * @return a {@code non-null} {@link RestQueryResult} instance, which contains the handle of the cursor if there are more rows
+     * @throws RepositoryException if any JCR error occurs
+     */
+    @GET
+    @Path( "{repositoryName}/{workspaceName}/query/{handle}" )
+    @Produces( {MediaType.APPLICATION_JSON, MediaType.TEXT_HTML, MediaType.TEXT_PLAIN} )
+    public RestQueryResult getQueryPage( @Context HttpServletRequest request,
+                                         @PathParam( "repositoryName" ) String rawRepositoryName,
+                                         @PathParam( "workspaceName" ) String rawWorkspaceName,
+                                         @PathParam( "handle" ) String handle,
+                                         @QueryParam( "offset" ) @DefaultValue( "-1" ) long offset,
+                                         @QueryParam( "pageSize" ) @DefaultValue( "-1" ) int pageSize ) throws RepositoryException {
+        return queryHandler.nextResultPage(request, rawRepositoryName, rawWorkspaceName, handle, offset, pageSize);
+    }
+
+    /**
+     * Closes the cursor over the results of a query which was executed with a page size, before all the pages have been
+     * retrieved.
+     * 
+     * @param request the servlet request; may not be null or unauthenticated
+     * @param rawRepositoryName the URL-encoded repository name
+     * @param rawWorkspaceName the URL-encoded workspace name
+     * @param handle the handle of the cursor over the results
+     * @return a {@code non-null} {@link Response} instance.
+     */
+    @DELETE
+    @Path( "{repositoryName}/{workspaceName}/query/{handle}" )
+    public Response closeQuery( @Context HttpServletRequest request,
+                                @PathParam( "repositoryName" ) String rawRepositoryName,
+                                @PathParam( "workspaceName" ) String rawWorkspaceName,
+                                @PathParam( "handle" ) String handle ) {
+        queryHandler.closeCursor(request, rawRepositoryName, rawWorkspaceName, handle);
+        return Response.noContent().build();
+    }
+
     /**
      * Executes the XPath query contained in the body of the request against the give repository and workspace.
      * <p>
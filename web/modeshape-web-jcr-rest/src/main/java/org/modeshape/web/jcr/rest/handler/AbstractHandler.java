@@ -78,6 +78,23 @@ public abstract class AbstractHandler {
         return ACTIVE_SESSION.get();
     }
 
+    /**
+     * Returns a new session for the given workspace name in the named repository, which is not bound to the current request and
+     * must be logged out by the caller.
+     * 
+     * @param request the servlet request; may not be null or unauthenticated
+     * @param rawRepositoryName the URL-encoded name of the repository in which the session is created
+     * @param rawWorkspaceName the URL-encoded name of the workspace to which the session should be connected
+     * @return a new session with the given workspace in the named repository
+     * @throws RepositoryException if any other error occurs
+     */
+    protected Session newSession( HttpServletRequest request,
+                                  String rawRepositoryName,
+                                  String rawWorkspaceName ) throws RepositoryException {
+        assert request != null;
+        return RepositoryManager.getSession(request, repositoryNameFor(rawRepositoryName), workspaceNameFor(rawWorkspaceName));
+    }
+
     /**
      * Cleans up any resources related to {@link AbstractHandler#ACTIVE_SESSION}
      */
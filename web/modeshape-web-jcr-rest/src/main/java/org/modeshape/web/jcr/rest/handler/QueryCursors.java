@@ -0,0 +1,295 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ * See the AUTHORS.txt file in the distribution for a full listing of
+ * individual contributors.
+ *
+ * ModeShape is free software. Unless otherwise indicated, all code in ModeShape
+ * is licensed to you under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * ModeShape is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.modeshape.web.jcr.rest.handler;
+
+import java.security.Principal;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.query.QueryResult;
+import javax.jcr.query.Row;
+import javax.jcr.query.RowIterator;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import org.jboss.resteasy.spi.NotFoundException;
+import org.modeshape.common.annotation.GuardedBy;
+import org.modeshape.common.annotation.ThreadSafe;
+import org.modeshape.jcr.api.Logger;
+import org.modeshape.web.jcr.WebLogger;
+
+/**
+ * The registry of the server-side cursors over query results, which allow clients to retrieve large results page by page rather
+ * than in a single response. Each cursor owns a session that is logged out when the cursor is exhausted, closed by the client,
+ * has not been used for {@link #IDLE_TIMEOUT_IN_MILLIS a while}, or is evicted because too many cursors are open.
+ */
+@ThreadSafe
+final class QueryCursors {
+
+    /**
+     * The time after which a cursor that has not been used is closed.
+     */
+    static final long IDLE_TIMEOUT_IN_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    /**
+     * The maximum number of cursors that can be open at the same time; when exceeded, the least recently used cursor is closed.
+     */
+    static final int MAXIMUM_OPEN_CURSORS = 100;
+
+    private static final Logger LOGGER = WebLogger.getLogger(QueryCursors.class);
+
+    @GuardedBy( "this" )
+    private final Map<String, Cursor> cursorsByHandle = new LinkedHashMap<String, Cursor>(16, 0.75f, true);
+
+    /**
+     * Register a new cursor for the given query result.
+     * 
+     * @param request the request which owns the session of the cursor; may not be null
+     * @param session the session used to execute the query, which will be logged out when the cursor is closed; may not be null
+     * @param result the query result; may not be null
+     * @param rawRepositoryName the URL-encoded name of the repository; may not be null
+     * @param rawWorkspaceName the URL-encoded name of the workspace; may not be null
+     * @param pageSize the default number of rows in each page; must be positive
+     * @return the new cursor; never null
+     * @throws RepositoryException if the rows of the result cannot be obtained
+     */
+    Cursor open( CursorRequest request,
+                 Session session,
+                 QueryResult result,
+                 String rawRepositoryName,
+                 String rawWorkspaceName,
+                 int pageSize ) throws RepositoryException {
+        assert pageSize > 0;
+        Cursor cursor = new Cursor(request, session, result, rawRepositoryName, rawWorkspaceName, pageSize);
+        synchronized (this) {
+            removeExpired(System.currentTimeMillis());
+            while (cursorsByHandle.size() >= MAXIMUM_OPEN_CURSORS) {
+                Iterator<Cursor> iterator = cursorsByHandle.values().iterator();
+                Cursor eldest = iterator.next();
+                iterator.remove();
+                LOGGER.debug("Closing the least recently used query cursor {0}", eldest.handle());
+                eldest.close();
+            }
+            cursorsByHandle.put(cursor.handle(), cursor);
+        }
+        return cursor;
+    }
+
+    /**
+     * Find the open cursor with the given handle which is owned by the user of the given request.
+     * 
+     * @param request the current request; may not be null
+     * @param rawRepositoryName the URL-encoded name of the repository; may not be null
+     * @param rawWorkspaceName the URL-encoded name of the workspace; may not be null
+     * @param handle the handle of the cursor; may not be null
+     * @return the cursor; never null
+     * @throws NotFoundException if there is no such cursor, or if it belongs to another user, repository or workspace
+     */
+    Cursor get( HttpServletRequest request,
+                String rawRepositoryName,
+                String rawWorkspaceName,
+                String handle ) {
+        Cursor cursor = null;
+        synchronized (this) {
+            removeExpired(System.currentTimeMillis());
+            cursor = cursorsByHandle.get(handle);
+        }
+        if (cursor == null || !cursor.isOwnedBy(request, rawRepositoryName, rawWorkspaceName)) {
+            throw new NotFoundException("The query cursor '" + handle + "' does not exist or has expired");
+        }
+        return cursor;
+    }
+
+    /**
+     * Close the given cursor and remove it from this registry.
+     * 
+     * @param cursor the cursor; may not be null
+     */
+    void close( Cursor cursor ) {
+        synchronized (this) {
+            cursorsByHandle.remove(cursor.handle());
+        }
+        cursor.close();
+    }
+
+    @GuardedBy( "this" )
+    private void removeExpired( long now ) {
+        // The map is in access order, so the least recently used cursors are first ...
+        for (Iterator<Cursor> iterator = cursorsByHandle.values().iterator(); iterator.hasNext();) {
+            Cursor cursor = iterator.next();
+            if (now - cursor.lastUsed() < IDLE_TIMEOUT_IN_MILLIS) {
+                break;
+            }
+            iterator.remove();
+            LOGGER.debug("Closing the expired query cursor {0}", cursor.handle());
+            cursor.close();
+        }
+    }
+
+    /**
+     * A forward-only cursor over the rows of a query result.
+     */
+    @ThreadSafe
+    static final class Cursor {
+        private final String handle = UUID.randomUUID().toString();
+        private final CursorRequest request;
+        private final String userName;
+        private final String rawRepositoryName;
+        private final String rawWorkspaceName;
+        private final Session session;
+        private final QueryResult result;
+        private final RowIterator rows;
+        private final int pageSize;
+        private volatile long lastUsed = System.currentTimeMillis();
+        @GuardedBy( "this" )
+        private long position;
+        @GuardedBy( "this" )
+        private boolean closed;
+
+        protected Cursor( CursorRequest request,
+                          Session session,
+                          QueryResult result,
+                          String rawRepositoryName,
+                          String rawWorkspaceName,
+                          int pageSize ) throws RepositoryException {
+            this.request = request;
+            this.userName = userName(request);
+            this.session = session;
+            this.result = result;
+            this.rows = result.getRows();
+            this.rawRepositoryName = rawRepositoryName;
+            this.rawWorkspaceName = rawWorkspaceName;
+            this.pageSize = pageSize;
+        }
+
+        String handle() {
+            return handle;
+        }
+
+        long lastUsed() {
+            return lastUsed;
+        }
+
+        int pageSize() {
+            return pageSize;
+        }
+
+        Session session() {
+            return session;
+        }
+
+        QueryResult result() {
+            return result;
+        }
+
+        boolean isOwnedBy( HttpServletRequest request,
+                           String rawRepositoryName,
+                           String rawWorkspaceName ) {
+            String userName = userName(request);
+            return (this.userName == null ? userName == null : this.userName.equals(userName))
+                   && this.rawRepositoryName.equals(rawRepositoryName) && this.rawWorkspaceName.equals(rawWorkspaceName);
+        }
+
+        /**
+         * Start reading a page of rows on behalf of the given request. The session of the cursor was created with the request
+         * that opened the cursor, so its security checks are made against the current request instead while the page is read.
+         * 
+         * @param request the current request; may not be null
+         * @param offset the 0-based position of the first row of the page, or a negative value for the current position
+         * @throws IllegalArgumentException if the offset is before the current position of this forward-only cursor
+         */
+        synchronized void startPage( HttpServletRequest request,
+                                     long offset ) {
+            lastUsed = System.currentTimeMillis();
+            this.request.delegateTo(request);
+            if (offset < 0 || offset == position) {
+                return;
+            }
+            if (offset < position) {
+                throw new IllegalArgumentException("The query cursor '" + handle + "' is at row " + position
+                                                   + " and cannot be moved back to row " + offset);
+            }
+            try {
+                rows.skip(offset - position);
+                position = offset;
+            } catch (NoSuchElementException e) {
+                // The offset is past the last row ...
+                while (rows.hasNext()) {
+                    rows.nextRow();
+                }
+                position = rows.getPosition();
+            }
+        }
+
+        synchronized boolean hasNext() {
+            return !closed && rows.hasNext();
+        }
+
+        synchronized Row nextRow() {
+            Row row = rows.nextRow();
+            ++position;
+            return row;
+        }
+
+        synchronized long position() {
+            return position;
+        }
+
+        synchronized void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                session.logout();
+            } catch (RuntimeException e) {
+                LOGGER.warn(e, "Error while trying to logout the session of the query cursor {0}", handle);
+            }
+        }
+
+        private static String userName( HttpServletRequest request ) {
+            Principal principal = request.getUserPrincipal();
+            return principal != null ? principal.getName() : null;
+        }
+    }
+
+    /**
+     * The request with which the session of a cursor is created, and which delegates to whichever request is reading from the
+     * cursor. The request that opened the cursor cannot be used once it has completed, because the container may recycle it.
+     */
+    static final class CursorRequest extends HttpServletRequestWrapper {
+
+        CursorRequest( HttpServletRequest request ) {
+            super(request);
+        }
+
+        void delegateTo( HttpServletRequest request ) {
+            setRequest(request);
+        }
+    }
+}
@@ -32,7 +32,12 @@ import org.modeshape.web.jcr.rest.RestHelper;
 @Deprecated
 public class QueryHandler extends AbstractHandler {
 
-    protected static final List<String> SKIP_QUERY_PARAMETERS = Arrays.asList("offset", "limit");
+    protected static final List<String> SKIP_QUERY_PARAMETERS = Arrays.asList("offset", "limit", "pageSize");
+
+    /**
+     * The cursors over the results of the paged queries, shared by all the query handlers.
+     */
+    static final QueryCursors CURSORS = new QueryCursors();
 
     /**
      * @param request the request
@@ -57,12 +62,52 @@ public class QueryHandler extends AbstractHandler {
                             long offset,
                             long limit,
                             UriInfo uriInfo ) throws RepositoryException, JSONException {
+        return postItem(request, rawRepositoryName, rawWorkspaceName, language, statement, offset, limit, -1, uriInfo);
+    }
+
+    /**
+     * @param request the request
+     * @param rawRepositoryName the name of the repository; may not be null
+     * @param rawWorkspaceName the name of the workspace; may not be null
+     * @param language the name of the query language; may not be null
+     * @param statement the query statement; may not be null
+     * @param offset the 0-based value that specifies the row number in the raw results that should be returned as the first row
+     * @param limit the number of rows that should be included in the results; ignored if the results are paged
+     * @param pageSize the number of rows in each page of results; if positive, only the first page is returned together with the
+     *        handle of a cursor from which the remaining pages can be {@link #nextPage retrieved}
+     * @param uriInfo the URI information with the extra parameters; may be null if there are no query (bind) parameters
+     * @return the JSON response
+     * @throws RepositoryException if there is a problem accessing the named repository and/or workspace
+     * @throws JSONException if there is a problem marshalling the result into a JSON response
+     * @deprecated since 3.0
+     */
+    @Deprecated
+    public String postItem( HttpServletRequest request,
+                            String rawRepositoryName,
+                            String rawWorkspaceName,
+                            String language,
+                            String statement,
+                            long offset,
+                            long limit,
+                            int pageSize,
+                            UriInfo uriInfo ) throws RepositoryException, JSONException {
 
         assert rawRepositoryName != null;
         assert rawWorkspaceName != null;
         assert language != null;
         assert statement != null;
 
+        if (pageSize > 0) {
+            QueryCursors.Cursor cursor = openCursor(request,
+                                                    rawRepositoryName,
+                                                    rawWorkspaceName,
+                                                    language,
+                                                    statement,
+                                                    pageSize,
+                                                    uriInfo);
+            return page(request, cursor, offset, pageSize);
+        }
+
         Session session = getSession(request, rawRepositoryName, rawWorkspaceName);
 
         Query query = createQuery(language, statement, session);
@@ -85,26 +130,104 @@ public class QueryHandler extends AbstractHandler {
 
         while (resultRows.hasNext() && limit > 0) {
             limit--;
-            Row resultRow = resultRows.nextRow();
-            JSONObject jsonRow = new JSONObject();
-
-            for (String columnName : columnNames) {
-                Value value = resultRow.getValue(columnName);
-
-                if (value == null) {
-                    // do nothing ...
-                } else if (value.getType() == PropertyType.BINARY) {
-                    jsonRow.put(columnName + BASE64_ENCODING_SUFFIX, RestHelper.jsonEncodedStringFor(value));
-                } else {
-                    jsonRow.put(columnName, value.getString());
-                }
-            }
+            jsonRows.add(jsonRow(resultRows.nextRow(), columnNames));
+        }
+
+        JSONObject results = new JSONObject();
+        addColumnTypes(result, columnNames, results);
+        results.put("rows", new JSONArray(jsonRows));
+        return RestHelper.responseString(results, request);
+    }
+
+    /**
+     * Returns the next page of rows from the cursor of a paged query.
+     * 
+     * @param request the request
+     * @param rawRepositoryName the name of the repository; may not be null
+     * @param rawWorkspaceName the name of the workspace; may not be null
+     * @param handle the handle of the cursor, as returned with the previous page; may not be null
+     * @param offset the 0-based number of the first row in the page, which may not be before the end of the previous page; or a
+     *        negative value if the page should start after the previous page
+     * @param pageSize the maximum number of rows in the page; if not positive, the page size of the query is used
+     * @return the JSON response, which includes the handle of the cursor if there are more rows
+     * @throws RepositoryException if there is a problem reading the rows
+     * @throws JSONException if there is a problem marshalling the result into a JSON response
+     * @deprecated since 3.0
+     */
+    @Deprecated
+    public String nextPage( HttpServletRequest request,
+                            String rawRepositoryName,
+                            String rawWorkspaceName,
+                            String handle,
+                            long offset,
+                            int pageSize ) throws RepositoryException, JSONException {
+        QueryCursors.Cursor cursor = CURSORS.get(request, rawRepositoryName, rawWorkspaceName, handle);
+        return page(request, cursor, offset, pageSize > 0 ? pageSize : cursor.pageSize());
+    }
+
+    /**
+     * Closes the cursor of a paged query before all of its pages have been read.
+     * 
+     * @param request the request
+     * @param rawRepositoryName the name of the repository; may not be null
+     * @param rawWorkspaceName the name of the workspace; may not be null
+     * @param handle the handle of the cursor; may not be null
+     */
+    public void closeCursor( HttpServletRequest request,
+                             String rawRepositoryName,
+                             String rawWorkspaceName,
+                             String handle ) {
+        CURSORS.close(CURSORS.get(request, rawRepositoryName, rawWorkspaceName, handle));
+    }
 
-            jsonRows.add(jsonRow);
+    private String page( HttpServletRequest request,
+                         QueryCursors.Cursor cursor,
+                         long offset,
+                         int pageSize ) throws RepositoryException, JSONException {
+        QueryResult result = cursor.result();
+        String[] columnNames = result.getColumnNames();
+        JSONArray jsonRows = new JSONArray();
+        boolean hasMore = false;
+        synchronized (cursor) {
+            cursor.startPage(request, offset);
+            for (int i = 0; i < pageSize && cursor.hasNext(); i++) {
+                jsonRows.put(jsonRow(cursor.nextRow(), columnNames));
+            }
+            hasMore = cursor.hasNext();
         }
 
         JSONObject results = new JSONObject();
+        addColumnTypes(result, columnNames, results);
+        results.put("rows", jsonRows);
+        if (hasMore) {
+            results.put("handle", cursor.handle());
+        } else {
+            CURSORS.close(cursor);
+        }
+        return RestHelper.responseString(results, request);
+    }
+
+    private JSONObject jsonRow( Row resultRow,
+                                String[] columnNames ) throws RepositoryException, JSONException {
+        JSONObject jsonRow = new JSONObject();
+
+        for (String columnName : columnNames) {
+            Value value = resultRow.getValue(columnName);
+
+            if (value == null) {
+                // do nothing ...
+            } else if (value.getType() == PropertyType.BINARY) {
+                jsonRow.put(columnName + BASE64_ENCODING_SUFFIX, RestHelper.jsonEncodedStringFor(value));
+            } else {
+                jsonRow.put(columnName, value.getString());
+            }
+        }
+        return jsonRow;
+    }
 
+    private void addColumnTypes( QueryResult result,
+                                 String[] columnNames,
+                                 JSONObject results ) throws JSONException {
         if (result instanceof org.modeshape.jcr.api.query.QueryResult) {
             org.modeshape.jcr.api.query.QueryResult modeShapeResult = (org.modeshape.jcr.api.query.QueryResult)result;
 
@@ -119,9 +242,48 @@ public class QueryHandler extends AbstractHandler {
 
             results.put("types", columnTypeMap);
         }
+    }
 
-        results.put("rows", new JSONArray(jsonRows));
-        return RestHelper.responseString(results, request);
+    /**
+     * Executes the query with a new session and registers a cursor over its results. The session is logged out when the cursor
+     * is closed.
+     * 
+     * @param request the request
+     * @param rawRepositoryName the name of the repository; may not be null
+     * @param rawWorkspaceName the name of the workspace; may not be null
+     * @param language the name of the query language; may not be null
+     * @param statement the query statement; may not be null
+     * @param pageSize the default number of rows in each page; must be positive
+     * @param uriInfo the URI information with the extra parameters; may be null if there are no query (bind) parameters
+     * @return the new cursor; never null
+     * @throws RepositoryException if the query cannot be executed
+     */
+    QueryCursors.Cursor openCursor( HttpServletRequest request,
+                                    String rawRepositoryName,
+                                    String rawWorkspaceName,
+                                    String language,
+                                    String statement,
+                                    int pageSize,
+                                    UriInfo uriInfo ) throws RepositoryException {
+        QueryCursors.CursorRequest cursorRequest = new QueryCursors.CursorRequest(request);
+        Session session = newSession(cursorRequest, rawRepositoryName, rawWorkspaceName);
+        boolean opened = false;
+        try {
+            Query query = createQuery(language, statement, session);
+            bindExtraVariables(uriInfo, session.getValueFactory(), query);
+            QueryCursors.Cursor cursor = CURSORS.open(cursorRequest,
+                                                      session,
+                                                      query.execute(),
+                                                      rawRepositoryName,
+                                                      rawWorkspaceName,
+                                                      pageSize);
+            opened = true;
+            return cursor;
+        } finally {
+            if (!opened) {
+                session.logout();
+            }
+        }
     }
 
     protected org.modeshape.jcr.api.query.Query createQuery( String language,
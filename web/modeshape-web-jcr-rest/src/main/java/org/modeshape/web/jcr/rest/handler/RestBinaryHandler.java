@@ -31,13 +31,23 @@ import javax.jcr.Property;
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
 import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 import org.modeshape.common.util.CheckArg;
 import org.modeshape.common.util.StringUtil;
+import org.modeshape.jcr.api.value.FileBackedStream;
 import org.modeshape.web.jcr.rest.model.RestProperty;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
 
 /**
  * Class which handles incoming requests related to {@link Binary binary values}
@@ -52,6 +62,16 @@ public final class RestBinaryHandler extends AbstractHandler {
     public static final String DEFAULT_CONTENT_DISPOSITION_PREFIX = "attachment;filename=";
     private static final String DEFAULT_MIME_TYPE = MediaType.APPLICATION_OCTET_STREAM;
 
+    private static final int HTTP_PARTIAL_CONTENT = 206;
+    private static final int HTTP_REQUESTED_RANGE_NOT_SATISFIABLE = 416;
+    private static final String BYTES_UNIT = "bytes";
+    private static final String CRLF = "\r\n";
+    private static final int BUFFER_SIZE = 1 << 13;
+    /**
+     * The maximum number of ranges served in a single response; requests for more ranges are answered with the whole content.
+     */
+    private static final int MAXIMUM_RANGES = 16;
+
     /**
      * Returns a binary {@link Property} for the given repository, workspace and path.
      *
@@ -105,6 +125,280 @@ public final class RestBinaryHandler extends AbstractHandler {
         }
     }
 
+    /**
+     * Returns the content of a binary property, honoring the conditional and range headers of the request:
+     * <ul>
+     * <li>the response carries a strong {@code ETag} derived from the SHA-1 hash of the binary value (when it is known), and a
+     * {@code 304 Not Modified} response is returned when that tag matches the {@code If-None-Match} header;</li>
+     * <li>a {@code Range} header with one or more byte ranges produces a {@code 206 Partial Content} response with either the
+     * single range or a {@code multipart/byteranges} body, unless an {@code If-Range} header does not match the current tag;</li>
+     * <li>a range that cannot be satisfied produces a {@code 416 Requested Range Not Satisfiable} response.</li>
+     * </ul>
+     * When the binary value is stored in a local file, the content is transferred directly from the file to the response.
+     *
+     * @param request a non-null {@link HttpServletRequest} request
+     * @param binaryProperty a non-null binary {@link Property}
+     * @param mimeType a non-null {@link String} representing the mime-type of the content
+     * @param contentDisposition a non-null {@link String} representing the content disposition of the response
+     * @return a {@link Response} with the (partial) content of the binary value; never null
+     * @throws RepositoryException if any JCR related operation involving the binary property fail.
+     */
+    public Response getBinaryContent( HttpServletRequest request,
+                                      Property binaryProperty,
+                                      String mimeType,
+                                      String contentDisposition ) throws RepositoryException {
+        Binary binary = binaryProperty.getBinary();
+        long size = binary.getSize();
+        EntityTag eTag = entityTagFor(binary);
+
+        if (eTag != null && matchesAny(request.getHeader("If-None-Match"), eTag)) {
+            return Response.notModified(eTag).build();
+        }
+
+        String rangeHeader = request.getHeader("Range");
+        String ifRange = request.getHeader("If-Range");
+        List<long[]> ranges = null;
+        if (rangeHeader != null && (ifRange == null || (eTag != null && eTag.equals(parseEntityTag(ifRange))))) {
+            ranges = parseRanges(rangeHeader, size);
+        }
+
+        Response.ResponseBuilder builder = null;
+        if (ranges == null) {
+            // Return the whole content ...
+            builder = Response.ok(new RangeOutput(binary, 0L, size), mimeType).header("Content-Length", size);
+        } else if (ranges.isEmpty()) {
+            return Response.status(HTTP_REQUESTED_RANGE_NOT_SATISFIABLE).header("Content-Range", BYTES_UNIT + " */" + size).build();
+        } else if (ranges.size() == 1) {
+            long[] range = ranges.get(0);
+            long length = range[1] - range[0] + 1;
+            builder = Response.status(HTTP_PARTIAL_CONTENT)
+                              .entity(new RangeOutput(binary, range[0], length))
+                              .type(mimeType)
+                              .header("Content-Range", contentRange(range, size))
+                              .header("Content-Length", length);
+        } else {
+            String boundary = UUID.randomUUID().toString().replace("-", "");
+            builder = Response.status(HTTP_PARTIAL_CONTENT)
+                              .entity(new MultipleRangesOutput(binary, ranges, size, mimeType, boundary))
+                              .type("multipart/byteranges; boundary=" + boundary);
+        }
+        if (eTag != null) {
+            builder.tag(eTag);
+        }
+        return builder.header("Accept-Ranges", BYTES_UNIT).header("Content-Disposition", contentDisposition).build();
+    }
+
+    private EntityTag entityTagFor( Binary binary ) {
+        if (binary instanceof org.modeshape.jcr.api.Binary) {
+            String hash = ((org.modeshape.jcr.api.Binary)binary).getHexHash();
+            if (!StringUtil.isBlank(hash)) {
+                return new EntityTag(hash);
+            }
+        }
+        return null;
+    }
+
+    private static EntityTag parseEntityTag( String value ) {
+        String tag = value.trim();
+        boolean weak = false;
+        if (tag.startsWith("W/")) {
+            weak = true;
+            tag = tag.substring(2);
+        }
+        if (tag.length() < 2 || !tag.startsWith("\"") || !tag.endsWith("\"")) {
+            return null;
+        }
+        return new EntityTag(tag.substring(1, tag.length() - 1), weak);
+    }
+
+    private static boolean matchesAny( String ifNoneMatch,
+                                       EntityTag eTag ) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String value : ifNoneMatch.split(",")) {
+            if ("*".equals(value.trim())) {
+                return true;
+            }
+            // If-None-Match uses the weak comparison ...
+            EntityTag tag = parseEntityTag(value);
+            if (tag != null && tag.getValue().equals(eTag.getValue())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Parse the byte ranges in a {@code Range} header.
+     *
+     * @param rangeHeader the value of the header; may not be null
+     * @param size the size of the content
+     * @return the inclusive [first, last] positions of the satisfiable ranges, in the requested order; null if the header is not
+     *         valid or requests too many ranges (in which case it should be ignored); or an empty list if none of the ranges can
+     *         be satisfied
+     */
+    protected static List<long[]> parseRanges( String rangeHeader,
+                                               long size ) {
+        String header = rangeHeader.trim();
+        if (!header.startsWith(BYTES_UNIT + "=")) {
+            return null;
+        }
+        String[] specs = header.substring(BYTES_UNIT.length() + 1).split(",");
+        if (specs.length > MAXIMUM_RANGES) {
+            return null;
+        }
+        List<long[]> ranges = new ArrayList<long[]>(specs.length);
+        try {
+            for (String spec : specs) {
+                spec = spec.trim();
+                int dash = spec.indexOf('-');
+                if (dash < 0) {
+                    return null;
+                }
+                String first = spec.substring(0, dash).trim();
+                String last = spec.substring(dash + 1).trim();
+                long start;
+                long end;
+                if (first.length() == 0) {
+                    // A suffix range with the number of bytes at the end of the content ...
+                    long suffixLength = Long.parseLong(last);
+                    if (suffixLength < 0) {
+                        return null;
+                    }
+                    if (suffixLength == 0) {
+                        continue;
+                    }
+                    start = Math.max(0L, size - suffixLength);
+                    end = size - 1;
+                } else {
+                    start = Long.parseLong(first);
+                    end = last.length() == 0 ? size - 1 : Long.parseLong(last);
+                    if (start < 0 || end < start) {
+                        return null;
+                    }
+                    end = Math.min(end, size - 1);
+                }
+                if (start < size) {
+                    ranges.add(new long[] {start, end});
+                }
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        return ranges;
+    }
+
+    private static String contentRange( long[] range,
+                                        long size ) {
+        return BYTES_UNIT + " " + range[0] + "-" + range[1] + "/" + size;
+    }
+
+    /**
+     * Write a range of the binary content to the supplied stream, transferring it directly from the file that stores the content
+     * when possible.
+     */
+    protected static void writeRange( Binary binary,
+                                      long start,
+                                      long length,
+                                      OutputStream output ) throws IOException, RepositoryException {
+        InputStream stream = binary.getStream();
+        try {
+            if (stream instanceof FileBackedStream) {
+                WritableByteChannel channel = Channels.newChannel(output);
+                ((FileBackedStream)stream).transferTo(start, length, channel);
+                return;
+            }
+            long remaining = start;
+            while (remaining > 0) {
+                long skipped = stream.skip(remaining);
+                if (skipped <= 0) {
+                    // Some streams do not skip, so read instead ...
+                    if (stream.read() == -1) return;
+                    skipped = 1;
+                }
+                remaining -= skipped;
+            }
+            byte[] buffer = new byte[(int)Math.min(BUFFER_SIZE, Math.max(1L, length))];
+            remaining = length;
+            while (remaining > 0) {
+                int read = stream.read(buffer, 0, (int)Math.min(buffer.length, remaining));
+                if (read == -1) break;
+                output.write(buffer, 0, read);
+                remaining -= read;
+            }
+        } finally {
+            stream.close();
+        }
+    }
+
+    /**
+     * Writes a single range of the binary content.
+     */
+    protected static final class RangeOutput implements StreamingOutput {
+        private final Binary binary;
+        private final long start;
+        private final long length;
+
+        protected RangeOutput( Binary binary,
+                               long start,
+                               long length ) {
+            this.binary = binary;
+            this.start = start;
+            this.length = length;
+        }
+
+        @Override
+        public void write( OutputStream output ) throws IOException, WebApplicationException {
+            try {
+                writeRange(binary, start, length, output);
+            } catch (RepositoryException e) {
+                throw new WebApplicationException(e);
+            }
+        }
+    }
+
+    /**
+     * Writes several ranges of the binary content as the parts of a {@code multipart/byteranges} body.
+     */
+    protected static final class MultipleRangesOutput implements StreamingOutput {
+        private final Binary binary;
+        private final List<long[]> ranges;
+        private final long size;
+        private final String mimeType;
+        private final String boundary;
+
+        protected MultipleRangesOutput( Binary binary,
+                                        List<long[]> ranges,
+                                        long size,
+                                        String mimeType,
+                                        String boundary ) {
+            this.binary = binary;
+            this.ranges = ranges;
+            this.size = size;
+            this.mimeType = mimeType;
+            this.boundary = boundary;
+        }
+
+        @Override
+        public void write( OutputStream output ) throws IOException, WebApplicationException {
+            try {
+                for (long[] range : ranges) {
+                    StringBuilder headers = new StringBuilder();
+                    headers.append(CRLF).append("--").append(boundary).append(CRLF);
+                    headers.append("Content-Type: ").append(mimeType).append(CRLF);
+                    headers.append("Content-Range: ").append(contentRange(range, size)).append(CRLF);
+                    headers.append(CRLF);
+                    output.write(headers.toString().getBytes("US-ASCII"));
+                    writeRange(binary, range[0], range[1] - range[0] + 1, output);
+                }
+                output.write((CRLF + "--" + boundary + "--" + CRLF).getBytes("US-ASCII"));
+            } catch (RepositoryException e) {
+                throw new WebApplicationException(e);
+            }
+        }
+    }
+
     /**
      * Updates the {@link Property property} at the given path with the content from the given {@link InputStream}.
      *
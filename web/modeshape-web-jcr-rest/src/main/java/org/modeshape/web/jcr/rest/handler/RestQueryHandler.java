@@ -39,6 +39,7 @@ import javax.jcr.query.Row;
 import javax.jcr.query.RowIterator;
 import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.core.UriInfo;
+import org.codehaus.jettison.json.JSONException;
 import org.modeshape.common.util.StringUtil;
 import org.modeshape.web.jcr.rest.RestHelper;
 import org.modeshape.web.jcr.rest.model.RestQueryPlanResult;
@@ -81,26 +82,77 @@ public final class RestQueryHandler extends QueryHandler {
                                          long offset,
                                          long limit,
                                          UriInfo uriInfo ) throws RepositoryException {
+        return executeQuery(request, repositoryName, workspaceName, language, statement, offset, limit, -1, uriInfo);
+    }
+
+    /**
+     * Executes a the given query string (based on the language information) against a JCR repository, returning a rest model
+     * based result which, if a page size is given, contains only the first page of rows and the handle of the cursor from which
+     * the {@link #nextResultPage next pages} can be retrieved.
+     * 
+     * @param request a non-null {@link HttpServletRequest}
+     * @param repositoryName a non-null, URL encoded {@link String} representing the name of a repository
+     * @param workspaceName a non-null, URL encoded {@link String} representing the name of a workspace
+     * @param language a non-null String which should be a valid query language, as recognized by the
+     *        {@link javax.jcr.query.QueryManager}
+     * @param statement a non-null String which should be a valid query string in the above language.
+     * @param offset a numeric value which indicates the index in the result set from where results should be returned.
+     * @param limit a numeric value indicating the maximum number of rows to return; ignored if the result is paged.
+     * @param pageSize a numeric value indicating the number of rows in each page, or a non-positive value if the result should
+     *        not be paged.
+     * @param uriInfo a non-null {@link UriInfo} object which is provided by RestEASY, allowing extra request parameters to be
+     *        retrieved.
+     * @return a {@link RestQueryHandler} instance
+     * @throws RepositoryException if any operation fails at the JCR level
+     */
+    public RestQueryResult executeQuery( HttpServletRequest request,
+                                         String repositoryName,
+                                         String workspaceName,
+                                         String language,
+                                         String statement,
+                                         long offset,
+                                         long limit,
+                                         int pageSize,
+                                         UriInfo uriInfo ) throws RepositoryException {
         assert repositoryName != null;
         assert workspaceName != null;
         assert language != null;
         assert statement != null;
 
-        Session session = getSession(request, repositoryName, workspaceName);
-        Query query = createQuery(language, statement, session);
-        bindExtraVariables(uriInfo, session.getValueFactory(), query);
+        if (pageSize > 0) {
+            QueryCursors.Cursor cursor = openCursor(request, repositoryName, workspaceName, language, statement, pageSize,
+                                                    uriInfo);
+            return page(request, cursor, offset, pageSize);
+        }
 
-        QueryResult result = query.execute();
-        RestQueryResult restQueryResult = new RestQueryResult();
+        // The rows are read while the response is written, after the request's session was closed ...
+        Session session = newSession(request, repositoryName, workspaceName);
+        try {
+            Query query = createQuery(language, statement, session);
+            bindExtraVariables(uriInfo, session.getValueFactory(), query);
 
-        String[] columnNames = result.getColumnNames();
-        setColumns(result, restQueryResult, columnNames);
+            QueryResult result = query.execute();
+            RestQueryResult restQueryResult = new RestQueryResult();
 
-        String baseUrl = RestHelper.repositoryUrl(request);
+            String[] columnNames = result.getColumnNames();
+            setColumns(result, restQueryResult, columnNames);
 
-        setRows(offset, limit, session, result, restQueryResult, columnNames, baseUrl);
+            String baseUrl = RestHelper.repositoryUrl(request);
 
-        return restQueryResult;
+            RowIterator resultRows = result.getRows();
+            if (offset > 0) {
+                resultRows.skip(offset);
+            }
+            QueryRowSource rowSource = new QueryRowSource(session, result, restQueryResult, columnNames, baseUrl, resultRows,
+                                                          limit < 0 ? Long.MAX_VALUE : limit);
+            return restQueryResult.setRowSource(rowSource);
+        } catch (RepositoryException e) {
+            session.logout();
+            throw e;
+        } catch (RuntimeException e) {
+            session.logout();
+            throw e;
+        }
     }
 
     /**
@@ -142,30 +194,76 @@ public final class RestQueryHandler extends QueryHandler {
         return new RestQueryPlanResult(plan, statement, language, query.getAbstractQueryModelRepresentation());
     }
 
-    private void setRows( long offset,
-                          long limit,
-                          Session session,
-                          QueryResult result,
-                          RestQueryResult restQueryResult,
-                          String[] columnNames,
-                          String baseUrl ) throws RepositoryException {
-        RowIterator resultRows = result.getRows();
-        if (offset > 0) {
-            resultRows.skip(offset);
-        }
-        if (limit < 0) {
-            limit = Long.MAX_VALUE;
-        }
+    /**
+     * Returns the next page of rows from the cursor of a paged query.
+     * 
+     * @param request a non-null {@link HttpServletRequest}
+     * @param repositoryName a non-null, URL encoded {@link String} representing the name of a repository
+     * @param workspaceName a non-null, URL encoded {@link String} representing the name of a workspace
+     * @param handle a non-null {@link String} representing the handle of the cursor, as returned with the previous page
+     * @param offset the index of the first row of the page, which may not be before the end of the previous page; or a negative
+     *        value if the page should start after the previous page
+     * @param pageSize the maximum number of rows in the page; if not positive, the page size of the query is used
+     * @return a {@link RestQueryResult} instance, which contains the handle of the cursor if there are more rows
+     * @throws RepositoryException if any operation fails at the JCR level
+     */
+    public RestQueryResult nextResultPage( HttpServletRequest request,
+                                           String repositoryName,
+                                           String workspaceName,
+                                           String handle,
+                                           long offset,
+                                           int pageSize ) throws RepositoryException {
+        QueryCursors.Cursor cursor = CURSORS.get(request, repositoryName, workspaceName, handle);
+        return page(request, cursor, offset, pageSize > 0 ? pageSize : cursor.pageSize());
+    }
+
+    private RestQueryResult page( HttpServletRequest request,
+                                  QueryCursors.Cursor cursor,
+                                  long offset,
+                                  int pageSize ) throws RepositoryException {
+        Session session = cursor.session();
+        QueryResult result = cursor.result();
+        RestQueryResult restQueryResult = new RestQueryResult();
 
-        while (resultRows.hasNext() && limit > 0) {
-            limit--;
-            Row resultRow = resultRows.nextRow();
+        String[] columnNames = result.getColumnNames();
+        setColumns(result, restQueryResult, columnNames);
 
-            RestQueryResult.RestRow restRow = createRestRow(session, result, restQueryResult, columnNames, baseUrl, resultRow);
-            createLinksFromNodePaths(result, baseUrl, resultRow, restRow);
+        String baseUrl = RestHelper.repositoryUrl(request);
 
-            restQueryResult.addRow(restRow);
+        boolean hasMore = false;
+        synchronized (cursor) {
+            cursor.startPage(request, offset);
+            for (int i = 0; i < pageSize && cursor.hasNext(); i++) {
+                addRow(session, result, restQueryResult, columnNames, baseUrl, cursor.nextRow());
+            }
+            hasMore = cursor.hasNext();
         }
+        if (hasMore) {
+            restQueryResult.setHandle(cursor.handle());
+        } else {
+            CURSORS.close(cursor);
+        }
+        return restQueryResult;
+    }
+
+    private void addRow( Session session,
+                         QueryResult result,
+                         RestQueryResult restQueryResult,
+                         String[] columnNames,
+                         String baseUrl,
+                         Row resultRow ) throws RepositoryException {
+        restQueryResult.addRow(toRestRow(session, result, restQueryResult, columnNames, baseUrl, resultRow));
+    }
+
+    private RestQueryResult.RestRow toRestRow( Session session,
+                                               QueryResult result,
+                                               RestQueryResult restQueryResult,
+                                               String[] columnNames,
+                                               String baseUrl,
+                                               Row resultRow ) throws RepositoryException {
+        RestQueryResult.RestRow restRow = createRestRow(session, result, restQueryResult, columnNames, baseUrl, resultRow);
+        createLinksFromNodePaths(result, baseUrl, resultRow, restRow);
+        return restRow;
     }
 
     private void createLinksFromNodePaths( QueryResult result,
@@ -261,4 +359,51 @@ public final class RestQueryHandler extends QueryHandler {
             }
         }
     }
+
+    /**
+     * Reads the rows of a query result as the response is written, and logs out the query's session once all the rows were read.
+     */
+    private final class QueryRowSource implements RestQueryResult.RowSource {
+        private final Session session;
+        private final QueryResult result;
+        private final RestQueryResult restQueryResult;
+        private final String[] columnNames;
+        private final String baseUrl;
+        private final RowIterator resultRows;
+        private long remaining;
+
+        protected QueryRowSource( Session session,
+                                  QueryResult result,
+                                  RestQueryResult restQueryResult,
+                                  String[] columnNames,
+                                  String baseUrl,
+                                  RowIterator resultRows,
+                                  long limit ) {
+            this.session = session;
+            this.result = result;
+            this.restQueryResult = restQueryResult;
+            this.columnNames = columnNames;
+            this.baseUrl = baseUrl;
+            this.resultRows = resultRows;
+            this.remaining = limit;
+        }
+
+        @Override
+        public RestQueryResult.RestRow nextRow() throws JSONException {
+            if (remaining <= 0 || !resultRows.hasNext()) {
+                return null;
+            }
+            remaining--;
+            try {
+                return toRestRow(session, result, restQueryResult, columnNames, baseUrl, resultRows.nextRow());
+            } catch (RepositoryException e) {
+                throw new JSONException(e);
+            }
+        }
+
+        @Override
+        public void close() {
+            session.logout();
+        }
+    }
 }
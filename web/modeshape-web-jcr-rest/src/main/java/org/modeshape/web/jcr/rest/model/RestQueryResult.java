@@ -24,6 +24,8 @@
 
 package org.modeshape.web.jcr.rest.model;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -41,6 +43,8 @@ import org.modeshape.common.util.StringUtil;
 public final class RestQueryResult implements JSONAble {
     private final Map<String, String> columns;
     private final List<RestRow> rows;
+    private String handle;
+    private RowSource rowSource;
 
     /**
      * Creates an empty instance
@@ -76,12 +80,48 @@ public final class RestQueryResult implements JSONAble {
         return this;
     }
 
+    /**
+     * Sets the handle of the cursor from which the next page of this (paged) result can be retrieved.
+     * 
+     * @param handle the handle of the cursor, or {@code null} if there are no more rows
+     * @return this instance
+     */
+    public RestQueryResult setHandle( String handle ) {
+        this.handle = handle;
+        return this;
+    }
+
+    /**
+     * Sets the source from which the remaining rows of this result are read, after any rows that were {@link #addRow added}. The
+     * rows are read only when this result is written, and the source is closed once it has been read or if writing fails.
+     * 
+     * @param rowSource the source of the remaining rows; may be null if there are no more rows
+     * @return this instance
+     */
+    public RestQueryResult setRowSource( RowSource rowSource ) {
+        this.rowSource = rowSource;
+        return this;
+    }
+
     @Override
     public JSONObject toJSON() throws JSONException {
+        // Any rows that are not yet read are needed in memory ...
+        if (rowSource != null) {
+            try {
+                for (RestRow row = rowSource.nextRow(); row != null; row = rowSource.nextRow()) {
+                    rows.add(row);
+                }
+            } finally {
+                closeRowSource();
+            }
+        }
         JSONObject result = new JSONObject();
         if (!columns.isEmpty()) {
             result.put("columns", columns);
         }
+        if (handle != null) {
+            result.put("handle", handle);
+        }
         if (!rows.isEmpty()) {
             JSONArray rows = new JSONArray();
             for (RestRow row : this.rows) {
@@ -92,6 +132,89 @@ public final class RestQueryResult implements JSONAble {
         return result;
     }
 
+    /**
+     * Writes the same JSON representation as {@link #toJSON()}, one row at a time, so that the representation of the whole result
+     * is never held in memory. Rows from the {@link #setRowSource row source} are written as they are read.
+     * 
+     * @param writer the writer to which the JSON is written; may not be null
+     * @throws JSONException if a row cannot be read or converted to JSON
+     * @throws IOException if the JSON cannot be written
+     */
+    public void writeJSON( Writer writer ) throws JSONException, IOException {
+        try {
+            writer.write('{');
+            boolean first = true;
+            if (!columns.isEmpty()) {
+                writer.write("\"columns\":");
+                writer.write(new JSONObject(columns).toString());
+                first = false;
+            }
+            if (handle != null) {
+                if (!first) writer.write(',');
+                writer.write("\"handle\":");
+                writer.write(JSONObject.quote(handle));
+                first = false;
+            }
+            boolean firstRow = true;
+            for (RestRow row : rows) {
+                firstRow = writeRow(writer, row, first, firstRow);
+            }
+            if (rowSource != null) {
+                for (RestRow row = rowSource.nextRow(); row != null; row = rowSource.nextRow()) {
+                    firstRow = writeRow(writer, row, first, firstRow);
+                }
+            }
+            if (!firstRow) {
+                writer.write(']');
+            }
+            writer.write('}');
+        } finally {
+            closeRowSource();
+        }
+    }
+
+    private boolean writeRow( Writer writer,
+                              RestRow row,
+                              boolean firstField,
+                              boolean firstRow ) throws IOException {
+        if (firstRow) {
+            // The "rows" field is written only if there is at least one row ...
+            if (!firstField) writer.write(',');
+            writer.write("\"rows\":[");
+        } else {
+            writer.write(',');
+        }
+        writer.write(row.toJSON().toString());
+        return false;
+    }
+
+    private void closeRowSource() {
+        if (rowSource != null) {
+            RowSource source = rowSource;
+            rowSource = null;
+            source.close();
+        }
+    }
+
+    /**
+     * A source of rows that are read only when the result is written, so that a large result is never held in memory.
+     */
+    public interface RowSource {
+        /**
+         * Reads the next row.
+         * 
+         * @return the next row, or {@code null} if there are no more rows
+         * @throws JSONException if the row cannot be read
+         */
+        RestRow nextRow() throws JSONException;
+
+        /**
+         * Releases the resources used to read the rows. This is called once, after the last row was read or if the result could
+         * not be written.
+         */
+        void close();
+    }
+
     public class RestRow implements JSONAble {
         private final Map<String, String> values;
 
@@ -25,9 +25,13 @@
 package org.modeshape.web.jcr.rest.output;
 
 import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.IOException;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.PrintStream;
 import java.io.UnsupportedEncodingException;
+import java.io.Writer;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Type;
 import java.util.Collection;
@@ -42,6 +46,7 @@ import org.codehaus.jettison.json.JSONException;
 import org.jboss.resteasy.spi.WriterException;
 import org.jboss.resteasy.util.Types;
 import org.modeshape.web.jcr.rest.model.JSONAble;
+import org.modeshape.web.jcr.rest.model.RestQueryResult;
 
 /**
  * Implementation of {@link MessageBodyWriter} which writes a {@link JSONAble} or a {@link Collection Collection<JSONAble>} instances to
@@ -61,6 +66,10 @@ public class JSONBodyWriter implements MessageBodyWriter<Object> {
                          Annotation[] annotations,
                          MediaType mediaType ) {
         try {
+            if (isStreamed(object)) {
+                // The size is not known until the result has been written ...
+                return -1;
+            }
             if (isJSONAble(type)) {
                 return getString((JSONAble)object).getBytes().length;
             } else if (isJSONAbleCollection(type, genericType)) {
@@ -102,6 +111,10 @@ public class JSONBodyWriter implements MessageBodyWriter<Object> {
                          MediaType mediaType,
                          MultivaluedMap<String, Object> httpHeaders,
                          OutputStream entityStream ) throws WebApplicationException {
+        if (isStreamed(object)) {
+            writeStreamed((RestQueryResult)object, mediaType, httpHeaders, entityStream);
+            return;
+        }
         String content;
         try {
             if (isJSONAble(type)) {
@@ -125,6 +138,33 @@ public class JSONBodyWriter implements MessageBodyWriter<Object> {
         }
     }
 
+    /**
+     * Determine whether the given object is written incrementally rather than converted to a string first. Query results can be
+     * very large, so they are streamed by this writer.
+     * 
+     * @param object the object being written
+     * @return true if the object is written by {@link #writeStreamed}
+     */
+    protected boolean isStreamed( Object object ) {
+        return object instanceof RestQueryResult;
+    }
+
+    private void writeStreamed( RestQueryResult result,
+                                MediaType mediaType,
+                                MultivaluedMap<String, Object> httpHeaders,
+                                OutputStream entityStream ) {
+        httpHeaders.putSingle("Content-Type", mediaType.toString() + ";charset=utf-8");
+        try {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(entityStream, "UTF-8"));
+            result.writeJSON(writer);
+            writer.flush();
+        } catch (JSONException e) {
+            throw new WriterException(e);
+        } catch (IOException e) {
+            throw new WriterException(e);
+        }
+    }
+
     protected String getString( JSONAble jsonAble ) throws JSONException {
         return jsonAble.toJSON().toString();
     }
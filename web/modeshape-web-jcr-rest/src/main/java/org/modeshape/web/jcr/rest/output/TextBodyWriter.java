@@ -43,6 +43,11 @@ public class TextBodyWriter extends JSONBodyWriter {
 
     private static final int TEXT_INDENT_FACTOR = 2;
 
+    @Override
+    protected boolean isStreamed( Object object ) {
+        return false;
+    }
+
     @Override
     protected String getString( JSONAble jsonAble ) throws JSONException {
         if (jsonAble instanceof Stringable) {